@@ -20,6 +20,7 @@ public class AppConfig {
     private static final String KEY_KEEP_ALIVE_ENABLED = "keep_alive_enabled";  // 保活服务
     private static final String KEY_PREVENT_SLEEP_ENABLED = "prevent_sleep_enabled";  // 防止休眠（持续WakeLock）
     private static final String KEY_RECORDING_MODE = "recording_mode";  // 录制模式
+    private static final String KEY_MUXER_TYPE = "muxer_type";  // Codec 录制的封装方式
     
     // 存储位置配置
     private static final String KEY_STORAGE_LOCATION = "storage_location";  // 存储位置
@@ -49,6 +50,34 @@ public class AppConfig {
     
     // 录制状态显示配置
     private static final String KEY_RECORDING_STATS_ENABLED = "recording_stats_enabled";  // 录制状态显示开关
+    private static final String KEY_RECORDING_METRICS_ENABLED = "recording_metrics_enabled";  // 录制状态中显示管线指标
+    
+    // 事件前缓冲（预录）配置
+    private static final String KEY_PRE_EVENT_ENABLED = "pre_event_enabled";  // 预录开关
+    private static final String KEY_PRE_EVENT_SECONDS = "pre_event_seconds";  // 预录时长（秒）
+    private static final String KEY_PRE_EVENT_BUDGET_MB = "pre_event_budget_mb";  // 预录内存总预算（MB，所有摄像头共享）
+    private static final String KEY_PARKING_MOTION_ENABLED = "parking_motion_enabled";  // 息屏时改为移动侦测触发录制
+    private static final String KEY_IDLE_STANDBY_ENABLED = "idle_standby_enabled";  // 息屏未录制时摄像头降到最低帧率/最小尺寸
+    
+    // 自适应码率配置
+    private static final String KEY_ADAPTIVE_BITRATE_ENABLED = "adaptive_bitrate_enabled";  // 负载过高时自动降码率/抽帧
+    
+    // 无缝分段配置
+    private static final String KEY_SEGMENT_ROLLOVER_ENABLED = "segment_rollover_enabled";  // 分段切换时保持编码器运行，只切换 Muxer
+    private static final String KEY_PERSISTENT_RECORD_SURFACE_ENABLED = "persistent_record_surface_enabled";  // MediaRecorder 分段共用持久输入 Surface
+    
+    // 共享渲染配置
+    private static final String KEY_SHARED_RENDER_HUB_ENABLED = "shared_render_hub_enabled";  // 所有摄像头共用一个 EGL 上下文和渲染线程
+    
+    // 四画面合成配置
+    private static final String KEY_COMPOSITE_RECORDING_ENABLED = "composite_recording_enabled";  // 多路摄像头拼成一路 2x2 画面录制
+    
+    // 硬件拍照配置
+    private static final String KEY_HARDWARE_PHOTO_CAPTURE_ENABLED = "hardware_photo_capture_enabled";  // 拍照走会话内的 JPEG ImageReader（硬件编码）
+    
+    // 分享转码配置
+    private static final String KEY_SHARE_PROFILE = "share_profile";  // 远程上传前的转码档位（off/720p/480p）
+    private static final String KEY_SHARE_SIZE_CAP_MB = "share_size_cap_mb";  // 远程上传的单个视频大小上限（MB，0 不限）
     
     // 时间角标配置
     private static final String KEY_TIMESTAMP_WATERMARK_ENABLED = "timestamp_watermark_enabled";  // 时间角标开关
@@ -129,6 +158,10 @@ public class AppConfig {
     public static final String RECORDING_MODE_MEDIA_RECORDER = "media_recorder";  // MediaRecorder（硬件编码）
     public static final String RECORDING_MODE_CODEC = "codec";  // OpenGL + MediaCodec（软编码）
     
+    // 封装方式常量（仅 Codec 录制模式有效）
+    public static final String MUXER_TYPE_SYSTEM = "system";  // 系统 MediaMuxer（普通 MP4）
+    public static final String MUXER_TYPE_FRAGMENTED = "fragmented";  // 分片 MP4（断电后已写入的片段仍可播放）
+    
     // 分辨率配置相关键名
     private static final String KEY_TARGET_RESOLUTION = "target_resolution";  // 目标分辨率
     
@@ -359,6 +392,30 @@ public class AppConfig {
         }
     }
     
+    /**
+     * 设置封装方式
+     * @param type 封装方式（system/fragmented）
+     */
+    public void setMuxerType(String type) {
+        prefs.edit().putString(KEY_MUXER_TYPE, type).apply();
+        AppLog.d(TAG, "封装方式设置: " + type);
+    }
+    
+    /**
+     * 获取封装方式
+     * @return 封装方式，默认为系统 MediaMuxer
+     */
+    public String getMuxerType() {
+        return prefs.getString(KEY_MUXER_TYPE, MUXER_TYPE_SYSTEM);
+    }
+    
+    /**
+     * 是否使用分片 MP4 封装
+     */
+    public boolean isFragmentedMp4Enabled() {
+        return MUXER_TYPE_FRAGMENTED.equals(getMuxerType());
+    }
+    
     /**
      * 重置所有配置为默认值
      */
@@ -1196,6 +1253,255 @@ public class AppConfig {
         return prefs.getBoolean(KEY_RECORDING_STATS_ENABLED, true);
     }
     
+    /**
+     * 设置是否在录制状态显示中附带管线指标
+     * @param enabled true 表示每路摄像头显示帧率、写入速度、队列深度和延迟（仅 Codec 录制模式有数据）
+     */
+    public void setRecordingMetricsEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_RECORDING_METRICS_ENABLED, enabled).apply();
+        AppLog.d(TAG, "录制管线指标显示设置: " + (enabled ? "启用" : "禁用"));
+    }
+    
+    /**
+     * 获取是否在录制状态显示中附带管线指标
+     */
+    public boolean isRecordingMetricsEnabled() {
+        // 默认关闭（用于排查掉帧，平时只显示时长）
+        return prefs.getBoolean(KEY_RECORDING_METRICS_ENABLED, false);
+    }
+    
+    // ==================== 事件前缓冲（预录）配置相关方法 ====================
+    
+    /**
+     * 设置预录开关
+     * @param enabled true 表示未录制时也持续编码并缓存最近 N 秒（仅 Codec 录制模式有效）
+     */
+    public void setPreEventEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_PRE_EVENT_ENABLED, enabled).apply();
+        AppLog.d(TAG, "预录设置: " + (enabled ? "启用" : "禁用"));
+    }
+    
+    /**
+     * 获取预录开关状态
+     */
+    public boolean isPreEventEnabled() {
+        // 默认关闭（待机时持续编码会增加功耗）
+        return prefs.getBoolean(KEY_PRE_EVENT_ENABLED, false);
+    }
+    
+    /**
+     * 设置预录时长
+     * @param seconds 触发录制时保留的事件前时长（秒）
+     */
+    public void setPreEventSeconds(int seconds) {
+        prefs.edit().putInt(KEY_PRE_EVENT_SECONDS, seconds).apply();
+        AppLog.d(TAG, "预录时长设置: " + seconds + " 秒");
+    }
+    
+    /**
+     * 获取预录时长（秒），默认 10 秒
+     */
+    public int getPreEventSeconds() {
+        return prefs.getInt(KEY_PRE_EVENT_SECONDS, 10);
+    }
+    
+    /**
+     * 设置预录内存总预算
+     * @param megabytes 所有摄像头共享的缓冲内存（MB）
+     */
+    public void setPreEventBudgetMb(int megabytes) {
+        prefs.edit().putInt(KEY_PRE_EVENT_BUDGET_MB, megabytes).apply();
+        AppLog.d(TAG, "预录内存预算设置: " + megabytes + " MB");
+    }
+    
+    /**
+     * 获取预录内存总预算（MB），默认 64MB（4 路摄像头每路 16MB）
+     */
+    public int getPreEventBudgetMb() {
+        return prefs.getInt(KEY_PRE_EVENT_BUDGET_MB, 64);
+    }
+    
+    /**
+     * 设置停车移动侦测开关
+     * @param enabled true 表示息屏录制时不再持续录制，改为画面有移动才录制（需启用预录）
+     */
+    public void setParkingMotionEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_PARKING_MOTION_ENABLED, enabled).apply();
+        AppLog.d(TAG, "停车移动侦测设置: " + (enabled ? "启用" : "禁用"));
+    }
+    
+    /**
+     * 获取停车移动侦测开关状态
+     */
+    public boolean isParkingMotionEnabled() {
+        // 默认关闭（息屏保持原来的持续录制）
+        return prefs.getBoolean(KEY_PARKING_MOTION_ENABLED, false);
+    }
+    
+    /**
+     * 设置低功耗待机开关
+     * @param enabled true 表示息屏且未录制时摄像头降到最低帧率和最小输出尺寸、停止 GL 渲染（预录启用时不生效）
+     */
+    public void setIdleStandbyEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_IDLE_STANDBY_ENABLED, enabled).apply();
+        AppLog.d(TAG, "低功耗待机设置: " + (enabled ? "启用" : "禁用"));
+    }
+    
+    /**
+     * 获取低功耗待机开关状态
+     */
+    public boolean isIdleStandbyEnabled() {
+        // 默认开启（亮屏、远程指令或开始录制时立即恢复）
+        return prefs.getBoolean(KEY_IDLE_STANDBY_ENABLED, true);
+    }
+    
+    // ==================== 自适应码率配置相关方法 ====================
+    
+    /**
+     * 设置自适应码率开关
+     * @param enabled true 表示写入或编码跟不上、设备过热时自动下调码率和帧率（仅 Codec 录制模式有效）
+     */
+    public void setAdaptiveBitrateEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_ADAPTIVE_BITRATE_ENABLED, enabled).apply();
+        AppLog.d(TAG, "自适应码率设置: " + (enabled ? "启用" : "禁用"));
+    }
+    
+    /**
+     * 获取自适应码率开关状态
+     */
+    public boolean isAdaptiveBitrateEnabled() {
+        // 默认开启（只在检测到负载过高时才介入，前摄像头优先保持原画质）
+        return prefs.getBoolean(KEY_ADAPTIVE_BITRATE_ENABLED, true);
+    }
+    
+    // ==================== 无缝分段配置相关方法 ====================
+    
+    /**
+     * 设置无缝分段开关
+     * @param enabled true 表示分段切换时保持编码器运行、在关键帧处切换到预先打开的 Muxer（仅 Codec 录制模式有效）
+     */
+    public void setSegmentRolloverEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_SEGMENT_ROLLOVER_ENABLED, enabled).apply();
+        AppLog.d(TAG, "无缝分段设置: " + (enabled ? "启用" : "禁用"));
+    }
+    
+    /**
+     * 获取无缝分段开关状态
+     */
+    public boolean isSegmentRolloverEnabled() {
+        // 默认开启（关闭后回退到停止并重建编码器的切换方式）
+        return prefs.getBoolean(KEY_SEGMENT_ROLLOVER_ENABLED, true);
+    }
+    
+    /**
+     * 设置持久录制 Surface 开关
+     * @param enabled true 表示 MediaRecorder 各分段共用一个持久输入 Surface，切换分段时不重建 Camera 会话（仅 MediaRecorder 录制模式有效，下次录制生效）
+     */
+    public void setPersistentRecordSurfaceEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_PERSISTENT_RECORD_SURFACE_ENABLED, enabled).apply();
+        AppLog.d(TAG, "持久录制 Surface 设置: " + (enabled ? "启用" : "禁用"));
+    }
+    
+    /**
+     * 获取持久录制 Surface 开关状态
+     */
+    public boolean isPersistentRecordSurfaceEnabled() {
+        // 默认开启（关闭后回退到每段重建会话的切换方式，便于对比切换耗时）
+        return prefs.getBoolean(KEY_PERSISTENT_RECORD_SURFACE_ENABLED, true);
+    }
+    
+    // ==================== 共享渲染配置相关方法 ====================
+    
+    /**
+     * 设置共享渲染开关
+     * @param enabled true 表示所有摄像头共用一个 EGL 上下文和渲染线程（仅 Codec 录制模式有效，下次录制生效）
+     */
+    public void setSharedRenderHubEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_SHARED_RENDER_HUB_ENABLED, enabled).apply();
+        AppLog.d(TAG, "共享渲染设置: " + (enabled ? "启用" : "禁用"));
+    }
+    
+    /**
+     * 获取共享渲染开关状态
+     */
+    public boolean isSharedRenderHubEnabled() {
+        // 默认关闭（每路摄像头独立渲染，兼容性最好）
+        return prefs.getBoolean(KEY_SHARED_RENDER_HUB_ENABLED, false);
+    }
+    
+    // ==================== 四画面合成配置相关方法 ====================
+    
+    /**
+     * 设置四画面合成开关
+     * @param enabled true 表示前/后/左/右拼成一路 2x2 画面写入单个文件（仅 Codec 录制模式有效，下次录制生效）
+     */
+    public void setCompositeRecordingEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_COMPOSITE_RECORDING_ENABLED, enabled).apply();
+        AppLog.d(TAG, "四画面合成设置: " + (enabled ? "启用" : "禁用"));
+    }
+    
+    /**
+     * 获取四画面合成开关状态
+     */
+    public boolean isCompositeRecordingEnabled() {
+        // 默认关闭（每路摄像头单独录制一个文件）
+        return prefs.getBoolean(KEY_COMPOSITE_RECORDING_ENABLED, false);
+    }
+    
+    // ==================== 硬件拍照配置相关方法 ====================
+    
+    /**
+     * 设置硬件拍照开关
+     * @param enabled true 表示拍照时由摄像头直接输出 JPEG，多路同时抓拍（下次打开摄像头生效）
+     */
+    public void setHardwarePhotoCaptureEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_HARDWARE_PHOTO_CAPTURE_ENABLED, enabled).apply();
+        AppLog.d(TAG, "硬件拍照设置: " + (enabled ? "启用" : "禁用"));
+    }
+    
+    /**
+     * 获取硬件拍照开关状态
+     */
+    public boolean isHardwarePhotoCaptureEnabled() {
+        // 默认关闭（从预览画面截图，不占用额外的会话输出）
+        return prefs.getBoolean(KEY_HARDWARE_PHOTO_CAPTURE_ENABLED, false);
+    }
+    
+    // ==================== 分享转码配置相关方法 ====================
+    
+    /**
+     * 设置分享转码档位
+     * @param profile ShareProfile.PRESET_OFF / PRESET_720P / PRESET_480P，远程上传视频前按档位重新编码
+     */
+    public void setShareProfile(String profile) {
+        prefs.edit().putString(KEY_SHARE_PROFILE, profile).apply();
+        AppLog.d(TAG, "分享转码档位设置: " + profile);
+    }
+    
+    /**
+     * 获取分享转码档位
+     */
+    public String getShareProfile() {
+        // 默认关闭（上传原始录制文件）
+        return prefs.getString(KEY_SHARE_PROFILE, "off");
+    }
+    
+    /**
+     * 设置远程上传的单个视频大小上限
+     * @param megabytes 超过上限的视频按上限反推码率转码后上传，0 表示不限制
+     */
+    public void setShareSizeCapMb(int megabytes) {
+        prefs.edit().putInt(KEY_SHARE_SIZE_CAP_MB, megabytes).apply();
+        AppLog.d(TAG, "分享大小上限设置: " + megabytes + " MB");
+    }
+    
+    /**
+     * 获取远程上传的单个视频大小上限（MB），默认 0（不限制）
+     */
+    public int getShareSizeCapMb() {
+        return prefs.getInt(KEY_SHARE_SIZE_CAP_MB, 0);
+    }
+    
     // ==================== 时间角标配置相关方法 ====================
     
     /**
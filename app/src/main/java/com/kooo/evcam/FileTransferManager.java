@@ -361,6 +361,7 @@ public class FileTransferManager {
             
             totalTransferred++;
             totalBytesTransferred += fileSize;
+            RecordingCatalog.getInstance(context).onFileAdded(task.targetFile);
             
             if (task.callback != null) {
                 task.callback.onTransferComplete(task.sourceFile, task.targetFile);
@@ -384,6 +385,7 @@ public class FileTransferManager {
                 
                 totalTransferred++;
                 totalBytesTransferred += fileSize;
+                RecordingCatalog.getInstance(context).onFileAdded(task.targetFile);
                 
                 if (task.callback != null) {
                     task.callback.onTransferComplete(task.sourceFile, task.targetFile);
@@ -6,6 +6,8 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Build;
 
+import com.kooo.evcam.camera.SegmentFilePool;
+
 /**
  * 保活广播接收器（增强版）
  * 
@@ -134,6 +136,12 @@ public class KeepAliveReceiver extends BroadcastReceiver {
             // ========== USB/存储相关（插U盘触发） ==========
             case Intent.ACTION_MEDIA_MOUNTED:
                 AppLog.d(TAG, "【存储】存储已挂载（U盘/SD卡插入）");
+                // U盘可能已更换，丢弃录制索引并在后台重建
+                StorageHelper.clearCache();
+                RecordingCatalog.getInstance(context).invalidateAll();
+                StorageQuotaTracker.getInstance(context).invalidate();
+                SegmentFilePool.getInstance().invalidate();
+                RecordingCatalog.getInstance(context).reconcileCurrentDirsAsync();
                 ensureServicesRunning(context, "存储挂载");
                 break;
                 
@@ -144,6 +152,10 @@ public class KeepAliveReceiver extends BroadcastReceiver {
                 
             case Intent.ACTION_MEDIA_REMOVED:
                 AppLog.d(TAG, "【存储】存储已移除");
+                StorageHelper.clearCache();
+                RecordingCatalog.getInstance(context).invalidateAll();
+                StorageQuotaTracker.getInstance(context).invalidate();
+                SegmentFilePool.getInstance().invalidate();
                 ensureServicesRunning(context, "存储移除");
                 break;
                 
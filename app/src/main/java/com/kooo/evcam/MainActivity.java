@@ -6,6 +6,7 @@ import android.Manifest;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
 import android.hardware.camera2.CameraAccessException;
 import android.hardware.camera2.CameraManager;
 import android.os.Build;
@@ -32,8 +33,11 @@ import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
 
 import com.google.android.material.navigation.NavigationView;
+import com.kooo.evcam.camera.CaptureScheduler;
 import com.kooo.evcam.camera.ImageAdjustManager;
 import com.kooo.evcam.camera.MultiCameraManager;
+import com.kooo.evcam.camera.ParkingMotionMonitor;
+import com.kooo.evcam.camera.RecordingMetrics;
 import com.kooo.evcam.camera.SingleCamera;
 import com.kooo.evcam.FileTransferManager;
 import com.kooo.evcam.StorageHelper;
@@ -47,11 +51,14 @@ import com.kooo.evcam.wechat.WechatCloudManager;
 import com.kooo.evcam.wechat.WechatMiniConfig;
 import com.kooo.evcam.wechat.WechatRemoteManager;
 import com.kooo.evcam.remote.RemoteCommandDispatcher;
+import com.kooo.evcam.remote.core.CaptureScheduleRequest;
+import com.kooo.evcam.remote.core.ClipRequest;
 import com.kooo.evcam.remote.handler.RemoteCommandHandler;
 import com.kooo.evcam.playback.PlaybackFragmentNew;
 import com.kooo.evcam.playback.PhotoPlaybackFragmentNew;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -124,6 +131,7 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
     private static final long SCREEN_OFF_DELAY_MS = 10000;  // 息屏后等待10秒（停止录制）
     private static final long SCREEN_ON_DELAY_MS = 10000;   // 亮屏后等待10秒（恢复录制）
     private static final long SCREEN_OFF_BACKGROUND_DELAY_MS = 15000;  // 息屏后等待15秒（退后台）
+    private ParkingMotionMonitor parkingMonitor;  // 停车移动侦测（息屏录制且启用侦测时有效）
     
     // 车型配置相关
     private AppConfig appConfig;
@@ -141,9 +149,16 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
     private long recordingStartTime = 0;  // 录制开始时间
     private int currentSegmentCount = 1;  // 当前分段数
     private boolean isRecordingStatsEnabled = true;  // 录制状态显示开关
+    private boolean isRecordingMetricsEnabled = false;  // 录制状态中附带管线指标（长按切换）
     private long lastStatsClickTime = 0;  // 上次点击录制状态显示的时间
     private static final long DOUBLE_CLICK_INTERVAL = 500;  // 双击判定间隔（毫秒）
 
+    // 远程预览帧（推流时每秒采集多次，复用位图和输出缓冲；只在主线程访问）
+    private static final int PREVIEW_FRAME_MAX_WIDTH = 640;
+    private static final int PREVIEW_FRAME_JPEG_QUALITY = 70;
+    private Bitmap previewFrameBitmap;
+    private final ByteArrayOutputStream previewFrameStream = new ByteArrayOutputStream(64 * 1024);
+
     // 导航相关
     private DrawerLayout drawerLayout;
     private NavigationView navigationView;
@@ -375,6 +390,14 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
                 }
                 return null; // 返回 null 会触发使用基本状态信息
             }
+
+            @Override
+            public String onCaptureScheduleCommand(CaptureScheduleRequest request) {
+                if (!isDestroyed()) {
+                    return handleCaptureScheduleCommand(request);
+                }
+                return null;
+            }
         };
         RemoteServiceManager.getInstance().setStatusInfoProvider(statusInfoProvider);
         AppLog.d(TAG, "StatusInfoProvider 已注册");
@@ -484,6 +507,11 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
 
         AppLog.d(TAG, "Received remote command from intent: " + action);
 
+        // 远程指令到达时先退出低功耗待机（会话恢复与切换界面并行）
+        if (cameraManager != null) {
+            cameraManager.exitStandby(null);
+        }
+
         // 先切换到主界面（录制界面），确保显示正确的界面
         showRecordingInterface();
         AppLog.d(TAG, "Switched to recording interface");
@@ -1176,6 +1204,7 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
         
         // 从设置加载显示开关状态
         isRecordingStatsEnabled = appConfig.isRecordingStatsEnabled();
+        isRecordingMetricsEnabled = appConfig.isRecordingMetricsEnabled();
         
         // 初始化计时器 Handler
         recordingTimerHandler = new android.os.Handler(android.os.Looper.getMainLooper());
@@ -1196,6 +1225,16 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
             }
             AppLog.d(TAG, "录制状态显示被点击, isRecording=" + isRecording + ", enabled=" + isRecordingStatsEnabled);
         });
+
+        // 长按切换管线指标显示（每路帧率、写入速度、队列深度、延迟）
+        tvRecordingStats.setOnLongClickListener(v -> {
+            isRecordingMetricsEnabled = !isRecordingMetricsEnabled;
+            appConfig.setRecordingMetricsEnabled(isRecordingMetricsEnabled);
+            Toast.makeText(this, isRecordingMetricsEnabled ? "管线指标显示已开启" : "管线指标显示已关闭",
+                    Toast.LENGTH_SHORT).show();
+            updateRecordingStatsDisplay();
+            return true;
+        });
     }
     
     /**
@@ -1298,6 +1337,12 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
         
         // 格式化时间：MM:SS / 分段数（即使隐藏也更新文本，便于双击显示时立即看到正确时间）
         String timeStr = String.format(java.util.Locale.getDefault(), "%02d:%02d / %d", minutes, seconds, currentSegmentCount);
+
+        // 管线指标（仅 Codec 录制模式有数据）
+        RecordingMetrics metrics = RecordingMetrics.getInstance();
+        if (isRecordingMetricsEnabled && metrics.isActive()) {
+            timeStr = timeStr + "\n" + metrics.formatOverlay();
+        }
         tvRecordingStats.setText(timeStr);
     }
     
@@ -1317,6 +1362,7 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
      */
     public void refreshRecordingStatsSettings() {
         isRecordingStatsEnabled = appConfig.isRecordingStatsEnabled();
+        isRecordingMetricsEnabled = appConfig.isRecordingMetricsEnabled();
         
         // 如果正在录制，根据新设置显示或隐藏（通过 alpha 控制，保持可点击）
         if (isRecording && tvRecordingStats != null) {
@@ -1955,8 +2001,15 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
         }
     }
     
+    /**
+     * 捕获一帧预览 JPEG（必须在主线程调用：TextureView 的状态和 getBitmap 只能在主线程访问，
+     * 主线程上也不会与 onSurfaceTextureDestroyed / onDestroy 交错）
+     */
     @Override
     public byte[] capturePreviewFrame() {
+        if (isFinishing() || isDestroyed()) {
+            return null;
+        }
         // 从第一个可用的 TextureView 捕获预览帧
         android.view.TextureView targetView = null;
         if (textureFront != null && textureFront.isAvailable()) {
@@ -1975,13 +2028,27 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
         }
         
         try {
-            android.graphics.Bitmap bitmap = targetView.getBitmap();
+            // 缩小到预览尺寸直接画进复用的位图，不再每帧分配原始分辨率的位图
+            int viewWidth = targetView.getWidth();
+            int viewHeight = targetView.getHeight();
+            if (viewWidth <= 0 || viewHeight <= 0) {
+                return null;
+            }
+            int width = Math.min(PREVIEW_FRAME_MAX_WIDTH, viewWidth);
+            int height = Math.max(1, viewHeight * width / viewWidth);
+            if (previewFrameBitmap == null || previewFrameBitmap.getWidth() != width
+                    || previewFrameBitmap.getHeight() != height) {
+                if (previewFrameBitmap != null) {
+                    previewFrameBitmap.recycle();
+                }
+                previewFrameBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            }
+            Bitmap bitmap = targetView.getBitmap(previewFrameBitmap);
             if (bitmap != null) {
-                java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
-                bitmap.compress(android.graphics.Bitmap.CompressFormat.JPEG, 70, baos);
-                byte[] data = baos.toByteArray();
-                bitmap.recycle();
-                return data;
+                previewFrameStream.reset();
+                bitmap.compress(Bitmap.CompressFormat.JPEG, PREVIEW_FRAME_JPEG_QUALITY,
+                        previewFrameStream);
+                return previewFrameStream.toByteArray();
             }
         } catch (Exception e) {
             AppLog.e(TAG, "捕获预览帧失败: " + e.getMessage(), e);
@@ -2347,6 +2414,9 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
                 // 根据设置决定录制模式（支持用户手动选择）
                 boolean useCodecRecording = appConfig.shouldUseCodecRecording();
                 cameraManager.setCodecRecordingMode(useCodecRecording);
+                cameraManager.setSharedRenderHubMode(appConfig.isSharedRenderHubEnabled());
+                cameraManager.setCompositeRecordingMode(appConfig.isCompositeRecordingEnabled());
+                cameraManager.setHardwarePhotoCaptureMode(appConfig.isHardwarePhotoCaptureEnabled());
                 String recordingMode = appConfig.getRecordingMode();
                 String modeDesc = useCodecRecording ? "OpenGL + MediaCodec" : "MediaRecorder";
                 AppLog.d(TAG, "录制模式: " + modeDesc + " (设置: " + recordingMode + ")");
@@ -2798,6 +2868,9 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
         if (isRecording) {
             // 如果开启了自动录制+息屏录制，继续录制
             if (keepCameraActive) {
+                if (appConfig.isParkingMotionEnabled() && enterParkingMode()) {
+                    return;
+                }
                 AppLog.d(TAG, "息屏录制已启用，继续录制");
                 return;
             }
@@ -2853,6 +2926,14 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
             if (keepCameraActive) {
                 // 开启了自动录制+息屏录制，保持前台（以便亮屏后可以立即录制）
                 AppLog.d(TAG, "息屏录制模式，保持相机活跃");
+                if (appConfig.isParkingMotionEnabled() && enterParkingMode()) {
+                    return;
+                }
+                // 预录需要持续编码，启用时不进入待机
+                if (appConfig.isIdleStandbyEnabled() && !appConfig.isPreEventEnabled() && cameraManager != null
+                        && cameraManager.enterStandby()) {
+                    AppLog.d(TAG, "息屏未录制，摄像头进入低功耗待机");
+                }
                 return;
             }
             
@@ -2862,6 +2943,68 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
         }
     }
     
+    /**
+     * 【停车侦测】息屏后由持续录制改为移动触发录制
+     * 预录缓冲在空闲时一直运行，画面有移动时从缓冲转为录制（保留移动前几秒），安静后停止
+     * @return 是否进入停车侦测（需要 Codec 录制并启用预录）
+     */
+    private boolean enterParkingMode() {
+        if (cameraManager == null) {
+            return false;
+        }
+        if (parkingMonitor != null) {
+            return true;
+        }
+        ParkingMotionMonitor monitor = new ParkingMotionMonitor(new ParkingMotionMonitor.Listener() {
+            @Override
+            public void onMotionStarted(String key) {
+                if (parkingMonitor == null || !isScreenOff || isRecording) {
+                    return;
+                }
+                AppLog.d(TAG, "停车侦测: " + key + " 画面有移动，开始录制");
+                startRecording();
+            }
+
+            @Override
+            public void onMotionEnded() {
+                if (parkingMonitor == null || !isScreenOff || !isRecording) {
+                    return;
+                }
+                AppLog.d(TAG, "停车侦测: 画面已安静，停止录制");
+                stopRecording();
+            }
+        });
+        if (!cameraManager.setMotionMonitor(monitor)) {
+            AppLog.w(TAG, "停车移动侦测需要软编码录制并启用预录，保持持续录制");
+            return false;
+        }
+        parkingMonitor = monitor;
+        if (isRecording) {
+            AppLog.d(TAG, "停车侦测已启用，停止持续录制，等待画面移动");
+            stopRecording();
+        } else {
+            AppLog.d(TAG, "停车侦测已启用，等待画面移动");
+        }
+        return true;
+    }
+
+    /**
+     * 【停车侦测】退出侦测，录制状态保持不变
+     * @return 之前是否处于停车侦测
+     */
+    private boolean exitParkingMode() {
+        if (parkingMonitor == null) {
+            return false;
+        }
+        if (cameraManager != null) {
+            cameraManager.setMotionMonitor(null);
+        }
+        parkingMonitor.release();
+        parkingMonitor = null;
+        AppLog.d(TAG, "停车侦测已退出");
+        return true;
+    }
+
     /**
      * 安排息屏后退到后台的任务
      */
@@ -2934,6 +3077,14 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
             AppLog.d(TAG, "亮屏，取消退后台任务");
         }
         
+        // 退出停车侦测（侦测期间可能处于未录制状态）
+        boolean wasParking = exitParkingMode();
+
+        // 退出低功耗待机，摄像头恢复正常帧率和尺寸
+        if (cameraManager != null) {
+            cameraManager.exitStandby(null);
+        }
+        
         // 检查是否启用了自动录制功能
         if (!appConfig.isAutoStartRecording()) {
             AppLog.d(TAG, "未启用自动录制功能，忽略亮屏事件");
@@ -2942,6 +3093,11 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
         
         // 检查息屏录制设置
         if (appConfig.isScreenOffRecordingEnabled()) {
+            if (wasParking && !isRecording) {
+                AppLog.d(TAG, "停车侦测结束，恢复持续录制");
+                startRecording();
+                return;
+            }
             // 息屏录制已启用，无需恢复（一直在录制）
             AppLog.d(TAG, "息屏录制已启用，无需恢复录制");
             return;
@@ -3371,6 +3527,18 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
                 }
             }
 
+            @Override
+            public void onClipCommand(String conversationId, String conversationType, String userId, ClipRequest request) {
+                if (remoteCommandDispatcher != null) {
+                    remoteCommandDispatcher.startDingTalkClip(conversationId, conversationType, userId, request);
+                }
+            }
+
+            @Override
+            public String onCaptureScheduleCommand(CaptureScheduleRequest request) {
+                return handleCaptureScheduleCommand(request);
+            }
+
             @Override
             public String getStatusInfo() {
                 return buildStatusInfo();
@@ -3511,6 +3679,18 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
                 }
             }
 
+            @Override
+            public void onClipCommand(long chatId, ClipRequest request) {
+                if (remoteCommandDispatcher != null) {
+                    remoteCommandDispatcher.startTelegramClip(chatId, request);
+                }
+            }
+
+            @Override
+            public String onCaptureScheduleCommand(CaptureScheduleRequest request) {
+                return handleCaptureScheduleCommand(request);
+            }
+
             @Override
             public String getStatusInfo() {
                 return buildStatusInfo();
@@ -3663,6 +3843,18 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
                 }
             }
 
+            @Override
+            public void onClipCommand(String chatId, String messageId, ClipRequest request) {
+                if (remoteCommandDispatcher != null) {
+                    remoteCommandDispatcher.startFeishuClip(chatId, request);
+                }
+            }
+
+            @Override
+            public String onCaptureScheduleCommand(CaptureScheduleRequest request) {
+                return handleCaptureScheduleCommand(request);
+            }
+
             @Override
             public String getStatusInfo() {
                 return buildStatusInfo();
@@ -3754,6 +3946,21 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
                     sb.append("⏱️ 时长: ").append(String.format("%02d:%02d", minutes, seconds));
                     sb.append(" / 第").append(currentSegmentCount).append("段\n");
                 }
+
+                // 录制管线指标（仅 Codec 录制模式）
+                RecordingMetrics metrics = RecordingMetrics.getInstance();
+                if (metrics.isActive()) {
+                    sb.append("📈 录制管线:\n").append(metrics.formatReport()).append("\n");
+                    if (cameraManager != null) {
+                        sb.append("• 码率调节: ").append(cameraManager.getRecordingGovernorStats()).append("\n");
+                    }
+                }
+
+                // 分段切换耗时（仅 MediaRecorder 录制模式）
+                String switchStats = cameraManager != null ? cameraManager.getSegmentSwitchStats() : null;
+                if (switchStats != null) {
+                    sb.append("🔀 分段切换:\n").append(switchStats).append("\n");
+                }
             } else {
                 sb.append("🎬 录制: 未录制\n");
             }
@@ -3766,6 +3973,26 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
             } else {
                 sb.append("📷 摄像头: 未初始化\n");
             }
+
+            // 最近一次启动（打开摄像头/开始录制）各路的阶段耗时
+            if (cameraManager != null) {
+                sb.append("🚀 启动: ").append(cameraManager.getStartupTimeline()).append("\n");
+            }
+
+            // 低功耗待机
+            if (cameraManager != null && cameraManager.isInStandby()) {
+                sb.append("💤 低功耗待机中\n");
+            }
+
+            // 停车侦测状态
+            if (parkingMonitor != null) {
+                sb.append("🅿️ ").append(parkingMonitor.describeStatus()).append("\n");
+            }
+
+            // 连拍/延时拍摄进度
+            if (cameraManager != null && cameraManager.getCaptureScheduler().isRunning()) {
+                sb.append("⏱️ ").append(cameraManager.getCaptureScheduler().describeStatus()).append("\n");
+            }
             
             // 存储信息（简短版）
             try {
@@ -3862,6 +4089,55 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
         return "⏹️ 录制已停止" + durationInfo + "\n应用将退到后台";
     }
 
+    /**
+     * 处理连拍/延时拍摄指令
+     * 从当前预览抓图，不唤醒应用，所以要求摄像头已打开
+     */
+    private String handleCaptureScheduleCommand(CaptureScheduleRequest request) {
+        AppLog.d(TAG, "处理连拍/延时指令: " + request.describe());
+
+        if (cameraManager == null || !cameraManager.hasConnectedCameras()) {
+            return "❌ 摄像头未打开，请先发送「启动录制」";
+        }
+
+        CaptureScheduler scheduler = cameraManager.getCaptureScheduler();
+        if (request.getType() == CaptureScheduleRequest.Type.STOP) {
+            if (!scheduler.isRunning()) {
+                return "⚠️ 当前没有进行中的连拍/延时拍摄";
+            }
+            String progress = scheduler.describeStatus();
+            scheduler.stop();
+            return "⏹️ 已停止，已抓取的画面会继续保存\n" + progress;
+        }
+
+        if (scheduler.isRunning()) {
+            return "⚠️ 已有任务在进行中\n" + scheduler.describeStatus() + "\n发送「延时 停止」结束";
+        }
+
+        if (cameraManager.isInStandby()) {
+            // 待机时预览是最小尺寸，等摄像头恢复后再开始抓拍
+            cameraManager.exitStandby(() -> {
+                if (!startCaptureSchedule(scheduler, request)) {
+                    AppLog.w(TAG, "待机恢复后启动连拍/延时失败");
+                }
+            });
+        } else if (!startCaptureSchedule(scheduler, request)) {
+            return "❌ 启动失败，没有可用的摄像头画面";
+        }
+
+        if (request.getType() == CaptureScheduleRequest.Type.BURST) {
+            return "📸 开始连拍：" + request.describe();
+        }
+        return "⏱️ 开始延时拍摄：" + request.describe() + "\n发送「状态」查看进度，发送「延时 停止」提前结束";
+    }
+
+    private boolean startCaptureSchedule(CaptureScheduler scheduler, CaptureScheduleRequest request) {
+        if (request.getType() == CaptureScheduleRequest.Type.BURST) {
+            return scheduler.startBurst(request.getCount(), request.getIntervalMillis());
+        }
+        return scheduler.startTimelapse(request.getIntervalMillis(), request.getDurationMillis(), request.isToVideo());
+    }
+
     /**
      * 处理退出指令
      */
@@ -4070,8 +4346,15 @@ public class MainActivity extends AppCompatActivity implements WechatRemoteManag
         if (remoteCommandDispatcher != null) {
             remoteCommandDispatcher.cleanup();
         }
+
+        // 释放预览帧位图（与 capturePreviewFrame 同在主线程）
+        if (previewFrameBitmap != null) {
+            previewFrameBitmap.recycle();
+            previewFrameBitmap = null;
+        }
         
         // 清理息屏录制相关资源
+        exitParkingMode();
         if (screenStateReceiver != null) {
             try {
                 unregisterReceiver(screenStateReceiver);
@@ -0,0 +1,865 @@
+package com.kooo.evcam;
+
+import android.content.Context;
+import android.os.Looper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 录制文件索引（目录清单）
+ * 记录 EVCam_Video / EVCam_Photo 中每个文件的名称、大小和修改时间，
+ * 回看列表、远程查找和存储清理直接查询索引，不再对每个文件做 length()/lastModified()
+ *
+ * 工作原理：
+ * 1. 每个目录对应内部存储中的一个追加式日志（A=新增，D=删除），启动时回放到内存
+ * 2. 分段完成、录制停止、拍照保存、中转传输完成时追加新增记录
+ * 3. 删除文件时追加删除记录，删除记录过多时压缩重写日志
+ * 4. 首次加载时只读取目录文件名（不 stat）与日志比对，仅对新出现的文件取大小
+ * 5. U盘插拔后丢弃所有索引，下次访问时完整重建
+ * 6. 加载和重建只在专用后台线程上执行，读取日志、遍历目录期间不持有索引锁，完成后再一次性换入；
+ *    主线程查询尚未加载的目录时只提交后台加载并返回空结果，不会在主线程上遍历目录
+ */
+public class RecordingCatalog {
+    private static final String TAG = "RecordingCatalog";
+
+    // 索引日志目录（在内部存储的应用私有目录下，避免向U盘写入额外数据）
+    private static final String CATALOG_DIR = "recording_catalog";
+
+    // 日志记录类型
+    private static final String RECORD_ADD = "A";
+    private static final String RECORD_DELETE = "D";
+
+    // 日志压缩阈值：日志记录数超过 有效条目数*2 + 此值 时重写
+    private static final int COMPACT_SLACK_RECORDS = 512;
+
+    /**
+     * 索引条目
+     */
+    public static class Entry {
+        private final File file;
+        private final long size;
+        private final long lastModified;
+
+        Entry(File file, long size, long lastModified) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getName() {
+            return file.getName();
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * 索引变化监听器（回看界面用于增量更新列表）
+     * 回调在修改索引的线程上执行（持有索引锁），实现方只应转发到自己的线程，不要做耗时操作
+     */
+    public interface ChangeListener {
+        void onEntryAdded(File directory, Entry entry);
+        void onEntryRemoved(File directory, Entry entry);
+    }
+
+    /**
+     * 单个目录的索引（按文件名排序，文件名以时间戳开头，即按时间排序）
+     */
+    private static class DirIndex {
+        final File directory;
+        final File logFile;
+        final TreeMap<String, Entry> entries = new TreeMap<>();
+        long totalSize = 0;
+        int logRecords = 0;
+        boolean loaded = false;
+
+        // 后台加载状态（持有索引锁访问）
+        boolean loading = false;
+        Future<?> pendingLoad;
+        int pendingLoads = 0;
+        // 加载期间发生的增删（文件名 -> true 新增 / false 删除），换入时重放
+        final Map<String, Boolean> pendingChanges = new LinkedHashMap<>();
+
+        DirIndex(File directory, File logFile) {
+            this.directory = directory;
+            this.logFile = logFile;
+        }
+
+        void put(Entry entry) {
+            Entry old = entries.put(entry.getName(), entry);
+            if (old != null) {
+                totalSize -= old.size;
+            }
+            totalSize += entry.size;
+        }
+
+        Entry remove(String name) {
+            Entry old = entries.remove(name);
+            if (old != null) {
+                totalSize -= old.size;
+            }
+            return old;
+        }
+
+        void clear() {
+            entries.clear();
+            totalSize = 0;
+            logRecords = 0;
+        }
+    }
+
+    // 单例
+    private static RecordingCatalog instance;
+
+    private final Context context;
+    private final Map<String, DirIndex> indexes = new HashMap<>();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // 索引加载线程（单线程，同一时刻只有一个目录在加载）
+    private final ExecutorService loader;
+    private volatile Thread loaderThread;
+
+    // 统计
+    private final AtomicLong totalReconciles = new AtomicLong();
+    private final AtomicLong totalStatCalls = new AtomicLong();
+
+    private RecordingCatalog(Context context) {
+        this.context = context.getApplicationContext();
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "RecordingCatalogLoader");
+            loaderThread = thread;
+            return thread;
+        });
+    }
+
+    /**
+     * 获取单例实例
+     */
+    public static synchronized RecordingCatalog getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecordingCatalog(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 注册索引变化监听器
+     */
+    public void addChangeListener(ChangeListener listener) {
+        if (listener != null && !listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * 移除索引变化监听器
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // ===== 查询 =====
+
+    /**
+     * 是否为不纳入索引的隐藏文件（如分段预分配文件）
+     */
+    public static boolean isHiddenName(String name) {
+        return name.startsWith(".");
+    }
+
+    /**
+     * 获取目录中指定扩展名的文件（按文件名升序）
+     * 目录尚未加载时后台线程上等待加载完成；主线程上只提交加载，返回空列表
+     * @param directory 目标目录
+     * @param extensions 扩展名（小写，如 ".mp4"），为空时返回所有文件
+     * @return 索引条目列表，目录不存在时返回空列表
+     */
+    public List<Entry> listEntries(File directory, String... extensions) {
+        DirIndex index = awaitLoaded(directory);
+        List<Entry> result = new ArrayList<>();
+        if (index == null) {
+            return result;
+        }
+        synchronized (this) {
+            for (Entry entry : index.entries.values()) {
+                if (matchesExtension(entry.getName(), extensions)) {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按文件名前缀查找文件（用于按录制时间戳查找）
+     * @param directory 目标目录
+     * @param prefix 文件名前缀，如 "20260131_125430"
+     * @param extensions 扩展名（小写），为空时不过滤
+     */
+    public List<Entry> findByPrefix(File directory, String prefix, String... extensions) {
+        List<Entry> result = new ArrayList<>();
+        if (prefix == null) {
+            return result;
+        }
+        DirIndex index = awaitLoaded(directory);
+        if (index == null) {
+            return result;
+        }
+        synchronized (this) {
+            // 文件名有序，前缀匹配的条目位于 [prefix, prefix + MAX_VALUE) 区间内
+            for (Entry entry : index.entries.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+                if (matchesExtension(entry.getName(), extensions)) {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取目录中所有文件的总大小（字节）
+     */
+    public long getTotalSize(File directory) {
+        DirIndex index = awaitLoaded(directory);
+        if (index == null) {
+            return 0;
+        }
+        synchronized (this) {
+            return index.totalSize;
+        }
+    }
+
+    /**
+     * 获取目录中的文件数量
+     */
+    public int getFileCount(File directory) {
+        DirIndex index = awaitLoaded(directory);
+        if (index == null) {
+            return 0;
+        }
+        synchronized (this) {
+            return index.entries.size();
+        }
+    }
+
+    // ===== 更新 =====
+
+    /**
+     * 记录新增（或已完成写入）的文件
+     * 只对这一个文件取大小和修改时间
+     * @param file 已完成的文件
+     */
+    public synchronized void onFileAdded(File file) {
+        if (file == null) {
+            return;
+        }
+        DirIndex index = getIndex(file.getParentFile());
+        if (index == null || !file.isFile() || isHiddenName(file.getName())) {
+            return;
+        }
+        if (index.loading) {
+            index.pendingChanges.put(file.getName(), Boolean.TRUE);
+        }
+        if (!index.loaded) {
+            // 尚未建立索引的目录不在录制线程上加载，交给后台加载，目录比对时会补上此文件
+            if (index.logFile.exists()) {
+                scheduleLoad(index, false);
+            }
+            return;
+        }
+        Entry entry = statEntry(file);
+        index.put(entry);
+        appendAddRecord(index, entry);
+        notifyEntryAdded(index, entry);
+    }
+
+    /**
+     * 记录新增的文件（路径形式）
+     */
+    public void onFileAdded(String filePath) {
+        if (filePath != null) {
+            onFileAdded(new File(filePath));
+        }
+    }
+
+    /**
+     * 记录已删除的文件
+     * @param file 已删除的文件
+     */
+    public synchronized void onFileRemoved(File file) {
+        if (file == null) {
+            return;
+        }
+        DirIndex index = getIndex(file.getParentFile());
+        if (index == null) {
+            return;
+        }
+        if (index.loading) {
+            index.pendingChanges.put(file.getName(), Boolean.FALSE);
+        }
+        if (!index.loaded) {
+            return;
+        }
+        Entry removed = index.remove(file.getName());
+        if (removed != null) {
+            appendDeleteRecord(index, file.getName());
+            compactIfNeeded(index);
+            notifyEntryRemoved(index, removed);
+        }
+    }
+
+    /**
+     * 批量记录已删除的文件
+     */
+    public synchronized void onFilesRemoved(Collection<File> files) {
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            onFileRemoved(file);
+        }
+    }
+
+    // ===== 校对 =====
+
+    /**
+     * 与目录实际内容比对（只读取文件名，仅对新出现的文件取大小）
+     * 用于回看界面手动刷新等场景，发现外部增删的文件；目录尚未加载时等同于加载
+     * @param directory 目标目录
+     */
+    public void refresh(File directory) {
+        DirIndex index;
+        boolean loaded;
+        synchronized (this) {
+            index = getIndex(directory);
+            if (index == null) {
+                return;
+            }
+            loaded = index.loaded;
+        }
+        if (!loaded) {
+            awaitLoaded(directory);
+            return;
+        }
+
+        // 读取目录文件名时不持有索引锁
+        String[] names = directory.list();
+        if (names == null) {
+            return;
+        }
+        synchronized (this) {
+            if (indexes.get(directory.getAbsolutePath()) != index || index.loading) {
+                // 已被丢弃或正在重新加载，加载结果本身就与目录一致
+                return;
+            }
+            List<Entry> added = new ArrayList<>();
+            List<Entry> removed = new ArrayList<>();
+            syncWithDirectory(index, names, added, removed);
+            notifyChanges(index, added, removed);
+            compactIfNeeded(index);
+        }
+    }
+
+    /**
+     * 完整重建目录索引（对所有文件重新取大小和修改时间）
+     * 在后台加载线程上执行，调用线程等待完成（主线程上只提交不等待）
+     * @param directory 目标目录
+     */
+    public void reconcile(File directory) {
+        if (directory == null) {
+            return;
+        }
+        boolean onLoader = Thread.currentThread() == loaderThread;
+        Future<?> task = null;
+        synchronized (this) {
+            DirIndex index = getIndex(directory);
+            if (!onLoader) {
+                task = scheduleLoad(index, true);
+            }
+        }
+        if (onLoader) {
+            runLoad(directory.getAbsolutePath(), true);
+        } else if (!isMainThread()) {
+            awaitTask(task, directory);
+        }
+    }
+
+    /**
+     * 丢弃所有索引（U盘插拔后调用）
+     * 挂载点相同但U盘内容可能完全不同，因此删除日志，下次访问时完整重建
+     */
+    public synchronized void invalidateAll() {
+        for (DirIndex index : indexes.values()) {
+            if (index.logFile.exists() && !index.logFile.delete()) {
+                AppLog.w(TAG, "删除索引日志失败: " + index.logFile.getName());
+            }
+        }
+        indexes.clear();
+        AppLog.d(TAG, "存储设备变化，已丢弃全部录制索引");
+    }
+
+    /**
+     * 在后台线程重建当前视频和图片目录的索引（U盘挂载后调用，避免首次打开回看时等待）
+     */
+    public void reconcileCurrentDirsAsync() {
+        loader.execute(() -> {
+            reconcile(StorageHelper.getVideoDir(context));
+            reconcile(StorageHelper.getPhotoDir(context));
+        });
+    }
+
+    /**
+     * 获取索引统计信息
+     */
+    public synchronized String getStats() {
+        int totalEntries = 0;
+        for (DirIndex index : indexes.values()) {
+            totalEntries += index.entries.size();
+        }
+        return String.format("索引目录: %d, 文件: %d, 重建: %d 次, stat: %d 次",
+                indexes.size(), totalEntries, totalReconciles.get(), totalStatCalls.get());
+    }
+
+    // ===== 私有方法 =====
+
+    private DirIndex getIndex(File directory) {
+        if (directory == null) {
+            return null;
+        }
+        String key = directory.getAbsolutePath();
+        DirIndex index = indexes.get(key);
+        if (index == null) {
+            File catalogDir = new File(context.getFilesDir(), CATALOG_DIR);
+            if (!catalogDir.exists() && !catalogDir.mkdirs()) {
+                AppLog.e(TAG, "创建索引目录失败: " + catalogDir.getAbsolutePath());
+            }
+            index = new DirIndex(directory, new File(catalogDir, toLogFileName(key)));
+            indexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * 获取已加载的目录索引
+     * 未加载时：后台线程上提交加载并等待；主线程上（或回调中持有索引锁时）只提交加载，返回 null
+     */
+    private DirIndex awaitLoaded(File directory) {
+        if (directory == null || !directory.isDirectory()) {
+            return null;
+        }
+        boolean onLoader = Thread.currentThread() == loaderThread;
+        boolean canWait = !isMainThread() && !Thread.holdsLock(this);
+        DirIndex index;
+        Future<?> task = null;
+        synchronized (this) {
+            index = getIndex(directory);
+            if (index.loaded) {
+                return index;
+            }
+            if (!onLoader) {
+                task = scheduleLoad(index, false);
+            }
+        }
+        if (onLoader) {
+            runLoad(directory.getAbsolutePath(), false);
+            synchronized (this) {
+                return index.loaded ? index : null;
+            }
+        }
+        if (!canWait) {
+            AppLog.w(TAG, "索引尚未加载，已提交后台加载: " + directory.getAbsolutePath());
+            return null;
+        }
+        return awaitTask(task, directory) ? index : null;
+    }
+
+    /**
+     * 提交后台加载（调用方持有索引锁）
+     * 已有加载在排队时直接复用；完整重建总是重新提交
+     */
+    private Future<?> scheduleLoad(DirIndex index, boolean rebuild) {
+        if (!rebuild && index.pendingLoad != null) {
+            return index.pendingLoad;
+        }
+        String key = index.directory.getAbsolutePath();
+        index.pendingLoads++;
+        index.pendingLoad = loader.submit(() -> {
+            try {
+                runLoad(key, rebuild);
+            } finally {
+                synchronized (this) {
+                    if (--index.pendingLoads == 0) {
+                        index.pendingLoad = null;
+                    }
+                }
+            }
+        });
+        return index.pendingLoad;
+    }
+
+    private boolean awaitTask(Future<?> task, File directory) {
+        try {
+            task.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            AppLog.e(TAG, "加载索引失败: " + directory.getAbsolutePath(), e.getCause());
+        }
+        return false;
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    /**
+     * 加载或重建目录索引（只在加载线程上执行）
+     * 日志回放、目录遍历和 stat 都在临时索引上完成，不持有索引锁；完成后在锁内换入并重放期间的增删
+     */
+    private void runLoad(String key, boolean rebuild) {
+        DirIndex index;
+        synchronized (this) {
+            index = indexes.get(key);
+            if (index == null || (index.loaded && !rebuild)) {
+                return;
+            }
+            index.loading = true;
+            index.pendingChanges.clear();
+        }
+
+        long startTime = System.currentTimeMillis();
+        DirIndex staging = new DirIndex(index.directory, index.logFile);
+        List<Entry> added = new ArrayList<>();
+        List<Entry> removed = new ArrayList<>();
+        boolean replayed = !rebuild && loadIndex(staging, added, removed);
+        if (!replayed) {
+            rebuildIndex(staging);
+        }
+
+        synchronized (this) {
+            index.loading = false;
+            if (indexes.get(key) != index) {
+                // 加载期间索引已被丢弃（U盘插拔），删除刚写出的日志，避免下次回放旧内容
+                if (staging.logFile.exists() && !staging.logFile.delete()) {
+                    AppLog.w(TAG, "删除索引日志失败: " + staging.logFile.getName());
+                }
+                index.pendingChanges.clear();
+                return;
+            }
+            boolean wasLoaded = index.loaded;
+            index.clear();
+            index.entries.putAll(staging.entries);
+            index.totalSize = staging.totalSize;
+            index.logRecords = staging.logRecords;
+            index.loaded = true;
+            // 重建已加载的索引不发通知（与之前一致）；首次加载时把目录比对发现的增删通知出去
+            if (!wasLoaded) {
+                notifyChanges(index, added, removed);
+            }
+            applyPendingChanges(index, !wasLoaded);
+            compactIfNeeded(index);
+        }
+
+        AppLog.d(TAG, (replayed ? "加载索引: " + index.directory.getName() : "重建索引: " + index.directory.getAbsolutePath()) +
+                "，" + staging.entries.size() + " 个文件，耗时 " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * 回放日志并与目录比对（在临时索引上执行）
+     * @return 没有日志或读取失败时返回 false，由调用方完整重建
+     */
+    private boolean loadIndex(DirIndex staging, List<Entry> added, List<Entry> removed) {
+        if (!staging.logFile.exists()) {
+            return false;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(staging.logFile), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                applyRecord(staging, line);
+                staging.logRecords++;
+            }
+        } catch (IOException e) {
+            AppLog.e(TAG, "读取索引日志失败，重建索引: " + staging.directory.getAbsolutePath(), e);
+            staging.clear();
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        String[] names = staging.directory.list();
+        if (names != null) {
+            syncWithDirectory(staging, names, added, removed);
+        }
+        return true;
+    }
+
+    /**
+     * 回放一条日志记录
+     * 格式：A\t文件名\t大小\t修改时间 或 D\t文件名
+     */
+    private void applyRecord(DirIndex index, String line) {
+        String[] parts = line.split("\t");
+        if (parts.length >= 4 && RECORD_ADD.equals(parts[0])) {
+            try {
+                long size = Long.parseLong(parts[2]);
+                long lastModified = Long.parseLong(parts[3]);
+                index.put(new Entry(new File(index.directory, parts[1]), size, lastModified));
+            } catch (NumberFormatException e) {
+                // 损坏的记录（如断电时写了一半），忽略
+            }
+        } else if (parts.length >= 2 && RECORD_DELETE.equals(parts[0])) {
+            index.remove(parts[1]);
+        }
+    }
+
+    /**
+     * 与目录实际文件名比对，补上外部新增的文件，移除外部删除的文件
+     * 只有新出现的文件需要 stat；变化记录到 added/removed，由调用方通知
+     */
+    private void syncWithDirectory(DirIndex index, String[] names, List<Entry> added, List<Entry> removed) {
+        Set<String> present = new HashSet<>(names.length * 2);
+        for (String name : names) {
+            present.add(name);
+            if (!index.entries.containsKey(name) && !isHiddenName(name)) {
+                File file = new File(index.directory, name);
+                if (file.isFile()) {
+                    Entry entry = statEntry(file);
+                    index.put(entry);
+                    appendAddRecord(index, entry);
+                    added.add(entry);
+                }
+            }
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (String name : index.entries.keySet()) {
+            if (!present.contains(name)) {
+                missing.add(name);
+            }
+        }
+        for (String name : missing) {
+            removed.add(index.remove(name));
+            appendDeleteRecord(index, name);
+        }
+
+        if (!added.isEmpty() || !missing.isEmpty()) {
+            AppLog.d(TAG, "索引校对: " + index.directory.getName() + "，新增 " + added.size() +
+                    "，移除 " + missing.size());
+        }
+    }
+
+    /**
+     * 完整重建索引并重写日志（在临时索引上执行）
+     */
+    private void rebuildIndex(DirIndex staging) {
+        staging.clear();
+        File[] files = staging.directory.listFiles(file -> file.isFile() && !isHiddenName(file.getName()));
+        if (files != null) {
+            for (File file : files) {
+                staging.put(statEntry(file));
+            }
+        }
+        totalReconciles.incrementAndGet();
+        rewriteLog(staging);
+    }
+
+    /**
+     * 重放加载期间记录的增删（调用方持有索引锁）
+     * 加载期间日志可能被临时索引整体重写，因此即使内存中已有条目也重新追加记录
+     */
+    private void applyPendingChanges(DirIndex index, boolean notify) {
+        for (Map.Entry<String, Boolean> change : index.pendingChanges.entrySet()) {
+            String name = change.getKey();
+            if (change.getValue()) {
+                File file = new File(index.directory, name);
+                if (!file.isFile()) {
+                    continue;
+                }
+                boolean isNew = !index.entries.containsKey(name);
+                Entry entry = statEntry(file);
+                index.put(entry);
+                appendAddRecord(index, entry);
+                if (notify && isNew) {
+                    notifyEntryAdded(index, entry);
+                }
+            } else {
+                Entry removed = index.remove(name);
+                if (removed != null) {
+                    appendDeleteRecord(index, name);
+                    if (notify) {
+                        notifyEntryRemoved(index, removed);
+                    }
+                }
+            }
+        }
+        index.pendingChanges.clear();
+    }
+
+    private void notifyChanges(DirIndex index, List<Entry> added, List<Entry> removed) {
+        for (Entry entry : added) {
+            notifyEntryAdded(index, entry);
+        }
+        for (Entry entry : removed) {
+            notifyEntryRemoved(index, entry);
+        }
+    }
+
+    private void notifyEntryAdded(DirIndex index, Entry entry) {
+        for (ChangeListener listener : listeners) {
+            listener.onEntryAdded(index.directory, entry);
+        }
+    }
+
+    private void notifyEntryRemoved(DirIndex index, Entry entry) {
+        for (ChangeListener listener : listeners) {
+            listener.onEntryRemoved(index.directory, entry);
+        }
+    }
+
+    private void compactIfNeeded(DirIndex index) {
+        if (index.logRecords > index.entries.size() * 2 + COMPACT_SLACK_RECORDS) {
+            rewriteLog(index);
+        }
+    }
+
+    /**
+     * 用当前内存中的条目重写日志（先写临时文件再重命名，避免写一半断电丢失索引）
+     */
+    private void rewriteLog(DirIndex index) {
+        File tempFile = new File(index.logFile.getParentFile(), index.logFile.getName() + ".tmp");
+        BufferedWriter writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(tempFile, false), StandardCharsets.UTF_8));
+            for (Entry entry : index.entries.values()) {
+                writer.write(formatAddRecord(entry));
+                writer.newLine();
+            }
+            writer.close();
+            writer = null;
+            if (!tempFile.renameTo(index.logFile)) {
+                AppLog.w(TAG, "重命名索引日志失败: " + index.logFile.getName());
+                tempFile.delete();
+                return;
+            }
+            index.logRecords = index.entries.size();
+        } catch (IOException e) {
+            AppLog.e(TAG, "写入索引日志失败: " + index.logFile.getName(), e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private void appendAddRecord(DirIndex index, Entry entry) {
+        appendLine(index, formatAddRecord(entry));
+    }
+
+    private void appendDeleteRecord(DirIndex index, String name) {
+        appendLine(index, RECORD_DELETE + "\t" + name);
+    }
+
+    private void appendLine(DirIndex index, String line) {
+        BufferedWriter writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(index.logFile, true), StandardCharsets.UTF_8));
+            writer.write(line);
+            writer.newLine();
+            index.logRecords++;
+        } catch (IOException e) {
+            AppLog.e(TAG, "追加索引记录失败: " + index.logFile.getName(), e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private String formatAddRecord(Entry entry) {
+        return RECORD_ADD + "\t" + entry.getName() + "\t" + entry.size + "\t" + entry.lastModified;
+    }
+
+    private Entry statEntry(File file) {
+        totalStatCalls.incrementAndGet();
+        return new Entry(file, file.length(), file.lastModified());
+    }
+
+    private static boolean matchesExtension(String name, String... extensions) {
+        if (extensions == null || extensions.length == 0) {
+            return true;
+        }
+        String lower = name.toLowerCase();
+        for (String ext : extensions) {
+            if (lower.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 将目录路径转换为日志文件名，如 /storage/1234-ABCD/DCIM/EVCam_Video -> _storage_1234-ABCD_DCIM_EVCam_Video.log
+     */
+    private static String toLogFileName(String directoryPath) {
+        StringBuilder sb = new StringBuilder(directoryPath.length() + 4);
+        for (int i = 0; i < directoryPath.length(); i++) {
+            char c = directoryPath.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) || c == '-' ? c : '_');
+        }
+        return sb.append(".log").toString();
+    }
+}
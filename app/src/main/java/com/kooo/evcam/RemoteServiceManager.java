@@ -13,6 +13,12 @@ import com.kooo.evcam.telegram.TelegramConfig;
 import com.kooo.evcam.feishu.FeishuApiClient;
 import com.kooo.evcam.feishu.FeishuBotManager;
 import com.kooo.evcam.feishu.FeishuConfig;
+import com.kooo.evcam.remote.core.CaptureScheduleRequest;
+import com.kooo.evcam.remote.core.ChatIdentifier;
+import com.kooo.evcam.remote.core.ClipRequest;
+import com.kooo.evcam.remote.handler.DingTalkHandler;
+import com.kooo.evcam.remote.handler.FeishuHandler;
+import com.kooo.evcam.remote.handler.TelegramHandler;
 
 /**
  * 远程服务管理器（单例）
@@ -67,6 +73,14 @@ public class RemoteServiceManager {
      */
     public interface StatusInfoProvider {
         String getFullStatusInfo();
+
+        /**
+         * 处理连拍/延时拍摄指令（需要 MainActivity 持有的摄像头）
+         * @return 执行结果消息，返回 null 表示 Activity 已销毁
+         */
+        default String onCaptureScheduleCommand(CaptureScheduleRequest request) {
+            return null;
+        }
     }
     
     private RemoteServiceManager() {
@@ -118,6 +132,24 @@ public class RemoteServiceManager {
         return buildBasicStatusInfo(context);
     }
 
+    /**
+     * 转发连拍/延时拍摄指令给 MainActivity（摄像头未打开时无法执行）
+     */
+    public String handleCaptureScheduleCommand(CaptureScheduleRequest request) {
+        StatusInfoProvider provider = statusInfoProviderRef != null ? statusInfoProviderRef.get() : null;
+        if (provider != null) {
+            try {
+                String result = provider.onCaptureScheduleCommand(request);
+                if (result != null) {
+                    return result;
+                }
+            } catch (Exception e) {
+                AppLog.e(TAG, "处理连拍/延时指令失败", e);
+            }
+        }
+        return "❌ 摄像头未打开，请先发送「启动录制」";
+    }
+
     public static synchronized RemoteServiceManager getInstance() {
         if (instance == null) {
             instance = new RemoteServiceManager();
@@ -366,12 +398,25 @@ public class RemoteServiceManager {
                     WakeUpHelper.launchForPhoto(context, conversationId, conversationType, userId);
                 }
 
+                @Override
+                public void onClipCommand(String conversationId, String conversationType, String userId, ClipRequest request) {
+                    // 片段截取不需要摄像头，直接在后台处理
+                    DingTalkHandler handler = new DingTalkHandler(context);
+                    handler.setApiClient(apiClient);
+                    handler.startRemoteClip(ChatIdentifier.dingtalk(conversationId, conversationType, userId), request);
+                }
+
                 @Override
                 public String getStatusInfo() {
                     // 优先使用 MainActivity 提供的完整状态信息
                     return RemoteServiceManager.this.getStatusInfo(context);
                 }
 
+                @Override
+                public String onCaptureScheduleCommand(CaptureScheduleRequest request) {
+                    return RemoteServiceManager.this.handleCaptureScheduleCommand(request);
+                }
+
                 @Override
                 public String onStartRecordingCommand() {
                     WakeUpHelper.launchForStartRecording(context);
@@ -458,12 +503,25 @@ public class RemoteServiceManager {
                     WakeUpHelper.launchForPhotoTelegram(context, chatId);
                 }
 
+                @Override
+                public void onClipCommand(long chatId, ClipRequest request) {
+                    // 片段截取不需要摄像头，直接在后台处理
+                    TelegramHandler handler = new TelegramHandler(context);
+                    handler.setApiClient(apiClient);
+                    handler.startRemoteClip(ChatIdentifier.telegram(chatId), request);
+                }
+
                 @Override
                 public String getStatusInfo() {
                     // 优先使用 MainActivity 提供的完整状态信息
                     return RemoteServiceManager.this.getStatusInfo(context);
                 }
 
+                @Override
+                public String onCaptureScheduleCommand(CaptureScheduleRequest request) {
+                    return RemoteServiceManager.this.handleCaptureScheduleCommand(request);
+                }
+
                 @Override
                 public String onStartRecordingCommand() {
                     WakeUpHelper.launchForStartRecording(context);
@@ -549,11 +607,24 @@ public class RemoteServiceManager {
                     WakeUpHelper.launchForPhotoFeishu(context, chatId, messageId);
                 }
 
+                @Override
+                public void onClipCommand(String chatId, String messageId, ClipRequest request) {
+                    // 片段截取不需要摄像头，直接在后台处理
+                    FeishuHandler handler = new FeishuHandler(context);
+                    handler.setApiClient(apiClient);
+                    handler.startRemoteClip(ChatIdentifier.feishu(chatId), request);
+                }
+
                 @Override
                 public String getStatusInfo() {
                     return RemoteServiceManager.this.getStatusInfo(context);
                 }
 
+                @Override
+                public String onCaptureScheduleCommand(CaptureScheduleRequest request) {
+                    return RemoteServiceManager.this.handleCaptureScheduleCommand(request);
+                }
+
                 @Override
                 public String onStartRecordingCommand() {
                     WakeUpHelper.launchForStartRecording(context);
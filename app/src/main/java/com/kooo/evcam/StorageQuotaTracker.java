@@ -0,0 +1,623 @@
+package com.kooo.evcam;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.kooo.evcam.playback.RecordingFileName;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 存储配额跟踪器
+ * 取代每小时一次的全目录扫描：按录制索引的增删事件维护每个目录、每个摄像头位置的占用字节数，
+ * 并用最小堆按文件名时间戳保存淘汰候选（最旧的在堆顶）。
+ *
+ * 工作方式：
+ * 1. 新分段开始时检查余量（配额余量 + 存储卷剩余空间），不足时立即删除最旧的文件
+ * 2. 新照片保存后检查图片配额
+ * 3. 只有U盘挂载（invalidate）或检测到偏差（淘汰时文件已不存在、目录文件数与记录不符）时才重新扫描
+ *
+ * 删除文件和操作录制索引都在独立线程上执行，不阻塞录制线程
+ */
+public class StorageQuotaTracker implements RecordingCatalog.ChangeListener {
+    private static final String TAG = "StorageQuotaTracker";
+
+    private static final long MB = 1024L * 1024L;
+    private static final long GB = 1024L * MB;
+
+    // 余量至少保留的字节数
+    private static final long MIN_HEADROOM_BYTES = 512 * MB;
+
+    // 余量 = 预计一批分段（所有摄像头）大小 × 此倍数
+    private static final int HEADROOM_SEGMENT_BATCHES = 3;
+
+    // 尚未观察到完整分段时使用的单个分段预估大小
+    private static final long DEFAULT_SEGMENT_BYTES = 100 * MB;
+
+    // 小于此大小的视频不参与分段大小估算（损坏/过短的文件）
+    private static final long MIN_SEGMENT_SAMPLE_BYTES = MB;
+
+    // 内部存储低空间阈值（3GB）
+    private static final long LOW_SPACE_THRESHOLD_BYTES = 3 * GB;
+
+    // 图片超出配额时额外释放的空间，避免每张照片都触发删除
+    private static final long PHOTO_EXTRA_FREE_BYTES = 32 * MB;
+
+    // 淘汰时连续发现多少个文件已不存在视为偏差，触发完整重建
+    private static final int DRIFT_MISSING_THRESHOLD = 3;
+
+    // 目录文件数比对的最小间隔（只读取文件名，不 stat）
+    private static final long SANITY_CHECK_INTERVAL_MS = 30 * 60 * 1000;
+
+    // 淘汰队列中已失效条目超过有效条目数时重建堆
+    private static final int QUEUE_COMPACT_MIN_STALE = 256;
+
+    /**
+     * 淘汰结果回调（在跟踪器线程上执行）
+     */
+    public interface EvictionListener {
+        /**
+         * @param typeName 类型名称（视频/图片）
+         * @param deletedCount 删除的文件数
+         * @param deletedBytes 释放的字节数
+         * @param lowSpace 是否因内部存储空间不足而删除
+         */
+        void onFilesEvicted(String typeName, int deletedCount, long deletedBytes, boolean lowSpace);
+    }
+
+    /**
+     * 淘汰候选（一个文件）
+     */
+    private static class Candidate {
+        final File file;
+        final String name;
+        final String position;
+        final long sortKey;
+        final long size;
+        boolean removed = false;
+
+        Candidate(File file, String position, long sortKey, long size) {
+            this.file = file;
+            this.name = file.getName();
+            this.position = position;
+            this.sortKey = sortKey;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 单个目录的配额状态
+     */
+    private static class DirQuota {
+        final File directory;
+        final Map<String, Candidate> candidates = new HashMap<>();
+        final PriorityQueue<Candidate> evictionQueue = new PriorityQueue<>(256, (a, b) -> {
+            int result = Long.compare(a.sortKey, b.sortKey);
+            return result != 0 ? result : a.name.compareTo(b.name);
+        });
+        final Map<String, long[]> positionBytes = new HashMap<>();
+        long totalBytes = 0;
+        int staleQueued = 0;
+        int missingOnEvict = 0;
+        long lastSanityCheckTime = 0;
+
+        DirQuota(File directory) {
+            this.directory = directory;
+        }
+
+        void add(Candidate candidate) {
+            Candidate old = candidates.put(candidate.name, candidate);
+            if (old != null) {
+                detach(old);
+            }
+            evictionQueue.add(candidate);
+            totalBytes += candidate.size;
+            addPositionBytes(candidate.position, candidate.size);
+        }
+
+        Candidate remove(String name) {
+            Candidate old = candidates.remove(name);
+            if (old != null) {
+                detach(old);
+            }
+            return old;
+        }
+
+        /**
+         * 从统计中扣除（堆中的条目延迟删除）
+         */
+        private void detach(Candidate candidate) {
+            candidate.removed = true;
+            staleQueued++;
+            totalBytes -= candidate.size;
+            addPositionBytes(candidate.position, -candidate.size);
+        }
+
+        /**
+         * 取出最旧的有效候选
+         */
+        Candidate pollOldest() {
+            Candidate candidate;
+            while ((candidate = evictionQueue.poll()) != null) {
+                if (candidate.removed) {
+                    staleQueued--;
+                    continue;
+                }
+                candidates.remove(candidate.name);
+                candidate.removed = true;
+                totalBytes -= candidate.size;
+                addPositionBytes(candidate.position, -candidate.size);
+                return candidate;
+            }
+            return null;
+        }
+
+        void compactQueueIfNeeded() {
+            if (staleQueued > QUEUE_COMPACT_MIN_STALE && staleQueued > candidates.size()) {
+                evictionQueue.clear();
+                evictionQueue.addAll(candidates.values());
+                staleQueued = 0;
+            }
+        }
+
+        private void addPositionBytes(String position, long delta) {
+            long[] bytes = positionBytes.get(position);
+            if (bytes == null) {
+                bytes = new long[1];
+                positionBytes.put(position, bytes);
+            }
+            bytes[0] += delta;
+        }
+    }
+
+    // 单例
+    private static StorageQuotaTracker instance;
+
+    private final Context context;
+    private final AppConfig appConfig;
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private final Map<String, DirQuota> quotas = new HashMap<>();
+
+    private HandlerThread trackerThread;
+    private volatile Handler trackerHandler;
+    private final AtomicBoolean videoCheckPending = new AtomicBoolean(false);
+    private final AtomicBoolean photoCheckPending = new AtomicBoolean(false);
+    private volatile EvictionListener evictionListener;
+
+    // 视频分段大小估算（指数移动平均）
+    private long averageSegmentBytes = 0;
+
+    // 统计
+    private long totalChecks = 0;
+    private long totalEvictedFiles = 0;
+    private long totalEvictedBytes = 0;
+    private long totalRescans = 0;
+
+    private StorageQuotaTracker(Context context) {
+        this.context = context.getApplicationContext();
+        this.appConfig = new AppConfig(this.context);
+    }
+
+    /**
+     * 获取单例实例
+     */
+    public static synchronized StorageQuotaTracker getInstance(Context context) {
+        if (instance == null) {
+            instance = new StorageQuotaTracker(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 启动跟踪（注册录制索引监听，重复调用无副作用）
+     */
+    public synchronized void start() {
+        if (trackerThread != null) {
+            return;
+        }
+        trackerThread = new HandlerThread("StorageQuota");
+        trackerThread.start();
+        trackerHandler = new Handler(trackerThread.getLooper());
+        RecordingCatalog.getInstance(context).addChangeListener(this);
+        AppLog.d(TAG, "存储配额跟踪已启动");
+    }
+
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener;
+    }
+
+    // ===== 触发点 =====
+
+    /**
+     * 新分段即将开始（开始录制 / 分段切换时调用）
+     * 在跟踪器线程上检查余量，不足时立即删除最旧的文件
+     */
+    public void onSegmentStarting() {
+        requestVideoCheck();
+    }
+
+    /**
+     * 请求检查视频和图片配额（启动后首次检测、设置变更、手动清理）
+     */
+    public void requestCheck() {
+        requestVideoCheck();
+        requestPhotoCheck();
+    }
+
+    /**
+     * 存储设备变化（U盘插拔）：丢弃所有跟踪状态，下次检查时从录制索引重新加载
+     */
+    public synchronized void invalidate() {
+        quotas.clear();
+        AppLog.d(TAG, "存储设备变化，已丢弃配额跟踪状态");
+    }
+
+    // ===== 查询 =====
+
+    /**
+     * 获取目录占用字节数（首次查询时从录制索引加载）
+     */
+    public long getUsedBytes(File directory) {
+        DirQuota quota = ensureLoaded(directory);
+        if (quota == null) {
+            return 0;
+        }
+        synchronized (this) {
+            return quota.totalBytes;
+        }
+    }
+
+    /**
+     * 获取目录中各摄像头位置的占用字节数
+     * @return 位置 -> 字节数（文件名中没有位置的文件计入 "other"）
+     */
+    public Map<String, Long> getPositionUsage(File directory) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        DirQuota quota = ensureLoaded(directory);
+        if (quota == null) {
+            return result;
+        }
+        synchronized (this) {
+            for (Map.Entry<String, long[]> entry : quota.positionBytes.entrySet()) {
+                if (entry.getValue()[0] > 0) {
+                    result.put(entry.getKey(), entry.getValue()[0]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public synchronized String getStats() {
+        long trackedBytes = 0;
+        int trackedFiles = 0;
+        for (DirQuota quota : quotas.values()) {
+            trackedBytes += quota.totalBytes;
+            trackedFiles += quota.candidates.size();
+        }
+        return String.format("跟踪: %d 个文件 / %s, 检查: %d 次, 淘汰: %d 个 / %s, 重建: %d 次, 分段估算: %s",
+                trackedFiles, StorageHelper.formatSize(trackedBytes), totalChecks,
+                totalEvictedFiles, StorageHelper.formatSize(totalEvictedBytes), totalRescans,
+                StorageHelper.formatSize(getSegmentEstimate()));
+    }
+
+    // ===== 录制索引变化（在修改索引的线程上回调） =====
+
+    @Override
+    public void onEntryAdded(File directory, RecordingCatalog.Entry entry) {
+        boolean isPhoto;
+        synchronized (this) {
+            DirQuota quota = quotas.get(directory.getAbsolutePath());
+            if (quota == null) {
+                // 尚未加载的目录在首次检查时从索引完整加载
+                return;
+            }
+            quota.add(createCandidate(entry));
+            isPhoto = isPhotoName(entry.getName());
+            if (!isPhoto && entry.getName().endsWith(".mp4") && entry.getSize() >= MIN_SEGMENT_SAMPLE_BYTES) {
+                averageSegmentBytes = averageSegmentBytes == 0
+                        ? entry.getSize()
+                        : (averageSegmentBytes * 7 + entry.getSize()) / 8;
+            }
+        }
+        if (isPhoto) {
+            requestPhotoCheck();
+        }
+    }
+
+    @Override
+    public void onEntryRemoved(File directory, RecordingCatalog.Entry entry) {
+        synchronized (this) {
+            DirQuota quota = quotas.get(directory.getAbsolutePath());
+            if (quota != null) {
+                quota.remove(entry.getName());
+                quota.compactQueueIfNeeded();
+            }
+        }
+    }
+
+    // ===== 私有方法 =====
+
+    private void requestVideoCheck() {
+        Handler handler = trackerHandler;
+        if (handler != null && videoCheckPending.compareAndSet(false, true)) {
+            handler.post(() -> {
+                videoCheckPending.set(false);
+                checkVideoHeadroom();
+            });
+        }
+    }
+
+    private void requestPhotoCheck() {
+        Handler handler = trackerHandler;
+        if (handler != null && photoCheckPending.compareAndSet(false, true)) {
+            handler.post(() -> {
+                photoCheckPending.set(false);
+                checkPhotoQuota();
+            });
+        }
+    }
+
+    /**
+     * 检查视频余量（跟踪器线程）
+     * 1. 配额：下一批分段写入后仍不超过视频存储限制
+     * 2. 存储卷：剩余空间不低于余量（使用内部存储时不低于3GB）
+     */
+    private void checkVideoHeadroom() {
+        File videoDir = StorageHelper.getVideoDir(context);
+        DirQuota quota = ensureLoaded(videoDir);
+        if (quota == null) {
+            return;
+        }
+        checkForDrift(quota);
+
+        long batchBytes = getSegmentEstimate() * Math.max(1, getActivePositionCount(quota));
+        long headroom = Math.max(MIN_HEADROOM_BYTES, batchBytes * HEADROOM_SEGMENT_BATCHES);
+        int limitGb = appConfig.getVideoStorageLimitGb();
+        boolean usingInternal = !appConfig.isUsingExternalSdCard() || StorageHelper.isSdCardFallback(context);
+
+        long usedBytes;
+        synchronized (this) {
+            totalChecks++;
+            usedBytes = quota.totalBytes;
+        }
+
+        long quotaDeficit = 0;
+        if (limitGb > 0) {
+            quotaDeficit = usedBytes + headroom - limitGb * GB;
+        }
+
+        long spaceDeficit = 0;
+        if (limitGb > 0 || usingInternal) {
+            long required = usingInternal ? Math.max(LOW_SPACE_THRESHOLD_BYTES, headroom) : headroom;
+            long available = StorageHelper.getAvailableSpace(videoDir);
+            if (available >= 0) {
+                spaceDeficit = required - available;
+            }
+        }
+
+        if (quotaDeficit <= 0 && spaceDeficit <= 0) {
+            return;
+        }
+
+        // 多释放一批分段的空间，避免每次分段切换都删除
+        long bytesToFree = Math.max(quotaDeficit, spaceDeficit) + batchBytes;
+        boolean lowSpace = usingInternal && spaceDeficit > 0 && spaceDeficit >= quotaDeficit;
+        AppLog.d(TAG, "视频余量不足（已用 " + StorageHelper.formatSize(usedBytes) +
+                "，需释放 " + StorageHelper.formatSize(bytesToFree) + "），开始删除最旧的文件");
+        long freed = evict(quota, bytesToFree, "视频", lowSpace);
+
+        // 内部存储空间不足且视频已删完时，继续删除图片
+        if (usingInternal && spaceDeficit > 0 && freed < spaceDeficit) {
+            DirQuota photoQuota = ensureLoaded(StorageHelper.getPhotoDir(context));
+            if (photoQuota != null) {
+                evict(photoQuota, spaceDeficit - freed, "图片", true);
+            }
+        }
+    }
+
+    /**
+     * 检查图片配额（跟踪器线程）
+     */
+    private void checkPhotoQuota() {
+        int limitGb = appConfig.getPhotoStorageLimitGb();
+        if (limitGb <= 0) {
+            return;
+        }
+        DirQuota quota = ensureLoaded(StorageHelper.getPhotoDir(context));
+        if (quota == null) {
+            return;
+        }
+        checkForDrift(quota);
+
+        long usedBytes;
+        synchronized (this) {
+            totalChecks++;
+            usedBytes = quota.totalBytes;
+        }
+        long limitBytes = limitGb * GB;
+        if (usedBytes > limitBytes) {
+            evict(quota, usedBytes - limitBytes + PHOTO_EXTRA_FREE_BYTES, "图片", false);
+        }
+    }
+
+    /**
+     * 按文件名时间戳从旧到新删除，直到释放指定字节数
+     * @return 实际释放的字节数
+     */
+    private long evict(DirQuota quota, long bytesToFree, String typeName, boolean lowSpace) {
+        RecordingCatalog catalog = RecordingCatalog.getInstance(context);
+        long freed = 0;
+        int deletedCount = 0;
+
+        while (freed < bytesToFree) {
+            Candidate candidate;
+            synchronized (this) {
+                candidate = quota.pollOldest();
+            }
+            if (candidate == null) {
+                AppLog.w(TAG, typeName + "已无可删除的文件，仍需释放 " +
+                        StorageHelper.formatSize(bytesToFree - freed));
+                break;
+            }
+
+            // 删除文件和更新索引不持有跟踪器锁（索引回调会再次进入跟踪器）
+            if (candidate.file.delete()) {
+                freed += candidate.size;
+                deletedCount++;
+                catalog.onFileRemoved(candidate.file);
+                AppLog.d(TAG, "已删除" + typeName + ": " + candidate.name + " (" +
+                        StorageHelper.formatSize(candidate.size) + ")");
+            } else if (!candidate.file.exists()) {
+                // 跟踪状态与实际不符（文件被外部删除）
+                catalog.onFileRemoved(candidate.file);
+                synchronized (this) {
+                    quota.missingOnEvict++;
+                }
+            } else {
+                AppLog.w(TAG, "删除" + typeName + "失败: " + candidate.name);
+                break;
+            }
+        }
+
+        synchronized (this) {
+            totalEvictedFiles += deletedCount;
+            totalEvictedBytes += freed;
+        }
+
+        if (deletedCount > 0) {
+            AppLog.d(TAG, typeName + "删除完成：" + deletedCount + " 个文件，释放 " + StorageHelper.formatSize(freed));
+            EvictionListener listener = evictionListener;
+            if (listener != null) {
+                listener.onFilesEvicted(typeName, deletedCount, freed, lowSpace);
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * 偏差检测
+     * 1. 淘汰时多次发现文件已不存在：完整重建
+     * 2. 定期比对目录文件数（只读文件名）：不一致时让录制索引比对目录，增删通过回调同步
+     */
+    private void checkForDrift(DirQuota quota) {
+        boolean rebuild;
+        boolean sanityDue;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            rebuild = quota.missingOnEvict >= DRIFT_MISSING_THRESHOLD;
+            sanityDue = now - quota.lastSanityCheckTime >= SANITY_CHECK_INTERVAL_MS;
+            if (sanityDue) {
+                quota.lastSanityCheckTime = now;
+            }
+        }
+
+        if (rebuild) {
+            AppLog.w(TAG, "检测到配额偏差（多个文件已被外部删除），重建: " + quota.directory.getAbsolutePath());
+            RecordingCatalog.getInstance(context).reconcile(quota.directory);
+            reload(quota.directory);
+            return;
+        }
+
+        if (sanityDue) {
+            String[] names = quota.directory.list((dir, name) -> !RecordingCatalog.isHiddenName(name));
+            int tracked;
+            synchronized (this) {
+                tracked = quota.candidates.size();
+            }
+            if (names != null && names.length != tracked) {
+                AppLog.w(TAG, "目录文件数与跟踪记录不符（实际 " + names.length + "，记录 " + tracked + "），比对目录");
+                RecordingCatalog.getInstance(context).refresh(quota.directory);
+            }
+        }
+    }
+
+    /**
+     * 获取目录配额状态，未加载时从录制索引加载
+     */
+    private DirQuota ensureLoaded(File directory) {
+        if (directory == null || !directory.isDirectory()) {
+            return null;
+        }
+        synchronized (this) {
+            DirQuota quota = quotas.get(directory.getAbsolutePath());
+            if (quota != null) {
+                return quota;
+            }
+        }
+        return reload(directory);
+    }
+
+    /**
+     * 从录制索引完整加载目录（索引本身在首次访问时与目录比对）
+     */
+    private DirQuota reload(File directory) {
+        long startTime = System.currentTimeMillis();
+        // 先注册空状态再读取索引，读取期间的增删回调不会丢失（新增/删除均为幂等操作）
+        DirQuota quota = new DirQuota(directory);
+        quota.lastSanityCheckTime = startTime;
+        synchronized (this) {
+            quotas.put(directory.getAbsolutePath(), quota);
+        }
+
+        List<RecordingCatalog.Entry> entries = RecordingCatalog.getInstance(context).listEntries(directory);
+        List<Candidate> loaded = new ArrayList<>(entries.size());
+        for (RecordingCatalog.Entry entry : entries) {
+            loaded.add(createCandidate(entry));
+        }
+
+        synchronized (this) {
+            for (Candidate candidate : loaded) {
+                if (!quota.candidates.containsKey(candidate.name)) {
+                    quota.add(candidate);
+                }
+            }
+            totalRescans++;
+            AppLog.d(TAG, "加载配额: " + directory.getAbsolutePath() + "，" + quota.candidates.size() +
+                    " 个文件，" + StorageHelper.formatSize(quota.totalBytes) + "，耗时 " +
+                    (System.currentTimeMillis() - startTime) + "ms");
+        }
+        return quota;
+    }
+
+    private Candidate createCandidate(RecordingCatalog.Entry entry) {
+        String name = entry.getName();
+        long key = RecordingFileName.parseTimestampKey(name);
+        // 按文件名时间戳排序；不符合命名格式的文件按修改时间排序
+        long sortKey = key != RecordingFileName.INVALID_KEY
+                ? RecordingFileName.toEpochMillis(key, timeZone)
+                : entry.getLastModified();
+        String position = key != RecordingFileName.INVALID_KEY ? RecordingFileName.extractPosition(name) : null;
+        return new Candidate(entry.getFile(), position != null ? position : "other", sortKey, entry.getSize());
+    }
+
+    private synchronized long getSegmentEstimate() {
+        return averageSegmentBytes > 0 ? averageSegmentBytes : DEFAULT_SEGMENT_BYTES;
+    }
+
+    private synchronized int getActivePositionCount(DirQuota quota) {
+        int count = 0;
+        for (Map.Entry<String, long[]> entry : quota.positionBytes.entrySet()) {
+            if (!"other".equals(entry.getKey()) && entry.getValue()[0] > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isPhotoName(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+    }
+}
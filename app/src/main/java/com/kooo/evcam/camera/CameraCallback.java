@@ -32,4 +32,10 @@ public interface CameraCallback {
      * @param previewSize 预览尺寸
      */
     void onPreviewSizeChosen(String cameraId, Size previewSize);
+
+    /**
+     * 会话建立后收到第一帧（每次创建会话回调一次，在摄像头后台线程上）
+     */
+    default void onFirstFrame(String cameraId) {
+    }
 }
@@ -0,0 +1,322 @@
+package com.kooo.evcam.camera;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单路摄像头的录制管线指标
+ *
+ * 管线各阶段：
+ *   Camera 帧到达 → drawFrame 完成（渲染延迟）
+ *   → 编码器输出（编码延迟，按 PTS 匹配渲染时刻）
+ *   → Muxer 写入（writeSampleData 耗时，U 盘写入慢时在这里体现）
+ * 另外记录写入队列深度、直接写入/预录写入/丢弃的帧数、写入字节数、分段切换耗时和切换间隙。
+ *
+ * 热路径上只有原子自增和 System.nanoTime，不加锁、不分配对象。
+ * 渲染时刻队列是单生产者（编码线程）/ 单消费者（muxer 线程）的环，满了就不再记录编码延迟。
+ */
+public class CameraPipelineMetrics {
+
+    /** 渲染时刻队列长度（编码器内部排队的帧数远小于此值） */
+    private static final int TIMELINE_SIZE = 64;
+    private static final int TIMELINE_MASK = TIMELINE_SIZE - 1;
+
+    /** 速率计算的最短窗口 */
+    private static final long RATE_WINDOW_NS = 1_000_000_000L;
+
+    private final String key;
+
+    // 延迟直方图
+    private final LatencyHistogram renderLatency = new LatencyHistogram();
+    private final LatencyHistogram encodeLatency = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram segmentSwitchLatency = new LatencyHistogram();
+    private final LatencyHistogram segmentGap = new LatencyHistogram();  // 上一段最后一帧到新分段第一帧
+
+    // 帧计数
+    private final AtomicLong framesArrived = new AtomicLong();
+    private final AtomicLong framesDrawn = new AtomicLong();
+    private final AtomicLong framesEncoded = new AtomicLong();
+    private final AtomicLong framesWritten = new AtomicLong();   // 实时帧直接写入 Muxer
+    private final AtomicLong framesFlushed = new AtomicLong();   // 预录缓冲写入
+    private final AtomicLong framesDropped = new AtomicLong();   // 抽帧、编码器异常、等待关键帧时丢弃
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    // 写入队列深度
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    // 渲染时刻队列（PTS → 渲染完成时间）
+    private final long[] timelinePtsUs = new long[TIMELINE_SIZE];
+    private final long[] timelineDrawnNs = new long[TIMELINE_SIZE];
+    private final AtomicLong timelineHead = new AtomicLong();  // 编码线程写
+    private final AtomicLong timelineTail = new AtomicLong();  // muxer 线程读
+
+    // 速率（只在读取线程上计算）
+    private long rateSampleNs = 0;
+    private long rateSampleBytes = 0;
+    private long rateSampleFrames = 0;
+    private long bytesPerSec = 0;
+    private float writtenFps = 0;
+
+    public CameraPipelineMetrics(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    // ==================== 记录（热路径） ====================
+
+    /**
+     * Camera 帧到达（onFrameAvailable）
+     */
+    public void onFrameArrived() {
+        framesArrived.incrementAndGet();
+    }
+
+    /**
+     * 帧已渲染到编码器输入 Surface（编码线程调用）
+     * @param ptsUs 交给编码器的呈现时间（微秒），编码器输出时按此匹配
+     * @param arrivedNs 帧到达时的 System.nanoTime
+     * @param drawnNs drawFrame 完成时的 System.nanoTime
+     */
+    public void onFrameDrawn(long ptsUs, long arrivedNs, long drawnNs) {
+        framesDrawn.incrementAndGet();
+        renderLatency.recordNanos(drawnNs - arrivedNs);
+
+        long head = timelineHead.get();
+        if (head - timelineTail.get() < TIMELINE_SIZE) {
+            int slot = (int) (head & TIMELINE_MASK);
+            timelinePtsUs[slot] = ptsUs;
+            timelineDrawnNs[slot] = drawnNs;
+            timelineHead.lazySet(head + 1);
+        }
+    }
+
+    /**
+     * 编码器输出一帧（muxer 线程调用）
+     * @param ptsUs 编码器输出的原始呈现时间（与 onFrameDrawn 的 ptsUs 相同）
+     */
+    public void onEncoderOutput(long ptsUs, long nowNs) {
+        framesEncoded.incrementAndGet();
+        long tail = timelineTail.get();
+        long head = timelineHead.get();
+        while (tail < head) {
+            int slot = (int) (tail & TIMELINE_MASK);
+            long drawnPts = timelinePtsUs[slot];
+            if (drawnPts > ptsUs) {
+                break;  // 不是本次渲染的帧（如编码器重建前的残留），不计
+            }
+            tail++;
+            if (drawnPts == ptsUs) {
+                encodeLatency.recordNanos(nowNs - timelineDrawnNs[slot]);
+                break;
+            }
+            // 更早的 PTS 说明该帧被编码器丢弃，跳过
+        }
+        timelineTail.lazySet(tail);
+    }
+
+    /**
+     * 实时帧写入 Muxer
+     * @param size 帧字节数
+     * @param writeNs writeSampleData 耗时
+     */
+    public void onFrameWritten(int size, long writeNs) {
+        framesWritten.incrementAndGet();
+        bytesWritten.addAndGet(size);
+        writeLatency.recordNanos(writeNs);
+    }
+
+    /**
+     * 预录缓冲写入新文件
+     */
+    public void onFramesFlushed(int frames, long bytes) {
+        framesFlushed.addAndGet(frames);
+        bytesWritten.addAndGet(bytes);
+    }
+
+    public void onFrameDropped() {
+        framesDropped.incrementAndGet();
+    }
+
+    /**
+     * 写入队列深度变化（投递 drainEncoder 时调用）
+     */
+    public void onQueueDepth(int depth) {
+        queueDepth.lazySet(depth);
+        int max;
+        while (depth > (max = maxQueueDepth.get())) {
+            if (maxQueueDepth.compareAndSet(max, depth)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 分段切换完成
+     */
+    public void onSegmentSwitch(long durationNs) {
+        segmentSwitchLatency.recordNanos(durationNs);
+    }
+
+    /**
+     * 分段切换间隙（上一段最后一帧写入到新分段第一帧写入）
+     */
+    public void onSegmentGap(long gapNs) {
+        segmentGap.recordNanos(gapNs);
+    }
+
+    /**
+     * 清空所有指标（开始新的录制时调用）
+     */
+    public void reset() {
+        renderLatency.reset();
+        encodeLatency.reset();
+        writeLatency.reset();
+        segmentSwitchLatency.reset();
+        segmentGap.reset();
+        framesArrived.set(0);
+        framesDrawn.set(0);
+        framesEncoded.set(0);
+        framesWritten.set(0);
+        framesFlushed.set(0);
+        framesDropped.set(0);
+        bytesWritten.set(0);
+        maxQueueDepth.set(queueDepth.get());
+        synchronized (this) {
+            rateSampleNs = 0;
+            bytesPerSec = 0;
+            writtenFps = 0;
+        }
+    }
+
+    // ==================== 读取 ====================
+
+    public LatencyHistogram getRenderLatency() {
+        return renderLatency;
+    }
+
+    public LatencyHistogram getEncodeLatency() {
+        return encodeLatency;
+    }
+
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    public LatencyHistogram getSegmentSwitchLatency() {
+        return segmentSwitchLatency;
+    }
+
+    public LatencyHistogram getSegmentGap() {
+        return segmentGap;
+    }
+
+    public long getFramesArrived() {
+        return framesArrived.get();
+    }
+
+    public long getFramesDrawn() {
+        return framesDrawn.get();
+    }
+
+    public long getFramesEncoded() {
+        return framesEncoded.get();
+    }
+
+    public long getFramesWritten() {
+        return framesWritten.get();
+    }
+
+    public long getFramesFlushed() {
+        return framesFlushed.get();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * 更新写入速率（距上次计算不足 1 秒时沿用上次结果）
+     */
+    private synchronized void updateRates() {
+        long now = System.nanoTime();
+        long bytes = bytesWritten.get();
+        long frames = framesWritten.get();
+        if (rateSampleNs == 0 || bytes < rateSampleBytes || frames < rateSampleFrames) {
+            rateSampleNs = now;
+            rateSampleBytes = bytes;
+            rateSampleFrames = frames;
+            return;
+        }
+        long elapsed = now - rateSampleNs;
+        if (elapsed < RATE_WINDOW_NS) {
+            return;
+        }
+        bytesPerSec = (bytes - rateSampleBytes) * 1_000_000_000L / elapsed;
+        writtenFps = (frames - rateSampleFrames) * 1e9f / elapsed;
+        rateSampleNs = now;
+        rateSampleBytes = bytes;
+        rateSampleFrames = frames;
+    }
+
+    public synchronized long getBytesPerSec() {
+        updateRates();
+        return bytesPerSec;
+    }
+
+    public synchronized float getWrittenFps() {
+        updateRates();
+        return writtenFps;
+    }
+
+    /**
+     * 单行摘要（录制状态浮层），如 "front 30fps 512KB/s q1 编码12ms 写入3ms 丢0"
+     */
+    public String formatCompact() {
+        return String.format(Locale.US, "%s %.0ffps %dKB/s q%d 编码%.0fms 写入%.0fms 丢%d",
+                key, getWrittenFps(), getBytesPerSec() / 1024, getQueueDepth(),
+                encodeLatency.getPercentileUs(99) / 1000.0, writeLatency.getPercentileUs(99) / 1000.0,
+                getFramesDropped());
+    }
+
+    /**
+     * 多行详情（远程状态查询）
+     */
+    public String formatDetail() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "• %s: %.1ffps %dKB/s 队列%d(峰值%d)\n",
+                key, getWrittenFps(), getBytesPerSec() / 1024, getQueueDepth(), getMaxQueueDepth()));
+        sb.append("  渲染 ").append(renderLatency.format()).append("\n");
+        sb.append("  编码 ").append(encodeLatency.format()).append("\n");
+        sb.append("  写入 ").append(writeLatency.format()).append("\n");
+        sb.append(String.format(Locale.US, "  帧: 到达%d 渲染%d 编码%d 写入%d 预录%d 丢弃%d",
+                getFramesArrived(), getFramesDrawn(), getFramesEncoded(), getFramesWritten(),
+                getFramesFlushed(), getFramesDropped()));
+        if (segmentSwitchLatency.getCount() > 0) {
+            sb.append(String.format(Locale.US, "\n  切段 %d次 平均%.0fms 最大%.0fms", segmentSwitchLatency.getCount(),
+                    segmentSwitchLatency.getMeanUs() / 1000.0, segmentSwitchLatency.getMaxUs() / 1000.0));
+        }
+        if (segmentGap.getCount() > 0) {
+            sb.append(String.format(Locale.US, " 间隙平均%.0fms 最大%.0fms",
+                    segmentGap.getMeanUs() / 1000.0, segmentGap.getMaxUs() / 1000.0));
+        }
+        return sb.toString();
+    }
+}
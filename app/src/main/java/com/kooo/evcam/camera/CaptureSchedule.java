@@ -0,0 +1,112 @@
+package com.kooo.evcam.camera;
+
+/**
+ * 连拍/延时拍摄的节拍计算（纯 Java）
+ *
+ * 第 n 拍的时间固定为 start + n * interval，不随处理耗时累积漂移；
+ * 调度线程被拖慢、错过一拍以上时直接跳到当前这一拍，错过的拍计入 missed，
+ * 既不补拍也不让后续节拍整体后移。
+ */
+final class CaptureSchedule {
+
+    /** 没有可拍的节拍（已结束） */
+    static final int FINISHED = -1;
+
+    private final long startMs;
+    private final long intervalMs;
+    private final int maxShots;     // 0 表示不限张数
+    private final long endMs;       // 最后一拍不晚于此时间
+    private int nextIndex;
+    private int missed;
+
+    /**
+     * @param maxShots 最多拍几次，0 表示只受 durationMs 限制
+     * @param durationMs 持续时长，0 表示只受 maxShots 限制
+     */
+    CaptureSchedule(long startMs, long intervalMs, int maxShots, long durationMs) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("intervalMs must be positive");
+        }
+        this.startMs = startMs;
+        this.intervalMs = intervalMs;
+        this.maxShots = Math.max(0, maxShots);
+        this.endMs = durationMs > 0 ? startMs + durationMs : Long.MAX_VALUE;
+    }
+
+    /**
+     * 到点时领取本次要拍的节拍
+     * @return 节拍序号，已结束时返回 {@link #FINISHED}
+     */
+    int claim(long nowMs) {
+        int last = lastIndex();
+        if (nextIndex > last) {
+            return FINISHED;
+        }
+        int index = nextIndex;
+        long late = nowMs - shotTime(index);
+        if (late >= intervalMs) {
+            long target = Math.min(index + late / intervalMs, (long) last + 1);
+            missed += (int) (target - index);
+            index = (int) target;
+        }
+        if (index > last) {
+            nextIndex = index;
+            return FINISHED;
+        }
+        nextIndex = index + 1;
+        return index;
+    }
+
+    /**
+     * 距下一拍的等待时间（毫秒，已到点时为 0）
+     */
+    long delayUntilNext(long nowMs) {
+        return Math.max(0, shotTime(nextIndex) - nowMs);
+    }
+
+    /**
+     * 第 index 拍的计划时间（用作文件时间戳，保证每拍的秒数不同）
+     */
+    long shotTime(int index) {
+        return startMs + index * intervalMs;
+    }
+
+    boolean isFinished() {
+        return nextIndex > lastIndex();
+    }
+
+    /**
+     * 已领取的节拍数（含错过的）
+     */
+    int getElapsedShots() {
+        return nextIndex;
+    }
+
+    /**
+     * 因调度落后而错过的节拍数
+     */
+    int getMissedShots() {
+        return missed;
+    }
+
+    /**
+     * 计划总拍数，不限时返回 -1
+     */
+    int getTotalShots() {
+        return lastIndex() == Integer.MAX_VALUE ? -1 : lastIndex() + 1;
+    }
+
+    long getIntervalMs() {
+        return intervalMs;
+    }
+
+    long getStartMs() {
+        return startMs;
+    }
+
+    private int lastIndex() {
+        long byTime = endMs == Long.MAX_VALUE ? Integer.MAX_VALUE : (endMs - startMs) / intervalMs;
+        long byCount = maxShots > 0 ? maxShots - 1 : Integer.MAX_VALUE;
+        return (int) Math.min(Integer.MAX_VALUE, Math.min(byTime, byCount));
+    }
+}
@@ -0,0 +1,387 @@
+package com.kooo.evcam.camera;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Size;
+
+import com.kooo.evcam.AppConfig;
+import com.kooo.evcam.AppLog;
+import com.kooo.evcam.RecordingCatalog;
+import com.kooo.evcam.StorageHelper;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连拍 / 延时拍摄调度器
+ *
+ * 按固定节拍从所有已连接摄像头的预览抓取画面，复制到启动时预分配的 Bitmap 中，
+ * 交给小型工作线程池压缩成 JPEG 或编码进延时 MP4（{@link TimelapseEncoder}）。
+ * 每路摄像头的 Bitmap 数量固定：到点时没有空闲 Bitmap（上一帧还没写完，通常是存储太慢）就丢弃这一拍，
+ * 内存占用不随拍摄时长和存储速度增长。剩余空间不足时自动停止。
+ */
+public class CaptureScheduler {
+    private static final String TAG = "CaptureScheduler";
+
+    public static final long MIN_INTERVAL_MS = 1000;   // 文件名精确到秒，间隔不能小于 1 秒
+    private static final int WORKER_THREADS = 2;
+    private static final int JPEG_FRAMES_PER_CAMERA = 2;
+    private static final int VIDEO_FRAMES_PER_CAMERA = 1;  // 同一路的帧必须按顺序进编码器
+    private static final int JPEG_QUALITY = 90;
+    private static final long MIN_FREE_SPACE = 200L * 1024 * 1024;
+    private static final long WORKER_DRAIN_TIMEOUT_MS = 10_000;
+    static final String TIMELAPSE_DIR_NAME = "timelapse";
+
+    /** 连拍 */
+    public static final int MODE_BURST = 1;
+    /** 延时拍摄（JPEG 序列） */
+    public static final int MODE_TIMELAPSE = 2;
+    /** 延时拍摄（合成 MP4） */
+    public static final int MODE_TIMELAPSE_VIDEO = 3;
+
+    private final Context context;
+    private final MultiCameraManager cameraManager;
+    private final SimpleDateFormat fileTimeFormat = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault());
+
+    private HandlerThread schedulerThread;
+    private Handler schedulerHandler;
+    private ExecutorService workers;
+    private CaptureSchedule schedule;
+    private final List<Lane> lanes = new ArrayList<>();
+    private int mode;
+    private boolean watermarkEnabled;
+    private volatile boolean running = false;
+    private String lastSummary;
+
+    /**
+     * 单路摄像头的抓拍状态
+     */
+    private static class Lane {
+        final String key;
+        final SingleCamera camera;
+        final ArrayBlockingQueue<Bitmap> freeFrames;
+        TimelapseEncoder encoder;
+        final AtomicInteger saved = new AtomicInteger();
+        final AtomicInteger dropped = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+
+        Lane(String key, SingleCamera camera, int frameCount) {
+            this.key = key;
+            this.camera = camera;
+            this.freeFrames = new ArrayBlockingQueue<>(frameCount);
+        }
+    }
+
+    CaptureScheduler(Context context, MultiCameraManager cameraManager) {
+        this.context = context.getApplicationContext();
+        this.cameraManager = cameraManager;
+    }
+
+    /**
+     * 开始连拍：每路摄像头拍 count 张，间隔 intervalMs
+     * @return false 表示已有任务在运行或没有可用摄像头
+     */
+    public boolean startBurst(int count, long intervalMs) {
+        return start(MODE_BURST, intervalMs, count, 0);
+    }
+
+    /**
+     * 开始延时拍摄
+     * @param durationMs 持续时长
+     * @param toVideo true 表示合成为 MP4，false 表示保存 JPEG 序列
+     * @return false 表示已有任务在运行或没有可用摄像头
+     */
+    public boolean startTimelapse(long intervalMs, long durationMs, boolean toVideo) {
+        return start(toVideo ? MODE_TIMELAPSE_VIDEO : MODE_TIMELAPSE, intervalMs, 0, durationMs);
+    }
+
+    private synchronized boolean start(int mode, long intervalMs, int count, long durationMs) {
+        if (running || schedulerThread != null) {
+            // schedulerThread 不为 null 说明上一次任务还在收尾
+            AppLog.w(TAG, "Capture schedule already running, ignore start");
+            return false;
+        }
+        Map<String, SingleCamera> cameras = cameraManager.getConnectedCameras();
+        if (cameras.isEmpty()) {
+            AppLog.w(TAG, "No connected cameras for capture schedule");
+            return false;
+        }
+
+        this.mode = mode;
+        this.watermarkEnabled = new AppConfig(context).isTimestampWatermarkEnabled();
+        long startMs = System.currentTimeMillis();
+        String startTimestamp = fileTimeFormat.format(new Date(startMs));
+        int framesPerCamera = mode == MODE_TIMELAPSE_VIDEO ? VIDEO_FRAMES_PER_CAMERA : JPEG_FRAMES_PER_CAMERA;
+
+        lanes.clear();
+        for (Map.Entry<String, SingleCamera> entry : cameras.entrySet()) {
+            Size size = entry.getValue().getPreviewSize();
+            if (size == null) {
+                AppLog.w(TAG, "Camera " + entry.getKey() + " has no preview size, skipped");
+                continue;
+            }
+            Lane lane = new Lane(entry.getKey(), entry.getValue(), framesPerCamera);
+            try {
+                // 启动时一次性分配，拍摄过程中只复用
+                for (int i = 0; i < framesPerCamera; i++) {
+                    lane.freeFrames.add(Bitmap.createBitmap(size.getWidth(), size.getHeight(), Bitmap.Config.ARGB_8888));
+                }
+            } catch (OutOfMemoryError e) {
+                AppLog.e(TAG, "Camera " + lane.key + " failed to allocate capture frames", e);
+                recycleFrames(lane);
+                continue;
+            }
+            if (mode == MODE_TIMELAPSE_VIDEO) {
+                File outputFile = new File(new File(StorageHelper.getVideoDir(context), TIMELAPSE_DIR_NAME),
+                        startTimestamp + "_" + lane.key + ".mp4");
+                TimelapseEncoder encoder = new TimelapseEncoder(lane.key, outputFile, size.getWidth(), size.getHeight());
+                if (encoder.start()) {
+                    lane.encoder = encoder;
+                } else {
+                    AppLog.w(TAG, "Camera " + lane.key + " timelapse encoder unavailable, fallback to JPEG");
+                }
+            }
+            lanes.add(lane);
+        }
+        if (lanes.isEmpty()) {
+            return false;
+        }
+
+        schedule = new CaptureSchedule(startMs, Math.max(MIN_INTERVAL_MS, intervalMs), count, durationMs);
+        workers = Executors.newFixedThreadPool(WORKER_THREADS, r -> new Thread(r, "CaptureWorker"));
+        schedulerThread = new HandlerThread("CaptureScheduler");
+        schedulerThread.start();
+        schedulerHandler = new Handler(schedulerThread.getLooper());
+        running = true;
+        lastSummary = null;
+        schedulerHandler.post(this::tick);
+
+        AppLog.i(TAG, "Capture schedule started: " + describeMode() + ", " + lanes.size() + " camera(s), interval "
+                + schedule.getIntervalMs() + "ms, total " + schedule.getTotalShots());
+        return true;
+    }
+
+    /**
+     * 停止当前任务（已抓取的画面会写完，延时视频会正常收尾）
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        schedulerHandler.removeCallbacksAndMessages(null);
+        schedulerHandler.post(this::finish);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 当前任务进度（未运行时返回上一次任务的结果，没有时返回 null）
+     */
+    public synchronized String describeStatus() {
+        if (!running) {
+            return lastSummary;
+        }
+        return describeProgress("进行中");
+    }
+
+    // ==================== 调度线程 ====================
+
+    private void tick() {
+        if (!running) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int index = schedule.claim(now);
+        if (index == CaptureSchedule.FINISHED) {
+            stop();
+            return;
+        }
+
+        File photoDir = StorageHelper.getPhotoDir(context);
+        long available = StorageHelper.getAvailableSpace(mode == MODE_TIMELAPSE_VIDEO
+                ? StorageHelper.getVideoDir(context) : photoDir);
+        if (available >= 0 && available < MIN_FREE_SPACE) {
+            AppLog.w(TAG, "存储空间不足，停止连拍/延时拍摄，剩余: " + StorageHelper.formatSize(available));
+            stop();
+            return;
+        }
+
+        String timestamp = fileTimeFormat.format(new Date(schedule.shotTime(index)));
+        for (Lane lane : lanes) {
+            Bitmap frame = lane.freeFrames.poll();
+            if (frame == null) {
+                // 上一帧还没处理完：丢弃这一拍而不是排队，内存占用保持不变
+                lane.dropped.incrementAndGet();
+                AppLog.w(TAG, "Camera " + lane.key + " capture backlog, frame " + index + " dropped");
+                continue;
+            }
+            if (!lane.camera.copyPreviewFrame(frame)) {
+                lane.freeFrames.offer(frame);
+                lane.failed.incrementAndGet();
+                continue;
+            }
+            workers.execute(() -> {
+                try {
+                    process(lane, frame, timestamp, photoDir);
+                } finally {
+                    lane.freeFrames.offer(frame);
+                }
+            });
+        }
+
+        if (schedule.isFinished()) {
+            stop();
+        } else {
+            schedulerHandler.postDelayed(this::tick, schedule.delayUntilNext(System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * 等待工作线程处理完已抓取的画面，收尾延时视频并释放资源
+     */
+    private void finish() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(WORKER_DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                AppLog.w(TAG, "Capture workers did not finish in time");
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        for (Lane lane : lanes) {
+            if (lane.encoder != null) {
+                lane.encoder.finish();
+                if (lane.encoder.getFramesWritten() > 0) {
+                    RecordingCatalog.getInstance(context).onFileAdded(lane.encoder.getOutputFile());
+                } else {
+                    lane.encoder.getOutputFile().delete();
+                }
+            }
+            recycleFrames(lane);
+        }
+
+        synchronized (this) {
+            lastSummary = describeProgress("已结束");
+            AppLog.i(TAG, "Capture schedule finished: " + lastSummary);
+            lanes.clear();
+            schedulerThread.quitSafely();
+            schedulerThread = null;
+            schedulerHandler = null;
+            workers = null;
+        }
+    }
+
+    // ==================== 工作线程 ====================
+
+    private void process(Lane lane, Bitmap frame, String timestamp, File photoDir) {
+        if (watermarkEnabled) {
+            WatermarkGlyphAtlas.drawPhotoTimestamp(frame, timestamp);
+        }
+        if (lane.encoder != null) {
+            if (lane.encoder.encodeFrame(frame)) {
+                lane.saved.incrementAndGet();
+            } else {
+                lane.failed.incrementAndGet();
+            }
+            return;
+        }
+
+        if (!photoDir.exists()) {
+            photoDir.mkdirs();
+        }
+        File photoFile = new File(photoDir, timestamp + "_" + lane.key + ".jpg");
+        OutputStream output = null;
+        boolean success = false;
+        try {
+            output = new BufferedOutputStream(new FileOutputStream(photoFile), 64 * 1024);
+            success = frame.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output);
+            output.flush();
+        } catch (IOException e) {
+            AppLog.e(TAG, "Camera " + lane.key + " failed to save " + photoFile.getName() + ": " + e.getMessage());
+            success = false;
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    AppLog.w(TAG, "Failed to close photo " + photoFile.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+        if (success) {
+            lane.saved.incrementAndGet();
+            RecordingCatalog.getInstance(context).onFileAdded(photoFile);
+        } else {
+            lane.failed.incrementAndGet();
+        }
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private String describeMode() {
+        switch (mode) {
+            case MODE_BURST:
+                return "连拍";
+            case MODE_TIMELAPSE_VIDEO:
+                return "延时视频";
+            default:
+                return "延时拍摄";
+        }
+    }
+
+    private String describeProgress(String state) {
+        int saved = 0;
+        int dropped = 0;
+        int failed = 0;
+        for (Lane lane : lanes) {
+            saved += lane.saved.get();
+            dropped += lane.dropped.get();
+            failed += lane.failed.get();
+        }
+        int total = schedule.getTotalShots();
+        StringBuilder sb = new StringBuilder();
+        sb.append(describeMode()).append(state).append("：第 ").append(schedule.getElapsedShots());
+        if (total > 0) {
+            sb.append("/").append(total);
+        }
+        sb.append(" 拍，间隔 ").append(schedule.getIntervalMs() / 1000).append(" 秒，")
+                .append(lanes.size()).append(" 路摄像头，已保存 ").append(saved);
+        sb.append(mode == MODE_TIMELAPSE_VIDEO ? " 帧" : " 张");
+        if (dropped > 0 || schedule.getMissedShots() > 0) {
+            sb.append("，存储繁忙丢弃 ").append(dropped + schedule.getMissedShots() * lanes.size()).append(" 帧");
+        }
+        if (failed > 0) {
+            sb.append("，失败 ").append(failed);
+        }
+        return sb.toString();
+    }
+
+    private static void recycleFrames(Lane lane) {
+        Bitmap frame;
+        while ((frame = lane.freeFrames.poll()) != null) {
+            frame.recycle();
+        }
+    }
+}
@@ -3,11 +3,13 @@ package com.kooo.evcam.camera;
 import android.graphics.SurfaceTexture;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
 import android.media.MediaFormat;
-import android.media.MediaMuxer;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.view.Surface;
 
 import com.kooo.evcam.AppLog;
@@ -20,7 +22,10 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 使用 MediaCodec + MediaMuxer 进行视频编码和录制
@@ -31,6 +36,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * 2. 使用 EglSurfaceEncoder 将 Camera 的帧渲染到编码器输入 Surface
  * 3. 从 MediaCodec 获取编码后的数据
  * 4. 通过 MediaMuxer 写入 MP4 文件
+ *
+ * 分段切换（无缝分段开启时）：编码器保持运行，分段结束前在 muxer 线程提前打开下一个 Muxer，
+ * 到点后请求关键帧，在关键帧到达时直接切换写入目标，不丢帧；关闭时回退为停止并重建编码器。
  */
 public class CodecVideoRecorder {
     private static final String TAG = "CodecVideoRecorder";
@@ -53,15 +61,25 @@ public class CodecVideoRecorder {
     private MediaCodec.BufferInfo bufferInfo;
 
     // MediaMuxer 相关
-    private MediaMuxer muxer;
+    private RecordMuxer muxer;
     private int videoTrackIndex = -1;
     private boolean muxerStarted = false;
+    // 【优化】当前分段使用的预分配文件（为 null 表示直接按路径创建）
+    private volatile SegmentFilePool.Lease currentLease;
 
-    // EGL 渲染器
-    private EglSurfaceEncoder eglEncoder;
+    // EGL 渲染器（独立的 EglSurfaceEncoder，或共享渲染中心的一个通道）
+    private FrameRenderer eglEncoder;
+    // 共享 EGL 渲染中心（为 null 时每路独立创建 EGL 上下文和编码线程）
+    private EglRenderHub renderHub;
     private SurfaceTexture inputSurfaceTexture;
     private int textureId;
 
+    // 【四画面合成】分块对应的摄像头位置（为 null 表示普通单路录制），分块 0 即 inputSurfaceTexture
+    private List<String> compositeTileKeys;
+    private volatile LumaProbe lumaProbe;  // 停车移动侦测的亮度回读（可为 null）
+    private final float[] probeTexMatrix = new float[16];
+    private SurfaceTexture[] tileSurfaceTextures;
+
     // 编码线程
     private HandlerThread encoderThread;
     private Handler encoderHandler;
@@ -105,12 +123,13 @@ public class CodecVideoRecorder {
     private static final long FILE_SIZE_CHECK_INTERVAL_MS = 5000;
     private static final long FIRST_CHECK_DELAY_MS = 500;  // 首次检查延迟（更快检测首次写入）
     private Runnable fileSizeCheckRunnable;
-    private long recordedFrameCount = 0;
+    private volatile long recordedFrameCount = 0;
     private List<String> recordedFilePaths = new ArrayList<>();  // 本次录制的所有文件路径
     
     // 首次写入检测（与 VideoRecorder 保持一致）
     private static final long FIRST_WRITE_TIMEOUT_MS = 10000;  // 首次写入超时（10秒）
     private boolean hasFirstWrite = false;  // 是否已有首次写入
+    private long recordingStartTime = 0;  // 录制开始时间（用于统计首次写入延迟）
     private Runnable firstWriteTimeoutRunnable;  // 首次写入超时检查任务
     
     // 快速恢复机制
@@ -133,6 +152,48 @@ public class CodecVideoRecorder {
     // 时间水印设置
     private boolean watermarkEnabled = false;
 
+    // 是否使用分片 MP4 封装（断电时已写入的片段仍可播放）
+    private boolean fragmentedMp4Enabled = false;
+
+    // 【预录】事件前缓冲：未录制时持续编码并保留最近 N 秒，触发录制时先写入新文件
+    private PreEventBuffer preEventBuffer;  // 只在 muxer 线程上访问
+    private final AtomicBoolean isBuffering = new AtomicBoolean(false);
+    // 【预录】缓冲写入新文件的任务已提交、尚未完成
+    private volatile boolean preEventPromoting = false;
+    private MediaFormat bufferedOutputFormat;  // 缓冲期间收到的编码器输出格式（录制开始时用于 addTrack）
+    private boolean waitingForKeyFrame = false;  // 新文件必须从关键帧开始
+
+    // 【自适应码率】由 RecordingGovernor 在负载过高时下调码率/抽帧，bitRate 保持为配置值
+    private volatile int adaptiveBitRate = 0;  // 0 表示使用配置码率
+    private volatile int frameSkipInterval = 1;  // 每 N 帧编码 1 帧
+    private long frameSkipCounter = 0;  // 只在编码线程上访问
+    private final AtomicInteger pendingDrainCount = new AtomicInteger(0);  // 已投递未执行的 drainEncoder（写入队列深度）
+    private volatile int pendingDrainPeak = 0;  // 上次采样以来的最大队列深度
+    private volatile long totalEncodedFrames = 0;  // 写入文件的总帧数（跨分段累计，不随分段重置）
+    private volatile long fileGrowthBytesPerSec = -1;  // 最近一次文件大小检查测得的增长速度，-1 表示未知
+    private long lastFileSizeCheckTime = 0;
+    // 管线指标（由 MultiCameraManager 注册到 RecordingMetrics，未注册时只在本地统计）
+    private CameraPipelineMetrics metrics;
+
+    // 【无缝分段】编码器不停，提前打开下一个 Muxer，在关键帧处切换
+    private static final long ROLLOVER_PREPARE_LEAD_MS = 3000;  // 分段结束前多久打开下一个 Muxer
+    private boolean segmentRolloverEnabled = true;
+    private volatile MediaFormat encoderOutputFormat;  // 编码器最近一次输出格式（下一个 Muxer 的 addTrack 使用）
+    private volatile long lastFrameWrittenNs = 0;  // 最近一帧写入 Muxer 的时间（计算切换间隙）
+    private Runnable rolloverPrepareRunnable;  // 分段线程上的预打开定时器
+    // 以下只在 muxer 线程上访问（stopRecording 等待 muxer 线程空闲后也会访问）
+    private RecordMuxer nextMuxer;
+    private SegmentFilePool.Lease nextLease;
+    private String nextSegmentPath;
+    private int nextTrackIndex = -1;
+    private boolean rolloverPending = false;  // 已请求关键帧，等待切换
+    private long rolloverRequestNs = 0;
+
+    private final Runnable drainRunnable = () -> {
+        pendingDrainCount.decrementAndGet();
+        drainEncoder(false);
+    };
+
     // 注意：帧同步变量已移除，帧处理现在直接在 onFrameAvailable 回调中完成
 
     // 【优化】共享 TextureView 模式：复用 TextureView 的 SurfaceTexture，避免 Camera 双路输出
@@ -143,6 +204,7 @@ public class CodecVideoRecorder {
         this.cameraId = cameraId;
         this.width = width;
         this.height = height;
+        this.metrics = new CameraPipelineMetrics(cameraId);
         // 创建独立的后台线程用于分段处理和文件 I/O 操作
         segmentThread = new HandlerThread("CodecRecorder-Segment-" + cameraId);
         segmentThread.start();
@@ -169,6 +231,100 @@ public class CodecVideoRecorder {
         return watermarkEnabled;
     }
 
+    /**
+     * 设置是否使用分片 MP4 封装（从下一个分段开始生效）
+     */
+    public void setFragmentedMp4Enabled(boolean enabled) {
+        this.fragmentedMp4Enabled = enabled;
+    }
+
+    /**
+     * 设置是否使用无缝分段（从下一次分段切换开始生效）
+     * @param enabled true 表示分段切换时保持编码器运行，只切换 Muxer
+     */
+    public void setSegmentRolloverEnabled(boolean enabled) {
+        this.segmentRolloverEnabled = enabled;
+    }
+
+    /**
+     * 设置共享 EGL 渲染中心（需在 prepareRecording/prepareBuffering 之前调用）
+     * 设置后不再创建独立的编码线程和 EGL 上下文，帧回调和渲染都在渲染中心的线程上执行
+     * 共享 TextureView 模式不使用渲染中心
+     */
+    public void setRenderHub(EglRenderHub hub) {
+        this.renderHub = hub;
+    }
+
+    /**
+     * 【四画面合成】设置为 2x2 拼接录制（需在 prepareRecording/prepareBuffering 之前调用）
+     * 录制器的宽高为整个拼接画面；每路摄像头通过 {@link #getTileSurfaceTexture(String)} 获取自己的输入，
+     * 编码节奏由第一路驱动。合成模式不使用共享渲染中心。
+     * @param tileKeys 分块对应的摄像头位置（2~4 个，按 左上、右上、左下、右下 排列），传 null 恢复单路录制
+     */
+    public void setCompositeTiles(List<String> tileKeys) {
+        this.compositeTileKeys = tileKeys != null && tileKeys.size() > 1
+                ? new ArrayList<>(tileKeys.subList(0, Math.min(tileKeys.size(), 4))) : null;
+    }
+
+    /**
+     * 【停车侦测】设置亮度回读探针，每次渲染完一帧后按探针的采样间隔回读低分辨率亮度
+     * 合成模式和共享 TextureView 模式下不生效；传 null 停止回读
+     */
+    public void setLumaProbe(LumaProbe probe) {
+        LumaProbe old = lumaProbe;
+        lumaProbe = probe;
+        if (old != null && old != probe && encoderHandler != null) {
+            // GL 资源只能在渲染线程上释放
+            encoderHandler.post(old::releaseGl);
+        }
+    }
+
+    /**
+     * 是否为四画面合成录制
+     */
+    public boolean isCompositeMode() {
+        return compositeTileKeys != null;
+    }
+
+    /**
+     * 【四画面合成】获取某路摄像头对应分块的 SurfaceTexture（prepare 之后有效）
+     * @return 不是合成模式或该摄像头不在分块中时返回 null
+     */
+    public SurfaceTexture getTileSurfaceTexture(String key) {
+        if (compositeTileKeys == null || tileSurfaceTextures == null) {
+            return null;
+        }
+        int index = compositeTileKeys.indexOf(key);
+        return index >= 0 ? tileSurfaceTextures[index] : null;
+    }
+
+    /**
+     * 检查设备上的 H.264 编码器是否支持指定分辨率和帧率
+     * 用于决定四画面合成能否使用，以及不支持时回退为分路录制
+     */
+    public static boolean isEncoderSizeSupported(int width, int height, int frameRate) {
+        try {
+            MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+            for (MediaCodecInfo info : codecList.getCodecInfos()) {
+                if (!info.isEncoder()) {
+                    continue;
+                }
+                for (String type : info.getSupportedTypes()) {
+                    if (!MIME_TYPE.equalsIgnoreCase(type)) {
+                        continue;
+                    }
+                    MediaCodecInfo.VideoCapabilities caps = info.getCapabilitiesForType(type).getVideoCapabilities();
+                    if (caps != null && caps.areSizeAndRateSupported(width, height, frameRate)) {
+                        return true;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            AppLog.e(TAG, "Failed to query encoder capabilities", e);
+        }
+        return false;
+    }
+
     public void setCallback(RecordCallback callback) {
         this.callback = callback;
     }
@@ -221,6 +377,105 @@ public class CodecVideoRecorder {
         return frameRate;
     }
 
+    /**
+     * 设置管线指标（需在 prepare 之前调用）
+     */
+    public void setMetrics(CameraPipelineMetrics metrics) {
+        if (metrics != null) {
+            this.metrics = metrics;
+        }
+    }
+
+    public CameraPipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 【自适应码率】运行中调整编码码率（不重建编码器）
+     * 通过 MediaCodec.setParameters(PARAMETER_KEY_VIDEO_BITRATE) 生效，编码器重建时沿用该值
+     * @param bitrate 目标码率（bps），0 或不小于配置码率时恢复配置值
+     */
+    public void applyAdaptiveBitRate(int bitrate) {
+        int target = (bitrate <= 0 || bitrate >= bitRate) ? 0 : bitrate;
+        if (target == adaptiveBitRate) {
+            return;
+        }
+        adaptiveBitRate = target;
+        Handler handler = encoderHandler;
+        if (handler == null) {
+            return;
+        }
+        handler.post(() -> {
+            if (encoder == null || isReleased) {
+                return;
+            }
+            try {
+                Bundle params = new Bundle();
+                params.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE, getEffectiveBitRate());
+                encoder.setParameters(params);
+            } catch (IllegalStateException e) {
+                AppLog.w(TAG, "Camera " + cameraId + " Failed to update bitrate: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 【自适应码率】设置抽帧间隔：每 interval 帧编码 1 帧（1 表示不抽帧）
+     * 双目标渲染时跳过的帧不会绘制到预览，预览帧率同步降低
+     */
+    public void setFrameSkipInterval(int interval) {
+        frameSkipInterval = Math.max(1, interval);
+    }
+
+    public int getFrameSkipInterval() {
+        return frameSkipInterval;
+    }
+
+    /**
+     * 当前实际使用的码率（自适应下调后的值，未下调时为配置码率）
+     */
+    public int getEffectiveBitRate() {
+        int adaptive = adaptiveBitRate;
+        return adaptive > 0 ? adaptive : bitRate;
+    }
+
+    /**
+     * 写入队列深度：已投递到 muxer 线程但尚未执行的 drainEncoder 数
+     */
+    public int getPendingDrainCount() {
+        return pendingDrainCount.get();
+    }
+
+    /**
+     * 取出上次调用以来的最大写入队列深度并重置
+     */
+    public int takePendingDrainPeak() {
+        int peak = pendingDrainPeak;
+        pendingDrainPeak = pendingDrainCount.get();
+        return peak;
+    }
+
+    /**
+     * 本次录制写入文件的总帧数（跨分段累计）
+     */
+    public long getTotalEncodedFrames() {
+        return totalEncodedFrames;
+    }
+
+    /**
+     * 本次录制渲染到编码器的总帧数（不含抽帧跳过的帧）
+     */
+    public long getRecordedFrameCount() {
+        return recordedFrameCount;
+    }
+
+    /**
+     * 最近一次文件大小检查测得的增长速度（字节/秒），-1 表示尚未测得
+     */
+    public long getFileGrowthBytesPerSec() {
+        return fileGrowthBytesPerSec;
+    }
+
     /**
      * 【优化】设置预览 Surface（用于双目标渲染模式）
      * 启用后，每帧会同时渲染到编码器和预览 Surface
@@ -247,6 +502,24 @@ public class CodecVideoRecorder {
      * @return 用于 Camera 输出的 SurfaceTexture
      */
     public SurfaceTexture prepareRecording(String filePath) {
+        return prepare(filePath, true);
+    }
+
+    /**
+     * 【预录】准备事件前缓冲：创建编码器和 EGL，但不创建文件
+     * 调用 {@link #startBuffering()} 后编码输出写入 buffer，
+     * 调用 {@link #startRecordingWithPreEvent(String)} 时先把缓冲内容写入新文件再继续录制
+     *
+     * @param filePath 用于确定保存目录和摄像头位置的示例路径（不会创建该文件）
+     * @param buffer 该摄像头的缓冲区（由调用方持有并复用）
+     * @return 用于 Camera 输出的 SurfaceTexture
+     */
+    public SurfaceTexture prepareBuffering(String filePath, PreEventBuffer buffer) {
+        this.preEventBuffer = buffer;
+        return prepare(filePath, false);
+    }
+
+    private SurfaceTexture prepare(String filePath, boolean createMuxerNow) {
         // 检查是否在主线程调用（可能导致 ANR）
         if (Looper.myLooper() == Looper.getMainLooper()) {
             AppLog.w(TAG, "Camera " + cameraId + " WARNING: prepareRecording() called on MAIN THREAD! " +
@@ -261,9 +534,9 @@ public class CodecVideoRecorder {
         AppLog.d(TAG, "Camera " + cameraId + " Preparing codec recording: " + width + "x" + height);
 
         // 保存录制参数
-        this.currentFilePath = filePath;
         this.segmentIndex = 0;
         this.recordedFrameCount = 0;
+        this.totalEncodedFrames = 0;
         this.firstFrameTimestampNs = -1;  // 重置时间戳基准
         this.encodedOutputFrameCount = 0;  // 重置编码输出帧计数
 
@@ -274,24 +547,25 @@ public class CodecVideoRecorder {
 
         // 清空并初始化本次录制的文件列表
         recordedFilePaths.clear();
-        recordedFilePaths.add(filePath);
+        if (createMuxerNow) {
+            recordedFilePaths.add(filePath);
+        }
 
         // 从文件路径中提取保存目录和摄像头位置
-        File file = new File(filePath);
-        this.saveDirectory = file.getParent();
-        String fileName = file.getName();
-        int lastUnderscoreIndex = fileName.lastIndexOf('_');
-        if (lastUnderscoreIndex > 0 && fileName.endsWith(".mp4")) {
-            this.cameraPosition = fileName.substring(lastUnderscoreIndex + 1, fileName.length() - 4);
-        } else {
-            this.cameraPosition = "unknown";
-        }
+        applyFilePath(filePath);
 
+        // 合成模式使用独立的 EGL 上下文（分块纹理不在渲染中心的通道里）
+        final EglRenderHub hub = compositeTileKeys == null && renderHub != null && renderHub.isRunning()
+                ? renderHub : null;
         try {
-            // 创建编码线程
-            encoderThread = new HandlerThread("Encoder-" + cameraId);
-            encoderThread.start();
-            encoderHandler = new Handler(encoderThread.getLooper());
+            // 创建编码线程（使用共享渲染中心时直接用它的渲染线程）
+            if (hub != null) {
+                encoderHandler = new Handler(hub.getLooper());
+            } else {
+                encoderThread = new HandlerThread("Encoder-" + cameraId);
+                encoderThread.start();
+                encoderHandler = new Handler(encoderThread.getLooper());
+            }
 
             // 【优化1】创建独立的 muxer 线程，用于异步写入文件
             muxerThread = new HandlerThread("Muxer-" + cameraId);
@@ -301,19 +575,26 @@ public class CodecVideoRecorder {
             // 创建 MediaCodec 编码器
             createEncoder();
 
-            // 创建 MediaMuxer
-            createMuxer(filePath);
+            // 创建 MediaMuxer（预录模式下延迟到录制开始时创建）
+            if (createMuxerNow) {
+                createMuxer(filePath);
+            }
 
             // 在编码线程上初始化 EGL 和 SurfaceTexture（重要：必须在同一线程上）
             // 使用 CountDownLatch 等待初始化完成
-            final java.util.concurrent.CountDownLatch latch = new java.util.concurrent.CountDownLatch(1);
+            final CountDownLatch latch = new CountDownLatch(1);
             final int[] resultTextureId = {0};
             final Exception[] initException = {null};
 
             encoderHandler.post(() -> {
                 try {
                     // 创建 EGL 渲染器（在编码线程上）
-                    eglEncoder = new EglSurfaceEncoder(cameraId, width, height);
+                    if (compositeTileKeys != null) {
+                        eglEncoder = new EglSurfaceEncoder(cameraId, width, height, compositeTileKeys.size());
+                    } else {
+                        eglEncoder = hub != null ? hub.createChannel(cameraId, width, height)
+                                : new EglSurfaceEncoder(cameraId, width, height);
+                    }
                     resultTextureId[0] = eglEncoder.initialize(encoderInputSurface);
                     textureId = resultTextureId[0];
 
@@ -332,7 +613,7 @@ public class CodecVideoRecorder {
                             // 关键修复：即使不在录制状态，也必须调用 updateTexImage() 消费帧
                             // 否则 SurfaceTexture 会保持 pending 状态，不再触发后续回调
                             // updateTexImage 在 drawFrame 内部调用，这里单独处理非录制状态
-                            if (!isRecording.get()) {
+                            if (!isRecording.get() && !isBuffering.get()) {
                                 // 不在录制状态时，仍需消费帧以保持 SurfaceTexture 正常工作
                                 if (eglEncoder != null && eglEncoder.isInitialized()) {
                                     eglEncoder.consumeFrame();  // 只消费帧，不编码
@@ -340,11 +621,24 @@ public class CodecVideoRecorder {
                                 return;
                             }
 
+                            long arrivedNs = System.nanoTime();
+                            metrics.onFrameArrived();
+
                             // 检查编码器健康状态，不健康时只消费帧不编码
                             if (!encoderHealthy) {
                                 if (eglEncoder != null && eglEncoder.isInitialized()) {
                                     eglEncoder.consumeFrame();  // 只消费帧，等待重建
                                 }
+                                metrics.onFrameDropped();
+                                return;
+                            }
+
+                            // 【自适应码率】抽帧：跳过的帧只消费不编码
+                            if (shouldSkipFrame()) {
+                                if (eglEncoder != null && eglEncoder.isInitialized()) {
+                                    eglEncoder.consumeFrame();
+                                }
+                                metrics.onFrameDropped();
                                 return;
                             }
 
@@ -365,6 +659,8 @@ public class CodecVideoRecorder {
                             if (eglEncoder != null && eglEncoder.isInitialized()) {
                                 eglEncoder.drawFrame(relativeTimestampNs);
                                 recordedFrameCount++;
+                                metrics.onFrameDrawn(relativeTimestampNs / 1000, arrivedNs, System.nanoTime());
+                                captureLuma(surfaceTexture);
 
                                 // 定期输出帧计数
                                 if (recordedFrameCount % 100 == 0) {
@@ -374,9 +670,7 @@ public class CodecVideoRecorder {
 
                             // 【优化1】异步排空编码器，不阻塞帧处理
                             // 将 drainEncoder 移到独立的 muxer 线程，避免 I/O 操作阻塞帧回调
-                            if (muxerHandler != null) {
-                                muxerHandler.post(() -> drainEncoder(false));
-                            }
+                            postDrain();
 
                         } catch (Exception e) {
                             AppLog.e(TAG, "Camera " + cameraId + " Error processing frame", e);
@@ -388,12 +682,36 @@ public class CodecVideoRecorder {
                     // 设置 EGL 渲染器的输入
                     eglEncoder.setInputSurfaceTexture(inputSurfaceTexture);
 
+                    // 【四画面合成】其余分块各建一个 SurfaceTexture，有新帧时只更新纹理
+                    if (compositeTileKeys != null) {
+                        EglSurfaceEncoder compositeEncoder = (EglSurfaceEncoder) eglEncoder;
+                        int tileWidth = width / 2;
+                        int tileHeight = height / 2;
+                        inputSurfaceTexture.setDefaultBufferSize(tileWidth, tileHeight);
+                        tileSurfaceTextures = new SurfaceTexture[compositeTileKeys.size()];
+                        tileSurfaceTextures[0] = inputSurfaceTexture;
+                        for (int i = 1; i < tileSurfaceTextures.length; i++) {
+                            final int tile = i;
+                            SurfaceTexture tileTexture = new SurfaceTexture(compositeEncoder.getTileTextureId(i));
+                            tileTexture.setDefaultBufferSize(tileWidth, tileHeight);
+                            tileTexture.setOnFrameAvailableListener(st -> {
+                                if (!isReleased) {
+                                    compositeEncoder.updateTile(tile);
+                                }
+                            }, encoderHandler);
+                            compositeEncoder.setTileSurfaceTexture(i, tileTexture);
+                            tileSurfaceTextures[i] = tileTexture;
+                        }
+                        AppLog.d(TAG, "Camera " + cameraId + " Composite tiles: " + compositeTileKeys);
+                    }
+
                     // 设置时间水印（如果启用）
                     if (watermarkEnabled) {
                         eglEncoder.setWatermarkEnabled(true);
                     }
 
-                    AppLog.d(TAG, "Camera " + cameraId + " EGL/SurfaceTexture initialized on encoder thread, textureId=" + textureId + ", watermark=" + watermarkEnabled);
+                    AppLog.d(TAG, "Camera " + cameraId + " EGL/SurfaceTexture initialized on " + (hub != null ? "shared render hub" : "encoder thread")
+                            + ", textureId=" + textureId + ", watermark=" + watermarkEnabled);
 
                 } catch (Exception e) {
                     AppLog.e(TAG, "Camera " + cameraId + " Failed to initialize EGL on encoder thread", e);
@@ -404,7 +722,7 @@ public class CodecVideoRecorder {
             });
 
             // 等待初始化完成（最多 5 秒）
-            if (!latch.await(5, java.util.concurrent.TimeUnit.SECONDS)) {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
                 throw new RuntimeException("Timeout waiting for EGL initialization");
             }
 
@@ -506,9 +824,9 @@ public class CodecVideoRecorder {
         this.externalSurfaceTexture = externalTexture;
 
         // 保存录制参数
-        this.currentFilePath = filePath;
         this.segmentIndex = 0;
         this.recordedFrameCount = 0;
+        this.totalEncodedFrames = 0;
         this.firstFrameTimestampNs = -1;
         this.encodedOutputFrameCount = 0;
 
@@ -522,15 +840,7 @@ public class CodecVideoRecorder {
         recordedFilePaths.add(filePath);
 
         // 从文件路径中提取保存目录和摄像头位置
-        File file = new File(filePath);
-        this.saveDirectory = file.getParent();
-        String fileName = file.getName();
-        int lastUnderscoreIndex = fileName.lastIndexOf('_');
-        if (lastUnderscoreIndex > 0 && fileName.endsWith(".mp4")) {
-            this.cameraPosition = fileName.substring(lastUnderscoreIndex + 1, fileName.length() - 4);
-        } else {
-            this.cameraPosition = "unknown";
-        }
+        applyFilePath(filePath);
 
         try {
             // 创建编码线程
@@ -550,7 +860,7 @@ public class CodecVideoRecorder {
             createMuxer(filePath);
 
             // 在编码线程上初始化 EGL（使用外部 SurfaceTexture）
-            final java.util.concurrent.CountDownLatch latch = new java.util.concurrent.CountDownLatch(1);
+            final CountDownLatch latch = new CountDownLatch(1);
             final Exception[] initException = {null};
 
             encoderHandler.post(() -> {
@@ -584,7 +894,7 @@ public class CodecVideoRecorder {
             });
 
             // 等待初始化完成
-            if (!latch.await(5, java.util.concurrent.TimeUnit.SECONDS)) {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
                 throw new RuntimeException("Timeout waiting for EGL initialization (shared mode)");
             }
 
@@ -614,7 +924,7 @@ public class CodecVideoRecorder {
      * 注意：必须在 UI 线程调用（因为 TextureView 的回调在 UI 线程）
      */
     public void onNewFrameAvailable() {
-        if (!sharedTextureMode || !isRecording.get() || isReleased) {
+        if (!sharedTextureMode || (!isRecording.get() && !isBuffering.get()) || isReleased) {
             return;
         }
 
@@ -626,7 +936,16 @@ public class CodecVideoRecorder {
         if (encoderHandler != null) {
             encoderHandler.post(() -> {
                 try {
-                    if (!isRecording.get() || isReleased || eglEncoder == null) {
+                    if ((!isRecording.get() && !isBuffering.get()) || isReleased || eglEncoder == null) {
+                        return;
+                    }
+
+                    long arrivedNs = System.nanoTime();
+                    metrics.onFrameArrived();
+
+                    // 【自适应码率】抽帧（共享模式下帧由 TextureView 消费，直接跳过即可）
+                    if (shouldSkipFrame()) {
+                        metrics.onFrameDropped();
                         return;
                     }
 
@@ -642,6 +961,7 @@ public class CodecVideoRecorder {
                     if (eglEncoder.isInitialized()) {
                         eglEncoder.drawFrame(relativeTimestampNs);
                         recordedFrameCount++;
+                        metrics.onFrameDrawn(relativeTimestampNs / 1000, arrivedNs, System.nanoTime());
 
                         if (recordedFrameCount % 100 == 0) {
                             AppLog.d(TAG, "Camera " + cameraId + " (shared mode) Encoded frames: " + recordedFrameCount);
@@ -649,9 +969,7 @@ public class CodecVideoRecorder {
                     }
 
                     // 异步排空编码器
-                    if (muxerHandler != null) {
-                        muxerHandler.post(() -> drainEncoder(false));
-                    }
+                    postDrain();
 
                 } catch (Exception e) {
                     AppLog.e(TAG, "Camera " + cameraId + " (shared mode) Error processing frame", e);
@@ -691,6 +1009,9 @@ public class CodecVideoRecorder {
         // 重置首次写入状态
         hasFirstWrite = false;
         lastFileSize = 0;
+        lastFileSizeCheckTime = 0;
+        fileGrowthBytesPerSec = -1;
+        recordingStartTime = System.currentTimeMillis();
         
         isRecording.set(true);
 
@@ -721,6 +1042,174 @@ public class CodecVideoRecorder {
         return true;
     }
 
+    /**
+     * 【预录】开始事件前缓冲（需先调用 prepareBuffering）
+     */
+    public boolean startBuffering() {
+        if (encoder == null || eglEncoder == null || preEventBuffer == null) {
+            AppLog.e(TAG, "Camera " + cameraId + " Pre-event buffering not prepared");
+            return false;
+        }
+        if (isRecording.get()) {
+            return false;
+        }
+        isBuffering.set(true);
+        AppLog.d(TAG, "Camera " + cameraId + " Pre-event buffering started, window=" + preEventBuffer.getWindowMs()
+                + "ms, budget=" + (preEventBuffer.getCapacity() / 1024) + "KB");
+        return true;
+    }
+
+    /**
+     * 【预录】停止事件前缓冲（丢弃缓存内容，编码器保持运行，帧只消费不编码）
+     */
+    public void stopBuffering() {
+        if (isBuffering.compareAndSet(true, false) && muxerHandler != null) {
+            muxerHandler.post(() -> {
+                if (preEventBuffer != null) {
+                    preEventBuffer.clear();
+                }
+            });
+        }
+    }
+
+    public boolean isBuffering() {
+        return isBuffering.get();
+    }
+
+    /**
+     * 【预录】获取事件前缓冲状态（用于日志和状态显示）
+     */
+    public String getPreEventStats() {
+        PreEventBuffer buffer = preEventBuffer;
+        return buffer != null ? buffer.getStats() : "n/a";
+    }
+
+    /**
+     * 【预录】从事件前缓冲切换到录制
+     * 在 muxer 线程上创建文件，先写入缓冲中最近 N 秒的帧（从关键帧开始），再继续写入实时帧。
+     * 缓冲帧的时间戳整体平移到 0 起点，实时帧沿用同一基准，因此新文件的时间轴是连续的。
+     *
+     * 切换在 muxer 线程上异步完成，调用方不等待缓冲写盘：
+     * 成功后回调 onRecordStart，失败时回调 onRecordError 并停止缓冲。
+     * 切换排队期间调用 {@link #stopRecording()} 会等到切换完成后再停止。
+     *
+     * @param filePath 新分段文件路径
+     * @return 是否已提交切换（未在缓冲时返回 false）
+     */
+    public boolean startRecordingWithPreEvent(String filePath) {
+        if (!isBuffering.get() || muxerHandler == null) {
+            AppLog.w(TAG, "Camera " + cameraId + " Not buffering, cannot start with pre-event");
+            return false;
+        }
+
+        // 先标记为录制中：缓冲帧继续进 buffer（muxer 尚未启动），stopRecording 会排在切换之后执行
+        isRecording.set(true);
+        preEventPromoting = true;
+        muxerHandler.post(() -> {
+            try {
+                promotePreEvent(filePath);
+            } finally {
+                preEventPromoting = false;
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 【预录】在 muxer 线程上把缓冲写入新文件并开始录制
+     */
+    private void promotePreEvent(String filePath) {
+        try {
+            applyFilePath(filePath);
+            recordedFilePaths.clear();
+            recordedFilePaths.add(filePath);
+            segmentIndex = 0;
+            hasFirstWrite = false;
+            lastFileSize = 0;
+            lastFileSizeCheckTime = 0;
+            fileGrowthBytesPerSec = -1;
+            recordingStartTime = System.currentTimeMillis();
+
+            createMuxer(filePath);
+            int flushed = 0;
+            long basePtsUs = preEventBuffer.getFirstPtsUs();
+            String bufferStats = preEventBuffer.getStats();
+            if (bufferedOutputFormat != null) {
+                videoTrackIndex = muxer.addTrack(bufferedOutputFormat);
+                muxer.start();
+                muxerStarted = true;
+                if (basePtsUs >= 0) {
+                    final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+                    long flushedBytes = preEventBuffer.getBufferedBytes();
+                    flushed = preEventBuffer.flush((data, ptsUs, flags) -> {
+                        info.set(data.position(), data.remaining(), ptsUs - basePtsUs, flags);
+                        muxer.writeSampleData(videoTrackIndex, data, info);
+                    });
+                    metrics.onFramesFlushed(flushed, flushedBytes);
+                }
+            }
+            preEventBuffer.clear();
+
+            // 实时帧的 PTS = 当前时间 - segmentStartTimeNs，与缓冲帧共用同一时间基准
+            segmentStartTimeNs = flushed > 0 ? basePtsUs * 1000 : System.nanoTime();
+            encodedOutputFrameCount = flushed;
+            if (flushed == 0) {
+                // 缓冲为空，请求编码器立即输出关键帧，之前的 P 帧丢弃
+                waitingForKeyFrame = true;
+                requestSyncFrame();
+            }
+
+            isBuffering.set(false);
+            AppLog.d(TAG, "Camera " + cameraId + " Pre-event flushed " + flushed + " frames ("
+                    + bufferStats + ") into " + filePath);
+        } catch (Exception e) {
+            AppLog.e(TAG, "Camera " + cameraId + " Failed to start recording with pre-event", e);
+            abortPreEventPromotion(filePath, e.getMessage());
+            return;
+        }
+
+        segmentHandler.post(() -> {
+            if (!isRecording.get()) {
+                return;  // 切换完成前已停止
+            }
+            scheduleFirstWriteTimeout();
+            scheduleFileSizeCheck();
+            scheduleEncoderHealthCheck();
+
+            if (callback != null) {
+                callback.onRecordStart(cameraId);
+            }
+        });
+    }
+
+    /**
+     * 【预录】切换失败：丢弃半成品文件并停止缓冲（muxer 线程）
+     */
+    private void abortPreEventPromotion(String filePath, String reason) {
+        if (muxer != null) {
+            try {
+                muxer.release();
+            } catch (Exception ignored) {
+            }
+            muxer = null;
+        }
+        muxerStarted = false;
+        closeSegmentLease();
+        File partial = new File(filePath);
+        if (partial.exists() && !partial.delete()) {
+            AppLog.w(TAG, "Camera " + cameraId + " Failed to delete partial pre-event file: " + filePath);
+        }
+        recordedFilePaths.remove(filePath);
+        isRecording.set(false);
+        isBuffering.set(false);
+        if (preEventBuffer != null) {
+            preEventBuffer.clear();
+        }
+        if (callback != null) {
+            callback.onRecordError(cameraId, "Pre-event start failed: " + reason);
+        }
+    }
+
     /**
      * 停止录制
      */
@@ -737,6 +1226,10 @@ public class CodecVideoRecorder {
             segmentHandler.removeCallbacks(segmentRunnable);
             segmentRunnable = null;
         }
+        if (rolloverPrepareRunnable != null) {
+            segmentHandler.removeCallbacks(rolloverPrepareRunnable);
+            rolloverPrepareRunnable = null;
+        }
         if (fileSizeCheckRunnable != null) {
             segmentHandler.removeCallbacks(fileSizeCheckRunnable);
             fileSizeCheckRunnable = null;
@@ -762,14 +1255,27 @@ public class CodecVideoRecorder {
         // 【优化1】等待 muxer 线程完成所有待处理的写入任务
         // 使用 CountDownLatch 等待异步任务完成
         if (muxerHandler != null) {
-            final java.util.concurrent.CountDownLatch latch = new java.util.concurrent.CountDownLatch(1);
+            final CountDownLatch latch = new CountDownLatch(1);
             muxerHandler.post(() -> {
                 // 这个空任务会在所有之前的任务完成后执行
                 latch.countDown();
             });
             try {
-                // 等待最多 500ms
-                latch.await(500, java.util.concurrent.TimeUnit.MILLISECONDS);
+                // 等待最多 500ms（事件前缓冲正在写入新文件时最多 3 秒，缓冲可能有数 MB）
+                latch.await(preEventPromoting ? 3000 : 500, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+
+        // 【无缝分段】丢弃尚未使用的下一个 Muxer，并等待上一段在分段线程上收尾完成（验证文件前必须完成）
+        rolloverPending = false;
+        discardNextMuxer();
+        if (Looper.myLooper() != segmentHandler.getLooper()) {
+            final CountDownLatch segmentLatch = new CountDownLatch(1);
+            segmentHandler.post(segmentLatch::countDown);
+            try {
+                segmentLatch.await(500, TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
                 // Ignore
             }
@@ -803,6 +1309,11 @@ public class CodecVideoRecorder {
             muxerStarted = false;
         }
 
+        // 截断预分配文件（必须在验证文件大小之前）
+        closeSegmentLease();
+        // 删除未取用的预分配文件（不计入存储配额）
+        SegmentFilePool.getInstance().release(saveDirectory, cameraPosition);
+
         // 验证并清理所有录制的文件
         List<String> deletedFiles = validateAndCleanupAllFiles();
 
@@ -830,10 +1341,19 @@ public class CodecVideoRecorder {
         AppLog.d(TAG, "Camera " + cameraId + " Releasing CodecVideoRecorder");
 
         isReleased = true;
+        isBuffering.set(false);
 
         if (isRecording.get()) {
             stopRecording();
         }
+        discardNextMuxer();
+
+        // 亮度探针的 GL 资源在渲染线程上释放（独立上下文随 EGL 一起销毁，共享渲染中心需要显式删除）
+        LumaProbe probe = lumaProbe;
+        lumaProbe = null;
+        if (probe != null && encoderHandler != null) {
+            encoderHandler.post(probe::releaseGl);
+        }
 
         // 释放 EGL 渲染器
         if (eglEncoder != null) {
@@ -847,6 +1367,16 @@ public class CodecVideoRecorder {
             cachedRecordSurface = null;
         }
 
+        // 释放分块 SurfaceTexture（分块 0 即 inputSurfaceTexture，下面单独释放）
+        if (tileSurfaceTextures != null) {
+            for (int i = 1; i < tileSurfaceTextures.length; i++) {
+                if (tileSurfaceTextures[i] != null) {
+                    tileSurfaceTextures[i].release();
+                }
+            }
+            tileSurfaceTextures = null;
+        }
+
         // 释放 SurfaceTexture（共享模式下不释放，因为它是外部传入的）
         if (inputSurfaceTexture != null && !sharedTextureMode) {
             inputSurfaceTexture.release();
@@ -884,6 +1414,7 @@ public class CodecVideoRecorder {
             muxer.release();
             muxer = null;
         }
+        closeSegmentLease();
 
         // 停止编码线程
         if (encoderThread != null) {
@@ -895,6 +1426,10 @@ public class CodecVideoRecorder {
             }
             encoderThread = null;
             encoderHandler = null;
+        } else if (encoderHandler != null) {
+            // 共享渲染中心的线程由 MultiCameraManager 管理，只清理本路的待处理任务
+            encoderHandler.removeCallbacksAndMessages(null);
+            encoderHandler = null;
         }
 
         // 【优化1】停止 muxer 线程
@@ -978,6 +1513,83 @@ public class CodecVideoRecorder {
 
     // ===== 私有方法 =====
 
+    /**
+     * 根据文件路径更新当前文件、保存目录和摄像头位置
+     */
+    private void applyFilePath(String filePath) {
+        this.currentFilePath = filePath;
+        File file = new File(filePath);
+        this.saveDirectory = file.getParent();
+        String fileName = file.getName();
+        int lastUnderscoreIndex = fileName.lastIndexOf('_');
+        if (lastUnderscoreIndex > 0 && fileName.endsWith(".mp4")) {
+            this.cameraPosition = fileName.substring(lastUnderscoreIndex + 1, fileName.length() - 4);
+        } else {
+            this.cameraPosition = "unknown";
+        }
+    }
+
+    /**
+     * 投递一次 drainEncoder 到 muxer 线程，并记录写入队列深度
+     */
+    private void postDrain() {
+        Handler handler = muxerHandler;
+        if (handler == null) {
+            return;
+        }
+        int depth = pendingDrainCount.incrementAndGet();
+        if (depth > pendingDrainPeak) {
+            pendingDrainPeak = depth;
+        }
+        metrics.onQueueDepth(depth);
+        if (!handler.post(drainRunnable)) {
+            pendingDrainCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 【停车侦测】渲染完成后按采样间隔回读亮度（编码线程调用）
+     */
+    private void captureLuma(SurfaceTexture surfaceTexture) {
+        LumaProbe probe = lumaProbe;
+        if (probe == null || compositeTileKeys != null || sharedTextureMode) {
+            return;
+        }
+        long nowMs = SystemClock.elapsedRealtime();
+        if (!probe.isDue(nowMs)) {
+            return;
+        }
+        surfaceTexture.getTransformMatrix(probeTexMatrix);
+        probe.capture(textureId, probeTexMatrix, nowMs);
+    }
+
+    /**
+     * 【自适应码率】当前帧是否按抽帧间隔跳过（编码线程调用）
+     */
+    private boolean shouldSkipFrame() {
+        int interval = frameSkipInterval;
+        if (interval <= 1) {
+            return false;
+        }
+        return (frameSkipCounter++ % interval) != 0;
+    }
+
+    /**
+     * 请求编码器尽快输出关键帧
+     */
+    private void requestSyncFrame() {
+        if (encoder == null) {
+            return;
+        }
+        try {
+            Bundle params = new Bundle();
+            params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+            encoder.setParameters(params);
+        } catch (IllegalStateException e) {
+            AppLog.w(TAG, "Camera " + cameraId + " Failed to request sync frame: " + e.getMessage());
+        }
+    }
+
     /**
      * 创建 MediaCodec 编码器
      * 
@@ -990,7 +1602,8 @@ public class CodecVideoRecorder {
     private void createEncoder() throws IOException {
         MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
         format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
-        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+        int encodeBitRate = getEffectiveBitRate();  // 重建编码器时保留自适应下调后的码率
+        format.setInteger(MediaFormat.KEY_BIT_RATE, encodeBitRate);
         format.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
         format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL);
 
@@ -1016,9 +1629,12 @@ public class CodecVideoRecorder {
 
         // 设置编码档次为 Baseline Profile（不含 B 帧，延迟最低）
         // 注意：某些设备可能不支持手动设置 profile
+        // 合成画面超出 Level 3.1 的分辨率上限，由编码器自行选择 Level
         try {
             format.setInteger(MediaFormat.KEY_PROFILE, MediaCodecInfo.CodecProfileLevel.AVCProfileBaseline);
-            format.setInteger(MediaFormat.KEY_LEVEL, MediaCodecInfo.CodecProfileLevel.AVCLevel31);
+            if (compositeTileKeys == null) {
+                format.setInteger(MediaFormat.KEY_LEVEL, MediaCodecInfo.CodecProfileLevel.AVCLevel31);
+            }
         } catch (Exception e) {
             // 忽略不支持的参数
         }
@@ -1032,18 +1648,87 @@ public class CodecVideoRecorder {
         bufferInfo = new MediaCodec.BufferInfo();
 
         AppLog.d(TAG, "Camera " + cameraId + " Encoder created: " + width + "x" + height + 
-                " @ " + frameRate + "fps, " + (bitRate / 1000) + " Kbps (optimized)");
+                " @ " + frameRate + "fps, " + (encodeBitRate / 1000) + " Kbps (optimized)");
     }
 
     /**
-     * 创建 MediaMuxer
+     * 创建 Muxer（系统 MediaMuxer 或分片 MP4，由 fragmentedMp4Enabled 决定）
+     * 【优化】优先使用 SegmentFilePool 预分配的文件（通过文件描述符写入），
+     * 避免在 U 盘上冷创建文件导致首次写入延迟；没有就绪的文件时按路径创建
      */
     private void createMuxer(String filePath) throws IOException {
-        muxer = new MediaMuxer(filePath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        // 上一个分段的预分配文件（异常路径下可能未关闭）
+        closeSegmentLease();
+
+        OpenedMuxer opened = openMuxer(filePath);
+        muxer = opened.muxer;
+        currentLease = opened.lease;
         videoTrackIndex = -1;
         muxerStarted = false;
+    }
 
-        AppLog.d(TAG, "Camera " + cameraId + " Muxer created: " + filePath);
+    /**
+     * 打开的 Muxer 及其预分配文件
+     */
+    private static final class OpenedMuxer {
+        final RecordMuxer muxer;
+        final SegmentFilePool.Lease lease;
+
+        OpenedMuxer(RecordMuxer muxer, SegmentFilePool.Lease lease) {
+            this.muxer = muxer;
+            this.lease = lease;
+        }
+    }
+
+    /**
+     * 打开一个 Muxer，不修改当前分段状态（无缝分段提前打开下一个文件时也使用）
+     */
+    private OpenedMuxer openMuxer(String filePath) throws IOException {
+        RecordMuxer opened = null;
+        SegmentFilePool.Lease lease = SegmentFilePool.getInstance().acquire(filePath, cameraPosition,
+                SegmentFilePool.estimateSegmentBytes(bitRate, segmentDurationMs));
+        if (lease != null) {
+            try {
+                opened = RecordMuxer.create(filePath, lease, fragmentedMp4Enabled);
+            } catch (IOException | IllegalArgumentException e) {
+                AppLog.w(TAG, "Camera " + cameraId + " Failed to use preallocated file, fallback to path: " + e.getMessage());
+                lease.close();
+                lease = null;
+            }
+        }
+        if (lease == null) {
+            opened = RecordMuxer.create(filePath, null, fragmentedMp4Enabled);
+        }
+
+        AppLog.d(TAG, "Camera " + cameraId + " Muxer created: " + filePath + (lease != null ? " (preallocated)" : "")
+                + (fragmentedMp4Enabled ? " (fragmented)" : ""));
+        return new OpenedMuxer(opened, lease);
+    }
+
+    /**
+     * 关闭当前分段的预分配文件，截断到实际写入的长度
+     * 必须在 Muxer 停止/释放之后调用
+     */
+    private void closeSegmentLease() {
+        SegmentFilePool.Lease lease = currentLease;
+        currentLease = null;
+        if (lease != null) {
+            long length = lease.close();
+            AppLog.d(TAG, "Camera " + cameraId + " Preallocated file truncated to " + (length / 1024) + " KB: " + lease.getFile().getName());
+        }
+    }
+
+    /**
+     * 获取当前分段已写入的大小
+     * 预分配文件的长度不代表实际写入量，需要从租约获取
+     */
+    private long getCurrentFileSize() {
+        SegmentFilePool.Lease lease = currentLease;
+        if (lease != null) {
+            return lease.getWrittenBytes();
+        }
+        File file = new File(currentFilePath);
+        return file.exists() ? file.length() : 0;
     }
 
     // 注意：encodingLoop() 方法已被移除
@@ -1103,8 +1788,15 @@ public class CodecVideoRecorder {
                     }
                 } else if (outputBufferIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
                     // 输出格式变化，添加视频轨道
+                    encoderOutputFormat = encoder.getOutputFormat();
                     if (muxerStarted) {
                         AppLog.w(TAG, "Camera " + cameraId + " Format changed twice");
+                    } else if (muxer == null && isBuffering.get()) {
+                        // 【预录】还没有文件，保存格式供录制开始时使用
+                        bufferedOutputFormat = encoder.getOutputFormat();
+                        encoderHealthy = true;
+                        lastEncoderOutputTime = System.currentTimeMillis();
+                        AppLog.d(TAG, "Camera " + cameraId + " Output format saved for pre-event buffering");
                     } else {
                         MediaFormat newFormat = encoder.getOutputFormat();
                         videoTrackIndex = muxer.addTrack(newFormat);
@@ -1125,10 +1817,32 @@ public class CodecVideoRecorder {
                         bufferInfo.size = 0;
                     }
 
-                    if (bufferInfo.size != 0) {
+                    boolean keyFrame = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+                    if (encodedData != null && bufferInfo.size != 0) {
+                        // 编码器输出的 PTS 即 drawFrame 时传入的时间戳（写入前会被替换）
+                        metrics.onEncoderOutput(bufferInfo.presentationTimeUs, System.nanoTime());
+                    }
+                    if (encodedData != null && bufferInfo.size != 0 && !muxerStarted && isBuffering.get()
+                            && preEventBuffer != null) {
+                        // 【预录】写入事件前缓冲（时间戳用系统时间，录制开始时再换算为分段内的相对时间）
+                        encodedData.position(bufferInfo.offset);
+                        encodedData.limit(bufferInfo.offset + bufferInfo.size);
+                        preEventBuffer.append(encodedData, System.nanoTime() / 1000, bufferInfo.flags, keyFrame);
+                        lastEncoderOutputTime = System.currentTimeMillis();
+                        gotOutput = true;
+                    } else if (bufferInfo.size != 0) {
                         if (!muxerStarted) {
                             AppLog.e(TAG, "Camera " + cameraId + " Muxer not started but got data");
+                        } else if (waitingForKeyFrame && !keyFrame) {
+                            // 新文件必须从关键帧开始，丢弃请求同步帧之前的 P 帧
+                            metrics.onFrameDropped();
+                            gotOutput = true;
                         } else {
+                            if (rolloverPending && keyFrame) {
+                                // 【无缝分段】新分段从这个关键帧开始
+                                performRollover();
+                            }
+                            waitingForKeyFrame = false;
                             // 使用系统时间计算 PTS，而不是基于帧数和假设帧率
                             // 优点：
                             //   1. 视频时长精确反映实际录制时长
@@ -1147,9 +1861,13 @@ public class CodecVideoRecorder {
                             
                             encodedData.position(bufferInfo.offset);
                             encodedData.limit(bufferInfo.offset + bufferInfo.size);
+                            long writeStartNs = System.nanoTime();
                             muxer.writeSampleData(videoTrackIndex, encodedData, bufferInfo);
+                            lastFrameWrittenNs = System.nanoTime();
+                            metrics.onFrameWritten(bufferInfo.size, lastFrameWrittenNs - writeStartNs);
                             
                             encodedOutputFrameCount++;
+                            totalEncodedFrames++;
                             lastEncoderOutputTime = System.currentTimeMillis();
                             gotOutput = true;
                         }
@@ -1196,8 +1914,20 @@ public class CodecVideoRecorder {
             segmentHandler.removeCallbacks(segmentRunnable);
         }
 
+        if (rolloverPrepareRunnable != null) {
+            segmentHandler.removeCallbacks(rolloverPrepareRunnable);
+            rolloverPrepareRunnable = null;
+        }
+
+        final boolean rollover = segmentRolloverEnabled;
         segmentRunnable = () -> {
-            if (isRecording.get() && encoderHandler != null) {
+            if (!isRecording.get()) {
+                return;
+            }
+            if (rollover && muxerHandler != null) {
+                // 【无缝分段】在 muxer 线程上请求关键帧，编码器不停
+                muxerHandler.post(this::beginRollover);
+            } else if (encoderHandler != null) {
                 AppLog.d(TAG, "Camera " + cameraId + " Scheduling segment switch on encoder thread");
                 // 在编码线程上执行切换，避免线程冲突
                 encoderHandler.post(() -> switchToNextSegment());
@@ -1208,6 +1938,18 @@ public class CodecVideoRecorder {
         // 补偿编码器初始化延迟和停止时的帧丢失
         long actualDelayMs = segmentDurationMs + SEGMENT_DURATION_COMPENSATION_MS;
         segmentHandler.postDelayed(segmentRunnable, actualDelayMs);
+
+        // 【无缝分段】提前打开下一个 Muxer，文件名使用预计的切换时间
+        if (rollover) {
+            final long leadMs = Math.min(ROLLOVER_PREPARE_LEAD_MS, actualDelayMs);
+            rolloverPrepareRunnable = () -> {
+                if (isRecording.get() && muxerHandler != null) {
+                    final long plannedSwitchMillis = System.currentTimeMillis() + leadMs;
+                    muxerHandler.post(() -> prepareNextMuxer(plannedSwitchMillis));
+                }
+            };
+            segmentHandler.postDelayed(rolloverPrepareRunnable, actualDelayMs - leadMs);
+        }
         AppLog.d(TAG, "Camera " + cameraId + " Scheduled next segment in " + (segmentDurationMs / 1000) + " seconds (actual delay: " + actualDelayMs + "ms)");
     }
 
@@ -1231,14 +1973,22 @@ public class CodecVideoRecorder {
         AppLog.d(TAG, "Camera " + cameraId + " Starting segment switch on encoder thread");
         
         boolean switchSuccess = false;
+        long switchStartNs = System.nanoTime();
         
         try {
             // 1. 停止当前录制（会排空编码器、停止 Muxer）
             stopRecordingForSegmentSwitch();
             
-            // 2. 验证当前文件（在主线程上执行，因为是 IO 操作）
+            // 2. 截断预分配文件并验证当前文件（在分段线程上执行，因为是 IO 操作）
             final String previousFilePath = currentFilePath;
-            segmentHandler.post(() -> validateAndCleanupFile(previousFilePath));
+            final SegmentFilePool.Lease previousLease = currentLease;
+            currentLease = null;
+            segmentHandler.post(() -> {
+                if (previousLease != null) {
+                    previousLease.close();
+                }
+                validateAndCleanupFile(previousFilePath);
+            });
 
             // 3. 准备下一段
             segmentIndex++;
@@ -1257,6 +2007,14 @@ public class CodecVideoRecorder {
             // 5. 重新开始录制
             isRecording.set(true);
             switchSuccess = true;
+            long switchEndNs = System.nanoTime();
+            metrics.onSegmentSwitch(switchEndNs - switchStartNs);
+            // 间隙的下限：新编码器还要等首个关键帧输出，实际间隙更大
+            long lastWrittenNs = lastFrameWrittenNs;
+            final long gapMs = lastWrittenNs > 0 ? (switchEndNs - lastWrittenNs) / 1_000_000 : -1;
+            if (lastWrittenNs > 0) {
+                metrics.onSegmentGap(switchEndNs - lastWrittenNs);
+            }
             
             // 成功：重置恢复计数器
             recoveryAttempts = 0;
@@ -1266,7 +2024,7 @@ public class CodecVideoRecorder {
             if (callback != null) {
                 final int newIndex = segmentIndex;
                 final String completedPath = previousFilePath;  // 已完成的文件路径
-                segmentHandler.post(() -> callback.onSegmentSwitch(cameraId, newIndex, completedPath));
+                segmentHandler.post(() -> callback.onSegmentSwitch(cameraId, newIndex, completedPath, gapMs));
             }
 
         } catch (Exception e) {
@@ -1303,6 +2061,168 @@ public class CodecVideoRecorder {
         }
     }
     
+    /**
+     * 【无缝分段】提前打开下一个 Muxer 并添加轨道（在 muxer 线程上执行）
+     * 文件创建、预分配和写文件头都在切换之前完成，切换时只需替换写入目标
+     * @param plannedSwitchMillis 预计切换时间（用于文件名）
+     */
+    private void prepareNextMuxer(long plannedSwitchMillis) {
+        if (!isRecording.get() || !muxerStarted || nextMuxer != null) {
+            return;
+        }
+        MediaFormat format = encoderOutputFormat;
+        if (format == null) {
+            return;
+        }
+
+        String path = generateSegmentPath(plannedSwitchMillis);
+        if (path.equals(currentFilePath)) {
+            // 分段时长过短时两个文件名可能相同，退回到当前时间
+            path = generateSegmentPath();
+        }
+        OpenedMuxer opened;
+        try {
+            opened = openMuxer(path);
+        } catch (IOException | IllegalArgumentException e) {
+            AppLog.e(TAG, "Camera " + cameraId + " Failed to open next muxer, segment switch will restart encoder", e);
+            return;
+        }
+        try {
+            int trackIndex = opened.muxer.addTrack(format);
+            opened.muxer.start();
+            nextMuxer = opened.muxer;
+            nextLease = opened.lease;
+            nextSegmentPath = path;
+            nextTrackIndex = trackIndex;
+            AppLog.d(TAG, "Camera " + cameraId + " Next muxer ready: " + path);
+        } catch (Exception e) {
+            AppLog.e(TAG, "Camera " + cameraId + " Failed to start next muxer, segment switch will restart encoder", e);
+            closeUnusedMuxer(opened.muxer, opened.lease, path);
+        }
+    }
+
+    /**
+     * 【无缝分段】分段到点：请求关键帧，由 drainEncoder 在关键帧处切换（在 muxer 线程上执行）
+     * 下一个 Muxer 未能打开时回退到停止并重建编码器的切换方式
+     */
+    private void beginRollover() {
+        if (!isRecording.get() || isReleased || rolloverPending) {
+            return;
+        }
+        if (nextMuxer == null) {
+            prepareNextMuxer(System.currentTimeMillis());
+        }
+        if (nextMuxer == null) {
+            AppLog.w(TAG, "Camera " + cameraId + " Next muxer not ready, fallback to encoder restart");
+            if (encoderHandler != null) {
+                encoderHandler.post(() -> switchToNextSegment());
+            }
+            return;
+        }
+
+        rolloverPending = true;
+        rolloverRequestNs = System.nanoTime();
+        if (encoderHandler != null) {
+            encoderHandler.post(this::requestSyncFrame);
+        }
+        AppLog.d(TAG, "Camera " + cameraId + " Segment rollover requested, waiting for key frame");
+    }
+
+    /**
+     * 【无缝分段】切换到下一个 Muxer（在 muxer 线程上、关键帧写入之前执行）
+     * 编码器不停，切换前后的帧连续写入两个文件；旧 Muxer 的收尾放到分段线程上，不阻塞写入
+     */
+    private void performRollover() {
+        long nowNs = System.nanoTime();
+        final RecordMuxer previousMuxer = muxer;
+        final SegmentFilePool.Lease previousLease = currentLease;
+        final String previousFilePath = currentFilePath;
+        long lastWrittenNs = lastFrameWrittenNs;
+
+        muxer = nextMuxer;
+        currentLease = nextLease;
+        videoTrackIndex = nextTrackIndex;
+        muxerStarted = true;
+        currentFilePath = nextSegmentPath;
+        nextMuxer = null;
+        nextLease = null;
+        nextSegmentPath = null;
+        nextTrackIndex = -1;
+        rolloverPending = false;
+
+        segmentIndex++;
+        recordedFilePaths.add(currentFilePath);
+        segmentStartTimeNs = nowNs;
+        encodedOutputFrameCount = 0;
+
+        metrics.onSegmentSwitch(nowNs - rolloverRequestNs);
+        final long gapMs;
+        if (lastWrittenNs > 0) {
+            metrics.onSegmentGap(nowNs - lastWrittenNs);
+            gapMs = (nowNs - lastWrittenNs) / 1_000_000;
+        } else {
+            gapMs = -1;
+        }
+        final int newIndex = segmentIndex;
+        AppLog.d(TAG, "Camera " + cameraId + " Rolled over to segment " + newIndex + " on key frame (gap " + gapMs
+                + "ms, waited " + ((nowNs - rolloverRequestNs) / 1_000_000) + "ms): " + currentFilePath);
+
+        // 先调度下一段，分段时长不受旧文件收尾耗时影响
+        segmentHandler.post(() -> scheduleNextSegment());
+        segmentHandler.post(() -> {
+            try {
+                previousMuxer.stop();
+            } catch (Exception e) {
+                AppLog.e(TAG, "Camera " + cameraId + " Error stopping previous muxer", e);
+            }
+            try {
+                previousMuxer.release();
+            } catch (Exception e) {
+                AppLog.w(TAG, "Camera " + cameraId + " Error releasing previous muxer: " + e.getMessage());
+            }
+            if (previousLease != null) {
+                previousLease.close();
+            }
+            validateAndCleanupFile(previousFilePath);
+            if (callback != null) {
+                callback.onSegmentSwitch(cameraId, newIndex, previousFilePath, gapMs);
+            }
+        });
+    }
+
+    /**
+     * 丢弃提前打开但未使用的下一个 Muxer（在 muxer 线程上执行，或 muxer 线程空闲时）
+     */
+    private void discardNextMuxer() {
+        rolloverPending = false;
+        RecordMuxer unused = nextMuxer;
+        if (unused == null) {
+            return;
+        }
+        closeUnusedMuxer(unused, nextLease, nextSegmentPath);
+        nextMuxer = null;
+        nextLease = null;
+        nextSegmentPath = null;
+        nextTrackIndex = -1;
+    }
+
+    /**
+     * 关闭没有写入任何帧的 Muxer 并删除文件
+     */
+    private void closeUnusedMuxer(RecordMuxer unused, SegmentFilePool.Lease lease, String path) {
+        try {
+            unused.release();  // 没有写入样本，不调用 stop
+        } catch (Exception e) {
+            // Ignore
+        }
+        if (lease != null) {
+            lease.close();
+        }
+        if (path != null && new File(path).delete()) {
+            AppLog.d(TAG, "Camera " + cameraId + " Discarded unused segment file: " + path);
+        }
+    }
+
     /**
      * 调度快速恢复重试
      */
@@ -1393,6 +2313,11 @@ public class CodecVideoRecorder {
         
         // 1. 停止录制（阻止新帧写入）
         isRecording.set(false);
+
+        // 编码器将重建，提前打开的下一个 Muxer 的轨道格式不再适用
+        if (muxerHandler != null) {
+            muxerHandler.post(this::discardNextMuxer);
+        }
         
         // 2. 排空编码器（drainEncoder 现在在同一线程执行，不会有竞争）
         if (encoder != null) {
@@ -1464,7 +2389,14 @@ public class CodecVideoRecorder {
      * 生成新的分段文件路径
      */
     private String generateSegmentPath() {
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        return generateSegmentPath(System.currentTimeMillis());
+    }
+
+    /**
+     * 按指定时间生成分段文件路径（无缝分段提前打开文件时使用预计的切换时间）
+     */
+    private String generateSegmentPath(long timeMillis) {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date(timeMillis));
         String fileName = timestamp + "_" + cameraPosition + ".mp4";
         return new File(saveDirectory, fileName).getAbsolutePath();
     }
@@ -1566,6 +2498,11 @@ public class CodecVideoRecorder {
                 encoderInputSurface = null;
             }
 
+            // 提前打开的下一个 Muxer 使用旧编码器的轨道格式，丢弃
+            if (muxerHandler != null) {
+                muxerHandler.post(this::discardNextMuxer);
+            }
+
             // 3. 小延迟让系统释放资源
             Thread.sleep(100);
 
@@ -1631,10 +2568,16 @@ public class CodecVideoRecorder {
 
         fileSizeCheckRunnable = () -> {
             if (isRecording.get() && currentFilePath != null) {
-                File file = new File(currentFilePath);
-                long currentSize = file.exists() ? file.length() : 0;
+                long currentSize = getCurrentFileSize();
                 long sizeIncrease = currentSize - lastFileSize;
 
+                // 记录文件增长速度（分段切换后文件变小，本次不计）
+                long now = System.currentTimeMillis();
+                if (lastFileSizeCheckTime > 0 && now > lastFileSizeCheckTime && sizeIncrease >= 0) {
+                    fileGrowthBytesPerSec = sizeIncrease * 1000 / (now - lastFileSizeCheckTime);
+                }
+                lastFileSizeCheckTime = now;
+
                 // 检查是否有写入
                 boolean hasWrite = (sizeIncrease > 0) || (currentSize > MIN_VALID_FILE_SIZE);
                 
@@ -1654,7 +2597,9 @@ public class CodecVideoRecorder {
                         // 通知外部：首次写入成功，录制已真正开始
                         // 外部可以据此开始钉钉录制计时等
                         if (callback != null) {
-                            callback.onFirstDataWritten(cameraId);
+                            SegmentFilePool.Lease lease = currentLease;
+                            callback.onFirstDataWritten(cameraId, System.currentTimeMillis() - recordingStartTime,
+                                    lease != null ? lease.getPreallocMs() : 0);
                         }
                     }
                     AppLog.d(TAG, "Camera " + cameraId + " file size: " + currentSize + " bytes (" + (currentSize / 1024) + " KB), frames: " + recordedFrameCount);
@@ -0,0 +1,626 @@
+package com.kooo.evcam.camera;
+
+import android.graphics.SurfaceTexture;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.view.Surface;
+
+import com.kooo.evcam.AppLog;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多摄像头共享的 EGL 渲染中心
+ *
+ * 默认每路 CodecVideoRecorder 各自持有一个 EglSurfaceEncoder：独立的 EGL 上下文、编码线程、
+ * 着色器程序和水印纹理，4 路摄像头就是 4 个 GL 上下文和 4 个渲染线程，低端车机上开销明显。
+ *
+ * 渲染中心只创建一个 EGL 上下文和一个渲染线程：
+ * - 每路摄像头对应一个 {@link Channel}（自己的 OES 纹理、编码器 EGLSurface 和预览 EGLSurface）
+ * - 着色器程序、顶点缓冲（VBO）和时间水印字形图集所有通道共用
+ * - 各路 SurfaceTexture 的帧回调都投递到渲染线程，按帧到达顺序依次渲染
+ * - 只消费帧（未录制）时不切换 EGLSurface，减少 eglMakeCurrent
+ *
+ * CodecVideoRecorder 使用渲染中心时，把渲染线程的 Looper 当作自己的编码线程，
+ * 因此所有 FrameRenderer 调用都在渲染线程上执行。
+ */
+public class EglRenderHub {
+    private static final String TAG = "EglRenderHub";
+
+    private static final long INIT_TIMEOUT_MS = 5000;
+    private static final long RELEASE_TIMEOUT_MS = 1000;
+
+    /**
+     * 着色器程序及其变量位置
+     */
+    private static final class ProgramHandles {
+        int program;
+        int position;
+        int texCoord;
+        int mvpMatrix;
+        int texMatrix;
+        int oesTexture;
+
+        static ProgramHandles create(String fragmentShader) {
+            int program = EglSurfaceEncoder.createProgram(EglSurfaceEncoder.VERTEX_SHADER, fragmentShader);
+            if (program == 0) {
+                return null;
+            }
+            ProgramHandles handles = new ProgramHandles();
+            handles.program = program;
+            handles.position = GLES20.glGetAttribLocation(program, "aPosition");
+            handles.texCoord = GLES20.glGetAttribLocation(program, "aTextureCoord");
+            handles.mvpMatrix = GLES20.glGetUniformLocation(program, "uMVPMatrix");
+            handles.texMatrix = GLES20.glGetUniformLocation(program, "uTexMatrix");
+            handles.oesTexture = GLES20.glGetUniformLocation(program, "sTexture");
+            return handles;
+        }
+    }
+
+    private HandlerThread renderThread;
+    private Handler renderHandler;
+    private volatile boolean running = false;
+
+    // EGL（只在渲染线程上访问）
+    private EGLDisplay eglDisplay = EGL14.EGL_NO_DISPLAY;
+    private EGLContext eglContext = EGL14.EGL_NO_CONTEXT;
+    private EGLConfig eglConfig;
+    private EGLSurface idleSurface = EGL14.EGL_NO_SURFACE;  // 1x1 pbuffer，没有窗口 Surface 时用来保持上下文
+    private EGLSurface currentSurface = EGL14.EGL_NO_SURFACE;
+
+    // 所有通道共用的 GL 资源
+    private ProgramHandles plainProgram;
+    private int vertexVbo;  // 顶点坐标在前，纹理坐标在后
+    private final float[] mvpMatrix = new float[16];
+
+    // 共用的时间水印（字形图集）
+    private GlyphWatermarkRenderer watermarkRenderer;
+
+    private final List<Channel> channels = new ArrayList<>();  // 只在渲染线程上访问
+    private long renderedFrames = 0;
+    private long surfaceSwitches = 0;
+
+    public EglRenderHub() {
+        Matrix.setIdentityM(mvpMatrix, 0);
+    }
+
+    /**
+     * 启动渲染线程并创建 EGL 上下文和共用资源
+     * @return false 表示初始化失败（调用方应回退到每路独立的 EglSurfaceEncoder）
+     */
+    public synchronized boolean start() {
+        if (running) {
+            return true;
+        }
+
+        renderThread = new HandlerThread("EglRenderHub");
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+
+        final RuntimeException[] initException = {null};
+        boolean completed = runOnRenderThread(() -> {
+            try {
+                initEgl();
+                initGl();
+            } catch (RuntimeException e) {
+                initException[0] = e;
+            }
+        }, INIT_TIMEOUT_MS);
+
+        if (!completed || initException[0] != null) {
+            AppLog.e(TAG, "Failed to start render hub" + (completed ? "" : " (timeout)"), initException[0]);
+            release();
+            return false;
+        }
+
+        running = true;
+        AppLog.d(TAG, "Render hub started");
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 渲染线程的 Looper（CodecVideoRecorder 用作编码线程）
+     */
+    public Looper getLooper() {
+        return renderThread != null ? renderThread.getLooper() : null;
+    }
+
+    /**
+     * 为一路摄像头创建渲染通道（调用 initialize 后才占用 GL 资源）
+     */
+    public Channel createChannel(String cameraId, int width, int height) {
+        return new Channel(cameraId, width, height);
+    }
+
+    /**
+     * 释放所有通道和 EGL 上下文，停止渲染线程
+     */
+    public synchronized void release() {
+        if (renderThread == null) {
+            return;
+        }
+        running = false;
+
+        runOnRenderThread(this::releaseGl, RELEASE_TIMEOUT_MS);
+
+        HandlerThread thread = renderThread;
+        renderThread = null;
+        renderHandler = null;
+        thread.quitSafely();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        AppLog.d(TAG, "Render hub released, frames rendered: " + renderedFrames + ", surface switches: " + surfaceSwitches);
+    }
+
+    // ==================== 渲染通道 ====================
+
+    /**
+     * 一路摄像头的渲染通道
+     * 除 release 和 setWatermarkEnabled 外，所有方法都必须在渲染线程上调用
+     */
+    public final class Channel implements FrameRenderer {
+        private final String cameraId;
+        private final int width;
+        private final int height;
+        private final float[] texMatrix = new float[16];
+
+        private int textureId;
+        private EGLSurface encoderSurface = EGL14.EGL_NO_SURFACE;
+        private EGLSurface previewSurface = EGL14.EGL_NO_SURFACE;
+        private SurfaceTexture inputSurfaceTexture;
+        private boolean sharedTextureMode = false;
+        private volatile boolean watermarkEnabled = false;
+        private volatile boolean initialized = false;
+        private volatile boolean released = false;
+
+        private Channel(String cameraId, int width, int height) {
+            this.cameraId = cameraId;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int initialize(Surface outputSurface) {
+            if (initialized) {
+                return textureId;
+            }
+            if (!running) {
+                throw new IllegalStateException("Render hub is not running");
+            }
+
+            encoderSurface = createWindowSurface(outputSurface);
+            if (encoderSurface == EGL14.EGL_NO_SURFACE) {
+                throw new RuntimeException("Unable to create EGL window surface for camera " + cameraId);
+            }
+            if (!makeCurrent(encoderSurface)) {
+                releaseGl();
+                throw new RuntimeException("eglMakeCurrent failed for camera " + cameraId);
+            }
+            textureId = createOesTexture();
+            channels.add(this);
+            if (watermarkEnabled) {
+                ensureWatermarkGl();
+            }
+            initialized = true;
+
+            AppLog.d(TAG, "Camera " + cameraId + " channel initialized " + width + "x" + height
+                    + ", textureId=" + textureId + ", channels=" + channels.size());
+            return textureId;
+        }
+
+        @Override
+        public void setInputSurfaceTexture(SurfaceTexture surfaceTexture) {
+            this.inputSurfaceTexture = surfaceTexture;
+        }
+
+        @Override
+        public void setWatermarkEnabled(boolean enabled) {
+            this.watermarkEnabled = enabled;
+            // 可能在主线程调用，水印资源在渲染线程上创建
+            Handler handler = renderHandler;
+            if (enabled && initialized && handler != null) {
+                handler.post(EglRenderHub.this::ensureWatermarkGl);
+            }
+        }
+
+        @Override
+        public void setSharedTextureMode(boolean enabled) {
+            this.sharedTextureMode = enabled;
+        }
+
+        @Override
+        public void setPreviewSurface(Surface surface) {
+            if (previewSurface != EGL14.EGL_NO_SURFACE) {
+                destroySurface(previewSurface);
+                previewSurface = EGL14.EGL_NO_SURFACE;
+            }
+            if (surface != null && surface.isValid() && initialized) {
+                previewSurface = createWindowSurface(surface);
+                if (previewSurface == EGL14.EGL_NO_SURFACE) {
+                    AppLog.e(TAG, "Camera " + cameraId + " Failed to create preview EGL surface");
+                } else {
+                    AppLog.d(TAG, "Camera " + cameraId + " Preview surface set for dual-target rendering");
+                }
+            }
+        }
+
+        @Override
+        public void drawFrame(long presentationTimeNs) {
+            if (!initialized || released || inputSurfaceTexture == null) {
+                return;
+            }
+
+            try {
+                if (!makeCurrent(encoderSurface)) {
+                    AppLog.e(TAG, "Camera " + cameraId + " eglMakeCurrent failed");
+                    return;
+                }
+                if (!sharedTextureMode) {
+                    inputSurfaceTexture.updateTexImage();
+                }
+                inputSurfaceTexture.getTransformMatrix(texMatrix);
+
+                drawQuad(this, watermarkEnabled && watermarkRenderer != null);
+                EGLExt.eglPresentationTimeANDROID(eglDisplay, encoderSurface, presentationTimeNs);
+                EGL14.eglSwapBuffers(eglDisplay, encoderSurface);
+
+                // 双目标渲染：复用已更新的纹理再画一次到预览 Surface（预览不需要水印）
+                if (previewSurface != EGL14.EGL_NO_SURFACE && makeCurrent(previewSurface)) {
+                    drawQuad(this, false);
+                    EGL14.eglSwapBuffers(eglDisplay, previewSurface);
+                }
+                renderedFrames++;
+            } catch (Exception e) {
+                AppLog.e(TAG, "Camera " + cameraId + " Error drawing frame", e);
+            }
+        }
+
+        @Override
+        public void updateOutputSurface(Surface newOutputSurface) {
+            if (!initialized || released) {
+                AppLog.w(TAG, "Camera " + cameraId + " Cannot update output surface: not initialized or released");
+                return;
+            }
+
+            if (encoderSurface != EGL14.EGL_NO_SURFACE) {
+                destroySurface(encoderSurface);
+                encoderSurface = EGL14.EGL_NO_SURFACE;
+            }
+            encoderSurface = createWindowSurface(newOutputSurface);
+            if (encoderSurface == EGL14.EGL_NO_SURFACE || !makeCurrent(encoderSurface)) {
+                throw new RuntimeException("Failed to update output surface for camera " + cameraId);
+            }
+            AppLog.d(TAG, "Camera " + cameraId + " Output surface updated");
+        }
+
+        @Override
+        public void consumeFrame() {
+            if (!initialized || released || inputSurfaceTexture == null) {
+                return;
+            }
+            try {
+                // updateTexImage 只需要上下文是当前的，不切换 EGLSurface
+                ensureContextCurrent();
+                inputSurfaceTexture.updateTexImage();
+            } catch (Exception e) {
+                // 非录制状态下的错误不需要记录
+            }
+        }
+
+        @Override
+        public void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            initialized = false;
+            runOnRenderThread(this::releaseGl, RELEASE_TIMEOUT_MS);
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return initialized && !released;
+        }
+
+        /**
+         * 释放通道的 GL 资源（在渲染线程上执行）
+         */
+        private void releaseGl() {
+            channels.remove(this);
+            if (previewSurface != EGL14.EGL_NO_SURFACE) {
+                destroySurface(previewSurface);
+                previewSurface = EGL14.EGL_NO_SURFACE;
+            }
+            if (encoderSurface != EGL14.EGL_NO_SURFACE) {
+                destroySurface(encoderSurface);
+                encoderSurface = EGL14.EGL_NO_SURFACE;
+            }
+            if (textureId != 0 && ensureContextCurrent()) {
+                GLES20.glDeleteTextures(1, new int[]{textureId}, 0);
+            }
+            textureId = 0;
+            inputSurfaceTexture = null;
+            AppLog.d(TAG, "Camera " + cameraId + " channel released, channels=" + channels.size());
+        }
+    }
+
+    // ===== 私有方法（渲染线程） =====
+
+    /**
+     * 在渲染线程上执行并等待完成（当前就是渲染线程时直接执行）
+     * @return false 表示超时或渲染线程已停止
+     */
+    private boolean runOnRenderThread(Runnable task, long timeoutMs) {
+        HandlerThread thread = renderThread;
+        Handler handler = renderHandler;
+        if (thread == null || handler == null) {
+            return false;
+        }
+        if (Looper.myLooper() == thread.getLooper()) {
+            task.run();
+            return true;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        boolean posted = handler.post(() -> {
+            try {
+                task.run();
+            } finally {
+                latch.countDown();
+            }
+        });
+        if (!posted) {
+            return false;
+        }
+        try {
+            return latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void initEgl() {
+        eglDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        if (eglDisplay == EGL14.EGL_NO_DISPLAY) {
+            throw new RuntimeException("Unable to get EGL14 display");
+        }
+        int[] version = new int[2];
+        if (!EGL14.eglInitialize(eglDisplay, version, 0, version, 1)) {
+            eglDisplay = EGL14.EGL_NO_DISPLAY;
+            throw new RuntimeException("Unable to initialize EGL14");
+        }
+
+        int[] attribList = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT | EGL14.EGL_WINDOW_BIT,
+                EGLExt.EGL_RECORDABLE_ANDROID, 1,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(eglDisplay, attribList, 0, configs, 0, 1, numConfigs, 0) || numConfigs[0] == 0) {
+            throw new RuntimeException("Unable to find suitable EGL config");
+        }
+        eglConfig = configs[0];
+
+        int[] contextAttribList = {
+                EGL14.EGL_CONTEXT_CLIENT_VERSION, 2,
+                EGL14.EGL_NONE
+        };
+        eglContext = EGL14.eglCreateContext(eglDisplay, eglConfig, EGL14.EGL_NO_CONTEXT, contextAttribList, 0);
+        if (eglContext == EGL14.EGL_NO_CONTEXT) {
+            throw new RuntimeException("Unable to create EGL context");
+        }
+
+        int[] pbufferAttribList = {
+                EGL14.EGL_WIDTH, 1,
+                EGL14.EGL_HEIGHT, 1,
+                EGL14.EGL_NONE
+        };
+        idleSurface = EGL14.eglCreatePbufferSurface(eglDisplay, eglConfig, pbufferAttribList, 0);
+        if (idleSurface == EGL14.EGL_NO_SURFACE || !makeCurrent(idleSurface)) {
+            throw new RuntimeException("Unable to make render hub context current");
+        }
+        AppLog.d(TAG, "EGL initialized: " + version[0] + "." + version[1]);
+    }
+
+    private void initGl() {
+        plainProgram = ProgramHandles.create(EglSurfaceEncoder.FRAGMENT_SHADER);
+        if (plainProgram == null) {
+            throw new RuntimeException("Unable to create shader program");
+        }
+
+        float[] quad = new float[EglSurfaceEncoder.VERTICES.length + EglSurfaceEncoder.TEXTURE_COORDS.length];
+        System.arraycopy(EglSurfaceEncoder.VERTICES, 0, quad, 0, EglSurfaceEncoder.VERTICES.length);
+        System.arraycopy(EglSurfaceEncoder.TEXTURE_COORDS, 0, quad, EglSurfaceEncoder.VERTICES.length,
+                EglSurfaceEncoder.TEXTURE_COORDS.length);
+        FloatBuffer quadBuffer = EglSurfaceEncoder.createFloatBuffer(quad);
+
+        int[] buffers = new int[1];
+        GLES20.glGenBuffers(1, buffers, 0);
+        vertexVbo = buffers[0];
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexVbo);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, quad.length * 4, quadBuffer, GLES20.GL_STATIC_DRAW);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        checkGlError("initGl");
+    }
+
+    /**
+     * 创建水印渲染器（第一个启用水印的通道触发，之后所有通道共用）
+     */
+    private void ensureWatermarkGl() {
+        if (watermarkRenderer != null || !ensureContextCurrent()) {
+            return;
+        }
+        GlyphWatermarkRenderer renderer = new GlyphWatermarkRenderer(EglSurfaceEncoder.WATERMARK_TEXT_SIZE, true);
+        if (!renderer.init()) {
+            AppLog.e(TAG, "Failed to initialize shared watermark renderer");
+            renderer.release();
+            return;
+        }
+        watermarkRenderer = renderer;
+        AppLog.d(TAG, "Shared watermark glyph atlas initialized");
+    }
+
+    /**
+     * 用共用的程序和 VBO 绘制一个通道的全屏四边形
+     */
+    private void drawQuad(Channel channel, boolean withWatermark) {
+        ProgramHandles handles = plainProgram;
+
+        GLES20.glViewport(0, 0, channel.width, channel.height);
+        GLES20.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        GLES20.glUseProgram(handles.program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, channel.textureId);
+        GLES20.glUniform1i(handles.oesTexture, 0);
+        GLES20.glUniformMatrix4fv(handles.mvpMatrix, 1, false, mvpMatrix, 0);
+        GLES20.glUniformMatrix4fv(handles.texMatrix, 1, false, channel.texMatrix, 0);
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexVbo);
+        GLES20.glEnableVertexAttribArray(handles.position);
+        GLES20.glVertexAttribPointer(handles.position, 2, GLES20.GL_FLOAT, false, 0, 0);
+        GLES20.glEnableVertexAttribArray(handles.texCoord);
+        GLES20.glVertexAttribPointer(handles.texCoord, 2, GLES20.GL_FLOAT, false, 0,
+                EglSurfaceEncoder.VERTICES.length * 4);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(handles.position);
+        GLES20.glDisableVertexAttribArray(handles.texCoord);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        // 水印叠加在画面之上（右上角，与 EglSurfaceEncoder 一致）
+        if (withWatermark) {
+            watermarkRenderer.draw(channel.width, channel.height);
+        }
+        checkGlError("drawQuad " + channel.cameraId);
+    }
+
+    private int createOesTexture() {
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textures[0]);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        return textures[0];
+    }
+
+    private EGLSurface createWindowSurface(Surface surface) {
+        int[] surfaceAttribList = {EGL14.EGL_NONE};
+        return EGL14.eglCreateWindowSurface(eglDisplay, eglConfig, surface, surfaceAttribList, 0);
+    }
+
+    /**
+     * 销毁 EGLSurface（当前绑定的 Surface 先切回 pbuffer，避免延迟销毁）
+     */
+    private void destroySurface(EGLSurface surface) {
+        if (surface == currentSurface) {
+            makeCurrent(idleSurface);
+        }
+        EGL14.eglDestroySurface(eglDisplay, surface);
+    }
+
+    /**
+     * 绑定到指定 Surface，已经是当前 Surface 时不重复调用 eglMakeCurrent
+     */
+    private boolean makeCurrent(EGLSurface surface) {
+        if (surface == currentSurface) {
+            return true;
+        }
+        if (!EGL14.eglMakeCurrent(eglDisplay, surface, surface, eglContext)) {
+            currentSurface = EGL14.EGL_NO_SURFACE;
+            return false;
+        }
+        currentSurface = surface;
+        surfaceSwitches++;
+        return true;
+    }
+
+    /**
+     * 确保上下文是当前的（只需要 GL 上下文、不关心输出 Surface 时使用）
+     */
+    private boolean ensureContextCurrent() {
+        if (currentSurface != EGL14.EGL_NO_SURFACE) {
+            return true;
+        }
+        return idleSurface != EGL14.EGL_NO_SURFACE && makeCurrent(idleSurface);
+    }
+
+    /**
+     * 释放所有通道和共用资源（在渲染线程上执行）
+     */
+    private void releaseGl() {
+        for (Channel channel : new ArrayList<>(channels)) {
+            channel.released = true;
+            channel.initialized = false;
+            channel.releaseGl();
+        }
+
+        if (eglDisplay != EGL14.EGL_NO_DISPLAY && ensureContextCurrent()) {
+            if (plainProgram != null) {
+                GLES20.glDeleteProgram(plainProgram.program);
+            }
+            if (watermarkRenderer != null) {
+                watermarkRenderer.release();
+            }
+            if (vertexVbo != 0) {
+                GLES20.glDeleteBuffers(1, new int[]{vertexVbo}, 0);
+            }
+        }
+        plainProgram = null;
+        watermarkRenderer = null;
+        vertexVbo = 0;
+
+        if (eglDisplay != EGL14.EGL_NO_DISPLAY) {
+            EGL14.eglMakeCurrent(eglDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+            currentSurface = EGL14.EGL_NO_SURFACE;
+            if (idleSurface != EGL14.EGL_NO_SURFACE) {
+                EGL14.eglDestroySurface(eglDisplay, idleSurface);
+                idleSurface = EGL14.EGL_NO_SURFACE;
+            }
+            if (eglContext != EGL14.EGL_NO_CONTEXT) {
+                EGL14.eglDestroyContext(eglDisplay, eglContext);
+                eglContext = EGL14.EGL_NO_CONTEXT;
+            }
+            EGL14.eglTerminate(eglDisplay);
+            eglDisplay = EGL14.EGL_NO_DISPLAY;
+        }
+    }
+
+    private void checkGlError(String op) {
+        int error;
+        while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
+            AppLog.e(TAG, op + ": glError " + error);
+        }
+    }
+}
@@ -1,11 +1,6 @@
 package com.kooo.evcam.camera;
 
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.SurfaceTexture;
-import android.graphics.Typeface;
 import android.opengl.EGL14;
 import android.opengl.EGLConfig;
 import android.opengl.EGLContext;
@@ -14,7 +9,6 @@ import android.opengl.EGLExt;
 import android.opengl.EGLSurface;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
 import android.opengl.Matrix;
 import android.view.Surface;
 
@@ -23,9 +17,6 @@ import com.kooo.evcam.AppLog;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
 
 /**
  * EGL/OpenGL 渲染桥接类
@@ -37,11 +28,11 @@ import java.util.Locale;
  * 3. 使用 OpenGL 将 SurfaceTexture 的内容渲染到 MediaCodec 的输入 Surface
  * 4. MediaCodec 编码后通过 MediaMuxer 写入文件
  */
-public class EglSurfaceEncoder {
+public class EglSurfaceEncoder implements FrameRenderer {
     private static final String TAG = "EglSurfaceEncoder";
 
     // Vertex shader - 简单的顶点变换
-    private static final String VERTEX_SHADER =
+    static final String VERTEX_SHADER =
             "uniform mat4 uMVPMatrix;\n" +
             "uniform mat4 uTexMatrix;\n" +
             "attribute vec4 aPosition;\n" +
@@ -53,7 +44,7 @@ public class EglSurfaceEncoder {
             "}\n";
 
     // Fragment shader - 使用外部纹理（OES）采样（无水印版本）
-    private static final String FRAGMENT_SHADER =
+    static final String FRAGMENT_SHADER =
             "#extension GL_OES_EGL_image_external : require\n" +
             "precision mediump float;\n" +
             "varying vec2 vTextureCoord;\n" +
@@ -62,34 +53,8 @@ public class EglSurfaceEncoder {
             "    gl_FragColor = texture2D(sTexture, vTextureCoord);\n" +
             "}\n";
 
-    // Fragment shader - 带时间水印版本
-    private static final String FRAGMENT_SHADER_WITH_WATERMARK =
-            "#extension GL_OES_EGL_image_external : require\n" +
-            "precision mediump float;\n" +
-            "varying vec2 vTextureCoord;\n" +
-            "uniform samplerExternalOES sTexture;\n" +
-            "uniform sampler2D sWatermarkTexture;\n" +
-            "uniform vec4 uWatermarkRect;\n" +  // x, y, width, height (归一化坐标)
-            "void main() {\n" +
-            "    vec4 videoColor = texture2D(sTexture, vTextureCoord);\n" +
-            "    // 检查是否在水印区域内\n" +
-            "    if (vTextureCoord.x >= uWatermarkRect.x && vTextureCoord.x <= uWatermarkRect.x + uWatermarkRect.z &&\n" +
-            "        vTextureCoord.y >= uWatermarkRect.y && vTextureCoord.y <= uWatermarkRect.y + uWatermarkRect.w) {\n" +
-            "        // 计算水印纹理坐标\n" +
-            "        vec2 watermarkCoord = vec2(\n" +
-            "            (vTextureCoord.x - uWatermarkRect.x) / uWatermarkRect.z,\n" +
-            "            (vTextureCoord.y - uWatermarkRect.y) / uWatermarkRect.w\n" +
-            "        );\n" +
-            "        vec4 watermarkColor = texture2D(sWatermarkTexture, watermarkCoord);\n" +
-            "        // Alpha 混合\n" +
-            "        gl_FragColor = mix(videoColor, watermarkColor, watermarkColor.a);\n" +
-            "    } else {\n" +
-            "        gl_FragColor = videoColor;\n" +
-            "    }\n" +
-            "}\n";
-
     // 顶点坐标（全屏四边形）
-    private static final float[] VERTICES = {
+    static final float[] VERTICES = {
             -1.0f, -1.0f,  // 左下
              1.0f, -1.0f,  // 右下
             -1.0f,  1.0f,  // 左上
@@ -97,7 +62,7 @@ public class EglSurfaceEncoder {
     };
 
     // 纹理坐标
-    private static final float[] TEXTURE_COORDS = {
+    static final float[] TEXTURE_COORDS = {
             0.0f, 0.0f,  // 左下
             1.0f, 0.0f,  // 右下
             0.0f, 1.0f,  // 左上
@@ -145,35 +110,32 @@ public class EglSurfaceEncoder {
     private Surface previewSurface = null;
     private EGLSurface previewEglSurface = EGL14.EGL_NO_SURFACE;
 
-    // 时间水印相关
+    // 时间水印相关（字形图集，纹理只在初始化时上传一次）
     private boolean watermarkEnabled = false;
-    private int watermarkProgram;
-    private int watermarkTextureId;
-    private int watermarkTextureHandle;
-    private int watermarkRectHandle;
-    private int watermarkPositionHandle;
-    private int watermarkTexCoordHandle;
-    private int watermarkMvpMatrixHandle;
-    private int watermarkTexMatrixHandle;
-    private int watermarkOesTextureHandle;
-    private Bitmap watermarkBitmap;
-    private String lastWatermarkTime = "";
-    private static final int WATERMARK_WIDTH = 400;   // 水印纹理宽度（需容纳19字符的时间戳）
-    private static final int WATERMARK_HEIGHT = 44;   // 水印纹理高度
-    private final SimpleDateFormat watermarkDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-    
-    // 【优化3】水印更新频率控制
-    private long lastWatermarkUpdateTimeMs = 0;
-    private static final long WATERMARK_UPDATE_INTERVAL_MS = 1000;  // 每秒最多更新一次水印
-    
-    // 【优化3】复用 Paint 对象，避免每帧创建
-    private Paint watermarkShadowPaint;
-    private Paint watermarkTextPaint;
+    private GlyphWatermarkRenderer watermarkRenderer;
+    static final int WATERMARK_TEXT_SIZE = 28;  // 水印字号（像素）
+
+    // 【四画面合成】2x2 拼接模式：每个分块一个 OES 纹理，分块 0 复用 textureId
+    private final int tileCount;
+    private int[] tileTextureIds;
+    private SurfaceTexture[] tileSurfaceTextures;
+    private float[][] tileTexMatrices;
+    private boolean[] tileHasFrame;
 
     public EglSurfaceEncoder(String cameraId, int width, int height) {
+        this(cameraId, width, height, 0);
+    }
+
+    /**
+     * 创建四画面合成渲染器
+     * 输出尺寸为整个拼接画面，每个分块占 1/2 宽、1/2 高，按 左上、右上、左下、右下 排列
+     * @param tileCount 分块数量（2~4），传 0 表示普通单画面模式
+     */
+    public EglSurfaceEncoder(String cameraId, int width, int height, int tileCount) {
         this.cameraId = cameraId;
         this.width = width;
         this.height = height;
+        this.tileCount = tileCount > 1 ? Math.min(tileCount, 4) : 0;
 
         // 初始化 MVP 矩阵为单位矩阵
         Matrix.setIdentityM(mvpMatrix, 0);
@@ -184,6 +146,7 @@ public class EglSurfaceEncoder {
      * @param outputSurface MediaCodec 的输入 Surface
      * @return 创建的 OES 纹理 ID（用于创建 SurfaceTexture 供 Camera 输出）
      */
+    @Override
     public int initialize(Surface outputSurface) {
         if (isInitialized) {
             AppLog.w(TAG, "Camera " + cameraId + " EglSurfaceEncoder already initialized");
@@ -214,6 +177,7 @@ public class EglSurfaceEncoder {
     /**
      * 设置输入 SurfaceTexture
      */
+    @Override
     public void setInputSurfaceTexture(SurfaceTexture surfaceTexture) {
         this.inputSurfaceTexture = surfaceTexture;
         AppLog.d(TAG, "Camera " + cameraId + " Input SurfaceTexture set");
@@ -223,12 +187,13 @@ public class EglSurfaceEncoder {
      * 设置是否启用时间水印
      * @param enabled true 表示启用水印
      */
+    @Override
     public void setWatermarkEnabled(boolean enabled) {
         this.watermarkEnabled = enabled;
         AppLog.d(TAG, "Camera " + cameraId + " Watermark " + (enabled ? "enabled" : "disabled"));
         
         // 如果已初始化且启用水印，需要初始化水印相关资源
-        if (isInitialized && enabled && watermarkProgram == 0) {
+        if (isInitialized && enabled && watermarkRenderer == null) {
             initWatermarkGl();
         }
     }
@@ -244,6 +209,7 @@ public class EglSurfaceEncoder {
      * 【优化】设置共享 TextureView 模式
      * 在此模式下，不调用 updateTexImage()，因为 TextureView 已经处理了
      */
+    @Override
     public void setSharedTextureMode(boolean enabled) {
         this.sharedTextureMode = enabled;
         AppLog.d(TAG, "Camera " + cameraId + " Shared texture mode: " + (enabled ? "ENABLED" : "DISABLED"));
@@ -256,6 +222,7 @@ public class EglSurfaceEncoder {
      * 
      * @param surface TextureView 的 Surface，传 null 禁用双目标渲染
      */
+    @Override
     public void setPreviewSurface(Surface surface) {
         // 释放旧的预览 EGL Surface
         if (previewEglSurface != EGL14.EGL_NO_SURFACE) {
@@ -285,11 +252,88 @@ public class EglSurfaceEncoder {
         return previewEglSurface != EGL14.EGL_NO_SURFACE;
     }
 
+    // ==================== 四画面合成 ====================
+
+    /**
+     * 是否为四画面合成模式
+     */
+    public boolean isCompositeMode() {
+        return tileCount > 0;
+    }
+
+    /**
+     * 获取分块的 OES 纹理 ID（分块 0 与 {@link #getTextureId()} 相同）
+     */
+    public int getTileTextureId(int index) {
+        if (index == 0) {
+            return textureId;
+        }
+        return tileTextureIds != null && index < tileCount ? tileTextureIds[index] : 0;
+    }
+
+    /**
+     * 设置分块的输入 SurfaceTexture（分块 0 等同于 {@link #setInputSurfaceTexture}）
+     */
+    public void setTileSurfaceTexture(int index, SurfaceTexture surfaceTexture) {
+        if (index == 0) {
+            setInputSurfaceTexture(surfaceTexture);
+        } else if (tileSurfaceTextures != null && index < tileCount) {
+            tileSurfaceTextures[index] = surfaceTexture;
+        }
+    }
+
+    /**
+     * 更新分块纹理（分块 1~3 的 onFrameAvailable 中调用）
+     * 只消费帧并保存变换矩阵，下一次 drawFrame 时一起合成；编码节奏由分块 0 驱动
+     */
+    public void updateTile(int index) {
+        if (!isInitialized || isReleased || index <= 0 || index >= tileCount) {
+            return;
+        }
+        SurfaceTexture surfaceTexture = tileSurfaceTextures[index];
+        if (surfaceTexture == null) {
+            return;
+        }
+        try {
+            makeCurrent();
+            surfaceTexture.updateTexImage();
+            surfaceTexture.getTransformMatrix(tileTexMatrices[index]);
+            tileHasFrame[index] = true;
+        } catch (Exception e) {
+            AppLog.e(TAG, "Camera " + cameraId + " Error updating tile " + index, e);
+        }
+    }
+
+    /**
+     * 按 2x2 布局逐个分块设置视口并绘制；水印只画在右上分块（只有两路时为右侧分块）
+     */
+    private void drawCompositeTiles() {
+        int tileW = width / 2;
+        int tileH = height / 2;
+        int watermarkTile = Math.min(1, tileCount - 1);
+        for (int i = 0; i < tileCount; i++) {
+            if (i > 0 && !tileHasFrame[i]) {
+                continue;  // 该路还没有帧，保持黑色
+            }
+            int col = i % 2;
+            int row = i / 2;
+            // GL 视口原点在左下角
+            GLES20.glViewport(col * tileW, height - (row + 1) * tileH, tileW, tileH);
+            int tileTexture = getTileTextureId(i);
+            float[] tileMatrix = i == 0 ? texMatrix : tileTexMatrices[i];
+            drawFrameWithoutWatermark(tileTexture, tileMatrix);
+            if (i == watermarkTile && watermarkEnabled && watermarkRenderer != null) {
+                watermarkRenderer.draw(tileW, tileH);
+            }
+        }
+    }
+
     /**
      * 渲染一帧到输出 Surface
      * 应该在 SurfaceTexture.onFrameAvailable 回调中调用
      * @param presentationTimeNs 帧的呈现时间（纳秒）
      */
+    @Override
     public void drawFrame(long presentationTimeNs) {
         if (!isInitialized || isReleased) {
             return;
@@ -320,10 +364,13 @@ public class EglSurfaceEncoder {
             GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
 
             // 根据是否启用水印选择不同的渲染路径
-            if (watermarkEnabled && watermarkProgram != 0) {
-                drawFrameWithWatermark();
+            if (tileCount > 0) {
+                drawCompositeTiles();
             } else {
-                drawFrameWithoutWatermark();
+                drawFrameWithoutWatermark(textureId, texMatrix);
+                if (watermarkEnabled && watermarkRenderer != null) {
+                    watermarkRenderer.draw(width, height);
+                }
             }
 
             // 设置呈现时间戳并交换缓冲区（编码器 Surface）
@@ -360,7 +407,7 @@ public class EglSurfaceEncoder {
             GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
 
             // 渲染（不带水印，预览不需要水印）
-            drawFrameWithoutWatermark();
+            drawFrameWithoutWatermark(textureId, texMatrix);
 
             // 交换缓冲区（预览不需要时间戳）
             EGL14.eglSwapBuffers(eglDisplay, previewEglSurface);
@@ -380,18 +427,18 @@ public class EglSurfaceEncoder {
     /**
      * 无水印渲染
      */
-    private void drawFrameWithoutWatermark() {
+    private void drawFrameWithoutWatermark(int oesTextureId, float[] textureMatrix) {
         // 使用着色器程序
         GLES20.glUseProgram(program);
         checkGlError("glUseProgram");
 
         // 绑定纹理
         GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, oesTextureId);
 
         // 设置 uniform 变量
         GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, mvpMatrix, 0);
-        GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, texMatrix, 0);
+        GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, textureMatrix, 0);
         GLES20.glUniform1i(textureHandle, 0);
 
         // 设置顶点属性
@@ -410,59 +457,12 @@ public class EglSurfaceEncoder {
         GLES20.glDisableVertexAttribArray(texCoordHandle);
     }
 
-    /**
-     * 带水印渲染
-     */
-    private void drawFrameWithWatermark() {
-        // 更新水印位图（如果时间变化了）
-        updateWatermarkBitmap();
-
-        // 使用水印着色器程序
-        GLES20.glUseProgram(watermarkProgram);
-        checkGlError("glUseProgram watermark");
-
-        // 绑定视频纹理到纹理单元0
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
-        GLES20.glUniform1i(watermarkOesTextureHandle, 0);
-
-        // 绑定水印纹理到纹理单元1
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, watermarkTextureId);
-        GLES20.glUniform1i(watermarkTextureHandle, 1);
-
-        // 设置 uniform 变量
-        GLES20.glUniformMatrix4fv(watermarkMvpMatrixHandle, 1, false, mvpMatrix, 0);
-        GLES20.glUniformMatrix4fv(watermarkTexMatrixHandle, 1, false, texMatrix, 0);
-
-        // 设置水印位置和大小（归一化坐标，右上角）
-        float watermarkW = (float) WATERMARK_WIDTH / width;   // 水印宽度占比
-        float watermarkH = (float) WATERMARK_HEIGHT / height; // 水印高度占比
-        float watermarkX = 1.0f - watermarkW - 0.01f;  // 右边距 1%
-        float watermarkY = 0.01f;  // 上边距 1%
-        GLES20.glUniform4f(watermarkRectHandle, watermarkX, watermarkY, watermarkW, watermarkH);
-
-        // 设置顶点属性
-        GLES20.glEnableVertexAttribArray(watermarkPositionHandle);
-        GLES20.glVertexAttribPointer(watermarkPositionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-
-        GLES20.glEnableVertexAttribArray(watermarkTexCoordHandle);
-        GLES20.glVertexAttribPointer(watermarkTexCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texCoordBuffer);
-
-        // 绘制
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-        checkGlError("glDrawArrays watermark");
-
-        // 禁用顶点属性
-        GLES20.glDisableVertexAttribArray(watermarkPositionHandle);
-        GLES20.glDisableVertexAttribArray(watermarkTexCoordHandle);
-    }
-
     /**
      * 更新输出 Surface（用于分段切换时）
      * 销毁旧的 EGL Surface，创建新的绑定到新的 MediaCodec 输入 Surface
      * @param newOutputSurface 新的 MediaCodec 输入 Surface
      */
+    @Override
     public void updateOutputSurface(Surface newOutputSurface) {
         if (!isInitialized || isReleased) {
             AppLog.w(TAG, "Camera " + cameraId + " Cannot update output surface: not initialized or released");
@@ -505,6 +505,7 @@ public class EglSurfaceEncoder {
      * 关键：必须调用 updateTexImage() 来消费帧，否则 SurfaceTexture 会保持 pending 状态，
      * 不再触发后续的 onFrameAvailable 回调
      */
+    @Override
     public void consumeFrame() {
         if (!isInitialized || isReleased) {
             return;
@@ -527,6 +528,7 @@ public class EglSurfaceEncoder {
     /**
      * 释放资源
      */
+    @Override
     public void release() {
         if (isReleased) {
             return;
@@ -549,27 +551,23 @@ public class EglSurfaceEncoder {
             textureId = 0;
         }
 
-        // 释放水印相关资源
-        if (watermarkProgram != 0) {
-            GLES20.glDeleteProgram(watermarkProgram);
-            watermarkProgram = 0;
-        }
-
-        if (watermarkTextureId != 0) {
-            int[] textures = {watermarkTextureId};
-            GLES20.glDeleteTextures(1, textures, 0);
-            watermarkTextureId = 0;
+        // 释放分块纹理（分块 SurfaceTexture 由创建者释放）
+        if (tileTextureIds != null) {
+            for (int i = 1; i < tileTextureIds.length; i++) {
+                if (tileTextureIds[i] != 0) {
+                    GLES20.glDeleteTextures(1, tileTextureIds, i);
+                    tileTextureIds[i] = 0;
+                }
+            }
+            tileSurfaceTextures = null;
         }
 
-        if (watermarkBitmap != null) {
-            watermarkBitmap.recycle();
-            watermarkBitmap = null;
+        // 释放水印相关资源
+        if (watermarkRenderer != null) {
+            watermarkRenderer.release();
+            watermarkRenderer = null;
         }
 
-        // 【优化3】清理 Paint 对象
-        watermarkShadowPaint = null;
-        watermarkTextPaint = null;
-
         // 【优化】释放预览 EGL Surface
         if (previewEglSurface != EGL14.EGL_NO_SURFACE) {
             EGL14.eglDestroySurface(eglDisplay, previewEglSurface);
@@ -610,6 +608,7 @@ public class EglSurfaceEncoder {
     /**
      * 检查是否已初始化
      */
+    @Override
     public boolean isInitialized() {
         return isInitialized && !isReleased;
     }
@@ -705,6 +704,25 @@ public class EglSurfaceEncoder {
         GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
         GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
 
+        // 【四画面合成】为分块 1~3 创建额外的 OES 纹理
+        if (tileCount > 0) {
+            tileTextureIds = new int[tileCount];
+            tileSurfaceTextures = new SurfaceTexture[tileCount];
+            tileTexMatrices = new float[tileCount][16];
+            tileHasFrame = new boolean[tileCount];
+            tileTextureIds[0] = textureId;
+            GLES20.glGenTextures(tileCount - 1, tileTextureIds, 1);
+            for (int i = 1; i < tileCount; i++) {
+                GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, tileTextureIds[i]);
+                GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+                GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+                GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+                GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+            }
+            AppLog.d(TAG, "Camera " + cameraId + " Composite mode: " + tileCount + " tiles of "
+                    + (width / 2) + "x" + (height / 2));
+        }
+
         // 创建顶点缓冲
         vertexBuffer = createFloatBuffer(VERTICES);
         texCoordBuffer = createFloatBuffer(TEXTURE_COORDS);
@@ -713,110 +731,21 @@ public class EglSurfaceEncoder {
     }
 
     /**
-     * 初始化水印相关的 OpenGL 资源
+     * 初始化水印相关的 OpenGL 资源（上传字形图集）
      */
     private void initWatermarkGl() {
-        if (watermarkProgram != 0) {
+        if (watermarkRenderer != null) {
             return;  // 已经初始化过了
         }
 
-        AppLog.d(TAG, "Camera " + cameraId + " Initializing watermark OpenGL resources");
-
-        // 创建带水印的着色器程序
-        watermarkProgram = createProgram(VERTEX_SHADER, FRAGMENT_SHADER_WITH_WATERMARK);
-        if (watermarkProgram == 0) {
-            AppLog.e(TAG, "Camera " + cameraId + " Failed to create watermark shader program");
-            return;
-        }
-
-        // 获取属性位置
-        watermarkPositionHandle = GLES20.glGetAttribLocation(watermarkProgram, "aPosition");
-        watermarkTexCoordHandle = GLES20.glGetAttribLocation(watermarkProgram, "aTextureCoord");
-        watermarkMvpMatrixHandle = GLES20.glGetUniformLocation(watermarkProgram, "uMVPMatrix");
-        watermarkTexMatrixHandle = GLES20.glGetUniformLocation(watermarkProgram, "uTexMatrix");
-        watermarkOesTextureHandle = GLES20.glGetUniformLocation(watermarkProgram, "sTexture");
-        watermarkTextureHandle = GLES20.glGetUniformLocation(watermarkProgram, "sWatermarkTexture");
-        watermarkRectHandle = GLES20.glGetUniformLocation(watermarkProgram, "uWatermarkRect");
-
-        // 创建水印纹理
-        int[] textures = new int[1];
-        GLES20.glGenTextures(1, textures, 0);
-        watermarkTextureId = textures[0];
-
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, watermarkTextureId);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-
-        // 创建初始水印位图
-        watermarkBitmap = Bitmap.createBitmap(WATERMARK_WIDTH, WATERMARK_HEIGHT, Bitmap.Config.ARGB_8888);
-        updateWatermarkBitmap();
-
-        AppLog.d(TAG, "Camera " + cameraId + " Watermark OpenGL resources initialized, textureId=" + watermarkTextureId);
-    }
-
-    /**
-     * 更新水印位图
-     * 
-     * 【优化3】性能改进：
-     * - 使用时间间隔检查，每秒最多更新一次（而不是每帧都检查）
-     * - 复用 Paint 对象，避免每次更新都创建新对象
-     * - 仅当时间字符串变化时才更新纹理
-     */
-    private void updateWatermarkBitmap() {
-        if (watermarkBitmap == null) {
+        GlyphWatermarkRenderer renderer = new GlyphWatermarkRenderer(WATERMARK_TEXT_SIZE, true);
+        if (!renderer.init()) {
+            AppLog.e(TAG, "Camera " + cameraId + " Failed to initialize watermark renderer");
+            renderer.release();
             return;
         }
-
-        // 【优化3】时间间隔检查：每秒最多更新一次
-        long now = System.currentTimeMillis();
-        if (now - lastWatermarkUpdateTimeMs < WATERMARK_UPDATE_INTERVAL_MS) {
-            return;  // 距离上次更新不到1秒，跳过
-        }
-
-        String currentTime = watermarkDateFormat.format(new Date());
-        
-        // 只有时间变化时才更新
-        if (currentTime.equals(lastWatermarkTime)) {
-            lastWatermarkUpdateTimeMs = now;  // 更新检查时间，即使内容没变
-            return;
-        }
-        lastWatermarkTime = currentTime;
-        lastWatermarkUpdateTimeMs = now;
-
-        // 清除位图
-        watermarkBitmap.eraseColor(Color.TRANSPARENT);
-
-        Canvas canvas = new Canvas(watermarkBitmap);
-
-        // 【优化3】复用 Paint 对象
-        if (watermarkShadowPaint == null) {
-            watermarkShadowPaint = new Paint();
-            watermarkShadowPaint.setColor(Color.BLACK);
-            watermarkShadowPaint.setTextSize(28);
-            watermarkShadowPaint.setAntiAlias(true);
-            watermarkShadowPaint.setTypeface(Typeface.MONOSPACE);
-        }
-
-        if (watermarkTextPaint == null) {
-            watermarkTextPaint = new Paint();
-            watermarkTextPaint.setColor(Color.WHITE);
-            watermarkTextPaint.setTextSize(28);
-            watermarkTextPaint.setAntiAlias(true);
-            watermarkTextPaint.setTypeface(Typeface.MONOSPACE);
-        }
-
-        // 绘制阴影（偏移2像素）
-        canvas.drawText(currentTime, 8, 32, watermarkShadowPaint);
-        // 绘制主文字
-        canvas.drawText(currentTime, 6, 30, watermarkTextPaint);
-
-        // 上传纹理到 GPU
-        if (watermarkTextureId != 0) {
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, watermarkTextureId);
-            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, watermarkBitmap, 0);
-        }
+        watermarkRenderer = renderer;
+        AppLog.d(TAG, "Camera " + cameraId + " Watermark glyph atlas initialized");
     }
 
     /**
@@ -831,7 +760,7 @@ public class EglSurfaceEncoder {
     /**
      * 创建着色器程序
      */
-    private int createProgram(String vertexSource, String fragmentSource) {
+    static int createProgram(String vertexSource, String fragmentSource) {
         int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
         if (vertexShader == 0) {
             return 0;
@@ -871,7 +800,7 @@ public class EglSurfaceEncoder {
     /**
      * 加载着色器
      */
-    private int loadShader(int shaderType, String source) {
+    private static int loadShader(int shaderType, String source) {
         int shader = GLES20.glCreateShader(shaderType);
         if (shader == 0) {
             AppLog.e(TAG, "Could not create shader type " + shaderType);
@@ -895,7 +824,7 @@ public class EglSurfaceEncoder {
     /**
      * 创建 FloatBuffer
      */
-    private FloatBuffer createFloatBuffer(float[] data) {
+    static FloatBuffer createFloatBuffer(float[] data) {
         ByteBuffer bb = ByteBuffer.allocateDirect(data.length * 4);
         bb.order(ByteOrder.nativeOrder());
         FloatBuffer fb = bb.asFloatBuffer();
@@ -0,0 +1,382 @@
+package com.kooo.evcam.camera;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 编码帧环形缓冲区（单生产者 / 单消费者）
+ *
+ * 结构：
+ * - 一块大的直接内存 ByteBuffer，按顺序存放变长帧数据（尾部放不下时跳到开头，尾部空隙作废）
+ * - 一组并行数组作为索引（offset / size / pts / flags），槽位数为 2 的幂
+ * - head 由生产者（编码线程）推进，tail 由消费者（写入线程）推进，不加锁
+ *
+ * 消费者通过 {@link Frame} 直接拿到环内数据的视图，写入 Muxer 后再 {@link #release()}，
+ * 整个过程只有生产者一次拷贝（编码器输出缓冲区必须尽快归还）。
+ *
+ * 溢出策略：
+ * - 普通帧放不下时丢弃，并继续丢弃到下一个关键帧，保证写入的流始终可解码
+ * - 关键帧放不下时等待消费者腾出空间，最多等待 {@link #KEY_FRAME_WAIT_BUDGET_NS}（吸收写入的短暂抖动）；
+ *   超时（写入线程卡住，如 U 盘写入缓慢）、环被 {@link #close()} 或关键帧本身大于数据区时丢弃整个 GOP，
+ *   编码线程不会被无限期阻塞。丢弃后 {@link #needsKeyFrame()} 为 true，录制器应请求编码器尽快输出关键帧
+ */
+public class EncodedFrameRing {
+
+    /** 关键帧等待期间每次让出的时间 */
+    private static final long KEY_FRAME_WAIT_STEP_NS = TimeUnit.MICROSECONDS.toNanos(200);
+    /** 关键帧等待空间的时间上限，超过后丢弃该 GOP */
+    static final long KEY_FRAME_WAIT_BUDGET_NS = TimeUnit.MILLISECONDS.toNanos(300);
+
+    private final ByteBuffer buffer;  // 生产者使用的视图
+    private final int capacity;
+    private final int indexMask;
+
+    // 索引（槽位由生产者写、消费者读，通过 head 发布）
+    private final int[] offsets;
+    private final int[] sizes;
+    private final int[] flags;
+    private final long[] ptsUs;
+    private final long[] ends;       // 该帧结束处的绝对字节位置，消费者释放时回写 readBytes
+    private final long[] enqueueNs;  // 入队时间，用于统计写入延迟
+
+    private final AtomicLong head = new AtomicLong();       // 下一个待发布的帧序号（生产者）
+    private final AtomicLong tail = new AtomicLong();       // 下一个待消费的帧序号（消费者）
+    private final AtomicLong readBytes = new AtomicLong();  // 已释放的绝对字节位置（消费者）
+    private long writeBytes = 0;                            // 已占用的绝对字节位置（仅生产者）
+
+    private volatile Thread consumerThread;
+    private volatile boolean consumerWaiting = false;
+    private volatile boolean closed = false;
+
+    // 生产者统计（单线程写，其它线程只读）
+    private boolean skipUntilKeyFrame = false;
+    private volatile long offeredFrames = 0;
+    private volatile long droppedFrames = 0;
+    private volatile long keyFrameWaits = 0;
+    private volatile long keyFramesDropped = 0;
+    private volatile long maxKeyFrameWaitNs = 0;
+    private volatile long highWaterBytes = 0;
+    private volatile int highWaterFrames = 0;
+
+    // 消费者统计（单线程写，其它线程只读）
+    private volatile long writtenFrames = 0;
+    private volatile long latencySumNs = 0;
+    private volatile long maxLatencyNs = 0;
+
+    /**
+     * 消费者持有的帧视图，data 的 position/limit 指向环内数据，release 前有效
+     */
+    public static final class Frame {
+        public final ByteBuffer data;
+        public int offset;
+        public int size;
+        public long ptsUs;
+        public int flags;
+
+        Frame(ByteBuffer data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * @param capacityBytes 数据区大小（需大于最大关键帧）
+     * @param maxFrames 最大排队帧数（向上取 2 的幂）
+     */
+    public EncodedFrameRing(int capacityBytes, int maxFrames) {
+        if (capacityBytes <= 0 || maxFrames <= 0) {
+            throw new IllegalArgumentException("capacity=" + capacityBytes + ", frames=" + maxFrames);
+        }
+        int slots = Integer.highestOneBit(maxFrames);
+        if (slots < maxFrames) {
+            slots <<= 1;
+        }
+        this.capacity = capacityBytes;
+        this.indexMask = slots - 1;
+        this.buffer = ByteBuffer.allocateDirect(capacityBytes);
+        this.offsets = new int[slots];
+        this.sizes = new int[slots];
+        this.flags = new int[slots];
+        this.ptsUs = new long[slots];
+        this.ends = new long[slots];
+        this.enqueueNs = new long[slots];
+    }
+
+    /**
+     * 创建消费者使用的帧视图（每个消费者线程创建一次并复用）
+     */
+    public Frame newFrame() {
+        return new Frame(buffer.duplicate());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxFrames() {
+        return indexMask + 1;
+    }
+
+    // ==================== 生产者 ====================
+
+    /**
+     * 拷贝一帧到环中（仅生产者线程调用）
+     * @param src 编码数据（position 到 limit 之间）
+     * @return true 表示已入队，false 表示被丢弃
+     */
+    public boolean offer(ByteBuffer src, long pts, int frameFlags, boolean keyFrame) {
+        offeredFrames++;
+        if (keyFrame) {
+            skipUntilKeyFrame = false;
+        } else if (skipUntilKeyFrame) {
+            droppedFrames++;
+            return false;
+        }
+
+        int size = src.remaining();
+        long seq = head.get();
+        int pos = reserve(seq, size);
+        if (pos < 0 && keyFrame && size <= capacity) {
+            // 关键帧：在时间上限内等待消费者释放空间（短暂反压编码线程，而不是立即丢掉整个 GOP）
+            keyFrameWaits++;
+            long waitStart = System.nanoTime();
+            long waited = 0;
+            while (pos < 0 && !closed && waited < KEY_FRAME_WAIT_BUDGET_NS) {
+                LockSupport.parkNanos(this, Math.min(KEY_FRAME_WAIT_STEP_NS, KEY_FRAME_WAIT_BUDGET_NS - waited));
+                pos = reserve(seq, size);
+                waited = System.nanoTime() - waitStart;
+            }
+            if (waited > maxKeyFrameWaitNs) {
+                maxKeyFrameWaitNs = waited;
+            }
+        }
+        if (pos < 0) {
+            droppedFrames++;
+            if (keyFrame) {
+                keyFramesDropped++;
+            }
+            skipUntilKeyFrame = true;
+            return false;
+        }
+
+        buffer.clear();
+        buffer.position(pos);
+        buffer.limit(pos + size);
+        buffer.put(src);
+
+        int slot = (int) (seq & indexMask);
+        offsets[slot] = pos;
+        sizes[slot] = size;
+        flags[slot] = frameFlags;
+        ptsUs[slot] = pts;
+        ends[slot] = writeBytes;
+        enqueueNs[slot] = System.nanoTime();
+        // volatile 写：与消费者的 consumerWaiting 检查构成完整屏障，避免丢失唤醒
+        head.set(seq + 1);
+
+        long usedBytes = writeBytes - readBytes.get();
+        if (usedBytes > highWaterBytes) {
+            highWaterBytes = usedBytes;
+        }
+        int queued = (int) (seq + 1 - tail.get());
+        if (queued > highWaterFrames) {
+            highWaterFrames = queued;
+        }
+
+        if (consumerWaiting) {
+            LockSupport.unpark(consumerThread);
+        }
+        return true;
+    }
+
+    /**
+     * 是否正在丢弃帧等待下一个关键帧（仅生产者线程调用）
+     */
+    public boolean needsKeyFrame() {
+        return skipUntilKeyFrame;
+    }
+
+    /**
+     * 当前占用的数据区字节数（仅生产者线程调用）
+     */
+    public long getUsedBytes() {
+        return writeBytes - readBytes.get();
+    }
+
+    /**
+     * 为一帧预留空间
+     * @return 帧在数据区的起始位置，空间不足返回 -1
+     */
+    private int reserve(long seq, int size) {
+        if (size > capacity || seq - tail.get() > indexMask) {
+            return -1;
+        }
+        int pos = (int) (writeBytes % capacity);
+        int padding = (pos + size > capacity) ? capacity - pos : 0;
+        long used = writeBytes - readBytes.get();
+        if (used + padding + size > capacity) {
+            return -1;
+        }
+        writeBytes += padding + size;
+        return padding > 0 ? 0 : pos;
+    }
+
+    // ==================== 消费者 ====================
+
+    /**
+     * 取出队头帧的视图（不移除，仅消费者线程调用）
+     * @param timeoutNs 队列为空时最长等待时间，0 表示不等待
+     * @return true 表示 out 已填充，处理完后必须调用 {@link #release()}
+     */
+    public boolean poll(Frame out, long timeoutNs) {
+        long seq = tail.get();
+        if (head.get() == seq && (timeoutNs <= 0 || !awaitData(seq, timeoutNs))) {
+            return false;
+        }
+        int slot = (int) (seq & indexMask);
+        out.offset = offsets[slot];
+        out.size = sizes[slot];
+        out.ptsUs = ptsUs[slot];
+        out.flags = flags[slot];
+        out.data.clear();
+        out.data.position(out.offset);
+        out.data.limit(out.offset + out.size);
+        return true;
+    }
+
+    /**
+     * 释放 {@link #poll} 取出的帧，空间交还给生产者
+     */
+    public void release() {
+        long seq = tail.get();
+        int slot = (int) (seq & indexMask);
+
+        long latency = System.nanoTime() - enqueueNs[slot];
+        latencySumNs += latency;
+        if (latency > maxLatencyNs) {
+            maxLatencyNs = latency;
+        }
+        writtenFrames++;
+
+        readBytes.lazySet(ends[slot]);
+        tail.lazySet(seq + 1);
+    }
+
+    private boolean awaitData(long seq, long timeoutNs) {
+        long deadline = System.nanoTime() + timeoutNs;
+        consumerThread = Thread.currentThread();
+        while (head.get() == seq) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            consumerWaiting = true;
+            if (head.get() == seq) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            consumerWaiting = false;
+        }
+        return true;
+    }
+
+    /**
+     * 消费者开始取数据时调用（与 {@link #close()} 配对）
+     */
+    public void open() {
+        closed = false;
+    }
+
+    /**
+     * 关闭环：消费者不再取数据时调用，正在等待空间的关键帧放弃等待，避免生产者永久阻塞。
+     * {@link #open()} 或 {@link #clear()} 后恢复等待
+     */
+    public void close() {
+        closed = true;
+    }
+
+    // ==================== 状态 ====================
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+    /**
+     * 清空环并重置统计（只能在生产者和消费者都停止后调用）
+     */
+    public void clear() {
+        head.set(0);
+        tail.set(0);
+        readBytes.set(0);
+        writeBytes = 0;
+        closed = false;
+        skipUntilKeyFrame = false;
+        offeredFrames = 0;
+        droppedFrames = 0;
+        keyFrameWaits = 0;
+        keyFramesDropped = 0;
+        maxKeyFrameWaitNs = 0;
+        highWaterBytes = 0;
+        highWaterFrames = 0;
+        writtenFrames = 0;
+        latencySumNs = 0;
+        maxLatencyNs = 0;
+    }
+
+    public long getOfferedFrames() {
+        return offeredFrames;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public long getKeyFrameWaits() {
+        return keyFrameWaits;
+    }
+
+    public long getKeyFramesDropped() {
+        return keyFramesDropped;
+    }
+
+    public long getMaxKeyFrameWaitNs() {
+        return maxKeyFrameWaitNs;
+    }
+
+    public long getHighWaterBytes() {
+        return highWaterBytes;
+    }
+
+    public int getHighWaterFrames() {
+        return highWaterFrames;
+    }
+
+    public long getWrittenFrames() {
+        return writtenFrames;
+    }
+
+    public long getMaxLatencyNs() {
+        return maxLatencyNs;
+    }
+
+    public long getAvgLatencyNs() {
+        long count = writtenFrames;
+        return count > 0 ? latencySumNs / count : 0;
+    }
+
+    /**
+     * 获取统计信息（用于日志）
+     */
+    public String getStats() {
+        return String.format(Locale.US,
+                "frames=%d written=%d dropped=%d keyWaits=%d(max %.1fms) keyDropped=%d highWater=%dKB/%d latency(avg/max)=%.1f/%.1fms",
+                offeredFrames, writtenFrames, droppedFrames, keyFrameWaits, maxKeyFrameWaitNs / 1e6, keyFramesDropped,
+                highWaterBytes / 1024, highWaterFrames,
+                getAvgLatencyNs() / 1e6, maxLatencyNs / 1e6);
+    }
+}
@@ -0,0 +1,133 @@
+package com.kooo.evcam.camera;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于 FragmentedMp4Writer 的 Muxer（只支持一路 H.264 视频轨）
+ * 将 MediaFormat / BufferInfo 转换为写入器的参数，异常按 MediaMuxer 的习惯抛出运行时异常
+ */
+public class FragmentedMp4Muxer implements RecordMuxer {
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final FragmentedMp4Writer writer;
+    private boolean trackAdded = false;
+    private boolean started = false;
+    private boolean stopped = false;
+
+    /**
+     * @param channel 输出通道
+     * @param ownsChannel 是否在 stop/release 时关闭通道（预分配文件的通道由租约关闭）
+     */
+    public FragmentedMp4Muxer(FileChannel channel, boolean ownsChannel) {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.writer = new FragmentedMp4Writer(channel);
+    }
+
+    /**
+     * 按路径创建文件（已存在时清空）
+     */
+    public static FragmentedMp4Muxer open(String filePath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new FragmentedMp4Muxer(channel, true);
+    }
+
+    @Override
+    public int addTrack(MediaFormat format) {
+        if (trackAdded || started) {
+            throw new IllegalStateException("Only one video track is supported");
+        }
+        String mime = format.getString(MediaFormat.KEY_MIME);
+        if (!MediaFormat.MIMETYPE_VIDEO_AVC.equals(mime)) {
+            throw new IllegalArgumentException("Unsupported mime: " + mime);
+        }
+        ByteBuffer csd0 = format.getByteBuffer("csd-0");
+        ByteBuffer csd1 = format.getByteBuffer("csd-1");
+        if (csd0 == null || csd1 == null) {
+            throw new IllegalArgumentException("Missing SPS/PPS in format");
+        }
+        writer.setVideoTrack(format.getInteger(MediaFormat.KEY_WIDTH), format.getInteger(MediaFormat.KEY_HEIGHT),
+                toArray(csd0), toArray(csd1));
+        trackAdded = true;
+        return 0;
+    }
+
+    @Override
+    public void start() {
+        if (!trackAdded) {
+            throw new IllegalStateException("No track added");
+        }
+        try {
+            writer.start();
+            started = true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write header", e);
+        }
+    }
+
+    @Override
+    public void writeSampleData(int trackIndex, ByteBuffer byteBuf, MediaCodec.BufferInfo bufferInfo) {
+        if (!started || stopped) {
+            throw new IllegalStateException("Muxer is not started");
+        }
+        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0 || bufferInfo.size <= 0) {
+            return;
+        }
+        ByteBuffer data = byteBuf.duplicate();
+        data.limit(bufferInfo.offset + bufferInfo.size);
+        data.position(bufferInfo.offset);
+        try {
+            writer.writeSample(data, bufferInfo.presentationTimeUs,
+                    (bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write sample", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        try {
+            writer.finish();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to finish file", e);
+        } finally {
+            closeChannel();
+        }
+    }
+
+    @Override
+    public void release() {
+        stopped = true;
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        if (ownsChannel && channel.isOpen()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        ByteBuffer copy = buffer.duplicate();
+        copy.rewind();
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,607 @@
+package com.kooo.evcam.camera;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 分片 MP4（fMP4）写入器，纯 Java 实现，不依赖 Android API
+ *
+ * 文件结构：ftyp + moov（无样本表，含 mvex）开头，之后每 N 帧写一个 moof + mdat 分片。
+ * 与 MediaMuxer 只在 stop() 时写 moov 不同，断电时只会丢失最后一个未写完的分片，
+ * 之前的分片仍可正常播放。
+ *
+ * 输入为 MediaCodec 输出的 H.264 Annex-B 数据（起始码分隔），
+ * 写入时转换为 4 字节长度前缀格式；SPS/PPS 只放在 avcC 中。
+ *
+ * 线程：非线程安全，所有方法需在同一写入线程调用
+ */
+public class FragmentedMp4Writer {
+    // 媒体时间基（90kHz，与 H.264/RTP 一致）
+    static final int VIDEO_TIMESCALE = 90000;
+    // 影片时间基（毫秒）
+    static final int MOVIE_TIMESCALE = 1000;
+    static final int TRACK_ID = 1;
+
+    // 默认每个分片的最大帧数（30fps 下约 1 秒）
+    public static final int DEFAULT_FRAGMENT_FRAMES = 30;
+    // 默认分片数据缓冲区大小
+    public static final int DEFAULT_BUFFER_BYTES = 4 * 1024 * 1024;
+
+    // 样本标志（ISO/IEC 14496-12 8.8.3.1）
+    static final int SAMPLE_FLAGS_SYNC = 0x02000000;       // depends_on = 2（不依赖其他帧）
+    static final int SAMPLE_FLAGS_NON_SYNC = 0x01010000;   // depends_on = 1，is_non_sync_sample = 1
+
+    // trun 标志：data-offset + sample-duration + sample-size + sample-flags
+    private static final int TRUN_FLAGS = 0x000001 | 0x000100 | 0x000200 | 0x000400;
+    // tfhd 标志：default-base-is-moof
+    private static final int TFHD_FLAGS = 0x020000;
+
+    private static final int NAL_TYPE_SPS = 7;
+    private static final int NAL_TYPE_PPS = 8;
+    private static final int NAL_TYPE_AUD = 9;
+
+    private final FileChannel channel;
+    private final int maxFragmentFrames;
+
+    // 轨道参数
+    private int width;
+    private int height;
+    private byte[] sps;
+    private byte[] pps;
+
+    // 分片数据缓冲区（长度前缀格式的样本数据）
+    private ByteBuffer dataBuffer;
+    private final ByteBuffer headerBuffer;
+    private final ByteBuffer[] writeBuffers = new ByteBuffer[2];
+
+    // 当前分片中的样本
+    private final long[] sampleTimes;   // 解码时间（VIDEO_TIMESCALE）
+    private final int[] sampleSizes;
+    private final boolean[] sampleKeys;
+    private int sampleCount = 0;
+
+    // 时间
+    private long firstPtsUs = -1;
+    private long lastSampleTime = -1;
+    private long lastSampleDuration = VIDEO_TIMESCALE / 30;
+    private long fragmentBaseTime = 0;   // 当前分片第一帧的解码时间
+
+    // 状态
+    private boolean started = false;
+    private boolean finished = false;
+    private int sequenceNumber = 0;
+    private long totalSamples = 0;
+    private long totalFragments = 0;
+
+    // moov 中需要在结束时回填时长的位置
+    private long mvhdDurationPos;
+    private long tkhdDurationPos;
+    private long mdhdDurationPos;
+    private long mehdDurationPos;
+
+    public FragmentedMp4Writer(FileChannel channel) {
+        this(channel, DEFAULT_FRAGMENT_FRAMES, DEFAULT_BUFFER_BYTES);
+    }
+
+    /**
+     * @param channel 输出通道（从当前位置开始顺序写入，由调用方负责关闭）
+     * @param maxFragmentFrames 每个分片的最大帧数，遇到关键帧时也会提前切分片
+     * @param bufferBytes 分片数据缓冲区大小，单帧超过时自动扩容
+     */
+    public FragmentedMp4Writer(FileChannel channel, int maxFragmentFrames, int bufferBytes) {
+        if (maxFragmentFrames <= 0) {
+            throw new IllegalArgumentException("maxFragmentFrames must be positive");
+        }
+        this.channel = channel;
+        this.maxFragmentFrames = maxFragmentFrames;
+        this.dataBuffer = ByteBuffer.allocateDirect(bufferBytes);
+        this.headerBuffer = ByteBuffer.allocateDirect(128 + 12 * maxFragmentFrames);
+        this.sampleTimes = new long[maxFragmentFrames];
+        this.sampleSizes = new int[maxFragmentFrames];
+        this.sampleKeys = new boolean[maxFragmentFrames];
+    }
+
+    /**
+     * 设置视频轨道参数
+     * @param sps SPS（可带或不带起始码）
+     * @param pps PPS（可带或不带起始码）
+     */
+    public void setVideoTrack(int width, int height, byte[] sps, byte[] pps) {
+        if (started) {
+            throw new IllegalStateException("Track must be set before start()");
+        }
+        this.sps = stripStartCode(sps);
+        this.pps = stripStartCode(pps);
+        if (this.sps.length < 4 || this.pps.length == 0) {
+            throw new IllegalArgumentException("Invalid SPS/PPS");
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 写入 ftyp 和 moov
+     */
+    public void start() throws IOException {
+        if (started) {
+            throw new IllegalStateException("Already started");
+        }
+        if (sps == null) {
+            throw new IllegalStateException("No video track");
+        }
+        long base = channel.position();
+        ByteBuffer header = buildHeader(base);
+        writeFully(header);
+        started = true;
+    }
+
+    /**
+     * 写入一帧
+     * @param data Annex-B 格式的一个访问单元（position 到 limit），调用后 position 移到 limit
+     * @param ptsUs 显示时间戳（微秒），Baseline 无 B 帧，与解码时间相同
+     * @param keyFrame 是否为关键帧
+     */
+    public void writeSample(ByteBuffer data, long ptsUs, boolean keyFrame) throws IOException {
+        if (!started || finished) {
+            throw new IllegalStateException("Writer not started");
+        }
+        if (firstPtsUs < 0) {
+            firstPtsUs = ptsUs;
+        }
+        long time = (ptsUs - firstPtsUs) * VIDEO_TIMESCALE / 1_000_000;
+        if (time <= lastSampleTime) {
+            // 时间戳不单调时保证每帧至少 1 个时间单位
+            time = lastSampleTime + 1;
+        }
+
+        // 最坏情况：3 字节起始码变为 4 字节长度，每个 NAL 多 1 字节
+        int maxSize = data.remaining() + data.remaining() / 3 + 4;
+        if (sampleCount > 0 && (keyFrame || sampleCount >= maxFragmentFrames
+                || dataBuffer.remaining() < maxSize)) {
+            flushFragment(time);
+        }
+        if (dataBuffer.remaining() < maxSize) {
+            // 单帧超过缓冲区，扩容（此时缓冲区为空）
+            dataBuffer = ByteBuffer.allocateDirect(Math.max(maxSize, dataBuffer.capacity() * 2));
+        }
+
+        if (sampleCount == 0) {
+            fragmentBaseTime = time;
+        }
+        int size = appendAnnexB(data, dataBuffer);
+        if (size == 0) {
+            // 只有参数集的访问单元，不计为样本
+            return;
+        }
+        sampleTimes[sampleCount] = time;
+        sampleSizes[sampleCount] = size;
+        sampleKeys[sampleCount] = keyFrame;
+        sampleCount++;
+        lastSampleTime = time;
+    }
+
+    /**
+     * 写出剩余样本并回填时长，不关闭通道
+     */
+    public void finish() throws IOException {
+        if (!started || finished) {
+            finished = true;
+            return;
+        }
+        finished = true;
+        if (sampleCount > 0) {
+            flushFragment(lastSampleTime + lastSampleDuration);
+        }
+        patchDurations();
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public long getTotalFragments() {
+        return totalFragments;
+    }
+
+    /**
+     * 已写入的媒体时长（微秒）
+     */
+    public long getDurationUs() {
+        return fragmentBaseTime * 1_000_000 / VIDEO_TIMESCALE;
+    }
+
+    // ===== 分片 =====
+
+    /**
+     * 写出当前分片
+     * @param nextTime 下一帧的解码时间，用于计算最后一帧的时长
+     */
+    private void flushFragment(long nextTime) throws IOException {
+        int count = sampleCount;
+        int dataSize = dataBuffer.position();
+
+        int trunSize = 8 + 4 + 4 + 4 + 12 * count;
+        int trafSize = 8 + 16 + 20 + trunSize;
+        int moofSize = 8 + 16 + trafSize;
+
+        ByteBuffer h = headerBuffer;
+        h.clear();
+        // moof
+        h.putInt(moofSize);
+        h.putInt(fourcc("moof"));
+        // mfhd
+        h.putInt(16);
+        h.putInt(fourcc("mfhd"));
+        h.putInt(0);
+        h.putInt(++sequenceNumber);
+        // traf
+        h.putInt(trafSize);
+        h.putInt(fourcc("traf"));
+        // tfhd
+        h.putInt(16);
+        h.putInt(fourcc("tfhd"));
+        h.putInt(TFHD_FLAGS);
+        h.putInt(TRACK_ID);
+        // tfdt（version 1，64 位）
+        h.putInt(20);
+        h.putInt(fourcc("tfdt"));
+        h.putInt(0x01000000);
+        h.putLong(fragmentBaseTime);
+        // trun
+        h.putInt(trunSize);
+        h.putInt(fourcc("trun"));
+        h.putInt(TRUN_FLAGS);
+        h.putInt(count);
+        h.putInt(moofSize + 8);  // data_offset：相对 moof 起点，指向 mdat 负载
+        for (int i = 0; i < count; i++) {
+            long end = i + 1 < count ? sampleTimes[i + 1] : nextTime;
+            long duration = Math.max(1, end - sampleTimes[i]);
+            h.putInt((int) duration);
+            h.putInt(sampleSizes[i]);
+            h.putInt(sampleKeys[i] ? SAMPLE_FLAGS_SYNC : SAMPLE_FLAGS_NON_SYNC);
+            if (i + 1 == count) {
+                lastSampleDuration = duration;
+            }
+        }
+        // mdat
+        h.putInt(8 + dataSize);
+        h.putInt(fourcc("mdat"));
+        h.flip();
+
+        dataBuffer.flip();
+        writeBuffers[0] = h;
+        writeBuffers[1] = dataBuffer;
+        long remaining = h.remaining() + (long) dataBuffer.remaining();
+        while (remaining > 0) {
+            long written = channel.write(writeBuffers);
+            if (written < 0) {
+                throw new IOException("Channel closed");
+            }
+            remaining -= written;
+        }
+        dataBuffer.clear();
+
+        totalSamples += count;
+        totalFragments++;
+        fragmentBaseTime = nextTime;
+        sampleCount = 0;
+    }
+
+    /**
+     * 结束时回填 mvhd/tkhd/mdhd/mehd 中的时长（断电时这些字段保持为 0，不影响播放）
+     */
+    private void patchDurations() throws IOException {
+        long mediaDuration = fragmentBaseTime;
+        long movieDuration = mediaDuration * MOVIE_TIMESCALE / VIDEO_TIMESCALE;
+        patchInt(mvhdDurationPos, movieDuration);
+        patchInt(tkhdDurationPos, movieDuration);
+        patchInt(mdhdDurationPos, mediaDuration);
+        patchInt(mehdDurationPos, movieDuration);
+    }
+
+    private void patchInt(long position, long value) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(4);
+        b.putInt((int) Math.min(value, 0xFFFFFFFFL));
+        b.flip();
+        while (b.hasRemaining()) {
+            // 定位写入，不改变通道的当前位置
+            channel.write(b, position + b.position());
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // ===== 文件头 =====
+
+    private ByteBuffer buildHeader(long base) {
+        ByteBuffer b = ByteBuffer.allocate(1024 + sps.length + pps.length);
+
+        // ftyp
+        int start = beginBox(b, "ftyp");
+        b.putInt(fourcc("isom"));
+        b.putInt(0x200);
+        b.putInt(fourcc("isom"));
+        b.putInt(fourcc("iso6"));
+        b.putInt(fourcc("avc1"));
+        b.putInt(fourcc("mp41"));
+        endBox(b, start);
+
+        int moov = beginBox(b, "moov");
+
+        // mvhd
+        int mvhd = beginFullBox(b, "mvhd", 0, 0);
+        b.putInt(0);  // creation_time
+        b.putInt(0);  // modification_time
+        b.putInt(MOVIE_TIMESCALE);
+        mvhdDurationPos = base + b.position();
+        b.putInt(0);  // duration（结束时回填）
+        b.putInt(0x00010000);  // rate 1.0
+        b.putShort((short) 0x0100);  // volume 1.0
+        b.putShort((short) 0);
+        b.putLong(0);
+        putMatrix(b);
+        for (int i = 0; i < 6; i++) {
+            b.putInt(0);  // pre_defined
+        }
+        b.putInt(TRACK_ID + 1);  // next_track_ID
+        endBox(b, mvhd);
+
+        // trak
+        int trak = beginBox(b, "trak");
+        int tkhd = beginFullBox(b, "tkhd", 0, 0x000003);  // enabled | in_movie
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(TRACK_ID);
+        b.putInt(0);
+        tkhdDurationPos = base + b.position();
+        b.putInt(0);  // duration（结束时回填）
+        b.putLong(0);
+        b.putShort((short) 0);  // layer
+        b.putShort((short) 0);  // alternate_group
+        b.putShort((short) 0);  // volume（视频轨为 0）
+        b.putShort((short) 0);
+        putMatrix(b);
+        b.putInt(width << 16);
+        b.putInt(height << 16);
+        endBox(b, tkhd);
+
+        int mdia = beginBox(b, "mdia");
+        int mdhd = beginFullBox(b, "mdhd", 0, 0);
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(VIDEO_TIMESCALE);
+        mdhdDurationPos = base + b.position();
+        b.putInt(0);  // duration（结束时回填）
+        b.putShort((short) 0x55C4);  // language "und"
+        b.putShort((short) 0);
+        endBox(b, mdhd);
+
+        int hdlr = beginFullBox(b, "hdlr", 0, 0);
+        b.putInt(0);
+        b.putInt(fourcc("vide"));
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(0);
+        b.put("VideoHandler".getBytes(StandardCharsets.US_ASCII));
+        b.put((byte) 0);
+        endBox(b, hdlr);
+
+        int minf = beginBox(b, "minf");
+        int vmhd = beginFullBox(b, "vmhd", 0, 1);
+        b.putShort((short) 0);  // graphicsmode
+        b.putShort((short) 0);
+        b.putShort((short) 0);
+        b.putShort((short) 0);
+        endBox(b, vmhd);
+
+        int dinf = beginBox(b, "dinf");
+        int dref = beginFullBox(b, "dref", 0, 0);
+        b.putInt(1);
+        int url = beginFullBox(b, "url ", 0, 1);  // self-contained
+        endBox(b, url);
+        endBox(b, dref);
+        endBox(b, dinf);
+
+        int stbl = beginBox(b, "stbl");
+        int stsd = beginFullBox(b, "stsd", 0, 0);
+        b.putInt(1);
+        putAvc1(b);
+        endBox(b, stsd);
+        // 分片文件的样本表为空，样本信息都在 moof 中
+        int stts = beginFullBox(b, "stts", 0, 0);
+        b.putInt(0);
+        endBox(b, stts);
+        int stsc = beginFullBox(b, "stsc", 0, 0);
+        b.putInt(0);
+        endBox(b, stsc);
+        int stsz = beginFullBox(b, "stsz", 0, 0);
+        b.putInt(0);
+        b.putInt(0);
+        endBox(b, stsz);
+        int stco = beginFullBox(b, "stco", 0, 0);
+        b.putInt(0);
+        endBox(b, stco);
+        endBox(b, stbl);
+
+        endBox(b, minf);
+        endBox(b, mdia);
+        endBox(b, trak);
+
+        // mvex
+        int mvex = beginBox(b, "mvex");
+        int mehd = beginFullBox(b, "mehd", 0, 0);
+        mehdDurationPos = base + b.position();
+        b.putInt(0);  // fragment_duration（结束时回填）
+        endBox(b, mehd);
+        int trex = beginFullBox(b, "trex", 0, 0);
+        b.putInt(TRACK_ID);
+        b.putInt(1);  // default_sample_description_index
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(0);
+        endBox(b, trex);
+        endBox(b, mvex);
+
+        endBox(b, moov);
+        b.flip();
+        return b;
+    }
+
+    private void putAvc1(ByteBuffer b) {
+        int avc1 = beginBox(b, "avc1");
+        b.putInt(0);
+        b.putShort((short) 0);
+        b.putShort((short) 1);  // data_reference_index
+        b.putShort((short) 0);
+        b.putShort((short) 0);
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(0);
+        b.putShort((short) width);
+        b.putShort((short) height);
+        b.putInt(0x00480000);  // 72 dpi
+        b.putInt(0x00480000);
+        b.putInt(0);
+        b.putShort((short) 1);  // frame_count
+        b.put(new byte[32]);    // compressorname
+        b.putShort((short) 0x0018);  // depth
+        b.putShort((short) -1);      // pre_defined
+
+        int avcC = beginBox(b, "avcC");
+        b.put((byte) 1);       // configurationVersion
+        b.put(sps[1]);         // AVCProfileIndication
+        b.put(sps[2]);         // profile_compatibility
+        b.put(sps[3]);         // AVCLevelIndication
+        b.put((byte) 0xFF);    // lengthSizeMinusOne = 3
+        b.put((byte) 0xE1);    // 1 个 SPS
+        b.putShort((short) sps.length);
+        b.put(sps);
+        b.put((byte) 1);       // 1 个 PPS
+        b.putShort((short) pps.length);
+        b.put(pps);
+        endBox(b, avcC);
+
+        endBox(b, avc1);
+    }
+
+    private static void putMatrix(ByteBuffer b) {
+        int[] matrix = {0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000};
+        for (int value : matrix) {
+            b.putInt(value);
+        }
+    }
+
+    private static int beginBox(ByteBuffer b, String type) {
+        int start = b.position();
+        b.putInt(0);
+        b.putInt(fourcc(type));
+        return start;
+    }
+
+    private static int beginFullBox(ByteBuffer b, String type, int version, int flags) {
+        int start = beginBox(b, type);
+        b.putInt((version << 24) | (flags & 0xFFFFFF));
+        return start;
+    }
+
+    private static void endBox(ByteBuffer b, int start) {
+        b.putInt(start, b.position() - start);
+    }
+
+    static int fourcc(String type) {
+        return (type.charAt(0) << 24) | (type.charAt(1) << 16) | (type.charAt(2) << 8) | type.charAt(3);
+    }
+
+    // ===== H.264 =====
+
+    /**
+     * 将 Annex-B 访问单元转换为 4 字节长度前缀格式追加到 out
+     * 跳过 SPS/PPS/AUD（参数集已在 avcC 中）；没有起始码时视为单个 NAL
+     * @return 写入的字节数
+     */
+    static int appendAnnexB(ByteBuffer in, ByteBuffer out) {
+        int start = out.position();
+        int pos = in.position();
+        int limit = in.limit();
+
+        int nalStart = findStartCode(in, pos, limit);
+        if (nalStart < 0) {
+            // 无起始码，整体作为一个 NAL
+            appendNal(in, pos, limit, out);
+        } else {
+            nalStart += 3;
+            while (nalStart < limit) {
+                int next = findStartCode(in, nalStart, limit);
+                int nalEnd = next < 0 ? limit : next;
+                // 去掉尾部的零字节（属于下一个 4 字节起始码或 trailing_zero_8bits）
+                while (nalEnd > nalStart && in.get(nalEnd - 1) == 0) {
+                    nalEnd--;
+                }
+                appendNal(in, nalStart, nalEnd, out);
+                if (next < 0) {
+                    break;
+                }
+                nalStart = next + 3;
+            }
+        }
+        in.position(limit);
+        return out.position() - start;
+    }
+
+    private static void appendNal(ByteBuffer in, int from, int to, ByteBuffer out) {
+        if (to <= from) {
+            return;
+        }
+        int type = in.get(from) & 0x1F;
+        if (type == NAL_TYPE_SPS || type == NAL_TYPE_PPS || type == NAL_TYPE_AUD) {
+            return;
+        }
+        out.putInt(to - from);
+        ByteBuffer slice = in.duplicate();
+        slice.limit(to).position(from);
+        out.put(slice);
+    }
+
+    /**
+     * 查找 00 00 01 的位置，找不到返回 -1
+     */
+    private static int findStartCode(ByteBuffer in, int from, int limit) {
+        int i = from;
+        while (i + 2 < limit) {
+            int b2 = in.get(i + 2);
+            if (b2 > 1 || b2 < 0) {
+                // 第三个字节不是 0/1，起始码不可能从 i、i+1、i+2 开始
+                i += 3;
+            } else if (b2 == 1 && in.get(i + 1) == 0 && in.get(i) == 0) {
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 去掉参数集前面的起始码
+     */
+    static byte[] stripStartCode(byte[] nal) {
+        if (nal == null) {
+            return new byte[0];
+        }
+        int offset = 0;
+        if (nal.length >= 4 && nal[0] == 0 && nal[1] == 0 && nal[2] == 0 && nal[3] == 1) {
+            offset = 4;
+        } else if (nal.length >= 3 && nal[0] == 0 && nal[1] == 0 && nal[2] == 1) {
+            offset = 3;
+        }
+        byte[] result = new byte[nal.length - offset];
+        System.arraycopy(nal, offset, result, 0, result.length);
+        return result;
+    }
+}
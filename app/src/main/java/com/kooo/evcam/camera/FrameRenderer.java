@@ -0,0 +1,54 @@
+package com.kooo.evcam.camera;
+
+import android.graphics.SurfaceTexture;
+import android.view.Surface;
+
+/**
+ * Camera 帧渲染器：把输入 SurfaceTexture 的内容渲染到编码器输入 Surface（可选同时渲染到预览 Surface）
+ *
+ * 实现：
+ * - {@link EglSurfaceEncoder}：每路摄像头独立的 EGL 上下文，在调用线程上渲染
+ * - {@link EglRenderHub.Channel}：所有摄像头共享一个 EGL 上下文和一个渲染线程
+ *
+ * 除 {@link #release()} 外，所有方法都应在渲染线程上调用（与创建 SurfaceTexture 的线程相同）。
+ */
+public interface FrameRenderer {
+
+    /**
+     * 初始化渲染器
+     * @param outputSurface MediaCodec 的输入 Surface
+     * @return OES 纹理 ID（用于创建 SurfaceTexture 供 Camera 输出）
+     */
+    int initialize(Surface outputSurface);
+
+    void setInputSurfaceTexture(SurfaceTexture surfaceTexture);
+
+    void setWatermarkEnabled(boolean enabled);
+
+    void setSharedTextureMode(boolean enabled);
+
+    /**
+     * 设置预览 Surface（双目标渲染），传 null 禁用
+     */
+    void setPreviewSurface(Surface surface);
+
+    /**
+     * 渲染一帧到输出 Surface
+     * @param presentationTimeNs 帧的呈现时间（纳秒）
+     */
+    void drawFrame(long presentationTimeNs);
+
+    /**
+     * 更新输出 Surface（编码器重建时）
+     */
+    void updateOutputSurface(Surface newOutputSurface);
+
+    /**
+     * 仅消费帧而不渲染（保持 SurfaceTexture 继续回调）
+     */
+    void consumeFrame();
+
+    void release();
+
+    boolean isInitialized();
+}
@@ -0,0 +1,240 @@
+package com.kooo.evcam.camera;
+
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import com.kooo.evcam.AppLog;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.TimeZone;
+
+/**
+ * 基于字形图集的时间水印渲染（OpenGL ES 2.0）
+ *
+ * 图集纹理在 init 时上传一次；之后每帧只在秒数变化时把 19 个字形的四边形坐标写入预分配的缓冲区，
+ * 再用一次 glDrawElements 混合绘制到当前视口，热路径上没有 String、Date、Bitmap 分配和纹理上传。
+ *
+ * 所有方法都必须在持有 EGL 上下文的线程上调用。
+ */
+final class GlyphWatermarkRenderer {
+    private static final String TAG = "GlyphWatermark";
+
+    private static final String VERTEX_SHADER =
+            "attribute vec4 aPosition;\n" +
+            "attribute vec2 aTexCoord;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    gl_Position = aPosition;\n" +
+            "    vTexCoord = aTexCoord;\n" +
+            "}\n";
+
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "uniform sampler2D uTexture;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = texture2D(uTexture, vTexCoord);\n" +
+            "}\n";
+
+    private static final int FLOATS_PER_VERTEX = 4;  // x, y, u, v
+    private static final int FLOATS_PER_GLYPH = FLOATS_PER_VERTEX * 4;
+    private static final int INDICES_PER_GLYPH = 6;
+    private static final int STRIDE_BYTES = FLOATS_PER_VERTEX * 4;
+    private static final float MARGIN = 0.01f;  // 边距 1%
+    private static final long TIME_ZONE_REFRESH_MS = 60_000;  // 时区每分钟刷新一次（跟随系统设置）
+
+    private final WatermarkGlyphAtlas atlas;
+    private final boolean alignRight;
+
+    private int program;
+    private int textureId;
+    private int positionHandle;
+    private int texCoordHandle;
+    private int textureHandle;
+
+    // 预分配，每秒最多重写一次
+    private final float[] vertices = new float[TimestampGlyphs.LENGTH * FLOATS_PER_GLYPH];
+    private final int[] glyphs = new int[TimestampGlyphs.LENGTH];
+    private FloatBuffer vertexBuffer;
+    private ShortBuffer indexBuffer;
+    private long lastLocalSecond = Long.MIN_VALUE;
+    private int lastViewWidth;
+    private int lastViewHeight;
+
+    private TimeZone timeZone;
+    private long timeZoneCheckedMs;
+
+    /**
+     * @param textSizePx 字号（像素，1:1 绘制到视口）
+     * @param alignRight true 画在右上角，false 画在左上角
+     */
+    GlyphWatermarkRenderer(int textSizePx, boolean alignRight) {
+        this.atlas = WatermarkGlyphAtlas.obtain(textSizePx);
+        this.alignRight = alignRight;
+    }
+
+    /**
+     * 创建着色器程序、上传图集纹理、分配顶点和索引缓冲
+     * @return false 表示着色器创建失败
+     */
+    boolean init() {
+        if (program != 0) {
+            return true;
+        }
+        program = EglSurfaceEncoder.createProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        if (program == 0) {
+            AppLog.e(TAG, "Failed to create glyph watermark program");
+            return false;
+        }
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
+        textureHandle = GLES20.glGetUniformLocation(program, "uTexture");
+
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        textureId = textures[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, atlas.getBitmap(), 0);
+
+        vertexBuffer = ByteBuffer.allocateDirect(vertices.length * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        short[] indices = new short[TimestampGlyphs.LENGTH * INDICES_PER_GLYPH];
+        for (int i = 0; i < TimestampGlyphs.LENGTH; i++) {
+            short base = (short) (i * 4);
+            int o = i * INDICES_PER_GLYPH;
+            indices[o] = base;
+            indices[o + 1] = (short) (base + 1);
+            indices[o + 2] = (short) (base + 2);
+            indices[o + 3] = (short) (base + 2);
+            indices[o + 4] = (short) (base + 1);
+            indices[o + 5] = (short) (base + 3);
+        }
+        indexBuffer = ByteBuffer.allocateDirect(indices.length * 2)
+                .order(ByteOrder.nativeOrder())
+                .asShortBuffer()
+                .put(indices);
+        indexBuffer.position(0);
+
+        lastLocalSecond = Long.MIN_VALUE;
+        AppLog.d(TAG, "Glyph atlas uploaded: " + atlas.getBitmap().getWidth() + "x" + atlas.getBitmap().getHeight()
+                + ", textureId=" + textureId);
+        return true;
+    }
+
+    boolean isInitialized() {
+        return program != 0;
+    }
+
+    /**
+     * 在当前视口上叠加时间水印（当前时间）
+     * @param viewWidth 当前视口宽度（像素）
+     * @param viewHeight 当前视口高度（像素）
+     */
+    void draw(int viewWidth, int viewHeight) {
+        if (program == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (timeZone == null || now - timeZoneCheckedMs >= TIME_ZONE_REFRESH_MS) {
+            timeZone = TimeZone.getDefault();
+            timeZoneCheckedMs = now;
+        }
+        long localSecond = TimestampGlyphs.toLocalSeconds(now, timeZone.getOffset(now));
+        if (localSecond != lastLocalSecond || viewWidth != lastViewWidth || viewHeight != lastViewHeight) {
+            lastLocalSecond = localSecond;
+            lastViewWidth = viewWidth;
+            lastViewHeight = viewHeight;
+            TimestampGlyphs.fill(localSecond, glyphs);
+            buildGeometry(viewWidth, viewHeight);
+        }
+
+        // 图集位图是预乘 Alpha 的
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+        GLES20.glUniform1i(textureHandle, 1);
+
+        vertexBuffer.position(0);
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, STRIDE_BYTES, vertexBuffer);
+        vertexBuffer.position(2);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, STRIDE_BYTES, vertexBuffer);
+
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, TimestampGlyphs.LENGTH * INDICES_PER_GLYPH,
+                GLES20.GL_UNSIGNED_SHORT, indexBuffer);
+
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glDisable(GLES20.GL_BLEND);
+    }
+
+    /**
+     * 释放 GL 资源（图集位图全局共用，不回收）
+     */
+    void release() {
+        if (program != 0) {
+            GLES20.glDeleteProgram(program);
+            program = 0;
+        }
+        if (textureId != 0) {
+            int[] textures = {textureId};
+            GLES20.glDeleteTextures(1, textures, 0);
+            textureId = 0;
+        }
+    }
+
+    /**
+     * 按字形索引写入 19 个四边形（像素坐标 1:1 映射到视口，纹理坐标取图集中的单元格）
+     */
+    private void buildGeometry(int viewWidth, int viewHeight) {
+        int cellWidth = atlas.getCellWidth();
+        int cellHeight = atlas.getCellHeight();
+        int advance = atlas.getAdvance();
+        float atlasWidth = atlas.getBitmap().getWidth();
+
+        float left = alignRight
+                ? viewWidth * (1.0f - MARGIN) - atlas.getTextWidth()
+                : viewWidth * MARGIN;
+        float top = viewHeight * MARGIN;
+        float yTop = 1.0f - 2.0f * top / viewHeight;
+        float yBottom = 1.0f - 2.0f * (top + cellHeight) / viewHeight;
+
+        for (int i = 0; i < TimestampGlyphs.LENGTH; i++) {
+            float px = left + i * advance;
+            float xLeft = 2.0f * px / viewWidth - 1.0f;
+            float xRight = 2.0f * (px + cellWidth) / viewWidth - 1.0f;
+            float uLeft = glyphs[i] * cellWidth / atlasWidth;
+            float uRight = (glyphs[i] + 1) * cellWidth / atlasWidth;
+
+            int o = i * FLOATS_PER_GLYPH;
+            // 左上、右上、左下、右下（位图第 0 行对应纹理 v=0）
+            putVertex(o, xLeft, yTop, uLeft, 0.0f);
+            putVertex(o + 4, xRight, yTop, uRight, 0.0f);
+            putVertex(o + 8, xLeft, yBottom, uLeft, 1.0f);
+            putVertex(o + 12, xRight, yBottom, uRight, 1.0f);
+        }
+        vertexBuffer.position(0);
+        vertexBuffer.put(vertices);
+        vertexBuffer.position(0);
+    }
+
+    private void putVertex(int offset, float x, float y, float u, float v) {
+        vertices[offset] = x;
+        vertices[offset + 1] = y;
+        vertices[offset + 2] = u;
+        vertices[offset + 3] = v;
+    }
+}
@@ -0,0 +1,91 @@
+package com.kooo.evcam.camera;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JPEG 数据缓冲池（硬件拍照用）
+ *
+ * ImageReader 出图后立即把 JPEG 数据复制到池中的 byte[] 并关闭 Image，
+ * 写盘线程写完后归还；多路同时抓拍时不再为每张照片分配几 MB 的新数组。
+ * 分配大小按 64KB 向上取整，相近分辨率的照片可以复用同一块缓冲。
+ */
+final class JpegBufferPool {
+
+    private static final int ALIGN = 64 * 1024;
+
+    private final int maxPooled;
+    private final List<byte[]> free = new ArrayList<>();
+    private long allocations;
+    private long reuses;
+
+    /**
+     * @param maxPooled 最多保留的空闲缓冲数量（通常等于摄像头数量）
+     */
+    JpegBufferPool(int maxPooled) {
+        this.maxPooled = Math.max(1, maxPooled);
+    }
+
+    /**
+     * 取一块至少 minSize 字节的缓冲（优先复用能装下的最小一块）
+     */
+    synchronized byte[] obtain(int minSize) {
+        int best = -1;
+        for (int i = 0; i < free.size(); i++) {
+            int length = free.get(i).length;
+            if (length >= minSize && (best < 0 || length < free.get(best).length)) {
+                best = i;
+            }
+        }
+        if (best >= 0) {
+            reuses++;
+            return free.remove(best);
+        }
+        allocations++;
+        return new byte[alignUp(minSize)];
+    }
+
+    /**
+     * 归还缓冲；池满时丢弃最小的一块（保留更可能被复用的大缓冲）
+     */
+    synchronized void release(byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        for (int i = 0; i < free.size(); i++) {
+            if (free.get(i) == buffer) {
+                return;  // 重复归还
+            }
+        }
+        if (free.size() < maxPooled) {
+            free.add(buffer);
+            return;
+        }
+        int smallest = 0;
+        for (int i = 1; i < free.size(); i++) {
+            if (free.get(i).length < free.get(smallest).length) {
+                smallest = i;
+            }
+        }
+        if (free.get(smallest).length < buffer.length) {
+            free.set(smallest, buffer);
+        }
+    }
+
+    synchronized int getPooledCount() {
+        return free.size();
+    }
+
+    synchronized long getAllocations() {
+        return allocations;
+    }
+
+    synchronized long getReuses() {
+        return reuses;
+    }
+
+    static int alignUp(int size) {
+        int aligned = (Math.max(size, 1) + ALIGN - 1) / ALIGN * ALIGN;
+        return aligned > 0 ? aligned : Integer.MAX_VALUE;
+    }
+}
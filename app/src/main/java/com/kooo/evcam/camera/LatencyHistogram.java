@@ -0,0 +1,140 @@
+package com.kooo.evcam.camera;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图（HdrHistogram 风格的对数-线性分桶，无锁）
+ *
+ * 单位为微秒，分桶方式：
+ * - 小于 32us 的值每个值一个桶（精确）
+ * - 更大的值按 2 的幂分段，每段再分 16 个子桶，相对误差不超过 1/16（约 6%）
+ * - 最大可记录约 35 分钟（2^31 us），更大的值计入最后一个桶
+ *
+ * 记录只做一次数组自增和两次原子累加，可以在帧回调等热路径上调用；
+ * 读取（分位数、均值）可在任意线程进行，读到的是近似一致的快照。
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;      // 32
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;        // 16
+    private static final int MAX_MAGNITUDE = 31;
+    static final long MAX_VALUE_US = (1L << MAX_MAGNITUDE) - 1;
+    static final int BUCKET_COUNT = indexOf(MAX_VALUE_US) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSum = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * 记录一个值
+     * @param valueUs 延迟（微秒），负值按 0 记录
+     */
+    public void record(long valueUs) {
+        long value = Math.max(0, Math.min(valueUs, MAX_VALUE_US));
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(value);
+        long max;
+        while (value > (max = maxValue.get())) {
+            if (maxValue.compareAndSet(max, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 记录一个纳秒值（换算为微秒）
+     */
+    public void recordNanos(long valueNs) {
+        record(valueNs / 1000);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxUs() {
+        return maxValue.get();
+    }
+
+    public long getMeanUs() {
+        long count = totalCount.get();
+        return count > 0 ? totalSum.get() / count : 0;
+    }
+
+    /**
+     * 获取分位数对应的值（所在桶的上界，不超过最大值）
+     * @param percentile 0~100
+     * @return 微秒，没有数据时返回 0
+     */
+    public long getPercentileUs(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * Math.max(0, Math.min(100, percentile)) / 100.0);
+        target = Math.max(1, target);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    /**
+     * 清空（与 record 并发时可能丢失少量记录）
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalSum.set(0);
+        maxValue.set(0);
+    }
+
+    /**
+     * 简要统计，如 "p50 1.2 / p99 8.5 / max 20.1ms (n=1800)"
+     */
+    public String format() {
+        return String.format(Locale.US, "p50 %.1f / p99 %.1f / max %.1fms (n=%d)",
+                getPercentileUs(50) / 1000.0, getPercentileUs(99) / 1000.0, getMaxUs() / 1000.0, getCount());
+    }
+
+    // ===== 分桶计算 =====
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);  // >= SUB_BUCKET_BITS
+        int shift = magnitude - (SUB_BUCKET_BITS - 1);            // >= 1
+        int sub = (int) (value >>> shift);                         // [16, 32)
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (sub - SUB_BUCKET_HALF);
+    }
+
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int k = index - SUB_BUCKET_COUNT;
+        int shift = k / SUB_BUCKET_HALF + 1;
+        long sub = k % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return sub << shift;
+    }
+
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        return lowestValueAt(index) + (1L << shift) - 1;
+    }
+}
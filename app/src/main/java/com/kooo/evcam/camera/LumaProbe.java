@@ -0,0 +1,234 @@
+package com.kooo.evcam.camera;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+
+import com.kooo.evcam.AppLog;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * 编码渲染路径上的低分辨率亮度回读（移动侦测用）
+ *
+ * 在录制器渲染完一帧后，把同一个 OES 纹理再画到一个 40x90 的 RGBA 帧缓冲：
+ * 每个输出像素的 R/G/B/A 分别是横向相邻 4 个采样点的亮度，
+ * glReadPixels 读回的 14.4KB 数据本身就是 160x90 的 Y 平面，不需要再做格式转换。
+ * 按 minIntervalMs 限频，默认每秒 5 帧，对编码帧率几乎没有影响。
+ *
+ * 除构造函数和 {@link #isDue(long)} 外，所有方法都必须在持有 EGL 上下文的渲染线程上调用。
+ */
+public final class LumaProbe {
+    private static final String TAG = "LumaProbe";
+
+    public static final int WIDTH = 160;
+    public static final int HEIGHT = 90;
+    private static final int PACKED_WIDTH = WIDTH / 4;
+
+    public interface Sink {
+        /**
+         * 一帧亮度数据可用（在渲染线程上调用，luma 在回调返回后会被覆盖）
+         */
+        void onLumaFrame(String key, byte[] luma, int width, int height, long timestampMs);
+    }
+
+    // 在 OES 纹理坐标变换之前横向偏移，输出的 4 个通道对应 4 个相邻采样点
+    private static final String FRAGMENT_SHADER =
+            "#extension GL_OES_EGL_image_external : require\n" +
+            "precision mediump float;\n" +
+            "varying vec2 vTextureCoord;\n" +
+            "uniform samplerExternalOES sTexture;\n" +
+            "uniform mat4 uTexMatrix;\n" +
+            "uniform float uStep;\n" +
+            "const vec3 kLuma = vec3(0.299, 0.587, 0.114);\n" +
+            "float lumaAt(float dx) {\n" +
+            "    vec2 uv = (uTexMatrix * vec4(vTextureCoord.x + dx, vTextureCoord.y, 0.0, 1.0)).xy;\n" +
+            "    return dot(texture2D(sTexture, uv).rgb, kLuma);\n" +
+            "}\n" +
+            "void main() {\n" +
+            "    gl_FragColor = vec4(lumaAt(-1.5 * uStep), lumaAt(-0.5 * uStep),\n" +
+            "                        lumaAt(0.5 * uStep), lumaAt(1.5 * uStep));\n" +
+            "}\n";
+
+    // 纹理坐标不在顶点着色器里变换，交给片元着色器
+    private static final String VERTEX_SHADER =
+            "uniform mat4 uMVPMatrix;\n" +
+            "attribute vec4 aPosition;\n" +
+            "attribute vec4 aTextureCoord;\n" +
+            "varying vec2 vTextureCoord;\n" +
+            "void main() {\n" +
+            "    gl_Position = uMVPMatrix * aPosition;\n" +
+            "    vTextureCoord = aTextureCoord.xy;\n" +
+            "}\n";
+
+    private final String key;
+    private final Sink sink;
+    private final long minIntervalMs;
+    private final ByteBuffer pixelBuffer;
+    private final byte[] luma = new byte[WIDTH * HEIGHT];
+    private final float[] mvpMatrix = new float[16];
+    private final int[] savedFramebuffer = new int[1];
+    private volatile long lastCaptureMs = Long.MIN_VALUE;
+
+    private int program;
+    private int framebuffer;
+    private int colorTexture;
+    private FloatBuffer vertexBuffer;
+    private FloatBuffer texCoordBuffer;
+    private int positionHandle;
+    private int texCoordHandle;
+    private int mvpMatrixHandle;
+    private int texMatrixHandle;
+    private int textureHandle;
+    private int stepHandle;
+    private boolean glFailed = false;
+    private long captures;
+
+    public LumaProbe(String key, Sink sink, long minIntervalMs) {
+        this.key = key;
+        this.sink = sink;
+        this.minIntervalMs = minIntervalMs;
+        this.pixelBuffer = ByteBuffer.allocateDirect(WIDTH * HEIGHT).order(ByteOrder.nativeOrder());
+        Matrix.setIdentityM(mvpMatrix, 0);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 距上次回读是否已超过采样间隔
+     */
+    public boolean isDue(long nowMs) {
+        return !glFailed && nowMs - lastCaptureMs >= minIntervalMs;
+    }
+
+    /**
+     * 回读一帧（调用方已完成本帧渲染，EGL 上下文为当前）
+     * @param oesTextureId 摄像头输入纹理
+     * @param texMatrix SurfaceTexture 的变换矩阵
+     */
+    public void capture(int oesTextureId, float[] texMatrix, long nowMs) {
+        if (glFailed) {
+            return;
+        }
+        lastCaptureMs = nowMs;
+        if (program == 0 && !initGl()) {
+            glFailed = true;
+            releaseGl();
+            AppLog.w(TAG, "Camera " + key + " luma probe unavailable, motion detection disabled");
+            return;
+        }
+
+        GLES20.glGetIntegerv(GLES20.GL_FRAMEBUFFER_BINDING, savedFramebuffer, 0);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+        GLES20.glViewport(0, 0, PACKED_WIDTH, HEIGHT);
+
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, oesTextureId);
+        GLES20.glUniform1i(textureHandle, 0);
+        GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, mvpMatrix, 0);
+        GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, texMatrix, 0);
+        GLES20.glUniform1f(stepHandle, 1.0f / WIDTH);
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texCoordBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+
+        pixelBuffer.clear();
+        GLES20.glReadPixels(0, 0, PACKED_WIDTH, HEIGHT, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixelBuffer);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, savedFramebuffer[0]);
+
+        int error = GLES20.glGetError();
+        if (error != GLES20.GL_NO_ERROR) {
+            AppLog.w(TAG, "Camera " + key + " luma readback GL error 0x" + Integer.toHexString(error));
+            return;
+        }
+        pixelBuffer.position(0);
+        pixelBuffer.get(luma);
+        captures++;
+        sink.onLumaFrame(key, luma, WIDTH, HEIGHT, nowMs);
+    }
+
+    public long getCaptures() {
+        return captures;
+    }
+
+    /**
+     * 释放 GL 资源（必须在创建它们的渲染线程上调用）
+     */
+    public void releaseGl() {
+        if (program != 0) {
+            GLES20.glDeleteProgram(program);
+            program = 0;
+        }
+        if (framebuffer != 0) {
+            GLES20.glDeleteFramebuffers(1, new int[]{framebuffer}, 0);
+            framebuffer = 0;
+        }
+        if (colorTexture != 0) {
+            GLES20.glDeleteTextures(1, new int[]{colorTexture}, 0);
+            colorTexture = 0;
+        }
+    }
+
+    private boolean initGl() {
+        try {
+            program = EglSurfaceEncoder.createProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+            if (program == 0) {
+                return false;
+            }
+            positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+            texCoordHandle = GLES20.glGetAttribLocation(program, "aTextureCoord");
+            mvpMatrixHandle = GLES20.glGetUniformLocation(program, "uMVPMatrix");
+            texMatrixHandle = GLES20.glGetUniformLocation(program, "uTexMatrix");
+            textureHandle = GLES20.glGetUniformLocation(program, "sTexture");
+            stepHandle = GLES20.glGetUniformLocation(program, "uStep");
+
+            vertexBuffer = createFloatBuffer(EglSurfaceEncoder.VERTICES);
+            texCoordBuffer = createFloatBuffer(EglSurfaceEncoder.TEXTURE_COORDS);
+
+            int[] ids = new int[1];
+            GLES20.glGenTextures(1, ids, 0);
+            colorTexture = ids[0];
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, colorTexture);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, PACKED_WIDTH, HEIGHT, 0,
+                    GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+
+            GLES20.glGenFramebuffers(1, ids, 0);
+            framebuffer = ids[0];
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+            GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                    GLES20.GL_TEXTURE_2D, colorTexture, 0);
+            int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+            if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+                AppLog.e(TAG, "Camera " + key + " luma framebuffer incomplete: 0x" + Integer.toHexString(status));
+                return false;
+            }
+            AppLog.d(TAG, "Camera " + key + " luma probe initialized " + WIDTH + "x" + HEIGHT
+                    + " every " + minIntervalMs + "ms");
+            return true;
+        } catch (Exception e) {
+            AppLog.e(TAG, "Camera " + key + " failed to init luma probe", e);
+            return false;
+        }
+    }
+
+    private static FloatBuffer createFloatBuffer(float[] values) {
+        FloatBuffer buffer = ByteBuffer.allocateDirect(values.length * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        buffer.put(values).position(0);
+        return buffer;
+    }
+}
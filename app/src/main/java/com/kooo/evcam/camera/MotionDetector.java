@@ -0,0 +1,250 @@
+package com.kooo.evcam.camera;
+
+/**
+ * 低分辨率亮度帧的移动侦测（纯 Java，处理过程不分配内存）
+ *
+ * 输入为缩小后的 Y 平面（典型 160x90），按块统计与自适应背景的差异：
+ * - 背景为每像素的 8 位定点亮度，静止区域按 1/2^learnShift 快速学习，
+ *   有变化的块按 1/2^motionLearnShift 缓慢吸收（停进来的车最终会变成背景）
+ * - 先扣除整帧平均亮度的变化，再比较像素差，车灯扫过、自动曝光不会被当成移动
+ * - 块内变化像素超过比例才算活动块，活动块数量达到阈值且连续 confirmFrames 帧才报告移动
+ * - 几乎所有块同时变化视为场景突变（红外切换、镜头被遮挡后恢复），直接以当前帧重建背景
+ *
+ * 非线程安全：同一实例只能在一个线程上调用。
+ */
+final class MotionDetector {
+
+    static final int DEFAULT_BLOCK_SIZE = 10;
+
+    private static final int FIXED_SHIFT = 8;           // 背景定点精度
+    private static final int SCENE_CHANGE_PERCENT = 80;  // 超过该比例的块同时变化视为场景突变
+
+    private final int width;
+    private final int height;
+    private final int blocksX;
+    private final int blocksY;
+    private final int[] background;
+    private final int[] blockOfX;       // 列号 -> 块列
+    private final int[] blockRowBase;   // 行号 -> 该行所在块行的起始块序号
+    private final int[] blockPixels;    // 每块像素数（边缘块可能较小）
+    private final int[] blockChanged;   // 本帧每块变化像素数
+    private final boolean[] blockActive;
+
+    private int pixelThreshold = 20;
+    private int blockPercent = 20;
+    private int minActiveBlocks = 2;
+    private int confirmFrames = 2;
+    private int learnShift = 4;
+    private int motionLearnShift = 8;
+    private int warmupFrames = 8;
+
+    private long frameCount;
+    private int activeBlocks;
+    private int consecutiveMotion;
+    private int brightnessOffset;  // 本帧与背景的平均亮度差
+    private long sceneChanges;
+    private boolean motion;
+
+    MotionDetector(int width, int height) {
+        this(width, height, DEFAULT_BLOCK_SIZE);
+    }
+
+    MotionDetector(int width, int height, int blockSize) {
+        if (width <= 0 || height <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("size=" + width + "x" + height + ", block=" + blockSize);
+        }
+        this.width = width;
+        this.height = height;
+        this.blocksX = (width + blockSize - 1) / blockSize;
+        this.blocksY = (height + blockSize - 1) / blockSize;
+        this.background = new int[width * height];
+        this.blockOfX = new int[width];
+        this.blockRowBase = new int[height];
+        this.blockPixels = new int[blocksX * blocksY];
+        this.blockChanged = new int[blocksX * blocksY];
+        this.blockActive = new boolean[blocksX * blocksY];
+        for (int x = 0; x < width; x++) {
+            blockOfX[x] = x / blockSize;
+        }
+        for (int y = 0; y < height; y++) {
+            blockRowBase[y] = (y / blockSize) * blocksX;
+            for (int x = 0; x < width; x++) {
+                blockPixels[blockRowBase[y] + blockOfX[x]]++;
+            }
+        }
+    }
+
+    /**
+     * 调整灵敏度
+     * @param pixelThreshold 像素亮度差阈值（0~255）
+     * @param blockPercent 块内变化像素比例（%）
+     * @param minActiveBlocks 判定移动所需的活动块数量
+     * @param confirmFrames 连续多少帧满足条件才报告移动
+     */
+    void setSensitivity(int pixelThreshold, int blockPercent, int minActiveBlocks, int confirmFrames) {
+        this.pixelThreshold = Math.max(1, Math.min(255, pixelThreshold));
+        this.blockPercent = Math.max(1, Math.min(100, blockPercent));
+        this.minActiveBlocks = Math.max(1, minActiveBlocks);
+        this.confirmFrames = Math.max(1, confirmFrames);
+    }
+
+    /**
+     * 调整背景学习速度（静止区域 1/2^learnShift，活动块 1/2^motionLearnShift）
+     */
+    void setLearning(int learnShift, int motionLearnShift, int warmupFrames) {
+        this.learnShift = Math.max(0, Math.min(15, learnShift));
+        this.motionLearnShift = Math.max(this.learnShift, Math.min(15, motionLearnShift));
+        this.warmupFrames = Math.max(0, warmupFrames);
+    }
+
+    boolean process(byte[] luma) {
+        return process(luma, 0, width);
+    }
+
+    /**
+     * 处理一帧
+     * @param luma 亮度数据（无符号字节）
+     * @param offset 第一行的起始位置
+     * @param rowStride 行跨度（≥ width）
+     * @return 是否检测到移动（已经过连续帧确认）
+     */
+    boolean process(byte[] luma, int offset, int rowStride) {
+        frameCount++;
+        if (frameCount == 1) {
+            resetBackground(luma, offset, rowStride);
+            motion = false;
+            return false;
+        }
+
+        // 1. 整帧平均亮度相对背景的偏移
+        long frameSum = 0;
+        long backgroundSum = 0;
+        for (int y = 0; y < height; y++) {
+            int src = offset + y * rowStride;
+            int bg = y * width;
+            for (int x = 0; x < width; x++) {
+                frameSum += luma[src + x] & 0xFF;
+                backgroundSum += background[bg + x];
+            }
+        }
+        int pixels = width * height;
+        brightnessOffset = (int) ((frameSum << FIXED_SHIFT) / pixels - backgroundSum / pixels);
+
+        // 2. 逐像素比较，统计每块变化像素数
+        for (int i = 0; i < blockChanged.length; i++) {
+            blockChanged[i] = 0;
+        }
+        int threshold = pixelThreshold << FIXED_SHIFT;
+        for (int y = 0; y < height; y++) {
+            int src = offset + y * rowStride;
+            int bg = y * width;
+            int rowBase = blockRowBase[y];
+            for (int x = 0; x < width; x++) {
+                int diff = ((luma[src + x] & 0xFF) << FIXED_SHIFT) - background[bg + x] - brightnessOffset;
+                if (diff > threshold || diff < -threshold) {
+                    blockChanged[rowBase + blockOfX[x]]++;
+                }
+            }
+        }
+
+        // 3. 活动块
+        activeBlocks = 0;
+        for (int i = 0; i < blockChanged.length; i++) {
+            boolean active = blockChanged[i] * 100 >= blockPercent * blockPixels[i];
+            blockActive[i] = active;
+            if (active) {
+                activeBlocks++;
+            }
+        }
+
+        if (activeBlocks * 100 >= SCENE_CHANGE_PERCENT * blockChanged.length) {
+            // 场景突变：不当作移动，直接重建背景
+            sceneChanges++;
+            resetBackground(luma, offset, rowStride);
+            consecutiveMotion = 0;
+            motion = false;
+            return false;
+        }
+
+        // 4. 更新背景（活动块慢学习）
+        for (int y = 0; y < height; y++) {
+            int src = offset + y * rowStride;
+            int bg = y * width;
+            int rowBase = blockRowBase[y];
+            for (int x = 0; x < width; x++) {
+                int shift = blockActive[rowBase + blockOfX[x]] ? motionLearnShift : learnShift;
+                int target = (luma[src + x] & 0xFF) << FIXED_SHIFT;
+                background[bg + x] += (target - background[bg + x]) >> shift;
+            }
+        }
+
+        if (frameCount <= warmupFrames) {
+            consecutiveMotion = 0;
+            motion = false;
+            return false;
+        }
+        consecutiveMotion = activeBlocks >= minActiveBlocks ? consecutiveMotion + 1 : 0;
+        motion = consecutiveMotion >= confirmFrames;
+        return motion;
+    }
+
+    /**
+     * 清空背景，下一帧重新开始学习
+     */
+    void reset() {
+        frameCount = 0;
+        activeBlocks = 0;
+        consecutiveMotion = 0;
+        motion = false;
+    }
+
+    private void resetBackground(byte[] luma, int offset, int rowStride) {
+        for (int y = 0; y < height; y++) {
+            int src = offset + y * rowStride;
+            int bg = y * width;
+            for (int x = 0; x < width; x++) {
+                background[bg + x] = (luma[src + x] & 0xFF) << FIXED_SHIFT;
+            }
+        }
+    }
+
+    // ==================== Getters ====================
+
+    boolean isMotion() {
+        return motion;
+    }
+
+    /**
+     * 最近一帧的活动块数量
+     */
+    int getActiveBlocks() {
+        return activeBlocks;
+    }
+
+    boolean isBlockActive(int blockX, int blockY) {
+        return blockActive[blockY * blocksX + blockX];
+    }
+
+    int getBlocksX() {
+        return blocksX;
+    }
+
+    int getBlocksY() {
+        return blocksY;
+    }
+
+    long getFrameCount() {
+        return frameCount;
+    }
+
+    long getSceneChanges() {
+        return sceneChanges;
+    }
+
+    /**
+     * 最近一帧相对背景的平均亮度偏移（0~255 刻度）
+     */
+    int getBrightnessOffset() {
+        return brightnessOffset >> FIXED_SHIFT;
+    }
+}
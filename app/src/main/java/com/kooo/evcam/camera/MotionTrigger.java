@@ -0,0 +1,97 @@
+package com.kooo.evcam.camera;
+
+/**
+ * 停车移动侦测的录制开关（纯 Java）
+ *
+ * 汇总所有摄像头的侦测结果：任意一路报告移动时开始录制（事件前缓冲补上之前几秒），
+ * 最后一次移动后持续 holdMs 没有新移动、且已录满 minRecordMs 时停止录制。
+ * 录制时长超过 maxRecordMs 时强制停止一次（持续移动的场景，例如下雨树叶晃动），
+ * 之后需要 cooldownMs 的冷却才能再次触发，避免一直录制。
+ *
+ * 线程安全：多路摄像头可以在各自线程上调用。
+ */
+final class MotionTrigger {
+
+    static final int ACTION_NONE = 0;
+    static final int ACTION_START = 1;
+    static final int ACTION_STOP = 2;
+
+    private final long holdMs;
+    private final long minRecordMs;
+    private final long maxRecordMs;
+    private final long cooldownMs;
+
+    private boolean active;
+    private long startMs;
+    private long lastMotionMs;
+    private long cooldownUntilMs = Long.MIN_VALUE;
+    private int events;
+
+    /**
+     * @param holdMs 最后一次移动后继续录制的时长
+     * @param minRecordMs 单次最短录制时长
+     * @param maxRecordMs 单次最长录制时长（0 表示不限）
+     * @param cooldownMs 强制停止后的冷却时长
+     */
+    MotionTrigger(long holdMs, long minRecordMs, long maxRecordMs, long cooldownMs) {
+        this.holdMs = holdMs;
+        this.minRecordMs = minRecordMs;
+        this.maxRecordMs = maxRecordMs;
+        this.cooldownMs = cooldownMs;
+    }
+
+    /**
+     * 上报一帧的侦测结果
+     * @return ACTION_START / ACTION_STOP / ACTION_NONE
+     */
+    synchronized int onFrame(boolean motion, long nowMs) {
+        if (!active) {
+            if (motion && nowMs >= cooldownUntilMs) {
+                active = true;
+                startMs = nowMs;
+                lastMotionMs = nowMs;
+                events++;
+                return ACTION_START;
+            }
+            return ACTION_NONE;
+        }
+
+        if (motion) {
+            lastMotionMs = nowMs;
+        }
+        long recorded = nowMs - startMs;
+        if (maxRecordMs > 0 && recorded >= maxRecordMs) {
+            active = false;
+            cooldownUntilMs = nowMs + cooldownMs;
+            return ACTION_STOP;
+        }
+        if (nowMs - lastMotionMs >= holdMs && recorded >= minRecordMs) {
+            active = false;
+            return ACTION_STOP;
+        }
+        return ACTION_NONE;
+    }
+
+    /**
+     * 回到空闲状态（退出停车模式或录制被外部停止时调用）
+     */
+    synchronized void reset() {
+        active = false;
+        cooldownUntilMs = Long.MIN_VALUE;
+    }
+
+    synchronized boolean isActive() {
+        return active;
+    }
+
+    /**
+     * 已触发的移动事件次数
+     */
+    synchronized int getEvents() {
+        return events;
+    }
+
+    synchronized long getLastMotionMs() {
+        return lastMotionMs;
+    }
+}
@@ -4,9 +4,12 @@ package com.kooo.evcam.camera;
 import com.kooo.evcam.AppConfig;
 import com.kooo.evcam.AppLog;
 import com.kooo.evcam.FileTransferManager;
+import com.kooo.evcam.RecordingCatalog;
 import com.kooo.evcam.StorageHelper;
+import com.kooo.evcam.StorageQuotaTracker;
 import android.content.Context;
 import android.os.Environment;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.Size;
 import android.view.Surface;
@@ -15,7 +18,9 @@ import android.view.TextureView;
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Locale;
@@ -41,6 +46,13 @@ public class MultiCameraManager {
     private final List<String> activeCameraKeys = new ArrayList<>();
     private int maxOpenCameras = DEFAULT_MAX_OPEN_CAMERAS;
 
+    // 【并行启动】多路摄像头同时打开，同时进行的打开请求不超过上限，其余排队
+    private static final long OPEN_SLOT_TIMEOUT_MS = 3000;  // 某路迟迟没有结果时释放名额，不阻塞后面的摄像头
+    private int maxConcurrentOpens = DEFAULT_MAX_OPEN_CAMERAS;
+    private final ArrayDeque<String> openQueue = new ArrayDeque<>();  // 排队中的摄像头 key（仅主线程访问）
+    private final Map<String, Runnable> openSlots = new LinkedHashMap<>();  // 打开中的摄像头 ID → 超时任务（仅主线程访问）
+    private final StartupTimeline startupTimeline = new StartupTimeline();
+
     private boolean isRecording = false;
     private boolean useCodecRecording = false;  // 是否使用软编码录制（用于 L6/L7）
     private boolean useRelayWrite = false;      // 是否使用中转写入（录制到内部存储，异步传输到U盘）
@@ -68,6 +80,17 @@ public class MultiCameraManager {
     private final Map<String, Boolean> cameraRecordingActive = new LinkedHashMap<>();
     private RecordingStatusCallback recordingStatusCallback;
 
+    // 【预录】事件前缓冲：未录制时 Codec 录制器持续编码到内存，开始录制时先写入最近 N 秒
+    private static final long PRE_EVENT_ARM_DELAY_MS = 1500;  // 预览会话稳定后再启动缓冲
+    private static final int MAX_PRE_EVENT_ARM_FAILURES = 3;  // 连续失败后不再自动启动
+    private final Map<String, PreEventBuffer> preEventBuffers = new LinkedHashMap<>();  // 每路一个，跨录制复用
+    private boolean preEventBuffering = false;
+    private int preEventArmFailures = 0;
+    private final Runnable armPreEventRunnable = this::armPreEventBuffer;
+
+    // 【自适应码率】Codec 录制期间按写入/编码负载调节各路码率和帧率
+    private RecordingGovernor recordingGovernor;
+
     public interface StatusCallback {
         void onCameraStatusUpdate(String cameraId, String status);
     }
@@ -131,6 +154,9 @@ public class MultiCameraManager {
 
     public MultiCameraManager(Context context) {
         this.context = context;
+        // 上次运行中断的分段被截断后，按新大小重新登记到录制索引
+        SegmentFilePool.getInstance().setRecoveryListener((file, oldLength, newLength) ->
+                RecordingCatalog.getInstance(context).onFileAdded(file));
     }
     
     private SegmentSwitchCallback segmentSwitchCallback;
@@ -191,7 +217,16 @@ public class MultiCameraManager {
     }
 
     public void setMaxOpenCameras(int maxOpenCameras) {
+        setMaxOpenCameras(maxOpenCameras, maxOpenCameras);
+    }
+
+    /**
+     * @param maxOpenCameras 最多打开的摄像头数
+     * @param maxConcurrentOpens 同时进行的打开请求上限（HAL 不支持并发打开时设为 1，即逐路打开）
+     */
+    public void setMaxOpenCameras(int maxOpenCameras, int maxConcurrentOpens) {
         this.maxOpenCameras = Math.max(1, maxOpenCameras);
+        this.maxConcurrentOpens = Math.max(1, Math.min(maxConcurrentOpens, this.maxOpenCameras));
     }
 
     /**
@@ -228,6 +263,279 @@ public class MultiCameraManager {
     // 共享 TextureView 模式暂不启用（EGL context 跨线程共享有问题）
     private boolean useSharedTextureMode = false;
 
+    // 共享 EGL 渲染中心：所有 Codec 录制器共用一个 EGL 上下文和渲染线程
+    private boolean useSharedRenderHub = false;
+    private EglRenderHub renderHub;
+
+    // 【四画面合成】多路摄像头拼成一路 2x2 画面录制，录制器以 COMPOSITE_KEY 登记
+    static final String COMPOSITE_KEY = "quad";
+    private boolean useCompositeRecording = false;
+
+    /**
+     * 设置是否使用共享 EGL 渲染中心（Codec 录制模式，下次准备录制时生效）
+     * 启用后 4 路摄像头只创建一个 EGL 上下文和一个渲染线程，着色器、顶点缓冲和水印纹理共用
+     *
+     * @param enabled true 表示启用共享渲染
+     */
+    public void setSharedRenderHubMode(boolean enabled) {
+        this.useSharedRenderHub = enabled;
+        AppLog.d(TAG, "Shared render hub: " + (enabled ? "ENABLED" : "DISABLED"));
+        if (!enabled && renderHub != null && codecRecorders.isEmpty()) {
+            renderHub.release();
+            renderHub = null;
+        }
+    }
+
+    /**
+     * 设置是否使用四画面合成录制（Codec 录制模式，下次准备录制时生效）
+     * 启用后前/后/左/右拼成一路 2x2 画面，只用一个编码器和一个码率写入单个 MP4；
+     * 拼接后的分辨率超出编码器能力时自动回退为每路单独录制
+     *
+     * @param enabled true 表示启用四画面合成
+     */
+    public void setCompositeRecordingMode(boolean enabled) {
+        this.useCompositeRecording = enabled;
+        AppLog.d(TAG, "Composite recording: " + (enabled ? "ENABLED" : "DISABLED"));
+    }
+
+    // 【硬件拍照】摄像头直接输出 JPEG，多路同时抓拍
+    private boolean useHardwarePhotoCapture = false;
+    private final LatencyHistogram snapshotLatency = new LatencyHistogram();
+
+    // 【连拍/延时】按需创建
+    private CaptureScheduler captureScheduler;
+
+    /**
+     * 设置是否使用硬件拍照（下次打开摄像头时生效）
+     * 启用后每路摄像头在会话中常驻一个 JPEG ImageReader，拍照时所有摄像头同时出图，
+     * 由写盘线程统一写入，不再错开 300ms 触发、1 秒保存
+     *
+     * @param enabled true 表示启用硬件拍照
+     */
+    public void setHardwarePhotoCaptureMode(boolean enabled) {
+        this.useHardwarePhotoCapture = enabled;
+        AppLog.d(TAG, "Hardware photo capture: " + (enabled ? "ENABLED" : "DISABLED"));
+        for (SingleCamera camera : cameras.values()) {
+            camera.setHardwareCaptureMode(enabled);
+        }
+    }
+
+    /**
+     * 多路抓拍的端到端延迟（从触发到最后一路写盘完成，仅硬件拍照模式记录）
+     */
+    public LatencyHistogram getSnapshotLatency() {
+        return snapshotLatency;
+    }
+
+    /**
+     * 获取连拍/延时拍摄调度器
+     */
+    public synchronized CaptureScheduler getCaptureScheduler() {
+        if (captureScheduler == null) {
+            captureScheduler = new CaptureScheduler(context, this);
+        }
+        return captureScheduler;
+    }
+
+    // 【低功耗待机】息屏且未录制时摄像头降到最低帧率和最小尺寸，不做任何 GL 渲染
+    private static final long STANDBY_RESUME_BUDGET_MS = 1000;   // 退出待机到所有会话恢复的目标时长
+    private static final long STANDBY_RESUME_TIMEOUT_MS = 5000;
+    private volatile boolean standby = false;
+    private final LatencyHistogram standbyResumeLatency = new LatencyHistogram();
+    private final Set<String> standbyResumePending = new HashSet<>();  // 等待恢复的摄像头 ID（以自身为锁）
+    private final List<Runnable> standbyResumeActions = new ArrayList<>();
+    private long standbyResumeStartNs = 0;
+    private final Runnable standbyResumeTimeout = () -> finishStandbyResume(true);
+
+    /**
+     * 进入低功耗待机：释放空闲的编码器/预录缓冲（停止 GL 渲染），摄像头切换到最低帧率和最小输出尺寸
+     * 录制、连拍/延时、停车侦测进行中时不进入
+     *
+     * @return 是否处于待机
+     */
+    public boolean enterStandby() {
+        if (standby) {
+            return true;
+        }
+        if (isRecording || pendingRecordingStart != null || isRebuildingRecording || motionMonitor != null
+                || (captureScheduler != null && captureScheduler.isRunning())) {
+            AppLog.d(TAG, "Standby skipped: camera pipeline busy");
+            return false;
+        }
+        if (!hasConnectedCameras()) {
+            return false;
+        }
+        standby = true;
+        disarmPreEventBuffer(false);
+        for (OptimizedCodecRecorder recorder : optimizedRecorders.values()) {
+            recorder.release();
+        }
+        optimizedRecorders.clear();
+        for (String key : getActiveCameraKeys()) {
+            SingleCamera camera = cameras.get(key);
+            if (camera != null) {
+                camera.setStandbyMode(true);
+            }
+        }
+        AppLog.d(TAG, "Entered low-power standby");
+        return true;
+    }
+
+    /**
+     * 退出低功耗待机，所有摄像头会话恢复后在主线程执行 onResumed（未处于待机时立即执行）
+     * 从调用到最后一路会话就绪的耗时计入 {@link #getStandbyResumeLatency()}
+     *
+     * @param onResumed 恢复后的操作，可为 null
+     */
+    public void exitStandby(Runnable onResumed) {
+        if (!standby) {
+            synchronized (standbyResumePending) {
+                if (standbyResumeStartNs != 0 && onResumed != null) {
+                    // 正在恢复中，等恢复完成一起执行
+                    standbyResumeActions.add(onResumed);
+                    return;
+                }
+            }
+            if (onResumed != null) {
+                onResumed.run();
+            }
+            return;
+        }
+        standby = false;
+        int pending;
+        synchronized (standbyResumePending) {
+            standbyResumePending.clear();
+            for (String key : getActiveCameraKeys()) {
+                SingleCamera camera = cameras.get(key);
+                if (camera != null && camera.isConnected() && camera.isStandbyMode()) {
+                    standbyResumePending.add(camera.getCameraId());
+                }
+            }
+            standbyResumeStartNs = System.nanoTime();
+            if (onResumed != null) {
+                standbyResumeActions.add(onResumed);
+            }
+            pending = standbyResumePending.size();
+        }
+        AppLog.d(TAG, "Exiting low-power standby, waiting for " + pending + " session(s)");
+        if (pending > 0) {
+            mainHandler.postDelayed(standbyResumeTimeout, STANDBY_RESUME_TIMEOUT_MS);
+        }
+        for (SingleCamera camera : cameras.values()) {
+            camera.setStandbyMode(false);
+        }
+        if (pending == 0) {
+            finishStandbyResume(false);
+        }
+    }
+
+    /**
+     * 会话配置完成（摄像头线程调用）：待机恢复中的摄像头全部就绪后结束计时
+     */
+    private void onStandbyResumeConfigured(String cameraId) {
+        synchronized (standbyResumePending) {
+            if (!standbyResumePending.remove(cameraId) || !standbyResumePending.isEmpty()) {
+                return;
+            }
+        }
+        mainHandler.post(() -> finishStandbyResume(false));
+    }
+
+    private void finishStandbyResume(boolean timedOut) {
+        mainHandler.removeCallbacks(standbyResumeTimeout);
+        List<Runnable> actions;
+        long elapsedNs;
+        synchronized (standbyResumePending) {
+            if (standbyResumeStartNs == 0) {
+                return;
+            }
+            elapsedNs = System.nanoTime() - standbyResumeStartNs;
+            standbyResumeStartNs = 0;
+            standbyResumePending.clear();
+            actions = new ArrayList<>(standbyResumeActions);
+            standbyResumeActions.clear();
+        }
+        long elapsedMs = elapsedNs / 1_000_000;
+        if (timedOut) {
+            AppLog.w(TAG, "Standby resume timed out after " + elapsedMs + "ms");
+        } else {
+            standbyResumeLatency.recordNanos(elapsedNs);
+            if (elapsedMs > STANDBY_RESUME_BUDGET_MS) {
+                AppLog.w(TAG, "Standby resume took " + elapsedMs + "ms (budget " + STANDBY_RESUME_BUDGET_MS + "ms)");
+            } else {
+                AppLog.d(TAG, "Standby resumed in " + elapsedMs + "ms");
+            }
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * 清除待机状态（关闭摄像头时调用，下次打开直接使用正常参数）
+     */
+    private void clearStandby() {
+        standby = false;
+        for (SingleCamera camera : cameras.values()) {
+            camera.setStandbyMode(false);
+        }
+        finishStandbyResume(true);
+    }
+
+    public boolean isInStandby() {
+        return standby;
+    }
+
+    /**
+     * 退出待机到所有会话恢复的耗时
+     */
+    public LatencyHistogram getStandbyResumeLatency() {
+        return standbyResumeLatency;
+    }
+
+    // 【停车侦测】录制器渲染路径上的亮度回读，为 null 时不侦测
+    private volatile ParkingMotionMonitor motionMonitor;
+
+    /**
+     * 设置停车移动侦测（立即作用于正在缓冲/录制的摄像头，之后创建的录制器自动挂载）
+     * 依赖 Codec 录制 + 事件前缓冲：空闲时录制器一直在渲染，移动后从缓冲直接转为录制
+     *
+     * @param monitor 侦测器，传 null 停止侦测
+     * @return 是否生效（非 Codec 模式、未启用事件前缓冲或四画面合成模式下返回 false）
+     */
+    public boolean setMotionMonitor(ParkingMotionMonitor monitor) {
+        if (monitor != null && (!useCodecRecording || useCompositeRecording
+                || !new AppConfig(context).isPreEventEnabled())) {
+            AppLog.w(TAG, "Parking motion detection requires codec recording with pre-event buffering (non-composite)");
+            return false;
+        }
+        motionMonitor = monitor;
+        for (Map.Entry<String, CodecVideoRecorder> entry : codecRecorders.entrySet()) {
+            if (!COMPOSITE_KEY.equals(entry.getKey())) {
+                entry.getValue().setLumaProbe(monitor != null ? monitor.createProbe(entry.getKey()) : null);
+            }
+        }
+        AppLog.d(TAG, "Parking motion detection: " + (monitor != null ? "ENABLED" : "DISABLED"));
+        return true;
+    }
+
+    /**
+     * 获取共享渲染中心（未启用或启动失败时返回 null，录制器回退到独立渲染）
+     */
+    private EglRenderHub obtainRenderHub() {
+        if (!useSharedRenderHub) {
+            return null;
+        }
+        if (renderHub == null) {
+            renderHub = new EglRenderHub();
+        }
+        if (!renderHub.start()) {
+            AppLog.w(TAG, "Shared render hub unavailable, fallback to per-camera EGL");
+            renderHub = null;
+        }
+        return renderHub;
+    }
+
     /**
      * 检查是否使用软编码录制模式
      */
@@ -287,6 +595,10 @@ public class MultiCameraManager {
         
         AppLog.d(TAG, "共初始化 " + cameras.size() + " 个摄像头");
 
+        for (SingleCamera camera : cameras.values()) {
+            camera.setHardwareCaptureMode(useHardwarePhotoCapture);
+        }
+
         // 检测重复的cameraId，只让第一个实例成为主实例
         Set<String> primaryIds = new HashSet<>();
         for (Map.Entry<String, SingleCamera> entry : cameras.entrySet()) {
@@ -312,6 +624,8 @@ public class MultiCameraManager {
                 if (statusCallback != null) {
                     statusCallback.onCameraStatusUpdate(cameraId, "已打开");
                 }
+                markStartup(cameraId, StartupTimeline.OPENED);
+                onOpenSettled(cameraId);
             }
 
             @Override
@@ -320,6 +634,7 @@ public class MultiCameraManager {
                 if (statusCallback != null) {
                     statusCallback.onCameraStatusUpdate(cameraId, "预览已启动");
                 }
+                markStartup(cameraId, StartupTimeline.CONFIGURED);
 
                 // 检查是否有录制器正在等待会话重新配置（分段切换）
                 for (Map.Entry<String, SingleCamera> entry : cameras.entrySet()) {
@@ -372,6 +687,13 @@ public class MultiCameraManager {
                         }
                     }
                 }
+
+                onStandbyResumeConfigured(cameraId);
+
+                // 【预录】普通预览会话就绪后启动事件前缓冲
+                if (!isRecording && !preEventBuffering && pendingRecordingStart == null) {
+                    schedulePreEventArm();
+                }
             }
 
             @Override
@@ -389,6 +711,7 @@ public class MultiCameraManager {
                 if (statusCallback != null) {
                     statusCallback.onCameraStatusUpdate(cameraId, "错误: " + errorMsg);
                 }
+                onOpenSettled(cameraId);
 
                 // 如果在等待会话配置期间发生错误，减少期望计数（线程安全处理）
                 synchronized (sessionLock) {
@@ -439,6 +762,11 @@ public class MultiCameraManager {
                     }
                 }
             }
+
+            @Override
+            public void onFirstFrame(String cameraId) {
+                markStartup(cameraId, StartupTimeline.FIRST_FRAME);
+            }
         };
 
         // 为已初始化的摄像头设置回调
@@ -497,6 +825,9 @@ public class MultiCameraManager {
             @Override
             public void onSegmentSwitch(String cameraId, int newSegmentIndex, String completedFilePath) {
                 AppLog.d(TAG, "Segment switch for camera " + cameraId + " to segment " + newSegmentIndex);
+                recordCompletedSegment(completedFilePath);
+                // 新分段已开始，检查存储余量
+                StorageQuotaTracker.getInstance(context).onSegmentStarting();
                 // 找到对应的 camera key 和 camera
                 for (Map.Entry<String, SingleCamera> entry : cameras.entrySet()) {
                     if (entry.getValue().getCameraId().equals(cameraId)) {
@@ -511,10 +842,18 @@ public class MultiCameraManager {
                                 scheduleRelayTransfer(completedFilePath);
                             }
                             
-                            // 更新录制 Surface 并重新创建会话（MediaRecorder 模式）
-                            camera.setRecordSurface(recorder.getSurface(), false);
-                            camera.recreateSession();
-                            AppLog.d(TAG, "Recreated session for camera " + cameraId + " after segment switch");
+                            if (recorder.hasPersistentSurface()) {
+                                // 【持久录制 Surface】新分段已在同一个 Surface 上开始，只恢复录制输出
+                                if (recorder.isRecording() && !camera.resumeRecordOutput()) {
+                                    camera.recreateSession();
+                                    AppLog.d(TAG, "Recreated session for camera " + cameraId + " after segment switch (resume failed)");
+                                }
+                            } else {
+                                // 更新录制 Surface 并重新创建会话（MediaRecorder 模式）
+                                camera.setRecordSurface(recorder.getSurface(), false);
+                                camera.recreateSession();
+                                AppLog.d(TAG, "Recreated session for camera " + cameraId + " after segment switch");
+                            }
                         }
                         
                         // 通知分段切换回调（只通知一次，第一个触发的摄像头会通知）
@@ -548,8 +887,10 @@ public class MultiCameraManager {
             }
 
             @Override
-            public void onFirstDataWritten(String cameraId) {
-                AppLog.d(TAG, "First data written for camera " + cameraId);
+            public void onFirstDataWritten(String cameraId, long firstWriteLatencyMs, long preallocSavedMs) {
+                AppLog.d(TAG, "First data written for camera " + cameraId + " after " + firstWriteLatencyMs + "ms"
+                        + (preallocSavedMs > 0 ? " (preallocated file saved " + preallocSavedMs + "ms)" : ""));
+                markStartup(cameraId, StartupTimeline.FIRST_WRITE);
                 // 只在第一个摄像头首次写入时通知外部（每次录制只通知一次）
                 if (!hasNotifiedFirstDataWritten && firstDataWrittenCallback != null) {
                     hasNotifiedFirstDataWritten = true;
@@ -601,7 +942,9 @@ public class MultiCameraManager {
     public void openAllCameras() {
         AppLog.d(TAG, "Opening all cameras...");
 
+        cancelQueuedOpens();
         activeCameraKeys.clear();
+        startupTimeline.begin("打开摄像头", SystemClock.elapsedRealtime());
         int opened = 0;
         Set<String> openedIds = new HashSet<>();
         for (Map.Entry<String, SingleCamera> entry : cameras.entrySet()) {
@@ -614,20 +957,116 @@ public class MultiCameraManager {
                 continue;
             }
             activeCameraKeys.add(entry.getKey());
-            camera.openCamera();
+            openQueue.add(entry.getKey());
             opened++;
         }
+        launchQueuedOpens();
+
+        AppLog.d(TAG, "Requested open cameras: " + activeCameraKeys + " (max concurrent " + maxConcurrentOpens + ")");
+    }
+
+    /**
+     * 从队列中补足同时打开的名额（主线程）
+     * 各路在自己的后台线程上查询特性、选择尺寸并打开，互不等待
+     */
+    private void launchQueuedOpens() {
+        while (openSlots.size() < maxConcurrentOpens && !openQueue.isEmpty()) {
+            String key = openQueue.poll();
+            SingleCamera camera = cameras.get(key);
+            if (camera == null) {
+                continue;
+            }
+            String id = camera.getCameraId();
+            Runnable timeout = () -> {
+                AppLog.w(TAG, "Camera " + key + " open not settled in " + OPEN_SLOT_TIMEOUT_MS + "ms, releasing slot");
+                releaseOpenSlot(id);
+            };
+            openSlots.put(id, timeout);
+            mainHandler.postDelayed(timeout, OPEN_SLOT_TIMEOUT_MS);
+            startupTimeline.mark(key, StartupTimeline.OPEN_REQUESTED, SystemClock.elapsedRealtime());
+            camera.openCameraAsync();
+        }
+    }
+
+    /**
+     * 某路打开已有结果（成功或失败），释放名额（任意线程）
+     */
+    private void onOpenSettled(String cameraId) {
+        mainHandler.post(() -> releaseOpenSlot(cameraId));
+    }
+
+    private void releaseOpenSlot(String cameraId) {
+        Runnable timeout = openSlots.remove(cameraId);
+        if (timeout == null) {
+            return;
+        }
+        mainHandler.removeCallbacks(timeout);
+        launchQueuedOpens();
+    }
+
+    private void cancelQueuedOpens() {
+        openQueue.clear();
+        for (Runnable timeout : openSlots.values()) {
+            mainHandler.removeCallbacks(timeout);
+        }
+        openSlots.clear();
+    }
+
+    /**
+     * 记录启动时间线阶段（任意线程），所有摄像头都到达终点时输出整条时间线
+     */
+    private void markStartup(String cameraId, int phase) {
+        String key = null;
+        for (Map.Entry<String, SingleCamera> entry : cameras.entrySet()) {
+            if (entry.getValue().getCameraId().equals(cameraId)) {
+                key = entry.getKey();
+                break;
+            }
+        }
+        if (key != null && startupTimeline.mark(key, phase, SystemClock.elapsedRealtime())) {
+            AppLog.i(TAG, "Startup timeline: " + startupTimeline.format());
+        }
+    }
+
+    /**
+     * 记录录制请求：紧跟在打开摄像头之后（远程唤醒）时并入同一条时间线，否则开始新的追踪
+     */
+    private void traceRecordingRequest(Set<String> enabledCameras) {
+        long now = SystemClock.elapsedRealtime();
+        List<String> keys = getActiveCameraKeys();
+        boolean continueTrace = startupTimeline.isCollecting(now);
+        for (String key : keys) {
+            if (startupTimeline.getOffsetMs(key, StartupTimeline.RECORD_REQUESTED) >= 0) {
+                continueTrace = false;
+            }
+        }
+        if (!continueTrace) {
+            startupTimeline.begin("开始录制", now);
+        }
+        for (String key : keys) {
+            if (enabledCameras == null || enabledCameras.contains(key)) {
+                startupTimeline.mark(key, StartupTimeline.RECORD_REQUESTED, now);
+            }
+        }
+    }
 
-        AppLog.d(TAG, "Requested open cameras: " + activeCameraKeys);
+    /**
+     * 最近一次启动（打开摄像头/开始录制）各路摄像头的阶段耗时
+     */
+    public String getStartupTimeline() {
+        return startupTimeline.format();
     }
 
     /**
      * 关闭所有摄像头
      */
     public void closeAllCameras() {
+        cancelQueuedOpens();
+        disarmPreEventBuffer(false);
         for (SingleCamera camera : cameras.values()) {
             camera.closeCamera();
         }
+        clearStandby();
         AppLog.d(TAG, "All cameras closed");
     }
 
@@ -650,9 +1089,21 @@ public class MultiCameraManager {
             return false;
         }
 
+        // 【低功耗待机】录制会话按正常参数重建，不需要等待预览恢复
+        exitStandby(null);
+        traceRecordingRequest(null);
+
+        // 新分段开始前检查存储余量（不足时在后台删除最旧的文件）
+        StorageQuotaTracker.getInstance(context).onSegmentStarting();
+
+        // 【预录】已在缓冲时直接转为录制，事件前的画面一并写入
+        if (preEventBuffering) {
+            return startRecordingFromPreEvent(timestamp, null);
+        }
+
         // 根据模式选择录制方式
         if (useCodecRecording) {
-            return startCodecRecording(timestamp, null);
+            return startCodecRecording(timestamp, null, false);
         } else {
             return startMediaRecorderRecording(timestamp, null);
         }
@@ -669,9 +1120,21 @@ public class MultiCameraManager {
             return false;
         }
 
+        // 【低功耗待机】录制会话按正常参数重建，不需要等待预览恢复
+        exitStandby(null);
+        traceRecordingRequest(enabledCameras);
+
+        // 新分段开始前检查存储余量（不足时在后台删除最旧的文件）
+        StorageQuotaTracker.getInstance(context).onSegmentStarting();
+
+        // 【预录】已在缓冲时直接转为录制，事件前的画面一并写入
+        if (preEventBuffering) {
+            return startRecordingFromPreEvent(timestamp, enabledCameras);
+        }
+
         // 根据模式选择录制方式
         if (useCodecRecording) {
-            return startCodecRecording(timestamp, enabledCameras);
+            return startCodecRecording(timestamp, enabledCameras, false);
         } else {
             return startMediaRecorderRecording(timestamp, enabledCameras);
         }
@@ -755,8 +1218,20 @@ public class MultiCameraManager {
         int targetFrameRate = appConfig.getActualFrameRate(30);  // 假设硬件支持30fps
         AppLog.d(TAG, "Target frame rate: " + targetFrameRate + " fps (level: " + appConfig.getFramerateLevel() + ")");
 
-        // 第一步：准备所有 MediaRecorder（但不启动）
+        // 【并行启动】先登记会话计数和待启动任务，每路准备好 MediaRecorder 后立即重建该路会话，
+        // 会话配置在摄像头后台线程进行，与下一路的准备重叠；全部就绪后统一启动录制
+        final List<String> recordingKeys = new ArrayList<>(keys);
+        synchronized (sessionLock) {
+            sessionConfiguredCount = 0;
+            expectedSessionCount = keys.size();
+            // 初始化每个摄像头的配置状态跟踪
+            cameraSessionReady.clear();
+            cameraRecordingActive.clear();
+            pendingRecordingStart = () -> executeRecordingStart(recordingKeys, false);
+        }
+
         // 使用每个摄像头的实际预览分辨率，而不是硬编码的值
+        List<String> reconfiguredKeys = new ArrayList<>();
         boolean prepareSuccess = true;
         for (String key : keys) {
             SingleCamera camera = cameras.get(key);
@@ -782,6 +1257,7 @@ public class MultiCameraManager {
             recorder.setSegmentDuration(segmentDurationMs);
             recorder.setVideoBitrate(bitrate);
             recorder.setVideoFrameRate(targetFrameRate);
+            recorder.setPersistentSurfaceEnabled(appConfig.isPersistentRecordSurfaceEnabled());
             // 注：最大编码分辨率限制使用 VideoRecorder 内部默认值（4096x4096）
             
             AppLog.d(TAG, "Recording params for " + key + ": " + 
@@ -796,10 +1272,28 @@ public class MultiCameraManager {
                 prepareSuccess = false;
                 break;
             }
+
+            // 将录制 Surface 添加到该路会话并重新创建会话
+            camera.setRecordSurface(recorder.getSurface(), false);  // MediaRecorder 模式
+            camera.recreateSession();
+            reconfiguredKeys.add(key);
         }
 
         if (!prepareSuccess) {
             AppLog.e(TAG, "Failed to prepare recording");
+            synchronized (sessionLock) {
+                pendingRecordingStart = null;
+                sessionConfiguredCount = 0;
+                expectedSessionCount = 0;
+            }
+            // 已切换到录制会话的摄像头恢复普通预览
+            for (String key : reconfiguredKeys) {
+                SingleCamera camera = cameras.get(key);
+                if (camera != null) {
+                    camera.clearRecordSurface();
+                    camera.recreateSession();
+                }
+            }
             // 清理已准备的录制器
             for (String key : keys) {
                 VideoRecorder recorder = recorders.get(key);
@@ -810,29 +1304,6 @@ public class MultiCameraManager {
             return false;
         }
 
-        // 第二步：将录制 Surface 添加到摄像头会话并重新创建会话
-        synchronized (sessionLock) {
-            sessionConfiguredCount = 0;
-            expectedSessionCount = keys.size();
-            // 初始化每个摄像头的配置状态跟踪
-            cameraSessionReady.clear();
-            cameraRecordingActive.clear();
-        }
-
-        for (String key : keys) {
-            SingleCamera camera = cameras.get(key);
-            VideoRecorder recorder = recorders.get(key);
-            if (camera == null || recorder == null) {
-                continue;
-            }
-            camera.setRecordSurface(recorder.getSurface(), false);  // MediaRecorder 模式
-            camera.recreateSession();
-        }
-
-        // 第三步：设置待处理的录制启动任务（将被 executeRecordingStart 替代）
-        final List<String> recordingKeys = new ArrayList<>(keys);
-        pendingRecordingStart = () -> executeRecordingStart(recordingKeys, false);
-
         // 设置超时机制：如果 3 秒内没有所有会话配置完成，只启动已就绪的摄像头
         sessionTimeoutRunnable = () -> {
             AppLog.w(TAG, "Session configuration timeout after 3 seconds");
@@ -929,9 +1400,10 @@ public class MultiCameraManager {
      * 使用 OpenGL 渲染 + MediaCodec 编码 + MediaMuxer 写入
      * @param timestamp 时间戳
      * @param enabledCameras 要录制的摄像头位置集合，为 null 时录制所有摄像头
+     * @param preEventOnly true 表示只启动事件前缓冲（不创建文件），由 startRecordingFromPreEvent 转为录制
      */
-    private boolean startCodecRecording(String timestamp, Set<String> enabledCameras) {
-        AppLog.d(TAG, "Starting CODEC recording with timestamp: " + timestamp);
+    private boolean startCodecRecording(String timestamp, Set<String> enabledCameras, boolean preEventOnly) {
+        AppLog.d(TAG, "Starting CODEC " + (preEventOnly ? "pre-event buffering" : "recording") + " with timestamp: " + timestamp);
 
         // 重置首次写入通知标志（每次录制只通知一次）
         hasNotifiedFirstDataWritten = false;
@@ -1009,9 +1481,27 @@ public class MultiCameraManager {
         }
         optimizedRecorders.clear();
 
-        // 为每个摄像头创建软编码录制器并准备
+        // 【四画面合成】计算拼接画面尺寸，不可用时为 null（按路单独录制）
+        Size compositeSize = useCompositeRecording ? resolveCompositeSize(keys, targetFrameRate) : null;
+
+        // 为本次录制的摄像头注册管线指标
+        RecordingMetrics.getInstance().register(compositeSize != null
+                ? Collections.singletonList(COMPOSITE_KEY) : keys);
+
+        // 共享渲染中心（未启用时为 null）
+        EglRenderHub sharedRenderHub = compositeSize != null ? null : obtainRenderHub();
+
+        if (compositeSize != null) {
+            if (!prepareCompositeRecorder(keys, compositeSize, timestamp, saveDir, segmentDurationMs,
+                    targetFrameRate, preEventOnly, appConfig)) {
+                return false;
+            }
+        }
+
+        // 为每个摄像头创建软编码录制器并准备（合成模式下已创建合成录制器，跳过）
         boolean prepareSuccess = true;
-        for (String key : keys) {
+        List<String> perCameraKeys = compositeSize != null ? new ArrayList<>() : keys;
+        for (String key : perCameraKeys) {
             SingleCamera camera = cameras.get(key);
             if (camera == null) {
                 continue;
@@ -1064,95 +1554,34 @@ public class MultiCameraManager {
 
             // 设置时间水印（从配置读取，使用方法开头已创建的 appConfig）
             codecRecorder.setWatermarkEnabled(appConfig.isTimestampWatermarkEnabled());
+            codecRecorder.setFragmentedMp4Enabled(appConfig.isFragmentedMp4Enabled());
+            codecRecorder.setSegmentRolloverEnabled(appConfig.isSegmentRolloverEnabled());
+            codecRecorder.setRenderHub(sharedRenderHub);
+            codecRecorder.setMetrics(RecordingMetrics.getInstance().get(key));
+            ParkingMotionMonitor monitor = motionMonitor;
+            if (monitor != null) {
+                codecRecorder.setLumaProbe(monitor.createProbe(key));
+            }
 
             // 设置回调
-            codecRecorder.setCallback(new RecordCallback() {
-                @Override
-                public void onRecordStart(String cameraId) {
-                    AppLog.d(TAG, "Codec recording started for camera " + cameraId);
-                }
+            codecRecorder.setCallback(createCodecRecordCallback());
 
-                @Override
-                public void onRecordStop(String cameraId) {
-                    AppLog.d(TAG, "Codec recording stopped for camera " + cameraId);
-                }
+            // 准备录制
+            String path = new File(saveDir, timestamp + "_" + key + ".mp4").getAbsolutePath();
+            AppLog.d(TAG, "Preparing codec recording for " + key + " with size: " + previewSize.getWidth() + "x" + previewSize.getHeight());
 
-                @Override
-                public void onRecordError(String cameraId, String error) {
-                    AppLog.e(TAG, "Codec recording error for camera " + cameraId + ": " + error);
-                }
+            android.graphics.SurfaceTexture surfaceTexture = preEventOnly
+                    ? codecRecorder.prepareBuffering(path, obtainPreEventBuffer(key, bitrate, keys.size(), appConfig))
+                    : codecRecorder.prepareRecording(path);
+            if (surfaceTexture == null) {
+                AppLog.e(TAG, "Failed to prepare codec recording for " + key);
+                prepareSuccess = false;
+                break;
+            }
 
-                @Override
-                public void onPrepareSegmentSwitch(String cameraId, int currentSegmentIndex) {
-                    AppLog.d(TAG, "Codec prepare segment switch for camera " + cameraId + " (current segment: " + currentSegmentIndex + ")");
-                    // 软编码录制器使用独立的 SurfaceTexture，不需要暂停 Camera CaptureSession
-                    // 但为了一致性，我们记录日志
-                }
-
-                @Override
-                public void onSegmentSwitch(String cameraId, int newSegmentIndex, String completedFilePath) {
-                    AppLog.d(TAG, "Codec segment switch for camera " + cameraId + " to segment " + newSegmentIndex);
-                    
-                    // 如果使用中转写入，将上一个分段的文件传输到最终目录
-                    if (useRelayWrite && finalSaveDir != null && newSegmentIndex > 0 && completedFilePath != null) {
-                        // 传输已完成的文件（由回调提供确切路径，避免传输正在录制的新文件）
-                        scheduleRelayTransfer(completedFilePath);
-                    }
-                    
-                    // 通知分段切换回调（只通知一次，第一个触发的摄像头会通知）
-                    if (segmentSwitchCallback != null && newSegmentIndex > lastNotifiedSegmentIndex) {
-                        lastNotifiedSegmentIndex = newSegmentIndex;
-                        segmentSwitchCallback.onSegmentSwitch(newSegmentIndex);
-                    }
-                }
-
-                @Override
-                public void onCorruptedFilesDeleted(String cameraId, List<String> deletedFiles) {
-                    if (deletedFiles != null && !deletedFiles.isEmpty()) {
-                        AppLog.w(TAG, "Corrupted files deleted for codec camera " + cameraId + ": " + deletedFiles.size() + " file(s)");
-                        for (String file : deletedFiles) {
-                            AppLog.d(TAG, "  Deleted: " + file);
-                        }
-                        // 通知 MainActivity 显示弹窗
-                        if (corruptedFilesCallback != null) {
-                            mainHandler.post(() -> corruptedFilesCallback.onCorruptedFilesDeleted(deletedFiles));
-                        }
-                    }
-                }
-
-                @Override
-                public void onRecordingRebuildRequested(String cameraId, String reason) {
-                    // CodecVideoRecorder 通常不会触发此回调，但为了接口完整性实现
-                    AppLog.e(TAG, "Codec recording rebuild requested for camera " + cameraId + ", reason: " + reason);
-                    // Codec 模式不需要回退，记录日志即可
-                }
-
-                @Override
-                public void onFirstDataWritten(String cameraId) {
-                    AppLog.d(TAG, "Codec first data written for camera " + cameraId);
-                    // 只在第一个摄像头首次写入时通知外部（每次录制只通知一次）
-                    if (!hasNotifiedFirstDataWritten && firstDataWrittenCallback != null) {
-                        hasNotifiedFirstDataWritten = true;
-                        AppLog.d(TAG, "Notifying external: first data written, recording truly started");
-                        mainHandler.post(() -> firstDataWrittenCallback.onFirstDataWritten());
-                    }
-                }
-            });
-
-            // 准备录制
-            String path = new File(saveDir, timestamp + "_" + key + ".mp4").getAbsolutePath();
-            AppLog.d(TAG, "Preparing codec recording for " + key + " with size: " + previewSize.getWidth() + "x" + previewSize.getHeight());
-
-            android.graphics.SurfaceTexture surfaceTexture = codecRecorder.prepareRecording(path);
-            if (surfaceTexture == null) {
-                AppLog.e(TAG, "Failed to prepare codec recording for " + key);
-                prepareSuccess = false;
-                break;
-            }
-
-            // 将 SurfaceTexture 设置给 Camera（通过 Surface）
-            android.view.Surface recordSurface = new android.view.Surface(surfaceTexture);
-            camera.setRecordSurface(recordSurface, true);  // Codec 模式
+            // 将 SurfaceTexture 设置给 Camera（通过 Surface）
+            android.view.Surface recordSurface = new android.view.Surface(surfaceTexture);
+            camera.setRecordSurface(recordSurface, true);  // Codec 模式
 
             // 【优化】启用双目标渲染：设置预览 Surface
             // 这样 EGL 会同时渲染到编码器和 TextureView
@@ -1198,10 +1627,11 @@ public class MultiCameraManager {
             boolean startSuccess = false;
             int successCount = 0;
 
-            for (String key : keys) {
-                CodecVideoRecorder codecRecorder = codecRecorders.get(key);
+            for (Map.Entry<String, CodecVideoRecorder> entry : codecRecorders.entrySet()) {
+                String key = entry.getKey();
+                CodecVideoRecorder codecRecorder = entry.getValue();
                 if (codecRecorder != null) {
-                    if (codecRecorder.startRecording()) {
+                    if (preEventOnly ? codecRecorder.startBuffering() : codecRecorder.startRecording()) {
                         successCount++;
                         startSuccess = true;
                     } else {
@@ -1210,11 +1640,20 @@ public class MultiCameraManager {
                 }
             }
 
-            if (startSuccess) {
+            if (startSuccess && preEventOnly) {
+                preEventBuffering = true;
+                preEventArmFailures = 0;
+                AppLog.d(TAG, successCount + " camera(s) started pre-event buffering");
+            } else if (startSuccess) {
                 lastNotifiedSegmentIndex = -1;  // 重置分段通知计数
                 isRecording = true;
+                RecordingMetrics.getInstance().onRecordingStarted();
+                startRecordingGovernor();
                 AppLog.d(TAG, successCount + " camera(s) started codec recording successfully");
             } else {
+                if (preEventOnly) {
+                    preEventArmFailures++;
+                }
                 AppLog.e(TAG, "Failed to start codec recording on all cameras");
                 isRecording = false;
                 // 清理所有录制器
@@ -1222,6 +1661,9 @@ public class MultiCameraManager {
                     recorder.release();
                 }
                 codecRecorders.clear();
+                if (preEventOnly) {
+                    restorePreviewSessions(keys);
+                }
             }
         };
 
@@ -1243,6 +1685,411 @@ public class MultiCameraManager {
         return true;
     }
 
+    /**
+     * Codec 录制器的回调（各路录制器和四画面合成录制器共用）
+     */
+    private RecordCallback createCodecRecordCallback() {
+        return new RecordCallback() {
+            @Override
+            public void onRecordStart(String cameraId) {
+                AppLog.d(TAG, "Codec recording started for camera " + cameraId);
+            }
+
+            @Override
+            public void onRecordStop(String cameraId) {
+                AppLog.d(TAG, "Codec recording stopped for camera " + cameraId);
+            }
+
+            @Override
+            public void onRecordError(String cameraId, String error) {
+                AppLog.e(TAG, "Codec recording error for camera " + cameraId + ": " + error);
+            }
+
+            @Override
+            public void onPrepareSegmentSwitch(String cameraId, int currentSegmentIndex) {
+                AppLog.d(TAG, "Codec prepare segment switch for camera " + cameraId + " (current segment: " + currentSegmentIndex + ")");
+                // 软编码录制器使用独立的 SurfaceTexture，不需要暂停 Camera CaptureSession
+                // 但为了一致性，我们记录日志
+            }
+
+            @Override
+            public void onSegmentSwitch(String cameraId, int newSegmentIndex, String completedFilePath, long gapMs) {
+                AppLog.d(TAG, "Codec segment gap for camera " + cameraId + ": " + gapMs + "ms");
+                onSegmentSwitch(cameraId, newSegmentIndex, completedFilePath);
+            }
+
+            @Override
+            public void onSegmentSwitch(String cameraId, int newSegmentIndex, String completedFilePath) {
+                AppLog.d(TAG, "Codec segment switch for camera " + cameraId + " to segment " + newSegmentIndex);
+                recordCompletedSegment(completedFilePath);
+                // 新分段已开始，检查存储余量
+                StorageQuotaTracker.getInstance(context).onSegmentStarting();
+                
+                // 如果使用中转写入，将上一个分段的文件传输到最终目录
+                if (useRelayWrite && finalSaveDir != null && newSegmentIndex > 0 && completedFilePath != null) {
+                    // 传输已完成的文件（由回调提供确切路径，避免传输正在录制的新文件）
+                    scheduleRelayTransfer(completedFilePath);
+                }
+                
+                // 通知分段切换回调（只通知一次，第一个触发的摄像头会通知）
+                if (segmentSwitchCallback != null && newSegmentIndex > lastNotifiedSegmentIndex) {
+                    lastNotifiedSegmentIndex = newSegmentIndex;
+                    segmentSwitchCallback.onSegmentSwitch(newSegmentIndex);
+                }
+            }
+
+            @Override
+            public void onCorruptedFilesDeleted(String cameraId, List<String> deletedFiles) {
+                if (deletedFiles != null && !deletedFiles.isEmpty()) {
+                    AppLog.w(TAG, "Corrupted files deleted for codec camera " + cameraId + ": " + deletedFiles.size() + " file(s)");
+                    for (String file : deletedFiles) {
+                        AppLog.d(TAG, "  Deleted: " + file);
+                    }
+                    // 通知 MainActivity 显示弹窗
+                    if (corruptedFilesCallback != null) {
+                        mainHandler.post(() -> corruptedFilesCallback.onCorruptedFilesDeleted(deletedFiles));
+                    }
+                }
+            }
+
+            @Override
+            public void onRecordingRebuildRequested(String cameraId, String reason) {
+                // CodecVideoRecorder 通常不会触发此回调，但为了接口完整性实现
+                AppLog.e(TAG, "Codec recording rebuild requested for camera " + cameraId + ", reason: " + reason);
+                // Codec 模式不需要回退，记录日志即可
+            }
+
+            @Override
+            public void onFirstDataWritten(String cameraId, long firstWriteLatencyMs, long preallocSavedMs) {
+                AppLog.d(TAG, "Codec first data written for camera " + cameraId + " after " + firstWriteLatencyMs + "ms"
+                        + (preallocSavedMs > 0 ? " (preallocated file saved " + preallocSavedMs + "ms)" : ""));
+                markStartup(cameraId, StartupTimeline.FIRST_WRITE);
+                // 只在第一个摄像头首次写入时通知外部（每次录制只通知一次）
+                if (!hasNotifiedFirstDataWritten && firstDataWrittenCallback != null) {
+                    hasNotifiedFirstDataWritten = true;
+                    AppLog.d(TAG, "Notifying external: first data written, recording truly started");
+                    mainHandler.post(() -> firstDataWrittenCallback.onFirstDataWritten());
+                }
+            }
+        };
+    }
+
+    // ==================== 四画面合成 ====================
+
+    /**
+     * 计算四画面合成的画面尺寸：分块取各路预览分辨率的最大值（按 16 对齐），拼成 2x2
+     * @return 摄像头少于 2 路或编码器不支持该分辨率/帧率时返回 null（回退为分路录制）
+     */
+    private Size resolveCompositeSize(List<String> keys, int frameRate) {
+        if (keys.size() < 2) {
+            AppLog.d(TAG, "Composite recording needs at least 2 cameras, using separate files");
+            return null;
+        }
+        int tileWidth = 0;
+        int tileHeight = 0;
+        for (String key : keys) {
+            SingleCamera camera = cameras.get(key);
+            Size previewSize = camera != null ? camera.getPreviewSize() : null;
+            if (previewSize != null) {
+                tileWidth = Math.max(tileWidth, previewSize.getWidth());
+                tileHeight = Math.max(tileHeight, previewSize.getHeight());
+            }
+        }
+        if (tileWidth == 0 || tileHeight == 0) {
+            tileWidth = 1280;
+            tileHeight = 800;
+        }
+        // 每个分块按 16 对齐，保证拼接后的画面宽高都是宏块的整数倍
+        tileWidth = tileWidth / 16 * 16;
+        tileHeight = tileHeight / 16 * 16;
+        int width = tileWidth * 2;
+        int height = tileHeight * 2;
+        if (!CodecVideoRecorder.isEncoderSizeSupported(width, height, frameRate)) {
+            AppLog.w(TAG, "Composite " + width + "x" + height + " @ " + frameRate
+                    + "fps exceeds encoder capabilities, falling back to separate files");
+            return null;
+        }
+        return new Size(width, height);
+    }
+
+    /**
+     * 创建并准备四画面合成录制器，将各路摄像头的录制 Surface 指向各自的分块
+     * 合成模式下摄像头保持双路输出（TextureView 预览 + 分块），预览不经过 EGL
+     * @return 准备失败时返回 false（已清理）
+     */
+    private boolean prepareCompositeRecorder(List<String> keys, Size compositeSize, String timestamp, File saveDir,
+                                             long segmentDurationMs, int frameRate, boolean preEventOnly,
+                                             AppConfig appConfig) {
+        int width = compositeSize.getWidth();
+        int height = compositeSize.getHeight();
+        int bitrate = appConfig.getActualBitrate(width, height, frameRate);
+
+        CodecVideoRecorder compositeRecorder = new CodecVideoRecorder(COMPOSITE_KEY, width, height);
+        compositeRecorder.setCompositeTiles(keys);
+        compositeRecorder.setSegmentDuration(segmentDurationMs);
+        compositeRecorder.setBitRate(bitrate);
+        compositeRecorder.setFrameRate(frameRate);
+        compositeRecorder.setWatermarkEnabled(appConfig.isTimestampWatermarkEnabled());
+        compositeRecorder.setFragmentedMp4Enabled(appConfig.isFragmentedMp4Enabled());
+        compositeRecorder.setSegmentRolloverEnabled(appConfig.isSegmentRolloverEnabled());
+        compositeRecorder.setMetrics(RecordingMetrics.getInstance().get(COMPOSITE_KEY));
+        compositeRecorder.setCallback(createCodecRecordCallback());
+
+        AppLog.d(TAG, "Composite recording params: " + width + "x" + height + " @ " + frameRate + "fps, "
+                + AppConfig.formatBitrate(bitrate) + ", tiles " + keys);
+
+        String path = new File(saveDir, timestamp + "_" + COMPOSITE_KEY + ".mp4").getAbsolutePath();
+        android.graphics.SurfaceTexture surfaceTexture = preEventOnly
+                ? compositeRecorder.prepareBuffering(path, obtainPreEventBuffer(COMPOSITE_KEY, bitrate, 1, appConfig))
+                : compositeRecorder.prepareRecording(path);
+        if (surfaceTexture == null) {
+            AppLog.e(TAG, "Failed to prepare composite recording");
+            compositeRecorder.release();
+            return false;
+        }
+
+        for (String key : keys) {
+            SingleCamera camera = cameras.get(key);
+            android.graphics.SurfaceTexture tileTexture = compositeRecorder.getTileSurfaceTexture(key);
+            if (camera == null || tileTexture == null) {
+                continue;
+            }
+            camera.setRecordSurface(new Surface(tileTexture), true);  // Codec 模式
+            camera.setSingleOutputMode(false);
+        }
+
+        codecRecorders.put(COMPOSITE_KEY, compositeRecorder);
+        return true;
+    }
+
+    // ==================== 事件前缓冲（预录） ====================
+
+    /**
+     * 延迟启动事件前缓冲（多次调用只执行最后一次）
+     */
+    private void schedulePreEventArm() {
+        mainHandler.removeCallbacks(armPreEventRunnable);
+        mainHandler.postDelayed(armPreEventRunnable, PRE_EVENT_ARM_DELAY_MS);
+    }
+
+    /**
+     * 启动事件前缓冲：仅 Codec 录制模式、未录制、摄像头已打开时生效
+     */
+    private void armPreEventBuffer() {
+        if (!useCodecRecording || isRecording || preEventBuffering || pendingRecordingStart != null
+                || isRebuildingRecording || standby || preEventArmFailures >= MAX_PRE_EVENT_ARM_FAILURES) {
+            return;
+        }
+        if (!new AppConfig(context).isPreEventEnabled() || !hasConnectedCameras()) {
+            return;
+        }
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        if (!startCodecRecording(timestamp, null, true)) {
+            preEventArmFailures++;
+        }
+    }
+
+    /**
+     * 停止事件前缓冲并释放录制器
+     * @param restoreSessions 是否恢复普通预览会话（关闭摄像头时不需要）
+     */
+    private void disarmPreEventBuffer(boolean restoreSessions) {
+        mainHandler.removeCallbacks(armPreEventRunnable);
+        if (!preEventBuffering) {
+            return;
+        }
+        preEventBuffering = false;
+        for (CodecVideoRecorder recorder : codecRecorders.values()) {
+            recorder.release();
+        }
+        codecRecorders.clear();
+        restorePreviewSessions(getActiveCameraKeys(), restoreSessions);
+        AppLog.d(TAG, "Pre-event buffering disarmed");
+    }
+
+    private void restorePreviewSessions(List<String> keys) {
+        restorePreviewSessions(keys, true);
+    }
+
+    /**
+     * 移除录制 Surface，恢复普通预览
+     * @param recreate 是否立即重建会话（摄像头即将关闭时不需要）
+     */
+    private void restorePreviewSessions(List<String> keys, boolean recreate) {
+        for (String key : keys) {
+            SingleCamera camera = cameras.get(key);
+            if (camera != null) {
+                camera.setSingleOutputMode(false);
+                camera.clearRecordSurface();
+                if (recreate) {
+                    camera.recreateSession();
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取（或按当前预算重新分配）摄像头的缓冲区
+     * 总预算按参与缓冲的摄像头数平均分配，同一摄像头在预算不变时复用同一块内存
+     */
+    private PreEventBuffer obtainPreEventBuffer(String key, int bitrate, int cameraCount, AppConfig appConfig) {
+        long windowMs = appConfig.getPreEventSeconds() * 1000L;
+        long budgetBytes = appConfig.getPreEventBudgetMb() * 1024L * 1024L;
+        int capacity = PreEventBuffer.allocate(budgetBytes, cameraCount, bitrate, windowMs);
+        PreEventBuffer buffer = preEventBuffers.get(key);
+        if (buffer == null || buffer.getCapacity() != capacity || buffer.getWindowMs() != windowMs) {
+            buffer = new PreEventBuffer(capacity, windowMs);
+            preEventBuffers.put(key, buffer);
+            AppLog.d(TAG, "Pre-event buffer for " + key + ": " + (capacity / 1024) + "KB, " + (windowMs / 1000) + "s"
+                    + " (budget " + appConfig.getPreEventBudgetMb() + "MB / " + cameraCount + " cameras)");
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * 从事件前缓冲转为录制：每路先写入缓冲中的最近 N 秒，再继续实时录制
+     * 全部失败时回退为普通 Codec 录制
+     */
+    private boolean startRecordingFromPreEvent(String timestamp, Set<String> enabledCameras) {
+        AppLog.d(TAG, "Starting recording from pre-event buffer with timestamp: " + timestamp);
+        mainHandler.removeCallbacks(armPreEventRunnable);
+        preEventBuffering = false;
+
+        // 重置首次写入通知标志（每次录制只通知一次）
+        hasNotifiedFirstDataWritten = false;
+
+        AppConfig appConfig = new AppConfig(context);
+        useRelayWrite = appConfig.shouldUseRelayWrite();
+        File saveDir = StorageHelper.getRecordingDir(context);
+        if (!saveDir.exists()) {
+            saveDir.mkdirs();
+        }
+        if (useRelayWrite) {
+            finalSaveDir = StorageHelper.getFinalVideoDir(context);
+            if (!finalSaveDir.exists()) {
+                finalSaveDir.mkdirs();
+            }
+        } else {
+            finalSaveDir = null;
+        }
+
+        long segmentDurationMs = (overrideSegmentDurationMs > 0)
+                ? overrideSegmentDurationMs
+                : appConfig.getSegmentDurationMs();
+
+        // 清空预录期间的编码统计，缓冲帧写入新文件时计入本次录制
+        RecordingMetrics.getInstance().onRecordingStarted();
+
+        int started = 0;
+        for (Map.Entry<String, CodecVideoRecorder> entry : codecRecorders.entrySet()) {
+            String key = entry.getKey();
+            CodecVideoRecorder recorder = entry.getValue();
+            if (enabledCameras != null && !enabledCameras.isEmpty() && !enabledCameras.contains(key)
+                    && !COMPOSITE_KEY.equals(key)) {
+                // 未参与本次录制的摄像头停止缓冲，录制结束时统一释放
+                recorder.stopBuffering();
+                continue;
+            }
+            recorder.setSegmentDuration(segmentDurationMs);
+            String path = new File(saveDir, timestamp + "_" + key + ".mp4").getAbsolutePath();
+            if (recorder.startRecordingWithPreEvent(path)) {
+                started++;
+            } else {
+                recorder.stopBuffering();
+                AppLog.e(TAG, "Failed to start recording from pre-event buffer for " + key);
+            }
+        }
+
+        if (started == 0) {
+            AppLog.w(TAG, "Pre-event promotion failed, falling back to normal codec recording");
+            RecordingMetrics.getInstance().onRecordingStopped();
+            return startCodecRecording(timestamp, enabledCameras, false);
+        }
+
+        lastNotifiedSegmentIndex = -1;
+        isRecording = true;
+        startRecordingGovernor();
+        AppLog.d(TAG, started + " camera(s) started recording from pre-event buffer");
+        return true;
+    }
+
+    /**
+     * 是否正在进行事件前缓冲
+     */
+    public boolean isPreEventBuffering() {
+        return preEventBuffering;
+    }
+
+    /**
+     * 获取各摄像头事件前缓冲的状态（每路的帧数、时长、占用/预算）
+     */
+    public String getPreEventStats() {
+        if (preEventBuffers.isEmpty()) {
+            return "disabled";
+        }
+        StringBuilder sb = new StringBuilder();
+        long totalCapacity = 0;
+        for (Map.Entry<String, CodecVideoRecorder> entry : codecRecorders.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(entry.getKey()).append(": ").append(entry.getValue().getPreEventStats());
+        }
+        for (PreEventBuffer buffer : preEventBuffers.values()) {
+            totalCapacity += buffer.getCapacity();
+        }
+        sb.append(" (total ").append(totalCapacity / (1024 * 1024)).append("MB)");
+        return sb.toString();
+    }
+
+    // ==================== 自适应码率 ====================
+
+    /**
+     * 启动码率调节（Codec 录制开始后调用）
+     */
+    private void startRecordingGovernor() {
+        if (!new AppConfig(context).isAdaptiveBitrateEnabled()) {
+            return;
+        }
+        if (recordingGovernor == null) {
+            recordingGovernor = new RecordingGovernor(context, mainHandler);
+        }
+        recordingGovernor.start(codecRecorders);
+    }
+
+    private void stopRecordingGovernor() {
+        if (recordingGovernor != null) {
+            recordingGovernor.stop();
+        }
+    }
+
+    /**
+     * 获取各摄像头的码率调节状态（等级、当前码率、输出帧率、写入队列深度）
+     */
+    public String getRecordingGovernorStats() {
+        return recordingGovernor != null ? recordingGovernor.getStats() : "off";
+    }
+
+    /**
+     * MediaRecorder 模式各路的分段切换耗时（还没有切换过时返回 null）
+     */
+    public String getSegmentSwitchStats() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, VideoRecorder> entry : recorders.entrySet()) {
+            LatencyHistogram latency = entry.getValue().getSegmentSwitchLatency();
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append(entry.getKey()).append(entry.getValue().hasPersistentSurface() ? "（持久 Surface）" : "（重建会话）")
+                    .append(": ").append(latency.format());
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
     /**
      * 【优化方案】使用高性能录制器准备录制
      */
@@ -1263,6 +2110,7 @@ public class MultiCameraManager {
         recorder.setBitRate(bitrate);
         recorder.setFrameRate(frameRate);
         recorder.setWatermarkEnabled(appConfig.isTimestampWatermarkEnabled());
+        recorder.setFragmentedMp4Enabled(appConfig.isFragmentedMp4Enabled());
 
         // 设置预览 Surface（启用双目标渲染）
         Surface previewSurface = camera.getSurface();
@@ -1296,6 +2144,9 @@ public class MultiCameraManager {
             @Override
             public void onSegmentSwitch(String cameraId, int newSegmentIndex, String completedFilePath) {
                 AppLog.d(TAG, "Optimized segment switch for " + cameraId + " to segment " + newSegmentIndex);
+                recordCompletedSegment(completedFilePath);
+                // 新分段已开始，检查存储余量
+                StorageQuotaTracker.getInstance(context).onSegmentStarting();
                 
                 if (useRelayWrite && finalSaveDir != null && newSegmentIndex > 0 && completedFilePath != null) {
                     scheduleRelayTransfer(completedFilePath);
@@ -1320,8 +2171,10 @@ public class MultiCameraManager {
             }
 
             @Override
-            public void onFirstDataWritten(String cameraId) {
-                AppLog.d(TAG, "Optimized first data written for " + cameraId);
+            public void onFirstDataWritten(String cameraId, long firstWriteLatencyMs, long preallocSavedMs) {
+                AppLog.d(TAG, "Optimized first data written for " + cameraId + " after " + firstWriteLatencyMs + "ms"
+                        + (preallocSavedMs > 0 ? " (preallocated file saved " + preallocSavedMs + "ms)" : ""));
+                markStartup(cameraId, StartupTimeline.FIRST_WRITE);
                 if (!hasNotifiedFirstDataWritten && firstDataWrittenCallback != null) {
                     hasNotifiedFirstDataWritten = true;
                     mainHandler.post(() -> firstDataWrittenCallback.onFirstDataWritten());
@@ -1367,6 +2220,8 @@ public class MultiCameraManager {
         codecRecorder.setBitRate(bitrate);
         codecRecorder.setFrameRate(frameRate);
         codecRecorder.setWatermarkEnabled(appConfig.isTimestampWatermarkEnabled());
+        codecRecorder.setFragmentedMp4Enabled(appConfig.isFragmentedMp4Enabled());
+        codecRecorder.setSegmentRolloverEnabled(appConfig.isSegmentRolloverEnabled());
 
         // 设置回调
         codecRecorder.setCallback(new RecordCallback() {
@@ -1393,6 +2248,9 @@ public class MultiCameraManager {
             @Override
             public void onSegmentSwitch(String cameraId, int newSegmentIndex, String completedFilePath) {
                 AppLog.d(TAG, "Legacy segment switch for " + cameraId + " to segment " + newSegmentIndex);
+                recordCompletedSegment(completedFilePath);
+                // 新分段已开始，检查存储余量
+                StorageQuotaTracker.getInstance(context).onSegmentStarting();
                 
                 if (useRelayWrite && finalSaveDir != null && newSegmentIndex > 0 && completedFilePath != null) {
                     scheduleRelayTransfer(completedFilePath);
@@ -1417,8 +2275,10 @@ public class MultiCameraManager {
             }
 
             @Override
-            public void onFirstDataWritten(String cameraId) {
-                AppLog.d(TAG, "Legacy first data written for " + cameraId);
+            public void onFirstDataWritten(String cameraId, long firstWriteLatencyMs, long preallocSavedMs) {
+                AppLog.d(TAG, "Legacy first data written for " + cameraId + " after " + firstWriteLatencyMs + "ms"
+                        + (preallocSavedMs > 0 ? " (preallocated file saved " + preallocSavedMs + "ms)" : ""));
+                markStartup(cameraId, StartupTimeline.FIRST_WRITE);
                 if (!hasNotifiedFirstDataWritten && firstDataWrittenCallback != null) {
                     hasNotifiedFirstDataWritten = true;
                     mainHandler.post(() -> firstDataWrittenCallback.onFirstDataWritten());
@@ -1490,6 +2350,9 @@ public class MultiCameraManager {
             sessionTimeoutRunnable = null;
         }
 
+        stopRecordingGovernor();
+        RecordingMetrics.getInstance().onRecordingStopped();
+
         List<String> keys = getActiveCameraKeys();
 
         if (!isRecording) {
@@ -1500,21 +2363,39 @@ public class MultiCameraManager {
                 if (recorder != null) {
                     recorder.release();
                 }
-                CodecVideoRecorder codecRecorder = codecRecorders.get(key);
-                if (codecRecorder != null) {
-                    codecRecorder.release();
-                }
+            }
+            // 按登记的录制器释放（四画面合成录制器不按摄像头位置登记）
+            for (CodecVideoRecorder codecRecorder : codecRecorders.values()) {
+                codecRecorder.release();
             }
             codecRecorders.clear();
+            // 【预录】缓冲用的录制器已释放，恢复普通预览（会话就绪后会重新启动缓冲）
+            if (preEventBuffering) {
+                preEventBuffering = false;
+                restorePreviewSessions(keys);
+            }
             return;
         }
 
+        // 记录各录制器当前分段的路径（停止后写入录制索引）
+        List<String> lastSegmentPaths = new ArrayList<>();
+        for (CodecVideoRecorder codecRecorder : codecRecorders.values()) {
+            if (codecRecorder.isRecording()) {
+                lastSegmentPaths.add(codecRecorder.getCurrentFilePath());
+            }
+        }
+        for (String key : keys) {
+            VideoRecorder recorder = recorders.get(key);
+            if (recorder != null && recorder.isRecording()) {
+                lastSegmentPaths.add(recorder.getCurrentFilePath());
+            }
+        }
+
         // 停止软编码录制
         if (!codecRecorders.isEmpty()) {
             AppLog.d(TAG, "Stopping codec recorders...");
-            for (String key : keys) {
-                CodecVideoRecorder codecRecorder = codecRecorders.get(key);
-                if (codecRecorder != null && codecRecorder.isRecording()) {
+            for (CodecVideoRecorder codecRecorder : codecRecorders.values()) {
+                if (codecRecorder.isRecording()) {
                     codecRecorder.stopRecording();
                 }
             }
@@ -1542,6 +2423,11 @@ public class MultiCameraManager {
             }
         }
 
+        // 最后一个分段已完成，写入录制索引
+        for (String path : lastSegmentPaths) {
+            recordCompletedSegment(path);
+        }
+
         // 清理摄像头会话
         for (String key : keys) {
             SingleCamera camera = cameras.get(key);
@@ -1656,7 +2542,7 @@ public class MultiCameraManager {
                         
                         AppLog.d(TAG, "Restarting recording with Codec mode, new timestamp: " + newTimestamp);
                         useCodecRecording = true;  // 切换到 Codec 模式
-                        startCodecRecording(newTimestamp, savedEnabledCameras);
+                        startCodecRecording(newTimestamp, savedEnabledCameras, false);
                         
                         // 通知外部时间戳已更新（用于远程录制查找文件）
                         if (timestampUpdateCallback != null) {
@@ -1742,6 +2628,18 @@ public class MultiCameraManager {
         isRecording = false;
     }
     
+    /**
+     * 将已完成的分段记录到录制索引
+     * 中转写入模式下文件还在临时目录，由 FileTransferManager 在传输完成后记录
+     * @param completedFilePath 已完成录制的文件完整路径
+     */
+    private void recordCompletedSegment(String completedFilePath) {
+        if (completedFilePath == null || useRelayWrite) {
+            return;
+        }
+        RecordingCatalog.getInstance(context).onFileAdded(completedFilePath);
+    }
+
     /**
      * 调度将指定的已完成文件传输到最终目录
      * @param completedFilePath 已完成录制的文件完整路径
@@ -1879,6 +2777,12 @@ public class MultiCameraManager {
                 expectedSessionCount = 0;
             }
             
+            // 停止连拍/延时拍摄（已抓取的画面会写完）
+            if (captureScheduler != null) {
+                captureScheduler.stop();
+            }
+            motionMonitor = null;
+
             // 4. 停止录制
             try {
                 stopRecording();
@@ -1910,6 +2814,12 @@ public class MultiCameraManager {
                     AppLog.e(TAG, "Error releasing CodecVideoRecorder", e);
                 }
             }
+
+            // 释放共享渲染中心（必须在所有录制器释放之后）
+            if (renderHub != null) {
+                renderHub.release();
+                renderHub = null;
+            }
             
         } catch (Exception e) {
             AppLog.e(TAG, "Unexpected error during release", e);
@@ -1951,6 +2861,11 @@ public class MultiCameraManager {
      * @param timestamp 统一的时间戳，用于所有摄像头的文件命名
      */
     public void takePicture(String timestamp) {
+        if (standby) {
+            // 待机时预览是最小尺寸，等会话恢复后再拍
+            exitStandby(() -> takePicture(timestamp));
+            return;
+        }
         List<String> keys = getActiveCameraKeys();
         if (keys.isEmpty()) {
             AppLog.e(TAG, "No active cameras for taking picture");
@@ -1959,6 +2874,11 @@ public class MultiCameraManager {
 
         AppLog.d(TAG, "Taking picture with " + keys.size() + " camera(s) using timestamp: " + timestamp);
 
+        if (useHardwarePhotoCapture) {
+            takePictureParallel(keys, timestamp);
+            return;
+        }
+
         // 快速拍照，每个摄像头间隔300ms触发拍照，但保存文件时按顺序延迟1秒
         for (int i = 0; i < keys.size(); i++) {
             final String key = keys.get(i);
@@ -1977,6 +2897,40 @@ public class MultiCameraManager {
         }
     }
 
+    /**
+     * 硬件拍照：所有摄像头同时出图，写盘线程统一写入，记录端到端延迟
+     */
+    private void takePictureParallel(List<String> keys, String timestamp) {
+        PhotoCaptureBatch batch = new PhotoCaptureBatch(timestamp, keys, System.nanoTime(), completed -> {
+            snapshotLatency.recordNanos(completed.getElapsedNs());
+            AppLog.i(TAG, completed.formatSummary() + ", p50=" + snapshotLatency.getPercentileUs(50) / 1000
+                    + "ms, p99=" + snapshotLatency.getPercentileUs(99) / 1000 + "ms");
+        });
+        for (String key : keys) {
+            SingleCamera camera = cameras.get(key);
+            if (camera != null && camera.isConnected()) {
+                camera.takePicture(timestamp, batch);
+            } else {
+                AppLog.w(TAG, "Camera " + key + " not available for taking picture");
+                batch.onCameraDone(key, false, System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * 当前已连接的摄像头（按拍照时使用的摄像头集合，同一物理摄像头只取一次）
+     */
+    Map<String, SingleCamera> getConnectedCameras() {
+        Map<String, SingleCamera> connected = new LinkedHashMap<>();
+        for (String key : getActiveCameraKeys()) {
+            SingleCamera camera = cameras.get(key);
+            if (camera != null && camera.isConnected()) {
+                connected.put(key, camera);
+            }
+        }
+        return connected;
+    }
+
     private List<String> getActiveCameraKeys() {
         if (!activeCameraKeys.isEmpty()) {
             return new ArrayList<>(activeCameraKeys);
@@ -2030,6 +2984,7 @@ public class MultiCameraManager {
      */
     public void pauseAllCamerasByLifecycle() {
         AppLog.d(TAG, "Pausing all cameras by lifecycle");
+        disarmPreEventBuffer(false);
         for (SingleCamera camera : cameras.values()) {
             camera.pauseByLifecycle();
         }
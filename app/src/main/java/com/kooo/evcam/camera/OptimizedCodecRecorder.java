@@ -4,7 +4,7 @@ import android.graphics.SurfaceTexture;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
-import android.media.MediaMuxer;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.view.Surface;
@@ -16,8 +16,6 @@ import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -26,7 +24,7 @@ import java.util.concurrent.atomic.AtomicReference;
  * 
  * 设计原则：
  * 1. 双线程架构（渲染线程 + 写入线程）
- * 2. 生产者-消费者模式（BlockingQueue）
+ * 2. 生产者-消费者模式（SPSC 环形缓冲区，见 EncodedFrameRing）
  * 3. 状态机管理（避免混乱的状态同步）
  * 4. 预分配资源（避免 GC）
  * 
@@ -46,7 +44,10 @@ public class OptimizedCodecRecorder {
     
     private static final String MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC;
     private static final int I_FRAME_INTERVAL = 1;
-    private static final int QUEUE_SIZE = 10;  // 编码数据队列大小
+    private static final int RING_MAX_FRAMES = 128;  // 环形缓冲区最大排队帧数
+    private static final int RING_BUFFER_SECONDS = 2;  // 环形缓冲区按码率可容纳的秒数
+    private static final int RING_MIN_BYTES = 4 * 1024 * 1024;  // 环形缓冲区最小容量
+    private static final long WRITER_POLL_TIMEOUT_NS = TimeUnit.MILLISECONDS.toNanos(10);
     
     private int frameRate = 30;
     private int bitRate = 3_000_000;
@@ -78,10 +79,11 @@ public class OptimizedCodecRecorder {
 
     // ==================== Muxer ====================
     
-    private MediaMuxer muxer;
+    private RecordMuxer muxer;
     private int videoTrackIndex = -1;
     private volatile boolean muxerStarted = false;
     private MediaFormat savedOutputFormat = null;  // 保存编码器输出格式，用于分段切换
+    private SegmentFilePool.Lease currentLease;  // 当前分段使用的预分配文件
 
     // ==================== EGL 渲染器 ====================
     
@@ -96,27 +98,13 @@ public class OptimizedCodecRecorder {
     private HandlerThread writerThread;
     private Handler writerHandler;
 
-    // ==================== 编码数据队列 ====================
+    // ==================== 编码数据环形缓冲区 ====================
     
-    private static class EncodedFrame {
-        ByteBuffer data;
-        MediaCodec.BufferInfo info;
-        int bufferIndex;
-        
-        EncodedFrame(int capacity) {
-            data = ByteBuffer.allocateDirect(capacity);
-            info = new MediaCodec.BufferInfo();
-        }
-        
-        void reset() {
-            data.clear();
-            info.set(0, 0, 0, 0);
-            bufferIndex = -1;
-        }
-    }
-    
-    private BlockingQueue<EncodedFrame> encodedFrameQueue;
-    private BlockingQueue<EncodedFrame> framePool;  // 帧对象池
+    // 编码线程写入、写入线程读取；写入线程直接从环内视图写 Muxer，不再二次拷贝
+    private EncodedFrameRing frameRing;
+    private boolean syncFrameRequested = false;  // 丢弃 GOP 后已请求关键帧（仅编码线程）
+    private EncodedFrameRing.Frame writerFrame;
+    private final MediaCodec.BufferInfo writerInfo = new MediaCodec.BufferInfo();
 
     // ==================== 录制参数 ====================
     
@@ -139,6 +127,9 @@ public class OptimizedCodecRecorder {
     
     private RecordCallback callback;
     private boolean watermarkEnabled = false;
+
+    // 是否使用分片 MP4 封装（断电时已写入的片段仍可播放）
+    private boolean fragmentedMp4Enabled = false;
     private Surface previewSurface;  // 预览 Surface
 
     // ==================== 构造函数 ====================
@@ -147,16 +138,6 @@ public class OptimizedCodecRecorder {
         this.cameraId = cameraId;
         this.width = width;
         this.height = height;
-        
-        // 初始化帧队列和对象池
-        encodedFrameQueue = new ArrayBlockingQueue<>(QUEUE_SIZE);
-        framePool = new ArrayBlockingQueue<>(QUEUE_SIZE);
-        
-        // 预分配帧对象（避免运行时 GC）
-        int frameSize = width * height * 3 / 2;  // 估算最大帧大小
-        for (int i = 0; i < QUEUE_SIZE; i++) {
-            framePool.offer(new EncodedFrame(frameSize));
-        }
     }
 
     // ==================== 配置方法 ====================
@@ -184,6 +165,10 @@ public class OptimizedCodecRecorder {
         }
     }
 
+    public void setFragmentedMp4Enabled(boolean enabled) {
+        this.fragmentedMp4Enabled = enabled;
+    }
+
     /**
      * 设置预览 Surface（启用双目标渲染）
      */
@@ -211,6 +196,15 @@ public class OptimizedCodecRecorder {
             this.recordedFrameCount = 0;
             this.firstFrameTimestampNs = -1;
 
+            // 预分配环形缓冲区（容量取决于码率，复用上次足够大的缓冲区）
+            int ringBytes = computeRingCapacity();
+            if (frameRing == null || frameRing.getCapacity() < ringBytes) {
+                frameRing = new EncodedFrameRing(ringBytes, RING_MAX_FRAMES);
+                writerFrame = frameRing.newFrame();
+            } else {
+                frameRing.clear();
+            }
+
             // 解析路径
             File file = new File(filePath);
             this.saveDirectory = file.getParent();
@@ -354,6 +348,8 @@ public class OptimizedCodecRecorder {
 
         // 停止 Muxer
         stopMuxer();
+        // 删除未取用的预分配文件（不计入存储配额）
+        SegmentFilePool.getInstance().release(saveDirectory, cameraPosition);
 
         state.set(State.READY);
 
@@ -361,7 +357,8 @@ public class OptimizedCodecRecorder {
             callback.onRecordStop(cameraId);
         }
 
-        AppLog.d(TAG, "Camera " + cameraId + " Recording stopped, frames: " + recordedFrameCount);
+        AppLog.d(TAG, "Camera " + cameraId + " Recording stopped, frames: " + recordedFrameCount
+                + ", ring: " + frameRing.getStats());
     }
 
     // ==================== 帧处理 ====================
@@ -464,49 +461,37 @@ public class OptimizedCodecRecorder {
         if (bufferInfo.size > 0 && muxerStarted) {
             // 计算 PTS
             long ptsUs = (System.nanoTime() - segmentStartTimeNs) / 1000;
-            bufferInfo.presentationTimeUs = ptsUs;
 
-            // 尝试获取帧对象
-            EncodedFrame frame = framePool.poll();
-            
-            // 检查帧大小是否超过预分配缓冲区
-            boolean frameTooLarge = (frame != null && bufferInfo.size > frame.data.capacity());
-            
-            if (frame == null || frameTooLarge) {
-                // 队列满了或帧太大，直接写入（降级处理）
-                if (frameTooLarge && frame != null) {
-                    framePool.offer(frame);  // 归还帧对象
-                }
-                writeSampleDataDirect(encodedData, bufferInfo);
-            } else {
-                // 复制数据到帧对象
-                frame.reset();
-                encodedData.position(bufferInfo.offset);
-                encodedData.limit(bufferInfo.offset + bufferInfo.size);
-                frame.data.put(encodedData);
-                frame.data.flip();
-                frame.info.set(0, bufferInfo.size, bufferInfo.presentationTimeUs, bufferInfo.flags);
-                frame.bufferIndex = outputIndex;
-
-                // 放入队列（非阻塞）
-                if (!encodedFrameQueue.offer(frame)) {
-                    // 队列满了，回收帧对象并直接写入
-                    framePool.offer(frame);
-                    writeSampleDataDirect(encodedData, bufferInfo);
-                }
+            // 拷贝到环形缓冲区后立即归还编码器缓冲区；空间不足时普通帧丢弃到下一个关键帧，
+            // 关键帧在时间上限内等待写入线程腾出空间（不在编码线程上直接写 Muxer）
+            encodedData.position(bufferInfo.offset);
+            encodedData.limit(bufferInfo.offset + bufferInfo.size);
+            boolean keyFrame = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+            if (!frameRing.offer(encodedData, ptsUs, bufferInfo.flags, keyFrame) && keyFrame) {
+                AppLog.w(TAG, "Camera " + cameraId + " Key frame dropped, writer stalled: " + frameRing.getStats());
+            }
+            if (!frameRing.needsKeyFrame()) {
+                syncFrameRequested = false;
+            } else if (!syncFrameRequested && frameRing.getUsedBytes() <= frameRing.getCapacity() / 2) {
+                // GOP 已丢弃：写入线程赶上后立即请求关键帧，不等下一个关键帧间隔
+                syncFrameRequested = true;
+                requestSyncFrame();
             }
         }
 
         encoder.releaseOutputBuffer(outputIndex, false);
     }
 
-    private void writeSampleDataDirect(ByteBuffer data, MediaCodec.BufferInfo info) {
+    /**
+     * 请求编码器尽快输出关键帧
+     */
+    private void requestSyncFrame() {
         try {
-            data.position(info.offset);
-            data.limit(info.offset + info.size);
-            muxer.writeSampleData(videoTrackIndex, data, info);
-        } catch (Exception e) {
-            AppLog.e(TAG, "Camera " + cameraId + " Error writing sample data", e);
+            Bundle params = new Bundle();
+            params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+            encoder.setParameters(params);
+        } catch (IllegalStateException e) {
+            AppLog.w(TAG, "Camera " + cameraId + " Failed to request sync frame: " + e.getMessage());
         }
     }
 
@@ -516,31 +501,27 @@ public class OptimizedCodecRecorder {
     
     private void startWriterLoop() {
         writerRunning = true;
+        frameRing.open();
         writerHandler.post(this::writerLoop);
     }
 
     private void writerLoop() {
-        while (writerRunning || !encodedFrameQueue.isEmpty()) {
-            try {
-                EncodedFrame frame = encodedFrameQueue.poll(10, TimeUnit.MILLISECONDS);
-                if (frame != null) {
-                    writeFrame(frame);
-                    framePool.offer(frame);  // 回收帧对象
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+        while (writerRunning || !frameRing.isEmpty()) {
+            if (frameRing.poll(writerFrame, WRITER_POLL_TIMEOUT_NS)) {
+                writeFrame(writerFrame);
+                frameRing.release();
             }
         }
     }
 
-    private void writeFrame(EncodedFrame frame) {
+    private void writeFrame(EncodedFrameRing.Frame frame) {
         if (!muxerStarted || muxer == null) {
             return;
         }
 
         try {
-            muxer.writeSampleData(videoTrackIndex, frame.data, frame.info);
+            writerInfo.set(frame.offset, frame.size, frame.ptsUs, frame.flags);
+            muxer.writeSampleData(videoTrackIndex, frame.data, writerInfo);
         } catch (Exception e) {
             AppLog.e(TAG, "Camera " + cameraId + " Error writing frame", e);
         }
@@ -558,7 +539,7 @@ public class OptimizedCodecRecorder {
     }
 
     private void switchToNextSegment() {
-        AppLog.d(TAG, "Camera " + cameraId + " Switching to next segment");
+        AppLog.d(TAG, "Camera " + cameraId + " Switching to next segment, ring: " + frameRing.getStats());
 
         try {
             // 保存旧分段路径（用于回调）
@@ -591,6 +572,12 @@ public class OptimizedCodecRecorder {
         }
     }
 
+    private int computeRingCapacity() {
+        long byBitrate = (long) bitRate / 8 * RING_BUFFER_SECONDS;
+        long byFrameSize = (long) width * height * 3 / 2 * 2;  // 至少容纳两个未压缩大小的关键帧
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(RING_MIN_BYTES, Math.max(byBitrate, byFrameSize)));
+    }
+
     private String generateSegmentPath() {
         String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
         return new File(saveDirectory, timestamp + "_" + cameraPosition + ".mp4").getAbsolutePath();
@@ -630,10 +617,26 @@ public class OptimizedCodecRecorder {
     }
 
     private void createMuxer(String filePath) throws Exception {
-        muxer = new MediaMuxer(filePath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        // 优先使用预分配的分段文件，没有就绪的文件时按路径创建
+        SegmentFilePool.Lease lease = SegmentFilePool.getInstance().acquire(filePath, cameraPosition,
+                SegmentFilePool.estimateSegmentBytes(bitRate, segmentDurationMs));
+        if (lease != null) {
+            try {
+                muxer = RecordMuxer.create(filePath, lease, fragmentedMp4Enabled);
+                currentLease = lease;
+            } catch (Exception e) {
+                AppLog.w(TAG, "Camera " + cameraId + " Failed to use preallocated file: " + e.getMessage());
+                lease.close();
+                lease = null;
+            }
+        }
+        if (lease == null) {
+            muxer = RecordMuxer.create(filePath, null, fragmentedMp4Enabled);
+        }
         videoTrackIndex = -1;
         muxerStarted = false;
-        AppLog.d(TAG, "Camera " + cameraId + " Muxer created: " + filePath);
+        AppLog.d(TAG, "Camera " + cameraId + " Muxer created: " + filePath + (lease != null ? " (preallocated)" : "")
+                + (fragmentedMp4Enabled ? " (fragmented)" : ""));
         
         // 如果已有保存的格式（分段切换场景），直接初始化
         if (savedOutputFormat != null) {
@@ -647,6 +650,10 @@ public class OptimizedCodecRecorder {
      */
     private void stopMuxer() {
         writerRunning = false;
+        // 写入线程即将退出，不再让编码线程等待空间
+        if (frameRing != null) {
+            frameRing.close();
+        }
         
         // 等待写入线程处理完剩余数据
         try {
@@ -672,6 +679,11 @@ public class OptimizedCodecRecorder {
             muxer = null;
             muxerStarted = false;
         }
+        // 截断预分配文件到实际写入的长度
+        if (currentLease != null) {
+            currentLease.close();
+            currentLease = null;
+        }
     }
 
     // ==================== 公共方法 ====================
@@ -697,6 +709,13 @@ public class OptimizedCodecRecorder {
         return currentFilePath;
     }
 
+    /**
+     * 获取编码帧环形缓冲区统计（溢出、水位、写入延迟）
+     */
+    public String getRingStats() {
+        return frameRing != null ? frameRing.getStats() : "n/a";
+    }
+
     // ==================== 资源释放 ====================
     
     public void release() {
@@ -764,9 +783,10 @@ public class OptimizedCodecRecorder {
             writerHandler = null;
         }
 
-        // 清理队列
-        encodedFrameQueue.clear();
-        framePool.clear();
+        // 清理环形缓冲区（保留内存供下次录制复用）
+        if (frameRing != null) {
+            frameRing.clear();
+        }
 
         AppLog.d(TAG, "Camera " + cameraId + " OptimizedCodecRecorder released");
     }
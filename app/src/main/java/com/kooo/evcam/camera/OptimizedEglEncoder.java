@@ -1,11 +1,6 @@
 package com.kooo.evcam.camera;
 
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.SurfaceTexture;
-import android.graphics.Typeface;
 import android.opengl.EGL14;
 import android.opengl.EGLConfig;
 import android.opengl.EGLContext;
@@ -14,7 +9,6 @@ import android.opengl.EGLExt;
 import android.opengl.EGLSurface;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
 import android.opengl.Matrix;
 import android.view.Surface;
 
@@ -23,9 +17,6 @@ import com.kooo.evcam.AppLog;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
 
 /**
  * 【最优方案】高性能 EGL 编码器
@@ -69,15 +60,6 @@ public class OptimizedEglEncoder {
             "    gl_FragColor = texture2D(uTexture, vTexCoord);\n" +
             "}\n";
 
-    // 2D 纹理片段着色器（用于水印）
-    private static final String FRAGMENT_SHADER_2D =
-            "precision mediump float;\n" +
-            "uniform sampler2D uTexture;\n" +
-            "varying vec2 vTexCoord;\n" +
-            "void main() {\n" +
-            "    gl_FragColor = texture2D(uTexture, vTexCoord);\n" +
-            "}\n";
-
     // ==================== 顶点数据（预分配）====================
     
     // 全屏四边形顶点
@@ -96,12 +78,6 @@ public class OptimizedEglEncoder {
             1.0f, 1.0f
     };
 
-    // 水印位置（左上角，预计算）
-    private static final float WATERMARK_X = -0.95f;
-    private static final float WATERMARK_Y = 0.85f;
-    private static final float WATERMARK_WIDTH = 0.5f;
-    private static final float WATERMARK_HEIGHT = 0.08f;
-
     // ==================== 成员变量 ====================
     
     private final String cameraId;
@@ -122,9 +98,7 @@ public class OptimizedEglEncoder {
 
     // OpenGL 资源
     private int oesProgram;
-    private int watermarkProgram;
     private int oesTextureId;
-    private int watermarkTextureId;
 
     // Shader 句柄
     private int oesMvpMatrixHandle;
@@ -132,17 +106,10 @@ public class OptimizedEglEncoder {
     private int oesTextureHandle;
     private int oesPositionHandle;
     private int oesTexCoordHandle;
-    
-    private int wmMvpMatrixHandle;
-    private int wmTextureHandle;
-    private int wmPositionHandle;
-    private int wmTexCoordHandle;
 
     // 缓冲区（预分配）
     private FloatBuffer vertexBuffer;
     private FloatBuffer texCoordBuffer;
-    private FloatBuffer watermarkVertexBuffer;
-    private FloatBuffer watermarkTexCoordBuffer;
 
     // 矩阵（预分配）
     private final float[] mvpMatrix = new float[16];
@@ -155,19 +122,10 @@ public class OptimizedEglEncoder {
     private volatile boolean isInitialized = false;
     private volatile boolean isReleased = false;
 
-    // 水印相关（预分配）
+    // 水印相关（字形图集，左上角）
     private boolean watermarkEnabled = false;
-    private Bitmap watermarkBitmap;
-    private Canvas watermarkCanvas;
-    private Paint watermarkTextPaint;
-    private Paint watermarkShadowPaint;
-    private String lastWatermarkTime = "";
-    private long lastWatermarkUpdateMs = 0;
-    private static final long WATERMARK_UPDATE_INTERVAL_MS = 1000;
-    private static final int WATERMARK_WIDTH_PX = 320;
-    private static final int WATERMARK_HEIGHT_PX = 36;
-    private final SimpleDateFormat watermarkDateFormat = 
-            new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+    private GlyphWatermarkRenderer watermarkRenderer;
+    private static final int WATERMARK_TEXT_SIZE = 24;
 
     // ==================== 构造函数 ====================
     
@@ -363,40 +321,13 @@ public class OptimizedEglEncoder {
     }
 
     /**
-     * 渲染水印（优化版本）
+     * 渲染水印（字形图集，秒数变化时才重建顶点）
      */
     private void renderWatermark() {
-        // 更新水印内容（每秒一次）
-        updateWatermarkIfNeeded();
-
-        if (watermarkTextureId == 0) {
+        if (watermarkRenderer == null) {
             return;
         }
-
-        // 启用混合
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
-
-        GLES20.glUseProgram(watermarkProgram);
-
-        GLES20.glUniformMatrix4fv(wmMvpMatrixHandle, 1, false, mvpMatrix, 0);
-
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, watermarkTextureId);
-        GLES20.glUniform1i(wmTextureHandle, 1);
-
-        GLES20.glEnableVertexAttribArray(wmPositionHandle);
-        GLES20.glVertexAttribPointer(wmPositionHandle, 2, GLES20.GL_FLOAT, false, 0, watermarkVertexBuffer);
-
-        GLES20.glEnableVertexAttribArray(wmTexCoordHandle);
-        GLES20.glVertexAttribPointer(wmTexCoordHandle, 2, GLES20.GL_FLOAT, false, 0, watermarkTexCoordBuffer);
-
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-
-        GLES20.glDisableVertexAttribArray(wmPositionHandle);
-        GLES20.glDisableVertexAttribArray(wmTexCoordHandle);
-
-        GLES20.glDisable(GLES20.GL_BLEND);
+        watermarkRenderer.draw(width, height);
     }
 
     // ==================== 私有方法 ====================
@@ -415,26 +346,6 @@ public class OptimizedEglEncoder {
                 .asFloatBuffer()
                 .put(FULL_QUAD_TEX_COORDS);
         texCoordBuffer.position(0);
-
-        // 水印顶点（左上角）
-        float[] watermarkVertices = {
-                WATERMARK_X, WATERMARK_Y - WATERMARK_HEIGHT,
-                WATERMARK_X + WATERMARK_WIDTH, WATERMARK_Y - WATERMARK_HEIGHT,
-                WATERMARK_X, WATERMARK_Y,
-                WATERMARK_X + WATERMARK_WIDTH, WATERMARK_Y
-        };
-        watermarkVertexBuffer = ByteBuffer.allocateDirect(watermarkVertices.length * 4)
-                .order(ByteOrder.nativeOrder())
-                .asFloatBuffer()
-                .put(watermarkVertices);
-        watermarkVertexBuffer.position(0);
-
-        // 水印纹理坐标
-        watermarkTexCoordBuffer = ByteBuffer.allocateDirect(FULL_QUAD_TEX_COORDS.length * 4)
-                .order(ByteOrder.nativeOrder())
-                .asFloatBuffer()
-                .put(FULL_QUAD_TEX_COORDS);
-        watermarkTexCoordBuffer.position(0);
     }
 
     private void initEgl() {
@@ -519,13 +430,6 @@ public class OptimizedEglEncoder {
         GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
         GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
 
-        // 创建水印着色器程序
-        watermarkProgram = createProgram(VERTEX_SHADER, FRAGMENT_SHADER_2D);
-        wmMvpMatrixHandle = GLES20.glGetUniformLocation(watermarkProgram, "uMVPMatrix");
-        wmTextureHandle = GLES20.glGetUniformLocation(watermarkProgram, "uTexture");
-        wmPositionHandle = GLES20.glGetAttribLocation(watermarkProgram, "aPosition");
-        wmTexCoordHandle = GLES20.glGetAttribLocation(watermarkProgram, "aTexCoord");
-
         AppLog.d(TAG, "Camera " + cameraId + " OpenGL initialized");
     }
 
@@ -569,70 +473,22 @@ public class OptimizedEglEncoder {
     
     public void setWatermarkEnabled(boolean enabled) {
         this.watermarkEnabled = enabled;
-        if (enabled && watermarkBitmap == null) {
+        if (enabled && watermarkRenderer == null) {
             initWatermarkResources();
         }
         AppLog.d(TAG, "Camera " + cameraId + " Watermark " + (enabled ? "enabled" : "disabled"));
     }
 
     private void initWatermarkResources() {
-        // 预分配 Bitmap
-        watermarkBitmap = Bitmap.createBitmap(WATERMARK_WIDTH_PX, WATERMARK_HEIGHT_PX, Bitmap.Config.ARGB_8888);
-        watermarkCanvas = new Canvas(watermarkBitmap);
-
-        // 预分配 Paint
-        watermarkShadowPaint = new Paint();
-        watermarkShadowPaint.setColor(Color.BLACK);
-        watermarkShadowPaint.setTextSize(24);
-        watermarkShadowPaint.setAntiAlias(true);
-        watermarkShadowPaint.setTypeface(Typeface.MONOSPACE);
-
-        watermarkTextPaint = new Paint();
-        watermarkTextPaint.setColor(Color.WHITE);
-        watermarkTextPaint.setTextSize(24);
-        watermarkTextPaint.setAntiAlias(true);
-        watermarkTextPaint.setTypeface(Typeface.MONOSPACE);
-
-        // 创建水印纹理
-        int[] textures = new int[1];
-        GLES20.glGenTextures(1, textures, 0);
-        watermarkTextureId = textures[0];
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, watermarkTextureId);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-
-        AppLog.d(TAG, "Camera " + cameraId + " Watermark resources initialized");
-    }
-
-    private void updateWatermarkIfNeeded() {
-        long now = System.currentTimeMillis();
-        if (now - lastWatermarkUpdateMs < WATERMARK_UPDATE_INTERVAL_MS) {
-            return;
-        }
-
-        String currentTime = watermarkDateFormat.format(new Date());
-        if (currentTime.equals(lastWatermarkTime)) {
-            lastWatermarkUpdateMs = now;
+        // 字形图集只在这里上传一次，之后每秒只更新顶点
+        GlyphWatermarkRenderer renderer = new GlyphWatermarkRenderer(WATERMARK_TEXT_SIZE, false);
+        if (!renderer.init()) {
+            AppLog.e(TAG, "Camera " + cameraId + " Failed to initialize watermark renderer");
+            renderer.release();
             return;
         }
-
-        lastWatermarkTime = currentTime;
-        lastWatermarkUpdateMs = now;
-
-        if (watermarkBitmap == null || watermarkCanvas == null) {
-            return;
-        }
-
-        // 清除并重绘
-        watermarkBitmap.eraseColor(Color.TRANSPARENT);
-        watermarkCanvas.drawText(currentTime, 4, 26, watermarkShadowPaint);
-        watermarkCanvas.drawText(currentTime, 2, 24, watermarkTextPaint);
-
-        // 上传纹理
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, watermarkTextureId);
-        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, watermarkBitmap, 0);
+        watermarkRenderer = renderer;
+        AppLog.d(TAG, "Camera " + cameraId + " Watermark resources initialized");
     }
 
     // ==================== 公共方法 ====================
@@ -684,31 +540,17 @@ public class OptimizedEglEncoder {
             oesProgram = 0;
         }
 
-        if (watermarkProgram != 0) {
-            GLES20.glDeleteProgram(watermarkProgram);
-            watermarkProgram = 0;
-        }
-
         if (oesTextureId != 0) {
             int[] textures = {oesTextureId};
             GLES20.glDeleteTextures(1, textures, 0);
             oesTextureId = 0;
         }
 
-        if (watermarkTextureId != 0) {
-            int[] textures = {watermarkTextureId};
-            GLES20.glDeleteTextures(1, textures, 0);
-            watermarkTextureId = 0;
-        }
-
         // 释放水印资源
-        if (watermarkBitmap != null) {
-            watermarkBitmap.recycle();
-            watermarkBitmap = null;
+        if (watermarkRenderer != null) {
+            watermarkRenderer.release();
+            watermarkRenderer = null;
         }
-        watermarkCanvas = null;
-        watermarkTextPaint = null;
-        watermarkShadowPaint = null;
 
         // 释放 EGL 资源
         if (eglDisplay != EGL14.EGL_NO_DISPLAY) {
@@ -0,0 +1,118 @@
+package com.kooo.evcam.camera;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.kooo.evcam.AppLog;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 停车移动侦测
+ *
+ * 各路录制器在渲染路径上按 {@link #SAMPLE_INTERVAL_MS} 回读 160x90 亮度（{@link LumaProbe}），
+ * 每路一个 {@link MotionDetector} 做块差分，结果汇总到一个 {@link MotionTrigger}：
+ * 任意一路检测到移动时通知开始录制（事件前缓冲补上移动之前的画面），安静一段时间后通知停止。
+ * 不打开额外的 ImageReader 输出，也不把整帧拷到 CPU，空闲时的开销只有每秒几次 14KB 回读和差分计算。
+ *
+ * 回调在主线程上执行。
+ */
+public class ParkingMotionMonitor implements LumaProbe.Sink {
+    private static final String TAG = "ParkingMotionMonitor";
+
+    static final long SAMPLE_INTERVAL_MS = 200;          // 每路 5 帧/秒
+    private static final long HOLD_MS = 15_000;          // 最后一次移动后继续录制
+    private static final long MIN_RECORD_MS = 20_000;    // 单次最短录制
+    private static final long MAX_RECORD_MS = 5 * 60_000; // 单次最长录制（持续晃动的场景）
+    private static final long COOLDOWN_MS = 30_000;      // 超长录制被截断后的冷却
+
+    public interface Listener {
+        /**
+         * 检测到移动，应开始录制
+         * @param key 最先检测到移动的摄像头位置
+         */
+        void onMotionStarted(String key);
+
+        /**
+         * 移动结束，应停止录制
+         */
+        void onMotionEnded();
+    }
+
+    private final Map<String, MotionDetector> detectors = new ConcurrentHashMap<>();
+    private final MotionTrigger trigger = new MotionTrigger(HOLD_MS, MIN_RECORD_MS, MAX_RECORD_MS, COOLDOWN_MS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Listener listener;
+    private final long startedAtMs;
+    private volatile String lastMotionKey;
+    private volatile boolean released = false;
+
+    public ParkingMotionMonitor(Listener listener) {
+        this.listener = listener;
+        this.startedAtMs = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * 为一路录制器创建亮度探针
+     */
+    LumaProbe createProbe(String key) {
+        return new LumaProbe(key, this, SAMPLE_INTERVAL_MS);
+    }
+
+    @Override
+    public void onLumaFrame(String key, byte[] luma, int width, int height, long timestampMs) {
+        if (released) {
+            return;
+        }
+        MotionDetector detector = detectors.get(key);
+        if (detector == null) {
+            detector = new MotionDetector(width, height);
+            detectors.put(key, detector);
+        }
+        boolean motion = detector.process(luma);
+        if (motion) {
+            lastMotionKey = key;
+        }
+
+        switch (trigger.onFrame(motion, timestampMs)) {
+            case MotionTrigger.ACTION_START:
+                AppLog.i(TAG, "Camera " + key + " motion detected (" + detector.getActiveBlocks() + " blocks), start recording");
+                mainHandler.post(() -> listener.onMotionStarted(key));
+                break;
+            case MotionTrigger.ACTION_STOP:
+                AppLog.i(TAG, "Motion ended, stop recording (events=" + trigger.getEvents() + ")");
+                mainHandler.post(listener::onMotionEnded);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 停止侦测，丢弃尚未执行的回调
+     */
+    public void release() {
+        released = true;
+        mainHandler.removeCallbacksAndMessages(null);
+        trigger.reset();
+    }
+
+    /**
+     * 状态描述（用于远程状态查询），如 "停车侦测中，已触发 3 次，最近 front 42 秒前"
+     */
+    public String describeStatus() {
+        StringBuilder sb = new StringBuilder(trigger.isActive() ? "停车侦测录制中" : "停车侦测中");
+        sb.append("，已触发 ").append(trigger.getEvents()).append(" 次");
+        String key = lastMotionKey;
+        if (key != null) {
+            long agoSeconds = (SystemClock.elapsedRealtime() - trigger.getLastMotionMs()) / 1000;
+            sb.append("，最近 ").append(key).append(" ").append(agoSeconds).append(" 秒前");
+        } else {
+            long minutes = (SystemClock.elapsedRealtime() - startedAtMs) / 60_000;
+            sb.append("（已侦测 ").append(minutes).append(" 分钟）");
+        }
+        return sb.toString();
+    }
+}
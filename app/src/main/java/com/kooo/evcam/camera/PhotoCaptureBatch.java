@@ -0,0 +1,128 @@
+package com.kooo.evcam.camera;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 一次多路抓拍（同一个时间戳）的完成跟踪
+ *
+ * 从触发拍照开始计时，每路摄像头的照片写盘完成（或失败）后上报一次，
+ * 最后一路上报时得到端到端延迟并回调一次。可以在任意线程上报。
+ */
+final class PhotoCaptureBatch {
+
+    interface Listener {
+        void onBatchComplete(PhotoCaptureBatch batch);
+    }
+
+    private final String timestamp;
+    private final long startNs;
+    private final Listener listener;
+    // key = 摄像头位置，value = 从触发到写盘完成的耗时（纳秒），未完成时为 null
+    private final Map<String, Long> elapsedByCamera = new LinkedHashMap<>();
+    private final Map<String, Boolean> successByCamera = new LinkedHashMap<>();
+    private int remaining;
+    private long elapsedNs = -1;
+
+    PhotoCaptureBatch(String timestamp, Collection<String> keys, long startNs, Listener listener) {
+        this.timestamp = timestamp;
+        this.startNs = startNs;
+        this.listener = listener;
+        for (String key : keys) {
+            elapsedByCamera.put(key, null);
+        }
+        this.remaining = elapsedByCamera.size();
+    }
+
+    /**
+     * 上报一路摄像头完成（同一路重复上报或不在本批次中的摄像头会被忽略）
+     * @return true 表示这是最后一路，批次已完成
+     */
+    boolean onCameraDone(String key, boolean success, long nowNs) {
+        synchronized (this) {
+            if (remaining == 0 || !elapsedByCamera.containsKey(key) || elapsedByCamera.get(key) != null) {
+                return false;
+            }
+            elapsedByCamera.put(key, nowNs - startNs);
+            successByCamera.put(key, success);
+            remaining--;
+            if (remaining > 0) {
+                return false;
+            }
+            elapsedNs = nowNs - startNs;
+        }
+        if (listener != null) {
+            listener.onBatchComplete(this);
+        }
+        return true;
+    }
+
+    String getTimestamp() {
+        return timestamp;
+    }
+
+    synchronized boolean isComplete() {
+        return remaining == 0;
+    }
+
+    /**
+     * 端到端耗时（纳秒），未完成时返回 -1
+     */
+    synchronized long getElapsedNs() {
+        return elapsedNs;
+    }
+
+    /**
+     * 单路耗时（纳秒），未完成或不在批次中时返回 -1
+     */
+    synchronized long getCameraElapsedNs(String key) {
+        Long elapsed = elapsedByCamera.get(key);
+        return elapsed != null ? elapsed : -1;
+    }
+
+    synchronized int getSuccessCount() {
+        int count = 0;
+        for (Boolean success : successByCamera.values()) {
+            if (success) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    synchronized int getCameraCount() {
+        return elapsedByCamera.size();
+    }
+
+    /**
+     * 日志摘要，如 "Snapshot 20250314_095307: 4/4 ok in 182ms [front=120ms, back=182ms, ...]"
+     */
+    synchronized String formatSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Snapshot ").append(timestamp).append(": ")
+                .append(getSuccessCount()).append("/").append(elapsedByCamera.size()).append(" ok");
+        if (elapsedNs >= 0) {
+            sb.append(" in ").append(elapsedNs / 1_000_000).append("ms");
+        }
+        sb.append(" [");
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : elapsedByCamera.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(entry.getKey()).append("=");
+            Long elapsed = entry.getValue();
+            if (elapsed == null) {
+                sb.append("pending");
+            } else if (Boolean.FALSE.equals(successByCamera.get(entry.getKey()))) {
+                sb.append("failed");
+            } else {
+                sb.append(String.format(Locale.US, "%dms", elapsed / 1_000_000));
+            }
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,141 @@
+package com.kooo.evcam.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.kooo.evcam.AppLog;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 硬件拍照的写盘线程（全局单例）
+ *
+ * 各路摄像头在 ImageReader 回调里把 JPEG 数据复制到 {@link JpegBufferPool} 的缓冲后交给这里，
+ * 由一个后台线程顺序写入文件，摄像头线程不再做压缩和磁盘 I/O。
+ * 排队数量有上限：超过 MAX_PENDING 时由提交线程直接写入，相当于对出图做背压，内存占用可控。
+ */
+public class PhotoWriter {
+    private static final String TAG = "PhotoWriter";
+
+    private static final int MAX_PENDING = 8;
+    private static final int MAX_POOLED_BUFFERS = 4;  // 四路同时抓拍
+
+    public interface Callback {
+        /**
+         * 写入完成（在写盘线程上调用）
+         */
+        void onWritten(File file, boolean success);
+    }
+
+    private static PhotoWriter instance;
+
+    private final JpegBufferPool bufferPool = new JpegBufferPool(MAX_POOLED_BUFFERS);
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final AtomicInteger pending = new AtomicInteger();
+    private HandlerThread writerThread;
+    private Handler writerHandler;
+
+    public static synchronized PhotoWriter getInstance() {
+        if (instance == null) {
+            instance = new PhotoWriter();
+        }
+        return instance;
+    }
+
+    private PhotoWriter() {
+    }
+
+    JpegBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * 单张照片写盘耗时（从提交到写完，微秒）
+     */
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * 提交一张 JPEG 写盘（data 来自 {@link #getBufferPool()}，写完后自动归还）
+     * @param watermarkTimestamp 不为 null 时先解码、绘制时间角标再重新压缩（yyyyMMdd_HHmmss）
+     */
+    void writeJpeg(File file, byte[] data, int length, String watermarkTimestamp, Callback callback) {
+        long submitNs = System.nanoTime();
+        Runnable task = () -> {
+            boolean success = write(file, data, length, watermarkTimestamp);
+            bufferPool.release(data);
+            pending.decrementAndGet();
+            writeLatency.recordNanos(System.nanoTime() - submitNs);
+            if (callback != null) {
+                callback.onWritten(file, success);
+            }
+        };
+
+        if (pending.incrementAndGet() > MAX_PENDING) {
+            AppLog.w(TAG, "Writer queue full (" + MAX_PENDING + "), writing on caller thread: " + file.getName());
+            task.run();
+            return;
+        }
+        Handler handler = obtainHandler();
+        if (!handler.post(task)) {
+            task.run();
+        }
+    }
+
+    private synchronized Handler obtainHandler() {
+        if (writerHandler == null) {
+            writerThread = new HandlerThread("PhotoWriter");
+            writerThread.start();
+            writerHandler = new Handler(writerThread.getLooper());
+        }
+        return writerHandler;
+    }
+
+    private boolean write(File file, byte[] data, int length, String watermarkTimestamp) {
+        Bitmap bitmap = null;
+        OutputStream output = null;
+        try {
+            output = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+            if (watermarkTimestamp != null) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inMutable = true;
+                bitmap = BitmapFactory.decodeByteArray(data, 0, length, options);
+            }
+            if (bitmap != null) {
+                WatermarkGlyphAtlas.drawPhotoTimestamp(bitmap, watermarkTimestamp);
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 90, output);
+            } else {
+                // 无角标（或解码失败）时直接写入摄像头输出的 JPEG
+                output.write(data, 0, length);
+            }
+            output.flush();
+            return true;
+        } catch (IOException e) {
+            if (e.getMessage() != null && e.getMessage().contains("ENOSPC")) {
+                AppLog.e(TAG, "保存照片失败：存储空间已满 " + file.getName());
+            } else {
+                AppLog.e(TAG, "Failed to write photo " + file.getName(), e);
+            }
+            return false;
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    AppLog.w(TAG, "Failed to close photo " + file.getName() + ": " + e.getMessage());
+                }
+            }
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
+}
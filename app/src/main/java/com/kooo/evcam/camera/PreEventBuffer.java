@@ -0,0 +1,302 @@
+package com.kooo.evcam.camera;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * 事件前缓冲（预录）
+ *
+ * 在未录制时保存每路摄像头最近 N 秒的 H.264 访问单元（编码后的帧），
+ * 收到远程/手动录制指令时先把这些帧写入新分段，再继续写实时帧。
+ *
+ * 约束：
+ * - 内容总是从关键帧开始（GOP 边界），淘汰时整组 GOP 丢弃，保证写出的流可直接解码
+ * - 固定字节预算：数据存放在一块预分配的直接内存中，不随帧数增长
+ * - 保留“最近一个早于 N 秒前的关键帧”之后的所有帧，因此实际时长略大于 N 秒
+ *
+ * 非线程安全：只能在录制器的 muxer 线程上使用（与 drainEncoder 同一线程）。
+ */
+public class PreEventBuffer {
+
+    /** 估算所需帧槽时假设的最高帧率 */
+    private static final int MAX_FPS = 60;
+
+    /** 估算容量时额外保留的时长（一个 GOP 加上关键帧余量） */
+    private static final long EXTRA_WINDOW_MS = 2000;
+
+    /**
+     * 写出回调
+     */
+    public interface Sink {
+        /**
+         * @param data 帧数据（position 到 limit 之间），回调返回后失效
+         * @param ptsUs 入缓冲时的时间戳（微秒，System.nanoTime 基准）
+         * @param flags MediaCodec.BufferInfo 的 flags
+         */
+        void onAccessUnit(ByteBuffer data, long ptsUs, int flags);
+    }
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer view;  // 写出时使用的视图
+    private final int capacity;
+    private final int indexMask;
+    private final long windowUs;
+
+    // 帧索引（按序号 & indexMask 存放）
+    private final int[] offsets;
+    private final int[] sizes;
+    private final int[] flags;
+    private final long[] ptsUs;
+    private final long[] ends;  // 帧结束处的绝对字节位置
+
+    // 关键帧序号队列（用于整组 GOP 淘汰）
+    private final long[] keySeqs;
+    private int keyHead = 0;
+    private int keyCount = 0;
+
+    private long headSeq = 0;  // 最旧的帧
+    private long tailSeq = 0;  // 下一帧
+    private long readBytes = 0;
+    private long writeBytes = 0;
+
+    // 统计
+    private long evictedGops = 0;
+    private long droppedFrames = 0;
+    private long overflowResets = 0;
+
+    /**
+     * @param capacityBytes 数据区大小（该摄像头分到的预算）
+     * @param windowMs 保留时长
+     */
+    public PreEventBuffer(int capacityBytes, long windowMs) {
+        if (capacityBytes <= 0 || windowMs <= 0) {
+            throw new IllegalArgumentException("capacity=" + capacityBytes + ", window=" + windowMs);
+        }
+        int frames = (int) ((windowMs + EXTRA_WINDOW_MS) * MAX_FPS / 1000);
+        int slots = Integer.highestOneBit(Math.max(frames, 16));
+        if (slots < frames) {
+            slots <<= 1;
+        }
+        this.capacity = capacityBytes;
+        this.indexMask = slots - 1;
+        this.windowUs = windowMs * 1000;
+        this.buffer = ByteBuffer.allocateDirect(capacityBytes);
+        this.view = buffer.duplicate();
+        this.offsets = new int[slots];
+        this.sizes = new int[slots];
+        this.flags = new int[slots];
+        this.ptsUs = new long[slots];
+        this.ends = new long[slots];
+        this.keySeqs = new long[slots];
+    }
+
+    /**
+     * 按码率估算缓冲 windowMs 所需的字节数（额外保留一个 GOP，并为关键帧和码率波动留 50% 余量）
+     */
+    public static int estimateCapacity(int bitRate, long windowMs) {
+        long bytes = (long) bitRate / 8 * (windowMs + EXTRA_WINDOW_MS) / 1000;
+        return (int) Math.min(Integer.MAX_VALUE, bytes * 3 / 2);
+    }
+
+    /**
+     * 计算单路摄像头的缓冲容量：总预算按摄像头数平均分配，且不超过按码率估算的需求
+     */
+    public static int allocate(long totalBudgetBytes, int cameraCount, int bitRate, long windowMs) {
+        long share = totalBudgetBytes / Math.max(1, cameraCount);
+        return (int) Math.min(share, estimateCapacity(bitRate, windowMs));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getWindowMs() {
+        return windowUs / 1000;
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 追加一帧
+     * @param data 帧数据（position 到 limit 之间）
+     * @return true 表示已缓存，false 表示被丢弃（尚未遇到关键帧或单帧超过容量）
+     */
+    public boolean append(ByteBuffer data, long pts, int frameFlags, boolean keyFrame) {
+        int size = data.remaining();
+        if (keyFrame) {
+            trimToWindow(pts);
+        } else if (isEmpty()) {
+            // 只从关键帧开始缓存
+            droppedFrames++;
+            return false;
+        }
+        if (size > capacity) {
+            clear();
+            overflowResets++;
+            droppedFrames++;
+            return false;
+        }
+
+        // 空间或帧槽不足时整组淘汰最旧的 GOP
+        int pos;
+        while ((pos = reserve(size)) < 0) {
+            evictOldestGop();
+            if (isEmpty() && !keyFrame) {
+                // 当前 GOP 超过了预算，只能等下一个关键帧重新开始
+                overflowResets++;
+                droppedFrames++;
+                return false;
+            }
+        }
+
+        buffer.clear();
+        buffer.position(pos);
+        buffer.limit(pos + size);
+        buffer.put(data);
+
+        int slot = (int) (tailSeq & indexMask);
+        offsets[slot] = pos;
+        sizes[slot] = size;
+        flags[slot] = frameFlags;
+        ptsUs[slot] = pts;
+        ends[slot] = writeBytes;
+        if (keyFrame) {
+            keySeqs[(keyHead + keyCount) & indexMask] = tailSeq;
+            keyCount++;
+        }
+        tailSeq++;
+        return true;
+    }
+
+    /**
+     * 淘汰超出时间窗口的 GOP：只要第二个 GOP 的起点已经早于 (pts - 窗口)，第一个 GOP 就不再需要
+     */
+    private void trimToWindow(long newestPtsUs) {
+        long cutoff = newestPtsUs - windowUs;
+        while (keyCount >= 2) {
+            long secondKey = keySeqs[(keyHead + 1) & indexMask];
+            if (ptsUs[(int) (secondKey & indexMask)] > cutoff) {
+                break;
+            }
+            evictOldestGop();
+        }
+    }
+
+    private int reserve(int size) {
+        if (tailSeq - headSeq > indexMask) {
+            return -1;
+        }
+        int pos = (int) (writeBytes % capacity);
+        int padding = (pos + size > capacity) ? capacity - pos : 0;
+        if (writeBytes - readBytes + padding + size > capacity) {
+            return -1;
+        }
+        writeBytes += padding + size;
+        return padding > 0 ? 0 : pos;
+    }
+
+    /**
+     * 丢弃最旧的一组 GOP（从队头关键帧到下一个关键帧之前）
+     */
+    private void evictOldestGop() {
+        if (isEmpty()) {
+            return;
+        }
+        long end = (keyCount >= 2) ? keySeqs[(keyHead + 1) & indexMask] : tailSeq;
+        readBytes = ends[(int) ((end - 1) & indexMask)];
+        headSeq = end;
+        keyHead = (keyHead + 1) & indexMask;
+        keyCount--;
+        evictedGops++;
+        if (isEmpty()) {
+            // 全部淘汰后重置位置，避免空缓冲区还留有尾部空隙
+            readBytes = writeBytes = 0;
+            keyHead = 0;
+            keyCount = 0;
+        }
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 按顺序写出全部缓存帧并清空
+     * @return 写出的帧数
+     */
+    public int flush(Sink sink) {
+        int count = 0;
+        for (long seq = headSeq; seq < tailSeq; seq++) {
+            int slot = (int) (seq & indexMask);
+            view.clear();
+            view.position(offsets[slot]);
+            view.limit(offsets[slot] + sizes[slot]);
+            sink.onAccessUnit(view, ptsUs[slot], flags[slot]);
+            count++;
+        }
+        clear();
+        return count;
+    }
+
+    /**
+     * 清空缓存（统计保留）
+     */
+    public void clear() {
+        headSeq = tailSeq = 0;
+        readBytes = writeBytes = 0;
+        keyHead = 0;
+        keyCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return headSeq == tailSeq;
+    }
+
+    public int getFrameCount() {
+        return (int) (tailSeq - headSeq);
+    }
+
+    public long getBufferedBytes() {
+        return writeBytes - readBytes;
+    }
+
+    /**
+     * 最旧一帧的时间戳，缓存为空时返回 -1
+     */
+    public long getFirstPtsUs() {
+        return isEmpty() ? -1 : ptsUs[(int) (headSeq & indexMask)];
+    }
+
+    /**
+     * 缓存覆盖的时长（微秒）
+     */
+    public long getDurationUs() {
+        if (isEmpty()) {
+            return 0;
+        }
+        return ptsUs[(int) ((tailSeq - 1) & indexMask)] - ptsUs[(int) (headSeq & indexMask)];
+    }
+
+    public int getGopCount() {
+        return keyCount;
+    }
+
+    public long getEvictedGops() {
+        return evictedGops;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public long getOverflowResets() {
+        return overflowResets;
+    }
+
+    /**
+     * 获取统计信息（用于日志）
+     */
+    public String getStats() {
+        return String.format(Locale.US, "%d frames/%d GOPs, %.1fs, %dKB/%dKB, evicted=%d dropped=%d resets=%d",
+                getFrameCount(), keyCount, getDurationUs() / 1e6, getBufferedBytes() / 1024, capacity / 1024,
+                evictedGops, droppedFrames, overflowResets);
+    }
+}
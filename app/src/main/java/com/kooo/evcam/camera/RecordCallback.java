@@ -38,6 +38,16 @@ public interface RecordCallback {
      */
     void onSegmentSwitch(String cameraId, int newSegmentIndex, String completedFilePath);
 
+    /**
+     * 分段切换（附带切换间隙）
+     * 默认转发到 {@link #onSegmentSwitch(String, int, String)}，只有 CodecVideoRecorder 会测量间隙
+     *
+     * @param gapMs 上一段最后一帧写入到新分段第一帧写入的间隔（毫秒），约等于一帧间隔说明没有丢帧；-1 表示未测量
+     */
+    default void onSegmentSwitch(String cameraId, int newSegmentIndex, String completedFilePath, long gapMs) {
+        onSegmentSwitch(cameraId, newSegmentIndex, completedFilePath);
+    }
+
     /**
      * 损坏文件被删除
      * @param cameraId 相机ID
@@ -61,6 +71,8 @@ public interface RecordCallback {
      * 用于通知外部录制已真正开始，可以开始计时（分段计时、钉钉录制计时等）
      * 
      * @param cameraId 相机ID
+     * @param firstWriteLatencyMs 从开始录制到检测到首次写入的耗时（毫秒）
+     * @param preallocSavedMs 使用预分配文件时，在后台提前完成的文件创建/扩展耗时（毫秒），未使用时为 0
      */
-    void onFirstDataWritten(String cameraId);
+    void onFirstDataWritten(String cameraId, long firstWriteLatencyMs, long preallocSavedMs);
 }
@@ -0,0 +1,80 @@
+package com.kooo.evcam.camera;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 录制 Muxer 接口
+ * 屏蔽系统 MediaMuxer 与自研分片 MP4 写入器的差异，方法语义与 MediaMuxer 一致：
+ * addTrack → start → writeSampleData → stop → release
+ */
+public interface RecordMuxer {
+
+    int addTrack(MediaFormat format);
+
+    void start();
+
+    void writeSampleData(int trackIndex, ByteBuffer byteBuf, MediaCodec.BufferInfo bufferInfo);
+
+    void stop();
+
+    void release();
+
+    /**
+     * 创建 Muxer
+     * @param filePath 输出文件路径
+     * @param lease 预分配的分段文件（可为 null，此时按路径创建文件）
+     * @param fragmented true 使用分片 MP4 写入器，false 使用系统 MediaMuxer
+     */
+    static RecordMuxer create(String filePath, SegmentFilePool.Lease lease, boolean fragmented) throws IOException {
+        if (fragmented) {
+            return lease != null
+                    ? new FragmentedMp4Muxer(lease.getChannel(), false)
+                    : FragmentedMp4Muxer.open(filePath);
+        }
+        MediaMuxer muxer = lease != null
+                ? new MediaMuxer(lease.getFileDescriptor(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4)
+                : new MediaMuxer(filePath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        return new SystemMuxer(muxer);
+    }
+
+    /**
+     * 系统 MediaMuxer 包装
+     */
+    class SystemMuxer implements RecordMuxer {
+        private final MediaMuxer muxer;
+
+        SystemMuxer(MediaMuxer muxer) {
+            this.muxer = muxer;
+        }
+
+        @Override
+        public int addTrack(MediaFormat format) {
+            return muxer.addTrack(format);
+        }
+
+        @Override
+        public void start() {
+            muxer.start();
+        }
+
+        @Override
+        public void writeSampleData(int trackIndex, ByteBuffer byteBuf, MediaCodec.BufferInfo bufferInfo) {
+            muxer.writeSampleData(trackIndex, byteBuf, bufferInfo);
+        }
+
+        @Override
+        public void stop() {
+            muxer.stop();
+        }
+
+        @Override
+        public void release() {
+            muxer.release();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.kooo.evcam.camera;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.PowerManager;
+
+import com.kooo.evcam.AppLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 多路 Codec 录制的自适应码率/帧率调节器
+ *
+ * 定期采样每路录制器的负载：
+ * - 写入队列深度：投递到 muxer 线程尚未执行的 drainEncoder 数（U 盘写入慢时积压）
+ * - 编码输出节奏：写入文件的帧数 / 渲染到编码器的帧数（编码器过热降频时跟不上）
+ * - 文件增长速度：scheduleFileSizeCheck 测得的字节/秒（为 0 说明写入停滞）
+ * - 设备温控状态（API 29+）
+ *
+ * 所有摄像头共用同一条 U 盘总线和同一个硬件编码器，因此任一路出现压力都按整体压力处理，
+ * 每次只调整一路，按优先级从低到高降级：左右侧先降，后摄像头其次，前摄像头最后且不抽帧。
+ * 降级后等待新码率生效再判断；连续一段时间无压力后按相反顺序逐级恢复。
+ *
+ * 所有方法在构造时传入的 Handler 线程上调用。
+ */
+public class RecordingGovernor {
+    private static final String TAG = "RecordingGovernor";
+
+    private static final long SAMPLE_INTERVAL_MS = 2000;
+
+    // 压力判定阈值
+    private static final int QUEUE_PRESSURE_DEPTH = 8;  // 写入队列积压（约 0.25 秒 @30fps）
+    private static final int QUEUE_HEALTHY_DEPTH = 2;
+    private static final float OUTPUT_PRESSURE_RATIO = 0.7f;  // 写入帧数低于渲染帧数的 70%
+    private static final float OUTPUT_HEALTHY_RATIO = 0.9f;
+    private static final int MIN_SAMPLE_FRAMES = 10;  // 采样周期内帧数太少时不判断编码节奏
+
+    private static final int DEGRADE_COOLDOWN_SAMPLES = 2;  // 降级后等待 2 次采样，让新码率生效
+    private static final int RECOVER_STABLE_SAMPLES = 5;    // 连续 5 次（10 秒）无压力才恢复一级
+
+    // 质量等级：0 = 原画质，数值越大越低
+    private static final int[] LEVEL_BITRATE_PERCENT = {100, 75, 50, 50};
+    private static final int[] LEVEL_FRAME_SKIP = {1, 1, 1, 2};
+    private static final int MAX_LEVEL = LEVEL_BITRATE_PERCENT.length - 1;
+    private static final int FRONT_MAX_LEVEL = 2;  // 前摄像头只降码率，不抽帧
+    private static final int MIN_BITRATE = 500_000;
+
+    /**
+     * 单路摄像头的调节状态
+     */
+    private static final class CameraState {
+        final String key;
+        final CodecVideoRecorder recorder;
+        final int weight;    // 优先级权重，越大越晚降级
+        final int maxLevel;
+        int level = 0;
+        long lastRecordedFrames = -1;
+        long lastEncodedFrames = -1;
+        float outputFps = 0;
+        int queuePeak = 0;
+
+        CameraState(String key, CodecVideoRecorder recorder) {
+            this.key = key;
+            this.recorder = recorder;
+            this.weight = priorityWeight(key);
+            this.maxLevel = "front".equals(key) ? FRONT_MAX_LEVEL : MAX_LEVEL;
+        }
+    }
+
+    private final Context context;
+    private final Handler handler;
+    private final List<CameraState> states = new ArrayList<>();
+    private final Runnable sampleRunnable = this::sample;
+    private boolean running = false;
+    private long lastSampleTime = 0;
+    private int cooldownSamples = 0;
+    private int stableSamples = 0;
+    private int thermalStatus = 0;
+    private String lastPressureReason = null;
+
+    public RecordingGovernor(Context context, Handler handler) {
+        this.context = context.getApplicationContext();
+        this.handler = handler;
+    }
+
+    /**
+     * 开始调节
+     * @param recorders 摄像头位置 -> 录制器（只保存引用，录制器由调用方管理）
+     */
+    public void start(Map<String, CodecVideoRecorder> recorders) {
+        stop();
+        for (Map.Entry<String, CodecVideoRecorder> entry : recorders.entrySet()) {
+            states.add(new CameraState(entry.getKey(), entry.getValue()));
+        }
+        if (states.isEmpty()) {
+            return;
+        }
+        running = true;
+        lastSampleTime = System.currentTimeMillis();
+        cooldownSamples = 0;
+        stableSamples = 0;
+        lastPressureReason = null;
+        handler.postDelayed(sampleRunnable, SAMPLE_INTERVAL_MS);
+        AppLog.d(TAG, "Governor started for " + states.size() + " camera(s)");
+    }
+
+    /**
+     * 停止调节并恢复所有录制器的原始码率和帧率
+     */
+    public void stop() {
+        handler.removeCallbacks(sampleRunnable);
+        if (!running && states.isEmpty()) {
+            return;
+        }
+        running = false;
+        for (CameraState state : states) {
+            if (state.level != 0) {
+                state.level = 0;
+                applyLevel(state);
+            }
+        }
+        states.clear();
+        AppLog.d(TAG, "Governor stopped");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 获取各摄像头当前的调节状态（用于状态显示和日志）
+     * 如 "front L0 4.0Mbps 30fps q1, left L2 2.0Mbps 28fps q3"
+     */
+    public String getStats() {
+        if (!running) {
+            return "off";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (CameraState state : states) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(String.format(Locale.US, "%s L%d %.1fMbps %.0ffps q%d", state.key, state.level,
+                    state.recorder.getEffectiveBitRate() / 1e6, state.outputFps, state.queuePeak));
+        }
+        if (thermalStatus > 0) {
+            sb.append(", thermal ").append(thermalStatus);
+        }
+        return sb.toString();
+    }
+
+    // ===== 私有方法 =====
+
+    private void sample() {
+        if (!running) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long elapsedMs = Math.max(1, now - lastSampleTime);
+        lastSampleTime = now;
+
+        String pressureReason = null;
+        boolean healthy = true;
+        for (CameraState state : states) {
+            CodecVideoRecorder recorder = state.recorder;
+            long recorded = recorder.getRecordedFrameCount();
+            long encoded = recorder.getTotalEncodedFrames();
+            int queuePeak = recorder.takePendingDrainPeak();
+            long growth = recorder.getFileGrowthBytesPerSec();
+
+            long recordedDelta = recorded - state.lastRecordedFrames;
+            long encodedDelta = encoded - state.lastEncodedFrames;
+            boolean firstSample = state.lastRecordedFrames < 0;
+            state.lastRecordedFrames = recorded;
+            state.lastEncodedFrames = encoded;
+            state.queuePeak = queuePeak;
+            if (!recorder.isRecording() || firstSample || recordedDelta < 0 || encodedDelta < 0) {
+                // 未在录制（编码器重建中）或计数已重置，本次不判断
+                continue;
+            }
+            state.outputFps = encodedDelta * 1000f / elapsedMs;
+
+            boolean encoderBehind = recordedDelta >= MIN_SAMPLE_FRAMES
+                    && encodedDelta < recordedDelta * OUTPUT_PRESSURE_RATIO;
+            boolean writeStalled = growth == 0 && encodedDelta > 0;
+            if (pressureReason == null) {
+                if (queuePeak >= QUEUE_PRESSURE_DEPTH) {
+                    pressureReason = state.key + " write queue " + queuePeak;
+                } else if (encoderBehind) {
+                    pressureReason = state.key + " encoder output " + encodedDelta + "/" + recordedDelta + " frames";
+                } else if (writeStalled) {
+                    pressureReason = state.key + " file not growing";
+                }
+            }
+            if (queuePeak > QUEUE_HEALTHY_DEPTH
+                    || (recordedDelta >= MIN_SAMPLE_FRAMES && encodedDelta < recordedDelta * OUTPUT_HEALTHY_RATIO)) {
+                healthy = false;
+            }
+        }
+
+        // 温控：严重过热直接视为压力，中度过热时不恢复
+        thermalStatus = readThermalStatus();
+        if (pressureReason == null && thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) {
+            pressureReason = "thermal status " + thermalStatus;
+        }
+        if (thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE) {
+            healthy = false;
+        }
+
+        if (cooldownSamples > 0) {
+            cooldownSamples--;
+        } else if (pressureReason != null) {
+            stableSamples = 0;
+            if (degradeOne(pressureReason)) {
+                cooldownSamples = DEGRADE_COOLDOWN_SAMPLES;
+            } else if (!pressureReason.equals(lastPressureReason)) {
+                AppLog.w(TAG, "Under pressure (" + pressureReason + ") but all cameras already at lowest level");
+            }
+        } else if (healthy) {
+            if (++stableSamples >= RECOVER_STABLE_SAMPLES) {
+                stableSamples = 0;
+                recoverOne();
+            }
+        } else {
+            stableSamples = 0;
+        }
+        lastPressureReason = pressureReason;
+
+        handler.postDelayed(sampleRunnable, SAMPLE_INTERVAL_MS);
+    }
+
+    /**
+     * 降级一路：选择 (等级 + 权重) 最小的摄像头，相同时优先级低的先降
+     * @return false 表示已无可降级的摄像头
+     */
+    private boolean degradeOne(String reason) {
+        CameraState target = null;
+        for (CameraState state : states) {
+            if (state.level >= state.maxLevel || !state.recorder.isRecording()) {
+                continue;
+            }
+            if (target == null || state.level + state.weight < target.level + target.weight
+                    || (state.level + state.weight == target.level + target.weight && state.weight < target.weight)) {
+                target = state;
+            }
+        }
+        if (target == null) {
+            return false;
+        }
+        target.level++;
+        applyLevel(target);
+        AppLog.w(TAG, "Degrade " + target.key + " to level " + target.level + " (" + reason + "): "
+                + (target.recorder.getEffectiveBitRate() / 1000) + " Kbps, 1/" + LEVEL_FRAME_SKIP[target.level] + " frames");
+        return true;
+    }
+
+    /**
+     * 恢复一路：与降级顺序相反，选择 (等级 + 权重) 最大的摄像头，相同时优先级高的先恢复
+     */
+    private void recoverOne() {
+        CameraState target = null;
+        for (CameraState state : states) {
+            if (state.level == 0) {
+                continue;
+            }
+            if (target == null || state.level + state.weight > target.level + target.weight
+                    || (state.level + state.weight == target.level + target.weight && state.weight > target.weight)) {
+                target = state;
+            }
+        }
+        if (target == null) {
+            return;
+        }
+        target.level--;
+        applyLevel(target);
+        AppLog.d(TAG, "Recover " + target.key + " to level " + target.level + ": "
+                + (target.recorder.getEffectiveBitRate() / 1000) + " Kbps, 1/" + LEVEL_FRAME_SKIP[target.level] + " frames");
+    }
+
+    private static void applyLevel(CameraState state) {
+        CodecVideoRecorder recorder = state.recorder;
+        int configured = recorder.getBitRate();
+        int bitrate = state.level == 0 ? 0
+                : Math.max(MIN_BITRATE, (int) ((long) configured * LEVEL_BITRATE_PERCENT[state.level] / 100));
+        recorder.applyAdaptiveBitRate(bitrate);
+        recorder.setFrameSkipInterval(LEVEL_FRAME_SKIP[state.level]);
+    }
+
+    /**
+     * 优先级权重：前 > 后 > 左右
+     */
+    private static int priorityWeight(String key) {
+        if ("front".equals(key)) {
+            return 3;
+        } else if ("back".equals(key)) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private int readThermalStatus() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return 0;  // THERMAL_STATUS_NONE
+        }
+        PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return pm != null ? pm.getCurrentThermalStatus() : 0;
+    }
+}
@@ -0,0 +1,103 @@
+package com.kooo.evcam.camera;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 录制管线指标注册表（全局单例）
+ *
+ * 每次 Codec 录制开始时按摄像头位置注册一组 {@link CameraPipelineMetrics}，
+ * 录制器在热路径上直接更新自己那一组，录制状态浮层和远程状态查询从这里读取。
+ * 注册表本身采用写时复制：注册只在主线程发生，读取不加锁。
+ */
+public class RecordingMetrics {
+
+    private static final RecordingMetrics INSTANCE = new RecordingMetrics();
+
+    private volatile Map<String, CameraPipelineMetrics> cameras = Collections.emptyMap();
+    private volatile boolean active = false;
+
+    public static RecordingMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private RecordingMetrics() {
+    }
+
+    /**
+     * 为新的录制器注册指标（替换之前的全部摄像头）
+     * @param keys 摄像头位置
+     */
+    public synchronized void register(Collection<String> keys) {
+        Map<String, CameraPipelineMetrics> map = new LinkedHashMap<>();
+        for (String key : keys) {
+            map.put(key, new CameraPipelineMetrics(key));
+        }
+        cameras = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 获取摄像头的指标，未注册时返回 null
+     */
+    public CameraPipelineMetrics get(String key) {
+        return cameras.get(key);
+    }
+
+    public Map<String, CameraPipelineMetrics> getCameras() {
+        return cameras;
+    }
+
+    /**
+     * 标记录制开始（清空之前的计数，如预录期间的编码统计）
+     */
+    public void onRecordingStarted() {
+        for (CameraPipelineMetrics metrics : cameras.values()) {
+            metrics.reset();
+        }
+        active = true;
+    }
+
+    /**
+     * 标记录制结束（保留最后一次录制的指标供查询）
+     */
+    public void onRecordingStopped() {
+        active = false;
+    }
+
+    /**
+     * 是否正在录制（仅 Codec 录制有管线指标）
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * 录制状态浮层使用的摘要，每路一行
+     */
+    public String formatOverlay() {
+        StringBuilder sb = new StringBuilder();
+        for (CameraPipelineMetrics metrics : cameras.values()) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append(metrics.formatCompact());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 远程状态查询使用的详情
+     */
+    public String formatReport() {
+        StringBuilder sb = new StringBuilder();
+        for (CameraPipelineMetrics metrics : cameras.values()) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append(metrics.formatDetail());
+        }
+        return sb.toString();
+    }
+}
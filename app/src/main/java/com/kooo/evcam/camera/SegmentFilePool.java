@@ -0,0 +1,731 @@
+package com.kooo.evcam.camera;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.kooo.evcam.AppLog;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分段文件预分配池
+ *
+ * 在 FAT/exFAT 的 U 盘上，每个分段文件都是"冷"创建的：
+ * 创建目录项、分配簇、扩展文件都发生在 Muxer 首次写入的路径上，
+ * 这是 first_write_timeout 重建的主要来源之一。
+ *
+ * 本类在后台线程为每个摄像头提前创建并扩展（RandomAccessFile.setLength）
+ * 接下来 POOL_DEPTH 个分段文件，录制器取用时只需重命名并打开，
+ * 通过文件描述符交给 MediaMuxer / MediaRecorder 写入，
+ * 关闭时按实际写入的 MP4 结构截断多余的预分配空间。
+ *
+ * 预分配文件以 ".evcam_pool_" 开头、".tmp" 结尾，不会被回放列表和存储索引识别，
+ * 也不计入存储配额，因此录制停止时由 release() 删除未取用的文件，只在录制期间占用空间；
+ * 进程异常退出时遗留的预分配文件会在下次录制时接管（每个摄像头最多 POOL_DEPTH 个，多余的删除）。
+ *
+ * 取用时文件已重命名为最终的 .mp4，录制中途断电/进程被杀时 Lease.close() 不会执行，
+ * 文件保持预分配大小、尾部全零。首次使用目录时会扫描上次运行遗留的此类分段并截断
+ * （跳过当前打开的 Lease），截断后通过 RecoveryListener 通知调用方更新索引。
+ */
+public class SegmentFilePool {
+    private static final String TAG = "SegmentFilePool";
+
+    // 每个摄像头预先准备的分段文件数量
+    private static final int POOL_DEPTH = 2;
+    // 预分配文件名前缀/后缀
+    private static final String FILE_PREFIX = ".evcam_pool_";
+    private static final String FILE_SUFFIX = ".tmp";
+    // 预分配后至少保留的可用空间（避免预分配挤占录制空间）
+    private static final long MIN_FREE_AFTER_PREALLOC = 1024L * 1024 * 1024;  // 1GB
+    // 单个预分配文件的大小上限（FAT32 单文件不能超过 4GB）
+    private static final long MAX_PREALLOC_BYTES = 2048L * 1024 * 1024;  // 2GB
+    // 预分配大小余量（码率波动、MP4 索引）
+    private static final long PREALLOC_EXTRA_BYTES = 1024 * 1024;  // 1MB
+    // 写入位置探测的块大小
+    private static final int PROBE_BLOCK = 4096;
+    // MP4 moov 盒子类型
+    private static final int MOOV = ('m' << 24) | ('o' << 16) | ('o' << 8) | 'v';
+
+    private static SegmentFilePool instance;
+
+    /**
+     * 遗留分段截断回调（在池线程上执行）
+     */
+    public interface RecoveryListener {
+        void onSegmentRecovered(File file, long oldLength, long newLength);
+    }
+
+    private final Object lock = new Object();
+    // key = 目录 + "|" + 摄像头位置，value = 已就绪的预分配文件
+    private final Map<String, ArrayDeque<PooledFile>> readyFiles = new HashMap<>();
+    // 正在后台预分配的 key，避免重复调度
+    private final Set<String> pendingKeys = new HashSet<>();
+    // 已扫描过遗留文件的目录
+    private final Set<String> adoptedDirs = new HashSet<>();
+    // 当前打开的 Lease 文件路径，遗留分段恢复不会触碰这些文件
+    private final Set<String> openLeasePaths = new HashSet<>();
+    // 本实例创建时间，此后修改过的文件不属于上次运行的遗留
+    private final long createdAtMs = System.currentTimeMillis();
+    private volatile RecoveryListener recoveryListener;
+    // 每个 key 的释放代数：release() 后递增，使已调度的后台预分配作废
+    private final Map<String, Integer> generations = new HashMap<>();
+    private int fileSequence = 0;
+
+    // 统计
+    private int pooledAcquireCount = 0;
+    private int coldAcquireCount = 0;
+    private long totalPreallocMs = 0;
+    private int recoveredSegmentCount = 0;
+
+    private HandlerThread poolThread;
+    private Handler poolHandler;
+
+    /**
+     * 已就绪的预分配文件
+     */
+    private static class PooledFile {
+        final File file;
+        final long preallocMs;  // 后台创建 + 扩展 + 同步耗时
+
+        PooledFile(File file, long preallocMs) {
+            this.file = file;
+            this.preallocMs = preallocMs;
+        }
+    }
+
+    /**
+     * 已取用的分段文件
+     * 持有打开的 RandomAccessFile，录制器通过 getFileDescriptor() 写入，
+     * 写入结束后必须调用 close() 截断多余的预分配空间
+     */
+    public static class Lease {
+        private final File file;
+        private final RandomAccessFile raf;
+        private final long preallocatedBytes;
+        private final long preallocMs;
+        private final long openMs;
+        private final Runnable onClosed;
+        private long writeHighWater = 0;
+        private boolean closed = false;
+
+        private Lease(File file, RandomAccessFile raf, long preallocatedBytes, long preallocMs, long openMs,
+                      Runnable onClosed) {
+            this.file = file;
+            this.raf = raf;
+            this.preallocatedBytes = preallocatedBytes;
+            this.preallocMs = preallocMs;
+            this.openMs = openMs;
+            this.onClosed = onClosed;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public FileDescriptor getFileDescriptor() throws IOException {
+            return raf.getFD();
+        }
+
+        /**
+         * 获取文件通道（与文件描述符共享偏移，供 Java 写入器顺序写入）
+         */
+        public FileChannel getChannel() {
+            return raf.getChannel();
+        }
+
+        /**
+         * 预分配时在后台花费的时间（即从首次写入路径上省掉的文件系统开销）
+         */
+        public long getPreallocMs() {
+            return preallocMs;
+        }
+
+        /**
+         * 取用时在调用线程上的耗时（重命名 + 打开）
+         */
+        public long getOpenMs() {
+            return openMs;
+        }
+
+        public long getPreallocatedBytes() {
+            return preallocatedBytes;
+        }
+
+        /**
+         * 获取已写入的字节数
+         * 预分配文件的 length() 始终是预分配大小，不能用于首次写入检测。
+         * Muxer / MediaRecorder 使用 dup() 出的描述符，与本对象共享文件偏移，
+         * 因此当前偏移即为已写入的位置；偏移不可用时退回到探测非零数据的结尾。
+         */
+        public synchronized long getWrittenBytes() {
+            if (closed) {
+                return file.exists() ? file.length() : 0;
+            }
+            try {
+                long position = raf.getFilePointer();
+                if (position == 0) {
+                    position = probeWrittenEnd(raf.getChannel(), raf.length());
+                }
+                writeHighWater = Math.max(writeHighWater, position);
+            } catch (IOException e) {
+                // 描述符已失效，保持上次的值
+            }
+            return writeHighWater;
+        }
+
+        /**
+         * 关闭并截断到实际写入的长度（必须在 Muxer / MediaRecorder 释放之后调用）
+         * @return 截断后的文件长度
+         */
+        public synchronized long close() {
+            if (closed) {
+                return file.exists() ? file.length() : 0;
+            }
+            long finalLength = 0;
+            try {
+                getWrittenBytes();
+                long fileLength = raf.length();
+                finalLength = findTruncateLength(raf.getChannel(), fileLength, writeHighWater);
+                if (finalLength < fileLength) {
+                    raf.setLength(finalLength);
+                }
+            } catch (IOException e) {
+                AppLog.w(TAG, "Failed to truncate pooled file " + file.getName() + ": " + e.getMessage());
+            } finally {
+                closed = true;
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+                onClosed.run();
+            }
+            return finalLength;
+        }
+    }
+
+    public static synchronized SegmentFilePool getInstance() {
+        if (instance == null) {
+            instance = new SegmentFilePool();
+        }
+        return instance;
+    }
+
+    private SegmentFilePool() {
+    }
+
+    /**
+     * 设置遗留分段截断回调（用于更新录制索引中的文件大小）
+     */
+    public void setRecoveryListener(RecoveryListener listener) {
+        this.recoveryListener = listener;
+    }
+
+    /**
+     * 计算一个分段的预分配大小
+     * @param bitRate 视频码率（bps）
+     * @param segmentDurationMs 分段时长（毫秒）
+     */
+    public static long estimateSegmentBytes(int bitRate, long segmentDurationMs) {
+        long bytes = (long) bitRate / 8 * segmentDurationMs / 1000;
+        // 多留 10% 应对码率波动
+        bytes = bytes + bytes / 10 + PREALLOC_EXTRA_BYTES;
+        return Math.min(bytes, MAX_PREALLOC_BYTES);
+    }
+
+    /**
+     * 取用一个预分配文件作为指定路径的分段文件
+     * 没有就绪的文件时返回 null（调用方按原方式直接创建文件），
+     * 无论是否命中都会在后台补充该摄像头的预分配文件
+     *
+     * @param targetPath 分段文件的最终路径
+     * @param position 摄像头位置（front/back/left/right）
+     * @param expectedBytes 预期的分段大小
+     */
+    public Lease acquire(String targetPath, String position, long expectedBytes) {
+        File target = new File(targetPath);
+        File dir = target.getParentFile();
+        if (dir == null) {
+            return null;
+        }
+        String key = poolKey(dir, position);
+
+        Lease lease = null;
+        while (lease == null) {
+            PooledFile pooled;
+            synchronized (lock) {
+                ArrayDeque<PooledFile> queue = readyFiles.get(key);
+                pooled = queue != null ? queue.pollFirst() : null;
+            }
+            if (pooled == null) {
+                break;
+            }
+            lease = openPooledFile(pooled, target);
+        }
+
+        synchronized (lock) {
+            if (lease != null) {
+                pooledAcquireCount++;
+            } else {
+                coldAcquireCount++;
+            }
+        }
+        if (lease != null) {
+            AppLog.d(TAG, "Camera " + position + " using preallocated segment: " + target.getName() +
+                    " (prealloc " + lease.getPreallocMs() + "ms in background, open " + lease.getOpenMs() + "ms)");
+        }
+
+        replenish(dir, position, expectedBytes);
+        return lease;
+    }
+
+    /**
+     * 在后台补充指定摄像头的预分配文件到 POOL_DEPTH 个
+     */
+    public void replenish(File dir, String position, long expectedBytes) {
+        final String key = poolKey(dir, position);
+        final int generation;
+        synchronized (lock) {
+            ArrayDeque<PooledFile> queue = readyFiles.get(key);
+            if (queue != null && queue.size() >= POOL_DEPTH) {
+                return;
+            }
+            if (!pendingKeys.add(key)) {
+                return;
+            }
+            generation = generationOf(key);
+        }
+        ensureThread().post(() -> {
+            try {
+                fillPool(dir, position, expectedBytes, key, generation);
+            } finally {
+                synchronized (lock) {
+                    pendingKeys.remove(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * 录制停止时删除该摄像头尚未取用的预分配文件，并作废正在进行的后台预分配
+     * 删除在池线程上进行（大文件在 FAT/exFAT 上释放簇较慢），下次录制时重新预分配
+     *
+     * @param directory 录制目录
+     * @param position 摄像头位置
+     */
+    public void release(String directory, String position) {
+        if (directory == null || position == null) {
+            return;
+        }
+        String key = poolKey(new File(directory), position);
+        final ArrayDeque<PooledFile> released;
+        synchronized (lock) {
+            generations.put(key, generationOf(key) + 1);
+            released = readyFiles.remove(key);
+        }
+        if (released == null || released.isEmpty()) {
+            return;
+        }
+        ensureThread().post(() -> {
+            int deleted = 0;
+            for (PooledFile pooled : released) {
+                if (pooled.file.delete()) {
+                    deleted++;
+                }
+            }
+            AppLog.d(TAG, "Released " + deleted + " preallocated files for " + position);
+        });
+    }
+
+    /**
+     * 丢弃内存中的预分配文件列表（存储设备插拔时调用）
+     * 磁盘上的文件保留，下次使用该目录时重新扫描接管
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            readyFiles.clear();
+            adoptedDirs.clear();
+        }
+        AppLog.d(TAG, "Pool invalidated");
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public String getStats() {
+        synchronized (lock) {
+            int ready = 0;
+            for (ArrayDeque<PooledFile> queue : readyFiles.values()) {
+                ready += queue.size();
+            }
+            long avgPrealloc = pooledAcquireCount > 0 ? totalPreallocMs / pooledAcquireCount : 0;
+            return "预分配命中 " + pooledAcquireCount + "/" + (pooledAcquireCount + coldAcquireCount) +
+                    "，就绪 " + ready + " 个，平均节省 " + avgPrealloc + "ms，恢复遗留分段 " + recoveredSegmentCount + " 个";
+        }
+    }
+
+    // ===== 私有方法 =====
+
+    private static String poolKey(File dir, String position) {
+        return dir.getAbsolutePath() + "|" + position;
+    }
+
+    // 调用方需持有 lock
+    private int generationOf(String key) {
+        Integer generation = generations.get(key);
+        return generation != null ? generation : 0;
+    }
+
+    private Handler ensureThread() {
+        synchronized (lock) {
+            if (poolHandler == null) {
+                poolThread = new HandlerThread("SegmentFilePool");
+                poolThread.start();
+                poolHandler = new Handler(poolThread.getLooper());
+            }
+            return poolHandler;
+        }
+    }
+
+    /**
+     * 将预分配文件重命名为目标路径并打开（调用方线程）
+     */
+    private Lease openPooledFile(PooledFile pooled, File target) {
+        long startNs = System.nanoTime();
+        if (!pooled.file.exists()) {
+            // 缓存目录被清理等情况
+            return null;
+        }
+        if (!pooled.file.renameTo(target)) {
+            AppLog.w(TAG, "Failed to rename pooled file to " + target.getName());
+            pooled.file.delete();
+            return null;
+        }
+        String path = target.getAbsolutePath();
+        synchronized (lock) {
+            openLeasePaths.add(path);
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(target, "rw");
+            long preallocated = raf.length();
+            long openMs = (System.nanoTime() - startNs) / 1_000_000;
+            synchronized (lock) {
+                totalPreallocMs += pooled.preallocMs;
+            }
+            return new Lease(target, raf, preallocated, pooled.preallocMs, openMs, () -> {
+                synchronized (lock) {
+                    openLeasePaths.remove(path);
+                }
+            });
+        } catch (IOException e) {
+            AppLog.w(TAG, "Failed to open pooled file " + target.getName() + ": " + e.getMessage());
+            target.delete();
+            synchronized (lock) {
+                openLeasePaths.remove(path);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 预分配文件（池线程）
+     */
+    private void fillPool(File dir, String position, long expectedBytes, String key, int generation) {
+        boolean firstUse;
+        synchronized (lock) {
+            firstUse = adoptedDirs.add(dir.getAbsolutePath());
+        }
+        if (firstUse) {
+            adoptLeftoverFiles(dir);
+            recoverInterruptedSegments(dir);
+        }
+
+        while (true) {
+            synchronized (lock) {
+                if (generationOf(key) != generation) {
+                    // 调度后录制已停止
+                    return;
+                }
+                ArrayDeque<PooledFile> queue = readyFiles.get(key);
+                if (queue != null && queue.size() >= POOL_DEPTH) {
+                    return;
+                }
+            }
+            if (!dir.isDirectory()) {
+                return;
+            }
+            if (dir.getUsableSpace() < expectedBytes + MIN_FREE_AFTER_PREALLOC) {
+                AppLog.d(TAG, "Not enough space to preallocate segment for " + position +
+                        " (usable " + (dir.getUsableSpace() / 1024 / 1024) + " MB)");
+                return;
+            }
+
+            int seq;
+            synchronized (lock) {
+                seq = ++fileSequence;
+            }
+            File file = new File(dir, FILE_PREFIX + position + "_" + System.currentTimeMillis() + "_" + seq + FILE_SUFFIX);
+            long startNs = System.nanoTime();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                // FAT/exFAT 不支持稀疏文件，扩展长度即会分配簇并填零
+                raf.setLength(expectedBytes);
+                // 同步到设备，确保分配和填零的写回不会与之后的录制争抢带宽
+                raf.getFD().sync();
+            } catch (IOException e) {
+                AppLog.w(TAG, "Failed to preallocate " + file.getName() + ": " + e.getMessage());
+                file.delete();
+                return;
+            }
+            long preallocMs = (System.nanoTime() - startNs) / 1_000_000;
+
+            synchronized (lock) {
+                if (generationOf(key) != generation) {
+                    // 预分配期间录制已停止，文件不再需要
+                    file.delete();
+                    return;
+                }
+                ArrayDeque<PooledFile> queue = readyFiles.get(key);
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    readyFiles.put(key, queue);
+                }
+                queue.addLast(new PooledFile(file, preallocMs));
+            }
+            AppLog.d(TAG, "Preallocated " + (expectedBytes / 1024 / 1024) + " MB for " + position +
+                    " in " + preallocMs + "ms: " + file.getName());
+        }
+    }
+
+    /**
+     * 接管目录中上次运行遗留的预分配文件（池线程）
+     */
+    private void adoptLeftoverFiles(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null || files.length == 0) {
+            return;
+        }
+        int adopted = 0;
+        int deleted = 0;
+        synchronized (lock) {
+            for (File file : files) {
+                String name = file.getName();
+                int end = name.indexOf('_', FILE_PREFIX.length());
+                if (end <= FILE_PREFIX.length()) {
+                    // 无法识别摄像头位置，不会再被取用
+                    if (file.delete()) {
+                        deleted++;
+                    }
+                    continue;
+                }
+                String position = name.substring(FILE_PREFIX.length(), end);
+                String key = poolKey(dir, position);
+                ArrayDeque<PooledFile> queue = readyFiles.get(key);
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    readyFiles.put(key, queue);
+                }
+                if (queue.size() >= POOL_DEPTH) {
+                    // 超出池深度的遗留文件只会占用空间
+                    if (file.delete()) {
+                        deleted++;
+                    }
+                    continue;
+                }
+                // 遗留文件的预分配耗时未知，按 0 统计
+                queue.addLast(new PooledFile(file, 0));
+                adopted++;
+            }
+        }
+        AppLog.d(TAG, "Adopted " + adopted + " leftover pooled files in " + dir.getAbsolutePath()
+                + (deleted > 0 ? ", deleted " + deleted : ""));
+    }
+
+    /**
+     * 截断上次运行中途中断的分段（池线程）
+     * 这些分段已重命名为 .mp4 但没有经过 Lease.close()，长度仍是预分配大小、尾部全零。
+     * 先读最后一块判断尾部是否全零（正常结束的文件只需这一次读取），再按盒子结构找到有效结尾
+     */
+    private void recoverInterruptedSegments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".mp4") && !name.startsWith("."));
+        if (files == null || files.length == 0) {
+            return;
+        }
+        int recovered = 0;
+        ByteBuffer block = ByteBuffer.allocate(PROBE_BLOCK);
+        for (File file : files) {
+            synchronized (lock) {
+                if (openLeasePaths.contains(file.getAbsolutePath())) {
+                    continue;
+                }
+            }
+            // 本次运行中写过的文件不是遗留分段（可能正由未使用预分配的录制器写入）
+            if (file.lastModified() >= createdAtMs) {
+                continue;
+            }
+            long oldLength = file.length();
+            if (oldLength < PROBE_BLOCK * 2) {
+                continue;
+            }
+            long newLength;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                FileChannel channel = raf.getChannel();
+                if (!isZeroBlock(channel, block, oldLength - PROBE_BLOCK)) {
+                    continue;
+                }
+                newLength = findTruncateLength(channel, oldLength, probeWrittenEnd(channel, oldLength));
+                if (newLength >= oldLength) {
+                    continue;
+                }
+                raf.setLength(newLength);
+            } catch (IOException e) {
+                AppLog.w(TAG, "Failed to recover interrupted segment " + file.getName() + ": " + e.getMessage());
+                continue;
+            }
+            recovered++;
+            AppLog.w(TAG, "Truncated interrupted segment " + file.getName() + ": " +
+                    (oldLength / 1024) + " KB -> " + (newLength / 1024) + " KB");
+            RecoveryListener listener = recoveryListener;
+            if (listener != null) {
+                listener.onSegmentRecovered(file, oldLength, newLength);
+            }
+        }
+        if (recovered > 0) {
+            synchronized (lock) {
+                recoveredSegmentCount += recovered;
+            }
+        }
+    }
+
+    /**
+     * 计算预分配分段应截断到的长度
+     * 完整的 MP4（有 moov）以盒子结构为准；否则退回到写入位置，尽量保留已写数据
+     *
+     * @param writtenEnd 已知的写入位置（写入偏移或探测到的非零数据结尾）
+     */
+    static long findTruncateLength(FileChannel channel, long fileLength, long writtenEnd) throws IOException {
+        long[] scan = scanMp4End(channel, fileLength);
+        long length = scan[1] != 0 ? scan[0] : Math.max(scan[0], writtenEnd);
+        return Math.min(length, fileLength);
+    }
+
+    /**
+     * 扫描 MP4 顶层盒子，找到有效数据的结尾
+     * 预分配区域全为 0，读到 size 为 0 或非法的盒子即认为到达结尾
+     *
+     * @return [0] 最后一个有效盒子的结束位置，[1] 是否包含 moov（1 表示文件完整）
+     */
+    static long[] scanMp4End(FileChannel channel, long fileLength) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long offset = 0;
+        boolean hasMoov = false;
+        while (offset + 8 <= fileLength) {
+            header.clear();
+            int read = 0;
+            while (header.hasRemaining()) {
+                int n = channel.read(header, offset + read);
+                if (n <= 0) {
+                    break;
+                }
+                read += n;
+            }
+            if (read < 8) {
+                break;
+            }
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            int type = header.getInt(4);
+            if (!isBoxType(type)) {
+                break;
+            }
+            if (size == 1) {
+                if (read < 16) {
+                    break;
+                }
+                size = header.getLong(8);
+                if (size < 16) {
+                    break;
+                }
+            } else if (size < 8) {
+                // size == 0 表示"延伸到文件末尾"，在预分配文件中无法判断真实结尾
+                break;
+            }
+            if (offset + size > fileLength) {
+                break;
+            }
+            if (type == MOOV) {
+                hasMoov = true;
+            }
+            offset += size;
+        }
+        return new long[] {offset, hasMoov ? 1 : 0};
+    }
+
+    /**
+     * 探测已写入数据的结尾（预分配区域全为 0）
+     * 先按倍数跳跃找到第一个全零块，再二分到 PROBE_BLOCK 精度
+     */
+    static long probeWrittenEnd(FileChannel channel, long fileLength) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(PROBE_BLOCK);
+        if (fileLength < PROBE_BLOCK || isZeroBlock(channel, block, 0)) {
+            return 0;
+        }
+        long lo = 0;  // 已知非零的块
+        long hi = PROBE_BLOCK;
+        while (hi + PROBE_BLOCK <= fileLength && !isZeroBlock(channel, block, hi)) {
+            lo = hi;
+            hi *= 2;
+        }
+        if (hi + PROBE_BLOCK > fileLength) {
+            hi = (fileLength / PROBE_BLOCK) * PROBE_BLOCK;
+            if (hi <= lo || !isZeroBlock(channel, block, hi - PROBE_BLOCK)) {
+                return fileLength;
+            }
+            hi -= PROBE_BLOCK;
+        }
+        // 不变式：lo 块非零，hi 块全零
+        while (hi - lo > PROBE_BLOCK) {
+            long mid = lo + ((hi - lo) / 2 / PROBE_BLOCK) * PROBE_BLOCK;
+            if (isZeroBlock(channel, block, mid)) {
+                hi = mid;
+            } else {
+                lo = mid;
+            }
+        }
+        return hi;
+    }
+
+    private static boolean isZeroBlock(FileChannel channel, ByteBuffer block, long offset) throws IOException {
+        block.clear();
+        while (block.hasRemaining()) {
+            if (channel.read(block, offset + block.position()) <= 0) {
+                break;
+            }
+        }
+        for (int i = 0; i < block.position(); i++) {
+            if (block.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBoxType(int type) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int c = (type >>> shift) & 0xFF;
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == ' ' || c == 0xA9;
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
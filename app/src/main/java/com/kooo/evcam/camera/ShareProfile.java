@@ -0,0 +1,141 @@
+package com.kooo.evcam.camera;
+
+/**
+ * 分享转码参数（纯 Java）
+ * 远程上传前把录制分段压到较低的分辨率和码率，或按文件大小上限反推码率。
+ * 码率不足以支撑当前分辨率时继续降一档分辨率，源文件已经足够小时直接分享原文件。
+ */
+public final class ShareProfile {
+    public static final String PRESET_OFF = "off";
+    public static final String PRESET_720P = "720p";
+    public static final String PRESET_480P = "480p";
+
+    /** 码率下限，低于此值画面已无法辨认 */
+    static final int MIN_BITRATE = 300_000;
+
+    /** 大小上限留出的余量（容器开销和码率控制的超调） */
+    static final double SIZE_CAP_MARGIN = 0.9;
+
+    /** 每像素每帧至少分到的比特数，码率不够时降分辨率 */
+    static final double MIN_BITS_PER_PIXEL = 0.05;
+
+    /** 源码率不超过目标的这个倍数时不转码 */
+    static final double SKIP_BITRATE_RATIO = 1.15;
+
+    /** 可选的短边档位（从高到低） */
+    private static final int[] SHORT_SIDES = {1080, 720, 540, 480, 360, 240};
+
+    private final int maxShortSide;
+    private final int maxBitrate;
+    private final int sizeCapMb;
+
+    ShareProfile(int maxShortSide, int maxBitrate, int sizeCapMb) {
+        this.maxShortSide = maxShortSide;
+        this.maxBitrate = maxBitrate;
+        this.sizeCapMb = sizeCapMb;
+    }
+
+    /**
+     * 从配置创建
+     * @param preset 分辨率档位（PRESET_*）
+     * @param sizeCapMb 单个文件大小上限（MB），0 表示不限制
+     * @return null 表示不转码（档位关闭且没有大小上限）
+     */
+    public static ShareProfile fromConfig(String preset, int sizeCapMb) {
+        int cap = Math.max(0, sizeCapMb);
+        if (PRESET_720P.equals(preset)) {
+            return new ShareProfile(720, 2_500_000, cap);
+        }
+        if (PRESET_480P.equals(preset)) {
+            return new ShareProfile(480, 1_200_000, cap);
+        }
+        // 只设置了大小上限：保持原分辨率档位，码率完全由上限决定
+        return cap > 0 ? new ShareProfile(Integer.MAX_VALUE, Integer.MAX_VALUE, cap) : null;
+    }
+
+    public int getSizeCapMb() {
+        return sizeCapMb;
+    }
+
+    /**
+     * 目标码率：档位码率与大小上限反推码率取较小者
+     */
+    int targetBitrate(long durationUs) {
+        long bitrate = maxBitrate;
+        if (sizeCapMb > 0 && durationUs > 0) {
+            double capBits = sizeCapMb * 1024.0 * 1024.0 * 8.0 * SIZE_CAP_MARGIN;
+            bitrate = Math.min(bitrate, (long) (capBits * 1_000_000.0 / durationUs));
+        }
+        return (int) Math.max(MIN_BITRATE, bitrate);
+    }
+
+    /**
+     * 目标尺寸：保持宽高比，短边不超过档位且码率足够，不放大，宽高取偶数
+     * @return {宽, 高}
+     */
+    int[] targetSize(int srcWidth, int srcHeight, int bitrate, int frameRate) {
+        int srcShort = Math.min(srcWidth, srcHeight);
+        double aspect = Math.max(srcWidth, srcHeight) / (double) srcShort;
+        double pixelBudget = bitrate / (Math.max(1, frameRate) * MIN_BITS_PER_PIXEL);
+        int shortSide = Math.min(srcShort, maxShortSide);
+        if (shortSide * (shortSide * aspect) > pixelBudget) {
+            // 码率不够：逐档降低，最低一档仍不够时就用最低档
+            for (int candidate : SHORT_SIDES) {
+                if (candidate >= shortSide) {
+                    continue;
+                }
+                shortSide = candidate;
+                if (candidate * (candidate * aspect) <= pixelBudget) {
+                    break;
+                }
+            }
+        }
+        if (shortSide == srcShort) {
+            return new int[]{srcWidth, srcHeight};
+        }
+        double scale = shortSide / (double) srcShort;
+        return new int[]{alignEven(srcWidth * scale), alignEven(srcHeight * scale)};
+    }
+
+    /**
+     * 是否需要转码：超过大小上限、短边超过档位或源码率明显高于目标时转码
+     */
+    boolean needsTranscode(long fileBytes, long durationUs, int srcWidth, int srcHeight) {
+        if (durationUs <= 0) {
+            return false;
+        }
+        if (sizeCapMb > 0 && fileBytes > sizeCapMb * 1024L * 1024L) {
+            return true;
+        }
+        if (Math.min(srcWidth, srcHeight) > maxShortSide) {
+            return true;
+        }
+        double srcBitrate = fileBytes * 8.0 * 1_000_000.0 / durationUs;
+        return srcBitrate > targetBitrate(durationUs) * SKIP_BITRATE_RATIO;
+    }
+
+    /**
+     * 按已用时间和已处理的媒体时长线性估算剩余时间
+     * @return 剩余毫秒数，尚无进度时返回 -1
+     */
+    static long estimateRemainingMs(long doneUs, long totalUs, long elapsedMs) {
+        if (doneUs <= 0 || totalUs <= 0 || elapsedMs <= 0) {
+            return -1;
+        }
+        if (doneUs >= totalUs) {
+            return 0;
+        }
+        return (long) (elapsedMs * (double) (totalUs - doneUs) / doneUs);
+    }
+
+    private static int alignEven(double value) {
+        return Math.max(2, (int) Math.round(value / 2.0) * 2);
+    }
+
+    @Override
+    public String toString() {
+        return "ShareProfile{shortSide=" + (maxShortSide == Integer.MAX_VALUE ? "原始" : maxShortSide)
+                + ", bitrate=" + (maxBitrate == Integer.MAX_VALUE ? "按大小" : maxBitrate)
+                + ", sizeCap=" + sizeCapMb + "MB}";
+    }
+}
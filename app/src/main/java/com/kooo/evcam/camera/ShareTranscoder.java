@@ -0,0 +1,603 @@
+package com.kooo.evcam.camera;
+
+import android.content.Context;
+import android.graphics.SurfaceTexture;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.view.Surface;
+
+import com.kooo.evcam.AppConfig;
+import com.kooo.evcam.AppLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 分享转码器：远程上传前把录制分段重新编码为较小的文件
+ *
+ * 解码器直接输出到 SurfaceTexture，经 OpenGL 缩放绘制到编码器的输入 Surface，
+ * 全程在 GPU/硬件编解码器之间传递画面，不做 CPU 像素拷贝。
+ * 转码在单独的后台优先级线程串行执行，编解码器以非实时优先级（KEY_PRIORITY=1）创建，
+ * 录制同时进行时让出硬件资源。源文件已满足参数或转码失败时直接分享原文件。
+ */
+public final class ShareTranscoder {
+    private static final String TAG = "ShareTranscoder";
+
+    /** 转码输出的临时目录（位于 cacheDir 下，上传后删除） */
+    public static final String TEMP_SHARE_DIR = "share_videos";
+
+    private static final String MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC;
+    private static final int DEFAULT_FRAME_RATE = 30;
+    private static final int I_FRAME_INTERVAL = 2;
+    private static final int CODEC_PRIORITY_BACKGROUND = 1;  // 0 实时，1 尽力而为
+    private static final long DEQUEUE_TIMEOUT_US = 10_000;
+    private static final long FRAME_WAIT_MS = 2_500;
+
+    private static volatile ShareTranscoder instance;
+
+    private final Context context;
+    private final AppConfig appConfig;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "ShareTranscoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 进度回调（转码线程调用）
+     */
+    public interface ProgressListener {
+        /**
+         * @param fileName 当前文件
+         * @param percent 全部文件的总进度（0-100）
+         * @param remainingMs 预计剩余时间，尚无法估算时为 -1
+         */
+        void onProgress(String fileName, int percent, long remainingMs);
+    }
+
+    /**
+     * 完成回调（主线程调用）
+     */
+    public interface ResultCallback {
+        /**
+         * @param shareFiles 与源文件一一对应：转码成功为临时目录中的新文件，否则为源文件本身
+         */
+        void onReady(List<File> shareFiles);
+    }
+
+    public static ShareTranscoder getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ShareTranscoder.class) {
+                if (instance == null) {
+                    instance = new ShareTranscoder(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ShareTranscoder(Context context) {
+        this.context = context;
+        this.appConfig = new AppConfig(context);
+    }
+
+    /**
+     * 当前配置的分享参数，null 表示不转码
+     */
+    public ShareProfile getProfile() {
+        return ShareProfile.fromConfig(appConfig.getShareProfile(), appConfig.getShareSizeCapMb());
+    }
+
+    public boolean isEnabled() {
+        return getProfile() != null;
+    }
+
+    /**
+     * 准备分享文件：按分享参数在后台转码，完成后在主线程回调
+     * 未启用分享转码时直接回调源文件
+     */
+    public void prepareForShare(List<File> sources, ProgressListener listener, ResultCallback callback) {
+        ShareProfile profile = getProfile();
+        if (profile == null || sources.isEmpty()) {
+            callback.onReady(new ArrayList<>(sources));
+            return;
+        }
+        executor.execute(() -> {
+            List<File> result = transcodeAll(sources, profile, listener);
+            mainHandler.post(() -> callback.onReady(result));
+        });
+    }
+
+    /**
+     * 删除转码生成的临时文件（源文件不受影响）
+     */
+    public void releaseShareFiles(List<File> shareFiles) {
+        File shareDir = new File(context.getCacheDir(), TEMP_SHARE_DIR);
+        for (File file : shareFiles) {
+            if (shareDir.equals(file.getParentFile()) && file.exists() && !file.delete()) {
+                AppLog.w(TAG, "删除转码文件失败: " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    // ==================== 转码 ====================
+
+    private List<File> transcodeAll(List<File> sources, ShareProfile profile, ProgressListener listener) {
+        File shareDir = new File(context.getCacheDir(), TEMP_SHARE_DIR);
+        if (!shareDir.exists() && !shareDir.mkdirs()) {
+            AppLog.e(TAG, "无法创建转码目录: " + shareDir.getAbsolutePath());
+            return new ArrayList<>(sources);
+        }
+
+        long[] durations = new long[sources.size()];
+        long totalUs = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            durations[i] = probeDurationUs(sources.get(i));
+            totalUs += durations[i];
+        }
+
+        AppLog.d(TAG, "开始分享转码 " + sources.size() + " 个文件, " + profile);
+        Progress progress = new Progress(totalUs, listener);
+        List<File> result = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            File source = sources.get(i);
+            File output = new File(shareDir, source.getName());
+            long begin = System.currentTimeMillis();
+            boolean transcoded = false;
+            try {
+                transcoded = transcode(source, output, profile, progress);
+            } catch (IOException | RuntimeException e) {
+                AppLog.e(TAG, "转码失败，改为分享原文件: " + source.getName(), e);
+            }
+            if (transcoded) {
+                AppLog.d(TAG, "转码完成: " + source.getName() + " " + (source.length() / 1024) + "KB -> "
+                        + (output.length() / 1024) + "KB, " + (System.currentTimeMillis() - begin) + "ms");
+                result.add(output);
+            } else {
+                output.delete();
+                result.add(source);
+            }
+            progress.finishFile(durations[i]);
+        }
+        return result;
+    }
+
+    /**
+     * 转码单个文件
+     * @return false 表示无需转码（源文件已满足参数）
+     */
+    private boolean transcode(File source, File output, ShareProfile profile, Progress progress) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec decoder = null;
+        MediaCodec encoder = null;
+        GlBridge bridge = null;
+        MediaMuxer muxer = null;
+        boolean muxerStarted = false;
+        try {
+            extractor.setDataSource(source.getAbsolutePath());
+            int track = selectVideoTrack(extractor);
+            if (track < 0) {
+                AppLog.w(TAG, "没有视频轨道: " + source.getName());
+                return false;
+            }
+            MediaFormat inputFormat = extractor.getTrackFormat(track);
+            int srcWidth = inputFormat.getInteger(MediaFormat.KEY_WIDTH);
+            int srcHeight = inputFormat.getInteger(MediaFormat.KEY_HEIGHT);
+            long durationUs = inputFormat.containsKey(MediaFormat.KEY_DURATION)
+                    ? inputFormat.getLong(MediaFormat.KEY_DURATION) : 0;
+            int frameRate = inputFormat.containsKey(MediaFormat.KEY_FRAME_RATE)
+                    ? inputFormat.getInteger(MediaFormat.KEY_FRAME_RATE) : DEFAULT_FRAME_RATE;
+            if (!profile.needsTranscode(source.length(), durationUs, srcWidth, srcHeight)) {
+                AppLog.d(TAG, "源文件已满足分享参数: " + source.getName());
+                return false;
+            }
+            int bitrate = profile.targetBitrate(durationUs);
+            int[] size = profile.targetSize(srcWidth, srcHeight, bitrate, frameRate);
+            AppLog.d(TAG, source.getName() + ": " + srcWidth + "x" + srcHeight + " -> " + size[0] + "x" + size[1]
+                    + " @" + (bitrate / 1000) + "kbps");
+            extractor.selectTrack(track);
+
+            MediaFormat outputFormat = MediaFormat.createVideoFormat(MIME_TYPE, size[0], size[1]);
+            outputFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+            outputFormat.setInteger(MediaFormat.KEY_BIT_RATE, bitrate);
+            outputFormat.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+            outputFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL);
+            outputFormat.setInteger(MediaFormat.KEY_PRIORITY, CODEC_PRIORITY_BACKGROUND);
+            encoder = MediaCodec.createEncoderByType(MIME_TYPE);
+            encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            bridge = new GlBridge(encoder.createInputSurface(), size[0], size[1]);
+            encoder.start();
+
+            inputFormat.setInteger(MediaFormat.KEY_PRIORITY, CODEC_PRIORITY_BACKGROUND);
+            decoder = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            decoder.configure(inputFormat, bridge.getDecoderSurface(), null, 0);
+            decoder.start();
+
+            muxer = new MediaMuxer(output.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            if (inputFormat.containsKey(MediaFormat.KEY_ROTATION)) {
+                muxer.setOrientationHint(inputFormat.getInteger(MediaFormat.KEY_ROTATION));
+            }
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            int muxerTrack = -1;
+            boolean inputDone = false;
+            boolean decoderDone = false;
+            boolean encoderDone = false;
+            while (!encoderDone) {
+                // 1. 压缩样本送入解码器
+                if (!inputDone) {
+                    int index = decoder.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                    if (index >= 0) {
+                        ByteBuffer buffer = decoder.getInputBuffer(index);
+                        int sampleSize = extractor.readSampleData(buffer, 0);
+                        if (sampleSize < 0) {
+                            decoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            decoder.queueInputBuffer(index, 0, sampleSize, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                // 2. 解码输出渲染到 SurfaceTexture，再绘制到编码器输入 Surface
+                if (!decoderDone) {
+                    int index = decoder.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+                    if (index >= 0) {
+                        boolean render = info.size > 0;
+                        boolean eos = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                        long ptsUs = info.presentationTimeUs;
+                        decoder.releaseOutputBuffer(index, render);
+                        if (render) {
+                            bridge.awaitNewImage();
+                            bridge.drawImage();
+                            bridge.setPresentationTime(ptsUs * 1000);
+                            bridge.swapBuffers();
+                            progress.update(source.getName(), ptsUs);
+                        }
+                        if (eos) {
+                            encoder.signalEndOfInputStream();
+                            decoderDone = true;
+                        }
+                    }
+                }
+
+                // 3. 取出所有已编码的数据写入 Muxer
+                while (true) {
+                    int index = encoder.dequeueOutputBuffer(info, decoderDone ? DEQUEUE_TIMEOUT_US : 0);
+                    if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                        break;
+                    } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                        muxerTrack = muxer.addTrack(encoder.getOutputFormat());
+                        muxer.start();
+                        muxerStarted = true;
+                    } else if (index >= 0) {
+                        ByteBuffer data = encoder.getOutputBuffer(index);
+                        if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                            info.size = 0;
+                        }
+                        if (info.size > 0 && muxerStarted) {
+                            data.position(info.offset);
+                            data.limit(info.offset + info.size);
+                            muxer.writeSampleData(muxerTrack, data, info);
+                        }
+                        encoder.releaseOutputBuffer(index, false);
+                        if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                            encoderDone = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (!muxerStarted) {
+                throw new IOException("编码器没有输出");
+            }
+            muxer.stop();
+            muxerStarted = false;
+            return true;
+        } finally {
+            extractor.release();
+            if (decoder != null) {
+                try {
+                    decoder.stop();
+                } catch (IllegalStateException ignored) {
+                    // 未启动或已出错
+                }
+                decoder.release();
+            }
+            if (encoder != null) {
+                try {
+                    encoder.stop();
+                } catch (IllegalStateException ignored) {
+                    // 未启动或已出错
+                }
+                encoder.release();
+            }
+            if (bridge != null) {
+                bridge.release();
+            }
+            if (muxer != null) {
+                if (muxerStarted) {
+                    try {
+                        muxer.stop();
+                    } catch (IllegalStateException ignored) {
+                        // 中途失败的文件会被删除
+                    }
+                }
+                muxer.release();
+            }
+        }
+    }
+
+    private static long probeDurationUs(File file) {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(file.getAbsolutePath());
+            int track = selectVideoTrack(extractor);
+            if (track >= 0) {
+                MediaFormat format = extractor.getTrackFormat(track);
+                if (format.containsKey(MediaFormat.KEY_DURATION)) {
+                    return format.getLong(MediaFormat.KEY_DURATION);
+                }
+            }
+        } catch (IOException e) {
+            AppLog.w(TAG, "无法读取时长: " + file.getName());
+        } finally {
+            extractor.release();
+        }
+        return 0;
+    }
+
+    private static int selectVideoTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("video/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 跨文件的总进度和剩余时间，百分比变化时才回调
+     */
+    private static final class Progress {
+        private final long totalUs;
+        private final ProgressListener listener;
+        private final long startMs = System.currentTimeMillis();
+        private long finishedUs = 0;
+        private int lastPercent = -1;
+
+        Progress(long totalUs, ProgressListener listener) {
+            this.totalUs = totalUs;
+            this.listener = listener;
+        }
+
+        void update(String fileName, long fileUs) {
+            if (listener == null || totalUs <= 0) {
+                return;
+            }
+            long doneUs = Math.min(totalUs, finishedUs + Math.max(0, fileUs));
+            int percent = (int) (doneUs * 100 / totalUs);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                listener.onProgress(fileName, percent,
+                        ShareProfile.estimateRemainingMs(doneUs, totalUs, System.currentTimeMillis() - startMs));
+            }
+        }
+
+        void finishFile(long fileDurationUs) {
+            finishedUs += fileDurationUs;
+        }
+    }
+
+    /**
+     * 解码器到编码器的 GL 桥：解码输出到 OES 纹理，按编码尺寸绘制到编码器的输入 Surface
+     * 在创建它的转码线程上使用，帧到达回调在主线程，通过锁通知转码线程
+     */
+    private static final class GlBridge implements SurfaceTexture.OnFrameAvailableListener {
+        private final Surface encoderSurface;
+        private final int width;
+        private final int height;
+        private final Object frameLock = new Object();
+        private final float[] mvpMatrix = new float[16];
+        private final float[] texMatrix = new float[16];
+        private boolean frameAvailable;
+
+        private EGLDisplay eglDisplay = EGL14.EGL_NO_DISPLAY;
+        private EGLContext eglContext = EGL14.EGL_NO_CONTEXT;
+        private EGLSurface eglSurface = EGL14.EGL_NO_SURFACE;
+        private int program;
+        private int textureId;
+        private int positionHandle;
+        private int texCoordHandle;
+        private int mvpMatrixHandle;
+        private int texMatrixHandle;
+        private FloatBuffer vertexBuffer;
+        private FloatBuffer texCoordBuffer;
+        private SurfaceTexture surfaceTexture;
+        private Surface decoderSurface;
+
+        GlBridge(Surface encoderSurface, int width, int height) {
+            this.encoderSurface = encoderSurface;
+            this.width = width;
+            this.height = height;
+            initEgl();
+            initGl();
+        }
+
+        Surface getDecoderSurface() {
+            return decoderSurface;
+        }
+
+        @Override
+        public void onFrameAvailable(SurfaceTexture st) {
+            synchronized (frameLock) {
+                frameAvailable = true;
+                frameLock.notifyAll();
+            }
+        }
+
+        void awaitNewImage() throws IOException {
+            synchronized (frameLock) {
+                long deadline = System.currentTimeMillis() + FRAME_WAIT_MS;
+                while (!frameAvailable) {
+                    long waitMs = deadline - System.currentTimeMillis();
+                    if (waitMs <= 0) {
+                        throw new IOException("等待解码帧超时");
+                    }
+                    try {
+                        frameLock.wait(waitMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("转码被中断");
+                    }
+                }
+                frameAvailable = false;
+            }
+            surfaceTexture.updateTexImage();
+        }
+
+        void drawImage() {
+            surfaceTexture.getTransformMatrix(texMatrix);
+            GLES20.glViewport(0, 0, width, height);
+            GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+            GLES20.glUseProgram(program);
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+            GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, mvpMatrix, 0);
+            GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, texMatrix, 0);
+            GLES20.glEnableVertexAttribArray(positionHandle);
+            GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+            GLES20.glEnableVertexAttribArray(texCoordHandle);
+            GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texCoordBuffer);
+            GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+            GLES20.glDisableVertexAttribArray(positionHandle);
+            GLES20.glDisableVertexAttribArray(texCoordHandle);
+        }
+
+        void setPresentationTime(long presentationTimeNs) {
+            EGLExt.eglPresentationTimeANDROID(eglDisplay, eglSurface, presentationTimeNs);
+        }
+
+        void swapBuffers() {
+            EGL14.eglSwapBuffers(eglDisplay, eglSurface);
+        }
+
+        void release() {
+            if (eglDisplay != EGL14.EGL_NO_DISPLAY) {
+                EGL14.eglMakeCurrent(eglDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+                if (eglSurface != EGL14.EGL_NO_SURFACE) {
+                    EGL14.eglDestroySurface(eglDisplay, eglSurface);
+                }
+                if (eglContext != EGL14.EGL_NO_CONTEXT) {
+                    EGL14.eglDestroyContext(eglDisplay, eglContext);
+                }
+                EGL14.eglReleaseThread();
+                EGL14.eglTerminate(eglDisplay);
+            }
+            eglDisplay = EGL14.EGL_NO_DISPLAY;
+            eglContext = EGL14.EGL_NO_CONTEXT;
+            eglSurface = EGL14.EGL_NO_SURFACE;
+            if (decoderSurface != null) {
+                decoderSurface.release();
+            }
+            if (surfaceTexture != null) {
+                surfaceTexture.release();
+            }
+            encoderSurface.release();
+        }
+
+        private void initEgl() {
+            eglDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+            int[] version = new int[2];
+            if (eglDisplay == EGL14.EGL_NO_DISPLAY || !EGL14.eglInitialize(eglDisplay, version, 0, version, 1)) {
+                throw new RuntimeException("Unable to initialize EGL14");
+            }
+            int[] attribList = {
+                    EGL14.EGL_RED_SIZE, 8,
+                    EGL14.EGL_GREEN_SIZE, 8,
+                    EGL14.EGL_BLUE_SIZE, 8,
+                    EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                    EGLExt.EGL_RECORDABLE_ANDROID, 1,
+                    EGL14.EGL_NONE
+            };
+            EGLConfig[] configs = new EGLConfig[1];
+            int[] numConfigs = new int[1];
+            if (!EGL14.eglChooseConfig(eglDisplay, attribList, 0, configs, 0, 1, numConfigs, 0)
+                    || numConfigs[0] == 0) {
+                throw new RuntimeException("Unable to find suitable EGL config");
+            }
+            int[] contextAttribList = {
+                    EGL14.EGL_CONTEXT_CLIENT_VERSION, 2,
+                    EGL14.EGL_NONE
+            };
+            eglContext = EGL14.eglCreateContext(eglDisplay, configs[0], EGL14.EGL_NO_CONTEXT, contextAttribList, 0);
+            if (eglContext == EGL14.EGL_NO_CONTEXT) {
+                throw new RuntimeException("Unable to create EGL context");
+            }
+            eglSurface = EGL14.eglCreateWindowSurface(eglDisplay, configs[0], encoderSurface,
+                    new int[]{EGL14.EGL_NONE}, 0);
+            if (eglSurface == EGL14.EGL_NO_SURFACE) {
+                throw new RuntimeException("Unable to create EGL window surface");
+            }
+            if (!EGL14.eglMakeCurrent(eglDisplay, eglSurface, eglSurface, eglContext)) {
+                throw new RuntimeException("eglMakeCurrent failed");
+            }
+        }
+
+        private void initGl() {
+            program = EglSurfaceEncoder.createProgram(EglSurfaceEncoder.VERTEX_SHADER,
+                    EglSurfaceEncoder.FRAGMENT_SHADER);
+            if (program == 0) {
+                throw new RuntimeException("Unable to create shader program");
+            }
+            positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+            texCoordHandle = GLES20.glGetAttribLocation(program, "aTextureCoord");
+            mvpMatrixHandle = GLES20.glGetUniformLocation(program, "uMVPMatrix");
+            texMatrixHandle = GLES20.glGetUniformLocation(program, "uTexMatrix");
+            Matrix.setIdentityM(mvpMatrix, 0);
+            vertexBuffer = EglSurfaceEncoder.createFloatBuffer(EglSurfaceEncoder.VERTICES);
+            texCoordBuffer = EglSurfaceEncoder.createFloatBuffer(EglSurfaceEncoder.TEXTURE_COORDS);
+
+            int[] textures = new int[1];
+            GLES20.glGenTextures(1, textures, 0);
+            textureId = textures[0];
+            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+            // 转码线程没有 Looper，帧到达回调交给主线程
+            surfaceTexture = new SurfaceTexture(textureId);
+            surfaceTexture.setOnFrameAvailableListener(this, new Handler(Looper.getMainLooper()));
+            decoderSurface = new Surface(surfaceTexture);
+        }
+    }
+}
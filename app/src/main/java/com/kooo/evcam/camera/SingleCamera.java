@@ -3,6 +3,7 @@ package com.kooo.evcam.camera;
 
 import com.kooo.evcam.AppConfig;
 import com.kooo.evcam.AppLog;
+import com.kooo.evcam.RecordingCatalog;
 import com.kooo.evcam.StorageHelper;
 import android.content.Context;
 import android.graphics.ImageFormat;
@@ -61,9 +62,25 @@ public class SingleCamera {
     private Surface previewSurface;  // 预览Surface（缓存以避免重复创建）
     private ImageReader imageReader;  // 用于拍照的ImageReader
     private boolean singleOutputMode = false;  // 单一输出模式（用于不支持多路输出的车机平台）
+
+    // 【低功耗待机】无人观看且未录制时降到最低帧率和最小输出尺寸
+    private volatile boolean standbyMode = false;
+    private Size standbySize;  // 待机输出尺寸（打开摄像头时确定）
+    private Range<Integer> standbyFpsRange;  // 待机 AE 目标帧率范围
+
+    // 【硬件拍照】常驻 JPEG ImageReader 加入会话（不加入重复请求），拍照时只提交一次单帧请求
+    private boolean hardwareCaptureEnabled = false;
+    private boolean jpegOutputFailed = false;  // 带 JPEG 输出的会话配置失败，本次打开期间回退为截图拍照
+    private volatile boolean jpegOutputInSession = false;  // 当前会话是否包含 JPEG 输出
+    private volatile java.util.List<Surface> streamTargets = java.util.Collections.emptyList();  // 当前重复请求的输出
+    private final java.util.concurrent.ConcurrentLinkedQueue<PendingShot> pendingShots = new java.util.concurrent.ConcurrentLinkedQueue<>();
+    private static final int JPEG_MAX_IMAGES = 2;
+    private static final byte JPEG_QUALITY = 90;
     
     // 亮度/降噪调节相关
     private CaptureRequest.Builder currentRequestBuilder;  // 当前的请求构建器（用于实时更新参数）
+    private volatile java.util.List<Surface> sessionRequestTargets = java.util.Collections.emptyList();  // 会话创建时重复请求的输出
+    private CameraCaptureSession.CaptureCallback sessionCaptureCallback;  // 会话创建时重复请求的帧回调
     private CameraCharacteristics cameraCharacteristics;  // 摄像头特性（缓存）
     private boolean imageAdjustEnabled = false;  // 是否启用亮度/降噪调节
     
@@ -78,6 +95,7 @@ public class SingleCamera {
 
     // 调试：帧捕获监控
     private long frameCount = 0;  // 总帧数
+    private volatile boolean firstFrameReported = false;  // 当前会话是否已回调首帧
     private long lastFrameLogTime = 0;  // 上次输出帧计数的时间
     private static final long FRAME_LOG_INTERVAL_MS = 5000;  // 每5秒输出一次帧计数
 
@@ -228,6 +246,16 @@ public class SingleCamera {
         return singleOutputMode;
     }
 
+    /**
+     * 设置硬件拍照模式（下次打开摄像头时生效）
+     * 启用后会话中常驻一个 JPEG ImageReader，拍照由摄像头直接输出 JPEG，
+     * 不再从 TextureView 截图和软件压缩；单一输出模式或会话配置失败时自动回退为截图拍照
+     */
+    public void setHardwareCaptureMode(boolean enabled) {
+        this.hardwareCaptureEnabled = enabled;
+        AppLog.d(TAG, "Camera " + cameraId + " hardware capture mode: " + (enabled ? "ENABLED" : "DISABLED"));
+    }
+
     // 当前录制模式（用于调试模式区分）
     private boolean isCodecRecording = false;
 
@@ -276,6 +304,7 @@ public class SingleCamera {
             try {
                 // 停止向所有 Surface（包括 recordSurface）发送帧
                 captureSession.stopRepeating();
+                streamTargets = java.util.Collections.emptyList();
                 AppLog.d(TAG, "Camera " + cameraId + " paused recording surface (stopped repeating request)");
             } catch (CameraAccessException e) {
                 AppLog.e(TAG, "Camera " + cameraId + " failed to pause recording surface", e);
@@ -330,6 +359,7 @@ public class SingleCamera {
             
             // 替换当前的重复请求（预览继续，但不再向录制 Surface 发送帧）
             captureSession.setRepeatingRequest(previewOnlyBuilder.build(), null, backgroundHandler);
+            streamTargets = java.util.Collections.singletonList(previewSurface);  // 硬件拍照不再输出到录制 Surface
             AppLog.d(TAG, "Camera " + cameraId + " switched to preview-only mode (preview continues, recording paused)");
             return true;
             
@@ -349,6 +379,28 @@ public class SingleCamera {
         }
     }
 
+    /**
+     * 恢复向录制 Surface 发送帧（与 switchToPreviewOnlyMode() 配对）
+     * 持久录制 Surface 在分段之间不变，会话不需要重建，重新提交会话创建时的完整请求即可
+     *
+     * @return false 表示无法恢复，调用方应回退到 recreateSession()
+     */
+    public boolean resumeRecordOutput() {
+        if (captureSession == null || currentRequestBuilder == null || recordSurface == null) {
+            AppLog.w(TAG, "Camera " + cameraId + " cannot resume record output: session/request/record surface not ready");
+            return false;
+        }
+        try {
+            captureSession.setRepeatingRequest(currentRequestBuilder.build(), sessionCaptureCallback, backgroundHandler);
+            streamTargets = sessionRequestTargets;
+            AppLog.d(TAG, "Camera " + cameraId + " resumed record output without session rebuild");
+            return true;
+        } catch (CameraAccessException | IllegalStateException | IllegalArgumentException e) {
+            AppLog.w(TAG, "Camera " + cameraId + " failed to resume record output: " + e.getMessage());
+            return false;
+        }
+    }
+
     public Surface getSurface() {
         if (textureView != null && textureView.isAvailable()) {
             SurfaceTexture surfaceTexture = textureView.getSurfaceTexture();
@@ -457,6 +509,10 @@ public class SingleCamera {
      * 启动后台线程
      */
     private void startBackgroundThread() {
+        // 异步打开时线程已提前启动，openCamera 在该线程上执行时不再另起一个
+        if (backgroundThread != null && backgroundThread.isAlive()) {
+            return;
+        }
         backgroundThread = new HandlerThread("Camera-" + cameraId);
         backgroundThread.start();
         backgroundHandler = new Handler(backgroundThread.getLooper());
@@ -501,6 +557,21 @@ public class SingleCamera {
         }
     }
 
+    private final Runnable asyncOpenRunnable = this::openCamera;
+
+    /**
+     * 在摄像头自己的后台线程上打开摄像头
+     * 查询摄像头特性、选择尺寸等同步步骤不再占用主线程，多路摄像头可以同时进行
+     */
+    public void openCameraAsync() {
+        if (!isPrimaryInstance) {
+            openCamera();
+            return;
+        }
+        startBackgroundThread();
+        backgroundHandler.post(asyncOpenRunnable);
+    }
+
     /**
      * 打开摄像头
      */
@@ -597,10 +668,17 @@ public class SingleCamera {
                 // 选择合适的分辨率
                 previewSize = chooseOptimalSize(sizes);
                 AppLog.d(TAG, "Camera " + cameraId + " selected preview size: " + previewSize);
+                resolveStandbyProfile(characteristics, sizes);
 
-                // 不在这里初始化ImageReader，改为拍照时按需创建
-                // 这样可以避免占用额外的缓冲区，防止超过系统限制(4个buffer)
-                AppLog.d(TAG, "Camera " + cameraId + " ImageReader will be created on demand when taking picture");
+                if (hardwareCaptureEnabled) {
+                    // 硬件拍照：JPEG ImageReader 随摄像头打开创建，开始/停止录制、分段切换重建会话时复用
+                    jpegOutputFailed = false;
+                    setupJpegReader(map);
+                } else {
+                    // 不在这里初始化ImageReader，从预览画面截图拍照
+                    // 这样可以避免占用额外的缓冲区，防止超过系统限制(4个buffer)
+                    AppLog.d(TAG, "Camera " + cameraId + " ImageReader not used, pictures are taken from preview");
+                }
 
                 // 通知回调预览尺寸已确定
                 if (callback != null && previewSize != null) {
@@ -918,11 +996,15 @@ public class SingleCamera {
             }
 
 
+            // 【低功耗待机】只影响纯预览会话，录制中的会话保持原尺寸和帧率
+            final boolean standbyStream = standbyMode && recordSurface == null;
+            Size bufferSize = standbyStream && standbySize != null ? standbySize : previewSize;
+
             // 设置预览尺寸为最小值以减少资源消耗
-            if (previewSize != null) {
+            if (bufferSize != null) {
                 // 使用最小的预览尺寸 (例如 320x240)
-                surfaceTexture.setDefaultBufferSize(previewSize.getWidth(), previewSize.getHeight());
-                AppLog.d(TAG, "Camera " + cameraId + " buffer size set to: " + previewSize);
+                surfaceTexture.setDefaultBufferSize(bufferSize.getWidth(), bufferSize.getHeight());
+                AppLog.d(TAG, "Camera " + cameraId + " buffer size set to: " + bufferSize + (standbyStream ? " (standby)" : ""));
             } else {
                 AppLog.e(TAG, "Camera " + cameraId + " Cannot set buffer size - previewSize: " + previewSize + ", SurfaceTexture: " + surfaceTexture);
             }
@@ -962,6 +1044,10 @@ public class SingleCamera {
             if (imageAdjustEnabled) {
                 applyImageAdjustParamsFromConfig(previewRequestBuilder);
             }
+
+            if (standbyStream && standbyFpsRange != null) {
+                previewRequestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, standbyFpsRange);
+            }
             
             // 准备所有输出Surface
             java.util.List<Surface> surfaces = new java.util.ArrayList<>();
@@ -998,8 +1084,16 @@ public class SingleCamera {
                 }
             }
 
-            // 不再在预览会话中添加ImageReader Surface
-            // ImageReader将在拍照时按需创建，避免占用额外缓冲区
+            // 【硬件拍照】JPEG 输出只加入会话，不加入重复请求，平时不产生任何 JPEG 帧
+            // 未启用时不在预览会话中添加ImageReader Surface，避免占用额外缓冲区
+            final java.util.List<Surface> requestTargets = new java.util.ArrayList<>(surfaces);
+            final boolean withJpegOutput = hardwareCaptureEnabled && !jpegOutputFailed && !singleOutputMode
+                    && imageReader != null;
+            jpegOutputInSession = false;
+            if (withJpegOutput) {
+                surfaces.add(imageReader.getSurface());
+                AppLog.d(TAG, "Camera " + cameraId + " Added JPEG reader surface to session");
+            }
 
             AppLog.d(TAG, "Camera " + cameraId + " Total surfaces: " + surfaces.size());
             
@@ -1034,9 +1128,13 @@ public class SingleCamera {
                     }
 
                     captureSession = session;
+                    streamTargets = requestTargets;
+                    sessionRequestTargets = requestTargets;
+                    jpegOutputInSession = withJpegOutput;
                     try {
                         // 重置帧计数
                         frameCount = 0;
+                        firstFrameReported = false;
                         lastFrameLogTime = System.currentTimeMillis();
 
                         // 创建 CaptureCallback 来监控帧捕获（调试用）
@@ -1047,6 +1145,13 @@ public class SingleCamera {
                                                           @NonNull TotalCaptureResult result) {
                                 frameCount++;
                                 long now = System.currentTimeMillis();
+
+                                if (!firstFrameReported) {
+                                    firstFrameReported = true;
+                                    if (callback != null) {
+                                        callback.onFirstFrame(cameraId);
+                                    }
+                                }
                                 
                                 // 读取相机实际使用的参数（只读取一次或定期读取）
                                 if (!hasReadActualParams || frameCount == 1) {
@@ -1074,6 +1179,8 @@ public class SingleCamera {
                             }
                         };
 
+                        sessionCaptureCallback = captureCallback;
+
                         // 开始预览
                         AppLog.d(TAG, "Camera " + cameraId + " Setting repeating request...");
                         
@@ -1104,6 +1211,20 @@ public class SingleCamera {
                     AppLog.e(TAG, "  1. Device does not support simultaneous preview and recording surfaces");
                     AppLog.e(TAG, "  2. Resolution mismatch between preview (" + previewSize + ") and recording");
                     AppLog.e(TAG, "  3. Device resource limitations");
+
+                    // 带 JPEG 输出时先去掉 JPEG 输出重试（回退为截图拍照），不影响录制
+                    if (withJpegOutput) {
+                        AppLog.w(TAG, "Camera " + cameraId + " Retrying session without JPEG reader (fallback to preview capture)");
+                        jpegOutputFailed = true;
+                        if (backgroundHandler != null) {
+                            backgroundHandler.postDelayed(() -> {
+                                if (cameraDevice != null) {
+                                    createCameraPreviewSession();
+                                }
+                            }, 100);
+                        }
+                        return;
+                    }
                     
                     // 如果是因为录制 Surface 导致的失败，尝试只使用预览 Surface
                     if (recordSurface != null) {
@@ -1163,11 +1284,61 @@ public class SingleCamera {
         }
     }
 
+    /**
+     * 【低功耗待机】切换待机状态
+     * 待机时纯预览会话使用最小输出尺寸和最低 AE 目标帧率；录制中只记录状态，录制结束重建会话时生效
+     */
+    public void setStandbyMode(boolean enabled) {
+        if (standbyMode == enabled) {
+            return;
+        }
+        standbyMode = enabled;
+        AppLog.d(TAG, "Camera " + cameraId + " standby " + (enabled ? "ON: " + standbySize + " @ " + standbyFpsRange : "OFF"));
+        if (recordSurface == null) {
+            recreateSession();
+        }
+    }
+
+    public boolean isStandbyMode() {
+        return standbyMode;
+    }
+
+    /**
+     * 确定待机时的输出尺寸和帧率范围
+     */
+    private void resolveStandbyProfile(CameraCharacteristics characteristics, Size[] sizes) {
+        int[] widths = new int[sizes.length];
+        int[] heights = new int[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            widths[i] = sizes[i].getWidth();
+            heights[i] = sizes[i].getHeight();
+        }
+        int sizeIndex = StandbyProfile.chooseSize(widths, heights,
+                previewSize != null ? previewSize.getWidth() : 0, previewSize != null ? previewSize.getHeight() : 0);
+        standbySize = sizeIndex >= 0 ? sizes[sizeIndex] : null;
+
+        standbyFpsRange = null;
+        Range<Integer>[] ranges = characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        if (ranges != null && ranges.length > 0) {
+            int[] lowers = new int[ranges.length];
+            int[] uppers = new int[ranges.length];
+            for (int i = 0; i < ranges.length; i++) {
+                lowers[i] = ranges[i].getLower();
+                uppers[i] = ranges[i].getUpper();
+            }
+            int rangeIndex = StandbyProfile.chooseFpsRange(lowers, uppers);
+            standbyFpsRange = rangeIndex >= 0 ? ranges[rangeIndex] : null;
+        }
+        AppLog.d(TAG, "Camera " + cameraId + " standby profile: " + standbySize + " @ " + standbyFpsRange + " fps");
+    }
+
     /**
      * 重新创建会话（用于开始/停止录制时）
      */
     public void recreateSession() {
         if (cameraDevice != null) {
+            jpegOutputInSession = false;
+            failPendingShots("session recreated");
             if (captureSession != null) {
                 try {
                     captureSession.close();
@@ -1212,13 +1383,32 @@ public class SingleCamera {
      * @param saveDelayMs 保存文件前的延迟时间（毫秒）
      */
     public void takePicture(String timestamp, int saveDelayMs) {
+        takePicture(timestamp, saveDelayMs, null);
+    }
+
+    /**
+     * 拍照并上报到多路抓拍批次（硬件拍照可用时走 JPEG 输出，否则从预览截图，不延迟保存）
+     * @param timestamp 文件命名用的时间戳
+     * @param batch 完成后上报的批次
+     */
+    void takePicture(String timestamp, PhotoCaptureBatch batch) {
+        if (jpegOutputInSession && backgroundHandler != null) {
+            backgroundHandler.post(() -> captureJpeg(timestamp, batch));
+            return;
+        }
+        takePicture(timestamp, 0, batch);
+    }
+
+    private void takePicture(String timestamp, int saveDelayMs, PhotoCaptureBatch batch) {
         if (textureView == null || !textureView.isAvailable()) {
             AppLog.e(TAG, "Camera " + cameraId + " TextureView not available");
+            reportShot(batch, false);
             return;
         }
 
         if (previewSize == null) {
             AppLog.e(TAG, "Camera " + cameraId + " preview size not available");
+            reportShot(batch, false);
             return;
         }
 
@@ -1246,16 +1436,215 @@ public class SingleCamera {
                         }
                         
                         // 3. 保存文件
-                        saveBitmapAsJPEG(bitmap, timestamp);
+                        boolean saved = saveBitmapAsJPEG(bitmap, timestamp);
                         bitmap.recycle();
                         AppLog.d(TAG, "Camera " + cameraId + " picture saved");
+                        reportShot(batch, saved);
                     } else {
                         AppLog.e(TAG, "Camera " + cameraId + " failed to get bitmap from TextureView");
+                        reportShot(batch, false);
                     }
                 } catch (Exception e) {
                     AppLog.e(TAG, "Camera " + cameraId + " error capturing picture", e);
+                    reportShot(batch, false);
                 }
             });
+        } else {
+            reportShot(batch, false);
+        }
+    }
+
+    /**
+     * 把当前预览画面复制到调用方预分配的 Bitmap（连拍/延时拍摄用，不分配新 Bitmap）
+     * 画面按 target 尺寸缩放
+     * @return false 表示预览不可用
+     */
+    boolean copyPreviewFrame(android.graphics.Bitmap target) {
+        if (textureView == null || !textureView.isAvailable() || !isConnected()) {
+            return false;
+        }
+        try {
+            return textureView.getBitmap(target) != null;
+        } catch (Exception e) {
+            AppLog.w(TAG, "Camera " + cameraId + " failed to copy preview frame: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // ==================== 硬件拍照 ====================
+
+    /**
+     * 一次待出图的硬件拍照请求（JPEG 按提交顺序输出）
+     */
+    private static class PendingShot {
+        final String timestamp;
+        final PhotoCaptureBatch batch;
+        final long requestNs;
+
+        PendingShot(String timestamp, PhotoCaptureBatch batch, long requestNs) {
+            this.timestamp = timestamp;
+            this.batch = batch;
+            this.requestNs = requestNs;
+        }
+    }
+
+    /**
+     * 创建（或复用）常驻的 JPEG ImageReader
+     */
+    private void setupJpegReader(StreamConfigurationMap map) {
+        Size jpegSize = chooseJpegSize(map.getOutputSizes(ImageFormat.JPEG));
+        if (jpegSize == null) {
+            AppLog.w(TAG, "Camera " + cameraId + " has no JPEG output sizes, fallback to preview capture");
+            return;
+        }
+        if (imageReader != null) {
+            if (imageReader.getWidth() == jpegSize.getWidth() && imageReader.getHeight() == jpegSize.getHeight()) {
+                // 后台线程可能已重建，重新绑定回调线程
+                imageReader.setOnImageAvailableListener(this::onJpegAvailable, backgroundHandler);
+                return;
+            }
+            imageReader.close();
+            imageReader = null;
+        }
+        imageReader = ImageReader.newInstance(jpegSize.getWidth(), jpegSize.getHeight(), ImageFormat.JPEG, JPEG_MAX_IMAGES);
+        imageReader.setOnImageAvailableListener(this::onJpegAvailable, backgroundHandler);
+        AppLog.d(TAG, "Camera " + cameraId + " JPEG reader created: " + jpegSize);
+    }
+
+    /**
+     * 选择 JPEG 尺寸：优先与预览一致（与截图拍照的画面相同），否则取能覆盖预览的最小尺寸，再否则取最大尺寸
+     */
+    private Size chooseJpegSize(Size[] sizes) {
+        if (sizes == null || sizes.length == 0) {
+            return null;
+        }
+        Size covering = null;
+        Size largest = null;
+        for (Size size : sizes) {
+            if (previewSize != null && size.equals(previewSize)) {
+                return size;
+            }
+            long area = (long) size.getWidth() * size.getHeight();
+            if (largest == null || area > (long) largest.getWidth() * largest.getHeight()) {
+                largest = size;
+            }
+            if (previewSize != null && size.getWidth() >= previewSize.getWidth()
+                    && size.getHeight() >= previewSize.getHeight()
+                    && (covering == null || area < (long) covering.getWidth() * covering.getHeight())) {
+                covering = size;
+            }
+        }
+        return covering != null ? covering : largest;
+    }
+
+    /**
+     * 提交单帧 JPEG 请求（在后台线程调用）
+     * 录制中使用 TEMPLATE_VIDEO_SNAPSHOT，并同时输出到预览/录制 Surface，录制不丢帧
+     */
+    private void captureJpeg(String timestamp, PhotoCaptureBatch batch) {
+        CameraCaptureSession session = captureSession;
+        ImageReader reader = imageReader;
+        if (!jpegOutputInSession || session == null || reader == null || cameraDevice == null) {
+            takePicture(timestamp, 0, batch);
+            return;
+        }
+
+        PendingShot shot = new PendingShot(timestamp, batch, System.nanoTime());
+        try {
+            int template = (recordSurface != null) ? CameraDevice.TEMPLATE_VIDEO_SNAPSHOT : CameraDevice.TEMPLATE_STILL_CAPTURE;
+            CaptureRequest.Builder builder = cameraDevice.createCaptureRequest(template);
+            builder.addTarget(reader.getSurface());
+            for (Surface target : streamTargets) {
+                builder.addTarget(target);
+            }
+            if (imageAdjustEnabled) {
+                applyImageAdjustParamsFromConfig(builder);
+            }
+            builder.set(CaptureRequest.JPEG_QUALITY, JPEG_QUALITY);
+            builder.set(CaptureRequest.JPEG_ORIENTATION, customRotation);
+
+            pendingShots.add(shot);
+            session.capture(builder.build(), new CameraCaptureSession.CaptureCallback() {
+                @Override
+                public void onCaptureFailed(@NonNull CameraCaptureSession session,
+                                            @NonNull CaptureRequest request,
+                                            @NonNull android.hardware.camera2.CaptureFailure failure) {
+                    AppLog.e(TAG, "Camera " + cameraId + " JPEG capture failed, reason: " + failure.getReason());
+                    if (pendingShots.remove(shot)) {
+                        reportShot(shot.batch, false);
+                    }
+                }
+            }, backgroundHandler);
+            AppLog.d(TAG, "Camera " + cameraId + " JPEG capture submitted (" + reader.getWidth() + "x" + reader.getHeight() + ")");
+        } catch (CameraAccessException | IllegalStateException | IllegalArgumentException e) {
+            AppLog.w(TAG, "Camera " + cameraId + " JPEG capture unavailable, fallback to preview capture: " + e.getMessage());
+            pendingShots.remove(shot);
+            takePicture(timestamp, 0, batch);
+        }
+    }
+
+    /**
+     * JPEG 出图：复制到缓冲池后立即关闭 Image，交给写盘线程
+     */
+    private void onJpegAvailable(ImageReader reader) {
+        Image image;
+        try {
+            image = reader.acquireNextImage();
+        } catch (IllegalStateException e) {
+            AppLog.w(TAG, "Camera " + cameraId + " failed to acquire JPEG image: " + e.getMessage());
+            return;
+        }
+        if (image == null) {
+            return;
+        }
+
+        PhotoWriter writer = PhotoWriter.getInstance();
+        byte[] data;
+        int length;
+        try {
+            ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+            length = buffer.remaining();
+            data = writer.getBufferPool().obtain(length);
+            buffer.get(data, 0, length);
+        } finally {
+            image.close();
+        }
+
+        PendingShot shot = pendingShots.poll();
+        if (shot == null) {
+            AppLog.w(TAG, "Camera " + cameraId + " JPEG image without pending request, dropped");
+            writer.getBufferPool().release(data);
+            return;
+        }
+
+        long captureMs = (System.nanoTime() - shot.requestNs) / 1_000_000;
+        File photoFile = createPhotoFile(shot.timestamp);
+        String watermark = new AppConfig(context).isTimestampWatermarkEnabled() ? shot.timestamp : null;
+        writer.writeJpeg(photoFile, data, length, watermark, (file, success) -> {
+            if (success) {
+                AppLog.i(TAG, "Photo saved: " + file.getAbsolutePath() + " (" + (length / 1024) + "KB, capture "
+                        + captureMs + "ms, total " + (System.nanoTime() - shot.requestNs) / 1_000_000 + "ms)");
+                // 写入录制索引（回看列表和远程查找直接查询索引）
+                RecordingCatalog.getInstance(context).onFileAdded(file);
+            }
+            reportShot(shot.batch, success);
+        });
+    }
+
+    /**
+     * 会话关闭时未出图的请求不会再有结果，直接上报失败
+     */
+    private void failPendingShots(String reason) {
+        PendingShot shot;
+        while ((shot = pendingShots.poll()) != null) {
+            AppLog.w(TAG, "Camera " + cameraId + " pending JPEG capture dropped: " + reason);
+            reportShot(shot.batch, false);
+        }
+    }
+
+    private void reportShot(PhotoCaptureBatch batch, boolean success) {
+        if (batch != null) {
+            batch.onCameraDone(cameraPosition != null ? cameraPosition : cameraId, success, System.nanoTime());
         }
     }
 
@@ -1271,22 +1660,8 @@ public class SingleCamera {
     /**
      * 将Bitmap保存为JPEG文件（使用指定的时间戳）
      */
-    private void saveBitmapAsJPEG(android.graphics.Bitmap bitmap, String timestamp) {
-        File photoDir = StorageHelper.getPhotoDir(context);
-        if (!photoDir.exists()) {
-            photoDir.mkdirs();
-        }
-
-        // 检查存储空间是否充足（至少需要 5MB）
-        long availableSpace = StorageHelper.getAvailableSpace(photoDir);
-        if (availableSpace >= 0 && availableSpace < 5 * 1024 * 1024) {
-            AppLog.w(TAG, "Camera " + cameraId + " 存储空间不足，剩余: " + StorageHelper.formatSize(availableSpace));
-            // 仍然尝试保存，因为照片通常只有几百KB
-        }
-
-        // 使用传入的时间戳命名：yyyyMMdd_HHmmss_摄像头位置.jpg
-        String position = (cameraPosition != null) ? cameraPosition : cameraId;
-        File photoFile = new File(photoDir, timestamp + "_" + position + ".jpg");
+    private boolean saveBitmapAsJPEG(android.graphics.Bitmap bitmap, String timestamp) {
+        File photoFile = createPhotoFile(timestamp);
 
         // 检查是否需要添加时间角标
         android.graphics.Bitmap finalBitmap = bitmap;
@@ -1296,10 +1671,12 @@ public class SingleCamera {
         }
 
         FileOutputStream output = null;
+        boolean saved = false;
         try {
             output = new FileOutputStream(photoFile);
             finalBitmap.compress(android.graphics.Bitmap.CompressFormat.JPEG, 90, output);
             output.flush();
+            saved = true;
             AppLog.i(TAG, "Photo saved: " + photoFile.getAbsolutePath());
         } catch (IOException e) {
             if (e.getMessage() != null && e.getMessage().contains("ENOSPC")) {
@@ -1326,61 +1703,52 @@ public class SingleCamera {
                 finalBitmap.recycle();
             }
         }
+
+        // 写入录制索引（回看列表和远程查找直接查询索引）
+        if (saved) {
+            RecordingCatalog.getInstance(context).onFileAdded(photoFile);
+        }
+        return saved;
+    }
+
+    /**
+     * 照片文件：yyyyMMdd_HHmmss_摄像头位置.jpg（同时检查存储空间）
+     */
+    private File createPhotoFile(String timestamp) {
+        File photoDir = StorageHelper.getPhotoDir(context);
+        if (!photoDir.exists()) {
+            photoDir.mkdirs();
+        }
+
+        // 检查存储空间是否充足（至少需要 5MB）
+        long availableSpace = StorageHelper.getAvailableSpace(photoDir);
+        if (availableSpace >= 0 && availableSpace < 5 * 1024 * 1024) {
+            AppLog.w(TAG, "Camera " + cameraId + " 存储空间不足，剩余: " + StorageHelper.formatSize(availableSpace));
+            // 仍然尝试保存，因为照片通常只有几百KB
+        }
+
+        // 使用传入的时间戳命名：yyyyMMdd_HHmmss_摄像头位置.jpg
+        String position = (cameraPosition != null) ? cameraPosition : cameraId;
+        return new File(photoDir, timestamp + "_" + position + ".jpg");
     }
 
     /**
      * 在Bitmap上添加时间角标
+     * 【优化】字形从 WatermarkGlyphAtlas 缓存取，不再格式化字符串和逐帧排版文字；
+     * 原图可写时直接在原图上绘制，不再整张复制 ARGB
      * @param originalBitmap 原始图片
      * @param timestamp 时间戳字符串（格式：yyyyMMdd_HHmmss）
-     * @return 带有时间角标的新Bitmap
+     * @return 带有时间角标的Bitmap（原图不可写时为新Bitmap）
      */
     private android.graphics.Bitmap addTimestampWatermark(android.graphics.Bitmap originalBitmap, String timestamp) {
         try {
-            // 创建可编辑的副本
-            android.graphics.Bitmap mutableBitmap = originalBitmap.copy(android.graphics.Bitmap.Config.ARGB_8888, true);
-            android.graphics.Canvas canvas = new android.graphics.Canvas(mutableBitmap);
+            // TextureView.getBitmap 返回的是可写位图，直接在原图上绘制
+            android.graphics.Bitmap mutableBitmap = originalBitmap.isMutable()
+                    ? originalBitmap
+                    : originalBitmap.copy(android.graphics.Bitmap.Config.ARGB_8888, true);
+            WatermarkGlyphAtlas.drawPhotoTimestamp(mutableBitmap, timestamp);
 
-            // 将时间戳转换为可读格式：yyyyMMdd_HHmmss -> yyyy-MM-dd HH:mm:ss
-            String displayTime;
-            try {
-                java.text.SimpleDateFormat inputFormat = new java.text.SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault());
-                java.text.SimpleDateFormat outputFormat = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-                java.util.Date date = inputFormat.parse(timestamp);
-                displayTime = outputFormat.format(date);
-            } catch (Exception e) {
-                // 解析失败，使用当前时间
-                displayTime = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new java.util.Date());
-            }
-
-            // 根据图片宽度动态计算字体大小（约为图片宽度的3%）
-            float textSize = mutableBitmap.getWidth() * 0.03f;
-            if (textSize < 16) textSize = 16;  // 最小16像素
-            if (textSize > 48) textSize = 48;  // 最大48像素
-
-            // 设置画笔 - 阴影效果
-            android.graphics.Paint shadowPaint = new android.graphics.Paint();
-            shadowPaint.setColor(android.graphics.Color.BLACK);
-            shadowPaint.setTextSize(textSize);
-            shadowPaint.setAntiAlias(true);
-            shadowPaint.setTypeface(android.graphics.Typeface.MONOSPACE);
-
-            // 设置画笔 - 主文字
-            android.graphics.Paint textPaint = new android.graphics.Paint();
-            textPaint.setColor(android.graphics.Color.WHITE);
-            textPaint.setTextSize(textSize);
-            textPaint.setAntiAlias(true);
-            textPaint.setTypeface(android.graphics.Typeface.MONOSPACE);
-
-            // 计算位置（左上角，留一定边距）
-            float x = textSize * 0.5f;
-            float y = textSize * 1.2f;
-
-            // 绘制阴影（偏移2像素）
-            canvas.drawText(displayTime, x + 2, y + 2, shadowPaint);
-            // 绘制主文字
-            canvas.drawText(displayTime, x, y, textPaint);
-
-            AppLog.d(TAG, "Camera " + cameraId + " added timestamp watermark: " + displayTime);
+            AppLog.d(TAG, "Camera " + cameraId + " added timestamp watermark: " + timestamp);
             return mutableBitmap;
 
         } catch (Exception e) {
@@ -1404,10 +1772,13 @@ public class SingleCamera {
             reconnectAttempts = 0;  // 重置重连计数
             isReconnecting = false;  // 清除重连状态
 
-            // 取消待处理的重连任务
-            if (reconnectRunnable != null && backgroundHandler != null) {
-                backgroundHandler.removeCallbacks(reconnectRunnable);
-                reconnectRunnable = null;
+            // 取消待处理的重连任务和尚未执行的异步打开
+            if (backgroundHandler != null) {
+                backgroundHandler.removeCallbacks(asyncOpenRunnable);
+                if (reconnectRunnable != null) {
+                    backgroundHandler.removeCallbacks(reconnectRunnable);
+                    reconnectRunnable = null;
+                }
             }
 
             // 关闭会话（捕获异常）
@@ -1450,7 +1821,9 @@ public class SingleCamera {
                 recordSurface = null;
             }
 
-            // 释放ImageReader
+            // 释放ImageReader（未出图的硬件拍照请求上报失败）
+            jpegOutputInSession = false;
+            failPendingShots("camera closed");
             if (imageReader != null) {
                 try {
                     imageReader.close();
@@ -0,0 +1,61 @@
+package com.kooo.evcam.camera;
+
+/**
+ * 低功耗待机的输出参数选择（纯 Java，参数用整数数组表示以便单元测试）
+ *
+ * - 输出尺寸：与正常预览宽高比一致（误差 5% 内）的最小尺寸，TextureView 的缩放矩阵不需要变；
+ *   没有同比例尺寸时取面积最小的
+ * - 帧率范围：上限最低的 AE 目标帧率范围，上限相同时取下限更低的
+ */
+final class StandbyProfile {
+
+    private static final float ASPECT_TOLERANCE = 0.05f;
+
+    private StandbyProfile() {
+    }
+
+    /**
+     * @return 选中尺寸的下标，没有可选尺寸时返回 -1
+     */
+    static int chooseSize(int[] widths, int[] heights, int previewWidth, int previewHeight) {
+        float targetAspect = previewHeight > 0 ? (float) previewWidth / previewHeight : 0f;
+        int best = -1;
+        long bestArea = Long.MAX_VALUE;
+        int smallest = -1;
+        long smallestArea = Long.MAX_VALUE;
+        for (int i = 0; i < widths.length; i++) {
+            if (widths[i] <= 0 || heights[i] <= 0) {
+                continue;
+            }
+            long area = (long) widths[i] * heights[i];
+            if (area < smallestArea) {
+                smallestArea = area;
+                smallest = i;
+            }
+            float aspect = (float) widths[i] / heights[i];
+            if (targetAspect > 0 && Math.abs(aspect - targetAspect) <= targetAspect * ASPECT_TOLERANCE
+                    && area < bestArea) {
+                bestArea = area;
+                best = i;
+            }
+        }
+        return best >= 0 ? best : smallest;
+    }
+
+    /**
+     * @return 选中帧率范围的下标，没有可选范围时返回 -1
+     */
+    static int chooseFpsRange(int[] lowers, int[] uppers) {
+        int best = -1;
+        for (int i = 0; i < uppers.length; i++) {
+            if (uppers[i] <= 0 || lowers[i] > uppers[i]) {
+                continue;
+            }
+            if (best < 0 || uppers[i] < uppers[best]
+                    || (uppers[i] == uppers[best] && lowers[i] < lowers[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,132 @@
+package com.kooo.evcam.camera;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 启动时间线：记录每路摄像头从打开到首帧、从录制请求到首次写入的各阶段耗时（纯 Java，时间由调用方传入）
+ *
+ * 一次追踪从 begin() 开始，各阶段只记录第一次到达的时间（相对起点的毫秒数）；
+ * 请求过录制的摄像头以首次写入为终点，其余以首帧为终点，全部到达终点时 mark() 返回 true；
+ * 之后又请求录制时重新变为未完成，到达首次写入后再返回一次 true。
+ * 超过 MAX_TRACE_MS 后不再记录，避免重连等后续事件混进本次启动。
+ */
+final class StartupTimeline {
+
+    static final int OPEN_REQUESTED = 0;
+    static final int OPENED = 1;
+    static final int CONFIGURED = 2;
+    static final int FIRST_FRAME = 3;
+    static final int RECORD_REQUESTED = 4;
+    static final int FIRST_WRITE = 5;
+    private static final int PHASE_COUNT = 6;
+
+    private static final String[] PHASE_NAMES = {"请求", "打开", "会话", "首帧", "录制", "写入"};
+
+    static final long MAX_TRACE_MS = 30_000;
+
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+    private String trigger = null;
+    private long originMs = -1;
+    private boolean completeReported = false;
+
+    /**
+     * 开始新的追踪（清除上一次的记录）
+     * @param trigger 触发原因（如 "打开摄像头"、"开始录制"），用于输出
+     */
+    synchronized void begin(String trigger, long nowMs) {
+        phases.clear();
+        this.trigger = trigger;
+        originMs = nowMs;
+        completeReported = false;
+    }
+
+    /**
+     * 是否仍在追踪窗口内
+     */
+    synchronized boolean isCollecting(long nowMs) {
+        return originMs >= 0 && nowMs - originMs <= MAX_TRACE_MS;
+    }
+
+    /**
+     * 记录阶段到达时间（同一阶段只记录第一次）
+     * @return true 表示这次记录使所有摄像头都到达了终点（由未完成变为完成）
+     */
+    synchronized boolean mark(String key, int phase, long nowMs) {
+        if (key == null || phase < 0 || phase >= PHASE_COUNT || !isCollecting(nowMs)) {
+            return false;
+        }
+        long[] offsets = phases.get(key);
+        if (offsets == null) {
+            offsets = new long[PHASE_COUNT];
+            Arrays.fill(offsets, -1);
+            phases.put(key, offsets);
+        }
+        if (offsets[phase] >= 0) {
+            return false;
+        }
+        offsets[phase] = Math.max(0, nowMs - originMs);
+        boolean complete = isComplete();
+        boolean report = complete && !completeReported;
+        completeReported = complete;
+        return report;
+    }
+
+    /**
+     * @return 阶段相对起点的毫秒数，未到达时返回 -1
+     */
+    synchronized long getOffsetMs(String key, int phase) {
+        long[] offsets = phases.get(key);
+        return offsets != null && phase >= 0 && phase < PHASE_COUNT ? offsets[phase] : -1;
+    }
+
+    private boolean isComplete() {
+        if (phases.isEmpty()) {
+            return false;
+        }
+        for (long[] offsets : phases.values()) {
+            int terminal = offsets[RECORD_REQUESTED] >= 0 ? FIRST_WRITE : FIRST_FRAME;
+            if (offsets[terminal] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 每路一行，如 "front: 请求 0ms → 打开 180ms → 会话 420ms → 首帧 510ms"，未到达的阶段不输出
+     */
+    synchronized String format() {
+        if (originMs < 0) {
+            return "无";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(trigger != null ? trigger : "启动");
+        if (phases.isEmpty()) {
+            sb.append(": 无记录");
+        }
+        for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+            sb.append('\n').append(entry.getKey()).append(':');
+            long[] offsets = entry.getValue();
+            boolean first = true;
+            for (int phase = 0; phase < PHASE_COUNT; phase++) {
+                if (offsets[phase] < 0) {
+                    continue;
+                }
+                sb.append(first ? " " : " → ").append(PHASE_NAMES[phase]).append(' ')
+                        .append(formatDuration(offsets[phase]));
+                first = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    static String formatDuration(long ms) {
+        if (ms < 1000) {
+            return ms + "ms";
+        }
+        return String.format(Locale.US, "%.1fs", ms / 1000.0);
+    }
+}
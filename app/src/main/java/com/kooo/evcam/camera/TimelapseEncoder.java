@@ -0,0 +1,212 @@
+package com.kooo.evcam.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.view.Surface;
+
+import com.kooo.evcam.AppLog;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+ * 延时拍摄合成器：把间隔抓取的画面直接编码成 H.264 MP4
+ *
+ * 画面通过编码器输入 Surface 的硬件 Canvas 绘制（不做 RGB->YUV 的 Java 转换），
+ * 输出时间戳按帧序号重写为 PLAYBACK_FPS 的连续时间轴，8 小时每 10 秒一帧的拍摄合成约 96 秒视频。
+ * 写入使用分片 MP4（{@link RecordMuxer}），中途断电时已写入的部分仍可播放。
+ *
+ * 同一实例的方法可以在不同线程调用，内部串行执行。
+ */
+final class TimelapseEncoder {
+    private static final String TAG = "TimelapseEncoder";
+
+    static final int PLAYBACK_FPS = 30;
+    private static final String MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC;
+    private static final int I_FRAME_INTERVAL = 1;  // 回放时每秒一个关键帧，便于拖动
+    private static final long DRAIN_TIMEOUT_US = 10_000;
+    private static final int MAX_EOS_WAITS = 100;   // 结束时最多等待约 1 秒
+
+    private final String key;
+    private final File outputFile;
+    private final int width;
+    private final int height;
+    private final Rect destRect;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+
+    private MediaCodec encoder;
+    private Surface inputSurface;
+    private RecordMuxer muxer;
+    private int trackIndex = -1;
+    private boolean muxerStarted = false;
+    private boolean released = false;
+    private long framesQueued = 0;
+    private long framesWritten = 0;
+
+    /**
+     * @param key 摄像头位置（日志用）
+     * @param width 画面宽度（向下取偶数）
+     * @param height 画面高度（向下取偶数）
+     */
+    TimelapseEncoder(String key, File outputFile, int width, int height) {
+        this.key = key;
+        this.outputFile = outputFile;
+        this.width = width & ~1;
+        this.height = height & ~1;
+        this.destRect = new Rect(0, 0, this.width, this.height);
+    }
+
+    /**
+     * 创建编码器和 Muxer
+     * @return false 表示编码器不可用（调用方回退为保存 JPEG）
+     */
+    synchronized boolean start() {
+        try {
+            MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+            format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+            // 延时画面帧间差异大，按每像素 3 bit 估算
+            format.setInteger(MediaFormat.KEY_BIT_RATE, Math.max(1_000_000, width * height * 3));
+            format.setInteger(MediaFormat.KEY_FRAME_RATE, PLAYBACK_FPS);
+            format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL);
+
+            encoder = MediaCodec.createEncoderByType(MIME_TYPE);
+            encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            inputSurface = encoder.createInputSurface();
+            encoder.start();
+
+            File dir = outputFile.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            muxer = RecordMuxer.create(outputFile.getAbsolutePath(), null, true);
+            AppLog.d(TAG, "Camera " + key + " timelapse encoder started: " + width + "x" + height + " -> " + outputFile.getName());
+            return true;
+        } catch (Exception e) {
+            AppLog.e(TAG, "Camera " + key + " failed to start timelapse encoder", e);
+            release();
+            return false;
+        }
+    }
+
+    /**
+     * 编码一帧（画面缩放到编码尺寸）
+     * @return false 表示编码器已结束或出错
+     */
+    synchronized boolean encodeFrame(Bitmap frame) {
+        if (released || encoder == null) {
+            return false;
+        }
+        try {
+            Canvas canvas = inputSurface.lockHardwareCanvas();
+            try {
+                canvas.drawBitmap(frame, null, destRect, null);
+            } finally {
+                inputSurface.unlockCanvasAndPost(canvas);
+            }
+            framesQueued++;
+            drain(false);
+            return true;
+        } catch (Exception e) {
+            AppLog.e(TAG, "Camera " + key + " timelapse frame encode failed", e);
+            return false;
+        }
+    }
+
+    /**
+     * 结束编码并关闭文件
+     * @return 写入的帧数
+     */
+    synchronized long finish() {
+        if (released) {
+            return framesWritten;
+        }
+        try {
+            if (encoder != null) {
+                encoder.signalEndOfInputStream();
+                drain(true);
+            }
+        } catch (Exception e) {
+            AppLog.w(TAG, "Camera " + key + " error while finishing timelapse: " + e.getMessage());
+        }
+        release();
+        AppLog.d(TAG, "Camera " + key + " timelapse finished: " + framesWritten + "/" + framesQueued + " frames, "
+                + (framesWritten / PLAYBACK_FPS) + "s -> " + outputFile.getAbsolutePath());
+        return framesWritten;
+    }
+
+    File getOutputFile() {
+        return outputFile;
+    }
+
+    synchronized long getFramesWritten() {
+        return framesWritten;
+    }
+
+    private void drain(boolean endOfStream) {
+        int eosWaits = 0;
+        while (true) {
+            int index = encoder.dequeueOutputBuffer(bufferInfo, endOfStream ? DRAIN_TIMEOUT_US : 0);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!endOfStream || ++eosWaits > MAX_EOS_WAITS) {
+                    break;
+                }
+            } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                if (!muxerStarted) {
+                    trackIndex = muxer.addTrack(encoder.getOutputFormat());
+                    muxer.start();
+                    muxerStarted = true;
+                }
+            } else if (index >= 0) {
+                ByteBuffer data = encoder.getOutputBuffer(index);
+                if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                    // 配置数据已在 FORMAT_CHANGED 中处理
+                    bufferInfo.size = 0;
+                }
+                if (data != null && bufferInfo.size > 0 && muxerStarted) {
+                    // 输入 Surface 的时间戳是真实抓拍时间，这里改写为连续的回放时间轴
+                    bufferInfo.presentationTimeUs = framesWritten * 1_000_000L / PLAYBACK_FPS;
+                    data.position(bufferInfo.offset);
+                    data.limit(bufferInfo.offset + bufferInfo.size);
+                    muxer.writeSampleData(trackIndex, data, bufferInfo);
+                    framesWritten++;
+                }
+                encoder.releaseOutputBuffer(index, false);
+                if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void release() {
+        released = true;
+        if (encoder != null) {
+            try {
+                encoder.stop();
+            } catch (Exception e) {
+                // 编码器可能未启动
+            }
+            encoder.release();
+            encoder = null;
+        }
+        if (inputSurface != null) {
+            inputSurface.release();
+            inputSurface = null;
+        }
+        if (muxer != null) {
+            try {
+                if (muxerStarted) {
+                    muxer.stop();
+                }
+            } catch (Exception e) {
+                AppLog.w(TAG, "Camera " + key + " muxer stop failed: " + e.getMessage());
+            }
+            muxer.release();
+            muxer = null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.kooo.evcam.camera;
+
+/**
+ * 时间水印的字形索引计算（纯 Java，不分配对象）
+ *
+ * 把本地时间的纪元秒直接拆成 "yyyy-MM-dd HH:mm:ss" 的 19 个字形索引，
+ * 替代每秒一次的 SimpleDateFormat.format(new Date())，渲染时按索引从字形图集取字。
+ */
+final class TimestampGlyphs {
+
+    /** 图集中的字形顺序：0-9、'-'、':'、' ' */
+    static final String GLYPHS = "0123456789-: ";
+    static final int GLYPH_COUNT = 13;
+    static final int DASH = 10;
+    static final int COLON = 11;
+    static final int SPACE = 12;
+
+    /** "yyyy-MM-dd HH:mm:ss" 的字符数 */
+    static final int LENGTH = 19;
+
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    // 输出的每个字符在文件名时间戳（yyyyMMdd_HHmmss）中的位置，-1 表示分隔符
+    private static final int[] FILE_TIMESTAMP_INDEX = {0, 1, 2, 3, -1, 4, 5, -1, 6, 7, -1, 9, 10, -1, 11, 12, -1, 13, 14};
+
+    private TimestampGlyphs() {
+    }
+
+    /**
+     * UTC 毫秒 + 时区偏移 -> 本地纪元秒
+     * @param offsetMs 时区偏移（TimeZone.getOffset 的结果，含夏令时）
+     */
+    static long toLocalSeconds(long epochMillis, int offsetMs) {
+        return Math.floorDiv(epochMillis + offsetMs, 1000L);
+    }
+
+    /**
+     * 计算本地时间的字形索引
+     * @param localSeconds 本地纪元秒（见 {@link #toLocalSeconds}）
+     * @param out 输出，长度至少 {@link #LENGTH}
+     */
+    static void fill(long localSeconds, int[] out) {
+        long days = Math.floorDiv(localSeconds, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(localSeconds, SECONDS_PER_DAY);
+
+        // 纪元日 -> 公历年月日（以 3 月 1 日为年首，400 年为一个周期）
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        int y = (int) Math.floorMod(year, 10000L);
+        out[0] = y / 1000;
+        out[1] = y / 100 % 10;
+        out[2] = y / 10 % 10;
+        out[3] = y % 10;
+        out[4] = DASH;
+        putTwoDigits(out, 5, month);
+        out[7] = DASH;
+        putTwoDigits(out, 8, day);
+        out[10] = SPACE;
+        putTwoDigits(out, 11, secondOfDay / 3600);
+        out[13] = COLON;
+        putTwoDigits(out, 14, secondOfDay / 60 % 60);
+        out[16] = COLON;
+        putTwoDigits(out, 17, secondOfDay % 60);
+    }
+
+    /**
+     * 解析文件名时间戳（yyyyMMdd_HHmmss）为字形索引
+     * @return 格式不符时返回 false（out 内容无效）
+     */
+    static boolean fillFromFileTimestamp(String timestamp, int[] out) {
+        if (timestamp == null || timestamp.length() < 15 || timestamp.charAt(8) != '_') {
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            int src = FILE_TIMESTAMP_INDEX[i];
+            if (src < 0) {
+                out[i] = i == 10 ? SPACE : (i < 10 ? DASH : COLON);
+                continue;
+            }
+            char c = timestamp.charAt(src);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            out[i] = c - '0';
+        }
+        return true;
+    }
+
+    /**
+     * 字形索引对应的字符（日志和测试用）
+     */
+    static char charOf(int glyph) {
+        return GLYPHS.charAt(glyph);
+    }
+
+    private static void putTwoDigits(int[] out, int offset, int value) {
+        out[offset] = value / 10;
+        out[offset + 1] = value % 10;
+    }
+}
@@ -2,6 +2,7 @@ package com.kooo.evcam.camera;
 
 
 import com.kooo.evcam.AppLog;
+import android.media.MediaCodec;
 import android.media.MediaRecorder;
 import android.os.Handler;
 import android.os.HandlerThread;
@@ -51,6 +52,8 @@ public class VideoRecorder {
     private final Object stateLock = new Object();  // 状态锁
     private boolean waitingForSessionReconfiguration = false;  // 等待会话重新配置
     private String currentFilePath;
+    // 【优化】当前分段使用的预分配文件（为 null 表示直接按路径创建）
+    private volatile SegmentFilePool.Lease currentLease;
     
     // 录制参数（可配置）
     private int videoBitrate = 3000000;  // 默认 3Mbps
@@ -90,6 +93,13 @@ public class VideoRecorder {
     private long recordingStartTime = 0;  // 录制开始时间
     private Runnable firstWriteTimeoutRunnable;  // 首次写入超时检查任务
 
+    // 【持久录制 Surface】整个录制期间使用同一个 MediaCodec 持久输入 Surface，
+    // 分段切换只重建 MediaRecorder，Camera 会话不需要重新配置
+    private boolean persistentSurfaceEnabled = true;
+    private Surface persistentSurface;  // 为 null 时每段使用 MediaRecorder 自己的 Surface
+    private volatile long segmentSwitchStartNs = 0;  // 暂停录制输出的时刻（0 表示不在切换中）
+    private final LatencyHistogram segmentSwitchLatency = new LatencyHistogram();  // 暂停录制输出到新分段开始录制
+
     public VideoRecorder(String cameraId) {
         this.cameraId = cameraId;
         // 创建独立的后台线程用于分段处理和文件 I/O 操作
@@ -102,6 +112,28 @@ public class VideoRecorder {
         this.callback = callback;
     }
 
+    /**
+     * 设置是否使用持久录制 Surface（下次 prepareRecording 生效）
+     * 关闭后回退到每段新建 Surface 并重建 Camera 会话的切换方式
+     */
+    public void setPersistentSurfaceEnabled(boolean enabled) {
+        this.persistentSurfaceEnabled = enabled;
+    }
+
+    /**
+     * 当前录制是否使用持久录制 Surface（分段切换后由 MediaRecorder 自行开始新分段，无需重建会话）
+     */
+    public boolean hasPersistentSurface() {
+        return persistentSurface != null;
+    }
+
+    /**
+     * 分段切换耗时（从暂停录制输出到新分段开始录制，每次 prepareRecording 时清空）
+     */
+    public LatencyHistogram getSegmentSwitchLatency() {
+        return segmentSwitchLatency;
+    }
+
     /**
      * 设置分段时长
      * @param durationMs 分段时长（毫秒）
@@ -344,11 +376,14 @@ public class VideoRecorder {
         
         mediaRecorder.setVideoSource(MediaRecorder.VideoSource.SURFACE);
         mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
-        mediaRecorder.setOutputFile(filePath);
+        applyOutputFile(filePath);
         mediaRecorder.setVideoEncodingBitRate(videoBitrate);
         mediaRecorder.setVideoFrameRate(videoFrameRate);
         mediaRecorder.setVideoSize(encodeWidth, encodeHeight);  // 使用调整后的分辨率
         mediaRecorder.setVideoEncoder(MediaRecorder.VideoEncoder.H264);
+        if (persistentSurface != null) {
+            mediaRecorder.setInputSurface(persistentSurface);
+        }
         mediaRecorder.prepare();
         
         // 日志：显示原始和实际编码分辨率
@@ -363,7 +398,7 @@ public class VideoRecorder {
         
         // 准备后立即缓存 Surface，确保整个录制周期使用同一个对象
         // 这对于某些车机平台很重要，因为 Camera2 API 可能无法识别不同的 Surface 包装对象
-        cachedSurface = mediaRecorder.getSurface();
+        cachedSurface = persistentSurface != null ? persistentSurface : mediaRecorder.getSurface();
         if (cachedSurface != null) {
             AppLog.d(TAG, "Camera " + cameraId + " MediaRecorder Surface created and cached: " + cachedSurface + 
                     ", isValid=" + cachedSurface.isValid());
@@ -372,6 +407,54 @@ public class VideoRecorder {
         }
     }
 
+    /**
+     * 设置输出文件
+     * 【优化】优先使用 SegmentFilePool 预分配的文件（通过文件描述符写入），
+     * 避免在 U 盘上冷创建文件导致首次写入延迟；没有就绪的文件时按路径创建
+     */
+    private void applyOutputFile(String filePath) throws IOException {
+        // 上一个分段的预分配文件（异常路径下可能未关闭）
+        closeSegmentLease();
+
+        SegmentFilePool.Lease lease = SegmentFilePool.getInstance().acquire(filePath, cameraPosition,
+                SegmentFilePool.estimateSegmentBytes(videoBitrate, segmentDurationMs));
+        if (lease != null) {
+            mediaRecorder.setOutputFile(lease.getFileDescriptor());
+            currentLease = lease;
+        } else {
+            mediaRecorder.setOutputFile(filePath);
+        }
+    }
+
+    /**
+     * 关闭当前分段的预分配文件，截断到实际写入的长度
+     * 必须在 MediaRecorder 停止之后调用
+     */
+    private void closeSegmentLease() {
+        SegmentFilePool.Lease lease = currentLease;
+        currentLease = null;
+        if (lease != null) {
+            long length = lease.close();
+            AppLog.d(TAG, "Camera " + cameraId + " preallocated file truncated to " + (length / 1024) + " KB: " + lease.getFile().getName());
+        }
+    }
+
+    /**
+     * 获取当前分段已写入的大小
+     * 预分配文件的长度不代表实际写入量，需要从租约获取
+     */
+    private long getCurrentFileSize() {
+        SegmentFilePool.Lease lease = currentLease;
+        if (lease != null) {
+            return lease.getWrittenBytes();
+        }
+        if (currentFilePath == null) {
+            return 0;
+        }
+        File file = new File(currentFilePath);
+        return file.exists() ? file.length() : 0;
+    }
+
     /**
      * 准备录制器（不启动）
      */
@@ -407,14 +490,23 @@ public class VideoRecorder {
             recordedFilePaths.clear();
             recordedFilePaths.add(filePath);
 
+            // 每次录制使用新的持久 Surface（分辨率可能变化，上一次的会话已不再引用旧的）
+            releasePersistentSurface();
+            if (persistentSurfaceEnabled) {
+                createPersistentSurface();
+            }
+            segmentSwitchStartNs = 0;
+            segmentSwitchLatency.reset();
+
             // 使用传入的文件路径作为第一段
             prepareMediaRecorder(filePath, width, height);
             currentFilePath = filePath;
             AppLog.d(TAG, "Camera " + cameraId + " prepared recording to: " + filePath);
             return true;
-        } catch (IOException e) {
+        } catch (IOException | RuntimeException e) {
             AppLog.e(TAG, "Failed to prepare recording for camera " + cameraId, e);
             releaseMediaRecorder();
+            releasePersistentSurface();
             // 确保状态被重置
             isRecording.set(false);
             waitingForSessionReconfiguration = false;
@@ -476,6 +568,7 @@ public class VideoRecorder {
             }
             
             AppLog.d(TAG, "Camera " + cameraId + " started recording segment " + segmentIndex);
+            finishSegmentSwitchTiming();
             
             // 诊断：start() 后再次检查缓存的 Surface 状态（应该是同一个对象）
             if (cachedSurface != null) {
@@ -572,8 +665,7 @@ public class VideoRecorder {
 
         fileSizeCheckRunnable = () -> {
             if (isRecording.get() && currentFilePath != null) {
-                File file = new File(currentFilePath);
-                long currentSize = file.exists() ? file.length() : 0;
+                long currentSize = getCurrentFileSize();
                 long sizeIncrease = currentSize - lastFileSize;
                 
                 // 检查是否有有效数据写入
@@ -599,7 +691,9 @@ public class VideoRecorder {
                         // 通知外部：首次写入成功，录制已真正开始
                         // 外部可以据此开始钉钉录制计时等
                         if (callback != null) {
-                            callback.onFirstDataWritten(cameraId);
+                            SegmentFilePool.Lease lease = currentLease;
+                            callback.onFirstDataWritten(cameraId, System.currentTimeMillis() - recordingStartTime,
+                                    lease != null ? lease.getPreallocMs() : 0);
                         }
                     }
                     AppLog.d(TAG, "Camera " + cameraId + " file size check: " + currentSize + " bytes (" + (currentSize / 1024) + " KB), increase: " + sizeIncrease + " bytes");
@@ -721,6 +815,9 @@ public class VideoRecorder {
      * 3. 停止当前 MediaRecorder
      * 4. 准备新的 MediaRecorder
      * 5. 通知外部重新配置会话（onSegmentSwitch）
+     *
+     * 使用持久录制 Surface 时，新的 MediaRecorder 绑定到同一个 Surface，第 4 步后直接开始录制，
+     * 第 5 步外部只需恢复重复请求中的录制输出，不再重建会话
      */
     private void switchToNextSegment() {
         // 【状态检查】确保当前处于录制状态才能切换分段
@@ -734,6 +831,7 @@ public class VideoRecorder {
         }
         
         AppLog.d(TAG, "Camera " + cameraId + " initiating segment switch from segment " + segmentIndex);
+        segmentSwitchStartNs = System.nanoTime();
         
         // 【第一步】通知外部暂停 CaptureSession 的录制输出
         // 这会让 CaptureSession 停止向当前的 recordSurface 发送帧
@@ -795,8 +893,7 @@ public class VideoRecorder {
                 // 诊断：在 stop() 之前检查文件大小
                 long fileSizeBeforeStop = 0;
                 if (currentFilePath != null) {
-                    File file = new File(currentFilePath);
-                    fileSizeBeforeStop = file.exists() ? file.length() : 0;
+                    fileSizeBeforeStop = getCurrentFileSize();
                     AppLog.d(TAG, "Camera " + cameraId + " file size before stop: " + fileSizeBeforeStop + " bytes (" + (fileSizeBeforeStop / 1024) + " KB)");
                 }
                 
@@ -810,6 +907,9 @@ public class VideoRecorder {
                         isRecording.set(false);  // 立即更新状态
                         AppLog.d(TAG, "Camera " + cameraId + " stopped segment " + segmentIndex + ": " + currentFilePath);
 
+                        // 截断预分配文件（必须在验证文件大小之前）
+                        closeSegmentLease();
+
                         // 验证并清理损坏的文件
                         validateAndCleanupFile(currentFilePath);
                         completedFileValid = true;  // 标记文件有效
@@ -819,6 +919,7 @@ public class VideoRecorder {
                     isRecording.set(false);  // 即使失败也更新状态
 
                     // 停止失败，删除损坏的文件
+                    closeSegmentLease();
                     if (currentFilePath != null) {
                         File file = new File(currentFilePath);
                         if (file.exists()) {
@@ -838,6 +939,17 @@ public class VideoRecorder {
             currentFilePath = nextSegmentPath;
             recordedFilePaths.add(nextSegmentPath);  // 记录新分段文件
 
+            if (persistentSurface != null) {
+                // 【持久录制 Surface】会话中的录制输出仍是同一个 Surface，直接开始新分段，
+                // 外部收到 onSegmentSwitch 后只需恢复重复请求中的录制输出
+                AppLog.d(TAG, "Camera " + cameraId + " starting segment " + segmentIndex + " on persistent surface");
+                startRecording();
+                if (callback != null) {
+                    callback.onSegmentSwitch(cameraId, segmentIndex, completedFileValid ? completedFilePath : null);
+                }
+                return;
+            }
+
             // 设置等待会话重新配置的标志
             waitingForSessionReconfiguration = true;
 
@@ -929,6 +1041,7 @@ public class VideoRecorder {
             isRecording.set(false);
             waitingForSessionReconfiguration = false;
             releaseMediaRecorder();
+            SegmentFilePool.getInstance().release(saveDirectory, cameraPosition);
 
             // 验证并清理所有录制的文件
             List<String> deletedFiles = validateAndCleanupAllFiles();
@@ -949,6 +1062,7 @@ public class VideoRecorder {
 
         if (!isRecording.get()) {
             AppLog.w(TAG, "Camera " + cameraId + " is not recording");
+            SegmentFilePool.getInstance().release(saveDirectory, cameraPosition);
             synchronized (stateLock) {
                 state = RecordingState.IDLE;
             }
@@ -958,8 +1072,7 @@ public class VideoRecorder {
         // 诊断：在 stop() 之前检查文件大小
         long fileSizeBeforeStop = 0;
         if (currentFilePath != null) {
-            File file = new File(currentFilePath);
-            fileSizeBeforeStop = file.exists() ? file.length() : 0;
+            fileSizeBeforeStop = getCurrentFileSize();
             AppLog.d(TAG, "Camera " + cameraId + " file size before stop: " + fileSizeBeforeStop + " bytes (" + (fileSizeBeforeStop / 1024) + " KB)");
         }
 
@@ -976,6 +1089,9 @@ public class VideoRecorder {
             }
             isRecording.set(false);
 
+            // 截断预分配文件（必须在验证文件大小之前）
+            closeSegmentLease();
+
             // 验证并清理所有录制的文件
             deletedFiles = validateAndCleanupAllFiles();
 
@@ -987,6 +1103,7 @@ public class VideoRecorder {
             isRecording.set(false);
 
             // 录制失败，删除损坏的文件
+            closeSegmentLease();
             if (currentFilePath != null) {
                 File file = new File(currentFilePath);
                 if (file.exists()) {
@@ -997,6 +1114,8 @@ public class VideoRecorder {
             }
         } finally {
             releaseMediaRecorder();
+            // 删除未取用的预分配文件（不计入存储配额）
+            SegmentFilePool.getInstance().release(saveDirectory, cameraPosition);
             currentFilePath = null;
             segmentIndex = 0;
             
@@ -1105,6 +1224,43 @@ public class VideoRecorder {
             }
             mediaRecorder = null;
         }
+        closeSegmentLease();
+    }
+
+    /**
+     * 创建持久输入 Surface，失败时回退到 MediaRecorder 自己的 Surface
+     */
+    private void createPersistentSurface() {
+        try {
+            persistentSurface = MediaCodec.createPersistentInputSurface();
+            AppLog.d(TAG, "Camera " + cameraId + " using persistent record surface: " + persistentSurface);
+        } catch (RuntimeException e) {
+            AppLog.w(TAG, "Camera " + cameraId + " persistent surface unavailable, segments will rebuild the session: " + e.getMessage());
+            persistentSurface = null;
+        }
+    }
+
+    private void releasePersistentSurface() {
+        if (persistentSurface != null) {
+            persistentSurface.release();
+            persistentSurface = null;
+        }
+    }
+
+    /**
+     * 记录一次分段切换耗时（新分段开始录制时调用）
+     */
+    private void finishSegmentSwitchTiming() {
+        long startNs = segmentSwitchStartNs;
+        if (startNs == 0) {
+            return;
+        }
+        segmentSwitchStartNs = 0;
+        long elapsedNs = System.nanoTime() - startNs;
+        segmentSwitchLatency.recordNanos(elapsedNs);
+        AppLog.d(TAG, "Camera " + cameraId + " segment switch took " + (elapsedNs / 1_000_000) + "ms ("
+                + (persistentSurface != null ? "persistent surface" : "session rebuild") + "), "
+                + segmentSwitchLatency.format());
     }
 
     /**
@@ -1206,6 +1362,7 @@ public class VideoRecorder {
                 state = RecordingState.IDLE;
             }
         }
+        releasePersistentSurface();
         
         // 清理分段处理线程
         if (segmentHandler != null) {
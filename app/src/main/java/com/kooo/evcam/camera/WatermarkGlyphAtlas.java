@@ -0,0 +1,145 @@
+package com.kooo.evcam.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.util.SparseArray;
+
+import java.util.TimeZone;
+
+/**
+ * 时间水印字形图集
+ *
+ * 按字号把 "0-9 - : 空格" 一次性渲染到一张位图上（白字 + 黑色阴影，等宽单元格横向排列），
+ * 之后视频水印（{@link GlyphWatermarkRenderer}）和照片水印都只按 {@link TimestampGlyphs} 的索引取字，
+ * 不再每秒格式化字符串、擦除位图和重新排版文字。
+ *
+ * 同一字号的图集全局共用，位图只读，可以跨线程使用。
+ */
+final class WatermarkGlyphAtlas {
+
+    private static final SparseArray<WatermarkGlyphAtlas> CACHE = new SparseArray<>();
+
+    private final Bitmap bitmap;
+    private final int cellWidth;     // 单元格宽度（字宽 + 阴影偏移）
+    private final int cellHeight;    // 单元格高度（行高 + 阴影偏移）
+    private final int advance;       // 字符间距（等宽字体的字宽）
+    private final int baseline;      // 单元格顶部到基线的距离
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * 获取指定字号的图集（首次调用时渲染）
+     * @param textSizePx 字号（像素）
+     */
+    static WatermarkGlyphAtlas obtain(int textSizePx) {
+        synchronized (CACHE) {
+            WatermarkGlyphAtlas atlas = CACHE.get(textSizePx);
+            if (atlas == null) {
+                atlas = new WatermarkGlyphAtlas(textSizePx);
+                CACHE.put(textSizePx, atlas);
+            }
+            return atlas;
+        }
+    }
+
+    private WatermarkGlyphAtlas(int textSizePx) {
+        Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setTypeface(Typeface.MONOSPACE);
+        textPaint.setTextSize(textSizePx);
+        textPaint.setColor(Color.WHITE);
+        Paint shadowPaint = new Paint(textPaint);
+        shadowPaint.setColor(Color.BLACK);
+
+        int shadowOffset = Math.max(2, Math.round(textSizePx / 14f));
+        Paint.FontMetrics metrics = textPaint.getFontMetrics();
+        advance = (int) Math.ceil(textPaint.measureText("0"));
+        baseline = (int) Math.ceil(-metrics.ascent);
+        cellWidth = advance + shadowOffset;
+        cellHeight = baseline + (int) Math.ceil(metrics.descent) + shadowOffset;
+
+        bitmap = Bitmap.createBitmap(cellWidth * TimestampGlyphs.GLYPH_COUNT, cellHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        char[] glyph = new char[1];
+        for (int i = 0; i < TimestampGlyphs.GLYPH_COUNT; i++) {
+            glyph[0] = TimestampGlyphs.charOf(i);
+            float x = i * cellWidth;
+            canvas.drawText(glyph, 0, 1, x + shadowOffset, baseline + shadowOffset, shadowPaint);
+            canvas.drawText(glyph, 0, 1, x, baseline, textPaint);
+        }
+    }
+
+    Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    int getCellWidth() {
+        return cellWidth;
+    }
+
+    int getCellHeight() {
+        return cellHeight;
+    }
+
+    int getAdvance() {
+        return advance;
+    }
+
+    int getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * 整串时间戳的宽度（像素）
+     */
+    int getTextWidth() {
+        return advance * (TimestampGlyphs.LENGTH - 1) + cellWidth;
+    }
+
+    /**
+     * 在照片左上角绘制时间角标（字号约为图片宽度的 3%，16~48 像素）
+     * @param bitmap 可写位图
+     * @param timestamp 文件名时间戳（yyyyMMdd_HHmmss），解析失败时使用当前时间
+     */
+    static void drawPhotoTimestamp(Bitmap bitmap, String timestamp) {
+        int[] glyphs = new int[TimestampGlyphs.LENGTH];
+        if (!TimestampGlyphs.fillFromFileTimestamp(timestamp, glyphs)) {
+            long now = System.currentTimeMillis();
+            TimestampGlyphs.fill(TimestampGlyphs.toLocalSeconds(now, TimeZone.getDefault().getOffset(now)), glyphs);
+        }
+
+        float textSize = bitmap.getWidth() * 0.03f;
+        if (textSize < 16) textSize = 16;  // 最小16像素
+        if (textSize > 48) textSize = 48;  // 最大48像素
+
+        // 左上角，留一定边距
+        float x = textSize * 0.5f;
+        float y = textSize * 1.2f;
+        obtain(Math.round(textSize)).draw(new Canvas(bitmap), glyphs, x, y);
+    }
+
+    /**
+     * 在 Canvas 上按字形索引绘制时间戳（照片水印）
+     * @param glyphs {@link TimestampGlyphs} 计算出的字形索引
+     * @param left 左边缘
+     * @param baselineY 文字基线
+     */
+    void draw(Canvas canvas, int[] glyphs, float left, float baselineY) {
+        Rect src = new Rect();
+        RectF dst = new RectF();
+        float top = baselineY - baseline;
+        for (int i = 0; i < TimestampGlyphs.LENGTH; i++) {
+            if (glyphs[i] == TimestampGlyphs.SPACE) {
+                continue;
+            }
+            int srcLeft = glyphs[i] * cellWidth;
+            src.set(srcLeft, 0, srcLeft + cellWidth, cellHeight);
+            float x = left + i * advance;
+            dst.set(x, top, x + cellWidth, top + cellHeight);
+            canvas.drawBitmap(bitmap, src, dst, bitmapPaint);
+        }
+    }
+}
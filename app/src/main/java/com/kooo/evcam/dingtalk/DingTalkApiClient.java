@@ -2,6 +2,7 @@ package com.kooo.evcam.dingtalk;
 
 
 import com.kooo.evcam.AppLog;
+import com.kooo.evcam.remote.http.HttpClients;
 import android.util.Log;
 
 import com.google.gson.Gson;
@@ -9,7 +10,6 @@ import com.google.gson.JsonObject;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -34,11 +34,7 @@ public class DingTalkApiClient {
     public DingTalkApiClient(DingTalkConfig config) {
         this.config = config;
         this.gson = new Gson();
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(60, TimeUnit.SECONDS)
-                .build();
+        this.httpClient = HttpClients.withTimeouts(30, 30, 60);
     }
 
     /**
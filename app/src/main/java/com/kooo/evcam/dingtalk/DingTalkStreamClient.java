@@ -2,13 +2,12 @@ package com.kooo.evcam.dingtalk;
 
 
 import com.kooo.evcam.AppLog;
+import com.kooo.evcam.remote.http.HttpClients;
 import android.util.Log;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
-import java.util.concurrent.TimeUnit;
-
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -42,12 +41,7 @@ public class DingTalkStreamClient extends WebSocketListener {
         this.apiClient = apiClient;
         this.callback = callback;
         this.gson = new Gson();
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(0, TimeUnit.SECONDS) // 长连接不设置读超时
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .pingInterval(30, TimeUnit.SECONDS) // 心跳
-                .build();
+        this.httpClient = HttpClients.forWebSocket(30); // 长连接不设置读超时，30 秒心跳
     }
 
     /**
@@ -3,6 +3,8 @@ package com.kooo.evcam.dingtalk;
 
 import com.kooo.evcam.AppLog;
 import com.kooo.evcam.WakeUpHelper;
+import com.kooo.evcam.remote.core.CaptureScheduleRequest;
+import com.kooo.evcam.remote.core.ClipRequest;
 import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
@@ -51,6 +53,20 @@ public class DingTalkStreamManager {
         void onRecordCommand(String conversationId, String conversationType, String userId, int durationSeconds);
         void onPhotoCommand(String conversationId, String conversationType, String userId);
         
+        /**
+         * 截取并上传事件片段
+         */
+        default void onClipCommand(String conversationId, String conversationType, String userId, ClipRequest request) {
+        }
+
+        /**
+         * 开始或停止连拍/延时拍摄
+         * @return 执行结果消息
+         */
+        default String onCaptureScheduleCommand(CaptureScheduleRequest request) {
+            return "功能不可用";
+        }
+        
         /**
          * 获取应用状态信息
          * @return 状态信息字符串
@@ -340,6 +356,40 @@ public class DingTalkStreamManager {
                             finalConversationId, finalConversationType, finalSenderId);
                     });
 
+                } else if (command.startsWith("片段") || command.toLowerCase().startsWith("clip")) {
+                    // 事件片段指令：从已录制的分段中截取，不需要唤醒摄像头
+                    ClipRequest request = ClipRequest.parse(
+                            command.replaceFirst("(?i)^(片段|clip)", ""), System.currentTimeMillis());
+                    if (request == null) {
+                        sendResponse(sessionWebhook, ClipRequest.USAGE);
+                    } else {
+                        AppLog.d(TAG, "收到片段指令: " + request.describe());
+                        String finalConversationId = conversationId;
+                        String finalConversationType = conversationType;
+                        String finalSenderId = senderId;
+                        sendResponseAndThen(sessionWebhook, "收到片段指令，正在截取 " + request.describe() + " 的录像...", () -> {
+                            if (commandCallback != null) {
+                                commandCallback.onClipCommand(finalConversationId, finalConversationType, finalSenderId, request);
+                            }
+                        });
+                    }
+
+                } else if (command.startsWith("连拍") || command.toLowerCase().startsWith("burst") ||
+                           command.startsWith("延时") || command.toLowerCase().startsWith("timelapse")) {
+                    // 连拍/延时拍摄指令：从当前预览抓图，直接回复执行结果
+                    boolean burst = command.startsWith("连拍") || command.toLowerCase().startsWith("burst");
+                    String args = command.replaceFirst("(?i)^(连拍|burst|延时|timelapse)", "");
+                    CaptureScheduleRequest request = burst ?
+                            CaptureScheduleRequest.parseBurst(args) : CaptureScheduleRequest.parseTimelapse(args);
+                    if (request == null) {
+                        sendResponse(sessionWebhook, burst ? CaptureScheduleRequest.USAGE_BURST : CaptureScheduleRequest.USAGE_TIMELAPSE);
+                    } else if (commandCallback != null) {
+                        AppLog.d(TAG, "收到连拍/延时指令: " + request.describe());
+                        sendResponse(sessionWebhook, commandCallback.onCaptureScheduleCommand(request));
+                    } else {
+                        sendResponse(sessionWebhook, "❌ 功能不可用");
+                    }
+
                 } else if ("状态".equals(command) || "status".equalsIgnoreCase(command)) {
                     // 状态指令：显示应用状态
                     AppLog.d(TAG, "收到状态指令");
@@ -396,6 +446,9 @@ public class DingTalkStreamManager {
                         "• 录制 - 录制 60 秒视频\n" +
                         "• 录制+数字 - 录制指定秒数（如：录制30）\n" +
                         "• 拍照 - 拍摄照片\n" +
+                        "• 片段 14:02:10 30 - 截取该时刻前后共30秒录像\n" +
+                        "• 连拍 5 2 - 每路连拍5张，间隔2秒\n" +
+                        "• 延时 10 8h - 每10秒一帧持续8小时（末尾加「视频」合成MP4，「延时 停止」结束）\n" +
                         "• 退出 - 退出应用（需确认）\n" +
                         "• 帮助 - 显示此帮助");
 
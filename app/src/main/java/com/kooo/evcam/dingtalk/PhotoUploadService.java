@@ -2,8 +2,13 @@ package com.kooo.evcam.dingtalk;
 
 
 import com.kooo.evcam.AppLog;
+import com.kooo.evcam.remote.core.RemotePlatform;
+import com.kooo.evcam.remote.core.RemoteUploadCallback;
+import com.kooo.evcam.remote.upload.UploadBatch;
+import com.kooo.evcam.remote.upload.UploadJob;
+import com.kooo.evcam.remote.upload.UploadScheduler;
+
 import android.content.Context;
-import android.util.Log;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -11,23 +16,24 @@ import java.util.List;
 
 /**
  * 图片上传服务
- * 负责将拍摄的照片上传到钉钉
+ * 负责将拍摄的照片上传到钉钉（通过统一上传队列，创建时注册处理器并续传未完成的任务）
  */
 public class PhotoUploadService {
     private static final String TAG = "PhotoUploadService";
+    private static final String JOB_TYPE = "dingtalk_photo";
 
     private final Context context;
     private final DingTalkApiClient apiClient;
+    private final UploadScheduler scheduler;
 
-    public interface UploadCallback {
-        void onProgress(String message);
-        void onSuccess(String message);
-        void onError(String error);
+    public interface UploadCallback extends RemoteUploadCallback {
     }
 
     public PhotoUploadService(Context context, DingTalkApiClient apiClient) {
         this.context = context;
         this.apiClient = apiClient;
+        this.scheduler = UploadScheduler.getInstance(context);
+        scheduler.registerHandler(JOB_TYPE, new PhotoUploadHandler());
     }
 
     /**
@@ -39,81 +45,14 @@ public class PhotoUploadService {
      * @param callback 上传回调
      */
     public void uploadPhotos(List<File> photoFiles, String conversationId, String conversationType, String userId, UploadCallback callback) {
-        new Thread(() -> {
-            try {
-                if (photoFiles == null || photoFiles.isEmpty()) {
-                    callback.onError("没有图片文件可上传");
-                    return;
-                }
-
-                callback.onProgress("开始上传 " + photoFiles.size() + " 张照片...");
-
-                List<String> uploadedFiles = new ArrayList<>();
-
-                for (int i = 0; i < photoFiles.size(); i++) {
-                    File photoFile = photoFiles.get(i);
-
-                    if (!photoFile.exists()) {
-                        AppLog.w(TAG, "图片文件不存在: " + photoFile.getPath());
-                        continue;
-                    }
-
-                    callback.onProgress("正在上传 (" + (i + 1) + "/" + photoFiles.size() + "): " + photoFile.getName());
-
-                    try {
-                        // 1. 上传图片到钉钉（使用 image 类型）
-                        callback.onProgress("正在上传图片 (" + (i + 1) + "/" + photoFiles.size() + ")...");
-                        String mediaId = apiClient.uploadImage(photoFile);
-                        AppLog.d(TAG, "图片上传成功，mediaId: " + mediaId);
-
-                        // 2. 尝试使用 mediaId 发送图片消息
-                        callback.onProgress("正在发送图片消息 (" + (i + 1) + "/" + photoFiles.size() + ")...");
-                        try {
-                            // 尝试直接使用 mediaId 作为 photoURL (可能钉钉会自动处理)
-                            apiClient.sendImageMessage(conversationId, conversationType, mediaId, userId);
-                            AppLog.d(TAG, "图片消息发送成功: " + photoFile.getName());
-                        } catch (Exception imageError) {
-                            // 如果图片消息失败,降级为文件消息
-                            AppLog.w(TAG, "图片消息发送失败,降级为文件消息: " + imageError.getMessage());
-                            apiClient.sendFileMessage(conversationId, conversationType, mediaId, photoFile.getName(), userId);
-                            AppLog.d(TAG, "文件消息发送成功: " + photoFile.getName());
-                        }
-
-                        uploadedFiles.add(photoFile.getName());
-
-                        // 3. 延迟2秒后再上传下一张照片，减少网络和系统压力
-                        if (i < photoFiles.size() - 1) {  // 不是最后一张照片
-                            callback.onProgress("等待2秒后上传下一张照片...");
-                            Thread.sleep(2000);
-                        }
-
-                    } catch (Exception e) {
-                        AppLog.e(TAG, "上传图片失败: " + photoFile.getName(), e);
-                        callback.onError("上传失败: " + photoFile.getName() + " - " + e.getMessage());
-                    }
-                }
-
-                if (uploadedFiles.isEmpty()) {
-                    callback.onError("所有图片上传失败");
-                } else {
-                    String successMessage = "图片上传完成！共上传 " + uploadedFiles.size() + " 张照片";
-                    callback.onSuccess(successMessage);
-
-                    // 等待3秒，确保图片消息被钉钉服务器处理完毕后再发送完成消息
-                    // 避免"上传完成"消息比图片先到达用户端
-                    try {
-                        Thread.sleep(3000);
-                    } catch (InterruptedException ignored) {}
-
-                    // 发送完成消息，传递 conversationType 和 userId
-                    apiClient.sendTextMessage(conversationId, conversationType, successMessage, userId);
-                }
-
-            } catch (Exception e) {
-                AppLog.e(TAG, "上传过程出错", e);
-                callback.onError("上传过程出错: " + e.getMessage());
-            }
-        }).start();
+        if (photoFiles == null || photoFiles.isEmpty()) {
+            callback.onError("没有图片文件可上传");
+            return;
+        }
+
+        callback.onProgress("开始上传 " + photoFiles.size() + " 张照片...");
+        scheduler.submit(RemotePlatform.DINGTALK.getCode(), JOB_TYPE,
+                encodeTarget(conversationId, conversationType, userId), photoFiles, callback);
     }
 
     /**
@@ -124,4 +63,54 @@ public class PhotoUploadService {
         files.add(photoFile);
         uploadPhotos(files, conversationId, conversationType, userId, callback);
     }
+
+    /**
+     * 发送目标编码为 "会话ID|会话类型|用户ID"，写入上传日志
+     */
+    static String encodeTarget(String conversationId, String conversationType, String userId) {
+        return conversationId + "|" + (conversationType != null ? conversationType : "") + "|" +
+                (userId != null ? userId : "");
+    }
+
+    static String[] decodeTarget(String target) {
+        String[] parts = target.split("\\|", -1);
+        return new String[]{parts[0], parts.length > 1 && !parts[1].isEmpty() ? parts[1] : null,
+                parts.length > 2 && !parts[2].isEmpty() ? parts[2] : null};
+    }
+
+    private class PhotoUploadHandler implements UploadScheduler.UploadHandler {
+        @Override
+        public void upload(UploadJob job) throws Exception {
+            String[] target = decodeTarget(job.getTarget());
+            File photoFile = job.getFile();
+
+            // 1. 上传图片到钉钉（使用 image 类型）
+            String mediaId = apiClient.uploadImage(photoFile);
+            AppLog.d(TAG, "图片上传成功，mediaId: " + mediaId);
+
+            // 2. 尝试使用 mediaId 发送图片消息
+            try {
+                // 尝试直接使用 mediaId 作为 photoURL (可能钉钉会自动处理)
+                apiClient.sendImageMessage(target[0], target[1], mediaId, target[2]);
+                AppLog.d(TAG, "图片消息发送成功: " + photoFile.getName());
+            } catch (Exception imageError) {
+                // 如果图片消息失败,降级为文件消息
+                AppLog.w(TAG, "图片消息发送失败,降级为文件消息: " + imageError.getMessage());
+                apiClient.sendFileMessage(target[0], target[1], mediaId, photoFile.getName(), target[2]);
+                AppLog.d(TAG, "文件消息发送成功: " + photoFile.getName());
+            }
+        }
+
+        @Override
+        public String onBatchFinished(UploadBatch batch) {
+            String summary = batch.formatSummary("图片", "张", "照片");
+            String[] target = decodeTarget(batch.getTarget());
+            try {
+                apiClient.sendTextMessage(target[0], target[1], summary, target[2]);
+            } catch (Exception e) {
+                AppLog.e(TAG, "发送上传汇总失败", e);
+            }
+            return summary;
+        }
+    }
 }
@@ -1,13 +1,13 @@
 package com.kooo.evcam.feishu;
 
 import com.kooo.evcam.AppLog;
+import com.kooo.evcam.remote.http.HttpClients;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -31,11 +31,7 @@ public class FeishuApiClient {
     public FeishuApiClient(FeishuConfig config) {
         this.config = config;
         this.gson = new Gson();
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(120, TimeUnit.SECONDS) // 上传大文件需要更长时间
-                .build();
+        this.httpClient = HttpClients.withTimeouts(30, 30, 120); // 上传大文件需要更长的写入超时
     }
 
     /**
@@ -3,6 +3,9 @@ package com.kooo.evcam.feishu;
 import com.kooo.evcam.AppLog;
 import com.kooo.evcam.WakeUpHelper;
 import com.kooo.evcam.feishu.pb.Pbbp2Frame;
+import com.kooo.evcam.remote.core.CaptureScheduleRequest;
+import com.kooo.evcam.remote.core.ClipRequest;
+import com.kooo.evcam.remote.http.HttpClients;
 
 import android.content.Context;
 import android.net.Uri;
@@ -18,7 +21,6 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -44,7 +46,7 @@ public class FeishuBotManager {
     private final Handler mainHandler;
     private final Gson gson;
 
-    private OkHttpClient wsClient;
+    private final OkHttpClient wsClient = HttpClients.forWebSocket(0);
     private WebSocket webSocket;
     private volatile boolean isRunning = false;
     private volatile boolean shouldStop = false;
@@ -71,6 +73,8 @@ public class FeishuBotManager {
     public interface CommandCallback {
         void onRecordCommand(String chatId, String messageId, int durationSeconds);
         void onPhotoCommand(String chatId, String messageId);
+        void onClipCommand(String chatId, String messageId, ClipRequest request);
+        String onCaptureScheduleCommand(CaptureScheduleRequest request);
         String getStatusInfo();
         String onStartRecordingCommand();
         String onStopRecordingCommand();
@@ -129,14 +133,7 @@ public class FeishuBotManager {
                 // 2. 从 URL 中解析 service_id 和 device_id
                 parseUrlParams(wsUrl);
 
-                // 3. 创建 OkHttp WebSocket 客户端
-                wsClient = new OkHttpClient.Builder()
-                        .connectTimeout(30, TimeUnit.SECONDS)
-                        .readTimeout(0, TimeUnit.SECONDS) // 无超时，保持长连接
-                        .writeTimeout(30, TimeUnit.SECONDS)
-                        .build();
-
-                // 4. 建立 WebSocket 连接
+                // 3. 建立 WebSocket 连接（心跳由 ping 定时器按飞书协议发送）
                 Request request = new Request.Builder()
                         .url(wsUrl)
                         .build();
@@ -471,6 +468,37 @@ public class FeishuBotManager {
                     WakeUpHelper.launchForPhotoFeishu(context, chatId, messageId);
                 });
 
+            } else if (command.startsWith("片段") || command.toLowerCase().startsWith("clip")) {
+                ClipRequest request = ClipRequest.parse(
+                        command.replaceFirst("(?i)^(片段|clip)", ""), System.currentTimeMillis());
+                if (request == null) {
+                    sendReply(chatId, messageId, chatType, ClipRequest.USAGE);
+                } else {
+                    AppLog.d(TAG, "收到片段指令: " + request.describe());
+                    sendReplyAndThen(chatId, messageId, chatType,
+                            "收到片段指令，正在截取 " + request.describe() + " 的录像...", () -> {
+                        if (currentCommandCallback != null) {
+                            currentCommandCallback.onClipCommand(chatId, messageId, request);
+                        }
+                    });
+                }
+
+            } else if (command.startsWith("连拍") || command.toLowerCase().startsWith("burst") ||
+                       command.startsWith("延时") || command.toLowerCase().startsWith("timelapse")) {
+                // 连拍/延时拍摄指令：从当前预览抓图，直接回复执行结果
+                boolean burst = command.startsWith("连拍") || command.toLowerCase().startsWith("burst");
+                String args = command.replaceFirst("(?i)^(连拍|burst|延时|timelapse)", "");
+                CaptureScheduleRequest request = burst ?
+                        CaptureScheduleRequest.parseBurst(args) : CaptureScheduleRequest.parseTimelapse(args);
+                if (request == null) {
+                    sendReply(chatId, messageId, chatType, burst ? CaptureScheduleRequest.USAGE_BURST : CaptureScheduleRequest.USAGE_TIMELAPSE);
+                } else if (currentCommandCallback != null) {
+                    AppLog.d(TAG, "收到连拍/延时指令: " + request.describe());
+                    sendReply(chatId, messageId, chatType, currentCommandCallback.onCaptureScheduleCommand(request));
+                } else {
+                    sendReply(chatId, messageId, chatType, "❌ 功能不可用");
+                }
+
             } else if ("状态".equals(command) || "status".equalsIgnoreCase(command)) {
                 AppLog.d(TAG, "收到状态指令");
                 String statusInfo = currentCommandCallback != null ?
@@ -525,6 +553,14 @@ public class FeishuBotManager {
                     "• 结束录制 - 停止录制\n\n" +
                     "📷 拍照\n" +
                     "• 拍照 - 拍摄照片\n\n" +
+                    "🎞 事件片段\n" +
+                    "• 片段 14:02:10 - 截取该时刻前后30秒\n" +
+                    "• 片段 14:02:10 60 - 指定总秒数\n\n" +
+                    "⏱️ 连拍 / 延时\n" +
+                    "• 连拍 5 2 - 每路连拍5张，间隔2秒\n" +
+                    "• 延时 10 8h - 每10秒一帧，持续8小时\n" +
+                    "• 延时 10 8h 视频 - 合成为 MP4\n" +
+                    "• 延时 停止 - 提前结束\n\n" +
                     "ℹ️ 其他\n" +
                     "• 状态 - 查看应用状态\n" +
                     "• 退出 - 退出应用\n" +
@@ -690,11 +726,6 @@ public class FeishuBotManager {
             webSocket = null;
         }
 
-        if (wsClient != null) {
-            wsClient.dispatcher().executorService().shutdown();
-            wsClient = null;
-        }
-
         // 清除消息缓存
         messageCache.clear();
 
@@ -0,0 +1,234 @@
+package com.kooo.evcam.playback;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import com.kooo.evcam.AppLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * 事件片段截取（不重新编码）
+ *
+ * 从录制分段中截取指定时间范围，生成每路摄像头一个新的 MP4：
+ * - MediaExtractor 逐个读取压缩样本，MediaMuxer 直接写出，不解码、不重新编码
+ * - 起点对齐到之前最近的关键帧，保证片段可以直接播放
+ * - 范围跨越分段时按文件名中的开始时间拼接时间戳，连续写入同一个文件
+ *
+ * 正在录制的分段（普通 MP4 尚未写 moov）无法读取，会被跳过；分片 MP4 模式下可以读取已写出的部分。
+ * 耗时操作，必须在后台线程调用。
+ */
+public class EventClipExtractor {
+    private static final String TAG = "EventClipExtractor";
+
+    /** 远程片段的临时目录（位于 cacheDir 下，上传后删除） */
+    public static final String TEMP_CLIP_DIR = "event_clips";
+
+    /** 回看界面截取的片段目录（视频目录下的子目录，不混入录制列表） */
+    public static final String CLIP_DIR_NAME = "clips";
+
+    /** 样本缓冲区初始大小（遇到更大的样本时扩容） */
+    private static final int DEFAULT_SAMPLE_BUFFER_SIZE = 1024 * 1024;
+
+    /** 分段边界时间戳重叠时的最小帧间隔 */
+    private static final long MIN_SAMPLE_INTERVAL_US = 1000;
+
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    private ByteBuffer sampleBuffer = ByteBuffer.allocateDirect(DEFAULT_SAMPLE_BUFFER_SIZE);
+
+    /**
+     * 截取所有摄像头的片段
+     * @param segmentsByPosition 摄像头位置 -> 按时间排序的分段（见 MediaFileFinder.findVideoSegments）
+     * @param startMillis 片段起点
+     * @param endMillis 片段终点
+     * @param outputDir 输出目录
+     * @return 摄像头位置 -> 片段文件（截取失败的摄像头不包含在内）
+     */
+    public Map<String, File> extract(Map<String, List<File>> segmentsByPosition,
+                                     long startMillis, long endMillis, File outputDir) {
+        Map<String, File> clips = new LinkedHashMap<>();
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            AppLog.e(TAG, "无法创建片段目录: " + outputDir.getAbsolutePath());
+            return clips;
+        }
+
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date(startMillis));
+        for (Map.Entry<String, List<File>> entry : segmentsByPosition.entrySet()) {
+            // 与录制文件同样的命名格式，上传和回看时可以识别摄像头位置
+            File outFile = new File(outputDir, timestamp + "_" + entry.getKey() + ".mp4");
+            long begin = System.currentTimeMillis();
+            try {
+                if (extractClip(entry.getValue(), startMillis, endMillis, outFile)) {
+                    clips.put(entry.getKey(), outFile);
+                    AppLog.d(TAG, "片段截取完成: " + outFile.getName() + " (" + (outFile.length() / 1024) + "KB, "
+                            + (System.currentTimeMillis() - begin) + "ms)");
+                }
+            } catch (IOException | RuntimeException e) {
+                AppLog.e(TAG, "片段截取失败: " + entry.getKey(), e);
+                outFile.delete();
+            }
+        }
+        return clips;
+    }
+
+    /**
+     * 截取单路摄像头的片段
+     * @param segments 按时间排序的分段
+     * @return true 表示已写出至少一帧
+     */
+    public boolean extractClip(List<File> segments, long startMillis, long endMillis, File outFile) throws IOException {
+        MediaMuxer muxer = null;
+        MediaFormat clipFormat = null;
+        int clipTrack = -1;
+        long basePtsUs = -1;
+        long lastPtsUs = -1;
+        int sampleCount = 0;
+
+        try {
+            for (File segment : segments) {
+                long key = RecordingFileName.parseTimestampKey(segment.getName());
+                if (key == RecordingFileName.INVALID_KEY) {
+                    continue;
+                }
+                long segmentStartMs = RecordingFileName.toEpochMillis(key, timeZone);
+
+                MediaExtractor extractor = new MediaExtractor();
+                try {
+                    try {
+                        extractor.setDataSource(segment.getAbsolutePath());
+                    } catch (IOException e) {
+                        AppLog.w(TAG, "跳过无法读取的分段（可能仍在录制）: " + segment.getName());
+                        continue;
+                    }
+                    int track = selectVideoTrack(extractor);
+                    if (track < 0) {
+                        AppLog.w(TAG, "分段中没有视频轨道: " + segment.getName());
+                        continue;
+                    }
+                    MediaFormat format = extractor.getTrackFormat(track);
+                    long fromUs = (startMillis - segmentStartMs) * 1000L;
+                    long toUs = (endMillis - segmentStartMs) * 1000L;
+                    if (format.containsKey(MediaFormat.KEY_DURATION) && format.getLong(MediaFormat.KEY_DURATION) < fromUs) {
+                        // 起点之前的分段在范围开始前就已结束
+                        continue;
+                    }
+                    extractor.selectTrack(track);
+
+                    if (muxer == null) {
+                        muxer = new MediaMuxer(outFile.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+                        clipTrack = muxer.addTrack(format);
+                        muxer.start();
+                        clipFormat = format;
+                    } else if (!isSameStream(clipFormat, format)) {
+                        // 分辨率变化的分段无法写入同一条轨道，片段到此为止
+                        AppLog.w(TAG, "分段格式变化，片段在 " + segment.getName() + " 之前结束");
+                        break;
+                    }
+
+                    if (fromUs > 0) {
+                        extractor.seekTo(fromUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                    }
+
+                    // 片段必须从关键帧开始
+                    boolean waitingForSync = sampleCount == 0;
+                    while (true) {
+                        long sampleTimeUs = extractor.getSampleTime();
+                        if (sampleTimeUs < 0 || sampleTimeUs > toUs) {
+                            break;
+                        }
+                        boolean sync = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0;
+                        if (waitingForSync && !sync) {
+                            extractor.advance();
+                            continue;
+                        }
+                        waitingForSync = false;
+
+                        ensureSampleBuffer(extractor.getSampleSize());
+                        int size = extractor.readSampleData(sampleBuffer, 0);
+                        if (size < 0) {
+                            break;
+                        }
+
+                        // 按分段开始时间换算到统一时间轴，文件名时间只精确到秒，重叠时保持递增
+                        long wallUs = segmentStartMs * 1000L + sampleTimeUs;
+                        if (basePtsUs < 0) {
+                            basePtsUs = wallUs;
+                        }
+                        long ptsUs = wallUs - basePtsUs;
+                        if (ptsUs <= lastPtsUs) {
+                            ptsUs = lastPtsUs + MIN_SAMPLE_INTERVAL_US;
+                        }
+
+                        bufferInfo.set(0, size, ptsUs, sync ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+                        muxer.writeSampleData(clipTrack, sampleBuffer, bufferInfo);
+                        lastPtsUs = ptsUs;
+                        sampleCount++;
+                        extractor.advance();
+                    }
+                } finally {
+                    extractor.release();
+                }
+            }
+        } finally {
+            if (muxer != null) {
+                try {
+                    if (sampleCount > 0) {
+                        muxer.stop();
+                    }
+                } catch (IllegalStateException e) {
+                    AppLog.e(TAG, "片段写入结束失败: " + outFile.getName(), e);
+                    sampleCount = 0;
+                }
+                muxer.release();
+            }
+        }
+
+        if (sampleCount == 0) {
+            outFile.delete();
+            AppLog.w(TAG, "时间范围内没有可用的帧: " + outFile.getName());
+            return false;
+        }
+        AppLog.d(TAG, outFile.getName() + ": " + sampleCount + " 帧, " + (lastPtsUs / 1000) + "ms");
+        return true;
+    }
+
+    // ===== 私有方法 =====
+
+    private static int selectVideoTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("video/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSameStream(MediaFormat a, MediaFormat b) {
+        String mimeA = a.getString(MediaFormat.KEY_MIME);
+        return mimeA != null && mimeA.equals(b.getString(MediaFormat.KEY_MIME))
+                && a.getInteger(MediaFormat.KEY_WIDTH) == b.getInteger(MediaFormat.KEY_WIDTH)
+                && a.getInteger(MediaFormat.KEY_HEIGHT) == b.getInteger(MediaFormat.KEY_HEIGHT);
+    }
+
+    /**
+     * 按样本大小扩容缓冲区（只增不减，跨分段和摄像头复用）
+     */
+    private void ensureSampleBuffer(long sampleSize) {
+        if (sampleSize > sampleBuffer.capacity()) {
+            sampleBuffer = ByteBuffer.allocateDirect((int) sampleSize * 3 / 2);
+        }
+    }
+}
@@ -26,7 +26,8 @@ import java.util.Set;
  * 可展开的图片分组适配器
  * 支持按日期分组显示，点击日期头部可展开/收起
  */
-public class ExpandablePhotoGroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class ExpandablePhotoGroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+        implements MediaGroupingEngine.ChangeListener<PhotoGroup> {
 
     private static final int VIEW_TYPE_DATE_HEADER = 0;
     private static final int VIEW_TYPE_PHOTO_GROUP = 1;
@@ -168,14 +169,14 @@ public class ExpandablePhotoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
         if (holder instanceof DateHeaderViewHolder) {
             @SuppressWarnings("unchecked")
             DateSection<PhotoGroup> section = (DateSection<PhotoGroup>) item;
-            bindDateHeader((DateHeaderViewHolder) holder, section, position);
+            bindDateHeader((DateHeaderViewHolder) holder, section);
         } else if (holder instanceof PhotoGroupViewHolder) {
             PhotoGroup group = (PhotoGroup) item;
-            bindPhotoGroup((PhotoGroupViewHolder) holder, group, position);
+            bindPhotoGroup((PhotoGroupViewHolder) holder, group);
         }
     }
 
-    private void bindDateHeader(DateHeaderViewHolder holder, DateSection<PhotoGroup> section, int position) {
+    private void bindDateHeader(DateHeaderViewHolder holder, DateSection<PhotoGroup> section) {
         // 设置日期文字
         holder.dateText.setText(section.getFullDateDisplay());
         
@@ -186,19 +187,30 @@ public class ExpandablePhotoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
         int iconRes = section.isExpanded() ? R.drawable.ic_expand_less : R.drawable.ic_expand_more;
         holder.expandIcon.setImageResource(iconRes);
         
-        // 点击切换展开状态
+        // 点击切换展开状态（只插入/移除该日期下的条目）
         holder.itemView.setOnClickListener(v -> {
+            int headerPosition = holder.getBindingAdapterPosition();
+            if (headerPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
             section.toggleExpanded();
-            buildFlattenedList();
-            notifyDataSetChanged();
+            int count = section.getItemCount();
+            if (section.isExpanded()) {
+                flattenedItems.addAll(headerPosition + 1, section.getItems());
+                notifyItemRangeInserted(headerPosition + 1, count);
+            } else {
+                flattenedItems.subList(headerPosition + 1, headerPosition + 1 + count).clear();
+                notifyItemRangeRemoved(headerPosition + 1, count);
+            }
+            notifyItemChanged(headerPosition);
             
             if (dateHeaderClickListener != null) {
-                dateHeaderClickListener.onDateHeaderClick(section, position);
+                dateHeaderClickListener.onDateHeaderClick(section, headerPosition);
             }
         });
     }
 
-    private void bindPhotoGroup(PhotoGroupViewHolder holder, PhotoGroup group, int position) {
+    private void bindPhotoGroup(PhotoGroupViewHolder holder, PhotoGroup group) {
         // 设置日期时间（只显示时间，因为日期已在头部显示）
         holder.videoDate.setVisibility(View.GONE);
         holder.videoTime.setText(group.getFormattedTime());
@@ -228,6 +240,10 @@ public class ExpandablePhotoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
 
         // 点击事件
         holder.itemView.setOnClickListener(v -> {
+            int currentPosition = holder.getBindingAdapterPosition();
+            if (currentPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
             if (isMultiSelectMode) {
                 // 多选模式：切换选中状态
                 if (selectedGroups.contains(group)) {
@@ -235,14 +251,14 @@ public class ExpandablePhotoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
                 } else {
                     selectedGroups.add(group);
                 }
-                notifyItemChanged(position);
+                notifyItemChanged(currentPosition);
                 if (itemSelectedListener != null) {
                     itemSelectedListener.onItemSelected(group);
                 }
             } else {
                 // 单选模式：选中并显示
                 if (itemClickListener != null) {
-                    itemClickListener.onItemClick(group, position);
+                    itemClickListener.onItemClick(group, currentPosition);
                 }
             }
         });
@@ -281,6 +297,68 @@ public class ExpandablePhotoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
         return flattenedItems.size();
     }
 
+    // ===== 分组引擎增量变化（只刷新受影响的条目） =====
+
+    /**
+     * 计算日期头部在扁平列表中的位置
+     */
+    private int getHeaderPosition(int sectionIndex) {
+        int position = 0;
+        for (int i = 0; i < sectionIndex; i++) {
+            DateSection<PhotoGroup> section = dateSections.get(i);
+            position += 1 + (section.isExpanded() ? section.getItemCount() : 0);
+        }
+        return position;
+    }
+
+    @Override
+    public void onSectionInserted(int sectionIndex) {
+        int position = getHeaderPosition(sectionIndex);
+        flattenedItems.add(position, dateSections.get(sectionIndex));
+        notifyItemInserted(position);
+    }
+
+    @Override
+    public void onSectionRemoved(int sectionIndex, DateSection<PhotoGroup> section) {
+        // 此时分组已为空，只需移除日期头部
+        int position = getHeaderPosition(sectionIndex);
+        flattenedItems.remove(position);
+        notifyItemRemoved(position);
+    }
+
+    @Override
+    public void onGroupInserted(int sectionIndex, int itemIndex) {
+        DateSection<PhotoGroup> section = dateSections.get(sectionIndex);
+        int headerPosition = getHeaderPosition(sectionIndex);
+        if (section.isExpanded()) {
+            int position = headerPosition + 1 + itemIndex;
+            flattenedItems.add(position, section.getItems().get(itemIndex));
+            notifyItemInserted(position);
+        }
+        // 更新头部的组数量
+        notifyItemChanged(headerPosition);
+    }
+
+    @Override
+    public void onGroupChanged(int sectionIndex, int itemIndex) {
+        if (dateSections.get(sectionIndex).isExpanded()) {
+            notifyItemChanged(getHeaderPosition(sectionIndex) + 1 + itemIndex);
+        }
+    }
+
+    @Override
+    public void onGroupRemoved(int sectionIndex, int itemIndex, PhotoGroup group) {
+        selectedGroups.remove(group);
+        DateSection<PhotoGroup> section = dateSections.get(sectionIndex);
+        int headerPosition = getHeaderPosition(sectionIndex);
+        if (section.isExpanded()) {
+            int position = headerPosition + 1 + itemIndex;
+            flattenedItems.remove(position);
+            notifyItemRemoved(position);
+        }
+        notifyItemChanged(headerPosition);
+    }
+
     /**
      * 日期头部 ViewHolder
      */
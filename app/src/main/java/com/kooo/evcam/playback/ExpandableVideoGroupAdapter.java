@@ -26,7 +26,8 @@ import java.util.Set;
  * 可展开的视频分组适配器
  * 支持按日期分组显示，点击日期头部可展开/收起
  */
-public class ExpandableVideoGroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class ExpandableVideoGroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+        implements MediaGroupingEngine.ChangeListener<VideoGroup> {
 
     private static final int VIEW_TYPE_DATE_HEADER = 0;
     private static final int VIEW_TYPE_VIDEO_GROUP = 1;
@@ -168,14 +169,14 @@ public class ExpandableVideoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
         if (holder instanceof DateHeaderViewHolder) {
             @SuppressWarnings("unchecked")
             DateSection<VideoGroup> section = (DateSection<VideoGroup>) item;
-            bindDateHeader((DateHeaderViewHolder) holder, section, position);
+            bindDateHeader((DateHeaderViewHolder) holder, section);
         } else if (holder instanceof VideoGroupViewHolder) {
             VideoGroup group = (VideoGroup) item;
-            bindVideoGroup((VideoGroupViewHolder) holder, group, position);
+            bindVideoGroup((VideoGroupViewHolder) holder, group);
         }
     }
 
-    private void bindDateHeader(DateHeaderViewHolder holder, DateSection<VideoGroup> section, int position) {
+    private void bindDateHeader(DateHeaderViewHolder holder, DateSection<VideoGroup> section) {
         // 设置日期文字
         holder.dateText.setText(section.getFullDateDisplay());
         
@@ -186,33 +187,54 @@ public class ExpandableVideoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
         int iconRes = section.isExpanded() ? R.drawable.ic_expand_less : R.drawable.ic_expand_more;
         holder.expandIcon.setImageResource(iconRes);
         
-        // 点击切换展开状态
+        // 点击切换展开状态（只插入/移除该日期下的条目）
         holder.itemView.setOnClickListener(v -> {
+            int headerPosition = holder.getBindingAdapterPosition();
+            if (headerPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
             section.toggleExpanded();
-            buildFlattenedList();
-            notifyDataSetChanged();
+            int count = section.getItemCount();
+            if (section.isExpanded()) {
+                flattenedItems.addAll(headerPosition + 1, section.getItems());
+                notifyItemRangeInserted(headerPosition + 1, count);
+            } else {
+                flattenedItems.subList(headerPosition + 1, headerPosition + 1 + count).clear();
+                notifyItemRangeRemoved(headerPosition + 1, count);
+            }
+            notifyItemChanged(headerPosition);
             
             if (dateHeaderClickListener != null) {
-                dateHeaderClickListener.onDateHeaderClick(section, position);
+                dateHeaderClickListener.onDateHeaderClick(section, headerPosition);
             }
         });
     }
 
-    private void bindVideoGroup(VideoGroupViewHolder holder, VideoGroup group, int position) {
+    private void bindVideoGroup(VideoGroupViewHolder holder, VideoGroup group) {
         // 设置日期时间（只显示时间，因为日期已在头部显示）
         holder.videoDate.setVisibility(View.GONE);
         holder.videoTime.setText(group.getFormattedTime());
         holder.videoSize.setText(group.getFormattedSize());
 
-        // 视频路数标签
-        int count = group.getVideoCount();
-        holder.videoCountBadge.setText(count + "路");
-
-        // 加载四个位置的缩略图
-        loadThumbnail(group.getFrontVideo(), holder.thumbFront);
-        loadThumbnail(group.getBackVideo(), holder.thumbBack);
-        loadThumbnail(group.getLeftVideo(), holder.thumbLeft);
-        loadThumbnail(group.getRightVideo(), holder.thumbRight);
+        if (group.isQuad()) {
+            // 四画面合成录制：一个文件已含四路画面，整幅显示在网格之上
+            holder.videoCountBadge.setText("四画面");
+            holder.thumbQuad.setVisibility(View.VISIBLE);
+            loadThumbnail(group.getQuadVideo(), holder.thumbQuad);
+        } else {
+            holder.thumbQuad.setVisibility(View.GONE);
+            Glide.with(context).clear(holder.thumbQuad);
+
+            // 视频路数标签
+            int count = group.getVideoCount();
+            holder.videoCountBadge.setText(count + "路");
+
+            // 加载四个位置的缩略图
+            loadThumbnail(group.getFrontVideo(), holder.thumbFront);
+            loadThumbnail(group.getBackVideo(), holder.thumbBack);
+            loadThumbnail(group.getLeftVideo(), holder.thumbLeft);
+            loadThumbnail(group.getRightVideo(), holder.thumbRight);
+        }
 
         // 选中状态样式
         boolean isSelected = selectedGroups.contains(group);
@@ -228,6 +250,10 @@ public class ExpandableVideoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
 
         // 点击事件
         holder.itemView.setOnClickListener(v -> {
+            int currentPosition = holder.getBindingAdapterPosition();
+            if (currentPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
             if (isMultiSelectMode) {
                 // 多选模式：切换选中状态
                 if (selectedGroups.contains(group)) {
@@ -235,14 +261,14 @@ public class ExpandableVideoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
                 } else {
                     selectedGroups.add(group);
                 }
-                notifyItemChanged(position);
+                notifyItemChanged(currentPosition);
                 if (itemSelectedListener != null) {
                     itemSelectedListener.onItemSelected(group);
                 }
             } else {
                 // 单选模式：选中并播放
                 if (itemClickListener != null) {
-                    itemClickListener.onItemClick(group, position);
+                    itemClickListener.onItemClick(group, currentPosition);
                 }
             }
         });
@@ -283,6 +309,68 @@ public class ExpandableVideoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
         return flattenedItems.size();
     }
 
+    // ===== 分组引擎增量变化（只刷新受影响的条目） =====
+
+    /**
+     * 计算日期头部在扁平列表中的位置
+     */
+    private int getHeaderPosition(int sectionIndex) {
+        int position = 0;
+        for (int i = 0; i < sectionIndex; i++) {
+            DateSection<VideoGroup> section = dateSections.get(i);
+            position += 1 + (section.isExpanded() ? section.getItemCount() : 0);
+        }
+        return position;
+    }
+
+    @Override
+    public void onSectionInserted(int sectionIndex) {
+        int position = getHeaderPosition(sectionIndex);
+        flattenedItems.add(position, dateSections.get(sectionIndex));
+        notifyItemInserted(position);
+    }
+
+    @Override
+    public void onSectionRemoved(int sectionIndex, DateSection<VideoGroup> section) {
+        // 此时分组已为空，只需移除日期头部
+        int position = getHeaderPosition(sectionIndex);
+        flattenedItems.remove(position);
+        notifyItemRemoved(position);
+    }
+
+    @Override
+    public void onGroupInserted(int sectionIndex, int itemIndex) {
+        DateSection<VideoGroup> section = dateSections.get(sectionIndex);
+        int headerPosition = getHeaderPosition(sectionIndex);
+        if (section.isExpanded()) {
+            int position = headerPosition + 1 + itemIndex;
+            flattenedItems.add(position, section.getItems().get(itemIndex));
+            notifyItemInserted(position);
+        }
+        // 更新头部的组数量
+        notifyItemChanged(headerPosition);
+    }
+
+    @Override
+    public void onGroupChanged(int sectionIndex, int itemIndex) {
+        if (dateSections.get(sectionIndex).isExpanded()) {
+            notifyItemChanged(getHeaderPosition(sectionIndex) + 1 + itemIndex);
+        }
+    }
+
+    @Override
+    public void onGroupRemoved(int sectionIndex, int itemIndex, VideoGroup group) {
+        selectedGroups.remove(group);
+        DateSection<VideoGroup> section = dateSections.get(sectionIndex);
+        int headerPosition = getHeaderPosition(sectionIndex);
+        if (section.isExpanded()) {
+            int position = headerPosition + 1 + itemIndex;
+            flattenedItems.remove(position);
+            notifyItemRemoved(position);
+        }
+        notifyItemChanged(headerPosition);
+    }
+
     /**
      * 日期头部 ViewHolder
      */
@@ -303,7 +391,7 @@ public class ExpandableVideoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
      * 视频组 ViewHolder
      */
     static class VideoGroupViewHolder extends RecyclerView.ViewHolder {
-        ImageView thumbFront, thumbBack, thumbLeft, thumbRight;
+        ImageView thumbFront, thumbBack, thumbLeft, thumbRight, thumbQuad;
         TextView videoDate, videoTime, videoSize, videoCountBadge;
         android.widget.CheckBox checkIndicator;
 
@@ -313,6 +401,7 @@ public class ExpandableVideoGroupAdapter extends RecyclerView.Adapter<RecyclerVi
             thumbBack = itemView.findViewById(R.id.thumb_back);
             thumbLeft = itemView.findViewById(R.id.thumb_left);
             thumbRight = itemView.findViewById(R.id.thumb_right);
+            thumbQuad = itemView.findViewById(R.id.thumb_quad);
             videoDate = itemView.findViewById(R.id.video_date);
             videoTime = itemView.findViewById(R.id.video_time);
             videoSize = itemView.findViewById(R.id.video_size);
@@ -0,0 +1,176 @@
+package com.kooo.evcam.playback;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.kooo.evcam.AppLog;
+import com.kooo.evcam.RecordingCatalog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 回看列表加载器
+ * 1. 首次加载在后台线程读取录制索引并构建分组，完成后在主线程整体替换
+ * 2. 之后监听录制索引变化（新分段、新照片、外部删除），在主线程对分组引擎做增量更新，
+ *    由引擎把局部变化推送给适配器，不再整表重建
+ *
+ * @param <G> VideoGroup 或 PhotoGroup
+ */
+class GroupedMediaLoader<G> implements RecordingCatalog.ChangeListener {
+    private static final String TAG = "GroupedMediaLoader";
+
+    /**
+     * 加载回调（主线程）
+     */
+    interface Callback {
+        /** 全量加载完成，需要整体刷新适配器 */
+        void onListLoaded();
+
+        /** 增量变化已推送给适配器 */
+        void onListChanged();
+    }
+
+    private final Context context;
+    private final MediaGroupingEngine<G> engine;
+    private final String[] extensions;
+    private final Callback callback;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 当前目录（索引回调线程也会读取）
+    private volatile File directory;
+
+    // 以下字段只在主线程访问
+    private int loadGeneration = 0;
+    private boolean loading = false;
+    private final List<Runnable> pendingChanges = new ArrayList<>();
+
+    /**
+     * @param engine 分组引擎（适配器持有其日期分组列表）
+     * @param extensions 关注的扩展名（小写，如 ".mp4"）
+     */
+    GroupedMediaLoader(Context context, MediaGroupingEngine<G> engine, Callback callback, String... extensions) {
+        this.context = context.getApplicationContext();
+        this.engine = engine;
+        this.callback = callback;
+        this.extensions = extensions;
+    }
+
+    /**
+     * 全量加载目录（后台线程构建，主线程替换）
+     * 加载期间收到的索引变化会暂存，替换完成后重放（新增/删除均为幂等操作）
+     */
+    void load(File directory) {
+        if (this.directory == null) {
+            RecordingCatalog.getInstance(context).addChangeListener(this);
+        }
+        this.directory = directory;
+        final int generation = ++loadGeneration;
+        loading = true;
+        pendingChanges.clear();
+
+        new Thread(() -> {
+            long startTime = System.currentTimeMillis();
+            List<RecordingCatalog.Entry> entries = RecordingCatalog.getInstance(context)
+                    .listEntries(directory, extensions);
+
+            // 索引按文件名升序，倒序遍历即按时间降序，每次都追加在末尾
+            MediaGroupingEngine<G> loaded = engine.newEmptyEngine();
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                RecordingCatalog.Entry entry = entries.get(i);
+                loaded.addFile(entry.getFile(), entry.getSize());
+            }
+
+            AppLog.d(TAG, "分组完成: " + directory.getName() + "，" + entries.size() + " 个文件，" +
+                    loaded.getGroupCount() + " 组，" + loaded.getSections().size() + " 天，耗时 " +
+                    (System.currentTimeMillis() - startTime) + "ms");
+
+            mainHandler.post(() -> {
+                if (generation != loadGeneration) {
+                    return;
+                }
+                engine.replaceWith(loaded);
+                loading = false;
+                callback.onListLoaded();
+
+                for (Runnable change : pendingChanges) {
+                    change.run();
+                }
+                if (!pendingChanges.isEmpty()) {
+                    pendingChanges.clear();
+                    callback.onListChanged();
+                }
+            });
+        }, "PlaybackGrouping").start();
+    }
+
+    /**
+     * 与目录实际内容比对，发现的增删通过索引变化回调增量更新列表
+     */
+    void refresh() {
+        File target = directory;
+        if (target == null) {
+            return;
+        }
+        new Thread(() -> RecordingCatalog.getInstance(context).refresh(target),
+                "PlaybackRefresh").start();
+    }
+
+    /**
+     * 停止监听（界面销毁时调用）
+     */
+    void stop() {
+        RecordingCatalog.getInstance(context).removeChangeListener(this);
+        loadGeneration++;
+        loading = false;
+        pendingChanges.clear();
+        directory = null;
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    // ===== 录制索引变化（任意线程） =====
+
+    @Override
+    public void onEntryAdded(File dir, RecordingCatalog.Entry entry) {
+        if (isRelevant(dir, entry)) {
+            mainHandler.post(() -> applyChange(() -> engine.addFile(entry.getFile(), entry.getSize())));
+        }
+    }
+
+    @Override
+    public void onEntryRemoved(File dir, RecordingCatalog.Entry entry) {
+        if (isRelevant(dir, entry)) {
+            mainHandler.post(() -> applyChange(() -> engine.removeFile(entry.getFile())));
+        }
+    }
+
+    // ===== 私有方法 =====
+
+    private void applyChange(Runnable change) {
+        if (directory == null) {
+            return;
+        }
+        if (loading) {
+            pendingChanges.add(change);
+            return;
+        }
+        change.run();
+        callback.onListChanged();
+    }
+
+    private boolean isRelevant(File dir, RecordingCatalog.Entry entry) {
+        File target = directory;
+        if (target == null || dir == null || !target.getAbsolutePath().equals(dir.getAbsolutePath())) {
+            return false;
+        }
+        String name = entry.getName().toLowerCase();
+        for (String extension : extensions) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
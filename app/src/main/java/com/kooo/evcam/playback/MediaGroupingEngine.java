@@ -0,0 +1,403 @@
+package com.kooo.evcam.playback;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * 回看列表分组引擎
+ * 将 yyyyMMdd_HHmmss_{position} 文件按时间戳聚合为 VideoGroup/PhotoGroup，再按日期聚合为 DateSection
+ *
+ * 与原先每次刷新全量重建（HashMap 分组 + 排序 + SimpleDateFormat 分日）不同：
+ * 1. 文件名直接解析为数值键 yyyyMMddHHmmss，不创建 SimpleDateFormat/Date/子字符串
+ * 2. 日期分组和组内条目都按数值键降序保存在有序数组中，二分查找定位
+ * 3. 单个文件的新增/删除只修改对应位置，并通过 ChangeListener 通知适配器做局部刷新
+ *
+ * 非线程安全，所有调用需在同一线程（回看界面为主线程）
+ * @param <G> VideoGroup 或 PhotoGroup
+ */
+public class MediaGroupingEngine<G> {
+
+    /**
+     * 分组对象操作（屏蔽 VideoGroup/PhotoGroup 的差异）
+     */
+    public interface GroupOps<G> {
+        G createGroup(String timestampPrefix, long timeMillis);
+        void addFile(G group, String position, File file, long size);
+        boolean removeFile(G group, String position, File file);
+        boolean isEmpty(G group);
+    }
+
+    /**
+     * 结构变化监听器（下标均为变化发生后的 DateSection 列表 / 组内列表下标）
+     * 一个日期分组的最后一组被移除时，先回调 onGroupRemoved，再回调 onSectionRemoved
+     * 新文件落在新的日期时，先回调 onSectionInserted（此时分组为空），再回调 onGroupInserted
+     */
+    public interface ChangeListener<G> {
+        void onSectionInserted(int sectionIndex);
+        void onSectionRemoved(int sectionIndex, DateSection<G> section);
+        void onGroupInserted(int sectionIndex, int itemIndex);
+        void onGroupChanged(int sectionIndex, int itemIndex);
+        void onGroupRemoved(int sectionIndex, int itemIndex, G group);
+    }
+
+    /**
+     * 单个日期的分组（与 DateSection 一一对应，额外保存降序的时间戳键）
+     */
+    private static class DaySlot<G> {
+        final int dateKey;
+        final DateSection<G> section;
+        long[] keys = new long[16];
+
+        DaySlot(int dateKey, DateSection<G> section) {
+            this.dateKey = dateKey;
+            this.section = section;
+        }
+
+        int size() {
+            return section.getItemCount();
+        }
+    }
+
+    private final GroupOps<G> ops;
+    private final TimeZone timeZone;
+
+    /** 对外暴露的日期分组列表（适配器直接持有此列表） */
+    private final List<DateSection<G>> sections = new ArrayList<>();
+
+    /** 与 sections 一一对应，按日期降序 */
+    private final List<DaySlot<G>> slots = new ArrayList<>();
+
+    private ChangeListener<G> listener;
+    private int groupCount = 0;
+    private int skippedCount = 0;
+
+    public MediaGroupingEngine(GroupOps<G> ops) {
+        this.ops = ops;
+        this.timeZone = TimeZone.getDefault();
+    }
+
+    /**
+     * 创建视频分组引擎
+     */
+    public static MediaGroupingEngine<VideoGroup> forVideos() {
+        return new MediaGroupingEngine<>(new GroupOps<VideoGroup>() {
+            @Override
+            public VideoGroup createGroup(String timestampPrefix, long timeMillis) {
+                return new VideoGroup(timestampPrefix, timeMillis);
+            }
+
+            @Override
+            public void addFile(VideoGroup group, String position, File file, long size) {
+                group.addFile(position, file, size);
+            }
+
+            @Override
+            public boolean removeFile(VideoGroup group, String position, File file) {
+                return group.removeFile(position, file);
+            }
+
+            @Override
+            public boolean isEmpty(VideoGroup group) {
+                return group.getVideoCount() == 0;
+            }
+        });
+    }
+
+    /**
+     * 创建图片分组引擎
+     */
+    public static MediaGroupingEngine<PhotoGroup> forPhotos() {
+        return new MediaGroupingEngine<>(new GroupOps<PhotoGroup>() {
+            @Override
+            public PhotoGroup createGroup(String timestampPrefix, long timeMillis) {
+                return new PhotoGroup(timestampPrefix, timeMillis);
+            }
+
+            @Override
+            public void addFile(PhotoGroup group, String position, File file, long size) {
+                group.addFile(position, file, size);
+            }
+
+            @Override
+            public boolean removeFile(PhotoGroup group, String position, File file) {
+                return group.removeFile(position, file);
+            }
+
+            @Override
+            public boolean isEmpty(PhotoGroup group) {
+                return group.getPhotoCount() == 0;
+            }
+        });
+    }
+
+    /**
+     * 创建使用相同分组操作的空引擎（用于在后台线程构建后整体替换）
+     */
+    public MediaGroupingEngine<G> newEmptyEngine() {
+        return new MediaGroupingEngine<>(ops);
+    }
+
+    public void setChangeListener(ChangeListener<G> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 获取日期分组列表（按日期降序，组内按时间降序）
+     */
+    public List<DateSection<G>> getSections() {
+        return sections;
+    }
+
+    /**
+     * 获取分组总数
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * 获取因文件名不符合命名格式而跳过的文件数
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    /**
+     * 添加文件
+     * 按时间降序依次添加时（如倒序遍历按文件名排序的索引）每次都落在末尾，无需移动数组
+     * @param file 文件
+     * @param size 文件大小（字节）
+     * @return 是否已加入分组
+     */
+    public boolean addFile(File file, long size) {
+        String name = file.getName();
+        long key = RecordingFileName.parseTimestampKey(name);
+        String position = key != RecordingFileName.INVALID_KEY ? RecordingFileName.extractPosition(name) : null;
+        if (position == null) {
+            skippedCount++;
+            return false;
+        }
+
+        int dateKey = RecordingFileName.getDateKey(key);
+        int slotIndex = findSlot(dateKey);
+        if (slotIndex < 0) {
+            slotIndex = -(slotIndex + 1);
+            insertSlot(slotIndex, dateKey);
+        }
+
+        DaySlot<G> slot = slots.get(slotIndex);
+        int itemIndex = searchDescending(slot.keys, slot.size(), key);
+        if (itemIndex >= 0) {
+            ops.addFile(slot.section.getItems().get(itemIndex), position, file, size);
+            if (listener != null) {
+                listener.onGroupChanged(slotIndex, itemIndex);
+            }
+            return true;
+        }
+
+        itemIndex = -(itemIndex + 1);
+        G group = ops.createGroup(name.substring(0, RecordingFileName.TIMESTAMP_LENGTH),
+                RecordingFileName.toEpochMillis(key, timeZone));
+        ops.addFile(group, position, file, size);
+        insertGroup(slot, itemIndex, key, group);
+        if (listener != null) {
+            listener.onGroupInserted(slotIndex, itemIndex);
+        }
+        return true;
+    }
+
+    /**
+     * 移除已删除的文件，分组变空时一并移除分组（及空的日期分组）
+     * @return 是否找到并移除
+     */
+    public boolean removeFile(File file) {
+        String name = file.getName();
+        long key = RecordingFileName.parseTimestampKey(name);
+        if (key == RecordingFileName.INVALID_KEY) {
+            return false;
+        }
+        String position = RecordingFileName.extractPosition(name);
+        int slotIndex = findSlot(RecordingFileName.getDateKey(key));
+        if (position == null || slotIndex < 0) {
+            return false;
+        }
+        DaySlot<G> slot = slots.get(slotIndex);
+        int itemIndex = searchDescending(slot.keys, slot.size(), key);
+        if (itemIndex < 0) {
+            return false;
+        }
+
+        G group = slot.section.getItems().get(itemIndex);
+        if (!ops.removeFile(group, position, file)) {
+            return false;
+        }
+        if (ops.isEmpty(group)) {
+            removeAt(slotIndex, itemIndex);
+        } else if (listener != null) {
+            listener.onGroupChanged(slotIndex, itemIndex);
+        }
+        return true;
+    }
+
+    /**
+     * 移除整个分组（用户删除选中的组）
+     * @param timestampPrefix 分组时间戳前缀
+     * @return 是否找到并移除
+     */
+    public boolean removeGroup(String timestampPrefix) {
+        long key = RecordingFileName.parseTimestampKey(timestampPrefix);
+        if (key == RecordingFileName.INVALID_KEY) {
+            return false;
+        }
+        int slotIndex = findSlot(RecordingFileName.getDateKey(key));
+        if (slotIndex < 0) {
+            return false;
+        }
+        DaySlot<G> slot = slots.get(slotIndex);
+        int itemIndex = searchDescending(slot.keys, slot.size(), key);
+        if (itemIndex < 0) {
+            return false;
+        }
+        removeAt(slotIndex, itemIndex);
+        return true;
+    }
+
+    /**
+     * 按时间戳键查找分组
+     * @return 分组，不存在时返回 null
+     */
+    public G findGroup(long timestampKey) {
+        int slotIndex = findSlot(RecordingFileName.getDateKey(timestampKey));
+        if (slotIndex < 0) {
+            return null;
+        }
+        DaySlot<G> slot = slots.get(slotIndex);
+        int itemIndex = searchDescending(slot.keys, slot.size(), timestampKey);
+        return itemIndex >= 0 ? slot.section.getItems().get(itemIndex) : null;
+    }
+
+    /**
+     * 用另一个引擎（通常在后台线程构建）的内容替换当前内容
+     * 不回调监听器，调用方需整体刷新适配器
+     */
+    public void replaceWith(MediaGroupingEngine<G> other) {
+        sections.clear();
+        slots.clear();
+        sections.addAll(other.sections);
+        slots.addAll(other.slots);
+        groupCount = other.groupCount;
+        skippedCount = other.skippedCount;
+    }
+
+    /**
+     * 清空（不回调监听器）
+     */
+    public void clear() {
+        sections.clear();
+        slots.clear();
+        groupCount = 0;
+        skippedCount = 0;
+    }
+
+    // ===== 私有方法 =====
+
+    private int findSlot(int dateKey) {
+        // 最常见的情况是今天的新文件，先检查第一个日期
+        if (!slots.isEmpty() && slots.get(0).dateKey == dateKey) {
+            return 0;
+        }
+        int low = 0;
+        int high = slots.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = slots.get(mid).dateKey;
+            if (midKey > dateKey) {
+                low = mid + 1;
+            } else if (midKey < dateKey) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insertSlot(int slotIndex, int dateKey) {
+        long dayStartMillis = RecordingFileName.toEpochMillis(dateKey * 1000000L, timeZone);
+        DateSection<G> section = new DateSection<>(RecordingFileName.formatDateKey(dateKey),
+                new Date(dayStartMillis));
+        slots.add(slotIndex, new DaySlot<>(dateKey, section));
+        sections.add(slotIndex, section);
+        if (listener != null) {
+            listener.onSectionInserted(slotIndex);
+        }
+    }
+
+    private void insertGroup(DaySlot<G> slot, int itemIndex, long key, G group) {
+        int size = slot.size();
+        if (size == slot.keys.length) {
+            long[] grown = new long[size * 2];
+            System.arraycopy(slot.keys, 0, grown, 0, size);
+            slot.keys = grown;
+        }
+        if (itemIndex < size) {
+            System.arraycopy(slot.keys, itemIndex, slot.keys, itemIndex + 1, size - itemIndex);
+        }
+        slot.keys[itemIndex] = key;
+        slot.section.getItems().add(itemIndex, group);
+        groupCount++;
+    }
+
+    private void removeAt(int slotIndex, int itemIndex) {
+        DaySlot<G> slot = slots.get(slotIndex);
+        int size = slot.size();
+        if (itemIndex < size - 1) {
+            System.arraycopy(slot.keys, itemIndex + 1, slot.keys, itemIndex, size - itemIndex - 1);
+        }
+        G group = slot.section.getItems().remove(itemIndex);
+        groupCount--;
+        if (listener != null) {
+            listener.onGroupRemoved(slotIndex, itemIndex, group);
+        }
+
+        if (slot.size() == 0) {
+            slots.remove(slotIndex);
+            sections.remove(slotIndex);
+            if (listener != null) {
+                listener.onSectionRemoved(slotIndex, slot.section);
+            }
+        }
+    }
+
+    /**
+     * 在降序数组中二分查找
+     * @return 找到时返回下标，否则返回 -(插入位置 + 1)
+     */
+    private static int searchDescending(long[] keys, int size, long key) {
+        // 按时间降序批量加入时新键总是最小，直接落在末尾
+        if (size > 0 && keys[size - 1] > key) {
+            return -(size + 1);
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keys[mid];
+            if (midKey > key) {
+                low = mid + 1;
+            } else if (midKey < key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Map;
 /**
  * 多路视频同步播放管理器
  * 支持1-4路视频同时播放，并保持同步
+ * 四画面合成录制（quad）只有一个文件，直接在单路 VideoView 整画面播放
  */
 public class MultiVideoPlayerManager {
     private static final String TAG = "MultiVideoPlayerManager";
@@ -110,6 +111,15 @@ public class MultiVideoPlayerManager {
             return;
         }
 
+        if (group.isQuad()) {
+            // 四画面合成录制：一个播放器整画面播放，无需多路同步
+            totalVideos = 1;
+            isSingleMode = true;
+            singleModePosition = VideoGroup.POSITION_QUAD;
+            loadVideoIfExists(VideoGroup.POSITION_QUAD, group.getQuadVideo(), videoSingle);
+            return;
+        }
+
         // 统计要加载的视频数量
         if (group.hasVideo(VideoGroup.POSITION_FRONT)) totalVideos++;
         if (group.hasVideo(VideoGroup.POSITION_BACK)) totalVideos++;
@@ -433,6 +443,11 @@ public class MultiVideoPlayerManager {
      * 设置单路/多路模式
      */
     public void setSingleMode(boolean singleMode, String position) {
+        if (currentGroup != null && currentGroup.isQuad()) {
+            // 四画面合成录制固定整画面播放
+            return;
+        }
+
         // 先保存当前播放位置和状态
         int savedPosition = 0;
         boolean wasPlaying = isPlaying;
@@ -539,6 +554,8 @@ public class MultiVideoPlayerManager {
                 return videoLeft;
             case VideoGroup.POSITION_RIGHT:
                 return videoRight;
+            case VideoGroup.POSITION_QUAD:
+                return videoSingle;
             default:
                 return videoFront;
         }
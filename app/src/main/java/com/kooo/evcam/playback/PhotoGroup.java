@@ -7,6 +7,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 /**
  * 图片分组模型
@@ -27,28 +28,83 @@ public class PhotoGroup {
     /** 拍摄时间（解析自文件名） */
     private final Date captureTime;
 
+    /** 时间戳数值键 yyyyMMddHHmmss，文件名不规范时为 RecordingFileName.INVALID_KEY */
+    private final long timestampKey;
+
     /** 各位置的图片文件 */
     private final Map<String, File> photoFiles;
 
+    /** 各位置的文件大小（用于替换/移除单个文件时修正总大小） */
+    private final Map<String, Long> fileSizes;
+
     /** 总文件大小（所有位置之和） */
     private long totalSize;
 
     public PhotoGroup(String timestampPrefix) {
         this.timestampPrefix = timestampPrefix;
+        this.timestampKey = RecordingFileName.parseTimestampKey(timestampPrefix);
         this.photoFiles = new HashMap<>();
+        this.fileSizes = new HashMap<>();
         this.totalSize = 0;
         this.captureTime = parseTimestamp(timestampPrefix);
     }
 
+    /**
+     * 使用已解析的拍摄时间创建分组（分组引擎使用，不再解析时间戳）
+     */
+    public PhotoGroup(String timestampPrefix, long captureTimeMillis) {
+        this.timestampPrefix = timestampPrefix;
+        this.timestampKey = RecordingFileName.parseTimestampKey(timestampPrefix);
+        this.photoFiles = new HashMap<>();
+        this.fileSizes = new HashMap<>();
+        this.totalSize = 0;
+        this.captureTime = new Date(captureTimeMillis);
+    }
+
     /**
      * 添加图片文件到分组
      */
     public void addFile(File file) {
+        addFile(file, file.length());
+    }
+
+    /**
+     * 添加图片文件到分组（使用已知的文件大小，避免再次读取文件系统）
+     */
+    public void addFile(File file, long size) {
         String position = extractPosition(file.getName());
         if (position != null) {
-            photoFiles.put(position, file);
-            totalSize += file.length();
+            addFile(position, file, size);
+        }
+    }
+
+    /**
+     * 添加（或替换）指定位置的图片文件
+     */
+    public void addFile(String position, File file, long size) {
+        photoFiles.put(position, file);
+        Long oldSize = fileSizes.put(position, size);
+        if (oldSize != null) {
+            totalSize -= oldSize;
+        }
+        totalSize += size;
+    }
+
+    /**
+     * 移除指定位置的图片文件（文件已被删除时调用）
+     * @return 该位置确实是此文件并已移除时返回 true
+     */
+    public boolean removeFile(String position, File file) {
+        File current = photoFiles.get(position);
+        if (current == null || !current.equals(file)) {
+            return false;
         }
+        photoFiles.remove(position);
+        Long oldSize = fileSizes.remove(position);
+        if (oldSize != null) {
+            totalSize -= oldSize;
+        }
+        return true;
     }
 
     /**
@@ -86,6 +142,9 @@ public class PhotoGroup {
     }
 
     private Date parseTimestamp(String timestamp) {
+        if (timestampKey != RecordingFileName.INVALID_KEY) {
+            return new Date(RecordingFileName.toEpochMillis(timestampKey, TimeZone.getDefault()));
+        }
         try {
             SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault());
             return sdf.parse(timestamp);
@@ -100,6 +159,10 @@ public class PhotoGroup {
         return timestampPrefix;
     }
 
+    public long getTimestampKey() {
+        return timestampKey;
+    }
+
     public Date getCaptureTime() {
         return captureTime;
     }
@@ -115,6 +178,9 @@ public class PhotoGroup {
     }
 
     public String getFormattedTime() {
+        if (timestampKey != RecordingFileName.INVALID_KEY) {
+            return RecordingFileName.formatHourMinute(timestampKey);
+        }
         SimpleDateFormat sdf = new SimpleDateFormat("HH:mm", Locale.getDefault());
         return sdf.format(captureTime);
     }
@@ -189,6 +255,7 @@ public class PhotoGroup {
         }
         if (deleted > 0) {
             photoFiles.clear();
+            fileSizes.clear();
             totalSize = 0;
         }
         return deleted;
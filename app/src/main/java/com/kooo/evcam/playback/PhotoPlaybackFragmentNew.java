@@ -30,19 +30,15 @@ import android.widget.PopupMenu;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.kooo.evcam.MainActivity;
 import com.kooo.evcam.R;
+import com.kooo.evcam.RecordingCatalog;
 import com.kooo.evcam.StorageHelper;
 
 import java.io.File;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -71,7 +67,9 @@ public class PhotoPlaybackFragmentNew extends Fragment {
     private View controlsLayout;
 
     // 数据
-    private List<DateSection<PhotoGroup>> dateSections = new ArrayList<>();
+    private final MediaGroupingEngine<PhotoGroup> groupingEngine = MediaGroupingEngine.forPhotos();
+    private final List<DateSection<PhotoGroup>> dateSections = groupingEngine.getSections();
+    private GroupedMediaLoader<PhotoGroup> listLoader;
     private ExpandablePhotoGroupAdapter adapter;
     private PhotoGroup currentGroup;
 
@@ -147,6 +145,20 @@ public class PhotoPlaybackFragmentNew extends Fragment {
 
         // 设置列表（竖屏2列，横屏1列，日期头部跨越所有列）
         adapter = new ExpandablePhotoGroupAdapter(getContext(), dateSections);
+        groupingEngine.setChangeListener(adapter);
+        listLoader = new GroupedMediaLoader<>(getContext(), groupingEngine, new GroupedMediaLoader.Callback() {
+            @Override
+            public void onListLoaded() {
+                adapter.buildFlattenedList();
+                adapter.notifyDataSetChanged();
+                updateEmptyState();
+            }
+
+            @Override
+            public void onListChanged() {
+                updateEmptyState();
+            }
+        }, ".jpg", ".jpeg", ".png");
         int orientation = getResources().getConfiguration().orientation;
         if (orientation == Configuration.ORIENTATION_PORTRAIT) {
             GridLayoutManager gridLayoutManager = new GridLayoutManager(getContext(), 2);
@@ -191,8 +203,10 @@ public class PhotoPlaybackFragmentNew extends Fragment {
             }
         });
 
-        // 刷新
-        btnRefresh.setOnClickListener(v -> updatePhotoList());
+        // 刷新（先与目录实际内容比对，发现外部增删的文件）
+        btnRefresh.setOnClickListener(v -> {
+            listLoader.refresh();
+        });
 
         // 多选模式
         btnMultiSelect.setOnClickListener(v -> toggleMultiSelectMode());
@@ -433,67 +447,26 @@ public class PhotoPlaybackFragmentNew extends Fragment {
      * 更新图片列表（按日期分组，然后按时间戳分组）
      */
     private void updatePhotoList() {
-        dateSections.clear();
-
         File saveDir = StorageHelper.getPhotoDir(getContext());
         if (!saveDir.exists() || !saveDir.isDirectory()) {
+            groupingEngine.clear();
+            adapter.buildFlattenedList();
+            adapter.notifyDataSetChanged();
             showEmptyState();
             return;
         }
 
-        File[] files = saveDir.listFiles((dir, name) -> {
-            String lower = name.toLowerCase();
-            return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
-        });
-
-        if (files == null || files.length == 0) {
-            showEmptyState();
-            return;
-        }
-
-        // 第一步：按时间戳分组（同一秒拍摄的多路图片）
-        Map<String, PhotoGroup> groupMap = new HashMap<>();
-        for (File file : files) {
-            String timestamp = PhotoGroup.extractTimestampPrefix(file.getName());
-            PhotoGroup group = groupMap.get(timestamp);
-            if (group == null) {
-                group = new PhotoGroup(timestamp);
-                groupMap.put(timestamp, group);
-            }
-            group.addFile(file);
-        }
-
-        // 转为列表并排序（最新的在前）
-        List<PhotoGroup> allGroups = new ArrayList<>(groupMap.values());
-        Collections.sort(allGroups, (g1, g2) -> g2.getCaptureTime().compareTo(g1.getCaptureTime()));
-
-        // 第二步：按日期分组
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        Map<String, DateSection<PhotoGroup>> dateSectionMap = new LinkedHashMap<>();
-        
-        for (PhotoGroup group : allGroups) {
-            String dateString = dateFormat.format(group.getCaptureTime());
-            DateSection<PhotoGroup> section = dateSectionMap.get(dateString);
-            if (section == null) {
-                section = new DateSection<>(dateString, group.getCaptureTime());
-                dateSectionMap.put(dateString, section);
-            }
-            section.addItem(group);
-        }
-
-        // 日期分组已按日期排序（LinkedHashMap 保持插入顺序，而 allGroups 已排序）
-        dateSections.addAll(dateSectionMap.values());
+        // 后台线程从录制索引构建分组，之后随索引变化增量更新
+        listLoader.load(saveDir);
+    }
 
-        // 更新UI
+    private void updateEmptyState() {
         if (dateSections.isEmpty()) {
             showEmptyState();
         } else {
             photoList.setVisibility(View.VISIBLE);
             emptyText.setVisibility(View.GONE);
         }
-
-        adapter.buildFlattenedList();
-        adapter.notifyDataSetChanged();
     }
 
     private void showEmptyState() {
@@ -547,23 +520,18 @@ public class PhotoPlaybackFragmentNew extends Fragment {
                 .setMessage("确定要删除选中的 " + selectedGroups.size() + " 组照片吗？（包含所有摄像头照片）")
                 .setPositiveButton("删除", (dialog, which) -> {
                     int deletedCount = 0;
+                    RecordingCatalog catalog = RecordingCatalog.getInstance(getContext());
                     
-                    // 删除选中的图片组
-                    for (PhotoGroup group : selectedGroups) {
+                    // 删除选中的图片组（分组引擎移除后由适配器局部刷新）
+                    List<PhotoGroup> groupsToDelete = new ArrayList<>(selectedGroups);
+                    for (PhotoGroup group : groupsToDelete) {
+                        Collection<File> groupFiles = group.getAllPhotoFiles().values();
+                        groupingEngine.removeGroup(group.getTimestampPrefix());
                         deletedCount += group.deleteAll();
+                        catalog.onFilesRemoved(groupFiles);
                     }
-                    
-                    // 从日期分组中移除已删除的组
-                    for (DateSection<PhotoGroup> section : dateSections) {
-                        section.getItems().removeAll(selectedGroups);
-                    }
-                    
-                    // 移除空的日期分组
-                    dateSections.removeIf(section -> section.getItemCount() == 0);
 
                     adapter.clearSelection();
-                    adapter.buildFlattenedList();
-                    adapter.notifyDataSetChanged();
                     updateSelectedCount();
 
                     if (getContext() != null) {
@@ -593,4 +561,12 @@ public class PhotoPlaybackFragmentNew extends Fragment {
             androidx.core.view.ViewCompat.requestApplyInsets(toolbarView);
         }
     }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (listLoader != null) {
+            listLoader.stop();
+        }
+    }
 }
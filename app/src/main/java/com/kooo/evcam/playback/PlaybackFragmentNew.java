@@ -1,5 +1,6 @@
 package com.kooo.evcam.playback;
 
+import android.content.Context;
 import android.content.res.Configuration;
 import android.os.Bundle;
 import android.view.GestureDetector;
@@ -11,6 +12,7 @@ import android.widget.Button;
 import android.widget.FrameLayout;
 import android.widget.SeekBar;
 import android.widget.TextView;
+import android.widget.Toast;
 import android.widget.VideoView;
 
 import androidx.annotation.NonNull;
@@ -27,17 +29,17 @@ import android.widget.PopupMenu;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.kooo.evcam.MainActivity;
 import com.kooo.evcam.R;
+import com.kooo.evcam.RecordingCatalog;
 import com.kooo.evcam.StorageHelper;
+import com.kooo.evcam.remote.core.ClipRequest;
+import com.kooo.evcam.remote.upload.MediaFileFinder;
 
 import java.io.File;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -67,12 +69,14 @@ public class PlaybackFragmentNew extends Fragment {
     private TextView placeholderFront, placeholderBack, placeholderLeft, placeholderRight;
 
     // 播放控制组件
-    private Button btnPlayPause, btnViewMode, btnSpeed;
+    private Button btnPlayPause, btnViewMode, btnSpeed, btnClip;
     private SeekBar seekBar;
     private TextView currentTime, totalTime;
 
     // 数据
-    private List<DateSection<VideoGroup>> dateSections = new ArrayList<>();
+    private final MediaGroupingEngine<VideoGroup> groupingEngine = MediaGroupingEngine.forVideos();
+    private final List<DateSection<VideoGroup>> dateSections = groupingEngine.getSections();
+    private GroupedMediaLoader<VideoGroup> listLoader;
     private VideoGroup currentGroup;
     private ExpandableVideoGroupAdapter adapter;
     private MultiVideoPlayerManager playerManager;
@@ -151,12 +155,27 @@ public class PlaybackFragmentNew extends Fragment {
         btnPlayPause = view.findViewById(R.id.btn_play_pause);
         btnViewMode = view.findViewById(R.id.btn_view_mode);
         btnSpeed = view.findViewById(R.id.btn_speed);
+        btnClip = view.findViewById(R.id.btn_clip);
         seekBar = view.findViewById(R.id.seek_bar);
         currentTime = view.findViewById(R.id.current_time);
         totalTime = view.findViewById(R.id.total_time);
 
         // 设置列表（竖屏2列，横屏1列，日期头部跨越所有列）
         adapter = new ExpandableVideoGroupAdapter(getContext(), dateSections);
+        groupingEngine.setChangeListener(adapter);
+        listLoader = new GroupedMediaLoader<>(getContext(), groupingEngine, new GroupedMediaLoader.Callback() {
+            @Override
+            public void onListLoaded() {
+                adapter.buildFlattenedList();
+                adapter.notifyDataSetChanged();
+                updateEmptyState();
+            }
+
+            @Override
+            public void onListChanged() {
+                updateEmptyState();
+            }
+        }, ".mp4");
         int orientation = getResources().getConfiguration().orientation;
         if (orientation == Configuration.ORIENTATION_PORTRAIT) {
             GridLayoutManager gridLayoutManager = new GridLayoutManager(getContext(), 2);
@@ -260,8 +279,10 @@ public class PlaybackFragmentNew extends Fragment {
             }
         });
 
-        // 刷新
-        btnRefresh.setOnClickListener(v -> updateVideoList());
+        // 刷新（先与目录实际内容比对，发现外部增删的文件）
+        btnRefresh.setOnClickListener(v -> {
+            listLoader.refresh();
+        });
 
         // 多选模式
         btnMultiSelect.setOnClickListener(v -> toggleMultiSelectMode());
@@ -290,6 +311,9 @@ public class PlaybackFragmentNew extends Fragment {
             btnSpeed.setText(String.format(Locale.getDefault(), "%.1fx", newSpeed));
         });
 
+        // 截取当前时刻前后的片段
+        btnClip.setOnClickListener(v -> showClipDialog());
+
         // 进度条
         seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
@@ -326,7 +350,7 @@ public class PlaybackFragmentNew extends Fragment {
             GestureDetector detector = new GestureDetector(getContext(), new GestureDetector.SimpleOnGestureListener() {
                 @Override
                 public boolean onDoubleTap(MotionEvent e) {
-                    if (isSingleMode) {
+                    if (isSingleMode && !isQuadGroup()) {
                         switchToMultiMode();
                     }
                     return true;
@@ -408,7 +432,7 @@ public class PlaybackFragmentNew extends Fragment {
      * 只切换到有视频的摄像头
      */
     private void cycleViewMode() {
-        if (currentGroup == null) return;
+        if (currentGroup == null || currentGroup.isQuad()) return;
         
         // 构建可用位置列表
         java.util.List<String> availablePositions = new java.util.ArrayList<>();
@@ -452,6 +476,9 @@ public class PlaybackFragmentNew extends Fragment {
      * 切换单路/多路模式
      */
     private void toggleViewMode() {
+        if (isQuadGroup()) {
+            return;
+        }
         if (isSingleMode) {
             // 当前是单路模式，切换回多路
             switchToMultiMode();
@@ -518,7 +545,16 @@ public class PlaybackFragmentNew extends Fragment {
         }
         
         // 显示四宫格（根据当前模式）
-        if (isSingleMode) {
+        if (group.isQuad()) {
+            // 四画面合成录制：画面已拼接，直接整画面单路播放
+            multiViewLayout.setVisibility(View.GONE);
+            singleViewLayout.setVisibility(View.VISIBLE);
+            if (videoSingle != null) {
+                videoSingle.setVisibility(View.VISIBLE);
+            }
+            labelSingle.setText("四画面");
+            btnViewMode.setText("四画面");
+        } else if (isSingleMode) {
             multiViewLayout.setVisibility(View.GONE);
             singleViewLayout.setVisibility(View.VISIBLE);
         } else {
@@ -540,6 +576,13 @@ public class PlaybackFragmentNew extends Fragment {
         playerManager.loadVideoGroup(group);
     }
     
+    /**
+     * 当前是否在播放四画面合成录制
+     */
+    private boolean isQuadGroup() {
+        return currentGroup != null && currentGroup.isQuad();
+    }
+
     /**
      * 查找第一个有视频的摄像头位置
      */
@@ -569,63 +612,26 @@ public class PlaybackFragmentNew extends Fragment {
      * 更新视频列表（按日期分组，然后按时间戳分组）
      */
     private void updateVideoList() {
-        dateSections.clear();
-
         File saveDir = StorageHelper.getVideoDir(getContext());
         if (!saveDir.exists() || !saveDir.isDirectory()) {
+            groupingEngine.clear();
+            adapter.buildFlattenedList();
+            adapter.notifyDataSetChanged();
             showEmptyState();
             return;
         }
 
-        File[] files = saveDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".mp4"));
-        if (files == null || files.length == 0) {
-            showEmptyState();
-            return;
-        }
-
-        // 第一步：按时间戳分组（同一秒录制的多路视频）
-        Map<String, VideoGroup> groupMap = new HashMap<>();
-        for (File file : files) {
-            String timestamp = VideoGroup.extractTimestampPrefix(file.getName());
-            VideoGroup group = groupMap.get(timestamp);
-            if (group == null) {
-                group = new VideoGroup(timestamp);
-                groupMap.put(timestamp, group);
-            }
-            group.addFile(file);
-        }
-
-        // 转为列表并排序（最新的在前）
-        List<VideoGroup> allGroups = new ArrayList<>(groupMap.values());
-        Collections.sort(allGroups, (g1, g2) -> g2.getRecordTime().compareTo(g1.getRecordTime()));
-
-        // 第二步：按日期分组
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        Map<String, DateSection<VideoGroup>> dateSectionMap = new LinkedHashMap<>();
-        
-        for (VideoGroup group : allGroups) {
-            String dateString = dateFormat.format(group.getRecordTime());
-            DateSection<VideoGroup> section = dateSectionMap.get(dateString);
-            if (section == null) {
-                section = new DateSection<>(dateString, group.getRecordTime());
-                dateSectionMap.put(dateString, section);
-            }
-            section.addItem(group);
-        }
-
-        // 日期分组已按日期排序（LinkedHashMap 保持插入顺序，而 allGroups 已排序）
-        dateSections.addAll(dateSectionMap.values());
+        // 后台线程从录制索引构建分组，之后随索引变化增量更新
+        listLoader.load(saveDir);
+    }
 
-        // 更新UI
+    private void updateEmptyState() {
         if (dateSections.isEmpty()) {
             showEmptyState();
         } else {
             videoList.setVisibility(View.VISIBLE);
             emptyText.setVisibility(View.GONE);
         }
-
-        adapter.buildFlattenedList();
-        adapter.notifyDataSetChanged();
     }
 
     private void showEmptyState() {
@@ -679,23 +685,18 @@ public class PlaybackFragmentNew extends Fragment {
                 .setMessage("确定要删除选中的 " + selectedGroups.size() + " 组视频吗？（包含所有摄像头录像）")
                 .setPositiveButton("删除", (dialog, which) -> {
                     int deletedCount = 0;
+                    RecordingCatalog catalog = RecordingCatalog.getInstance(getContext());
                     
-                    // 删除选中的视频组
-                    for (VideoGroup group : selectedGroups) {
+                    // 删除选中的视频组（分组引擎移除后由适配器局部刷新）
+                    List<VideoGroup> groupsToDelete = new ArrayList<>(selectedGroups);
+                    for (VideoGroup group : groupsToDelete) {
+                        Collection<File> groupFiles = group.getAllVideoFiles().values();
+                        groupingEngine.removeGroup(group.getTimestampPrefix());
                         deletedCount += group.deleteAll();
+                        catalog.onFilesRemoved(groupFiles);
                     }
-                    
-                    // 从日期分组中移除已删除的组
-                    for (DateSection<VideoGroup> section : dateSections) {
-                        section.getItems().removeAll(selectedGroups);
-                    }
-                    
-                    // 移除空的日期分组
-                    dateSections.removeIf(section -> section.getItemCount() == 0);
 
                     adapter.clearSelection();
-                    adapter.buildFlattenedList();
-                    adapter.notifyDataSetChanged();
                     updateSelectedCount();
 
                     if (getContext() != null) {
@@ -713,6 +714,58 @@ public class PlaybackFragmentNew extends Fragment {
                 .show();
     }
 
+    /**
+     * 选择片段时长，截取当前播放位置前后的录像（所有摄像头）
+     */
+    private void showClipDialog() {
+        if (currentGroup == null || getContext() == null) {
+            return;
+        }
+        long centerMillis = currentGroup.getRecordTime().getTime() + playerManager.getCurrentPosition();
+        final int[] durations = {20, 30, 60};
+        String[] labels = new String[durations.length];
+        for (int i = 0; i < durations.length; i++) {
+            labels[i] = "前后共 " + durations[i] + " 秒";
+        }
+
+        new MaterialAlertDialogBuilder(getContext(), R.style.Theme_Cam_MaterialAlertDialog)
+                .setTitle("截取片段")
+                .setItems(labels, (dialog, which) -> extractClip(new ClipRequest(centerMillis, durations[which])))
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    /**
+     * 后台截取片段（跨分段，不重新编码），保存到视频目录的 clips 子目录
+     */
+    private void extractClip(ClipRequest request) {
+        Context context = getContext() != null ? getContext().getApplicationContext() : null;
+        if (context == null) {
+            return;
+        }
+        btnClip.setEnabled(false);
+        Toast.makeText(context, "正在截取 " + request.describe() + " ...", Toast.LENGTH_SHORT).show();
+
+        new Thread(() -> {
+            Map<String, List<File>> segments = new MediaFileFinder(context).findVideoSegments(
+                    request.getStartMillis(), request.getEndMillis());
+            File clipDir = new File(StorageHelper.getVideoDir(context), EventClipExtractor.CLIP_DIR_NAME);
+            Map<String, File> clips = new EventClipExtractor().extract(
+                    segments, request.getStartMillis(), request.getEndMillis(), clipDir);
+
+            if (getActivity() == null) {
+                return;
+            }
+            getActivity().runOnUiThread(() -> {
+                btnClip.setEnabled(true);
+                String message = clips.isEmpty()
+                        ? "截取失败：该时段没有可用的录像"
+                        : "已截取 " + clips.size() + " 路片段，保存在 " + clipDir.getAbsolutePath();
+                Toast.makeText(context, message, Toast.LENGTH_LONG).show();
+            });
+        }, "EventClipExtractor").start();
+    }
+
     /**
      * 格式化时间（毫秒 -> mm:ss）
      */
@@ -747,6 +800,9 @@ public class PlaybackFragmentNew extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        if (listLoader != null) {
+            listLoader.stop();
+        }
         if (playerManager != null) {
             playerManager.release();
         }
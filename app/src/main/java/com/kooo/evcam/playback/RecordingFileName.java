@@ -0,0 +1,192 @@
+package com.kooo.evcam.playback;
+
+import java.util.TimeZone;
+
+/**
+ * 录制文件名解析工具（不创建 SimpleDateFormat / Date / 子字符串）
+ * 文件命名格式：yyyyMMdd_HHmmss_{position}.ext
+ *
+ * 时间戳解析为可排序的数值键 yyyyMMddHHmmss（如 20260131125430），
+ * 数值大小与时间先后一致，可直接用于排序和二分查找
+ */
+public final class RecordingFileName {
+
+    /** 文件名不符合命名格式 */
+    public static final long INVALID_KEY = -1;
+
+    /** 时间戳部分长度："yyyyMMdd_HHmmss" */
+    public static final int TIMESTAMP_LENGTH = 15;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private RecordingFileName() {
+    }
+
+    /**
+     * 解析文件名开头的时间戳
+     * @param name 文件名或时间戳前缀，如 "20260131_125430_front.mp4"
+     * @return 数值键 yyyyMMddHHmmss，格式不符时返回 {@link #INVALID_KEY}
+     */
+    public static long parseTimestampKey(CharSequence name) {
+        if (name == null || name.length() < TIMESTAMP_LENGTH || name.charAt(8) != '_') {
+            return INVALID_KEY;
+        }
+        // 时间戳之后只能是结尾、下划线或扩展名
+        if (name.length() > TIMESTAMP_LENGTH) {
+            char next = name.charAt(TIMESTAMP_LENGTH);
+            if (next != '_' && next != '.') {
+                return INVALID_KEY;
+            }
+        }
+
+        long key = 0;
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            if (i == 8) {
+                continue;
+            }
+            int digit = name.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID_KEY;
+            }
+            key = key * 10 + digit;
+        }
+
+        int month = getMonth(key);
+        int day = getDay(key);
+        if (month < 1 || month > 12 || day < 1 || day > 31
+                || getHour(key) > 23 || getMinute(key) > 59 || getSecond(key) > 59) {
+            return INVALID_KEY;
+        }
+        return key;
+    }
+
+    /**
+     * 提取摄像头位置
+     * 标准位置（含四画面合成 quad）返回常量字符串（不分配），其他位置返回小写子字符串
+     * @return 位置，没有位置后缀时返回 null
+     */
+    public static String extractPosition(String name) {
+        int end = extensionStart(name);
+        int lastUnderscore = name.lastIndexOf('_', end - 1);
+        if (lastUnderscore <= 0 || lastUnderscore >= end - 1) {
+            return null;
+        }
+        int start = lastUnderscore + 1;
+        int length = end - start;
+        if (matches(name, start, length, VideoGroup.POSITION_FRONT)) {
+            return VideoGroup.POSITION_FRONT;
+        } else if (matches(name, start, length, VideoGroup.POSITION_BACK)) {
+            return VideoGroup.POSITION_BACK;
+        } else if (matches(name, start, length, VideoGroup.POSITION_LEFT)) {
+            return VideoGroup.POSITION_LEFT;
+        } else if (matches(name, start, length, VideoGroup.POSITION_RIGHT)) {
+            return VideoGroup.POSITION_RIGHT;
+        } else if (matches(name, start, length, VideoGroup.POSITION_QUAD)) {
+            return VideoGroup.POSITION_QUAD;
+        }
+        return name.substring(start, end).toLowerCase();
+    }
+
+    /**
+     * 日期键 yyyyMMdd（用于按天分组）
+     */
+    public static int getDateKey(long timestampKey) {
+        return (int) (timestampKey / 1000000L);
+    }
+
+    public static int getYear(long timestampKey) {
+        return (int) (timestampKey / 10000000000L);
+    }
+
+    public static int getMonth(long timestampKey) {
+        return (int) (timestampKey / 100000000L % 100);
+    }
+
+    public static int getDay(long timestampKey) {
+        return (int) (timestampKey / 1000000L % 100);
+    }
+
+    public static int getHour(long timestampKey) {
+        return (int) (timestampKey / 10000L % 100);
+    }
+
+    public static int getMinute(long timestampKey) {
+        return (int) (timestampKey / 100L % 100);
+    }
+
+    public static int getSecond(long timestampKey) {
+        return (int) (timestampKey % 100);
+    }
+
+    /**
+     * 将时间戳键换算为毫秒时间（按指定时区解释本地时间）
+     * 与 SimpleDateFormat("yyyyMMdd_HHmmss").parse() 结果一致，但不创建 Calendar
+     */
+    public static long toEpochMillis(long timestampKey, TimeZone timeZone) {
+        long localMillis = daysFromCivil(getYear(timestampKey), getMonth(timestampKey), getDay(timestampKey))
+                * MILLIS_PER_DAY
+                + (getHour(timestampKey) * 3600L + getMinute(timestampKey) * 60L + getSecond(timestampKey)) * 1000L;
+        // 先按标准偏移估算 UTC，再取该时刻的实际偏移（含夏令时）
+        int offset = timeZone.getOffset(localMillis - timeZone.getRawOffset());
+        long utcMillis = localMillis - offset;
+        if (timeZone.getOffset(utcMillis) != offset) {
+            // 夏令时跳过的本地时间不存在，与 SimpleDateFormat 一致按标准偏移解释
+            utcMillis = localMillis - timeZone.getRawOffset();
+        }
+        return utcMillis;
+    }
+
+    /**
+     * 格式化日期键为 "yyyy-MM-dd"
+     */
+    public static String formatDateKey(int dateKey) {
+        char[] chars = new char[10];
+        writeDigits(chars, 0, dateKey / 10000, 4);
+        chars[4] = '-';
+        writeDigits(chars, 5, dateKey / 100 % 100, 2);
+        chars[7] = '-';
+        writeDigits(chars, 8, dateKey % 100, 2);
+        return new String(chars);
+    }
+
+    /**
+     * 格式化时间为 "HH:mm"
+     */
+    public static String formatHourMinute(long timestampKey) {
+        char[] chars = new char[5];
+        writeDigits(chars, 0, getHour(timestampKey), 2);
+        chars[2] = ':';
+        writeDigits(chars, 3, getMinute(timestampKey), 2);
+        return new String(chars);
+    }
+
+    // ===== 私有方法 =====
+
+    private static int extensionStart(String name) {
+        int dotIndex = name.lastIndexOf('.');
+        return dotIndex > 0 ? dotIndex : name.length();
+    }
+
+    private static boolean matches(String name, int start, int length, String position) {
+        return length == position.length() && name.regionMatches(true, start, position, 0, length);
+    }
+
+    private static void writeDigits(char[] chars, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * 公历日期到 1970-01-01 的天数（proleptic Gregorian）
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -7,11 +7,13 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 /**
  * 视频分组模型
  * 将同一时间戳录制的多路视频组合在一起（前/后/左/右）
  * 文件命名格式：yyyyMMdd_HHmmss_{position}.mp4
+ * 四画面合成录制只有一个 quad 文件（2x2 拼接画面），按单路整画面播放
  */
 public class VideoGroup {
     
@@ -20,6 +22,8 @@ public class VideoGroup {
     public static final String POSITION_BACK = "back";
     public static final String POSITION_LEFT = "left";
     public static final String POSITION_RIGHT = "right";
+    /** 四画面合成录制（与 MultiCameraManager.COMPOSITE_KEY 一致） */
+    public static final String POSITION_QUAD = "quad";
     
     /** 时间戳前缀，如 "20260131_1254" */
     private final String timestampPrefix;
@@ -27,29 +31,91 @@ public class VideoGroup {
     /** 录制时间（解析自文件名） */
     private final Date recordTime;
     
+    /** 时间戳数值键 yyyyMMddHHmmss，文件名不规范时为 RecordingFileName.INVALID_KEY */
+    private final long timestampKey;
+
     /** 各位置的视频文件 */
     private final Map<String, File> videoFiles;
+
+    /** 各位置的文件大小（用于替换/移除单个文件时修正总大小） */
+    private final Map<String, Long> fileSizes;
     
     /** 总文件大小（所有位置之和） */
     private long totalSize;
     
     public VideoGroup(String timestampPrefix) {
         this.timestampPrefix = timestampPrefix;
+        this.timestampKey = RecordingFileName.parseTimestampKey(timestampPrefix);
         this.videoFiles = new HashMap<>();
+        this.fileSizes = new HashMap<>();
         this.totalSize = 0;
         this.recordTime = parseTimestamp(timestampPrefix);
     }
+
+    /**
+     * 使用已解析的录制时间创建分组（分组引擎使用，不再解析时间戳）
+     * @param timestampPrefix 时间戳前缀
+     * @param recordTimeMillis 录制时间（毫秒）
+     */
+    public VideoGroup(String timestampPrefix, long recordTimeMillis) {
+        this.timestampPrefix = timestampPrefix;
+        this.timestampKey = RecordingFileName.parseTimestampKey(timestampPrefix);
+        this.videoFiles = new HashMap<>();
+        this.fileSizes = new HashMap<>();
+        this.totalSize = 0;
+        this.recordTime = new Date(recordTimeMillis);
+    }
     
     /**
      * 添加视频文件到分组
      * @param file 视频文件
      */
     public void addFile(File file) {
+        addFile(file, file.length());
+    }
+    
+    /**
+     * 添加视频文件到分组（使用已知的文件大小，避免再次读取文件系统）
+     * @param file 视频文件
+     * @param size 文件大小（字节）
+     */
+    public void addFile(File file, long size) {
         String position = extractPosition(file.getName());
         if (position != null) {
-            videoFiles.put(position, file);
-            totalSize += file.length();
+            addFile(position, file, size);
+        }
+    }
+
+    /**
+     * 添加（或替换）指定位置的视频文件
+     * @param position 位置（front/back/left/right/quad）
+     * @param file 视频文件
+     * @param size 文件大小（字节）
+     */
+    public void addFile(String position, File file, long size) {
+        videoFiles.put(position, file);
+        Long oldSize = fileSizes.put(position, size);
+        if (oldSize != null) {
+            totalSize -= oldSize;
+        }
+        totalSize += size;
+    }
+
+    /**
+     * 移除指定位置的视频文件（文件已被删除时调用）
+     * @return 该位置确实是此文件并已移除时返回 true
+     */
+    public boolean removeFile(String position, File file) {
+        File current = videoFiles.get(position);
+        if (current == null || !current.equals(file)) {
+            return false;
+        }
+        videoFiles.remove(position);
+        Long oldSize = fileSizes.remove(position);
+        if (oldSize != null) {
+            totalSize -= oldSize;
         }
+        return true;
     }
     
     /**
@@ -98,6 +164,9 @@ public class VideoGroup {
      * 解析时间戳为日期
      */
     private Date parseTimestamp(String timestamp) {
+        if (timestampKey != RecordingFileName.INVALID_KEY) {
+            return new Date(RecordingFileName.toEpochMillis(timestampKey, TimeZone.getDefault()));
+        }
         try {
             SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault());
             return sdf.parse(timestamp);
@@ -111,6 +180,10 @@ public class VideoGroup {
     public String getTimestampPrefix() {
         return timestampPrefix;
     }
+
+    public long getTimestampKey() {
+        return timestampKey;
+    }
     
     public Date getRecordTime() {
         return recordTime;
@@ -136,13 +209,16 @@ public class VideoGroup {
      * 获取格式化的时间字符串
      */
     public String getFormattedTime() {
+        if (timestampKey != RecordingFileName.INVALID_KEY) {
+            return RecordingFileName.formatHourMinute(timestampKey);
+        }
         SimpleDateFormat sdf = new SimpleDateFormat("HH:mm", Locale.getDefault());
         return sdf.format(recordTime);
     }
     
     /**
      * 获取指定位置的视频文件
-     * @param position 位置（front/back/left/right）
+     * @param position 位置（front/back/left/right/quad）
      * @return 文件，可能为null
      */
     public File getVideoFile(String position) {
@@ -177,6 +253,20 @@ public class VideoGroup {
         return videoFiles.get(POSITION_RIGHT);
     }
     
+    /**
+     * 获取四画面合成视频
+     */
+    public File getQuadVideo() {
+        return videoFiles.get(POSITION_QUAD);
+    }
+
+    /**
+     * 是否为四画面合成录制（画面已拼接，不再按位置分开播放）
+     */
+    public boolean isQuad() {
+        return videoFiles.containsKey(POSITION_QUAD);
+    }
+    
     /**
      * 获取所有视频文件
      */
@@ -186,10 +276,12 @@ public class VideoGroup {
     
     /**
      * 获取第一个可用的缩略图文件（用于列表显示）
-     * 优先级：front > back > left > right
+     * 优先级：quad > front > back > left > right
      */
     public File getThumbnailFile() {
-        if (videoFiles.containsKey(POSITION_FRONT)) {
+        if (videoFiles.containsKey(POSITION_QUAD)) {
+            return videoFiles.get(POSITION_QUAD);
+        } else if (videoFiles.containsKey(POSITION_FRONT)) {
             return videoFiles.get(POSITION_FRONT);
         } else if (videoFiles.containsKey(POSITION_BACK)) {
             return videoFiles.get(POSITION_BACK);
@@ -250,6 +342,7 @@ public class VideoGroup {
         }
         if (deleted > 0) {
             videoFiles.clear();
+            fileSizes.clear();
             totalSize = 0;
         }
         return deleted;
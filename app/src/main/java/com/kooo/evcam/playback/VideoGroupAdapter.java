@@ -103,15 +103,25 @@ public class VideoGroupAdapter extends RecyclerView.Adapter<VideoGroupAdapter.Vi
         holder.videoTime.setText(group.getFormattedTime());
         holder.videoSize.setText(group.getFormattedSize());
 
-        // 视频路数标签
-        int count = group.getVideoCount();
-        holder.videoCountBadge.setText(count + "路");
-
-        // 加载四个位置的缩略图
-        loadThumbnail(group.getFrontVideo(), holder.thumbFront);
-        loadThumbnail(group.getBackVideo(), holder.thumbBack);
-        loadThumbnail(group.getLeftVideo(), holder.thumbLeft);
-        loadThumbnail(group.getRightVideo(), holder.thumbRight);
+        if (group.isQuad()) {
+            // 四画面合成录制：一个文件已含四路画面，整幅显示在网格之上
+            holder.videoCountBadge.setText("四画面");
+            holder.thumbQuad.setVisibility(View.VISIBLE);
+            loadThumbnail(group.getQuadVideo(), holder.thumbQuad);
+        } else {
+            holder.thumbQuad.setVisibility(View.GONE);
+            Glide.with(context).clear(holder.thumbQuad);
+
+            // 视频路数标签
+            int count = group.getVideoCount();
+            holder.videoCountBadge.setText(count + "路");
+
+            // 加载四个位置的缩略图
+            loadThumbnail(group.getFrontVideo(), holder.thumbFront);
+            loadThumbnail(group.getBackVideo(), holder.thumbBack);
+            loadThumbnail(group.getLeftVideo(), holder.thumbLeft);
+            loadThumbnail(group.getRightVideo(), holder.thumbRight);
+        }
 
         // 选中状态样式
         boolean isSelected = (position == selectedPosition) || selectedPositions.contains(position);
@@ -181,7 +191,7 @@ public class VideoGroupAdapter extends RecyclerView.Adapter<VideoGroupAdapter.Vi
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
-        ImageView thumbFront, thumbBack, thumbLeft, thumbRight;
+        ImageView thumbFront, thumbBack, thumbLeft, thumbRight, thumbQuad;
         TextView videoDate, videoTime, videoSize, videoCountBadge;
         android.widget.CheckBox checkIndicator;
 
@@ -191,6 +201,7 @@ public class VideoGroupAdapter extends RecyclerView.Adapter<VideoGroupAdapter.Vi
             thumbBack = itemView.findViewById(R.id.thumb_back);
             thumbLeft = itemView.findViewById(R.id.thumb_left);
             thumbRight = itemView.findViewById(R.id.thumb_right);
+            thumbQuad = itemView.findViewById(R.id.thumb_quad);
             videoDate = itemView.findViewById(R.id.video_date);
             videoTime = itemView.findViewById(R.id.video_time);
             videoSize = itemView.findViewById(R.id.video_size);
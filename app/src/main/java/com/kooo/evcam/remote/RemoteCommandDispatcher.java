@@ -6,11 +6,13 @@ import com.kooo.evcam.AppLog;
 import com.kooo.evcam.dingtalk.DingTalkApiClient;
 import com.kooo.evcam.feishu.FeishuApiClient;
 import com.kooo.evcam.remote.core.ChatIdentifier;
+import com.kooo.evcam.remote.core.ClipRequest;
 import com.kooo.evcam.remote.core.RemotePlatform;
 import com.kooo.evcam.remote.handler.DingTalkHandler;
 import com.kooo.evcam.remote.handler.FeishuHandler;
 import com.kooo.evcam.remote.handler.RemoteCommandHandler;
 import com.kooo.evcam.remote.handler.TelegramHandler;
+import com.kooo.evcam.remote.http.HttpClients;
 import com.kooo.evcam.telegram.TelegramApiClient;
 
 import java.util.EnumMap;
@@ -131,6 +133,19 @@ public class RemoteCommandDispatcher {
         }
     }
     
+    /**
+     * 截取并上传事件片段
+     */
+    public void startRemoteClip(RemotePlatform platform, ChatIdentifier chatId, ClipRequest request) {
+        RemoteCommandHandler handler = getHandler(platform);
+        if (handler != null) {
+            AppLog.d(TAG, "分发事件片段命令到 " + platform.getDisplayName());
+            handler.startRemoteClip(chatId, request);
+        } else {
+            AppLog.e(TAG, "未找到 " + platform.getDisplayName() + " 处理器");
+        }
+    }
+    
     /**
      * 发送消息
      */
@@ -170,6 +185,14 @@ public class RemoteCommandDispatcher {
         startRemotePhoto(RemotePlatform.DINGTALK, chatId);
     }
     
+    /**
+     * 钉钉事件片段（便捷方法）
+     */
+    public void startDingTalkClip(String conversationId, String conversationType, String userId, ClipRequest request) {
+        ChatIdentifier chatId = ChatIdentifier.dingtalk(conversationId, conversationType, userId);
+        startRemoteClip(RemotePlatform.DINGTALK, chatId, request);
+    }
+    
     // ==================== 便捷方法 - Telegram ====================
     
     /**
@@ -188,6 +211,14 @@ public class RemoteCommandDispatcher {
         startRemotePhoto(RemotePlatform.TELEGRAM, id);
     }
     
+    /**
+     * Telegram 事件片段（便捷方法）
+     */
+    public void startTelegramClip(long chatId, ClipRequest request) {
+        ChatIdentifier id = ChatIdentifier.telegram(chatId);
+        startRemoteClip(RemotePlatform.TELEGRAM, id, request);
+    }
+    
     // ==================== 便捷方法 - 飞书 ====================
     
     /**
@@ -206,6 +237,14 @@ public class RemoteCommandDispatcher {
         startRemotePhoto(RemotePlatform.FEISHU, id);
     }
     
+    /**
+     * 飞书事件片段（便捷方法）
+     */
+    public void startFeishuClip(String chatId, ClipRequest request) {
+        ChatIdentifier id = ChatIdentifier.feishu(chatId);
+        startRemoteClip(RemotePlatform.FEISHU, id, request);
+    }
+    
     // ==================== 状态查询 ====================
     
     /**
@@ -281,6 +320,7 @@ public class RemoteCommandDispatcher {
         for (RemoteCommandHandler handler : handlers.values()) {
             handler.cleanup();
         }
+        AppLog.d(TAG, "HTTP 连接统计: " + HttpClients.describeStats());
         AppLog.d(TAG, "RemoteCommandDispatcher 资源已清理");
     }
 }
@@ -0,0 +1,212 @@
+package com.kooo.evcam.remote.core;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 连拍 / 延时拍摄请求
+ *
+ * 指令格式（关键字之后的部分）：
+ * - 连拍 5 2          每路摄像头拍 5 张，间隔 2 秒（默认 5 张、2 秒）
+ * - 延时 10 8h        每 10 秒一帧，持续 8 小时（默认 10 秒、8 小时）
+ * - 延时 10 30m 视频  合成为 MP4 而不是保存 JPEG 序列
+ * - 连拍 停止 / 延时 停止
+ * 时长不带单位时按小时处理
+ */
+public class CaptureScheduleRequest {
+
+    public enum Type {
+        BURST,
+        TIMELAPSE,
+        STOP
+    }
+
+    /** 连拍默认张数 */
+    public static final int DEFAULT_BURST_COUNT = 5;
+    /** 连拍最多张数 */
+    public static final int MAX_BURST_COUNT = 60;
+    /** 连拍默认间隔（秒） */
+    public static final int DEFAULT_BURST_INTERVAL_SECONDS = 2;
+    /** 延时拍摄默认间隔（秒） */
+    public static final int DEFAULT_TIMELAPSE_INTERVAL_SECONDS = 10;
+    /** 延时拍摄默认时长（分钟） */
+    public static final int DEFAULT_TIMELAPSE_MINUTES = 8 * 60;
+    /** 延时拍摄最长时长（分钟） */
+    public static final int MAX_TIMELAPSE_MINUTES = 24 * 60;
+    /** 最长间隔（秒） */
+    public static final int MAX_INTERVAL_SECONDS = 3600;
+
+    /** 指令用法说明（回复给用户） */
+    public static final String USAGE_BURST = "用法：连拍 5 2（张数 + 间隔秒数，默认 5 张、2 秒），连拍 停止";
+    public static final String USAGE_TIMELAPSE = "用法：延时 10 8h（间隔秒数 + 时长，默认 10 秒、8 小时），末尾加\"视频\"合成 MP4，延时 停止";
+
+    private static final Pattern DURATION = Pattern.compile("^(\\d+)(h|小时|m|min|分钟)?$");
+
+    private final Type type;
+    private final int count;
+    private final int intervalSeconds;
+    private final int durationMinutes;
+    private final boolean toVideo;
+
+    private CaptureScheduleRequest(Type type, int count, int intervalSeconds, int durationMinutes, boolean toVideo) {
+        this.type = type;
+        this.count = count;
+        this.intervalSeconds = intervalSeconds;
+        this.durationMinutes = durationMinutes;
+        this.toVideo = toVideo;
+    }
+
+    /**
+     * 解析连拍指令参数
+     * @param args 去掉关键字后的参数，如 "5 2"，可以为空
+     * @return 解析结果，格式不正确时返回 null
+     */
+    public static CaptureScheduleRequest parseBurst(String args) {
+        String[] parts = split(args);
+        if (parts.length == 1 && isStopToken(parts[0])) {
+            return stop();
+        }
+        if (parts.length > 2) {
+            return null;
+        }
+        int count = DEFAULT_BURST_COUNT;
+        int interval = DEFAULT_BURST_INTERVAL_SECONDS;
+        if (parts.length >= 1) {
+            count = parseInt(parts[0].replaceAll("(张|次)$", ""));
+        }
+        if (parts.length == 2) {
+            interval = parseSeconds(parts[1]);
+        }
+        if (count <= 0 || interval <= 0) {
+            return null;
+        }
+        return new CaptureScheduleRequest(Type.BURST, Math.min(count, MAX_BURST_COUNT),
+                Math.min(interval, MAX_INTERVAL_SECONDS), 0, false);
+    }
+
+    /**
+     * 解析延时拍摄指令参数
+     * @param args 去掉关键字后的参数，如 "10 8h 视频"，可以为空
+     * @return 解析结果，格式不正确时返回 null
+     */
+    public static CaptureScheduleRequest parseTimelapse(String args) {
+        String[] parts = split(args);
+        if (parts.length == 1 && isStopToken(parts[0])) {
+            return stop();
+        }
+        boolean toVideo = false;
+        int length = parts.length;
+        if (length > 0 && isVideoToken(parts[length - 1])) {
+            toVideo = true;
+            length--;
+        }
+        if (length > 2) {
+            return null;
+        }
+        int interval = DEFAULT_TIMELAPSE_INTERVAL_SECONDS;
+        int minutes = DEFAULT_TIMELAPSE_MINUTES;
+        if (length >= 1) {
+            interval = parseSeconds(parts[0]);
+        }
+        if (length == 2) {
+            minutes = parseMinutes(parts[1]);
+        }
+        if (interval <= 0 || minutes <= 0) {
+            return null;
+        }
+        return new CaptureScheduleRequest(Type.TIMELAPSE, 0, Math.min(interval, MAX_INTERVAL_SECONDS),
+                Math.min(minutes, MAX_TIMELAPSE_MINUTES), toVideo);
+    }
+
+    private static CaptureScheduleRequest stop() {
+        return new CaptureScheduleRequest(Type.STOP, 0, 0, 0, false);
+    }
+
+    private static String[] split(String args) {
+        if (args == null || args.trim().isEmpty()) {
+            return new String[0];
+        }
+        return args.trim().split("\\s+");
+    }
+
+    private static boolean isStopToken(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        return lower.equals("停止") || lower.equals("结束") || lower.equals("stop");
+    }
+
+    private static boolean isVideoToken(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        return lower.equals("视频") || lower.equals("video") || lower.equals("mp4");
+    }
+
+    /**
+     * 解析秒数（可带"秒"或 s 后缀），失败返回 -1
+     */
+    private static int parseSeconds(String text) {
+        return parseInt(text.toLowerCase(Locale.ROOT).replaceAll("(秒|s)$", ""));
+    }
+
+    /**
+     * 解析时长为分钟数（8h / 8小时 / 30m / 30分钟，不带单位按小时），失败返回 -1
+     */
+    private static int parseMinutes(String text) {
+        Matcher matcher = DURATION.matcher(text.toLowerCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            return -1;
+        }
+        int value = parseInt(matcher.group(1));
+        if (value < 0) {
+            return -1;
+        }
+        String unit = matcher.group(2);
+        boolean isMinutes = unit != null && (unit.equals("m") || unit.equals("min") || unit.equals("分钟"));
+        return isMinutes ? value : (int) Math.min(Integer.MAX_VALUE, value * 60L);
+    }
+
+    private static int parseInt(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ==================== Getters ====================
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getIntervalMillis() {
+        return intervalSeconds * 1000L;
+    }
+
+    public long getDurationMillis() {
+        return durationMinutes * 60_000L;
+    }
+
+    public boolean isToVideo() {
+        return toVideo;
+    }
+
+    /**
+     * 用于回复消息的描述，如 "每 10 秒一帧，持续 8 小时（合成视频）"
+     */
+    public String describe() {
+        switch (type) {
+            case BURST:
+                return "每路 " + count + " 张，间隔 " + intervalSeconds + " 秒";
+            case TIMELAPSE:
+                String duration = durationMinutes % 60 == 0
+                        ? (durationMinutes / 60) + " 小时" : durationMinutes + " 分钟";
+                return "每 " + intervalSeconds + " 秒一帧，持续 " + duration + (toVideo ? "（合成视频）" : "");
+            default:
+                return "停止";
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.kooo.evcam.remote.core;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 事件片段请求
+ * 描述"某个时刻前后 N 秒"的截取范围
+ *
+ * 指令格式（关键字之后的部分）：
+ * - 14:02:10 30      今天 14:02:10 前后共 30 秒
+ * - 140210           今天 14:02:10，默认 30 秒
+ * - 20260131_140210 60
+ * 只给出时分秒且晚于当前时间时，按昨天处理
+ */
+public class ClipRequest {
+
+    /** 默认片段时长（秒） */
+    public static final int DEFAULT_DURATION_SECONDS = 30;
+    /** 最短片段时长（秒） */
+    public static final int MIN_DURATION_SECONDS = 10;
+    /** 最长片段时长（秒） */
+    public static final int MAX_DURATION_SECONDS = 120;
+
+    /** 指令用法说明（回复给用户） */
+    public static final String USAGE = "用法：片段 14:02:10 30（时刻 + 总秒数，默认 30 秒）";
+
+    private static final Pattern FULL_TIMESTAMP = Pattern.compile("^(\\d{8})_(\\d{6})$");
+    private static final Pattern TIME_WITH_COLON = Pattern.compile("^(\\d{1,2}):(\\d{2})(?::(\\d{2}))?$");
+    private static final Pattern TIME_COMPACT = Pattern.compile("^(\\d{2})(\\d{2})(\\d{2})$");
+
+    private final long centerMillis;
+    private final int durationSeconds;
+
+    public ClipRequest(long centerMillis, int durationSeconds) {
+        this.centerMillis = centerMillis;
+        this.durationSeconds = durationSeconds;
+    }
+
+    /**
+     * 解析指令参数
+     * @param args 去掉关键字后的参数，如 "14:02:10 30"
+     * @param nowMillis 当前时间（只有时分秒时用于确定日期）
+     * @return 解析结果，格式不正确时返回 null
+     */
+    public static ClipRequest parse(String args, long nowMillis) {
+        if (args == null) {
+            return null;
+        }
+        String[] parts = args.trim().split("\\s+");
+        if (parts.length == 0 || parts[0].isEmpty() || parts.length > 2) {
+            return null;
+        }
+
+        long center = parseTime(parts[0], nowMillis);
+        if (center < 0) {
+            return null;
+        }
+
+        int duration = DEFAULT_DURATION_SECONDS;
+        if (parts.length == 2) {
+            try {
+                duration = Integer.parseInt(parts[1].replaceAll("(?i)(秒|s)$", ""));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            duration = Math.max(MIN_DURATION_SECONDS, Math.min(MAX_DURATION_SECONDS, duration));
+        }
+        return new ClipRequest(center, duration);
+    }
+
+    /**
+     * 解析时刻
+     * @return 毫秒时间，格式不正确返回 -1
+     */
+    private static long parseTime(String text, long nowMillis) {
+        Matcher full = FULL_TIMESTAMP.matcher(text);
+        if (full.matches()) {
+            try {
+                SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault());
+                format.setLenient(false);
+                Date date = format.parse(text);
+                return date != null ? date.getTime() : -1;
+            } catch (java.text.ParseException e) {
+                return -1;
+            }
+        }
+
+        int hour;
+        int minute;
+        int second;
+        Matcher colon = TIME_WITH_COLON.matcher(text);
+        Matcher compact = TIME_COMPACT.matcher(text);
+        if (colon.matches()) {
+            hour = Integer.parseInt(colon.group(1));
+            minute = Integer.parseInt(colon.group(2));
+            second = colon.group(3) != null ? Integer.parseInt(colon.group(3)) : 0;
+        } else if (compact.matches()) {
+            hour = Integer.parseInt(compact.group(1));
+            minute = Integer.parseInt(compact.group(2));
+            second = Integer.parseInt(compact.group(3));
+        } else {
+            return -1;
+        }
+        if (hour > 23 || minute > 59 || second > 59) {
+            return -1;
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(nowMillis);
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        calendar.set(Calendar.MINUTE, minute);
+        calendar.set(Calendar.SECOND, second);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (calendar.getTimeInMillis() > nowMillis) {
+            // 还没到这个时刻，说的是昨天
+            calendar.add(Calendar.DAY_OF_MONTH, -1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    // ==================== Getters ====================
+
+    public long getCenterMillis() {
+        return centerMillis;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public long getStartMillis() {
+        return centerMillis - durationSeconds * 500L;
+    }
+
+    public long getEndMillis() {
+        return getStartMillis() + durationSeconds * 1000L;
+    }
+
+    /**
+     * 用于回复消息的描述，如 "01-31 14:02:10 前后共 30 秒"
+     */
+    public String describe() {
+        String time = new SimpleDateFormat("MM-dd HH:mm:ss", Locale.getDefault()).format(new Date(centerMillis));
+        return time + " 前后共 " + durationSeconds + " 秒";
+    }
+}
@@ -22,6 +22,8 @@ public class DingTalkHandler extends RemoteCommandHandler {
     private static final String TAG = "DingTalkHandler";
     
     private DingTalkApiClient apiClient;
+    private VideoUploadService videoUploadService;
+    private PhotoUploadService photoUploadService;
     
     public DingTalkHandler(Context context) {
         super(context);
@@ -29,6 +31,11 @@ public class DingTalkHandler extends RemoteCommandHandler {
     
     public void setApiClient(DingTalkApiClient apiClient) {
         this.apiClient = apiClient;
+        // 创建上传服务即注册到统一上传队列，同时续传进程被杀前未完成的上传
+        if (apiClient != null) {
+            videoUploadService = new VideoUploadService(context, apiClient);
+            photoUploadService = new PhotoUploadService(context, apiClient);
+        }
     }
     
     @Override
@@ -74,12 +81,12 @@ public class DingTalkHandler extends RemoteCommandHandler {
     
     @Override
     protected MediaUploadService createVideoUploadService() {
-        return new DingTalkVideoUploadAdapter(context, apiClient);
+        return new DingTalkVideoUploadAdapter(videoUploadService);
     }
     
     @Override
     protected MediaUploadService createPhotoUploadService() {
-        return new DingTalkPhotoUploadAdapter(context, apiClient);
+        return new DingTalkPhotoUploadAdapter(photoUploadService);
     }
     
     // ==================== 上传服务适配器 ====================
@@ -90,8 +97,8 @@ public class DingTalkHandler extends RemoteCommandHandler {
     private static class DingTalkVideoUploadAdapter implements MediaUploadService {
         private final VideoUploadService uploadService;
         
-        DingTalkVideoUploadAdapter(Context context, DingTalkApiClient apiClient) {
-            this.uploadService = new VideoUploadService(context, apiClient);
+        DingTalkVideoUploadAdapter(VideoUploadService uploadService) {
+            this.uploadService = uploadService;
         }
         
         @Override
@@ -131,8 +138,8 @@ public class DingTalkHandler extends RemoteCommandHandler {
     private static class DingTalkPhotoUploadAdapter implements MediaUploadService {
         private final PhotoUploadService uploadService;
         
-        DingTalkPhotoUploadAdapter(Context context, DingTalkApiClient apiClient) {
-            this.uploadService = new PhotoUploadService(context, apiClient);
+        DingTalkPhotoUploadAdapter(PhotoUploadService uploadService) {
+            this.uploadService = uploadService;
         }
         
         @Override
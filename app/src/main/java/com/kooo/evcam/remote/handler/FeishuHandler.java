@@ -25,6 +25,8 @@ public class FeishuHandler extends RemoteCommandHandler {
     private static final long MAX_FILE_SIZE_BYTES = 30 * 1024 * 1024; // 30MB
     
     private FeishuApiClient apiClient;
+    private FeishuVideoUploadService videoUploadService;
+    private FeishuPhotoUploadService photoUploadService;
     
     public FeishuHandler(Context context) {
         super(context);
@@ -32,6 +34,11 @@ public class FeishuHandler extends RemoteCommandHandler {
     
     public void setApiClient(FeishuApiClient apiClient) {
         this.apiClient = apiClient;
+        // 创建上传服务即注册到统一上传队列，同时续传进程被杀前未完成的上传
+        if (apiClient != null) {
+            videoUploadService = new FeishuVideoUploadService(context, apiClient);
+            photoUploadService = new FeishuPhotoUploadService(context, apiClient);
+        }
     }
     
     @Override
@@ -73,12 +80,12 @@ public class FeishuHandler extends RemoteCommandHandler {
     
     @Override
     protected MediaUploadService createVideoUploadService() {
-        return new FeishuVideoUploadAdapter(context, apiClient);
+        return new FeishuVideoUploadAdapter(videoUploadService);
     }
     
     @Override
     protected MediaUploadService createPhotoUploadService() {
-        return new FeishuPhotoUploadAdapter(context, apiClient);
+        return new FeishuPhotoUploadAdapter(photoUploadService);
     }
     
     /**
@@ -101,8 +108,8 @@ public class FeishuHandler extends RemoteCommandHandler {
     private static class FeishuVideoUploadAdapter implements MediaUploadService {
         private final FeishuVideoUploadService uploadService;
         
-        FeishuVideoUploadAdapter(Context context, FeishuApiClient apiClient) {
-            this.uploadService = new FeishuVideoUploadService(context, apiClient);
+        FeishuVideoUploadAdapter(FeishuVideoUploadService uploadService) {
+            this.uploadService = uploadService;
         }
         
         @Override
@@ -139,8 +146,8 @@ public class FeishuHandler extends RemoteCommandHandler {
     private static class FeishuPhotoUploadAdapter implements MediaUploadService {
         private final FeishuPhotoUploadService uploadService;
         
-        FeishuPhotoUploadAdapter(Context context, FeishuApiClient apiClient) {
-            this.uploadService = new FeishuPhotoUploadService(context, apiClient);
+        FeishuPhotoUploadAdapter(FeishuPhotoUploadService uploadService) {
+            this.uploadService = uploadService;
         }
         
         @Override
@@ -9,7 +9,10 @@ import com.kooo.evcam.AppLog;
 import com.kooo.evcam.CameraForegroundService;
 import com.kooo.evcam.FloatingWindowService;
 import com.kooo.evcam.WakeUpHelper;
+import com.kooo.evcam.camera.ShareTranscoder;
+import com.kooo.evcam.playback.EventClipExtractor;
 import com.kooo.evcam.remote.core.ChatIdentifier;
+import com.kooo.evcam.remote.core.ClipRequest;
 import com.kooo.evcam.remote.core.RecordingContext;
 import com.kooo.evcam.remote.core.RemotePlatform;
 import com.kooo.evcam.remote.core.RemoteUploadCallback;
@@ -18,9 +21,11 @@ import com.kooo.evcam.remote.upload.MediaUploadService;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * 远程命令处理器抽象基类
@@ -38,6 +43,7 @@ public abstract class RemoteCommandHandler {
     // 状态管理
     private volatile boolean isRemoteRecording = false;
     private volatile boolean isPreparingRecording = false;
+    private volatile boolean isExtractingClip = false;
     private RecordingContext currentContext = null;
     
     // 自动停止相关
@@ -360,6 +366,95 @@ public abstract class RemoteCommandHandler {
         }, 5000);
     }
     
+    // ==================== 事件片段 - 公共逻辑 ====================
+    
+    /**
+     * 截取并上传事件片段
+     * 不需要摄像头，直接从已录制的分段中截取（后台线程），完成后通过视频上传服务发送
+     */
+    public void startRemoteClip(ChatIdentifier chatId, ClipRequest request) {
+        String platformName = getPlatformName();
+        AppLog.d(TAG, platformName + " 事件片段: chatId=" + chatId.getId() + ", " + request.describe());
+        
+        if (!isApiClientReady()) {
+            AppLog.e(TAG, platformName + " API 客户端未初始化");
+            return;
+        }
+        if (isExtractingClip) {
+            sendError(chatId, "正在截取其他片段，请稍后再试");
+            return;
+        }
+        isExtractingClip = true;
+        
+        new Thread(() -> {
+            List<File> clipFiles = new ArrayList<>();
+            try {
+                Map<String, List<File>> segments = mediaFileFinder.findVideoSegments(
+                        request.getStartMillis(), request.getEndMillis());
+                if (segments.isEmpty()) {
+                    sendError(chatId, "未找到 " + request.describe() + " 的录像");
+                    return;
+                }
+                
+                File clipDir = new File(context.getCacheDir(), EventClipExtractor.TEMP_CLIP_DIR);
+                Map<String, File> clips = new EventClipExtractor().extract(
+                        segments, request.getStartMillis(), request.getEndMillis(), clipDir);
+                clipFiles.addAll(clips.values());
+                if (clipFiles.isEmpty()) {
+                    sendError(chatId, "片段截取失败（该时段的分段可能仍在录制中）");
+                    return;
+                }
+                AppLog.d(TAG, "截取到 " + clipFiles.size() + " 个片段，开始上传到" + platformName);
+            } catch (Exception e) {
+                AppLog.e(TAG, "片段截取异常", e);
+                sendError(chatId, "片段截取失败: " + e.getMessage());
+                return;
+            } finally {
+                if (clipFiles.isEmpty()) {
+                    isExtractingClip = false;
+                }
+            }
+            
+            mainHandler.post(() -> uploadClips(chatId, clipFiles));
+        }, "EventClipExtractor").start();
+    }
+    
+    /**
+     * 上传事件片段，完成后删除临时文件
+     */
+    private void uploadClips(ChatIdentifier chatId, List<File> clipFiles) {
+        String platformName = getPlatformName();
+        MediaUploadService uploadService = createVideoUploadService();
+        uploadService.uploadVideos(clipFiles, chatId, new RemoteUploadCallback() {
+            @Override
+            public void onProgress(String message) {
+                AppLog.d(TAG, platformName + " 片段上传进度: " + message);
+            }
+            
+            @Override
+            public void onSuccess(String message) {
+                AppLog.d(TAG, platformName + " 片段上传成功: " + message);
+                deleteClips(clipFiles);
+            }
+            
+            @Override
+            public void onError(String error) {
+                AppLog.e(TAG, platformName + " 片段上传失败: " + error);
+                deleteClips(clipFiles);
+                handleUploadError(chatId, error);
+            }
+        });
+    }
+    
+    private void deleteClips(List<File> clipFiles) {
+        for (File file : clipFiles) {
+            if (file.exists() && !file.delete()) {
+                AppLog.w(TAG, "删除临时片段失败: " + file.getAbsolutePath());
+            }
+        }
+        isExtractingClip = false;
+    }
+    
     // ==================== 上传逻辑 ====================
     
     /**
@@ -388,9 +483,27 @@ public abstract class RemoteCommandHandler {
         
         AppLog.d(TAG, "找到 " + videoFiles.size() + " 个视频文件，开始上传到" + platformName);
         
+        // 按分享参数转码（未启用时直接回调原文件）
+        ShareTranscoder transcoder = ShareTranscoder.getInstance(context);
+        if (transcoder.isEnabled()) {
+            sendMessage(chatId, "⏳ 正在压缩 " + videoFiles.size() + " 个视频以便上传...");
+        }
+        transcoder.prepareForShare(videoFiles,
+                (fileName, percent, remainingMs) -> AppLog.d(TAG, "分享转码进度: " + fileName + " " + percent + "%"
+                        + (remainingMs >= 0 ? "，剩余约 " + (remainingMs / 1000) + " 秒" : "")),
+                shareFiles -> uploadVideoFiles(chatId, videoFiles, shareFiles));
+    }
+    
+    /**
+     * 上传视频（转码后的分享文件），完成后删除转码临时文件并把原文件传输到最终目录
+     */
+    private void uploadVideoFiles(ChatIdentifier chatId, List<File> videoFiles, List<File> shareFiles) {
+        String platformName = getPlatformName();
+        ShareTranscoder transcoder = ShareTranscoder.getInstance(context);
+        
         // 创建上传服务并上传
         MediaUploadService uploadService = createVideoUploadService();
-        uploadService.uploadVideos(videoFiles, chatId, new RemoteUploadCallback() {
+        uploadService.uploadVideos(shareFiles, chatId, new RemoteUploadCallback() {
             @Override
             public void onProgress(String message) {
                 AppLog.d(TAG, platformName + " 视频上传进度: " + message);
@@ -399,6 +512,7 @@ public abstract class RemoteCommandHandler {
             @Override
             public void onSuccess(String message) {
                 AppLog.d(TAG, platformName + " 视频上传成功: " + message);
+                transcoder.releaseShareFiles(shareFiles);
                 
                 // 传输临时文件到最终目录
                 mediaFileFinder.transferToFinalDir(videoFiles);
@@ -409,6 +523,7 @@ public abstract class RemoteCommandHandler {
             @Override
             public void onError(String error) {
                 AppLog.e(TAG, platformName + " 视频上传失败: " + error);
+                transcoder.releaseShareFiles(shareFiles);
                 
                 // 即使上传失败，也要传输文件到最终存储位置（保留视频）
                 mediaFileFinder.transferToFinalDir(videoFiles);
@@ -495,6 +610,7 @@ public abstract class RemoteCommandHandler {
         }
         isRemoteRecording = false;
         isPreparingRecording = false;
+        isExtractingClip = false;
         currentContext = null;
     }
     
@@ -25,6 +25,8 @@ public class TelegramHandler extends RemoteCommandHandler {
     private static final long MAX_FILE_SIZE_BYTES = 50 * 1024 * 1024; // 50MB
     
     private TelegramApiClient apiClient;
+    private TelegramVideoUploadService videoUploadService;
+    private TelegramPhotoUploadService photoUploadService;
     
     public TelegramHandler(Context context) {
         super(context);
@@ -32,6 +34,11 @@ public class TelegramHandler extends RemoteCommandHandler {
     
     public void setApiClient(TelegramApiClient apiClient) {
         this.apiClient = apiClient;
+        // 创建上传服务即注册到统一上传队列，同时续传进程被杀前未完成的上传
+        if (apiClient != null) {
+            videoUploadService = new TelegramVideoUploadService(context, apiClient);
+            photoUploadService = new TelegramPhotoUploadService(context, apiClient);
+        }
     }
     
     @Override
@@ -73,12 +80,12 @@ public class TelegramHandler extends RemoteCommandHandler {
     
     @Override
     protected MediaUploadService createVideoUploadService() {
-        return new TelegramVideoUploadAdapter(context, apiClient);
+        return new TelegramVideoUploadAdapter(videoUploadService);
     }
     
     @Override
     protected MediaUploadService createPhotoUploadService() {
-        return new TelegramPhotoUploadAdapter(context, apiClient);
+        return new TelegramPhotoUploadAdapter(photoUploadService);
     }
     
     /**
@@ -101,8 +108,8 @@ public class TelegramHandler extends RemoteCommandHandler {
     private static class TelegramVideoUploadAdapter implements MediaUploadService {
         private final TelegramVideoUploadService uploadService;
         
-        TelegramVideoUploadAdapter(Context context, TelegramApiClient apiClient) {
-            this.uploadService = new TelegramVideoUploadService(context, apiClient);
+        TelegramVideoUploadAdapter(TelegramVideoUploadService uploadService) {
+            this.uploadService = uploadService;
         }
         
         @Override
@@ -139,8 +146,8 @@ public class TelegramHandler extends RemoteCommandHandler {
     private static class TelegramPhotoUploadAdapter implements MediaUploadService {
         private final TelegramPhotoUploadService uploadService;
         
-        TelegramPhotoUploadAdapter(Context context, TelegramApiClient apiClient) {
-            this.uploadService = new TelegramPhotoUploadService(context, apiClient);
+        TelegramPhotoUploadAdapter(TelegramPhotoUploadService uploadService) {
+            this.uploadService = uploadService;
         }
         
         @Override
@@ -0,0 +1,41 @@
+package com.kooo.evcam.remote.http;
+
+/**
+ * 单次请求的超时设置
+ * 以 Request.Builder.tag(CallTimeouts.class, ...) 附加到请求上，由共享客户端的拦截器生效，
+ * 不需要为个别请求（如 Telegram 长轮询）重新构建客户端。为 0 的项沿用客户端默认值。
+ */
+public final class CallTimeouts {
+    private final int connectMs;
+    private final int readMs;
+    private final int writeMs;
+
+    private CallTimeouts(int connectMs, int readMs, int writeMs) {
+        this.connectMs = Math.max(0, connectMs);
+        this.readMs = Math.max(0, readMs);
+        this.writeMs = Math.max(0, writeMs);
+    }
+
+    /**
+     * 只调整读取超时
+     */
+    public static CallTimeouts readSeconds(int seconds) {
+        return new CallTimeouts(0, seconds * 1000, 0);
+    }
+
+    public static CallTimeouts ofSeconds(int connectSeconds, int readSeconds, int writeSeconds) {
+        return new CallTimeouts(connectSeconds * 1000, readSeconds * 1000, writeSeconds * 1000);
+    }
+
+    public int getConnectMs() {
+        return connectMs;
+    }
+
+    public int getReadMs() {
+        return readMs;
+    }
+
+    public int getWriteMs() {
+        return writeMs;
+    }
+}
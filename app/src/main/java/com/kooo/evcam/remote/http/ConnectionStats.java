@@ -0,0 +1,83 @@
+package com.kooo.evcam.remote.http;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 共享 HTTP 客户端的连接统计（纯 Java）
+ * 由 HttpClients 的事件监听器累加：每次请求取得连接计一次 acquired，
+ * 其中真正新建（TCP + TLS 握手）的计入 newConnections，其余即为复用的连接。
+ */
+public final class ConnectionStats {
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong newConnections = new AtomicLong();
+    private final AtomicLong http2Connections = new AtomicLong();
+    private final AtomicLong failedConnects = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+
+    void onCallStart() {
+        calls.incrementAndGet();
+    }
+
+    void onCallFailed() {
+        failedCalls.incrementAndGet();
+    }
+
+    void onConnectEnd(boolean http2) {
+        newConnections.incrementAndGet();
+        if (http2) {
+            http2Connections.incrementAndGet();
+        }
+    }
+
+    void onConnectFailed() {
+        failedConnects.incrementAndGet();
+    }
+
+    void onConnectionAcquired() {
+        acquired.incrementAndGet();
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getFailedCalls() {
+        return failedCalls.get();
+    }
+
+    public long getNewConnections() {
+        return newConnections.get();
+    }
+
+    public long getHttp2Connections() {
+        return http2Connections.get();
+    }
+
+    /**
+     * 复用已有连接的次数（HTTP/2 多路复用同一连接也算复用）
+     */
+    public long getReusedConnections() {
+        return Math.max(0, acquired.get() - newConnections.get());
+    }
+
+    /**
+     * 连接复用率（0~1），尚无请求时为 0
+     */
+    public double getReuseRatio() {
+        long total = acquired.get();
+        return total == 0 ? 0 : getReusedConnections() / (double) total;
+    }
+
+    /**
+     * @param poolSize 连接池当前连接数
+     * @param idleCount 其中空闲的连接数
+     */
+    public String summary(int poolSize, int idleCount) {
+        return String.format(Locale.US,
+                "请求 %d (失败 %d), 新建连接 %d (HTTP/2 %d, 失败 %d), 复用 %d (%.0f%%), 连接池 %d (空闲 %d)",
+                calls.get(), failedCalls.get(), newConnections.get(), http2Connections.get(),
+                failedConnects.get(), getReusedConnections(), getReuseRatio() * 100, poolSize, idleCount);
+    }
+}
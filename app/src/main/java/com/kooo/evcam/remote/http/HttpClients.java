@@ -0,0 +1,173 @@
+package com.kooo.evcam.remote.http;
+
+import com.kooo.evcam.AppLog;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * 进程级共享 HTTP 客户端
+ *
+ * 各远程平台（钉钉、Telegram、飞书、微信云开发）原来各自 new OkHttpClient，
+ * 每个实例都有独立的连接池和调度线程，同一主机的 TLS 握手也无法复用。
+ * 这里只保留一个根客户端：
+ * - withTimeouts()/forWebSocket() 通过 newBuilder() 派生，共享同一个连接池、调度器和事件监听器
+ * - 个别请求需要不同超时时在 Request 上附加 CallTimeouts tag，拦截器按请求调整，不必再派生客户端
+ * - 优先 HTTP/2（TLS ALPN 协商），服务端不支持时回落 HTTP/1.1
+ * - 连接新建/复用情况累计到 ConnectionStats
+ *
+ * 派生客户端应在组件构造时创建并保存，不要在每次请求时派生。
+ * 共享的调度器和连接池不能被任何组件关闭（不要调用 dispatcher().executorService().shutdown()）。
+ */
+public final class HttpClients {
+    private static final String TAG = "HttpClients";
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS_PER_HOST = 6;
+
+    private static final long DEFAULT_CONNECT_SECONDS = 15;
+    private static final long DEFAULT_READ_SECONDS = 30;
+    private static final long DEFAULT_WRITE_SECONDS = 60;
+
+    private static final ConnectionStats STATS = new ConnectionStats();
+    private static volatile OkHttpClient shared;
+
+    private HttpClients() {
+    }
+
+    /**
+     * 根客户端（默认超时：连接 15 秒、读取 30 秒、写入 60 秒）
+     */
+    public static OkHttpClient shared() {
+        OkHttpClient client = shared;
+        if (client == null) {
+            synchronized (HttpClients.class) {
+                client = shared;
+                if (client == null) {
+                    client = createShared();
+                    shared = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 派生不同默认超时的客户端（共享连接池和调度器）
+     */
+    public static OkHttpClient withTimeouts(long connectSeconds, long readSeconds, long writeSeconds) {
+        return shared().newBuilder()
+                .connectTimeout(connectSeconds, TimeUnit.SECONDS)
+                .readTimeout(readSeconds, TimeUnit.SECONDS)
+                .writeTimeout(writeSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 派生 WebSocket 长连接客户端：不设读取超时
+     * @param pingIntervalSeconds 协议层心跳间隔，0 表示由调用方自行发送心跳
+     */
+    public static OkHttpClient forWebSocket(long pingIntervalSeconds) {
+        return shared().newBuilder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(0, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .pingInterval(pingIntervalSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public static ConnectionStats getStats() {
+        return STATS;
+    }
+
+    /**
+     * 连接统计摘要（含连接池当前状态）
+     */
+    public static String describeStats() {
+        ConnectionPool pool = shared().connectionPool();
+        return STATS.summary(pool.connectionCount(), pool.idleConnectionCount());
+    }
+
+    private static OkHttpClient createShared() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(DEFAULT_CONNECT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(DEFAULT_READ_SECONDS, TimeUnit.SECONDS)
+                .writeTimeout(DEFAULT_WRITE_SECONDS, TimeUnit.SECONDS)
+                .addInterceptor(HttpClients::applyCallTimeouts)
+                .eventListener(new StatsListener())
+                .build();
+        AppLog.d(TAG, "共享 HTTP 客户端已创建");
+        return client;
+    }
+
+    /**
+     * 按请求 tag 调整本次调用的超时
+     */
+    private static Response applyCallTimeouts(Interceptor.Chain chain) throws IOException {
+        CallTimeouts timeouts = chain.request().tag(CallTimeouts.class);
+        if (timeouts == null) {
+            return chain.proceed(chain.request());
+        }
+        Interceptor.Chain adjusted = chain;
+        if (timeouts.getConnectMs() > 0) {
+            adjusted = adjusted.withConnectTimeout(timeouts.getConnectMs(), TimeUnit.MILLISECONDS);
+        }
+        if (timeouts.getReadMs() > 0) {
+            adjusted = adjusted.withReadTimeout(timeouts.getReadMs(), TimeUnit.MILLISECONDS);
+        }
+        if (timeouts.getWriteMs() > 0) {
+            adjusted = adjusted.withWriteTimeout(timeouts.getWriteMs(), TimeUnit.MILLISECONDS);
+        }
+        return adjusted.proceed(adjusted.request());
+    }
+
+    /**
+     * 所有派生客户端共用的事件监听器，只做计数
+     */
+    private static final class StatsListener extends EventListener {
+        @Override
+        public void callStart(Call call) {
+            STATS.onCallStart();
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            STATS.onCallFailed();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            STATS.onConnectEnd(protocol == Protocol.HTTP_2);
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                                  Protocol protocol, IOException ioe) {
+            STATS.onConnectFailed();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            STATS.onConnectionAcquired();
+        }
+    }
+}
@@ -4,12 +4,18 @@ import android.content.Context;
 
 import com.kooo.evcam.AppLog;
 import com.kooo.evcam.FileTransferManager;
+import com.kooo.evcam.RecordingCatalog;
 import com.kooo.evcam.StorageHelper;
+import com.kooo.evcam.playback.RecordingFileName;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
 
 /**
  * 媒体文件查找工具
@@ -59,17 +65,14 @@ public class MediaFileFinder {
             return new ArrayList<>();
         }
         
-        File[] files = videoDir.listFiles((dir, name) -> 
-            name.startsWith(timestamp) && name.endsWith(".mp4")
-        );
-        
-        if (files == null || files.length == 0) {
+        List<File> files = findInCatalog(videoDir, timestamp, ".mp4");
+        if (files.isEmpty()) {
             AppLog.e(TAG, "未找到录制的视频文件，时间戳: " + timestamp);
-            return new ArrayList<>();
+            return files;
         }
         
-        AppLog.d(TAG, "从最终目录找到 " + files.length + " 个视频文件");
-        return new ArrayList<>(Arrays.asList(files));
+        AppLog.d(TAG, "从最终目录找到 " + files.size() + " 个视频文件");
+        return files;
     }
     
     /**
@@ -111,19 +114,12 @@ public class MediaFileFinder {
         // 2. 从最终目录查找所有时间戳对应的文件
         File videoDir = StorageHelper.getVideoDir(context);
         if (videoDir != null && videoDir.exists()) {
-            File[] files = videoDir.listFiles((dir, name) -> {
-                if (!name.endsWith(".mp4")) {
-                    return false;
-                }
-                for (String ts : timestamps) {
-                    if (name.startsWith(ts)) {
-                        return true;
-                    }
-                }
-                return false;
-            });
+            List<File> files = new ArrayList<>();
+            for (String ts : timestamps) {
+                files.addAll(findInCatalog(videoDir, ts, ".mp4"));
+            }
             
-            if (files != null && files.length > 0) {
+            if (!files.isEmpty()) {
                 // 避免重复添加（临时目录和最终目录可能有同名文件）
                 for (File f : files) {
                     boolean exists = false;
@@ -150,6 +146,80 @@ public class MediaFileFinder {
         return allFiles;
     }
     
+    /**
+     * 查找覆盖指定时间范围的视频分段（用于事件片段截取）
+     * 每路摄像头取起点之前最近的一个分段，加上起点之后、终点之前开始的所有分段
+     * 
+     * @param startMillis 范围起点
+     * @param endMillis 范围终点
+     * @return 摄像头位置 -> 按时间排序的分段列表
+     */
+    public Map<String, List<File>> findVideoSegments(long startMillis, long endMillis) {
+        Map<String, File> byName = new LinkedHashMap<>();
+        
+        // 临时目录（中转写入模式下尚未传输的分段）
+        File tempDir = new File(context.getCacheDir(), FileTransferManager.TEMP_VIDEO_DIR);
+        File[] tempFiles = tempDir.listFiles((dir, name) -> name.endsWith(".mp4"));
+        if (tempFiles != null) {
+            for (File file : tempFiles) {
+                byName.put(file.getName(), file);
+            }
+        }
+        // 最终目录（同名时以最终目录为准，传输已完成）
+        File videoDir = StorageHelper.getVideoDir(context);
+        if (videoDir != null && videoDir.exists()) {
+            for (RecordingCatalog.Entry entry : RecordingCatalog.getInstance(context).listEntries(videoDir, ".mp4")) {
+                byName.put(entry.getName(), entry.getFile());
+            }
+        }
+        
+        // 按摄像头分组（时间戳键的大小顺序与时间先后一致）
+        Map<String, List<File>> filesByPosition = new LinkedHashMap<>();
+        for (File file : byName.values()) {
+            String name = file.getName();
+            String position = RecordingFileName.extractPosition(name);
+            if (RecordingFileName.parseTimestampKey(name) == RecordingFileName.INVALID_KEY || position == null) {
+                continue;
+            }
+            List<File> files = filesByPosition.get(position);
+            if (files == null) {
+                files = new ArrayList<>();
+                filesByPosition.put(position, files);
+            }
+            files.add(file);
+        }
+        
+        TimeZone timeZone = TimeZone.getDefault();
+        Map<String, List<File>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<File>> entry : filesByPosition.entrySet()) {
+            List<File> files = entry.getValue();
+            Collections.sort(files, (a, b) -> Long.compare(
+                    RecordingFileName.parseTimestampKey(a.getName()),
+                    RecordingFileName.parseTimestampKey(b.getName())));
+            
+            List<File> selected = new ArrayList<>();
+            File before = null;
+            for (File file : files) {
+                long start = RecordingFileName.toEpochMillis(
+                        RecordingFileName.parseTimestampKey(file.getName()), timeZone);
+                if (start <= startMillis) {
+                    before = file;
+                } else if (start < endMillis) {
+                    selected.add(file);
+                }
+            }
+            if (before != null) {
+                selected.add(0, before);
+            }
+            if (!selected.isEmpty()) {
+                result.put(entry.getKey(), selected);
+            }
+        }
+        
+        AppLog.d(TAG, "时间范围内找到 " + result.size() + " 路摄像头的分段: " + result.keySet());
+        return result;
+    }
+    
     /**
      * 查找照片文件
      * 
@@ -168,18 +238,54 @@ public class MediaFileFinder {
             return new ArrayList<>();
         }
         
-        File[] files = photoDir.listFiles((dir, name) -> 
-            name.startsWith(timestamp) && 
-            (name.endsWith(".jpg") || name.endsWith(".jpeg"))
-        );
-        
-        if (files == null || files.length == 0) {
+        List<File> files = findInCatalog(photoDir, timestamp, ".jpg", ".jpeg");
+        if (files.isEmpty()) {
             AppLog.e(TAG, "未找到拍摄的照片，时间戳: " + timestamp);
-            return new ArrayList<>();
+            return files;
+        }
+        
+        AppLog.d(TAG, "找到 " + files.size() + " 张照片");
+        return files;
+    }
+    
+    /**
+     * 通过录制索引按时间戳前缀查找文件
+     * 索引未命中时（如文件刚写完、索引尚未记录）回退到目录扫描，并将结果补记到索引
+     * 
+     * @param directory 目标目录
+     * @param timestamp 时间戳前缀
+     * @param extensions 扩展名（小写）
+     * @return 文件列表
+     */
+    private List<File> findInCatalog(File directory, String timestamp, String... extensions) {
+        RecordingCatalog catalog = RecordingCatalog.getInstance(context);
+        List<File> result = new ArrayList<>();
+        for (RecordingCatalog.Entry entry : catalog.findByPrefix(directory, timestamp, extensions)) {
+            result.add(entry.getFile());
+        }
+        if (!result.isEmpty()) {
+            return result;
         }
         
-        AppLog.d(TAG, "找到 " + files.length + " 张照片");
-        return new ArrayList<>(Arrays.asList(files));
+        File[] files = directory.listFiles((dir, name) -> {
+            if (!name.startsWith(timestamp)) {
+                return false;
+            }
+            for (String ext : extensions) {
+                if (name.endsWith(ext)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        if (files != null && files.length > 0) {
+            AppLog.d(TAG, "索引未命中，目录扫描找到 " + files.length + " 个文件，补记到索引");
+            for (File file : files) {
+                catalog.onFileAdded(file);
+            }
+            result.addAll(Arrays.asList(files));
+        }
+        return result;
     }
     
     /**
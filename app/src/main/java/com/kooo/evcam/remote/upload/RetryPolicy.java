@@ -0,0 +1,42 @@
+package com.kooo.evcam.remote.upload;
+
+import java.util.Random;
+
+/**
+ * 上传重试策略：指数退避 + 随机抖动
+ * 第 n 次失败后等待 base * 2^(n-1)（不超过 max），再上下浮动 jitter 比例，避免多路同时重试
+ */
+final class RetryPolicy {
+    static final RetryPolicy DEFAULT = new RetryPolicy(3, 2_000, 30_000, 0.2);
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final double jitter;
+
+    RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, double jitter) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.jitter = jitter;
+    }
+
+    /**
+     * 最多尝试次数（含第一次）
+     */
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attempts 已失败的次数（从 1 开始）
+     */
+    long getDelayMs(int attempts, Random random) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 20);
+        long delay = Math.min(maxDelayMs, baseDelayMs << shift);
+        if (jitter > 0) {
+            delay += (long) (delay * jitter * (2 * random.nextDouble() - 1));
+        }
+        return Math.max(0, delay);
+    }
+}
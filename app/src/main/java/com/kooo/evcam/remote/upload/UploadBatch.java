@@ -0,0 +1,143 @@
+package com.kooo.evcam.remote.upload;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 上传批次：一次远程命令产生的一组文件（如一次录制的所有分段）
+ * 所有任务都有结果后由 UploadScheduler 调用处理器的 onBatchFinished() 发送汇总
+ */
+public final class UploadBatch {
+    private final String id;
+    private final String lane;
+    private final String type;
+    private final String target;
+    private final long createdAtMs;
+    private final List<UploadJob> jobs = new ArrayList<>();
+
+    UploadBatch(String id, String lane, String type, String target, long createdAtMs) {
+        this.id = id;
+        this.lane = lane;
+        this.type = type;
+        this.target = target;
+        this.createdAtMs = createdAtMs;
+    }
+
+    UploadJob addJob(String path) {
+        UploadJob job = new UploadJob(id + "-" + jobs.size(), this, path, jobs.size());
+        jobs.add(job);
+        return job;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 所属通道（平台），同一通道共享工作线程和限速
+     */
+    public String getLane() {
+        return lane;
+    }
+
+    /**
+     * 任务类型，决定由哪个处理器上传（如 "telegram_video"）
+     */
+    public String getType() {
+        return type;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    long getCreatedAtMs() {
+        return createdAtMs;
+    }
+
+    List<UploadJob> getJobs() {
+        return Collections.unmodifiableList(jobs);
+    }
+
+    public int getTotal() {
+        return jobs.size();
+    }
+
+    public int getSucceeded() {
+        int count = 0;
+        for (UploadJob job : jobs) {
+            if (job.getState() == UploadJob.STATE_SUCCEEDED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getFailed() {
+        int count = 0;
+        for (UploadJob job : jobs) {
+            if (job.getState() == UploadJob.STATE_FAILED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    boolean isFinished() {
+        for (UploadJob job : jobs) {
+            if (!job.isFinished()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 成功任务的上传结果（按批次顺序）
+     */
+    public List<String> getResults() {
+        List<String> results = new ArrayList<>();
+        for (UploadJob job : jobs) {
+            if (job.isSucceeded() && job.getResult() != null) {
+                results.add(job.getResult());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 失败列表，每项形如 "name.mp4 (错误信息)"
+     */
+    public List<String> getFailures() {
+        List<String> failures = new ArrayList<>();
+        for (UploadJob job : jobs) {
+            if (job.getState() == UploadJob.STATE_FAILED) {
+                failures.add(job.getFile().getName() + " (" +
+                        (job.getError() != null ? job.getError() : "未知错误") + ")");
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * 生成汇总消息
+     * @param noun 媒体名称，如 "视频"
+     * @param unit 量词，如 "个"
+     * @param item 计数对象，如 "文件"
+     */
+    public String formatSummary(String noun, String unit, String item) {
+        int succeeded = getSucceeded();
+        int failed = getFailed();
+        if (succeeded == 0) {
+            return "❌ 所有" + noun + "上传失败\n失败列表:\n" + String.join("\n", getFailures());
+        }
+        if (failed == 0) {
+            return "✅ " + noun + "上传完成！共上传 " + succeeded + " " + unit + item;
+        }
+        return "⚠️ 上传完成（部分失败）\n" +
+                "成功: " + succeeded + " " + unit + "\n" +
+                "失败: " + failed + " " + unit + "\n\n" +
+                "失败列表:\n" + String.join("\n", getFailures());
+    }
+}
@@ -0,0 +1,26 @@
+package com.kooo.evcam.remote.upload;
+
+/**
+ * 上传失败异常
+ * 处理器抛出 retryable=false 的异常表示重试无意义（文件不存在、超过平台大小限制等），直接记为失败；
+ * 其他异常（网络错误等）按 RetryPolicy 退避重试
+ */
+public class UploadException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean retryable;
+
+    public UploadException(String message, boolean retryable) {
+        super(message);
+        this.retryable = retryable;
+    }
+
+    public UploadException(String message, Throwable cause, boolean retryable) {
+        super(message, cause);
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
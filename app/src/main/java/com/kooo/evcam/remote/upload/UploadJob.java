@@ -0,0 +1,119 @@
+package com.kooo.evcam.remote.upload;
+
+import java.io.File;
+
+/**
+ * 上传任务：一个批次中的单个文件
+ * 状态变化由 UploadScheduler 写入上传日志，进程被杀后可从日志恢复
+ */
+public final class UploadJob {
+    static final int STATE_PENDING = 0;
+    static final int STATE_SUCCEEDED = 1;
+    static final int STATE_FAILED = 2;
+
+    private final String id;
+    private final UploadBatch batch;
+    private final String path;
+    private final int index;
+
+    private int attempts = 0;
+    private int state = STATE_PENDING;
+    private String result;
+    private String error;
+
+    UploadJob(String id, UploadBatch batch, String path, int index) {
+        this.id = id;
+        this.batch = batch;
+        this.path = path;
+        this.index = index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public UploadBatch getBatch() {
+        return batch;
+    }
+
+    public String getType() {
+        return batch.getType();
+    }
+
+    /**
+     * 平台相关的发送目标（如 Telegram chatId），由提交方编码
+     */
+    public String getTarget() {
+        return batch.getTarget();
+    }
+
+    public File getFile() {
+        return new File(path);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * 在批次中的序号（从 0 开始）
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public int getTotal() {
+        return batch.getTotal();
+    }
+
+    /**
+     * 已开始的上传次数（含当前这次）
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    int getState() {
+        return state;
+    }
+
+    boolean isFinished() {
+        return state != STATE_PENDING;
+    }
+
+    public boolean isSucceeded() {
+        return state == STATE_SUCCEEDED;
+    }
+
+    /**
+     * 上传结果（如云存储 fileID），由处理器在 upload() 中设置，会写入上传日志
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    void finish(int state, String result, String error) {
+        this.state = state;
+        if (result != null) {
+            this.result = result;
+        }
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return getFile().getName() + " (" + (index + 1) + "/" + getTotal() + ")";
+    }
+}
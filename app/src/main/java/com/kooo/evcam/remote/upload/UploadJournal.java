@@ -0,0 +1,262 @@
+package com.kooo.evcam.remote.upload;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 上传日志：把上传队列的状态变化逐行追加到文件（纯 Java）
+ *
+ * 每行一条记录，字段以 Tab 分隔（字段内的 \ Tab 换行已转义）：
+ *   B 批次ID 通道 类型 目标 创建时间   —— 新批次
+ *   J 任务ID 批次ID 文件路径           —— 批次中的文件，按顺序
+ *   A 任务ID 尝试次数                  —— 开始一次上传
+ *   D 任务ID 状态 结果 错误            —— 任务结束（成功/失败）
+ *   E 批次ID                           —— 汇总已发送，批次结束
+ * 打开时重放全部记录，只保留未结束的批次并压缩重写；进程被杀时写到一半（没有换行结尾）的最后一行会被忽略。
+ * 每条记录写入后 sync，车机断电也不丢队列。
+ */
+final class UploadJournal {
+    private final File file;
+    private final Consumer<String> logger;
+    private final Map<String, UploadBatch> batches = new LinkedHashMap<>();
+    private final Map<String, UploadJob> jobs = new HashMap<>();
+
+    UploadJournal(File file, Consumer<String> logger) {
+        this.file = file;
+        this.logger = logger;
+        load();
+        rewrite();
+    }
+
+    /**
+     * 未结束的批次（按创建顺序）
+     */
+    synchronized List<UploadBatch> getOpenBatches() {
+        return new ArrayList<>(batches.values());
+    }
+
+    synchronized void addBatch(UploadBatch batch) {
+        batches.put(batch.getId(), batch);
+        StringBuilder sb = new StringBuilder();
+        appendRecord(sb, "B", batch.getId(), batch.getLane(), batch.getType(), batch.getTarget(),
+                String.valueOf(batch.getCreatedAtMs()));
+        for (UploadJob job : batch.getJobs()) {
+            jobs.put(job.getId(), job);
+            appendRecord(sb, "J", job.getId(), batch.getId(), job.getPath());
+        }
+        append(sb);
+    }
+
+    synchronized void recordAttempt(UploadJob job) {
+        StringBuilder sb = new StringBuilder();
+        appendRecord(sb, "A", job.getId(), String.valueOf(job.getAttempts()));
+        append(sb);
+    }
+
+    synchronized void recordFinished(UploadJob job) {
+        StringBuilder sb = new StringBuilder();
+        appendRecord(sb, "D", job.getId(), String.valueOf(job.getState()), job.getResult(), job.getError());
+        append(sb);
+    }
+
+    synchronized void recordBatchEnded(UploadBatch batch) {
+        if (batches.remove(batch.getId()) == null) {
+            return;
+        }
+        for (UploadJob job : batch.getJobs()) {
+            jobs.remove(job.getId());
+        }
+        if (batches.isEmpty()) {
+            // 队列已空，直接清空文件，避免日志无限增长
+            rewrite();
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        appendRecord(sb, "E", batch.getId());
+        append(sb);
+    }
+
+    // ==================== 读写 ====================
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        String content;
+        try {
+            content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.accept("读取上传日志失败: " + e.getMessage());
+            return;
+        }
+        // 每条记录以换行结尾，最后一段没有换行说明写到一半被杀，丢弃
+        String[] lines = content.split("\n", -1);
+        int skipped = 0;
+        for (int i = 0; i < lines.length - 1; i++) {
+            if (!lines[i].isEmpty() && !replay(lines[i])) {
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            logger.accept("上传日志中有 " + skipped + " 行无法解析，已忽略");
+        }
+    }
+
+    private boolean replay(String line) {
+        String[] f = line.split("\t", -1);
+        for (int i = 0; i < f.length; i++) {
+            f[i] = unescape(f[i]);
+        }
+        try {
+            switch (f[0]) {
+                case "B":
+                    batches.put(f[1], new UploadBatch(f[1], f[2], f[3], f[4], Long.parseLong(f[5])));
+                    return true;
+                case "J": {
+                    UploadBatch batch = batches.get(f[2]);
+                    if (batch == null) {
+                        return false;
+                    }
+                    UploadJob job = batch.addJob(f[3]);
+                    jobs.put(job.getId(), job);
+                    return job.getId().equals(f[1]);
+                }
+                case "A": {
+                    UploadJob job = jobs.get(f[1]);
+                    if (job != null) {
+                        job.setAttempts(Integer.parseInt(f[2]));
+                    }
+                    return job != null;
+                }
+                case "D": {
+                    UploadJob job = jobs.get(f[1]);
+                    if (job != null) {
+                        job.finish(Integer.parseInt(f[2]), emptyToNull(f[3]), emptyToNull(f[4]));
+                    }
+                    return job != null;
+                }
+                case "E": {
+                    UploadBatch batch = batches.remove(f[1]);
+                    if (batch != null) {
+                        for (UploadJob job : batch.getJobs()) {
+                            jobs.remove(job.getId());
+                        }
+                    }
+                    return batch != null;
+                }
+                default:
+                    return false;
+            }
+        } catch (RuntimeException e) {
+            // 字段不全或数字格式错误
+            return false;
+        }
+    }
+
+    /**
+     * 按当前内存状态重写整个文件（先写临时文件再替换）
+     */
+    private void rewrite() {
+        StringBuilder sb = new StringBuilder();
+        for (UploadBatch batch : batches.values()) {
+            appendRecord(sb, "B", batch.getId(), batch.getLane(), batch.getType(), batch.getTarget(),
+                    String.valueOf(batch.getCreatedAtMs()));
+            for (UploadJob job : batch.getJobs()) {
+                appendRecord(sb, "J", job.getId(), batch.getId(), job.getPath());
+                if (job.getAttempts() > 0) {
+                    appendRecord(sb, "A", job.getId(), String.valueOf(job.getAttempts()));
+                }
+                if (job.isFinished()) {
+                    appendRecord(sb, "D", job.getId(), String.valueOf(job.getState()),
+                            job.getResult(), job.getError());
+                }
+            }
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            write(tmp, sb, false);
+            if (!tmp.renameTo(file)) {
+                throw new IOException("rename failed: " + tmp);
+            }
+        } catch (IOException e) {
+            logger.accept("重写上传日志失败: " + e.getMessage());
+        }
+    }
+
+    private void append(StringBuilder sb) {
+        try {
+            write(file, sb, true);
+        } catch (IOException e) {
+            logger.accept("写入上传日志失败: " + e.getMessage());
+        }
+    }
+
+    private static void write(File target, StringBuilder sb, boolean append) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (FileOutputStream out = new FileOutputStream(target, append)) {
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+    }
+
+    private static void appendRecord(StringBuilder sb, String... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append('\t');
+            }
+            sb.append(escape(fields[i]));
+        }
+        sb.append('\n');
+    }
+
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,34 @@
+package com.kooo.evcam.remote.upload;
+
+/**
+ * 令牌桶限速器（纯 Java，时间由调用方传入）
+ * 按每分钟配额匀速放行，空闲后最多连续放行 burst 个，用于替代各平台上传循环里固定的 Thread.sleep()。
+ * 以"理论到达时间"实现（GCRA，与令牌桶等价），全部用整数毫秒计算。
+ */
+final class UploadRateLimiter {
+    private final long intervalMs;
+    private final long toleranceMs;
+    private long theoreticalArrivalMs = Long.MIN_VALUE;
+
+    UploadRateLimiter(int permitsPerMinute, int burst) {
+        if (permitsPerMinute <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("permitsPerMinute and burst must be positive");
+        }
+        this.intervalMs = Math.max(1, 60_000L / permitsPerMinute);
+        this.toleranceMs = (burst - 1) * intervalMs;
+    }
+
+    /**
+     * 尝试取得一个许可
+     * @return 0 表示已取得；否则为还需等待的毫秒数（未消耗许可）
+     */
+    synchronized long tryAcquire(long nowMs) {
+        long arrival = Math.max(theoreticalArrivalMs, nowMs);
+        long waitMs = arrival - nowMs - toleranceMs;
+        if (waitMs > 0) {
+            return waitMs;
+        }
+        theoreticalArrivalMs = arrival + intervalMs;
+        return 0;
+    }
+}
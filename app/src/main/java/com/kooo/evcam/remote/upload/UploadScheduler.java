@@ -0,0 +1,387 @@
+package com.kooo.evcam.remote.upload;
+
+import android.content.Context;
+
+import com.kooo.evcam.AppLog;
+import com.kooo.evcam.remote.core.RemotePlatform;
+import com.kooo.evcam.remote.core.RemoteUploadCallback;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 统一上传队列
+ *
+ * 各平台的上传服务把单个文件的上传逻辑注册为 UploadHandler，提交时只需入队：
+ * - 每个通道（平台）一个有界工作线程池，通道之间互不阻塞
+ * - 通道内按令牌桶限速，替代原来各上传循环里固定的 Thread.sleep(2000/3000)
+ * - 失败按 RetryPolicy 指数退避重试，UploadException(retryable=false) 直接记为失败
+ * - 队列状态写入 UploadJournal，进程被杀后重新注册处理器时自动续传，批次结束后补发汇总；
+ *   日志每条记录都要 sync，因此读写日志都不持有队列锁
+ * 进度和结果通过 RemoteUploadCallback 回调（在工作线程上）。
+ */
+public final class UploadScheduler {
+    private static final String TAG = "UploadScheduler";
+
+    private static final String JOURNAL_FILE = "upload_journal.txt";
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    /** 微信云存储通道（不属于 RemotePlatform） */
+    public static final String LANE_WECHAT = "wechat";
+
+    private static volatile UploadScheduler instance;
+
+    /**
+     * 单文件上传处理器（由各平台上传服务实现）
+     */
+    public interface UploadHandler {
+        /**
+         * 上传单个文件（在通道工作线程上调用）
+         * 可通过 job.setResult() 保存结果（如云存储 fileID）；失败时抛出异常
+         */
+        void upload(UploadJob job) throws Exception;
+
+        /**
+         * 批次内所有文件都有结果后调用（在通道工作线程上，同样受限速约束）
+         * @return 汇总消息，作为 RemoteUploadCallback.onSuccess/onError 的参数
+         */
+        String onBatchFinished(UploadBatch batch);
+    }
+
+    private static final class Lane {
+        final ScheduledThreadPoolExecutor executor;
+        final UploadRateLimiter limiter;
+
+        Lane(String name, int workers, UploadRateLimiter limiter) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = new ScheduledThreadPoolExecutor(workers,
+                    r -> new Thread(r, "Upload-" + name + "-" + threadCount.incrementAndGet()));
+            this.executor.setKeepAliveTime(IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            this.executor.allowCoreThreadTimeOut(true);
+            this.limiter = limiter;
+        }
+    }
+
+    private final UploadJournal journal;
+    private final Consumer<String> logger;
+    private final Random random = new Random();
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final Map<String, UploadHandler> handlers = new HashMap<>();
+    private final Map<String, RemoteUploadCallback> callbacks = new HashMap<>();
+    // 已进入线程池的任务ID / 正在汇总的批次ID，避免重新注册处理器时重复派发
+    // 任务的结束记录写入日志后才移除，批次结束记录因此总在所有任务结束记录之后
+    private final Set<String> dispatched = new HashSet<>();
+    private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private boolean shutdown = false;
+
+    /**
+     * 获取全局上传队列（日志位于应用私有目录）
+     */
+    public static UploadScheduler getInstance(Context context) {
+        if (instance == null) {
+            synchronized (UploadScheduler.class) {
+                if (instance == null) {
+                    File journalFile = new File(context.getApplicationContext().getFilesDir(), JOURNAL_FILE);
+                    UploadScheduler scheduler = new UploadScheduler(journalFile, message -> AppLog.w(TAG, message));
+                    // Telegram：同一会话约 20 条/分钟
+                    scheduler.configureLane(RemotePlatform.TELEGRAM.getCode(), 2, 20, 3);
+                    // 飞书：单应用发消息 5 QPS，视频较大时带宽才是瓶颈
+                    scheduler.configureLane(RemotePlatform.FEISHU.getCode(), 2, 60, 5);
+                    // 钉钉：机器人 20 条/分钟，单线程保持消息顺序
+                    scheduler.configureLane(RemotePlatform.DINGTALK.getCode(), 1, 20, 2);
+                    scheduler.configureLane(LANE_WECHAT, 2, 60, 4);
+                    instance = scheduler;
+                }
+            }
+        }
+        return instance;
+    }
+
+    UploadScheduler(File journalFile, Consumer<String> logger) {
+        this.logger = logger;
+        this.journal = new UploadJournal(journalFile, logger);
+        int pending = getPendingCount();
+        if (pending > 0) {
+            logger.accept("上传日志中有 " + pending + " 个未完成的上传，注册处理器后继续");
+        }
+    }
+
+    /**
+     * 配置通道（已存在时忽略）
+     * @param workers 并发上传数
+     * @param permitsPerMinute 每分钟允许开始的上传数（含汇总消息）
+     * @param burst 空闲后允许连续开始的上传数
+     */
+    public synchronized void configureLane(String lane, int workers, int permitsPerMinute, int burst) {
+        if (!lanes.containsKey(lane)) {
+            lanes.put(lane, new Lane(lane, workers, new UploadRateLimiter(permitsPerMinute, burst)));
+        }
+    }
+
+    synchronized void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * 注册（或替换）某类任务的处理器，并续传日志中该类型未完成的任务
+     */
+    public void registerHandler(String type, UploadHandler handler) {
+        List<UploadBatch> openBatches = journal.getOpenBatches();
+        synchronized (this) {
+            handlers.put(type, handler);
+            for (UploadBatch batch : openBatches) {
+                if (type.equals(batch.getType())) {
+                    dispatchPending(batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * 提交一批文件
+     * @param lane 通道（平台代码）
+     * @param type 任务类型，对应 registerHandler() 的类型
+     * @param target 发送目标，由处理器解析
+     * @param callback 进度和结果回调，可为 null
+     */
+    public UploadBatch submit(String lane, String type, String target, List<File> files,
+                              RemoteUploadCallback callback) {
+        UploadBatch batch = createBatch(lane, type, target, files);
+        submit(batch, callback);
+        return batch;
+    }
+
+    /**
+     * 创建批次但不入队，用于需要先以批次ID登记状态再提交的场景
+     */
+    public UploadBatch createBatch(String lane, String type, String target, List<File> files) {
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("files is empty");
+        }
+        UploadBatch batch = new UploadBatch(UUID.randomUUID().toString(), lane, type, target,
+                System.currentTimeMillis());
+        for (File file : files) {
+            batch.addJob(file.getAbsolutePath());
+        }
+        return batch;
+    }
+
+    public void submit(UploadBatch batch, RemoteUploadCallback callback) {
+        // 先落盘再派发，任务的尝试记录不会早于批次记录
+        journal.addBatch(batch);
+        synchronized (this) {
+            if (callback != null) {
+                callbacks.put(batch.getId(), callback);
+            }
+            if (handlers.containsKey(batch.getType())) {
+                dispatchPending(batch);
+            } else {
+                logger.accept("上传处理器未注册，任务已记录待续传: " + batch.getType());
+            }
+        }
+    }
+
+    /**
+     * 未结束的任务数（含等待重试的）
+     */
+    public int getPendingCount() {
+        List<UploadBatch> openBatches = journal.getOpenBatches();
+        int pending = 0;
+        synchronized (this) {
+            for (UploadBatch batch : openBatches) {
+                pending += batch.getTotal() - batch.getSucceeded() - batch.getFailed();
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * 停止所有通道（未完成的任务保留在日志中）
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        for (Lane lane : getLanes()) {
+            lane.executor.shutdownNow();
+        }
+    }
+
+    // ==================== 派发 ====================
+
+    private void dispatchPending(UploadBatch batch) {
+        for (UploadJob job : batch.getJobs()) {
+            if (!job.isFinished() && dispatched.add(job.getId())) {
+                schedule(batch.getLane(), () -> runJob(job), 0);
+            }
+        }
+        if (isReadyToEnd(batch) && dispatched.add(batch.getId())) {
+            schedule(batch.getLane(), () -> runBatchFinish(batch), 0);
+        }
+    }
+
+    /**
+     * 所有任务都已结束且结束记录已写入日志（调用方持有队列锁）
+     */
+    private boolean isReadyToEnd(UploadBatch batch) {
+        if (!batch.isFinished()) {
+            return false;
+        }
+        for (UploadJob job : batch.getJobs()) {
+            if (dispatched.contains(job.getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void schedule(String laneName, Runnable task, long delayMs) {
+        if (shutdown) {
+            return;
+        }
+        Lane lane = lanes.get(laneName);
+        if (lane == null) {
+            // 未配置的通道：单线程、不限速，等同于原来的串行上传
+            lane = new Lane(laneName, 1, null);
+            lanes.put(laneName, lane);
+        }
+        lane.executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在限速范围内则返回 true；否则安排稍后重新执行 task 并返回 false
+     */
+    private boolean acquirePermit(String laneName, Runnable task) {
+        Lane lane;
+        synchronized (this) {
+            lane = lanes.get(laneName);
+        }
+        long waitMs = lane != null && lane.limiter != null
+                ? lane.limiter.tryAcquire(System.nanoTime() / 1_000_000) : 0;
+        if (waitMs > 0) {
+            schedule(laneName, task, waitMs);
+            return false;
+        }
+        return true;
+    }
+
+    private void runJob(UploadJob job) {
+        if (!acquirePermit(job.getBatch().getLane(), () -> runJob(job))) {
+            return;
+        }
+        UploadHandler handler;
+        RemoteUploadCallback callback;
+        int maxAttempts;
+        synchronized (this) {
+            handler = handlers.get(job.getType());
+            callback = callbacks.get(job.getBatch().getId());
+            maxAttempts = retryPolicy.getMaxAttempts();
+            job.setAttempts(job.getAttempts() + 1);
+        }
+        journal.recordAttempt(job);
+        String position = "(" + (job.getIndex() + 1) + "/" + job.getTotal() + ")";
+        if (callback != null) {
+            callback.onProgress("正在上传 " + position + ": " + job.getFile().getName());
+        }
+
+        try {
+            if (!job.getFile().exists()) {
+                throw new UploadException("文件不存在", false);
+            }
+            handler.upload(job);
+            finishJob(job, UploadJob.STATE_SUCCEEDED, null);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException || isShutdown()) {
+                // 通道被关闭，保留在日志中等待下次续传
+                return;
+            }
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            boolean retryable = !(e instanceof UploadException) || ((UploadException) e).isRetryable();
+            if (retryable && job.getAttempts() < maxAttempts) {
+                long delayMs;
+                synchronized (this) {
+                    delayMs = retryPolicy.getDelayMs(job.getAttempts(), random);
+                }
+                String message = "上传失败 " + position + "，" +
+                        String.format(Locale.US, "%.1f", delayMs / 1000.0) + " 秒后重试（第 " +
+                        job.getAttempts() + "/" + maxAttempts + " 次）: " + job.getFile().getName() + " - " + error;
+                logger.accept(message);
+                if (callback != null) {
+                    callback.onProgress(message);
+                }
+                schedule(job.getBatch().getLane(), () -> runJob(job), delayMs);
+            } else {
+                logger.accept("上传失败 " + position + ": " + job.getFile().getName() + " - " + error);
+                finishJob(job, UploadJob.STATE_FAILED, error);
+            }
+        }
+    }
+
+    private void finishJob(UploadJob job, int state, String error) {
+        UploadBatch batch = job.getBatch();
+        synchronized (this) {
+            job.finish(state, null, error);
+        }
+        journal.recordFinished(job);
+        synchronized (this) {
+            dispatched.remove(job.getId());
+            if (isReadyToEnd(batch) && dispatched.add(batch.getId())) {
+                schedule(batch.getLane(), () -> runBatchFinish(batch), 0);
+            }
+        }
+    }
+
+    private void runBatchFinish(UploadBatch batch) {
+        if (!acquirePermit(batch.getLane(), () -> runBatchFinish(batch))) {
+            return;
+        }
+        UploadHandler handler;
+        RemoteUploadCallback callback;
+        synchronized (this) {
+            handler = handlers.get(batch.getType());
+            callback = callbacks.get(batch.getId());
+        }
+        String summary;
+        try {
+            summary = handler.onBatchFinished(batch);
+        } catch (RuntimeException e) {
+            logger.accept("发送上传汇总失败: " + e.getMessage());
+            summary = null;
+        }
+        if (summary == null) {
+            summary = "上传完成: 成功 " + batch.getSucceeded() + "/" + batch.getTotal();
+        }
+        journal.recordBatchEnded(batch);
+        synchronized (this) {
+            callbacks.remove(batch.getId());
+            dispatched.remove(batch.getId());
+        }
+        if (callback != null) {
+            if (batch.getSucceeded() > 0) {
+                callback.onSuccess(summary);
+            } else {
+                callback.onError(summary);
+            }
+        }
+    }
+
+    private synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    private synchronized List<Lane> getLanes() {
+        return new ArrayList<>(lanes.values());
+    }
+}
@@ -1,6 +1,8 @@
 package com.kooo.evcam.telegram;
 
 import com.kooo.evcam.AppLog;
+import com.kooo.evcam.remote.http.CallTimeouts;
+import com.kooo.evcam.remote.http.HttpClients;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
@@ -8,7 +10,6 @@ import com.google.gson.JsonObject;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -31,11 +32,8 @@ public class TelegramApiClient {
     public TelegramApiClient(TelegramConfig config) {
         this.config = config;
         this.gson = new Gson();
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(15, TimeUnit.SECONDS)  // 连接超时15秒
-                .readTimeout(45, TimeUnit.SECONDS)     // 读取超时45秒
-                .writeTimeout(60, TimeUnit.SECONDS)    // 写入超时60秒（文件上传）
-                .build();
+        // 连接超时15秒，读取超时45秒，写入超时60秒（文件上传）
+        this.httpClient = HttpClients.withTimeouts(15, 45, 60);
     }
 
     /**
@@ -87,17 +85,14 @@ public class TelegramApiClient {
                 "&limit=" + Math.max(1, Math.min(limit, 100)) +
                 "&allowed_updates=" + "[\"message\"]";
 
+        // Long Polling 的读取超时要长于轮询时间，按请求设置，不再为每次轮询重建客户端
         Request request = new Request.Builder()
                 .url(url)
                 .get()
+                .tag(CallTimeouts.class, CallTimeouts.readSeconds(timeout + 10))
                 .build();
 
-        // 为 Long Polling 创建特殊的客户端，超时时间更长
-        OkHttpClient longPollClient = httpClient.newBuilder()
-                .readTimeout(timeout + 10, TimeUnit.SECONDS)
-                .build();
-
-        try (Response response = longPollClient.newCall(request).execute()) {
+        try (Response response = httpClient.newCall(request).execute()) {
             String responseBody = response.body() != null ? response.body().string() : "";
 
             if (!response.isSuccessful()) {
@@ -2,6 +2,8 @@ package com.kooo.evcam.telegram;
 
 import com.kooo.evcam.AppLog;
 import com.kooo.evcam.WakeUpHelper;
+import com.kooo.evcam.remote.core.CaptureScheduleRequest;
+import com.kooo.evcam.remote.core.ClipRequest;
 
 import android.content.Context;
 import android.os.Handler;
@@ -46,6 +48,8 @@ public class TelegramBotManager {
     public interface CommandCallback {
         void onRecordCommand(long chatId, int durationSeconds);
         void onPhotoCommand(long chatId);
+        void onClipCommand(long chatId, ClipRequest request);
+        String onCaptureScheduleCommand(CaptureScheduleRequest request);
         String getStatusInfo();
         String onStartRecordingCommand();
         String onStopRecordingCommand();
@@ -263,6 +267,41 @@ public class TelegramBotManager {
                     WakeUpHelper.launchForPhotoTelegram(context, chatId);
                 });
 
+            } else if (command.startsWith("/clip") || command.startsWith("片段") ||
+                       command.toLowerCase().startsWith("clip")) {
+
+                ClipRequest request = ClipRequest.parse(
+                        command.replaceFirst("(?i)^(/clip|片段|clip)", ""), System.currentTimeMillis());
+                if (request == null) {
+                    apiClient.sendMessage(chatId, ClipRequest.USAGE);
+                } else {
+                    AppLog.d(TAG, "收到片段指令: " + request.describe());
+                    sendResponseAndThen(chatId, "收到片段指令，正在截取 " + request.describe() + " 的录像...", () -> {
+                        if (currentCommandCallback != null) {
+                            currentCommandCallback.onClipCommand(chatId, request);
+                        }
+                    });
+                }
+
+            } else if (command.startsWith("/burst") || command.startsWith("连拍") ||
+                       command.toLowerCase().startsWith("burst") ||
+                       command.startsWith("/timelapse") || command.startsWith("延时") ||
+                       command.toLowerCase().startsWith("timelapse")) {
+                // 连拍/延时拍摄指令：从当前预览抓图，直接回复执行结果
+                boolean burst = command.startsWith("/burst") || command.startsWith("连拍") ||
+                        command.toLowerCase().startsWith("burst");
+                String args = command.replaceFirst("(?i)^(/burst|连拍|burst|/timelapse|延时|timelapse)", "");
+                CaptureScheduleRequest request = burst ?
+                        CaptureScheduleRequest.parseBurst(args) : CaptureScheduleRequest.parseTimelapse(args);
+                if (request == null) {
+                    apiClient.sendMessage(chatId, burst ? CaptureScheduleRequest.USAGE_BURST : CaptureScheduleRequest.USAGE_TIMELAPSE);
+                } else if (currentCommandCallback != null) {
+                    AppLog.d(TAG, "收到连拍/延时指令: " + request.describe());
+                    apiClient.sendMessage(chatId, currentCommandCallback.onCaptureScheduleCommand(request));
+                } else {
+                    apiClient.sendMessage(chatId, "❌ 功能不可用");
+                }
+
             } else if ("/status".equals(command) || "状态".equals(command)) {
                 // 状态指令：显示应用详细状态
                 AppLog.d(TAG, "收到状态指令");
@@ -328,6 +367,15 @@ public class TelegramBotManager {
                     "📷 <b>拍照</b>\n" +
                     "/photo ─ 拍摄照片\n" +
                     "拍照 ─ 中文指令\n\n" +
+                    "🎞 <b>事件片段</b>\n" +
+                    "/clip 14:02:10 ─ 截取该时刻前后30秒\n" +
+                    "/clip 14:02:10 60 ─ 指定总秒数\n" +
+                    "片段 14:02:10 ─ 中文指令\n\n" +
+                    "⏱️ <b>连拍 / 延时</b>\n" +
+                    "/burst 5 2 ─ 每路连拍5张，间隔2秒\n" +
+                    "/timelapse 10 8h ─ 每10秒一帧，持续8小时\n" +
+                    "/timelapse 10 8h 视频 ─ 合成为 MP4\n" +
+                    "连拍 / 延时 停止 ─ 中文指令\n\n" +
                     "ℹ️ <b>其他</b>\n" +
                     "/status ─ 查看应用状态\n" +
                     "/exit ─ 退出应用\n" +
@@ -1,6 +1,11 @@
 package com.kooo.evcam.telegram;
 
 import com.kooo.evcam.AppLog;
+import com.kooo.evcam.remote.core.RemotePlatform;
+import com.kooo.evcam.remote.core.RemoteUploadCallback;
+import com.kooo.evcam.remote.upload.UploadBatch;
+import com.kooo.evcam.remote.upload.UploadJob;
+import com.kooo.evcam.remote.upload.UploadScheduler;
 
 import android.content.Context;
 
@@ -10,23 +15,24 @@ import java.util.List;
 
 /**
  * Telegram 图片上传服务
- * 负责将拍摄的照片上传到 Telegram
+ * 负责将拍摄的照片上传到 Telegram（通过统一上传队列，创建时注册处理器并续传未完成的任务）
  */
 public class TelegramPhotoUploadService {
     private static final String TAG = "TelegramPhotoUpload";
+    private static final String JOB_TYPE = "telegram_photo";
 
     private final Context context;
     private final TelegramApiClient apiClient;
+    private final UploadScheduler scheduler;
 
-    public interface UploadCallback {
-        void onProgress(String message);
-        void onSuccess(String message);
-        void onError(String error);
+    public interface UploadCallback extends RemoteUploadCallback {
     }
 
     public TelegramPhotoUploadService(Context context, TelegramApiClient apiClient) {
         this.context = context;
         this.apiClient = apiClient;
+        this.scheduler = UploadScheduler.getInstance(context);
+        scheduler.registerHandler(JOB_TYPE, new PhotoUploadHandler());
     }
 
     /**
@@ -36,109 +42,14 @@ public class TelegramPhotoUploadService {
      * @param callback 上传回调
      */
     public void uploadPhotos(List<File> photoFiles, long chatId, UploadCallback callback) {
-        new Thread(() -> {
-            try {
-                if (photoFiles == null || photoFiles.isEmpty()) {
-                    callback.onError("没有图片文件可上传");
-                    return;
-                }
-
-                callback.onProgress("开始上传 " + photoFiles.size() + " 张照片...");
-
-                // 发送 "正在上传照片" 状态
-                apiClient.sendChatAction(chatId, "upload_photo");
-
-                List<String> uploadedFiles = new ArrayList<>();
-                List<String> failedFiles = new ArrayList<>();
-
-                for (int i = 0; i < photoFiles.size(); i++) {
-                    File photoFile = photoFiles.get(i);
-
-                    if (!photoFile.exists()) {
-                        AppLog.w(TAG, "图片文件不存在: " + photoFile.getPath());
-                        failedFiles.add(photoFile.getName() + " (文件不存在)");
-                        continue;
-                    }
-
-                    callback.onProgress("正在上传 (" + (i + 1) + "/" + photoFiles.size() + "): " + photoFile.getName());
-
-                    // 重试上传（最多2次，减少等待时间）
-                    boolean uploadSuccess = false;
-                    int retryCount = 0;
-                    int maxRetries = 2;
-                    String lastError = "";
-
-                    while (!uploadSuccess && retryCount < maxRetries) {
-                        try {
-                            if (retryCount > 0) {
-                                callback.onProgress("重试第 " + retryCount + " 次: " + photoFile.getName());
-                                Thread.sleep(1500); // 重试前等待1.5秒
-                            }
-
-                            // 发送 "正在上传照片" 状态
-                            apiClient.sendChatAction(chatId, "upload_photo");
-
-                            // 直接上传并发送图片
-                            String caption = "照片 " + (i + 1) + "/" + photoFiles.size();
-                            apiClient.sendPhoto(chatId, photoFile, caption);
-
-                            uploadedFiles.add(photoFile.getName());
-                            AppLog.d(TAG, "图片上传成功: " + photoFile.getName());
-                            uploadSuccess = true;
-
-                        } catch (Exception e) {
-                            retryCount++;
-                            lastError = e.getMessage();
-                            AppLog.e(TAG, "上传图片失败 (尝试 " + retryCount + "/" + maxRetries + "): " + photoFile.getName(), e);
-
-                            if (retryCount >= maxRetries) {
-                                // 达到最大重试次数，记录到失败列表
-                                failedFiles.add(photoFile.getName() + " (" + (lastError != null ? lastError : "未知错误") + ")");
-                                break;
-                            }
-                        }
-                    }
-
-                    // 延迟500ms后再上传下一张照片
-                    if (i < photoFiles.size() - 1) {
-                        Thread.sleep(500);
-                    }
-                }
-
-                // 统一处理上传结果
-                if (uploadedFiles.isEmpty()) {
-                    // 所有文件都失败
-                    String errorMsg = "❌ 所有图片上传失败\n失败列表:\n" + String.join("\n", failedFiles);
-                    callback.onError(errorMsg);
-                    apiClient.sendMessage(chatId, errorMsg);
-                } else if (failedFiles.isEmpty()) {
-                    // 全部成功
-                    String successMessage = "✅ 图片上传完成！共上传 " + uploadedFiles.size() + " 张照片";
-                    callback.onSuccess(successMessage);
-                    // 等待2秒，确保图片消息投递完成后再发送完成消息
-                    try {
-                        Thread.sleep(2000);
-                    } catch (InterruptedException ignored) {}
-                    apiClient.sendMessage(chatId, successMessage);
-                } else {
-                    // 部分成功，部分失败
-                    String mixedMessage = "⚠️ 上传完成（部分失败）\n" +
-                            "成功: " + uploadedFiles.size() + " 张\n" +
-                            "失败: " + failedFiles.size() + " 张\n\n" +
-                            "失败列表:\n" + String.join("\n", failedFiles);
-                    callback.onSuccess(mixedMessage); // 仍然视为成功（至少有部分上传）
-                    // 等待2秒，确保图片消息投递完成后再发送完成消息
-                    try {
-                        Thread.sleep(2000);
-                    } catch (InterruptedException ignored) {}
-                    apiClient.sendMessage(chatId, mixedMessage);
-                }
-
-            } catch (Exception e) {
-                AppLog.e(TAG, "上传过程出错", e);
-                callback.onError("上传过程出错: " + e.getMessage());
-            }
-        }).start();
+        if (photoFiles == null || photoFiles.isEmpty()) {
+            callback.onError("没有图片文件可上传");
+            return;
+        }
+
+        callback.onProgress("开始上传 " + photoFiles.size() + " 张照片...");
+        scheduler.submit(RemotePlatform.TELEGRAM.getCode(), JOB_TYPE, String.valueOf(chatId),
+                photoFiles, callback);
     }
 
     /**
@@ -149,4 +60,31 @@ public class TelegramPhotoUploadService {
         files.add(photoFile);
         uploadPhotos(files, chatId, callback);
     }
+
+    private class PhotoUploadHandler implements UploadScheduler.UploadHandler {
+        @Override
+        public void upload(UploadJob job) throws Exception {
+            long chatId = Long.parseLong(job.getTarget());
+            File photoFile = job.getFile();
+
+            // 发送 "正在上传照片" 状态
+            apiClient.sendChatAction(chatId, "upload_photo");
+
+            // 直接上传并发送图片
+            String caption = "照片 " + (job.getIndex() + 1) + "/" + job.getTotal();
+            apiClient.sendPhoto(chatId, photoFile, caption);
+            AppLog.d(TAG, "图片上传成功: " + photoFile.getName());
+        }
+
+        @Override
+        public String onBatchFinished(UploadBatch batch) {
+            String summary = batch.formatSummary("图片", "张", "照片");
+            try {
+                apiClient.sendMessage(Long.parseLong(batch.getTarget()), summary);
+            } catch (Exception e) {
+                AppLog.e(TAG, "发送上传汇总失败", e);
+            }
+            return summary;
+        }
+    }
 }
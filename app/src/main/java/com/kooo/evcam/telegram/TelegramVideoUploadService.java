@@ -2,32 +2,40 @@ package com.kooo.evcam.telegram;
 
 import com.kooo.evcam.AppLog;
 import com.kooo.evcam.dingtalk.VideoThumbnailExtractor;
+import com.kooo.evcam.remote.core.RemotePlatform;
+import com.kooo.evcam.remote.core.RemoteUploadCallback;
+import com.kooo.evcam.remote.upload.UploadBatch;
+import com.kooo.evcam.remote.upload.UploadException;
+import com.kooo.evcam.remote.upload.UploadJob;
+import com.kooo.evcam.remote.upload.UploadScheduler;
 
 import android.content.Context;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Telegram 视频上传服务
- * 负责将录制的视频上传到 Telegram
+ * 负责将录制的视频上传到 Telegram（通过统一上传队列，创建时注册处理器并续传未完成的任务）
  */
 public class TelegramVideoUploadService {
     private static final String TAG = "TelegramVideoUpload";
+    private static final String JOB_TYPE = "telegram_video";
 
     private final Context context;
     private final TelegramApiClient apiClient;
+    private final UploadScheduler scheduler;
 
-    public interface UploadCallback {
-        void onProgress(String message);
-        void onSuccess(String message);
-        void onError(String error);
+    public interface UploadCallback extends RemoteUploadCallback {
     }
 
     public TelegramVideoUploadService(Context context, TelegramApiClient apiClient) {
         this.context = context;
         this.apiClient = apiClient;
+        this.scheduler = UploadScheduler.getInstance(context);
+        scheduler.registerHandler(JOB_TYPE, new VideoUploadHandler());
     }
 
     /**
@@ -37,104 +45,81 @@ public class TelegramVideoUploadService {
      * @param callback 上传回调
      */
     public void uploadVideos(List<File> videoFiles, long chatId, UploadCallback callback) {
-        new Thread(() -> {
-            try {
-                if (videoFiles == null || videoFiles.isEmpty()) {
-                    callback.onError("没有视频文件可上传");
-                    return;
-                }
-
-                callback.onProgress("开始上传 " + videoFiles.size() + " 个视频文件...");
-
-                // 发送 "正在上传视频" 状态
-                apiClient.sendChatAction(chatId, "upload_video");
-
-                List<String> uploadedFiles = new ArrayList<>();
-
-                for (int i = 0; i < videoFiles.size(); i++) {
-                    File videoFile = videoFiles.get(i);
-
-                    if (!videoFile.exists()) {
-                        AppLog.w(TAG, "视频文件不存在: " + videoFile.getPath());
-                        continue;
-                    }
-
-                    callback.onProgress("正在处理 (" + (i + 1) + "/" + videoFiles.size() + "): " + videoFile.getName());
-
-                    try {
-                        // 1. 提取视频封面
-                        File thumbnailFile = new File(videoFile.getParent(),
-                                videoFile.getName().replace(".mp4", "_thumb.jpg"));
-
-                        boolean thumbnailExtracted = VideoThumbnailExtractor.extractThumbnail(videoFile, thumbnailFile);
-                        if (!thumbnailExtracted) {
-                            AppLog.w(TAG, "封面提取失败，将不使用缩略图");
-                            thumbnailFile = null;
-                        }
-
-                        // 2. 获取视频时长
-                        int duration = VideoThumbnailExtractor.getVideoDuration(videoFile);
-                        if (duration == 0) {
-                            duration = 60; // 默认 60 秒
-                        }
-
-                        // 3. 发送 "正在上传视频" 状态
-                        apiClient.sendChatAction(chatId, "upload_video");
-
-                        // 4. 直接上传并发送视频（Telegram API 合并了这两步）
-                        callback.onProgress("正在上传视频 (" + (i + 1) + "/" + videoFiles.size() + ")...");
+        if (videoFiles == null || videoFiles.isEmpty()) {
+            callback.onError("没有视频文件可上传");
+            return;
+        }
+
+        callback.onProgress("开始上传 " + videoFiles.size() + " 个视频文件...");
+        scheduler.submit(RemotePlatform.TELEGRAM.getCode(), JOB_TYPE, String.valueOf(chatId),
+                videoFiles, callback);
+    }
 
-                        String caption = "视频 " + (i + 1) + "/" + videoFiles.size();
-                        apiClient.sendVideo(chatId, videoFile, thumbnailFile, duration, caption);
+    /**
+     * 上传单个视频文件
+     */
+    public void uploadVideo(File videoFile, long chatId, UploadCallback callback) {
+        List<File> files = new ArrayList<>();
+        files.add(videoFile);
+        uploadVideos(files, chatId, callback);
+    }
 
-                        uploadedFiles.add(videoFile.getName());
-                        AppLog.d(TAG, "视频上传成功: " + videoFile.getName());
+    private class VideoUploadHandler implements UploadScheduler.UploadHandler {
+        @Override
+        public void upload(UploadJob job) throws Exception {
+            long chatId = Long.parseLong(job.getTarget());
+            File videoFile = job.getFile();
+
+            // 1. 提取视频封面
+            File thumbnailFile = new File(videoFile.getParent(),
+                    videoFile.getName().replace(".mp4", "_thumb.jpg"));
+            boolean thumbnailExtracted = VideoThumbnailExtractor.extractThumbnail(videoFile, thumbnailFile);
+            if (!thumbnailExtracted) {
+                AppLog.w(TAG, "封面提取失败，将不使用缩略图");
+                thumbnailFile = null;
+            }
 
-                        // 5. 清理临时封面文件
-                        if (thumbnailFile != null && thumbnailFile.exists()) {
-                            thumbnailFile.delete();
-                        }
+            try {
+                // 2. 获取视频时长
+                int duration = VideoThumbnailExtractor.getVideoDuration(videoFile);
+                if (duration == 0) {
+                    duration = 60; // 默认 60 秒
+                }
 
-                        // 6. 延迟2秒后再上传下一个视频
-                        if (i < videoFiles.size() - 1) {
-                            callback.onProgress("等待2秒后上传下一个视频...");
-                            Thread.sleep(2000);
-                        }
+                // 3. 发送 "正在上传视频" 状态
+                apiClient.sendChatAction(chatId, "upload_video");
 
-                    } catch (Exception e) {
-                        AppLog.e(TAG, "上传视频失败: " + videoFile.getName(), e);
-                        callback.onError("上传失败: " + videoFile.getName() + " - " + e.getMessage());
+                // 4. 直接上传并发送视频（Telegram API 合并了这两步）
+                String caption = "视频 " + (job.getIndex() + 1) + "/" + job.getTotal();
+                try {
+                    apiClient.sendVideo(chatId, videoFile, thumbnailFile, duration, caption);
+                } catch (IOException e) {
+                    // 超过 Bot API 50MB 限制，重试无意义
+                    String message = e.getMessage() != null ? e.getMessage() : "";
+                    if (message.contains("413") || message.toLowerCase().contains("too large")
+                            || message.toLowerCase().contains("file is too big")) {
+                        throw new UploadException(message, e, false);
                     }
+                    throw e;
                 }
-
-                if (uploadedFiles.isEmpty()) {
-                    callback.onError("所有视频上传失败");
-                } else {
-                    String successMessage = "✅ 视频上传完成！共上传 " + uploadedFiles.size() + " 个文件";
-                    callback.onSuccess(successMessage);
-
-                    // 等待3秒，确保视频消息投递完成后再发送完成消息
-                    try {
-                        Thread.sleep(3000);
-                    } catch (InterruptedException ignored) {}
-
-                    // 发送完成消息
-                    apiClient.sendMessage(chatId, successMessage);
+                AppLog.d(TAG, "视频上传成功: " + videoFile.getName());
+            } finally {
+                // 5. 清理临时封面文件
+                if (thumbnailFile != null && thumbnailFile.exists()) {
+                    thumbnailFile.delete();
                 }
+            }
+        }
 
+        @Override
+        public String onBatchFinished(UploadBatch batch) {
+            String summary = batch.formatSummary("视频", "个", "文件");
+            try {
+                apiClient.sendMessage(Long.parseLong(batch.getTarget()), summary);
             } catch (Exception e) {
-                AppLog.e(TAG, "上传过程出错", e);
-                callback.onError("上传过程出错: " + e.getMessage());
+                AppLog.e(TAG, "发送上传汇总失败", e);
             }
-        }).start();
-    }
-
-    /**
-     * 上传单个视频文件
-     */
-    public void uploadVideo(File videoFile, long chatId, UploadCallback callback) {
-        List<File> files = new ArrayList<>();
-        files.add(videoFile);
-        uploadVideos(files, chatId, callback);
+            return summary;
+        }
     }
 }
@@ -0,0 +1,200 @@
+package com.kooo.evcam.wechat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Consumer;
+
+/**
+ * 分片断点续传上传器（纯 Java，传输层由调用方提供）
+ * 按固定大小分片顺序上传，每片带 SHA-256 校验，服务端只在校验通过且偏移连续时才提交。
+ * 上传 ID 由云端路径、文件大小和修改时间推导，进程重启后无需本地状态即可向服务端查询已提交的偏移继续上传。
+ */
+final class ChunkedUploader {
+
+    /**
+     * 分片传输接口，偏移均为服务端已确认提交的字节数
+     */
+    interface ChunkTransport {
+        /**
+         * 创建或查询上传会话
+         * @return 服务端已提交的偏移
+         */
+        long begin(String uploadId, String cloudPath, long totalSize) throws IOException;
+
+        /**
+         * 上传一个分片
+         * @return 调用后服务端已提交的偏移；校验失败或偏移不连续时不前进
+         */
+        long putChunk(String uploadId, long offset, byte[] data, int length, String sha256) throws IOException;
+
+        /**
+         * 完成上传：小文件合并并校验整文件摘要，大文件由服务端生成分片清单（重复调用返回同一结果）
+         * @return 云存储 fileID
+         */
+        String complete(String uploadId, long totalSize, String sha256) throws IOException;
+    }
+
+    interface ProgressListener {
+        void onProgress(long uploadedBytes, long totalBytes);
+    }
+
+    private final ChunkTransport transport;
+    private final int chunkSize;
+    private final int maxChunkRetries;
+    private final long retryDelayMs;
+    private final Consumer<String> logger;
+
+    /**
+     * @param maxChunkRetries 同一分片连续失败的最大重试次数，超过后抛出异常交给上传队列整体重试
+     */
+    ChunkedUploader(ChunkTransport transport, int chunkSize, int maxChunkRetries, long retryDelayMs,
+            Consumer<String> logger) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.transport = transport;
+        this.chunkSize = chunkSize;
+        this.maxChunkRetries = maxChunkRetries;
+        this.retryDelayMs = retryDelayMs;
+        this.logger = logger;
+    }
+
+    /**
+     * 上传文件，从服务端已提交的偏移继续
+     * @return 云存储 fileID
+     */
+    String upload(File file, String cloudPath, ProgressListener listener) throws IOException {
+        long totalSize = file.length();
+        String uploadId = uploadIdFor(cloudPath, totalSize, file.lastModified());
+        long committed = checkOffset(transport.begin(uploadId, cloudPath, totalSize), totalSize);
+        if (committed > 0) {
+            logger.accept("续传 " + file.getName() + "，已提交 " + committed + "/" + totalSize);
+        }
+
+        MessageDigest fileDigest = newDigest();
+        long hashed = 0;
+        byte[] buffer = new byte[chunkSize];
+        int failures = 0;
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            while (committed < totalSize) {
+                int length = (int) Math.min(chunkSize, totalSize - committed);
+                input.seek(committed);
+                input.readFully(buffer, 0, length);
+                String chunkSha = hex(digest(buffer, length));
+
+                long next;
+                IOException error = null;
+                try {
+                    next = checkOffset(transport.putChunk(uploadId, committed, buffer, length, chunkSha), totalSize);
+                } catch (IOException e) {
+                    // 应答可能丢失而服务端已提交，重新查询偏移再决定从哪里继续
+                    error = e;
+                    next = -1;
+                }
+                if (next <= committed) {
+                    failures++;
+                    String reason = error != null ? error.getMessage() : "分片被拒绝";
+                    if (failures > maxChunkRetries) {
+                        throw error != null ? error : new IOException(reason + " @" + committed);
+                    }
+                    logger.accept("分片上传失败 @" + committed + "（第 " + failures + "/" + maxChunkRetries
+                            + " 次重试）: " + reason);
+                    sleep(retryDelayMs);
+                    next = checkOffset(transport.begin(uploadId, cloudPath, totalSize), totalSize);
+                    if (next <= committed) {
+                        committed = next;
+                        continue;
+                    }
+                }
+
+                // 整文件摘要只覆盖服务端已提交的前缀；刚发出的分片正好被提交时直接用缓冲区
+                if (hashed == committed && next == committed + length) {
+                    fileDigest.update(buffer, 0, length);
+                    hashed = next;
+                }
+                failures = 0;
+                committed = next;
+                if (listener != null) {
+                    listener.onProgress(committed, totalSize);
+                }
+            }
+
+            // 续传或偏移跳变时缓冲区没覆盖到的部分从本地文件补算
+            hashRange(input, fileDigest, hashed, committed, buffer);
+        }
+        return transport.complete(uploadId, totalSize, hex(fileDigest.digest()));
+    }
+
+    /**
+     * 上传 ID：同一路径、大小和修改时间的文件得到同一 ID，文件变化后自动开始新的会话
+     */
+    static String uploadIdFor(String cloudPath, long totalSize, long lastModified) {
+        byte[] key = (cloudPath + "|" + totalSize + "|" + lastModified).getBytes(StandardCharsets.UTF_8);
+        return hex(digest(key, key.length)).substring(0, 32);
+    }
+
+    static String sha256Hex(byte[] data, int length) {
+        return hex(digest(data, length));
+    }
+
+    private static long checkOffset(long offset, long totalSize) throws IOException {
+        if (offset < 0 || offset > totalSize) {
+            throw new IOException("服务端返回的偏移无效: " + offset + "/" + totalSize);
+        }
+        return offset;
+    }
+
+    private static void hashRange(RandomAccessFile input, MessageDigest digest, long from, long to, byte[] buffer)
+            throws IOException {
+        input.seek(from);
+        long remaining = to - from;
+        while (remaining > 0) {
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new IOException("文件在上传过程中被截断");
+            }
+            digest.update(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private static void sleep(long ms) throws InterruptedIOException {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("上传被中断");
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] digest(byte[] data, int length) {
+        MessageDigest digest = newDigest();
+        digest.update(data, 0, length);
+        return digest.digest();
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,282 @@
+package com.kooo.evcam.wechat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 预览推流（纯 Java）
+ * 通过一条长连接（HTTP chunked POST，multipart/x-mixed-replace 即 MJPEG）把预览帧持续推送到中转服务器，
+ * 替代每帧写临时文件、上传云存储、更新数据库的轮询方式。
+ *
+ * 采集和发送分两个线程，中间只保留最新一帧：网络慢时旧帧直接丢弃，画面延迟不会累积。
+ * 连接断开后按退避间隔重连，期间采集到的帧同样只保留最新一帧。
+ * 每个实例只使用一次（停止后重新创建）。
+ */
+final class PreviewStreamer {
+    static final String BOUNDARY = "evcamframe";
+    static final String CONTENT_TYPE = "multipart/x-mixed-replace; boundary=" + BOUNDARY;
+
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 5_000;
+    private static final long FRAME_WAIT_MS = 1_000;
+    private static final long STOP_GRACE_MS = 1_000;
+    private static final long RECONNECT_MIN_MS = 1_000;
+    private static final long RECONNECT_MAX_MS = 10_000;
+
+    private final URL streamUrl;
+    private final Supplier<byte[]> frameSource;
+    private final long frameIntervalMs;
+    private final Consumer<String> logger;
+    private final LatestFrame latest = new LatestFrame();
+
+    private volatile boolean running = false;
+    private volatile HttpURLConnection connection;
+    private ScheduledExecutorService captureExecutor;
+    private Thread senderThread;
+
+    private volatile long framesCaptured = 0;
+    private volatile long framesSent = 0;
+    private volatile long reconnects = 0;
+
+    /**
+     * @param streamUrl 推流地址（中转服务器按路径区分设备）
+     * @param frameSource 采集一帧 JPEG，返回 null 表示暂时没有画面
+     * @param fps 采集帧率
+     */
+    PreviewStreamer(URL streamUrl, Supplier<byte[]> frameSource, int fps, Consumer<String> logger) {
+        this.streamUrl = streamUrl;
+        this.frameSource = frameSource;
+        this.frameIntervalMs = 1000L / Math.max(1, fps);
+        this.logger = logger;
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        captureExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "PreviewCapture");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 固定间隔采集：上一帧采集耗时超过间隔时顺延，不会并发采集
+        captureExecutor.scheduleWithFixedDelay(this::captureFrame, 0, frameIntervalMs, TimeUnit.MILLISECONDS);
+        senderThread = new Thread(this::sendLoop, "PreviewSender");
+        senderThread.setDaemon(true);
+        senderThread.start();
+    }
+
+    /**
+     * 停止推流（不阻塞调用线程）
+     * 发送线程写完结束边界后自行退出；写操作卡在断开的网络上时，超过宽限时间强制断开连接
+     */
+    synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        captureExecutor.shutdownNow();
+        latest.close();
+        Thread sender = senderThread;
+        Thread stopper = new Thread(() -> {
+            try {
+                sender.join(STOP_GRACE_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (sender.isAlive()) {
+                HttpURLConnection current = connection;
+                if (current != null) {
+                    current.disconnect();
+                }
+                sender.interrupt();
+            }
+            logger.accept("预览推流结束: " + getStats());
+        }, "PreviewStreamerStop");
+        stopper.setDaemon(true);
+        stopper.start();
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    long getFramesSent() {
+        return framesSent;
+    }
+
+    long getFramesDropped() {
+        return latest.getDropped();
+    }
+
+    String getStats() {
+        return "采集 " + framesCaptured + " 帧, 发送 " + framesSent + " 帧, 丢弃 " + latest.getDropped()
+                + " 帧, 重连 " + reconnects + " 次";
+    }
+
+    private void captureFrame() {
+        try {
+            byte[] frame = frameSource.get();
+            if (frame != null && frame.length > 0) {
+                framesCaptured++;
+                latest.offer(frame, System.currentTimeMillis());
+            }
+        } catch (RuntimeException e) {
+            logger.accept("采集预览帧失败: " + e.getMessage());
+        }
+    }
+
+    private void sendLoop() {
+        long backoffMs = RECONNECT_MIN_MS;
+        while (running) {
+            boolean sentAny = false;
+            try {
+                sentAny = streamOnce();
+            } catch (IOException e) {
+                if (running) {
+                    logger.accept("预览推流连接中断: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (!running) {
+                break;
+            }
+            // 成功推送过画面的连接断开后立即重连，连续失败时退避
+            backoffMs = sentAny ? RECONNECT_MIN_MS : Math.min(RECONNECT_MAX_MS, backoffMs * 2);
+            reconnects++;
+            try {
+                Thread.sleep(sentAny ? 0 : backoffMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 建立一条连接并持续推送，直到停止或连接出错
+     * @return 是否至少推送了一帧
+     */
+    private boolean streamOnce() throws IOException, InterruptedException {
+        HttpURLConnection conn = (HttpURLConnection) streamUrl.openConnection();
+        connection = conn;
+        boolean sentAny = false;
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setDoOutput(true);
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", CONTENT_TYPE);
+            conn.setChunkedStreamingMode(0);
+            OutputStream out = conn.getOutputStream();
+            while (running) {
+                LatestFrame.Frame frame = latest.take(FRAME_WAIT_MS);
+                if (frame == null) {
+                    continue;
+                }
+                writePart(out, frame);
+                framesSent++;
+                sentAny = true;
+            }
+            // 正常停止：写结束边界，读取应答让服务器完成请求
+            out.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.close();
+            try (InputStream in = conn.getInputStream()) {
+                while (in.read() >= 0) {
+                    // 丢弃应答内容
+                }
+            }
+            return sentAny;
+        } finally {
+            connection = null;
+            conn.disconnect();
+        }
+    }
+
+    private static void writePart(OutputStream out, LatestFrame.Frame frame) throws IOException {
+        String header = "--" + BOUNDARY + "\r\n"
+                + "Content-Type: image/jpeg\r\n"
+                + "Content-Length: " + frame.data.length + "\r\n"
+                + "X-Timestamp: " + frame.timestampMs + "\r\n"
+                + "\r\n";
+        out.write(header.getBytes(StandardCharsets.US_ASCII));
+        out.write(frame.data);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * 只保留最新一帧的信箱：新帧覆盖未取走的旧帧并计入丢弃数
+     */
+    static final class LatestFrame {
+        static final class Frame {
+            final byte[] data;
+            final long timestampMs;
+
+            Frame(byte[] data, long timestampMs) {
+                this.data = data;
+                this.timestampMs = timestampMs;
+            }
+        }
+
+        private Frame pending;
+        private long dropped = 0;
+        private boolean closed = false;
+
+        /**
+         * @return true 表示覆盖了一帧尚未发送的旧帧
+         */
+        synchronized boolean offer(byte[] data, long timestampMs) {
+            boolean replaced = pending != null;
+            if (replaced) {
+                dropped++;
+            }
+            pending = new Frame(data, timestampMs);
+            notifyAll();
+            return replaced;
+        }
+
+        /**
+         * 取走最新一帧，最多等待 timeoutMs
+         * @return 超时或已关闭返回 null
+         */
+        synchronized Frame take(long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (pending == null) {
+                if (closed) {
+                    return null;
+                }
+                long waitMs = deadline - System.currentTimeMillis();
+                if (waitMs <= 0) {
+                    return null;
+                }
+                wait(waitMs);
+            }
+            Frame frame = pending;
+            pending = null;
+            return frame;
+        }
+
+        synchronized long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * 唤醒等待中的 take()，之后不再等待新帧
+         */
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+    }
+}
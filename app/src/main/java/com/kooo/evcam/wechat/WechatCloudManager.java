@@ -2,9 +2,14 @@ package com.kooo.evcam.wechat;
 
 import android.content.Context;
 import android.os.Handler;
+import android.util.Base64;
 import android.os.Looper;
 
 import com.kooo.evcam.AppLog;
+import com.kooo.evcam.remote.http.HttpClients;
+import com.kooo.evcam.remote.upload.UploadBatch;
+import com.kooo.evcam.remote.upload.UploadJob;
+import com.kooo.evcam.remote.upload.UploadScheduler;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -14,7 +19,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -41,6 +47,18 @@ public class WechatCloudManager {
     private static final String DB_UPDATE_URL = "https://api.weixin.qq.com/tcb/databaseupdate";
     private static final String DB_ADD_URL = "https://api.weixin.qq.com/tcb/databaseadd";
     private static final String UPLOAD_FILE_URL = "https://api.weixin.qq.com/tcb/uploadfile";
+    private static final String INVOKE_FUNCTION_URL = "https://api.weixin.qq.com/tcb/invokecloudfunction";
+
+    // 统一上传队列中的任务类型
+    private static final String JOB_TYPE_PHOTO = "wechat_photo";
+    private static final String JOB_TYPE_VIDEO = "wechat_video";
+
+    // 分片上传：视频和较大的照片走 uploadChunk 云函数，分片经 base64 放在调用参数里
+    private static final String CHUNK_FUNCTION_NAME = "uploadChunk";
+    private static final long SINGLE_SHOT_MAX_SIZE = 4 * 1024 * 1024;   // 小于4MB的照片直接上传
+    private static final int CHUNK_SIZE = 512 * 1024;                   // 512KB，base64后仍低于云函数参数上限
+    private static final int CHUNK_MAX_RETRIES = 3;
+    private static final long CHUNK_RETRY_DELAY_MS = 2000;
     
     // 心跳间隔（毫秒）
     private static final long HEARTBEAT_INTERVAL = 15000;     // 15秒心跳
@@ -62,6 +80,8 @@ public class WechatCloudManager {
     private final Handler workHandler;
     private final OkHttpClient httpClient;
     private final Gson gson;
+    private final UploadScheduler uploadScheduler;
+    private final Map<String, BatchUploadCallback> batchCallbacks = new ConcurrentHashMap<>();
 
     private boolean isRunning = false;
     private boolean isConnected = false;
@@ -104,11 +124,13 @@ public class WechatCloudManager {
         this.appSecret = config.getAppSecret();
         this.cloudEnv = config.getCloudEnv();
         
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(15, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(60, TimeUnit.SECONDS)
-                .build();
+        this.httpClient = HttpClients.shared();
+
+        // 注册到统一上传队列，同时续传进程被杀前未完成的上传
+        this.uploadScheduler = UploadScheduler.getInstance(context);
+        CloudUploadHandler uploadHandler = new CloudUploadHandler();
+        uploadScheduler.registerHandler(JOB_TYPE_PHOTO, uploadHandler);
+        uploadScheduler.registerHandler(JOB_TYPE_VIDEO, uploadHandler);
     }
     
     /**
@@ -675,11 +697,16 @@ public class WechatCloudManager {
 
     /**
      * 上传文件到微信云存储
+     * 视频和大文件分片断点续传，只有小照片一次性上传
      * @param file 要上传的文件
      * @param cloudPath 云存储路径
      * @return 云存储 fileID，失败返回 null
      */
     public String uploadFileToCloud(File file, String cloudPath) {
+        boolean isImage = cloudPath.endsWith(".jpg") || cloudPath.endsWith(".jpeg") || cloudPath.endsWith(".png");
+        if (!isImage || file.length() >= SINGLE_SHOT_MAX_SIZE) {
+            return uploadFileChunked(file, cloudPath);
+        }
         try {
             if (!refreshAccessToken()) {
                 AppLog.e(TAG, "刷新token失败，无法上传文件");
@@ -771,6 +798,115 @@ public class WechatCloudManager {
         }
     }
     
+    /**
+     * 分片上传到微信云存储，服务端已提交的分片在断网或重启后不会重传
+     * @return 云存储 fileID，失败返回 null（上传队列重试时从已提交偏移继续）
+     */
+    private String uploadFileChunked(File file, String cloudPath) {
+        ChunkedUploader uploader = new ChunkedUploader(new CloudChunkTransport(), CHUNK_SIZE,
+                CHUNK_MAX_RETRIES, CHUNK_RETRY_DELAY_MS, message -> AppLog.w(TAG, message));
+        try {
+            AppLog.d(TAG, "开始分片上传: " + file.getName() + " (" + file.length() + " 字节) -> " + cloudPath);
+            String fileId = uploader.upload(file, cloudPath, (uploaded, total) ->
+                    AppLog.d(TAG, "分片上传进度: " + file.getName() + " " + uploaded + "/" + total));
+            AppLog.d(TAG, "分片上传成功: " + fileId);
+            return fileId;
+        } catch (Exception e) {
+            AppLog.e(TAG, "分片上传失败: " + file.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 调用云函数，返回云函数的返回值（resp_data）
+     */
+    private JsonObject invokeCloudFunction(String name, JsonObject event) throws IOException {
+        if (!refreshAccessToken()) {
+            throw new IOException("刷新token失败");
+        }
+        String url = INVOKE_FUNCTION_URL + "?access_token=" + accessToken + "&env=" + cloudEnv + "&name=" + name;
+
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(
+                        MediaType.parse("application/json; charset=utf-8"),
+                        gson.toJson(event)
+                ))
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+            if (!response.isSuccessful()) {
+                throw new IOException("调用云函数 " + name + " 失败: HTTP " + response.code());
+            }
+            JsonObject result = gson.fromJson(responseBody, JsonObject.class);
+            if (result.has("errcode") && result.get("errcode").getAsInt() != 0) {
+                if (result.get("errcode").getAsInt() == 40001) {
+                    forceRefreshToken();
+                }
+                throw new IOException("调用云函数 " + name + " 失败: " + responseBody);
+            }
+            if (!result.has("resp_data")) {
+                throw new IOException("云函数 " + name + " 无返回值");
+            }
+            return gson.fromJson(result.get("resp_data").getAsString(), JsonObject.class);
+        }
+    }
+
+    /**
+     * 基于 uploadChunk 云函数的分片传输
+     */
+    private class CloudChunkTransport implements ChunkedUploader.ChunkTransport {
+        @Override
+        public long begin(String uploadId, String cloudPath, long totalSize) throws IOException {
+            JsonObject event = new JsonObject();
+            event.addProperty("action", "status");
+            event.addProperty("uploadId", uploadId);
+            event.addProperty("cloudPath", cloudPath);
+            event.addProperty("totalSize", totalSize);
+            return call(event).get("committed").getAsLong();
+        }
+
+        @Override
+        public long putChunk(String uploadId, long offset, byte[] data, int length, String sha256)
+                throws IOException {
+            JsonObject event = new JsonObject();
+            event.addProperty("action", "put");
+            event.addProperty("uploadId", uploadId);
+            event.addProperty("offset", offset);
+            event.addProperty("sha256", sha256);
+            event.addProperty("data", Base64.encodeToString(data, 0, length, Base64.NO_WRAP));
+            JsonObject result = invokeCloudFunction(CHUNK_FUNCTION_NAME, event);
+            // 校验失败时云函数返回 success:false 和当前已提交偏移，由上传器重发
+            if (!result.has("committed")) {
+                throw new IOException(message(result));
+            }
+            return result.get("committed").getAsLong();
+        }
+
+        @Override
+        public String complete(String uploadId, long totalSize, String sha256) throws IOException {
+            JsonObject event = new JsonObject();
+            event.addProperty("action", "complete");
+            event.addProperty("uploadId", uploadId);
+            event.addProperty("totalSize", totalSize);
+            event.addProperty("sha256", sha256);
+            return call(event).get("fileID").getAsString();
+        }
+
+        private JsonObject call(JsonObject event) throws IOException {
+            JsonObject result = invokeCloudFunction(CHUNK_FUNCTION_NAME, event);
+            if (!result.has("success") || !result.get("success").getAsBoolean()) {
+                throw new IOException(message(result));
+            }
+            return result;
+        }
+
+        private String message(JsonObject result) {
+            return result.has("message") ? result.get("message").getAsString() : "uploadChunk 调用失败";
+        }
+    }
+
     /**
      * 上传预览帧
      */
@@ -816,48 +952,72 @@ public class WechatCloudManager {
     }
     
     /**
-     * 批量上传照片
+     * 批量上传照片（通过统一上传队列）
      */
     public void uploadPhotosToCloudAsync(List<File> files, String commandId, BatchUploadCallback callback) {
-        new Thread(() -> {
-            int successCount = 0;
-            int failCount = 0;
-            List<String> fileIds = new ArrayList<>();
-            
-            for (File file : files) {
-                try {
-                    String deviceId = config.getDeviceId();
-                    String fileName = file.getName();
-                    long now = System.currentTimeMillis();
-                    
-                    String cloudPath = "photos/" + deviceId + "/" + fileName;
-                    String fileId = uploadFileToCloud(file, cloudPath);
-                    
-                    if (fileId != null) {
-                        fileIds.add(fileId);
-                        successCount++;
-                        
-                        // 记录到数据库
-                        addFileRecord(fileId, deviceId, fileName, "photo", file.length(), cloudPath, commandId);
-                        
-                        AppLog.d(TAG, "照片 " + successCount + "/" + files.size() + " 上传成功: " + fileName);
-                    } else {
-                        failCount++;
-                    }
-                } catch (Exception e) {
-                    failCount++;
-                    AppLog.e(TAG, "上传照片异常: " + file.getName(), e);
-                }
+        uploadFilesToCloudAsync(files, JOB_TYPE_PHOTO, commandId, callback);
+    }
+
+    /**
+     * 批量上传视频（通过统一上传队列）
+     */
+    public void uploadVideosToCloudAsync(List<File> files, String commandId, BatchUploadCallback callback) {
+        uploadFilesToCloudAsync(files, JOB_TYPE_VIDEO, commandId, callback);
+    }
+
+    private void uploadFilesToCloudAsync(List<File> files, String type, String commandId, BatchUploadCallback callback) {
+        if (files == null || files.isEmpty()) {
+            if (callback != null) {
+                mainHandler.post(() -> callback.onComplete(0, 0, new ArrayList<>()));
             }
-            
-            final int finalSuccess = successCount;
-            final int finalFail = failCount;
+            return;
+        }
+        // 先登记回调再提交，避免小文件在登记前就已上传完
+        UploadBatch batch = uploadScheduler.createBatch(UploadScheduler.LANE_WECHAT, type,
+                commandId != null ? commandId : "", files);
+        if (callback != null) {
+            batchCallbacks.put(batch.getId(), callback);
+        }
+        uploadScheduler.submit(batch, null);
+    }
+
+    /**
+     * 云存储上传处理器：上传单个文件并记录到数据库，fileID 保存为任务结果
+     */
+    private class CloudUploadHandler implements UploadScheduler.UploadHandler {
+        @Override
+        public void upload(UploadJob job) throws Exception {
+            boolean isVideo = JOB_TYPE_VIDEO.equals(job.getType());
+            String deviceId = config.getDeviceId();
+            File file = job.getFile();
+            String fileName = file.getName();
+            String cloudPath = (isVideo ? "videos/" : "photos/") + deviceId + "/" + fileName;
+
+            String fileId = uploadFileToCloud(file, cloudPath);
+            if (fileId == null) {
+                throw new IOException("上传到云存储失败");
+            }
+            job.setResult(fileId);
+
+            // 记录到数据库
+            addFileRecord(fileId, deviceId, fileName, isVideo ? "video" : "photo", file.length(), cloudPath,
+                    job.getTarget());
+            AppLog.d(TAG, (isVideo ? "视频 " : "照片 ") + job + " 上传成功: " + fileName);
+        }
+
+        @Override
+        public String onBatchFinished(UploadBatch batch) {
+            BatchUploadCallback callback = batchCallbacks.remove(batch.getId());
+            int successCount = batch.getSucceeded();
+            int failCount = batch.getFailed();
+            List<String> fileIds = batch.getResults();
             if (callback != null) {
-                mainHandler.post(() -> callback.onComplete(finalSuccess, finalFail, fileIds));
+                mainHandler.post(() -> callback.onComplete(successCount, failCount, fileIds));
             }
-        }).start();
+            return "云存储上传完成: 成功 " + successCount + "/" + batch.getTotal();
+        }
     }
-    
+
     /**
      * 添加文件记录到云数据库
      */
@@ -33,6 +33,9 @@ public class WechatMiniConfig {
     
     // 自动启动配置
     private static final String KEY_AUTO_START = "wechat_auto_start";
+    
+    // 预览推流配置
+    private static final String KEY_PREVIEW_RELAY_URL = "preview_relay_url";
 
     private final SharedPreferences prefs;
     private final Context context;
@@ -245,4 +248,20 @@ public class WechatMiniConfig {
     public void setAutoStart(boolean autoStart) {
         prefs.edit().putBoolean(KEY_AUTO_START, autoStart).apply();
     }
+    
+    // ==================== 预览推流配置 ====================
+    
+    /**
+     * 获取预览中转服务器地址（为空时使用云存储轮询方式预览）
+     */
+    public String getPreviewRelayUrl() {
+        return prefs.getString(KEY_PREVIEW_RELAY_URL, "");
+    }
+    
+    /**
+     * 设置预览中转服务器地址，设备推流到 {地址}/{设备ID}
+     */
+    public void setPreviewRelayUrl(String url) {
+        prefs.edit().putString(KEY_PREVIEW_RELAY_URL, url != null ? url.trim() : "").apply();
+    }
 }
@@ -8,12 +8,20 @@ import android.widget.Toast;
 
 import com.kooo.evcam.AppLog;
 import com.kooo.evcam.WakeUpHelper;
+import com.kooo.evcam.camera.ShareTranscoder;
 import com.kooo.evcam.remote.upload.MediaFileFinder;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLEncoder;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 微信远程服务管理器
@@ -23,7 +31,9 @@ public class WechatRemoteManager {
     private static final String TAG = "WechatRemoteManager";
     
     // 预览流间隔
-    private static final long PREVIEW_INTERVAL = 2000; // 2秒
+    private static final long PREVIEW_INTERVAL = 2000; // 2秒（云存储轮询方式）
+    private static final int PREVIEW_STREAM_FPS = 8;   // 推流方式的采集帧率
+    private static final long PREVIEW_CAPTURE_TIMEOUT_MS = 500; // 推流线程等待主线程采集的上限
     
     private final Context context;
     private final WechatMiniConfig config;
@@ -34,6 +44,7 @@ public class WechatRemoteManager {
     private boolean isPreviewStreaming = false;
     private Handler previewHandler;
     private Runnable previewRunnable;
+    private PreviewStreamer previewStreamer;
     
     // 当前命令ID
     private String currentCommandId;
@@ -86,7 +97,7 @@ public class WechatRemoteManager {
         /** 是否正在录制 */
         boolean checkIsRecording();
         
-        /** 捕获预览帧 */
+        /** 捕获预览帧（必须在主线程调用） */
         byte[] capturePreviewFrame();
         
         /** 获取照片存储目录 */
@@ -517,6 +528,11 @@ public class WechatRemoteManager {
         AppLog.d(TAG, "启动预览流");
         isPreviewStreaming = true;
         
+        // 配置了中转服务器时通过长连接推流，否则逐帧上传云存储
+        if (startRelayStream()) {
+            return;
+        }
+        
         previewRunnable = new Runnable() {
             @Override
             public void run() {
@@ -539,12 +555,69 @@ public class WechatRemoteManager {
         AppLog.d(TAG, "停止预览流");
         isPreviewStreaming = false;
         
+        if (previewStreamer != null) {
+            previewStreamer.stop();
+            previewStreamer = null;
+        }
+        
         if (previewRunnable != null) {
             previewHandler.removeCallbacks(previewRunnable);
             previewRunnable = null;
         }
     }
 
+    /**
+     * 启动中转服务器推流
+     * @return false 表示未配置中转服务器或地址无效
+     */
+    private boolean startRelayStream() {
+        String relayUrl = config.getPreviewRelayUrl();
+        if (relayUrl.isEmpty()) {
+            return false;
+        }
+        if (commandExecutorRef == null || commandExecutorRef.get() == null) {
+            AppLog.w(TAG, "命令执行器未设置，无法推流");
+            return false;
+        }
+        try {
+            String base = relayUrl.endsWith("/") ? relayUrl : relayUrl + "/";
+            URL streamUrl = new URL(base + URLEncoder.encode(config.getDeviceId(), "UTF-8"));
+            previewStreamer = new PreviewStreamer(streamUrl, this::capturePreviewFrameOnMainThread, PREVIEW_STREAM_FPS,
+                    message -> AppLog.w(TAG, message));
+            previewStreamer.start();
+            AppLog.d(TAG, "预览推流到: " + streamUrl);
+            return true;
+        } catch (IOException e) {
+            AppLog.e(TAG, "预览中转地址无效: " + relayUrl, e);
+            return false;
+        }
+    }
+
+    /**
+     * 推流采集线程调用：把采集投递到主线程执行并等待结果
+     * 超时（主线程繁忙）时放弃这一帧，尚未开始执行的采集任务随之取消
+     */
+    private byte[] capturePreviewFrameOnMainThread() {
+        FutureTask<byte[]> task = new FutureTask<>(() -> {
+            CommandExecutor executor = commandExecutorRef != null ? commandExecutorRef.get() : null;
+            return executor != null ? executor.capturePreviewFrame() : null;
+        });
+        previewHandler.post(task);
+        try {
+            return task.get(PREVIEW_CAPTURE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(false);
+            return null;
+        } catch (InterruptedException e) {
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            AppLog.w(TAG, "采集预览帧失败: " + e.getCause());
+            return null;
+        }
+    }
+
     /**
      * 捕获并上传预览帧
      */
@@ -589,51 +662,11 @@ public class WechatRemoteManager {
      * 上传视频到云存储
      */
     public void uploadVideos(List<File> videos, String commandId, WechatCloudManager.BatchUploadCallback callback) {
-        if (cloudManager == null) {
-            if (callback != null) {
-                callback.onComplete(0, videos.size(), null);
-            }
-            return;
+        if (cloudManager != null) {
+            cloudManager.uploadVideosToCloudAsync(videos, commandId, callback);
+        } else if (callback != null) {
+            callback.onComplete(0, videos.size(), null);
         }
-        
-        new Thread(() -> {
-            int successCount = 0;
-            int failCount = 0;
-            java.util.List<String> fileIds = new java.util.ArrayList<>();
-            
-            for (File file : videos) {
-                try {
-                    String deviceId = config.getDeviceId();
-                    String fileName = file.getName();
-                    String cloudPath = "videos/" + deviceId + "/" + fileName;
-                    
-                    String fileId = cloudManager.uploadFileToCloud(file, cloudPath);
-                    
-                    if (fileId != null) {
-                        fileIds.add(fileId);
-                        successCount++;
-                        
-                        // 记录到数据库
-                        cloudManager.addFileRecord(fileId, deviceId, fileName, "video", 
-                                file.length(), cloudPath, commandId);
-                        
-                        AppLog.d(TAG, "视频 " + successCount + "/" + videos.size() + " 上传成功");
-                    } else {
-                        failCount++;
-                    }
-                } catch (Exception e) {
-                    failCount++;
-                    AppLog.e(TAG, "上传视频异常: " + file.getName(), e);
-                }
-            }
-            
-            final int finalSuccess = successCount;
-            final int finalFail = failCount;
-            if (callback != null) {
-                new Handler(Looper.getMainLooper()).post(() -> 
-                        callback.onComplete(finalSuccess, finalFail, fileIds));
-            }
-        }).start();
     }
     
     /**
@@ -664,9 +697,22 @@ public class WechatRemoteManager {
         
         AppLog.d(TAG, "找到 " + videoFiles.size() + " 个视频，开始上传到微信云");
         
-        // 上传视频
+        // 按分享参数转码后上传（未启用时直接上传原文件）
+        ShareTranscoder transcoder = ShareTranscoder.getInstance(context);
+        transcoder.prepareForShare(videoFiles,
+                (fileName, percent, remainingMs) -> AppLog.d(TAG, "分享转码进度: " + fileName + " " + percent + "%"
+                        + (remainingMs >= 0 ? "，剩余约 " + (remainingMs / 1000) + " 秒" : "")),
+                shareFiles -> uploadShareVideos(commandId, videoFiles, shareFiles, returnToBackgroundCallback));
+    }
+    
+    /**
+     * 上传转码后的视频，完成后删除转码临时文件并把原文件传输到最终目录
+     */
+    private void uploadShareVideos(String commandId, List<File> videoFiles, List<File> shareFiles,
+                                   Runnable returnToBackgroundCallback) {
         final List<File> filesToTransfer = videoFiles;
-        uploadVideos(videoFiles, commandId, (successCount, failCount, fileIds) -> {
+        uploadVideos(shareFiles, commandId, (successCount, failCount, fileIds) -> {
+            ShareTranscoder.getInstance(context).releaseShareFiles(shareFiles);
             if (successCount > 0) {
                 AppLog.d(TAG, "微信视频上传完成: 成功" + successCount + "个，失败" + failCount + "个");
                 reportCommandResult(commandId, true, "录制完成，已上传" + successCount + "个视频");
@@ -0,0 +1,68 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 连拍/延时节拍计算测试
+ */
+public class CaptureScheduleTest {
+
+    @Test
+    public void burstClaimsEachShotOnTime() {
+        CaptureSchedule schedule = new CaptureSchedule(1000, 2000, 3, 0);
+        assertEquals(3, schedule.getTotalShots());
+
+        assertEquals(0, schedule.claim(1000));
+        assertEquals(2000, schedule.delayUntilNext(1000));
+        assertEquals(1, schedule.claim(3010));
+        // 处理耗时不会让后续节拍后移
+        assertEquals(1990, schedule.delayUntilNext(3010));
+        assertEquals(2, schedule.claim(5000));
+
+        assertTrue(schedule.isFinished());
+        assertEquals(CaptureSchedule.FINISHED, schedule.claim(7000));
+        assertEquals(0, schedule.getMissedShots());
+    }
+
+    @Test
+    public void lateClaimSkipsMissedShots() {
+        CaptureSchedule schedule = new CaptureSchedule(0, 1000, 10, 0);
+        assertEquals(0, schedule.claim(0));
+        // 调度线程被拖慢 3.5 秒：第 1、2 拍错过，直接拍第 3 拍
+        assertEquals(3, schedule.claim(3500));
+        assertEquals(2, schedule.getMissedShots());
+        assertEquals(4, schedule.getElapsedShots());
+        assertEquals(500, schedule.delayUntilNext(3500));
+    }
+
+    @Test
+    public void lateClaimPastEndFinishes() {
+        CaptureSchedule schedule = new CaptureSchedule(0, 1000, 3, 0);
+        assertEquals(0, schedule.claim(0));
+        assertEquals(CaptureSchedule.FINISHED, schedule.claim(10_000));
+        assertTrue(schedule.isFinished());
+        assertEquals(2, schedule.getMissedShots());
+    }
+
+    @Test
+    public void timelapseIsBoundedByDuration() {
+        // 每 10 秒一帧，持续 8 小时：含首帧共 2881 帧
+        CaptureSchedule schedule = new CaptureSchedule(0, 10_000, 0, 8 * 3600_000L);
+        assertEquals(2881, schedule.getTotalShots());
+        assertEquals(8 * 3600_000L, schedule.shotTime(2880));
+    }
+
+    @Test
+    public void unlimitedScheduleReportsUnknownTotal() {
+        CaptureSchedule schedule = new CaptureSchedule(0, 1000, 0, 0);
+        assertEquals(-1, schedule.getTotalShots());
+        assertFalse(schedule.isFinished());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveInterval() {
+        new CaptureSchedule(0, 0, 1, 0);
+    }
+}
@@ -0,0 +1,106 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * 编码帧环形缓冲区吞吐基准（JMH 风格：预热轮 + 测量轮）
+ *
+ * 生产者按 1080p 的典型帧大小分布（每 30 帧一个大关键帧）持续写入，
+ * 消费者只读取视图后释放，测的是环本身的开销而不是磁盘。
+ * 每轮断言关键帧零丢失、帧数守恒，且每秒能转发的帧数远高于录制帧率。
+ * 默认轮数较少以免拖慢单元测试，可通过系统属性调整：
+ * -Dring.bench.warmup=5 -Dring.bench.iterations=10 -Dring.bench.iterationMs=1000
+ */
+public class EncodedFrameRingBenchmark {
+
+    private static final int CAPACITY = 8 * 1024 * 1024;
+    private static final int MAX_FRAMES = 128;
+    private static final int GOP = 30;
+    private static final int KEY_FRAME_BYTES = 400 * 1024;
+    private static final int P_FRAME_BYTES = 40 * 1024;
+
+    private static final int WARMUP = Integer.getInteger("ring.bench.warmup", 2);
+    private static final int ITERATIONS = Integer.getInteger("ring.bench.iterations", 3);
+    private static final long ITERATION_MS = Long.getLong("ring.bench.iterationMs", 200);
+
+    /** 四路 30fps 录制所需吞吐的下限（留足余量，只用于发现数量级的退化） */
+    private static final double MIN_FRAMES_PER_SECOND = 4 * 30;
+
+    @Test
+    public void throughput() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(CAPACITY, MAX_FRAMES);
+        ByteBuffer[] frames = buildFrames();
+
+        for (int i = 0; i < WARMUP; i++) {
+            runIteration(ring, frames);
+        }
+        double totalOps = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            totalOps += runIteration(ring, frames);
+        }
+        double avgOps = totalOps / ITERATIONS;
+        assertTrue(String.format(Locale.US, "%.0f frames/s", avgOps), avgOps > MIN_FRAMES_PER_SECOND);
+    }
+
+    private static ByteBuffer[] buildFrames() {
+        Random random = new Random(42);
+        ByteBuffer[] frames = new ByteBuffer[GOP];
+        for (int i = 0; i < GOP; i++) {
+            int size = (i == 0) ? KEY_FRAME_BYTES : P_FRAME_BYTES + random.nextInt(P_FRAME_BYTES);
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            // 编码器输出缓冲区是直接内存
+            frames[i] = ByteBuffer.allocateDirect(size);
+            frames[i].put(data).flip();
+        }
+        return frames;
+    }
+
+    /**
+     * @return 本轮吞吐（帧/秒）
+     */
+    private static double runIteration(EncodedFrameRing ring, ByteBuffer[] frames) throws Exception {
+        ring.clear();
+        AtomicBoolean stop = new AtomicBoolean(false);
+        AtomicLong sink = new AtomicLong();
+        Thread consumer = new Thread(() -> {
+            EncodedFrameRing.Frame out = ring.newFrame();
+            long sum = 0;
+            while (!stop.get() || !ring.isEmpty()) {
+                if (ring.poll(out, TimeUnit.MILLISECONDS.toNanos(1))) {
+                    sum += out.data.get(out.offset);
+                    ring.release();
+                }
+            }
+            sink.set(sum);  // 发布读取结果，防止读取被优化掉
+        }, "ring-bench-consumer");
+        consumer.start();
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(ITERATION_MS);
+        long pts = 0;
+        int index = 0;
+        while (System.nanoTime() < deadline) {
+            ByteBuffer frame = frames[index];
+            frame.rewind();
+            ring.offer(frame, pts++, index == 0 ? 1 : 0, index == 0);
+            index = (index + 1) % GOP;
+        }
+        stop.set(true);
+        consumer.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(ring.getStats(), 0, ring.getKeyFramesDropped());
+        assertEquals(ring.getStats(), ring.getOfferedFrames(), ring.getWrittenFrames() + ring.getDroppedFrames());
+        return ring.getOfferedFrames() / seconds;
+    }
+}
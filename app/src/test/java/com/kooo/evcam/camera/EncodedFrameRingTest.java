@@ -0,0 +1,254 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 编码帧环形缓冲区测试
+ */
+public class EncodedFrameRingTest {
+
+    private static ByteBuffer frame(int size, int seed) {
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            buf.put((byte) (seed + i));
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static void assertFrame(EncodedFrameRing.Frame frame, int size, int seed) {
+        assertEquals(size, frame.size);
+        assertEquals(size, frame.data.remaining());
+        for (int i = 0; i < size; i++) {
+            assertEquals((byte) (seed + i), frame.data.get(frame.offset + i));
+        }
+    }
+
+    @Test
+    public void offerAndPoll_preservesDataAndMetadata() {
+        EncodedFrameRing ring = new EncodedFrameRing(1024, 8);
+        EncodedFrameRing.Frame out = ring.newFrame();
+
+        assertTrue(ring.offer(frame(100, 1), 1000, 1, true));
+        assertTrue(ring.offer(frame(200, 7), 2000, 0, false));
+        assertEquals(2, ring.size());
+
+        assertTrue(ring.poll(out, 0));
+        assertFrame(out, 100, 1);
+        assertEquals(1000, out.ptsUs);
+        assertEquals(1, out.flags);
+        ring.release();
+
+        assertTrue(ring.poll(out, 0));
+        assertFrame(out, 200, 7);
+        assertEquals(2000, out.ptsUs);
+        ring.release();
+
+        assertTrue(ring.isEmpty());
+        assertFalse(ring.poll(out, 0));
+        assertEquals(2, ring.getWrittenFrames());
+    }
+
+    @Test
+    public void wrapAround_skipsTailGap() {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 8);
+        EncodedFrameRing.Frame out = ring.newFrame();
+
+        for (int round = 0; round < 20; round++) {
+            assertTrue(ring.offer(frame(300, round), round, 0, true));
+            assertTrue(ring.offer(frame(300, round + 50), round, 0, false));
+            assertTrue(ring.poll(out, 0));
+            assertFrame(out, 300, round);
+            ring.release();
+            assertTrue(ring.poll(out, 0));
+            assertFrame(out, 300, round + 50);
+            // 跨越尾部的帧必须从 0 开始，不能被拆开
+            assertTrue(out.offset + out.size <= ring.getCapacity());
+            ring.release();
+        }
+        assertEquals(0, ring.getDroppedFrames());
+    }
+
+    @Test
+    public void overflow_dropsUntilNextKeyFrame() {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 8);
+        EncodedFrameRing.Frame out = ring.newFrame();
+
+        assertTrue(ring.offer(frame(400, 0), 0, 1, true));
+        assertTrue(ring.offer(frame(400, 1), 1, 0, false));
+        assertFalse(ring.offer(frame(400, 2), 2, 0, false));
+        // 空间腾出后，后续普通帧仍然丢弃，直到下一个关键帧
+        assertTrue(ring.poll(out, 0));
+        ring.release();
+        assertFalse(ring.offer(frame(100, 3), 3, 0, false));
+        assertTrue(ring.offer(frame(100, 4), 4, 1, true));
+        assertTrue(ring.offer(frame(100, 5), 5, 0, false));
+
+        assertEquals(2, ring.getDroppedFrames());
+        assertEquals(0, ring.getKeyFramesDropped());
+        assertEquals(800, ring.getHighWaterBytes());
+    }
+
+    @Test
+    public void indexFull_dropsNonKeyFrame() {
+        EncodedFrameRing ring = new EncodedFrameRing(1 << 20, 4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(frame(10, i), i, 0, i == 0));
+        }
+        assertFalse(ring.offer(frame(10, 4), 4, 0, false));
+        assertEquals(4, ring.getHighWaterFrames());
+    }
+
+    @Test(timeout = 5000)
+    public void keyFrame_waitsForConsumerInsteadOfDropping() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 8);
+        assertTrue(ring.offer(frame(600, 0), 0, 1, true));
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                EncodedFrameRing.Frame out = ring.newFrame();
+                Thread.sleep(50);
+                assertTrue(ring.poll(out, 0));
+                ring.release();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        consumer.start();
+
+        assertTrue(ring.offer(frame(600, 1), 1, 1, true));
+        consumer.join();
+        assertNull(failure.get());
+        assertEquals(1, ring.getKeyFrameWaits());
+        assertEquals(0, ring.getKeyFramesDropped());
+    }
+
+    @Test(timeout = 5000)
+    public void keyFrame_droppedAfterWaitBudgetWhenConsumerStalls() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 8);
+        assertTrue(ring.offer(frame(600, 0), 0, 1, true));
+
+        // 写入线程卡住远超过等待上限，编码线程只被阻塞一个上限的时间
+        Thread consumer = new Thread(() -> {
+            EncodedFrameRing.Frame out = ring.newFrame();
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (ring.poll(out, 0)) {
+                ring.release();
+            }
+        });
+        consumer.start();
+
+        long start = System.nanoTime();
+        assertFalse(ring.offer(frame(600, 1), 1, 1, true));
+        long elapsed = System.nanoTime() - start;
+        assertTrue("等待 " + elapsed / 1_000_000 + "ms", elapsed >= EncodedFrameRing.KEY_FRAME_WAIT_BUDGET_NS);
+        assertTrue("等待 " + elapsed / 1_000_000 + "ms",
+                elapsed < EncodedFrameRing.KEY_FRAME_WAIT_BUDGET_NS + TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(1, ring.getKeyFramesDropped());
+        assertTrue(ring.needsKeyFrame());
+
+        // 丢弃的 GOP 中后续普通帧不再等待，直接丢弃
+        start = System.nanoTime();
+        assertFalse(ring.offer(frame(10, 2), 2, 0, false));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(2, ring.getDroppedFrames());
+
+        consumer.interrupt();
+        consumer.join();
+    }
+
+    @Test(timeout = 5000)
+    public void keyFrame_droppedWhenRingClosed() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 8);
+        assertTrue(ring.offer(frame(600, 0), 0, 1, true));
+
+        Thread closer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            ring.close();
+        });
+        closer.start();
+
+        assertFalse(ring.offer(frame(600, 1), 1, 1, true));
+        closer.join();
+        assertEquals(1, ring.getKeyFramesDropped());
+
+        // 重新打开后关键帧恢复等待
+        ring.open();
+        EncodedFrameRing.Frame out = ring.newFrame();
+        assertTrue(ring.poll(out, 0));
+        ring.release();
+        assertTrue(ring.offer(frame(600, 2), 2, 1, true));
+    }
+
+    @Test
+    public void keyFrame_largerThanCapacityDroppedWithoutWaiting() {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 8);
+        assertFalse(ring.offer(frame(1001, 0), 0, 1, true));
+        assertEquals(1, ring.getKeyFramesDropped());
+        assertEquals(0, ring.getKeyFrameWaits());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentProducerConsumer_deliversInOrder() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(64 * 1024, 16);
+        int total = 20000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread consumer = new Thread(() -> {
+            EncodedFrameRing.Frame out = ring.newFrame();
+            long expected = 0;
+            try {
+                while (expected < total) {
+                    if (!ring.poll(out, TimeUnit.MILLISECONDS.toNanos(10))) {
+                        continue;
+                    }
+                    // 所有帧都是关键帧（生产者会等待），因此序号必须连续
+                    assertEquals(expected, out.ptsUs);
+                    int size = 1 + (int) (expected * 31 % 4000);
+                    assertFrame(out, size, (int) expected);
+                    ring.release();
+                    expected++;
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        consumer.start();
+
+        for (int i = 0; i < total; i++) {
+            int size = 1 + (int) ((long) i * 31 % 4000);
+            assertTrue(ring.offer(frame(size, i), i, 1, true));
+        }
+        consumer.join();
+        assertNull(failure.get());
+        assertEquals(total, ring.getWrittenFrames());
+    }
+
+    @Test
+    public void clear_resetsStateAndStats() {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 8);
+        ring.offer(frame(900, 0), 0, 0, false);
+        ring.offer(frame(900, 0), 0, 0, false);
+        ring.clear();
+
+        assertTrue(ring.isEmpty());
+        assertEquals(0, ring.getDroppedFrames());
+        assertEquals(0, ring.getHighWaterBytes());
+        assertTrue(ring.offer(frame(900, 0), 0, 0, false));
+    }
+}
@@ -0,0 +1,379 @@
+package com.kooo.evcam.camera;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分片 MP4 写入器测试，使用合成的 H.264 NAL 单元
+ */
+public class FragmentedMp4WriterTest {
+
+    // Baseline 3.1 的 SPS/PPS（内容只需满足 avcC 字段读取）
+    private static final byte[] SPS = {0, 0, 0, 1, 0x67, 0x42, (byte) 0xC0, 0x1F, (byte) 0xDA, 0x01, 0x40, 0x16, (byte) 0xE8};
+    private static final byte[] PPS = {0, 0, 0, 1, 0x68, (byte) 0xCE, 0x3C, (byte) 0x80};
+
+    private File file;
+    private RandomAccessFile raf;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("fmp4", ".mp4");
+        raf = new RandomAccessFile(file, "rw");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        raf.close();
+        file.delete();
+    }
+
+    @Test
+    public void header_containsFtypAndMoovWithAvcC() throws IOException {
+        FragmentedMp4Writer writer = newWriter(30);
+        writer.finish();
+
+        List<Box> boxes = parseBoxes(readFile(), 0, (int) raf.length());
+        assertEquals("ftyp", boxes.get(0).type);
+        assertEquals("moov", boxes.get(1).type);
+        assertEquals(2, boxes.size());
+
+        byte[] data = readFile();
+        Box avcC = find(data, boxes.get(1), "trak", "mdia", "minf", "stbl", "stsd");
+        // stsd: fullbox + entry_count，avc1 的 78 字节固定字段之后是 avcC
+        int avc1 = avcC.offset + 16;
+        assertEquals("avc1", type(data, avc1 + 4));
+        int avcCOffset = avc1 + 8 + 78;
+        assertEquals("avcC", type(data, avcCOffset + 4));
+        assertEquals(1, data[avcCOffset + 8]);
+        assertEquals(0x42, data[avcCOffset + 9]);
+        assertEquals(0x1F, data[avcCOffset + 11]);
+        assertEquals((byte) 0xFF, data[avcCOffset + 12]);
+        assertEquals((byte) 0xE1, data[avcCOffset + 13]);
+        assertEquals(SPS.length - 4, readShort(data, avcCOffset + 14));
+    }
+
+    @Test
+    public void fragments_startAtKeyFramesAndContainLengthPrefixedNals() throws IOException {
+        FragmentedMp4Writer writer = newWriter(100);
+        List<byte[]> slices = new ArrayList<>();
+        Random random = new Random(42);
+        // 3 个 GOP，每个 10 帧，33ms 间隔
+        for (int i = 0; i < 30; i++) {
+            boolean key = i % 10 == 0;
+            byte[] slice = randomSlice(random, key, 500 + random.nextInt(3000));
+            slices.add(slice);
+            writer.writeSample(annexB(key, slice, i % 2 == 0), i * 33_333L, key);
+        }
+        writer.finish();
+
+        byte[] data = readFile();
+        List<Fragment> fragments = parseFragments(data);
+        assertEquals(3, fragments.size());
+        assertEquals(3, writer.getTotalFragments());
+        assertEquals(30, writer.getTotalSamples());
+
+        int sampleIndex = 0;
+        long expectedBase = 0;
+        for (int f = 0; f < fragments.size(); f++) {
+            Fragment fragment = fragments.get(f);
+            assertEquals(f + 1, fragment.sequence);
+            assertEquals(10, fragment.sizes.length);
+            assertEquals(expectedBase, fragment.baseTime);
+            assertEquals(FragmentedMp4Writer.SAMPLE_FLAGS_SYNC, fragment.flags[0]);
+            for (int i = 1; i < fragment.flags.length; i++) {
+                assertEquals(FragmentedMp4Writer.SAMPLE_FLAGS_NON_SYNC, fragment.flags[i]);
+            }
+            int pos = fragment.dataOffset;
+            for (int i = 0; i < fragment.sizes.length; i++) {
+                byte[] slice = slices.get(sampleIndex++);
+                // 参数集和 AUD 被去掉，只剩一个长度前缀的 slice NAL
+                assertEquals(slice.length + 4, fragment.sizes[i]);
+                assertEquals(slice.length, readInt(data, pos));
+                assertArrayEquals(slice, Arrays.copyOfRange(data, pos + 4, pos + 4 + slice.length));
+                pos += fragment.sizes[i];
+                expectedBase += fragment.durations[i];
+            }
+        }
+        // 33.333ms @ 90kHz = 2999.97，按累计时间换算，每帧 2999 或 3000
+        assertEquals(29 * 33_333L * 90 / 1000 + 2999, expectedBase, 1);
+    }
+
+    @Test
+    public void fragments_splitEveryNFramesWithinLongGop() throws IOException {
+        FragmentedMp4Writer writer = newWriter(8);
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            boolean key = i == 0;
+            writer.writeSample(annexB(key, randomSlice(random, key, 200), false), i * 40_000L, key);
+        }
+        writer.finish();
+
+        List<Fragment> fragments = parseFragments(readFile());
+        assertEquals(3, fragments.size());
+        assertEquals(8, fragments.get(0).sizes.length);
+        assertEquals(8, fragments.get(1).sizes.length);
+        assertEquals(4, fragments.get(2).sizes.length);
+        assertEquals(8 * 3600, fragments.get(1).baseTime);
+        assertEquals(16 * 3600, fragments.get(2).baseTime);
+        // 最后一帧沿用上一帧的时长
+        assertEquals(3600, fragments.get(2).durations[3]);
+    }
+
+    @Test
+    public void finish_patchesDurations() throws IOException {
+        FragmentedMp4Writer writer = newWriter(30);
+        Random random = new Random(3);
+        for (int i = 0; i < 60; i++) {
+            boolean key = i % 30 == 0;
+            writer.writeSample(annexB(key, randomSlice(random, key, 100), false), i * 50_000L, key);
+        }
+        writer.finish();
+
+        byte[] data = readFile();
+        Box moov = parseBoxes(data, 0, data.length).get(1);
+        Box mvhd = find(data, moov, "mvhd");
+        assertEquals(3000, readInt(data, mvhd.offset + 24));
+        Box mdhd = find(data, moov, "trak", "mdia", "mdhd");
+        assertEquals(60 * 4500, readInt(data, mdhd.offset + 24));
+        Box mehd = find(data, moov, "mvex", "mehd");
+        assertEquals(3000, readInt(data, mehd.offset + 12));
+        assertEquals(3_000_000, writer.getDurationUs());
+    }
+
+    @Test
+    public void truncatedFile_keepsCompleteFragmentsPlayable() throws IOException {
+        FragmentedMp4Writer writer = newWriter(10);
+        Random random = new Random(11);
+        for (int i = 0; i < 25; i++) {
+            boolean key = i % 10 == 0;
+            writer.writeSample(annexB(key, randomSlice(random, key, 1000), false), i * 33_333L, key);
+        }
+        // 模拟断电：不调用 finish()，并截断掉最后写出分片的一部分
+        long length = raf.length();
+        raf.setLength(length - 100);
+
+        byte[] data = readFile();
+        List<Box> boxes = parseBoxes(data, 0, data.length);
+        assertEquals("moov", boxes.get(1).type);
+        // 第一个完整分片仍可解析
+        List<Fragment> fragments = parseFragments(data);
+        assertEquals(1, fragments.size());
+        assertEquals(10, fragments.get(0).sizes.length);
+        assertEquals(0, readInt(data, find(data, boxes.get(1), "mvhd").offset + 24));
+    }
+
+    @Test
+    public void appendAnnexB_handlesThreeAndFourByteStartCodes() {
+        byte[] sei = {0x06, 0x05, 0x01, 0x00, (byte) 0x80};
+        byte[] slice = {0x65, (byte) 0x88, 0x00, 0x00, 0x03, 0x01, 0x7F};
+        ByteBuffer in = ByteBuffer.allocate(64);
+        in.put(new byte[] {0, 0, 0, 1, 0x09, (byte) 0xF0});  // AUD
+        in.put(new byte[] {0, 0, 1});
+        in.put(sei);
+        in.put(new byte[] {0, 0, 0, 0, 1});  // trailing zero + 4 字节起始码
+        in.put(slice);
+        in.flip();
+
+        ByteBuffer out = ByteBuffer.allocate(64);
+        int written = FragmentedMp4Writer.appendAnnexB(in, out);
+        assertEquals(4 + sei.length + 4 + slice.length, written);
+        assertFalse(in.hasRemaining());
+        out.flip();
+        assertEquals(sei.length, out.getInt());
+        byte[] actualSei = new byte[sei.length];
+        out.get(actualSei);
+        assertArrayEquals(sei, actualSei);
+        assertEquals(slice.length, out.getInt());
+        byte[] actualSlice = new byte[slice.length];
+        out.get(actualSlice);
+        assertArrayEquals(slice, actualSlice);
+    }
+
+    @Test
+    public void largeSample_growsBuffer() throws IOException {
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(raf.getChannel(), 30, 1024);
+        writer.setVideoTrack(1280, 720, SPS, PPS);
+        writer.start();
+        byte[] slice = randomSlice(new Random(5), true, 10_000);
+        writer.writeSample(annexB(true, slice, false), 0, true);
+        writer.writeSample(annexB(false, randomSlice(new Random(6), false, 100), false), 33_333, false);
+        writer.finish();
+
+        List<Fragment> fragments = parseFragments(readFile());
+        assertEquals(1, fragments.size());
+        assertEquals(2, fragments.get(0).sizes.length);
+        assertEquals(slice.length + 4, fragments.get(0).sizes[0]);
+    }
+
+    // ===== 辅助方法 =====
+
+    private FragmentedMp4Writer newWriter(int fragmentFrames) throws IOException {
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(raf.getChannel(), fragmentFrames, 64 * 1024);
+        writer.setVideoTrack(1280, 720, SPS, PPS);
+        writer.start();
+        return writer;
+    }
+
+    /**
+     * 生成不含起始码模式（00 00 0x）的随机 slice，首字节为 NAL 头
+     */
+    private static byte[] randomSlice(Random random, boolean key, int size) {
+        byte[] slice = new byte[size];
+        random.nextBytes(slice);
+        slice[0] = (byte) (key ? 0x65 : 0x41);
+        for (int i = 2; i < size; i++) {
+            if (slice[i - 2] == 0 && slice[i - 1] == 0 && (slice[i] & 0xFF) <= 3) {
+                slice[i] = 0x55;
+            }
+        }
+        if (slice[size - 1] == 0) {
+            slice[size - 1] = 0x01;
+        }
+        return slice;
+    }
+
+    /**
+     * 组装 MediaCodec 风格的访问单元：关键帧带 SPS/PPS，可选 AUD，使用 4 字节起始码
+     */
+    private static ByteBuffer annexB(boolean key, byte[] slice, boolean withAud) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(slice.length + 64);
+        if (withAud) {
+            buffer.put(new byte[] {0, 0, 0, 1, 0x09, (byte) 0xF0});
+        }
+        if (key) {
+            buffer.put(SPS);
+            buffer.put(PPS);
+        }
+        buffer.put(new byte[] {0, 0, 0, 1});
+        buffer.put(slice);
+        buffer.flip();
+        return buffer;
+    }
+
+    private byte[] readFile() throws IOException {
+        byte[] data = new byte[(int) raf.length()];
+        raf.seek(0);
+        raf.readFully(data);
+        return data;
+    }
+
+    private static class Box {
+        final String type;
+        final int offset;
+        final int size;
+
+        Box(String type, int offset, int size) {
+            this.type = type;
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+
+    private static class Fragment {
+        int sequence;
+        long baseTime;
+        int dataOffset;  // 文件中的绝对位置
+        int[] durations;
+        int[] sizes;
+        int[] flags;
+    }
+
+    private static List<Box> parseBoxes(byte[] data, int from, int to) {
+        List<Box> boxes = new ArrayList<>();
+        int pos = from;
+        while (pos + 8 <= to) {
+            int size = readInt(data, pos);
+            if (size < 8 || pos + size > to) {
+                break;
+            }
+            boxes.add(new Box(type(data, pos + 4), pos, size));
+            pos += size;
+        }
+        return boxes;
+    }
+
+    private static Box find(byte[] data, Box parent, String... path) {
+        Box current = parent;
+        for (String type : path) {
+            Box next = null;
+            for (Box child : parseBoxes(data, current.offset + 8, current.offset + current.size)) {
+                if (child.type.equals(type)) {
+                    next = child;
+                    break;
+                }
+            }
+            assertNotNull("missing box " + type, next);
+            current = next;
+        }
+        return current;
+    }
+
+    private static List<Fragment> parseFragments(byte[] data) {
+        List<Fragment> fragments = new ArrayList<>();
+        List<Box> boxes = parseBoxes(data, 0, data.length);
+        for (int i = 0; i < boxes.size(); i++) {
+            Box moof = boxes.get(i);
+            if (!moof.type.equals("moof")) {
+                continue;
+            }
+            // 只统计后面跟着完整 mdat 的分片
+            if (i + 1 >= boxes.size() || !boxes.get(i + 1).type.equals("mdat")) {
+                break;
+            }
+            Fragment fragment = new Fragment();
+            fragment.sequence = readInt(data, find(data, moof, "mfhd").offset + 12);
+            Box tfhd = find(data, moof, "traf", "tfhd");
+            assertEquals(0x020000, readInt(data, tfhd.offset + 8));
+            Box tfdt = find(data, moof, "traf", "tfdt");
+            assertEquals(1, data[tfdt.offset + 8]);
+            fragment.baseTime = readLong(data, tfdt.offset + 12);
+            Box trun = find(data, moof, "traf", "trun");
+            int count = readInt(data, trun.offset + 12);
+            fragment.dataOffset = moof.offset + readInt(data, trun.offset + 16);
+            assertEquals(boxes.get(i + 1).offset + 8, fragment.dataOffset);
+            fragment.durations = new int[count];
+            fragment.sizes = new int[count];
+            fragment.flags = new int[count];
+            int total = 0;
+            for (int s = 0; s < count; s++) {
+                int entry = trun.offset + 20 + s * 12;
+                fragment.durations[s] = readInt(data, entry);
+                fragment.sizes[s] = readInt(data, entry + 4);
+                fragment.flags[s] = readInt(data, entry + 8);
+                total += fragment.sizes[s];
+            }
+            assertEquals(boxes.get(i + 1).size - 8, total);
+            fragments.add(fragment);
+        }
+        return fragments;
+    }
+
+    private static String type(byte[] data, int offset) {
+        return new String(data, offset, 4, StandardCharsets.US_ASCII);
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ByteBuffer.wrap(data, offset, 4).getInt();
+    }
+
+    private static long readLong(byte[] data, int offset) {
+        return ByteBuffer.wrap(data, offset, 8).getLong();
+    }
+}
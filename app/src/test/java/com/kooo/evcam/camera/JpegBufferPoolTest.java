@@ -0,0 +1,70 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JPEG 缓冲池测试
+ */
+public class JpegBufferPoolTest {
+
+    @Test
+    public void obtain_roundsUpToAlignment() {
+        JpegBufferPool pool = new JpegBufferPool(4);
+        assertEquals(64 * 1024, pool.obtain(1).length);
+        assertEquals(64 * 1024, pool.obtain(64 * 1024).length);
+        assertEquals(128 * 1024, pool.obtain(64 * 1024 + 1).length);
+        assertEquals(3, pool.getAllocations());
+    }
+
+    @Test
+    public void release_thenObtain_reusesSmallestFittingBuffer() {
+        JpegBufferPool pool = new JpegBufferPool(4);
+        byte[] small = pool.obtain(100 * 1024);
+        byte[] large = pool.obtain(900 * 1024);
+        pool.release(large);
+        pool.release(small);
+
+        assertSame(small, pool.obtain(90 * 1024));
+        assertSame(large, pool.obtain(200 * 1024));
+        assertEquals(2, pool.getReuses());
+        assertEquals(0, pool.getPooledCount());
+    }
+
+    @Test
+    public void obtain_allocatesWhenNoPooledBufferFits() {
+        JpegBufferPool pool = new JpegBufferPool(4);
+        byte[] small = pool.obtain(10);
+        pool.release(small);
+
+        byte[] big = pool.obtain(1024 * 1024);
+        assertNotSame(small, big);
+        assertEquals(1, pool.getPooledCount());
+    }
+
+    @Test
+    public void release_whenFull_keepsLargestBuffers() {
+        JpegBufferPool pool = new JpegBufferPool(2);
+        byte[] a = new byte[64 * 1024];
+        byte[] b = new byte[128 * 1024];
+        byte[] c = new byte[256 * 1024];
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+
+        assertEquals(2, pool.getPooledCount());
+        assertSame(b, pool.obtain(1));
+        assertSame(c, pool.obtain(1));
+    }
+
+    @Test
+    public void release_ignoresDuplicatesAndNull() {
+        JpegBufferPool pool = new JpegBufferPool(4);
+        byte[] buffer = pool.obtain(1);
+        pool.release(buffer);
+        pool.release(buffer);
+        pool.release(null);
+        assertEquals(1, pool.getPooledCount());
+    }
+}
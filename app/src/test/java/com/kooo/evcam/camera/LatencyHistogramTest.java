@@ -0,0 +1,115 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 延迟直方图与管线指标测试
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBounds_coverEveryValueWithBoundedError() {
+        long[] samples = {0, 1, 31, 32, 33, 47, 48, 63, 64, 1000, 16_667, 123_456, 1_000_000,
+                LatencyHistogram.MAX_VALUE_US};
+        for (long value : samples) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(index >= 0 && index < LatencyHistogram.BUCKET_COUNT);
+            long low = LatencyHistogram.lowestValueAt(index);
+            long high = LatencyHistogram.highestValueAt(index);
+            assertTrue(value + " not in [" + low + "," + high + "]", low <= value && value <= high);
+            // 相对误差不超过 1/16
+            assertTrue(high - low <= Math.max(0, low / 16));
+        }
+    }
+
+    @Test
+    public void bucketIndices_areContiguousAndMonotonic() {
+        for (int i = 1; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            assertEquals(LatencyHistogram.highestValueAt(i - 1) + 1, LatencyHistogram.lowestValueAt(i));
+        }
+    }
+
+    @Test
+    public void percentiles_reflectDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 10L);  // 10us .. 10ms
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(10_000, histogram.getMaxUs());
+        assertEquals(5005, histogram.getMeanUs());
+
+        long p50 = histogram.getPercentileUs(50);
+        long p99 = histogram.getPercentileUs(99);
+        assertTrue("p50=" + p50, p50 >= 5000 && p50 <= 5000 + 5000 / 16);
+        assertTrue("p99=" + p99, p99 >= 9900 && p99 <= 10_000);
+        assertEquals(10_000, histogram.getPercentileUs(100));
+    }
+
+    @Test
+    public void record_clampsOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileUs(50));
+        assertEquals(LatencyHistogram.MAX_VALUE_US, histogram.getMaxUs());
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxUs());
+        assertEquals(0, histogram.getPercentileUs(99));
+    }
+
+    @Test
+    public void pipelineMetrics_matchEncoderOutputToDrawnFrameByPts() {
+        CameraPipelineMetrics metrics = new CameraPipelineMetrics("front");
+        long t0 = 1_000_000_000L;
+        metrics.onFrameDrawn(0, t0 - 2_000_000, t0);
+        metrics.onFrameDrawn(33_333, t0 + 33_000_000, t0 + 34_000_000);
+        metrics.onFrameDrawn(66_666, t0 + 66_000_000, t0 + 67_000_000);
+
+        // 第一帧 10ms 后输出；第二帧被编码器丢弃；第三帧 5ms 后输出
+        metrics.onEncoderOutput(0, t0 + 10_000_000);
+        metrics.onEncoderOutput(66_666, t0 + 72_000_000);
+
+        assertEquals(3, metrics.getFramesDrawn());
+        assertEquals(2, metrics.getFramesEncoded());
+        assertEquals(2, metrics.getEncodeLatency().getCount());
+        assertEquals(10_000, metrics.getEncodeLatency().getMaxUs());
+        assertEquals(3, metrics.getRenderLatency().getCount());
+        assertEquals(2_000, metrics.getRenderLatency().getMaxUs());
+
+        // 未渲染过的 PTS 不计入编码延迟
+        metrics.onEncoderOutput(99_999, t0 + 100_000_000);
+        assertEquals(2, metrics.getEncodeLatency().getCount());
+    }
+
+    @Test
+    public void pipelineMetrics_tracksQueueDepthPeakAndReset() {
+        CameraPipelineMetrics metrics = new CameraPipelineMetrics("left");
+        metrics.onQueueDepth(3);
+        metrics.onQueueDepth(7);
+        metrics.onQueueDepth(1);
+        assertEquals(1, metrics.getQueueDepth());
+        assertEquals(7, metrics.getMaxQueueDepth());
+
+        metrics.onFrameWritten(1000, 50_000);
+        metrics.onFramesFlushed(30, 200_000);
+        metrics.onFrameDropped();
+        assertEquals(201_000, metrics.getBytesWritten());
+
+        metrics.reset();
+        assertEquals(0, metrics.getFramesWritten());
+        assertEquals(0, metrics.getFramesFlushed());
+        assertEquals(0, metrics.getFramesDropped());
+        assertEquals(1, metrics.getMaxQueueDepth());
+    }
+}
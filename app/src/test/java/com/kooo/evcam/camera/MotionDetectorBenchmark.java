@@ -0,0 +1,85 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 移动侦测处理吞吐基准（JMH 风格：预热轮 + 测量轮）
+ *
+ * 停车模式下 4 路摄像头各 5 帧/秒，即每秒 20 帧 160x90，这里测单线程能处理多少帧，
+ * 断言吞吐高于目标负载，且移动的亮块每轮都能被检出。可通过系统属性调整：
+ * -Dmotion.bench.warmup=5 -Dmotion.bench.iterations=10 -Dmotion.bench.iterationMs=1000
+ */
+public class MotionDetectorBenchmark {
+
+    private static final int W = LumaProbe.WIDTH;
+    private static final int H = LumaProbe.HEIGHT;
+    private static final int FRAMES = 16;
+    private static final int TARGET_FPS = 4 * 5;
+
+    private static final int WARMUP = Integer.getInteger("motion.bench.warmup", 2);
+    private static final int ITERATIONS = Integer.getInteger("motion.bench.iterations", 3);
+    private static final long ITERATION_MS = Long.getLong("motion.bench.iterationMs", 200);
+
+    @Test
+    public void throughput() {
+        byte[][] frames = buildFrames();
+        MotionDetector detector = new MotionDetector(W, H);
+
+        for (int i = 0; i < WARMUP; i++) {
+            runIteration(detector, frames);
+        }
+        double totalOps = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            totalOps += runIteration(detector, frames);
+        }
+        double average = totalOps / ITERATIONS;
+        assertTrue(String.format(Locale.US, "%.0f frames/s, target %d", average, TARGET_FPS),
+                average > TARGET_FPS);
+    }
+
+    /**
+     * 噪声背景上有一个移动的亮块，每帧都要走完整的差分和背景更新
+     */
+    private static byte[][] buildFrames() {
+        Random random = new Random(42);
+        byte[][] frames = new byte[FRAMES][W * H];
+        for (int f = 0; f < FRAMES; f++) {
+            for (int y = 0; y < H; y++) {
+                for (int x = 0; x < W; x++) {
+                    int value = 60 + (x * 7 + y * 13) % 80 + random.nextInt(7) - 3;
+                    if (x >= f * 8 && x < f * 8 + 20 && y >= 30 && y < 50) {
+                        value = 240;
+                    }
+                    frames[f][y * W + x] = (byte) value;
+                }
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * @return 本轮吞吐（帧/秒）
+     */
+    private static double runIteration(MotionDetector detector, byte[][] frames) {
+        detector.reset();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(ITERATION_MS);
+        long processed = 0;
+        int motionFrames = 0;
+        while (System.nanoTime() < deadline) {
+            if (detector.process(frames[(int) (processed % FRAMES)])) {
+                motionFrames++;
+            }
+            processed++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertTrue("motion=" + motionFrames + "/" + processed, motionFrames > 0);
+        return processed / seconds;
+    }
+}
@@ -0,0 +1,183 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 低分辨率块差分移动侦测测试（合成 160x90 亮度帧）
+ */
+public class MotionDetectorTest {
+
+    private static final int W = 160;
+    private static final int H = 90;
+
+    /**
+     * 有纹理的静止场景（亮度 60~139，加减噪声不会溢出）
+     */
+    private static byte[] scene(Random noise, int amplitude) {
+        byte[] frame = new byte[W * H];
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                int value = 60 + (x * 7 + y * 13) % 80;
+                if (amplitude > 0) {
+                    value += noise.nextInt(amplitude * 2 + 1) - amplitude;
+                }
+                frame[y * W + x] = (byte) value;
+            }
+        }
+        return frame;
+    }
+
+    private static void fillRect(byte[] frame, int left, int top, int size, int value) {
+        for (int y = top; y < top + size; y++) {
+            for (int x = left; x < left + size; x++) {
+                frame[y * W + x] = (byte) value;
+            }
+        }
+    }
+
+    private static void warmUp(MotionDetector detector, Random noise) {
+        for (int i = 0; i < 20; i++) {
+            assertFalse(detector.process(scene(noise, 3)));
+        }
+    }
+
+    @Test
+    public void sensorNoiseIsNotMotion() {
+        MotionDetector detector = new MotionDetector(W, H);
+        Random noise = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            assertFalse("frame " + i, detector.process(scene(noise, 6)));
+        }
+        assertEquals(0, detector.getSceneChanges());
+    }
+
+    @Test
+    public void movingObjectIsDetectedAfterConfirmation() {
+        MotionDetector detector = new MotionDetector(W, H);
+        Random noise = new Random(2);
+        warmUp(detector, noise);
+
+        // 一个 20x20 的亮块从左向右移动，第一帧只是候选，连续第二帧才报告
+        byte[] frame = scene(noise, 3);
+        fillRect(frame, 10, 30, 20, 250);
+        assertFalse(detector.process(frame));
+        assertTrue(detector.getActiveBlocks() >= 4);
+
+        frame = scene(noise, 3);
+        fillRect(frame, 16, 30, 20, 250);
+        assertTrue(detector.process(frame));
+        assertTrue(detector.isBlockActive(2, 4));
+        assertFalse(detector.isBlockActive(15, 0));
+
+        // 移开后恢复静止
+        boolean motion = true;
+        for (int i = 0; i < 5; i++) {
+            motion = detector.process(scene(noise, 3));
+        }
+        assertFalse(motion);
+    }
+
+    @Test
+    public void globalBrightnessChangeIsCompensated() {
+        MotionDetector detector = new MotionDetector(W, H);
+        Random noise = new Random(3);
+        warmUp(detector, noise);
+
+        // 自动曝光/车灯照亮：整帧亮度 +40
+        for (int i = 0; i < 10; i++) {
+            byte[] frame = scene(noise, 3);
+            for (int p = 0; p < frame.length; p++) {
+                frame[p] = (byte) ((frame[p] & 0xFF) + 40);
+            }
+            assertFalse(detector.process(frame));
+        }
+        assertEquals(0, detector.getSceneChanges());
+    }
+
+    @Test
+    public void sceneChangeRebuildsBackground() {
+        MotionDetector detector = new MotionDetector(W, H);
+        Random noise = new Random(4);
+        warmUp(detector, noise);
+
+        // 红外切换：整帧内容都变了（与原纹理无关的随机画面）
+        byte[] other = new byte[W * H];
+        new Random(99).nextBytes(other);
+        assertFalse(detector.process(other));
+        assertEquals(1, detector.getSceneChanges());
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(detector.process(other.clone()));
+        }
+    }
+
+    @Test
+    public void parkedObjectIsAbsorbedIntoBackground() {
+        MotionDetector detector = new MotionDetector(W, H);
+        Random noise = new Random(5);
+        warmUp(detector, noise);
+
+        boolean motion = false;
+        int lastMotionFrame = -1;
+        for (int i = 0; i < 1500; i++) {
+            byte[] frame = scene(noise, 3);
+            fillRect(frame, 40, 20, 30, 230);
+            motion = detector.process(frame);
+            if (motion) {
+                lastMotionFrame = i;
+            }
+        }
+        assertTrue("object should be reported while it is new", lastMotionFrame >= 1);
+        assertFalse("object staying still should become background", motion);
+    }
+
+    @Test
+    public void honorsOffsetAndRowStride() {
+        int stride = W + 32;
+        MotionDetector detector = new MotionDetector(W, H);
+        Random noise = new Random(6);
+        byte[] padded = new byte[8 + stride * H];
+        for (int i = 0; i < 20; i++) {
+            copyWithStride(scene(noise, 3), padded, 8, stride);
+            assertFalse(detector.process(padded, 8, stride));
+        }
+
+        byte[] frame = scene(noise, 3);
+        fillRect(frame, 100, 50, 20, 0);
+        copyWithStride(frame, padded, 8, stride);
+        // 行尾填充区写满噪声，不应被计入
+        for (int y = 0; y < H; y++) {
+            for (int x = W; x < stride; x++) {
+                padded[8 + y * stride + x] = (byte) 255;
+            }
+        }
+        detector.process(padded, 8, stride);
+        assertTrue(detector.process(padded, 8, stride));
+        assertTrue(detector.isBlockActive(10, 5));
+    }
+
+    @Test
+    public void resetStartsLearningAgain() {
+        MotionDetector detector = new MotionDetector(W, H);
+        Random noise = new Random(7);
+        warmUp(detector, noise);
+        detector.reset();
+        assertEquals(0, detector.getFrameCount());
+
+        // 重置后的第一帧作为新背景，暖机期间不报告
+        byte[] frame = scene(noise, 3);
+        fillRect(frame, 10, 10, 40, 250);
+        assertFalse(detector.process(frame));
+        assertFalse(detector.process(scene(noise, 3)));
+    }
+
+    private static void copyWithStride(byte[] src, byte[] dst, int offset, int stride) {
+        for (int y = 0; y < H; y++) {
+            System.arraycopy(src, y * W, dst, offset + y * stride, W);
+        }
+    }
+}
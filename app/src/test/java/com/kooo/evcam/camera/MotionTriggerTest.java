@@ -0,0 +1,58 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 停车移动侦测录制开关测试
+ */
+public class MotionTriggerTest {
+
+    @Test
+    public void startsOnMotionAndStopsAfterHold() {
+        MotionTrigger trigger = new MotionTrigger(10_000, 20_000, 0, 0);
+        assertEquals(MotionTrigger.ACTION_NONE, trigger.onFrame(false, 0));
+        assertEquals(MotionTrigger.ACTION_START, trigger.onFrame(true, 1_000));
+        assertTrue(trigger.isActive());
+
+        // 持续移动延长录制
+        assertEquals(MotionTrigger.ACTION_NONE, trigger.onFrame(true, 15_000));
+        assertEquals(MotionTrigger.ACTION_NONE, trigger.onFrame(false, 24_000));
+        // 最后一次移动后满 10 秒，且已录满 20 秒
+        assertEquals(MotionTrigger.ACTION_STOP, trigger.onFrame(false, 25_000));
+        assertFalse(trigger.isActive());
+        assertEquals(1, trigger.getEvents());
+    }
+
+    @Test
+    public void shortEventIsRecordedForMinimumDuration() {
+        MotionTrigger trigger = new MotionTrigger(5_000, 20_000, 0, 0);
+        assertEquals(MotionTrigger.ACTION_START, trigger.onFrame(true, 0));
+        // 安静时间已够，但最短录制时长未到
+        assertEquals(MotionTrigger.ACTION_NONE, trigger.onFrame(false, 10_000));
+        assertEquals(MotionTrigger.ACTION_STOP, trigger.onFrame(false, 20_000));
+    }
+
+    @Test
+    public void continuousMotionIsCappedThenCoolsDown() {
+        MotionTrigger trigger = new MotionTrigger(5_000, 0, 60_000, 30_000);
+        assertEquals(MotionTrigger.ACTION_START, trigger.onFrame(true, 0));
+        assertEquals(MotionTrigger.ACTION_NONE, trigger.onFrame(true, 59_000));
+        assertEquals(MotionTrigger.ACTION_STOP, trigger.onFrame(true, 60_000));
+
+        // 冷却期间的移动不触发
+        assertEquals(MotionTrigger.ACTION_NONE, trigger.onFrame(true, 80_000));
+        assertEquals(MotionTrigger.ACTION_START, trigger.onFrame(true, 90_000));
+        assertEquals(2, trigger.getEvents());
+    }
+
+    @Test
+    public void resetClearsCooldown() {
+        MotionTrigger trigger = new MotionTrigger(5_000, 0, 10_000, 60_000);
+        trigger.onFrame(true, 0);
+        assertEquals(MotionTrigger.ACTION_STOP, trigger.onFrame(true, 10_000));
+        trigger.reset();
+        assertEquals(MotionTrigger.ACTION_START, trigger.onFrame(true, 11_000));
+    }
+}
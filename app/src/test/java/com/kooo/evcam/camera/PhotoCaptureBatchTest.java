@@ -0,0 +1,90 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 多路抓拍批次测试
+ */
+public class PhotoCaptureBatchTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void completesOnceWhenAllCamerasReport() {
+        AtomicInteger completions = new AtomicInteger();
+        PhotoCaptureBatch batch = new PhotoCaptureBatch("20250314_095307",
+                Arrays.asList("front", "back", "left", "right"), 0, b -> completions.incrementAndGet());
+
+        assertFalse(batch.onCameraDone("front", true, 120 * MS));
+        assertFalse(batch.onCameraDone("back", true, 150 * MS));
+        assertFalse(batch.onCameraDone("left", false, 90 * MS));
+        assertFalse(batch.isComplete());
+        assertEquals(-1, batch.getElapsedNs());
+
+        assertTrue(batch.onCameraDone("right", true, 182 * MS));
+        assertTrue(batch.isComplete());
+        assertEquals(182 * MS, batch.getElapsedNs());
+        assertEquals(150 * MS, batch.getCameraElapsedNs("back"));
+        assertEquals(3, batch.getSuccessCount());
+        assertEquals(1, completions.get());
+
+        // 完成后的重复上报不再回调
+        assertFalse(batch.onCameraDone("right", true, 200 * MS));
+        assertEquals(1, completions.get());
+    }
+
+    @Test
+    public void ignoresDuplicateAndUnknownCameras() {
+        PhotoCaptureBatch batch = new PhotoCaptureBatch("t", Arrays.asList("front", "back"), 0, null);
+        assertFalse(batch.onCameraDone("front", true, 10 * MS));
+        assertFalse(batch.onCameraDone("front", false, 20 * MS));
+        assertFalse(batch.onCameraDone("left", true, 30 * MS));
+        assertFalse(batch.isComplete());
+        assertEquals(10 * MS, batch.getCameraElapsedNs("front"));
+        assertEquals(-1, batch.getCameraElapsedNs("left"));
+    }
+
+    @Test
+    public void formatSummary_listsEachCamera() {
+        PhotoCaptureBatch batch = new PhotoCaptureBatch("20250314_095307", Arrays.asList("front", "back", "left"), 0, null);
+        batch.onCameraDone("front", true, 120 * MS);
+        batch.onCameraDone("back", false, 130 * MS);
+        assertEquals("Snapshot 20250314_095307: 1/3 ok [front=120ms, back=failed, left=pending]", batch.formatSummary());
+        batch.onCameraDone("left", true, 140 * MS);
+        assertEquals("Snapshot 20250314_095307: 2/3 ok in 140ms [front=120ms, back=failed, left=140ms]", batch.formatSummary());
+    }
+
+    @Test
+    public void concurrentReports_completeExactlyOnce() throws Exception {
+        String[] keys = {"front", "back", "left", "right"};
+        AtomicInteger completions = new AtomicInteger();
+        for (int round = 0; round < 200; round++) {
+            PhotoCaptureBatch batch = new PhotoCaptureBatch("t", Arrays.asList(keys), 0, b -> completions.incrementAndGet());
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                String key = keys[i];
+                threads[i] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                    batch.onCameraDone(key, true, System.nanoTime());
+                });
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(batch.isComplete());
+        }
+        assertEquals(200, completions.get());
+    }
+}
@@ -0,0 +1,167 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 事件前缓冲测试（合成访问单元：每帧首字节为帧序号，flags=1 表示关键帧）
+ */
+public class PreEventBufferTest {
+
+    private static final int KEY_FLAG = 1;
+
+    private static ByteBuffer frame(int size, int seq) {
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            buf.put((byte) (seq + i));
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static boolean append(PreEventBuffer buffer, int size, int seq, long ptsMs, boolean keyFrame) {
+        return buffer.append(frame(size, seq), ptsMs * 1000, keyFrame ? KEY_FLAG : 0, keyFrame);
+    }
+
+    /**
+     * 写出的帧（拷贝数据，Sink 回调返回后视图失效）
+     */
+    private static class Written {
+        final byte[] data;
+        final long ptsUs;
+        final int flags;
+
+        Written(ByteBuffer data, long ptsUs, int flags) {
+            this.data = new byte[data.remaining()];
+            data.get(this.data);
+            this.ptsUs = ptsUs;
+            this.flags = flags;
+        }
+    }
+
+    private static List<Written> flush(PreEventBuffer buffer) {
+        List<Written> out = new ArrayList<>();
+        int count = buffer.flush((data, ptsUs, flags) -> out.add(new Written(data, ptsUs, flags)));
+        assertEquals(out.size(), count);
+        assertTrue(buffer.isEmpty());
+        return out;
+    }
+
+    @Test
+    public void flush_startsOnKeyFrameAndPreservesData() {
+        PreEventBuffer buffer = new PreEventBuffer(4096, 10_000);
+        // 关键帧之前的帧无法解码，不缓存
+        assertFalse(append(buffer, 50, 0, 0, false));
+        assertFalse(append(buffer, 50, 1, 33, false));
+        assertTrue(append(buffer, 200, 2, 66, true));
+        assertTrue(append(buffer, 50, 3, 100, false));
+        assertTrue(append(buffer, 50, 4, 133, false));
+        assertEquals(2, buffer.getDroppedFrames());
+
+        List<Written> out = flush(buffer);
+        assertEquals(3, out.size());
+        assertEquals(KEY_FLAG, out.get(0).flags);
+        assertEquals(66_000, out.get(0).ptsUs);
+        for (int i = 0; i < out.size(); i++) {
+            Written written = out.get(i);
+            assertEquals(i == 0 ? 200 : 50, written.data.length);
+            for (int b = 0; b < written.data.length; b++) {
+                assertEquals((byte) (i + 2 + b), written.data[b]);
+            }
+        }
+    }
+
+    @Test
+    public void append_evictsGopsOutsideWindow() {
+        PreEventBuffer buffer = new PreEventBuffer(1 << 20, 1000);
+        // 每 100ms 一帧，每 500ms 一个关键帧，共 3 秒
+        for (int i = 0; i < 30; i++) {
+            assertTrue(append(buffer, 100, i, i * 100L, i % 5 == 0));
+        }
+
+        // 最后一个关键帧在 2500ms，窗口 1s：保留最近一个不晚于 1500ms 的关键帧之后的所有帧
+        assertEquals(3, buffer.getEvictedGops());
+        assertEquals(3, buffer.getGopCount());
+        assertEquals(1_500_000, buffer.getFirstPtsUs());
+        assertEquals(1_400_000, buffer.getDurationUs());
+        assertEquals(15, buffer.getFrameCount());
+
+        List<Written> out = flush(buffer);
+        assertEquals(KEY_FLAG, out.get(0).flags);
+        assertEquals(1_500_000, out.get(0).ptsUs);
+        assertEquals(2_900_000, out.get(out.size() - 1).ptsUs);
+    }
+
+    @Test
+    public void append_evictsWholeGopsWhenBudgetExceeded() {
+        // 窗口足够长，淘汰只由字节预算触发：每个 GOP 400 字节，容量放得下两个
+        PreEventBuffer buffer = new PreEventBuffer(1000, 60_000);
+        for (int i = 0; i < 40; i++) {
+            assertTrue(append(buffer, 100, i, i * 100L, i % 4 == 0));
+            assertTrue(buffer.getBufferedBytes() <= buffer.getCapacity());
+        }
+        assertTrue(buffer.getEvictedGops() > 0);
+        assertEquals(0, buffer.getOverflowResets());
+
+        List<Written> out = flush(buffer);
+        assertEquals(KEY_FLAG, out.get(0).flags);
+        // 保留的是最新的帧，且中间没有缺帧
+        assertEquals(3_900_000, out.get(out.size() - 1).ptsUs);
+        for (int i = 1; i < out.size(); i++) {
+            assertEquals(out.get(i - 1).ptsUs + 100_000, out.get(i).ptsUs);
+        }
+    }
+
+    @Test
+    public void append_gopLargerThanCapacityResetsInsteadOfFlushingPartialGop() {
+        PreEventBuffer buffer = new PreEventBuffer(1000, 60_000);
+        assertTrue(append(buffer, 400, 0, 0, true));
+        assertTrue(append(buffer, 400, 1, 100, false));
+        // 当前 GOP 已放不下：不能淘汰掉它的关键帧后继续缓存后面的普通帧
+        assertFalse(append(buffer, 400, 2, 200, false));
+        assertEquals(1, buffer.getOverflowResets());
+        assertTrue(buffer.isEmpty());
+        assertFalse(append(buffer, 100, 3, 300, false));
+
+        // 下一个关键帧重新开始
+        assertTrue(append(buffer, 400, 4, 400, true));
+        assertTrue(append(buffer, 100, 5, 500, false));
+        List<Written> out = flush(buffer);
+        assertEquals(2, out.size());
+        assertEquals(KEY_FLAG, out.get(0).flags);
+        assertEquals(400_000, out.get(0).ptsUs);
+
+        // 单帧超过容量
+        assertFalse(append(buffer, 1001, 6, 600, true));
+        assertEquals(2, buffer.getOverflowResets());
+        assertTrue(flush(buffer).isEmpty());
+    }
+
+    @Test
+    public void allocate_splitsBudgetAcrossCameras() {
+        long budget = 64L * 1024 * 1024;
+        int highBitRate = 8_000_000;
+        int lowBitRate = 2_000_000;
+
+        // 高码率时需求超过平均份额，按摄像头数平分
+        assertTrue(PreEventBuffer.estimateCapacity(highBitRate, 10_000) > budget / 4);
+        assertEquals(budget / 4, PreEventBuffer.allocate(budget, 4, highBitRate, 10_000));
+        assertEquals(budget / 2, PreEventBuffer.allocate(budget, 2, highBitRate, 30_000));
+
+        // 低码率时只分配按码率估算的需求
+        int needed = PreEventBuffer.estimateCapacity(lowBitRate, 10_000);
+        assertTrue(needed < budget / 4);
+        assertEquals(needed, PreEventBuffer.allocate(budget, 4, lowBitRate, 10_000));
+
+        // 各路之和不超过总预算
+        assertTrue(4L * PreEventBuffer.allocate(budget, 4, highBitRate, 30_000) <= budget);
+        // 摄像头数为 0 时按 1 路处理
+        assertEquals(PreEventBuffer.allocate(budget, 1, highBitRate, 10_000),
+                PreEventBuffer.allocate(budget, 0, highBitRate, 10_000));
+    }
+}
@@ -0,0 +1,84 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分享转码参数选择测试
+ */
+public class ShareProfileTest {
+    private static final long ONE_MINUTE_US = 60_000_000L;
+
+    @Test
+    public void offWithoutSizeCapDisablesTranscode() {
+        assertNull(ShareProfile.fromConfig(ShareProfile.PRESET_OFF, 0));
+        assertNull(ShareProfile.fromConfig(null, -5));
+        assertNotNull(ShareProfile.fromConfig(ShareProfile.PRESET_OFF, 20));
+        assertNotNull(ShareProfile.fromConfig(ShareProfile.PRESET_720P, 0));
+    }
+
+    @Test
+    public void presetScalesDownKeepingAspectAndAlignment() {
+        ShareProfile profile = ShareProfile.fromConfig(ShareProfile.PRESET_720P, 0);
+        int bitrate = profile.targetBitrate(ONE_MINUTE_US);
+        assertEquals(2_500_000, bitrate);
+        assertArrayEquals(new int[]{1280, 720}, profile.targetSize(1920, 1080, bitrate, 30));
+        // 16:10 源：短边 720，长边 1152
+        assertArrayEquals(new int[]{1152, 720}, profile.targetSize(1280, 800, bitrate, 30));
+        // 竖屏源同样按短边缩放
+        assertArrayEquals(new int[]{720, 1280}, profile.targetSize(1080, 1920, bitrate, 30));
+        // 不放大
+        assertArrayEquals(new int[]{640, 480}, profile.targetSize(640, 480, bitrate, 30));
+    }
+
+    @Test
+    public void sizeCapDerivesBitrateAndDropsResolution() {
+        ShareProfile profile = ShareProfile.fromConfig(ShareProfile.PRESET_OFF, 10);
+        // 10MB / 60 秒，留 10% 余量：约 1.26Mbps
+        int bitrate = profile.targetBitrate(ONE_MINUTE_US);
+        assertEquals(1_258_291, bitrate);
+        // 1.26Mbps @30fps 撑不起 1080p/720p，降到 540p
+        assertArrayEquals(new int[]{960, 540}, profile.targetSize(1920, 1080, bitrate, 30));
+        // 档位码率更低时取档位码率
+        assertEquals(1_200_000, ShareProfile.fromConfig(ShareProfile.PRESET_480P, 100).targetBitrate(ONE_MINUTE_US));
+    }
+
+    @Test
+    public void bitrateNeverDropsBelowFloor() {
+        ShareProfile profile = ShareProfile.fromConfig(ShareProfile.PRESET_480P, 1);
+        int bitrate = profile.targetBitrate(30 * ONE_MINUTE_US);
+        assertEquals(ShareProfile.MIN_BITRATE, bitrate);
+        assertArrayEquals(new int[]{426, 240}, profile.targetSize(1920, 1080, bitrate, 30));
+    }
+
+    @Test
+    public void smallSourceIsSharedAsIs() {
+        ShareProfile profile = ShareProfile.fromConfig(ShareProfile.PRESET_720P, 0);
+        // 720p、1.5Mbps 的源已经满足档位
+        long bytes = 1_500_000L / 8 * 60;
+        assertFalse(profile.needsTranscode(bytes, ONE_MINUTE_US, 1280, 720));
+        // 同尺寸但 8Mbps，需要压码率
+        assertTrue(profile.needsTranscode(8_000_000L / 8 * 60, ONE_MINUTE_US, 1280, 720));
+        // 需要缩小分辨率
+        assertTrue(profile.needsTranscode(bytes, ONE_MINUTE_US, 1920, 1080));
+        // 时长未知时不转码
+        assertFalse(profile.needsTranscode(bytes, 0, 1920, 1080));
+    }
+
+    @Test
+    public void fileOverSizeCapIsTranscoded() {
+        ShareProfile profile = ShareProfile.fromConfig(ShareProfile.PRESET_OFF, 20);
+        long bytes = 25L * 1024 * 1024;
+        assertTrue(profile.needsTranscode(bytes, 10 * ONE_MINUTE_US, 640, 480));
+        assertFalse(profile.needsTranscode(5L * 1024 * 1024, 10 * ONE_MINUTE_US, 640, 480));
+    }
+
+    @Test
+    public void estimatesRemainingTimeLinearly() {
+        assertEquals(-1, ShareProfile.estimateRemainingMs(0, 100, 1_000));
+        assertEquals(3_000, ShareProfile.estimateRemainingMs(25, 100, 1_000));
+        assertEquals(1_000, ShareProfile.estimateRemainingMs(50, 100, 1_000));
+        assertEquals(0, ShareProfile.estimateRemainingMs(100, 100, 1_000));
+    }
+}
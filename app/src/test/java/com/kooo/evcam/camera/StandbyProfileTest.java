@@ -0,0 +1,45 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 低功耗待机输出参数选择测试
+ */
+public class StandbyProfileTest {
+
+    @Test
+    public void choosesSmallestSizeWithPreviewAspect() {
+        int[] widths = {1920, 1280, 640, 320, 176};
+        int[] heights = {1080, 800, 400, 240, 144};
+        // 预览 1280x800（16:10）：640x400 同比例，320x240 和 176x144 比例不同
+        assertEquals(2, StandbyProfile.chooseSize(widths, heights, 1280, 800));
+        // 预览 1920x1080（16:9）：只有自身同比例
+        assertEquals(0, StandbyProfile.chooseSize(widths, heights, 1920, 1080));
+    }
+
+    @Test
+    public void fallsBackToSmallestAreaWithoutMatchingAspect() {
+        int[] widths = {1280, 640, 352};
+        int[] heights = {720, 480, 288};
+        assertEquals(2, StandbyProfile.chooseSize(widths, heights, 1000, 1000));
+        assertEquals(2, StandbyProfile.chooseSize(widths, heights, 0, 0));
+        assertEquals(-1, StandbyProfile.chooseSize(new int[0], new int[0], 1280, 720));
+    }
+
+    @Test
+    public void choosesLowestFpsRange() {
+        int[] lowers = {15, 30, 7, 10, 5};
+        int[] uppers = {30, 30, 15, 15, 30};
+        // 上限最低的是 15，其中下限更低的 [7, 15]
+        assertEquals(2, StandbyProfile.chooseFpsRange(lowers, uppers));
+        assertEquals(0, StandbyProfile.chooseFpsRange(new int[]{30}, new int[]{30}));
+        assertEquals(-1, StandbyProfile.chooseFpsRange(new int[0], new int[0]));
+    }
+
+    @Test
+    public void ignoresInvalidFpsRanges() {
+        assertEquals(1, StandbyProfile.chooseFpsRange(new int[]{20, 15}, new int[]{10, 30}));
+    }
+}
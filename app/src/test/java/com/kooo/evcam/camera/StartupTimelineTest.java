@@ -0,0 +1,83 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 启动时间线测试
+ */
+public class StartupTimelineTest {
+
+    @Test
+    public void recordsFirstArrivalOfEachPhase() {
+        StartupTimeline timeline = new StartupTimeline();
+        timeline.begin("打开摄像头", 1_000);
+        timeline.mark("front", StartupTimeline.OPEN_REQUESTED, 1_000);
+        timeline.mark("front", StartupTimeline.OPENED, 1_180);
+        timeline.mark("front", StartupTimeline.CONFIGURED, 1_420);
+        // 会话重建后的第二次配置不覆盖
+        timeline.mark("front", StartupTimeline.CONFIGURED, 2_000);
+
+        assertEquals(0, timeline.getOffsetMs("front", StartupTimeline.OPEN_REQUESTED));
+        assertEquals(180, timeline.getOffsetMs("front", StartupTimeline.OPENED));
+        assertEquals(420, timeline.getOffsetMs("front", StartupTimeline.CONFIGURED));
+        assertEquals(-1, timeline.getOffsetMs("front", StartupTimeline.FIRST_FRAME));
+        assertEquals(-1, timeline.getOffsetMs("back", StartupTimeline.OPENED));
+    }
+
+    @Test
+    public void completesWhenEveryCameraReachesItsTerminalPhase() {
+        StartupTimeline timeline = new StartupTimeline();
+        timeline.begin("打开摄像头", 0);
+        timeline.mark("front", StartupTimeline.OPEN_REQUESTED, 0);
+        timeline.mark("back", StartupTimeline.OPEN_REQUESTED, 0);
+        timeline.mark("back", StartupTimeline.RECORD_REQUESTED, 100);
+
+        assertFalse(timeline.mark("front", StartupTimeline.FIRST_FRAME, 500));
+        // 请求了录制的摄像头要等到首次写入
+        assertFalse(timeline.mark("back", StartupTimeline.FIRST_FRAME, 520));
+        assertTrue(timeline.mark("back", StartupTimeline.FIRST_WRITE, 1_300));
+        // 只报告一次
+        assertFalse(timeline.mark("front", StartupTimeline.FIRST_WRITE, 1_400));
+    }
+
+    @Test
+    public void recordingRequestAfterPreviewReportsAgain() {
+        StartupTimeline timeline = new StartupTimeline();
+        timeline.begin("打开摄像头", 0);
+        timeline.mark("front", StartupTimeline.OPEN_REQUESTED, 0);
+        assertTrue(timeline.mark("front", StartupTimeline.FIRST_FRAME, 400));
+
+        // 远程唤醒：预览起来后紧接着开始录制
+        assertFalse(timeline.mark("front", StartupTimeline.RECORD_REQUESTED, 600));
+        assertTrue(timeline.mark("front", StartupTimeline.FIRST_WRITE, 1_500));
+        assertEquals(400, timeline.getOffsetMs("front", StartupTimeline.FIRST_FRAME));
+    }
+
+    @Test
+    public void ignoresMarksOutsideTraceWindow() {
+        StartupTimeline timeline = new StartupTimeline();
+        assertFalse(timeline.isCollecting(0));
+        assertFalse(timeline.mark("front", StartupTimeline.OPENED, 0));
+
+        timeline.begin("开始录制", 10_000);
+        assertTrue(timeline.isCollecting(10_000 + StartupTimeline.MAX_TRACE_MS));
+        assertFalse(timeline.mark("front", StartupTimeline.OPENED, 10_001 + StartupTimeline.MAX_TRACE_MS));
+        assertEquals(-1, timeline.getOffsetMs("front", StartupTimeline.OPENED));
+    }
+
+    @Test
+    public void formatsOneLinePerCamera() {
+        StartupTimeline timeline = new StartupTimeline();
+        assertEquals("无", timeline.format());
+
+        timeline.begin("打开摄像头", 0);
+        timeline.mark("front", StartupTimeline.OPEN_REQUESTED, 0);
+        timeline.mark("front", StartupTimeline.OPENED, 180);
+        timeline.mark("front", StartupTimeline.FIRST_WRITE, 1_234);
+        timeline.mark("back", StartupTimeline.OPEN_REQUESTED, 50);
+        assertEquals("打开摄像头\nfront: 请求 0ms → 打开 180ms → 写入 1.2s\nback: 请求 50ms",
+                timeline.format());
+    }
+}
@@ -0,0 +1,94 @@
+package com.kooo.evcam.camera;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * 时间水印字形索引测试（与 SimpleDateFormat 的输出逐字比较）
+ */
+public class TimestampGlyphsTest {
+
+    private static String render(int[] glyphs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < TimestampGlyphs.LENGTH; i++) {
+            sb.append(TimestampGlyphs.charOf(glyphs[i]));
+        }
+        return sb.toString();
+    }
+
+    private static String format(long epochMillis, TimeZone zone) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        format.setTimeZone(zone);
+        return format.format(new Date(epochMillis));
+    }
+
+    @Test
+    public void fill_matchesSimpleDateFormatAcrossRandomInstants() {
+        TimeZone[] zones = {
+                TimeZone.getTimeZone("UTC"),
+                TimeZone.getTimeZone("Asia/Shanghai"),
+                TimeZone.getTimeZone("America/New_York"),  // 夏令时
+        };
+        Random random = new Random(42);
+        int[] glyphs = new int[TimestampGlyphs.LENGTH];
+        long from = 946_684_800_000L;   // 2000-01-01
+        long range = 4_102_444_800_000L - from;  // 到 2100-01-01
+        for (int i = 0; i < 5000; i++) {
+            long millis = from + (long) (random.nextDouble() * range);
+            TimeZone zone = zones[i % zones.length];
+            TimestampGlyphs.fill(TimestampGlyphs.toLocalSeconds(millis, zone.getOffset(millis)), glyphs);
+            assertEquals(format(millis, zone), render(glyphs));
+        }
+    }
+
+    @Test
+    public void fill_handlesLeapDaysAndYearBoundaries() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        long[] instants = {
+                951_782_399_000L,   // 2000-02-28 23:59:59
+                951_782_400_000L,   // 2000-02-29 00:00:00
+                1_709_251_199_000L, // 2024-02-29 23:59:59
+                1_735_689_599_000L, // 2024-12-31 23:59:59
+                1_735_689_600_000L, // 2025-01-01 00:00:00
+                0L,                 // 1970-01-01 00:00:00
+        };
+        int[] glyphs = new int[TimestampGlyphs.LENGTH];
+        for (long millis : instants) {
+            TimestampGlyphs.fill(TimestampGlyphs.toLocalSeconds(millis, 0), glyphs);
+            assertEquals(format(millis, utc), render(glyphs));
+        }
+    }
+
+    @Test
+    public void toLocalSeconds_floorsNegativeMillis() {
+        assertEquals(-1, TimestampGlyphs.toLocalSeconds(-1, 0));
+        assertEquals(0, TimestampGlyphs.toLocalSeconds(999, 0));
+        assertEquals(3600, TimestampGlyphs.toLocalSeconds(0, 3_600_000));
+    }
+
+    @Test
+    public void fillFromFileTimestamp_convertsFileNameFormat() {
+        int[] glyphs = new int[TimestampGlyphs.LENGTH];
+        assertTrue(TimestampGlyphs.fillFromFileTimestamp("20250314_095307", glyphs));
+        assertEquals("2025-03-14 09:53:07", render(glyphs));
+        // 带摄像头后缀的文件名前缀也可以
+        assertTrue(TimestampGlyphs.fillFromFileTimestamp("20250314_095307_front", glyphs));
+        assertEquals("2025-03-14 09:53:07", render(glyphs));
+    }
+
+    @Test
+    public void fillFromFileTimestamp_rejectsMalformedInput() {
+        int[] glyphs = new int[TimestampGlyphs.LENGTH];
+        assertFalse(TimestampGlyphs.fillFromFileTimestamp(null, glyphs));
+        assertFalse(TimestampGlyphs.fillFromFileTimestamp("2025031", glyphs));
+        assertFalse(TimestampGlyphs.fillFromFileTimestamp("20250314-095307", glyphs));
+        assertFalse(TimestampGlyphs.fillFromFileTimestamp("2025O314_095307", glyphs));
+    }
+}
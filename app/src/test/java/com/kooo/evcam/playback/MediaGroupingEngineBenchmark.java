@@ -0,0 +1,117 @@
+package com.kooo.evcam.playback;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * 回看分组引擎基准（JMH 风格：预热轮 + 测量轮）
+ *
+ * 5 万个文件（12500 组 × 4 路，约 90 天）：测量打开回看时的批量构建耗时，
+ * 以及录制中每完成一个分段时增量插入与对全部文件重新构建的开销。
+ * 上限只用于发现数量级的退化，取值宽松，耗时只出现在失败信息中。
+ * 默认轮数较少以免拖慢单元测试，可通过系统属性调整：
+ * -Dgrouping.bench.warmup=5 -Dgrouping.bench.iterations=10
+ */
+public class MediaGroupingEngineBenchmark {
+
+    private static final String[] POSITIONS = {"front", "back", "left", "right"};
+    private static final File DIR = new File("/storage/emulated/0/DCIM/EVCam_Video");
+
+    private static final int FILE_COUNT = 50000;
+    private static final int DAYS = 90;
+    private static final int INCREMENTAL_GROUPS = 1000;
+
+    private static final int WARMUP = Integer.getInteger("grouping.bench.warmup", 2);
+    private static final int ITERATIONS = Integer.getInteger("grouping.bench.iterations", 3);
+
+    /** 5 万文件批量构建的上限（回看界面打开时在后台线程执行） */
+    private static final long MAX_BUILD_MS = 2000;
+    /** 单个文件增量插入的上限 */
+    private static final long MAX_INCREMENTAL_US_PER_FILE = 1000;
+
+    @Test
+    public void build50kFilesAndIncrementalInsert() {
+        List<File> files = generateFiles();
+
+        for (int i = 0; i < WARMUP; i++) {
+            build(files);
+            measureIncremental(build(files));
+        }
+
+        long buildNanos = Long.MAX_VALUE;
+        long incrementalNanosPerFile = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            MediaGroupingEngine<VideoGroup> engine = build(files);
+            buildNanos = Math.min(buildNanos, System.nanoTime() - start);
+            assertEquals(FILE_COUNT / POSITIONS.length, engine.getGroupCount());
+
+            incrementalNanosPerFile = Math.min(incrementalNanosPerFile, measureIncremental(engine));
+        }
+
+        String summary = String.format(Locale.US,
+                "%d files: build %.1f ms, incremental add %.2f us/file (%.0fx cheaper than a rebuild)",
+                FILE_COUNT, buildNanos / 1e6, incrementalNanosPerFile / 1e3,
+                (double) buildNanos / Math.max(1, incrementalNanosPerFile));
+        assertTrue(summary, buildNanos < MAX_BUILD_MS * 1_000_000);
+        assertTrue(summary, incrementalNanosPerFile < MAX_INCREMENTAL_US_PER_FILE * 1000);
+        // 增量插入一个文件的代价必须低于重新构建（实际相差数个数量级，这里只防止退化为全量重建）
+        assertTrue(summary, incrementalNanosPerFile * 10 < buildNanos);
+    }
+
+    /**
+     * 回看界面的加载方式：倒序遍历按文件名排序的索引
+     */
+    private static MediaGroupingEngine<VideoGroup> build(List<File> files) {
+        MediaGroupingEngine<VideoGroup> engine = MediaGroupingEngine.forVideos();
+        for (int i = files.size() - 1; i >= 0; i--) {
+            engine.addFile(files.get(i), 1);
+        }
+        return engine;
+    }
+
+    /**
+     * 录制中每个分段完成时插入 4 个新文件（最新的一天）
+     * @return 平均每个文件的插入耗时（纳秒）
+     */
+    private static long measureIncremental(MediaGroupingEngine<VideoGroup> engine) {
+        long key = 20991231000000L;
+        long start = System.nanoTime();
+        for (int i = 0; i < INCREMENTAL_GROUPS; i++) {
+            String prefix = String.format(Locale.US, "%08d_%06d",
+                    RecordingFileName.getDateKey(key), key % 1000000 + (i / 60) * 100 + i % 60);
+            for (String position : POSITIONS) {
+                assertTrue(engine.addFile(new File(DIR, prefix + "_" + position + ".mp4"), 1));
+            }
+        }
+        return (System.nanoTime() - start) / (INCREMENTAL_GROUPS * POSITIONS.length);
+    }
+
+    /**
+     * 生成按文件名升序的录制文件（每组 4 路，每天若干组）
+     */
+    private static List<File> generateFiles() {
+        int groups = FILE_COUNT / POSITIONS.length;
+        int groupsPerDay = (groups + DAYS - 1) / DAYS;
+        List<File> files = new ArrayList<>(FILE_COUNT);
+        for (int g = 0; g < groups; g++) {
+            int day = g / groupsPerDay;
+            int dateKey = 20260101 + (day / 28) * 100 + day % 28;
+            int secondsOfDay = (g % groupsPerDay) * 60;
+            String prefix = String.format(Locale.US, "%08d_%02d%02d%02d", dateKey,
+                    secondsOfDay / 3600, secondsOfDay / 60 % 60, secondsOfDay % 60);
+            for (String position : POSITIONS) {
+                files.add(new File(DIR, prefix + "_" + position + ".mp4"));
+            }
+        }
+        // 与录制索引一致，按文件名升序
+        files.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return files;
+    }
+}
@@ -0,0 +1,360 @@
+package com.kooo.evcam.playback;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * 回看分组引擎测试，包含 5 万文件时与原分组方式、全量重建的结果一致性
+ */
+public class MediaGroupingEngineTest {
+
+    private static final String[] POSITIONS = {"front", "back", "left", "right"};
+    private static final File DIR = new File("/storage/emulated/0/DCIM/EVCam_Video");
+
+    @Test
+    public void parseTimestampKey_acceptsRecordingNames() {
+        assertEquals(20260131125430L, RecordingFileName.parseTimestampKey("20260131_125430_front.mp4"));
+        assertEquals(20260131125430L, RecordingFileName.parseTimestampKey("20260131_125430"));
+        assertEquals(20260131, RecordingFileName.getDateKey(20260131125430L));
+        assertEquals("2026-01-31", RecordingFileName.formatDateKey(20260131));
+        assertEquals("12:54", RecordingFileName.formatHourMinute(20260131125430L));
+    }
+
+    @Test
+    public void parseTimestampKey_rejectsOtherNames() {
+        assertEquals(RecordingFileName.INVALID_KEY, RecordingFileName.parseTimestampKey("IMG_1234.jpg"));
+        assertEquals(RecordingFileName.INVALID_KEY, RecordingFileName.parseTimestampKey("20261331_125430_front.mp4"));
+        assertEquals(RecordingFileName.INVALID_KEY, RecordingFileName.parseTimestampKey("20260131_126030_front.mp4"));
+        assertEquals(RecordingFileName.INVALID_KEY, RecordingFileName.parseTimestampKey("20260131_1254301_front.mp4"));
+        assertEquals(RecordingFileName.INVALID_KEY, RecordingFileName.parseTimestampKey("2026013_125430"));
+    }
+
+    @Test
+    public void toEpochMillis_matchesSimpleDateFormat() throws Exception {
+        String[] zones = {"Asia/Shanghai", "UTC", "America/New_York", "Europe/Berlin"};
+        String[] stamps = {"20260131_125430", "20260308_023000", "20261101_013000", "20000229_235959", "19991231_000000"};
+        for (String zone : zones) {
+            TimeZone timeZone = TimeZone.getTimeZone(zone);
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US);
+            sdf.setTimeZone(timeZone);
+            for (String stamp : stamps) {
+                long expected = sdf.parse(stamp).getTime();
+                long actual = RecordingFileName.toEpochMillis(RecordingFileName.parseTimestampKey(stamp), timeZone);
+                assertEquals(zone + " " + stamp, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void extractPosition_returnsConstantsForKnownPositions() {
+        assertSame(VideoGroup.POSITION_FRONT, RecordingFileName.extractPosition("20260131_125430_front.mp4"));
+        assertSame(VideoGroup.POSITION_RIGHT, RecordingFileName.extractPosition("20260131_125430_RIGHT.jpg"));
+        assertEquals("rear2", RecordingFileName.extractPosition("20260131_125430_Rear2.mp4"));
+        assertEquals(VideoGroup.extractPosition("20260131_125430_back.mp4"),
+                RecordingFileName.extractPosition("20260131_125430_back.mp4"));
+    }
+
+    @Test
+    public void addFile_groupsByTimestampAndSortsDescending() {
+        MediaGroupingEngine<VideoGroup> engine = MediaGroupingEngine.forVideos();
+        List<String> names = generateNames(2000, 7);
+        Collections.shuffle(names, new Random(1));
+        for (String name : names) {
+            assertTrue(engine.addFile(new File(DIR, name), 100));
+        }
+
+        assertEquals(500, engine.getGroupCount());
+        assertSectionsSorted(engine.getSections());
+        for (DateSection<VideoGroup> section : engine.getSections()) {
+            for (VideoGroup group : section.getItems()) {
+                assertEquals(4, group.getVideoCount());
+                assertEquals(400, group.getTotalSize());
+                assertEquals(section.getDateString(), group.getFormattedDate());
+            }
+        }
+    }
+
+    @Test
+    public void addFile_groupsQuadCompositeRecording() {
+        MediaGroupingEngine<VideoGroup> engine = MediaGroupingEngine.forVideos();
+        File quad = new File(DIR, "20260131_125430_quad.mp4");
+        assertTrue(engine.addFile(quad, 100));
+        assertSame(VideoGroup.POSITION_QUAD, RecordingFileName.extractPosition(quad.getName()));
+
+        VideoGroup group = engine.findGroup(20260131125430L);
+        assertNotNull(group);
+        assertTrue(group.isQuad());
+        assertEquals(quad, group.getQuadVideo());
+        assertEquals(quad, group.getThumbnailFile());
+    }
+
+    @Test
+    public void addFile_isIdempotentForSameFile() {
+        MediaGroupingEngine<VideoGroup> engine = MediaGroupingEngine.forVideos();
+        File file = new File(DIR, "20260131_125430_front.mp4");
+        engine.addFile(file, 100);
+        engine.addFile(file, 150);
+
+        VideoGroup group = engine.findGroup(20260131125430L);
+        assertNotNull(group);
+        assertEquals(1, group.getVideoCount());
+        assertEquals(150, group.getTotalSize());
+    }
+
+    @Test
+    public void addFile_skipsNonRecordingNames() {
+        MediaGroupingEngine<VideoGroup> engine = MediaGroupingEngine.forVideos();
+        assertFalse(engine.addFile(new File(DIR, "dashcam.mp4"), 1));
+        assertEquals(1, engine.getSkippedCount());
+        assertTrue(engine.isEmpty());
+    }
+
+    @Test
+    public void changeListener_keepsFlattenedListInSync() {
+        MediaGroupingEngine<VideoGroup> engine = MediaGroupingEngine.forVideos();
+        FlattenedModel model = new FlattenedModel(engine.getSections());
+        engine.setChangeListener(model);
+
+        List<String> names = generateNames(400, 5);
+        Collections.shuffle(names, new Random(2));
+        for (String name : names) {
+            engine.addFile(new File(DIR, name), 10);
+        }
+        assertEquals(FlattenedModel.flatten(engine.getSections()), model.items);
+
+        // 删除部分文件和整组，包括把某一天删空
+        Random random = new Random(3);
+        for (int i = 0; i < 150; i++) {
+            String name = names.get(random.nextInt(names.size()));
+            engine.removeFile(new File(DIR, name));
+        }
+        String firstDayGroup = engine.getSections().get(0).getItems().get(0).getTimestampPrefix();
+        List<VideoGroup> lastDay = new ArrayList<>(engine.getSections().get(engine.getSections().size() - 1).getItems());
+        for (VideoGroup group : lastDay) {
+            assertTrue(engine.removeGroup(group.getTimestampPrefix()));
+        }
+        assertTrue(engine.removeGroup(firstDayGroup));
+        assertFalse(engine.removeGroup(firstDayGroup));
+
+        assertEquals(FlattenedModel.flatten(engine.getSections()), model.items);
+        assertSectionsSorted(engine.getSections());
+        for (DateSection<VideoGroup> section : engine.getSections()) {
+            assertTrue(section.getItemCount() > 0);
+        }
+    }
+
+    /**
+     * 5 万个文件（12500 组 × 4 路，约 90 天）：
+     * 分组引擎的批量构建结果与原先的全量重建（HashMap + SimpleDateFormat + 排序）一致，
+     * 之后逐个分段增量插入的结果与对全部文件重新构建一致
+     */
+    @Test
+    public void largeLibrary_matchesLegacyAndRebuild() {
+        List<String> names = generateNames(50000, 90);
+        List<File> files = new ArrayList<>(names.size());
+        for (String name : names) {
+            files.add(new File(DIR, name));
+        }
+
+        MediaGroupingEngine<VideoGroup> engine = engineGroup(files);
+        assertSameGrouping(legacyGroup(files), engine.getSections());
+
+        // 增量：录制中每个分段完成时插入 4 个新文件（最新的一天）
+        FlattenedModel model = new FlattenedModel(engine.getSections());
+        model.items.addAll(FlattenedModel.flatten(engine.getSections()));
+        engine.setChangeListener(model);
+        long key = 20991231000000L;
+        for (int i = 0; i < 1000; i++) {
+            String prefix = String.format(Locale.US, "%08d_%06d",
+                    RecordingFileName.getDateKey(key), key % 1000000 + (i / 60) * 100 + i % 60);
+            for (String position : POSITIONS) {
+                File file = new File(DIR, prefix + "_" + position + ".mp4");
+                assertTrue(engine.addFile(file, 1));
+                files.add(file);
+            }
+        }
+        assertEquals(FlattenedModel.flatten(engine.getSections()), model.items);
+        assertSameGrouping(engineGroup(files).getSections(), engine.getSections());
+    }
+
+    // ===== 辅助方法 =====
+
+    /**
+     * 生成按文件名升序的录制文件名（每组 4 路，每天若干组）
+     */
+    private static List<String> generateNames(int fileCount, int days) {
+        int groups = fileCount / POSITIONS.length;
+        int groupsPerDay = (groups + days - 1) / days;
+        List<String> names = new ArrayList<>(fileCount);
+        for (int g = 0; g < groups; g++) {
+            int day = g / groupsPerDay;
+            int dateKey = 20260101 + (day / 28) * 100 + day % 28;
+            int secondsOfDay = (g % groupsPerDay) * 60;
+            String prefix = String.format(Locale.US, "%08d_%02d%02d%02d", dateKey,
+                    secondsOfDay / 3600, secondsOfDay / 60 % 60, secondsOfDay % 60);
+            for (String position : POSITIONS) {
+                names.add(prefix + "_" + position + ".mp4");
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * 原 PlaybackFragmentNew.updateVideoList 的分组方式
+     */
+    private static List<DateSection<VideoGroup>> legacyGroup(List<File> files) {
+        Map<String, VideoGroup> groupMap = new HashMap<>();
+        for (File file : files) {
+            String timestamp = VideoGroup.extractTimestampPrefix(file.getName());
+            VideoGroup group = groupMap.get(timestamp);
+            if (group == null) {
+                group = new VideoGroup(timestamp) {
+                    // 原实现每组都用新的 SimpleDateFormat 解析
+                    final java.util.Date legacyTime = legacyParse(timestamp);
+
+                    @Override
+                    public java.util.Date getRecordTime() {
+                        return legacyTime;
+                    }
+                };
+                groupMap.put(timestamp, group);
+            }
+            group.addFile(file, 1);
+        }
+
+        List<VideoGroup> allGroups = new ArrayList<>(groupMap.values());
+        Collections.sort(allGroups, (g1, g2) -> g2.getRecordTime().compareTo(g1.getRecordTime()));
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        Map<String, DateSection<VideoGroup>> dateSectionMap = new LinkedHashMap<>();
+        for (VideoGroup group : allGroups) {
+            String dateString = dateFormat.format(group.getRecordTime());
+            DateSection<VideoGroup> section = dateSectionMap.get(dateString);
+            if (section == null) {
+                section = new DateSection<>(dateString, group.getRecordTime());
+                dateSectionMap.put(dateString, section);
+            }
+            section.addItem(group);
+        }
+        return new ArrayList<>(dateSectionMap.values());
+    }
+
+    private static java.util.Date legacyParse(String timestamp) {
+        try {
+            return new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).parse(timestamp);
+        } catch (java.text.ParseException e) {
+            return new java.util.Date(0);
+        }
+    }
+
+    /**
+     * 回看界面的加载方式：倒序遍历按文件名排序的索引
+     */
+    private static MediaGroupingEngine<VideoGroup> engineGroup(List<File> files) {
+        MediaGroupingEngine<VideoGroup> engine = MediaGroupingEngine.forVideos();
+        for (int i = files.size() - 1; i >= 0; i--) {
+            engine.addFile(files.get(i), 1);
+        }
+        return engine;
+    }
+
+    private static void assertSameGrouping(List<DateSection<VideoGroup>> expected,
+                                           List<DateSection<VideoGroup>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int s = 0; s < expected.size(); s++) {
+            List<VideoGroup> expectedItems = expected.get(s).getItems();
+            List<VideoGroup> actualItems = actual.get(s).getItems();
+            assertEquals(expected.get(s).getDateString(), actual.get(s).getDateString());
+            assertEquals(expectedItems.size(), actualItems.size());
+            for (int g = 0; g < expectedItems.size(); g++) {
+                assertEquals(expectedItems.get(g).getTimestampPrefix(), actualItems.get(g).getTimestampPrefix());
+                assertEquals(expectedItems.get(g).getRecordTime(), actualItems.get(g).getRecordTime());
+                assertEquals(expectedItems.get(g).getVideoCount(), actualItems.get(g).getVideoCount());
+            }
+        }
+    }
+
+    private static void assertSectionsSorted(List<DateSection<VideoGroup>> sections) {
+        String previousDate = null;
+        for (DateSection<VideoGroup> section : sections) {
+            if (previousDate != null) {
+                assertTrue(previousDate.compareTo(section.getDateString()) > 0);
+            }
+            previousDate = section.getDateString();
+            long previousKey = Long.MAX_VALUE;
+            for (VideoGroup group : section.getItems()) {
+                assertTrue(group.getTimestampKey() < previousKey);
+                previousKey = group.getTimestampKey();
+            }
+        }
+    }
+
+    /**
+     * 模拟 ExpandableVideoGroupAdapter 的扁平列表，只通过引擎回调更新（全部展开）
+     */
+    private static class FlattenedModel implements MediaGroupingEngine.ChangeListener<VideoGroup> {
+        final List<DateSection<VideoGroup>> sections;
+        final List<Object> items = new ArrayList<>();
+
+        FlattenedModel(List<DateSection<VideoGroup>> sections) {
+            this.sections = sections;
+        }
+
+        static List<Object> flatten(List<DateSection<VideoGroup>> sections) {
+            List<Object> result = new ArrayList<>();
+            for (DateSection<VideoGroup> section : sections) {
+                result.add(section);
+                result.addAll(section.getItems());
+            }
+            return result;
+        }
+
+        private int headerPosition(int sectionIndex) {
+            int position = 0;
+            for (int i = 0; i < sectionIndex; i++) {
+                position += 1 + sections.get(i).getItemCount();
+            }
+            return position;
+        }
+
+        @Override
+        public void onSectionInserted(int sectionIndex) {
+            items.add(headerPosition(sectionIndex), sections.get(sectionIndex));
+        }
+
+        @Override
+        public void onSectionRemoved(int sectionIndex, DateSection<VideoGroup> section) {
+            assertSame(section, items.remove(headerPosition(sectionIndex)));
+        }
+
+        @Override
+        public void onGroupInserted(int sectionIndex, int itemIndex) {
+            items.add(headerPosition(sectionIndex) + 1 + itemIndex, sections.get(sectionIndex).getItems().get(itemIndex));
+        }
+
+        @Override
+        public void onGroupChanged(int sectionIndex, int itemIndex) {
+            assertSame(sections.get(sectionIndex).getItems().get(itemIndex),
+                    items.get(headerPosition(sectionIndex) + 1 + itemIndex));
+        }
+
+        @Override
+        public void onGroupRemoved(int sectionIndex, int itemIndex, VideoGroup group) {
+            assertSame(group, items.remove(headerPosition(sectionIndex) + 1 + itemIndex));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.kooo.evcam.remote.core;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.*;
+
+/**
+ * 事件片段指令解析测试（时间按系统默认时区构造，与 ClipRequest 一致）
+ */
+public class ClipRequestTest {
+
+    /** 当前时间：2026-01-31 15:00:00 */
+    private static final long NOW = millis(2026, 1, 31, 15, 0, 0);
+
+    private static long millis(int year, int month, int day, int hour, int minute, int second) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void parse_timeWithColonAndDuration() {
+        ClipRequest request = ClipRequest.parse("14:02:10 30", NOW);
+        assertNotNull(request);
+        assertEquals(millis(2026, 1, 31, 14, 2, 10), request.getCenterMillis());
+        assertEquals(30, request.getDurationSeconds());
+        assertEquals(millis(2026, 1, 31, 14, 1, 55), request.getStartMillis());
+        assertEquals(millis(2026, 1, 31, 14, 2, 25), request.getEndMillis());
+    }
+
+    @Test
+    public void parse_compactTimeUsesDefaultDuration() {
+        ClipRequest request = ClipRequest.parse("140210", NOW);
+        assertNotNull(request);
+        assertEquals(millis(2026, 1, 31, 14, 2, 10), request.getCenterMillis());
+        assertEquals(ClipRequest.DEFAULT_DURATION_SECONDS, request.getDurationSeconds());
+    }
+
+    @Test
+    public void parse_fullTimestampKeepsItsDate() {
+        ClipRequest request = ClipRequest.parse("20260131_140210 60", NOW);
+        assertNotNull(request);
+        assertEquals(millis(2026, 1, 31, 14, 2, 10), request.getCenterMillis());
+        assertEquals(60, request.getDurationSeconds());
+
+        // 完整时间戳不做"晚于当前按昨天"的调整
+        request = ClipRequest.parse("20260131_160000", NOW);
+        assertNotNull(request);
+        assertEquals(millis(2026, 1, 31, 16, 0, 0), request.getCenterMillis());
+    }
+
+    @Test
+    public void parse_futureTimeOfDayMeansYesterday() {
+        ClipRequest request = ClipRequest.parse("16:30", NOW);
+        assertNotNull(request);
+        assertEquals(millis(2026, 1, 30, 16, 30, 0), request.getCenterMillis());
+
+        // 跨月
+        long firstOfMonth = millis(2026, 3, 1, 0, 10, 0);
+        request = ClipRequest.parse("23:59:00", firstOfMonth);
+        assertNotNull(request);
+        assertEquals(millis(2026, 2, 28, 23, 59, 0), request.getCenterMillis());
+    }
+
+    @Test
+    public void parse_clampsDuration() {
+        assertEquals(ClipRequest.MIN_DURATION_SECONDS, ClipRequest.parse("14:02:10 3", NOW).getDurationSeconds());
+        assertEquals(ClipRequest.MAX_DURATION_SECONDS, ClipRequest.parse("14:02:10 600", NOW).getDurationSeconds());
+        assertEquals(45, ClipRequest.parse("14:02:10 45秒", NOW).getDurationSeconds());
+        assertEquals(90, ClipRequest.parse("14:02:10 90s", NOW).getDurationSeconds());
+    }
+
+    @Test
+    public void parse_rejectsMalformedInput() {
+        assertNull(ClipRequest.parse(null, NOW));
+        assertNull(ClipRequest.parse("", NOW));
+        assertNull(ClipRequest.parse("24:00:00", NOW));
+        assertNull(ClipRequest.parse("14:60", NOW));
+        assertNull(ClipRequest.parse("1402", NOW));
+        assertNull(ClipRequest.parse("20261331_140210", NOW));
+        assertNull(ClipRequest.parse("14:02:10 abc", NOW));
+        assertNull(ClipRequest.parse("14:02:10 30 extra", NOW));
+    }
+}
@@ -0,0 +1,58 @@
+package com.kooo.evcam.remote.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 共享 HTTP 客户端连接统计测试
+ */
+public class ConnectionStatsTest {
+
+    @Test
+    public void emptyStatsReportNoReuse() {
+        ConnectionStats stats = new ConnectionStats();
+        assertEquals(0, stats.getReusedConnections());
+        assertEquals(0, stats.getReuseRatio(), 0);
+        assertEquals("请求 0 (失败 0), 新建连接 0 (HTTP/2 0, 失败 0), 复用 0 (0%), 连接池 0 (空闲 0)",
+                stats.summary(0, 0));
+    }
+
+    @Test
+    public void countsReusedConnections() {
+        ConnectionStats stats = new ConnectionStats();
+        // 第一次请求新建 HTTP/2 连接，后三次复用
+        for (int i = 0; i < 4; i++) {
+            stats.onCallStart();
+            if (i == 0) {
+                stats.onConnectEnd(true);
+            }
+            stats.onConnectionAcquired();
+        }
+        assertEquals(4, stats.getCalls());
+        assertEquals(1, stats.getNewConnections());
+        assertEquals(1, stats.getHttp2Connections());
+        assertEquals(3, stats.getReusedConnections());
+        assertEquals(0.75, stats.getReuseRatio(), 1e-9);
+        assertEquals("请求 4 (失败 0), 新建连接 1 (HTTP/2 1, 失败 0), 复用 3 (75%), 连接池 1 (空闲 1)",
+                stats.summary(1, 1));
+    }
+
+    @Test
+    public void failedConnectsAreNotCountedAsReuse() {
+        ConnectionStats stats = new ConnectionStats();
+        stats.onCallStart();
+        // 第一个地址连接失败，换路由后新建 HTTP/1.1 连接
+        stats.onConnectFailed();
+        stats.onConnectEnd(false);
+        stats.onConnectionAcquired();
+        stats.onCallStart();
+        stats.onCallFailed();
+
+        assertEquals(2, stats.getCalls());
+        assertEquals(1, stats.getFailedCalls());
+        assertEquals(0, stats.getHttp2Connections());
+        assertEquals(0, stats.getReusedConnections());
+        assertTrue(stats.summary(1, 0).contains("失败 1), 复用 0"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.kooo.evcam.remote.upload;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 上传日志重放测试
+ */
+public class UploadJournalTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<String> logs = new ArrayList<>();
+
+    private UploadBatch newBatch(String id, String target, String... paths) {
+        UploadBatch batch = new UploadBatch(id, "telegram", "telegram_video", target, 1_000);
+        for (String path : paths) {
+            batch.addJob(path);
+        }
+        return batch;
+    }
+
+    @Test
+    public void replaysUnfinishedBatchesAfterRestart() throws IOException {
+        File file = new File(tmp.getRoot(), "journal.txt");
+        UploadJournal journal = new UploadJournal(file, logs::add);
+        UploadBatch batch = newBatch("b1", "12345", "/sdcard/a.mp4", "/sdcard/b.mp4");
+        journal.addBatch(batch);
+
+        UploadJob first = batch.getJobs().get(0);
+        first.setAttempts(1);
+        journal.recordAttempt(first);
+        first.finish(UploadJob.STATE_SUCCEEDED, "file-a", null);
+        journal.recordFinished(first);
+        UploadJob second = batch.getJobs().get(1);
+        second.setAttempts(2);
+        journal.recordAttempt(second);
+
+        // 模拟进程被杀后重新打开
+        UploadJournal reopened = new UploadJournal(file, logs::add);
+        List<UploadBatch> open = reopened.getOpenBatches();
+        assertEquals(1, open.size());
+        UploadBatch restored = open.get(0);
+        assertEquals("12345", restored.getTarget());
+        assertEquals("telegram", restored.getLane());
+        assertEquals(2, restored.getTotal());
+        assertTrue(restored.getJobs().get(0).isSucceeded());
+        assertEquals("file-a", restored.getJobs().get(0).getResult());
+        assertFalse(restored.getJobs().get(1).isFinished());
+        assertEquals(2, restored.getJobs().get(1).getAttempts());
+        assertEquals("/sdcard/b.mp4", restored.getJobs().get(1).getPath());
+        assertTrue(logs.isEmpty());
+    }
+
+    @Test
+    public void endedBatchesAreDroppedAndEmptyQueueTruncatesFile() {
+        File file = new File(tmp.getRoot(), "journal.txt");
+        UploadJournal journal = new UploadJournal(file, logs::add);
+        UploadBatch done = newBatch("b1", "1", "/a.jpg");
+        UploadBatch open = newBatch("b2", "2", "/b.jpg");
+        journal.addBatch(done);
+        journal.addBatch(open);
+        done.getJobs().get(0).finish(UploadJob.STATE_FAILED, null, "413 too large");
+        journal.recordFinished(done.getJobs().get(0));
+        journal.recordBatchEnded(done);
+
+        List<UploadBatch> reopened = new UploadJournal(file, logs::add).getOpenBatches();
+        assertEquals(1, reopened.size());
+        assertEquals("b2", reopened.get(0).getId());
+
+        journal.recordBatchEnded(open);
+        assertEquals(0, file.length());
+        assertTrue(new UploadJournal(file, logs::add).getOpenBatches().isEmpty());
+    }
+
+    @Test
+    public void ignoresRecordTruncatedByProcessDeath() throws IOException {
+        File file = new File(tmp.getRoot(), "journal.txt");
+        UploadJournal journal = new UploadJournal(file, logs::add);
+        UploadBatch batch = newBatch("b1", "1", "/a.jpg");
+        journal.addBatch(batch);
+        // 写到一半：没有换行结尾
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write("D\tb1-0\t1\tfile".getBytes(StandardCharsets.UTF_8));
+        }
+
+        UploadBatch restored = new UploadJournal(file, logs::add).getOpenBatches().get(0);
+        assertFalse(restored.getJobs().get(0).isFinished());
+    }
+
+    @Test
+    public void escapesSeparatorsInFields() {
+        File file = new File(tmp.getRoot(), "journal.txt");
+        UploadJournal journal = new UploadJournal(file, logs::add);
+        UploadBatch batch = newBatch("b1", "cid\tgroup\\1|2", "/dir with\nnewline/a.jpg");
+        journal.addBatch(batch);
+        batch.getJobs().get(0).finish(UploadJob.STATE_FAILED, null, "line1\nline2\r\tend");
+        journal.recordFinished(batch.getJobs().get(0));
+
+        UploadBatch restored = new UploadJournal(file, logs::add).getOpenBatches().get(0);
+        assertEquals("cid\tgroup\\1|2", restored.getTarget());
+        assertEquals("/dir with\nnewline/a.jpg", restored.getJobs().get(0).getPath());
+        assertEquals("line1\nline2\r\tend", restored.getJobs().get(0).getError());
+        assertNull(restored.getJobs().get(0).getResult());
+    }
+}
@@ -0,0 +1,65 @@
+package com.kooo.evcam.remote.upload;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 令牌桶限速和退避重试策略测试
+ */
+public class UploadRateLimiterTest {
+
+    @Test
+    public void allowsBurstThenSpacesPermits() {
+        // 每分钟 20 个 = 每 3 秒一个
+        UploadRateLimiter limiter = new UploadRateLimiter(20, 2);
+        assertEquals(0, limiter.tryAcquire(0));
+        assertEquals(0, limiter.tryAcquire(0));
+        assertEquals(3_000, limiter.tryAcquire(0));
+        // 未取得时不消耗令牌
+        assertEquals(1_000, limiter.tryAcquire(2_000));
+        assertEquals(0, limiter.tryAcquire(3_000));
+        assertEquals(3_000, limiter.tryAcquire(3_000));
+    }
+
+    @Test
+    public void refillIsCappedAtBurst() {
+        UploadRateLimiter limiter = new UploadRateLimiter(60, 2);
+        assertEquals(0, limiter.tryAcquire(0));
+        // 空闲很久也只积攒 burst 个
+        assertEquals(0, limiter.tryAcquire(600_000));
+        assertEquals(0, limiter.tryAcquire(600_000));
+        assertEquals(1_000, limiter.tryAcquire(600_000));
+    }
+
+    @Test
+    public void clockGoingBackwardsDoesNotRefill() {
+        UploadRateLimiter limiter = new UploadRateLimiter(60, 1);
+        assertEquals(0, limiter.tryAcquire(10_000));
+        assertTrue(limiter.tryAcquire(5_000) > 0);
+        assertEquals(0, limiter.tryAcquire(11_000));
+    }
+
+    @Test
+    public void retryDelayGrowsExponentiallyUpToCap() {
+        RetryPolicy policy = new RetryPolicy(5, 1_000, 5_000, 0);
+        Random random = new Random(1);
+        assertEquals(1_000, policy.getDelayMs(1, random));
+        assertEquals(2_000, policy.getDelayMs(2, random));
+        assertEquals(4_000, policy.getDelayMs(3, random));
+        assertEquals(5_000, policy.getDelayMs(4, random));
+        assertEquals(5_000, policy.getDelayMs(40, random));
+    }
+
+    @Test
+    public void retryJitterStaysWithinBounds() {
+        RetryPolicy policy = new RetryPolicy(3, 2_000, 30_000, 0.2);
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.getDelayMs(2, random);
+            assertTrue(delay >= 3_200 && delay <= 4_800);
+        }
+    }
+}
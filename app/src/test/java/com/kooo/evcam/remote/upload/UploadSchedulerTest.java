@@ -0,0 +1,304 @@
+package com.kooo.evcam.remote.upload;
+
+import com.kooo.evcam.remote.core.RemoteUploadCallback;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 上传队列测试：处理器通过 HTTP 把文件发到本地模拟服务器
+ */
+public class UploadSchedulerTest {
+    private static final String LANE = "test";
+    private static final String TYPE = "test_photo";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger transientFailures = new AtomicInteger();
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final List<Long> requestTimesMs = new CopyOnWriteArrayList<>();
+    private final List<UploadScheduler> schedulers = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        // 模拟平台上传接口：先按 transientFailures 返回 503，文件名以 too_large 开头返回 413
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload", exchange -> {
+            requests.incrementAndGet();
+            requestTimesMs.add(System.nanoTime() / 1_000_000);
+            String name = exchange.getRequestHeaders().getFirst("X-File-Name");
+            byte[] body = readAll(exchange.getRequestBody());
+            int status;
+            String response;
+            if (transientFailures.getAndDecrement() > 0) {
+                status = 503;
+                response = "busy";
+            } else if (name.startsWith("too_large")) {
+                status = 413;
+                response = "Request Entity Too Large";
+            } else {
+                received.add(name + ":" + new String(body, StandardCharsets.UTF_8));
+                status = 200;
+                response = "id-" + name;
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        for (UploadScheduler scheduler : schedulers) {
+            scheduler.shutdown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    public void uploadsBatchAndReportsSummary() throws Exception {
+        UploadScheduler scheduler = newScheduler(journalFile());
+        HttpUploadHandler handler = new HttpUploadHandler();
+        scheduler.registerHandler(TYPE, handler);
+        RecordingCallback callback = new RecordingCallback();
+
+        UploadBatch batch = scheduler.submit(LANE, TYPE, "chat-1", files("a.jpg", "b.jpg", "c.jpg"), callback);
+
+        callback.await();
+        assertEquals("✅ 图片上传完成！共上传 3 张照片", callback.success);
+        assertNull(callback.error);
+        Collections.sort(received);
+        assertEquals(Arrays.asList("a.jpg:a.jpg", "b.jpg:b.jpg", "c.jpg:c.jpg"), received);
+        assertEquals(Arrays.asList("id-a.jpg", "id-b.jpg", "id-c.jpg"), batch.getResults());
+        assertEquals("chat-1", handler.finishedTarget);
+        assertEquals(0, scheduler.getPendingCount());
+        assertEquals(0, journalFile().length());
+    }
+
+    @Test
+    public void retriesTransientFailuresWithBackoff() throws Exception {
+        UploadScheduler scheduler = newScheduler(journalFile());
+        scheduler.registerHandler(TYPE, new HttpUploadHandler());
+        transientFailures.set(2);
+        RecordingCallback callback = new RecordingCallback();
+
+        scheduler.submit(LANE, TYPE, "chat-1", files("a.jpg"), callback);
+
+        callback.await();
+        assertNotNull(callback.success);
+        assertEquals(3, requests.get());
+        assertEquals(Collections.singletonList("a.jpg:a.jpg"), received);
+        int retries = 0;
+        for (String progress : callback.progress) {
+            if (progress.contains("后重试")) {
+                retries++;
+            }
+        }
+        assertEquals(2, retries);
+    }
+
+    @Test
+    public void permanentFailureIsNotRetried() throws Exception {
+        UploadScheduler scheduler = newScheduler(journalFile());
+        scheduler.registerHandler(TYPE, new HttpUploadHandler());
+        RecordingCallback callback = new RecordingCallback();
+
+        scheduler.submit(LANE, TYPE, "chat-1", files("too_large.jpg"), callback);
+
+        callback.await();
+        assertNull(callback.success);
+        assertTrue(callback.error.startsWith("❌ 所有图片上传失败"));
+        assertTrue(callback.error.contains("too_large.jpg (HTTP 413"));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void missingFileFailsWithoutRequest() throws Exception {
+        UploadScheduler scheduler = newScheduler(journalFile());
+        scheduler.registerHandler(TYPE, new HttpUploadHandler());
+        RecordingCallback callback = new RecordingCallback();
+        List<File> files = files("a.jpg");
+        files.add(new File(tmp.getRoot(), "missing.jpg"));
+
+        scheduler.submit(LANE, TYPE, "chat-1", files, callback);
+
+        callback.await();
+        assertTrue(callback.success.startsWith("⚠️ 上传完成（部分失败）"));
+        assertTrue(callback.success.contains("missing.jpg (文件不存在)"));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void resumesJournaledBatchAfterRestart() throws Exception {
+        File journal = journalFile();
+        UploadScheduler first = newScheduler(journal);
+        // 处理器尚未注册（平台未连接）时进程被杀
+        first.submit(LANE, TYPE, "chat-1", files("a.jpg", "b.jpg"), null);
+        assertEquals(2, first.getPendingCount());
+        first.shutdown();
+
+        UploadScheduler second = newScheduler(journal);
+        assertEquals(2, second.getPendingCount());
+        HttpUploadHandler handler = new HttpUploadHandler();
+        second.registerHandler(TYPE, handler);
+
+        assertTrue(handler.finished.await(5, TimeUnit.SECONDS));
+        assertEquals("chat-1", handler.finishedTarget);
+        assertEquals(2, received.size());
+        assertEquals(0, second.getPendingCount());
+    }
+
+    @Test
+    public void laneRateLimitSpacesUploads() throws Exception {
+        UploadScheduler scheduler = new UploadScheduler(journalFile(), message -> { });
+        schedulers.add(scheduler);
+        // 每分钟 600 个 = 每 100ms 一个，不允许突发
+        scheduler.configureLane(LANE, 3, 600, 1);
+        HttpUploadHandler handler = new HttpUploadHandler();
+        scheduler.registerHandler(TYPE, handler);
+        RecordingCallback callback = new RecordingCallback();
+
+        scheduler.submit(LANE, TYPE, "chat-1", files("a.jpg", "b.jpg", "c.jpg"), callback);
+
+        callback.await();
+        assertEquals(3, requestTimesMs.size());
+        List<Long> times = new ArrayList<>(requestTimesMs);
+        Collections.sort(times);
+        // 三个上传依次间隔一个周期
+        assertTrue(times.get(2) - times.get(0) >= 190);
+    }
+
+    // ==================== 辅助 ====================
+
+    private UploadScheduler newScheduler(File journal) {
+        UploadScheduler scheduler = new UploadScheduler(journal, message -> { });
+        scheduler.configureLane(LANE, 2, 6_000, 10);
+        scheduler.setRetryPolicy(new RetryPolicy(3, 10, 50, 0));
+        schedulers.add(scheduler);
+        return scheduler;
+    }
+
+    private File journalFile() {
+        return new File(tmp.getRoot(), "upload_journal.txt");
+    }
+
+    private List<File> files(String... names) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (String name : names) {
+            File file = new File(tmp.getRoot(), name);
+            Files.write(file.toPath(), name.getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 以 HTTP POST 上传文件内容，5xx 视为可重试，4xx 视为不可重试
+     */
+    private class HttpUploadHandler implements UploadScheduler.UploadHandler {
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile String finishedTarget;
+
+        @Override
+        public void upload(UploadJob job) throws Exception {
+            URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/upload");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try {
+                connection.setDoOutput(true);
+                connection.setRequestMethod("POST");
+                connection.setRequestProperty("X-File-Name", job.getFile().getName());
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(Files.readAllBytes(job.getFile().toPath()));
+                }
+                int status = connection.getResponseCode();
+                if (status >= 500) {
+                    throw new IOException("HTTP " + status);
+                }
+                if (status >= 400) {
+                    throw new UploadException("HTTP " + status + " " + connection.getResponseMessage(), false);
+                }
+                try (InputStream in = connection.getInputStream()) {
+                    job.setResult(new String(readAll(in), StandardCharsets.UTF_8));
+                }
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        @Override
+        public String onBatchFinished(UploadBatch batch) {
+            finishedTarget = batch.getTarget();
+            finished.countDown();
+            return batch.formatSummary("图片", "张", "照片");
+        }
+    }
+
+    private static class RecordingCallback implements RemoteUploadCallback {
+        final List<String> progress = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile String success;
+        volatile String error;
+
+        @Override
+        public void onProgress(String message) {
+            progress.add(message);
+        }
+
+        @Override
+        public void onSuccess(String message) {
+            success = message;
+            done.countDown();
+        }
+
+        @Override
+        public void onError(String error) {
+            this.error = error;
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("上传超时", done.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
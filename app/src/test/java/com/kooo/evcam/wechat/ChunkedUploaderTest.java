@@ -0,0 +1,206 @@
+package com.kooo.evcam.wechat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分片断点续传测试：模拟服务端按 uploadChunk 云函数的规则校验和提交分片
+ */
+public class ChunkedUploaderTest {
+    private static final int CHUNK = 1000;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<String> logs = new ArrayList<>();
+
+    @Test
+    public void uploadsInChunksAndVerifiesWholeFile() throws IOException {
+        File file = newFile("a.mp4", 3500);
+        FakeChunkServer server = new FakeChunkServer();
+        List<Long> progress = new ArrayList<>();
+
+        String fileId = newUploader(server, 0).upload(file, "videos/d1/a.mp4",
+                (uploaded, total) -> progress.add(uploaded));
+
+        assertEquals("cloud://videos/d1/a.mp4", fileId);
+        assertArrayEquals(Files.readAllBytes(file.toPath()), server.stored.get("videos/d1/a.mp4"));
+        assertEquals(Arrays.asList(1000L, 2000L, 3000L, 3500L), progress);
+        assertEquals(4, server.puts);
+    }
+
+    @Test
+    public void resumesFromCommittedOffsetAfterRestart() throws IOException {
+        File file = newFile("a.mp4", 5000);
+        FakeChunkServer server = new FakeChunkServer();
+        // 第三个分片时断网且重试次数用尽，上传中止
+        server.failPutsFrom = 2;
+        try {
+            newUploader(server, 0).upload(file, "videos/d1/a.mp4", null);
+            fail("应当中止");
+        } catch (IOException expected) {
+            // 预期
+        }
+        assertEquals(2000, server.committed());
+
+        // "重启"后用新的上传器继续，已提交的分片不再上传
+        server.failPutsFrom = Integer.MAX_VALUE;
+        server.puts = 0;
+        String fileId = newUploader(server, 0).upload(file, "videos/d1/a.mp4", null);
+
+        assertEquals("cloud://videos/d1/a.mp4", fileId);
+        assertEquals(3, server.puts);
+        assertArrayEquals(Files.readAllBytes(file.toPath()), server.stored.get("videos/d1/a.mp4"));
+        assertTrue(logs.get(logs.size() - 1).startsWith("续传 a.mp4，已提交 2000/5000"));
+    }
+
+    @Test
+    public void lostAcknowledgementIsReconciledWithoutResending() throws IOException {
+        File file = newFile("a.mp4", 3000);
+        FakeChunkServer server = new FakeChunkServer();
+        // 第二个分片服务端已提交但应答丢失
+        server.dropAckAt = 1;
+
+        String fileId = newUploader(server, 2).upload(file, "videos/d1/a.mp4", null);
+
+        assertNotNull(fileId);
+        assertEquals(3, server.puts);
+        assertArrayEquals(Files.readAllBytes(file.toPath()), server.stored.get("videos/d1/a.mp4"));
+    }
+
+    @Test
+    public void corruptedChunkIsRejectedAndResent() throws IOException {
+        File file = newFile("a.mp4", 2500);
+        FakeChunkServer server = new FakeChunkServer();
+        server.corruptAt = 1;
+
+        String fileId = newUploader(server, 2).upload(file, "videos/d1/a.mp4", null);
+
+        assertNotNull(fileId);
+        assertEquals(4, server.puts);
+        assertEquals(1, server.rejected);
+        assertArrayEquals(Files.readAllBytes(file.toPath()), server.stored.get("videos/d1/a.mp4"));
+    }
+
+    @Test
+    public void repeatedRejectionGivesUp() throws IOException {
+        File file = newFile("a.mp4", 2500);
+        FakeChunkServer server = new FakeChunkServer();
+        server.corruptAll = true;
+
+        try {
+            newUploader(server, 2).upload(file, "videos/d1/a.mp4", null);
+            fail("应当放弃");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("分片被拒绝"));
+        }
+        assertEquals(3, server.puts);
+        assertEquals(0, server.committed());
+        assertTrue(server.stored.isEmpty());
+    }
+
+    @Test
+    public void uploadIdChangesWhenFileChanges() {
+        String id = ChunkedUploader.uploadIdFor("videos/d1/a.mp4", 100, 1_000);
+        assertEquals(id, ChunkedUploader.uploadIdFor("videos/d1/a.mp4", 100, 1_000));
+        assertNotEquals(id, ChunkedUploader.uploadIdFor("videos/d1/a.mp4", 101, 1_000));
+        assertNotEquals(id, ChunkedUploader.uploadIdFor("videos/d1/a.mp4", 100, 2_000));
+        assertNotEquals(id, ChunkedUploader.uploadIdFor("videos/d1/b.mp4", 100, 1_000));
+        assertEquals(32, id.length());
+    }
+
+    // ==================== 辅助 ====================
+
+    private ChunkedUploader newUploader(FakeChunkServer server, int retries) {
+        return new ChunkedUploader(server, CHUNK, retries, 0, logs::add);
+    }
+
+    private File newFile(String name, int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        File file = new File(tmp.getRoot(), name);
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    /**
+     * 模拟服务端：与 uploadChunk 云函数相同，只在偏移连续且校验通过时提交分片
+     */
+    private static class FakeChunkServer implements ChunkedUploader.ChunkTransport {
+        final Map<String, byte[]> stored = new HashMap<>();
+        private final Map<String, ByteArrayOutputStream> sessions = new HashMap<>();
+        private final Map<String, String> paths = new HashMap<>();
+        int puts;
+        int rejected;
+        int failPutsFrom = Integer.MAX_VALUE;
+        int dropAckAt = -1;
+        int corruptAt = -1;
+        boolean corruptAll;
+
+        @Override
+        public long begin(String uploadId, String cloudPath, long totalSize) {
+            paths.put(uploadId, cloudPath);
+            return sessions.computeIfAbsent(uploadId, id -> new ByteArrayOutputStream()).size();
+        }
+
+        @Override
+        public long putChunk(String uploadId, long offset, byte[] data, int length, String sha256)
+                throws IOException {
+            int index = puts++;
+            if (index >= failPutsFrom) {
+                throw new IOException("网络断开");
+            }
+            ByteArrayOutputStream session = sessions.get(uploadId);
+            if (offset != session.size()) {
+                return session.size();
+            }
+            byte[] received = Arrays.copyOf(data, length);
+            if (corruptAll || index == corruptAt) {
+                received[0] ^= 1;
+            }
+            if (!ChunkedUploader.sha256Hex(received, length).equals(sha256)) {
+                rejected++;
+                return session.size();
+            }
+            session.write(received);
+            if (index == dropAckAt) {
+                throw new IOException("应答超时");
+            }
+            return session.size();
+        }
+
+        @Override
+        public String complete(String uploadId, long totalSize, String sha256) throws IOException {
+            byte[] content = sessions.get(uploadId).toByteArray();
+            if (content.length != totalSize || !ChunkedUploader.sha256Hex(content, content.length).equals(sha256)) {
+                throw new IOException("文件校验失败");
+            }
+            String cloudPath = paths.get(uploadId);
+            stored.put(cloudPath, content);
+            sessions.remove(uploadId);
+            return "cloud://" + cloudPath;
+        }
+
+        long committed() {
+            long total = 0;
+            for (ByteArrayOutputStream session : sessions.values()) {
+                total += session.size();
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.kooo.evcam.wechat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * 预览推流测试：本地 HTTP 服务模拟中转服务器，解析 multipart 推流并记录收到的帧
+ */
+public class PreviewStreamerTest {
+    private static final long WAIT_MS = 5_000;
+
+    private HttpServer server;
+    private FakeRelay relay;
+    private PreviewStreamer streamer;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        relay = new FakeRelay();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/preview", relay);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (streamer != null) {
+            streamer.stop();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    public void streamsFramesOverSingleConnection() throws Exception {
+        streamer = newStreamer(16, 25);
+        streamer.start();
+        waitUntil(() -> relay.frames.size() >= 5);
+
+        streamer.stop();
+        waitUntil(() -> relay.closedCleanly.get() == 1);
+
+        assertEquals(1, relay.connections.get());
+        assertEquals("image/jpeg", relay.frames.get(0).contentType);
+        // 帧按采集顺序到达，内容完整
+        int previous = -1;
+        for (Frame frame : relay.frames) {
+            assertEquals(16, frame.data.length);
+            int seq = ByteBuffer.wrap(frame.data).getInt();
+            assertTrue(seq > previous);
+            previous = seq;
+        }
+        assertEquals(relay.frames.size(), streamer.getFramesSent());
+    }
+
+    @Test
+    public void latestFrameKeepsOnlyNewest() throws InterruptedException {
+        PreviewStreamer.LatestFrame mailbox = new PreviewStreamer.LatestFrame();
+        assertNull(mailbox.take(10));
+
+        assertFalse(mailbox.offer(new byte[]{1}, 100));
+        assertTrue(mailbox.offer(new byte[]{2}, 200));
+        assertTrue(mailbox.offer(new byte[]{3}, 300));
+
+        PreviewStreamer.LatestFrame.Frame frame = mailbox.take(10);
+        assertEquals(3, frame.data[0]);
+        assertEquals(300, frame.timestampMs);
+        assertEquals(2, mailbox.getDropped());
+        assertNull(mailbox.take(10));
+
+        mailbox.close();
+        long start = System.currentTimeMillis();
+        assertNull(mailbox.take(5_000));
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+    }
+
+    @Test
+    public void slowRelayDropsStaleFramesInsteadOfQueueing() throws Exception {
+        // 中转服务器先停止读取，大帧很快填满套接字缓冲区，发送线程被阻塞
+        relay.stallMs = 1_500;
+        streamer = newStreamer(1024 * 1024, 50);
+        streamer.start();
+        waitUntil(() -> streamer.getFramesDropped() >= 10);
+        // 停顿期间留在缓冲区里的旧帧读完后，延迟回落到采集间隔量级，不随停顿时长累积
+        waitUntil(() -> relay.frames.size() >= 20);
+
+        assertTrue("发送帧数应远少于采集帧数", streamer.getFramesSent() < sequence.get() / 2);
+        Frame last = relay.frames.get(relay.frames.size() - 1);
+        assertTrue("最新帧延迟 " + last.latencyMs + "ms", last.latencyMs < 500);
+    }
+
+    @Test
+    public void reconnectsAfterRelayClosesConnection() throws Exception {
+        relay.closeFirstAfterFrames = 2;
+        streamer = newStreamer(64 * 1024, 25);
+        streamer.start();
+
+        waitUntil(() -> relay.connections.get() >= 2 && relay.framesPerConnection(2) >= 3);
+        streamer.stop();
+        waitUntil(() -> relay.closedCleanly.get() == 1);
+    }
+
+    // ==================== 辅助 ====================
+
+    private PreviewStreamer newStreamer(int frameSize, int fps) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/preview/device-1");
+        return new PreviewStreamer(url, () -> {
+            byte[] frame = new byte[frameSize];
+            ByteBuffer.wrap(frame).putInt(sequence.incrementAndGet());
+            return frame;
+        }, fps, message -> { });
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("等待超时");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static class Frame {
+        final int connection;
+        final String contentType;
+        final byte[] data;
+        final long latencyMs;
+
+        Frame(int connection, String contentType, byte[] data, long latencyMs) {
+            this.connection = connection;
+            this.contentType = contentType;
+            this.data = data;
+            this.latencyMs = latencyMs;
+        }
+    }
+
+    /**
+     * 模拟中转服务器：逐个解析 multipart 分段，可模拟读取停顿和中途断开
+     */
+    private static class FakeRelay implements com.sun.net.httpserver.HttpHandler {
+        final List<Frame> frames = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger closedCleanly = new AtomicInteger();
+        volatile long stallMs = 0;
+        volatile int closeFirstAfterFrames = -1;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int connection = connections.incrementAndGet();
+            assertEquals(PreviewStreamer.CONTENT_TYPE, exchange.getRequestHeaders().getFirst("Content-Type"));
+            try (InputStream in = exchange.getRequestBody()) {
+                if (stallMs > 0) {
+                    Thread.sleep(stallMs);
+                }
+                int received = 0;
+                while (true) {
+                    String boundary = readLine(in);
+                    if (boundary == null || boundary.equals("--" + PreviewStreamer.BOUNDARY + "--")) {
+                        if (boundary != null) {
+                            closedCleanly.incrementAndGet();
+                        }
+                        break;
+                    }
+                    assertEquals("--" + PreviewStreamer.BOUNDARY, boundary);
+                    String contentType = null;
+                    int length = -1;
+                    long timestampMs = 0;
+                    String header;
+                    while (!(header = readLine(in)).isEmpty()) {
+                        if (header.startsWith("Content-Type: ")) {
+                            contentType = header.substring(14);
+                        } else if (header.startsWith("Content-Length: ")) {
+                            length = Integer.parseInt(header.substring(16));
+                        } else if (header.startsWith("X-Timestamp: ")) {
+                            timestampMs = Long.parseLong(header.substring(13));
+                        }
+                    }
+                    byte[] data = in.readNBytes(length);
+                    readLine(in);
+                    frames.add(new Frame(connection, contentType, data, System.currentTimeMillis() - timestampMs));
+                    received++;
+                    if (connection == 1 && received == closeFirstAfterFrames) {
+                        // 模拟中转服务器断开：直接关闭底层连接
+                        exchange.sendResponseHeaders(500, -1);
+                        exchange.getResponseBody().close();
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        }
+
+        int framesPerConnection(int connection) {
+            synchronized (frames) {
+                int count = 0;
+                for (Frame frame : frames) {
+                    if (frame.connection == connection) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) >= 0) {
+                if (b == '\n') {
+                    byte[] bytes = line.toByteArray();
+                    int len = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                    return new String(bytes, 0, len, StandardCharsets.US_ASCII);
+                }
+                line.write(b);
+            }
+            return line.size() > 0 ? line.toString(StandardCharsets.US_ASCII.name()) : null;
+        }
+    }
+}
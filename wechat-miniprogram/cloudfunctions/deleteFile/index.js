@@ -6,6 +6,22 @@ cloud.init({ env: cloud.DYNAMIC_CURRENT_ENV });
 
 const db = cloud.database();
 
+const MANIFEST_SUFFIX = '.manifest.json';
+// cloud.deleteFile 单次最多删除的文件数
+const DELETE_BATCH = 50;
+
+// 分片上传的大文件以清单保存，删除时连同清单里的分片一起删除
+async function manifestParts(fileId) {
+  try {
+    const res = await cloud.downloadFile({ fileID: fileId });
+    const manifest = JSON.parse(res.fileContent.toString());
+    return (manifest.parts || []).map(part => part.fileID);
+  } catch (e) {
+    console.log('读取清单失败:', e);
+    return [];
+  }
+}
+
 // 云函数入口函数
 exports.main = async (event, context) => {
   const wxContext = cloud.getWXContext();
@@ -63,6 +79,9 @@ exports.main = async (event, context) => {
     // 删除云存储中的文件
     const filesToDelete = [];
     if (fileRecord.fileId) {
+      if (fileRecord.fileId.endsWith(MANIFEST_SUFFIX)) {
+        filesToDelete.push(...await manifestParts(fileRecord.fileId));
+      }
       filesToDelete.push(fileRecord.fileId);
     }
     if (fileRecord.thumbFileId) {
@@ -71,9 +90,11 @@ exports.main = async (event, context) => {
     
     if (filesToDelete.length > 0) {
       try {
-        await cloud.deleteFile({
-          fileList: filesToDelete
-        });
+        for (let i = 0; i < filesToDelete.length; i += DELETE_BATCH) {
+          await cloud.deleteFile({
+            fileList: filesToDelete.slice(i, i + DELETE_BATCH)
+          });
+        }
       } catch (e) {
         console.log('删除云存储文件失败:', e);
         // 继续删除记录
@@ -0,0 +1,249 @@
+// 云函数入口文件 - uploadChunk
+// 车机端分片断点续传：status 查询已提交偏移，put 校验并提交分片，complete 完成上传
+// 每个分片单独存到 uploads/<uploadId>/ 下，进度记录在 uploads 集合，断网或车机重启后从已提交偏移继续
+// 完成时小文件合并为单个文件；大文件不在云函数里合并（内存和超时都放不下），
+// 而是写一份清单 <cloudPath>.manifest.json，由小程序按清单下载分片拼接
+// 定时触发器（config.json）清理过期未完成的分片和会话记录
+
+const crypto = require('crypto');
+const cloud = require('wx-server-sdk');
+cloud.init({ env: cloud.DYNAMIC_CURRENT_ENV });
+
+const db = cloud.database();
+const _ = db.command;
+
+// 不超过此大小时在云函数内合并为单个文件
+const MERGE_MAX_SIZE = 16 * 1024 * 1024;
+const MANIFEST_SUFFIX = '.manifest.json';
+// 会话超过此时间未更新视为放弃
+const SESSION_EXPIRE_MS = 3 * 24 * 60 * 60 * 1000;
+const CLEANUP_BATCH = 20;
+// cloud.deleteFile 单次最多删除的文件数
+const DELETE_BATCH = 50;
+
+const sha256 = (buffer) => crypto.createHash('sha256').update(buffer).digest('hex');
+
+// 查询上传会话，不存在则创建
+async function getSession(uploadId, cloudPath, totalSize) {
+  try {
+    const res = await db.collection('uploads').doc(uploadId).get();
+    return res.data;
+  } catch (e) {
+    if (!cloudPath) {
+      return null;
+    }
+    const session = {
+      _id: uploadId,
+      cloudPath: cloudPath,
+      totalSize: totalSize,
+      committed: 0,
+      parts: [],
+      createTime: db.serverDate(),
+      updateTime: db.serverDate()
+    };
+    await db.collection('uploads').add({ data: session });
+    return session;
+  }
+}
+
+async function status(event) {
+  const { uploadId, cloudPath, totalSize } = event;
+  if (!cloudPath || typeof totalSize !== 'number') {
+    return { success: false, message: '参数不完整' };
+  }
+  const session = await getSession(uploadId, cloudPath, totalSize);
+  return { success: true, committed: session.committed };
+}
+
+async function put(event) {
+  const { uploadId, offset, sha256: expected, data } = event;
+  const session = await getSession(uploadId);
+  if (!session) {
+    return { success: false, message: '上传会话不存在' };
+  }
+  // 偏移不连续（重发了已提交的分片或跳过了分片）时返回当前偏移，由车机端对齐
+  if (offset !== session.committed) {
+    return { success: false, message: '偏移不连续', committed: session.committed };
+  }
+  const chunk = Buffer.from(data || '', 'base64');
+  if (chunk.length === 0 || sha256(chunk) !== expected) {
+    return { success: false, message: '分片校验失败', committed: session.committed };
+  }
+
+  const partRes = await cloud.uploadFile({
+    cloudPath: `uploads/${uploadId}/${offset}.part`,
+    fileContent: chunk
+  });
+  const committed = offset + chunk.length;
+  // 只有偏移仍等于本次分片起点时才提交，避免并发重发导致重复追加
+  const updateRes = await db.collection('uploads').where({
+    _id: uploadId,
+    committed: offset
+  }).update({
+    data: {
+      committed: committed,
+      parts: _.push({ offset: offset, length: chunk.length, sha256: expected, fileID: partRes.fileID }),
+      updateTime: db.serverDate()
+    }
+  });
+  if (updateRes.stats.updated === 0) {
+    const latest = await getSession(uploadId);
+    return { success: false, message: '分片已被提交', committed: latest.committed };
+  }
+  return { success: true, committed: committed };
+}
+
+async function complete(event) {
+  const { uploadId, totalSize, sha256: expected } = event;
+  const session = await getSession(uploadId);
+  if (!session) {
+    return { success: false, message: '上传会话不存在' };
+  }
+  // 重试的 complete 直接返回上次的结果
+  if (session.fileID) {
+    return { success: true, fileID: session.fileID, manifest: !!session.manifest };
+  }
+  if (session.committed !== totalSize) {
+    return { success: false, message: '分片未上传完整', committed: session.committed };
+  }
+
+  const parts = session.parts.slice().sort((a, b) => a.offset - b.offset);
+  let offset = 0;
+  for (const part of parts) {
+    if (part.offset !== offset) {
+      return { success: false, message: '分片不连续' };
+    }
+    offset += part.length;
+  }
+
+  const result = totalSize <= MERGE_MAX_SIZE
+    ? await mergeParts(session, parts, expected)
+    : await writeManifest(session, parts, expected);
+  if (!result.success) {
+    return result;
+  }
+
+  await db.collection('uploads').doc(uploadId).update({
+    data: {
+      fileID: result.fileID,
+      manifest: result.manifest,
+      updateTime: db.serverDate()
+    }
+  });
+  return result;
+}
+
+// 小文件：下载分片合并、校验整文件摘要后上传为单个文件
+async function mergeParts(session, parts, expected) {
+  const buffers = [];
+  for (const part of parts) {
+    const res = await cloud.downloadFile({ fileID: part.fileID });
+    buffers.push(res.fileContent);
+  }
+  const content = Buffer.concat(buffers);
+  if (content.length !== session.totalSize || sha256(content) !== expected) {
+    return { success: false, message: '文件校验失败' };
+  }
+
+  const uploadRes = await cloud.uploadFile({
+    cloudPath: session.cloudPath,
+    fileContent: content
+  });
+
+  // 分片已合并，删除失败留给过期清理
+  try {
+    await deleteFiles(parts.map(part => part.fileID));
+  } catch (e) {
+    console.log('清理分片失败:', e);
+  }
+  return { success: true, fileID: uploadRes.fileID, manifest: false };
+}
+
+// 大文件：分片保留为最终内容，写清单记录顺序和摘要（分片在 put 时已逐个校验）
+async function writeManifest(session, parts, expected) {
+  const manifest = {
+    version: 1,
+    cloudPath: session.cloudPath,
+    totalSize: session.totalSize,
+    sha256: expected,
+    parts: parts.map(part => ({
+      offset: part.offset,
+      length: part.length,
+      sha256: part.sha256,
+      fileID: part.fileID
+    }))
+  };
+  const uploadRes = await cloud.uploadFile({
+    cloudPath: session.cloudPath + MANIFEST_SUFFIX,
+    fileContent: Buffer.from(JSON.stringify(manifest))
+  });
+  return { success: true, fileID: uploadRes.fileID, manifest: true };
+}
+
+async function deleteFiles(fileIDs) {
+  for (let i = 0; i < fileIDs.length; i += DELETE_BATCH) {
+    await cloud.deleteFile({ fileList: fileIDs.slice(i, i + DELETE_BATCH) });
+  }
+}
+
+// 清理过期会话：未完成的删除分片和记录，已完成的只删记录（分片归清单所有或已合并删除）
+async function cleanupExpired() {
+  const expireBefore = new Date(Date.now() - SESSION_EXPIRE_MS);
+  const res = await db.collection('uploads').where({
+    updateTime: _.lt(expireBefore)
+  }).limit(CLEANUP_BATCH).get();
+
+  let removed = 0;
+  for (const session of res.data) {
+    try {
+      if (!session.fileID && session.parts && session.parts.length > 0) {
+        await deleteFiles(session.parts.map(part => part.fileID));
+      }
+      await db.collection('uploads').doc(session._id).remove();
+      removed++;
+    } catch (e) {
+      console.log('清理会话失败:', session._id, e);
+    }
+  }
+  console.log('清理过期上传会话:', removed);
+  return { success: true, removed: removed };
+}
+
+// 云函数入口函数
+exports.main = async (event, context) => {
+  const { action, uploadId } = event;
+
+  // 定时触发器
+  if (event.Type === 'Timer') {
+    return await cleanupExpired();
+  }
+
+  if (!uploadId) {
+    return {
+      success: false,
+      message: '参数不完整'
+    };
+  }
+
+  try {
+    switch (action) {
+      case 'status':
+        return await status(event);
+      case 'put':
+        return await put(event);
+      case 'complete':
+        return await complete(event);
+      default:
+        return {
+          success: false,
+          message: '未知操作: ' + action
+        };
+    }
+  } catch (err) {
+    console.error('分片上传失败:', err);
+    return {
+      success: false,
+      message: '分片上传失败: ' + err.message
+    };
+  }
+};
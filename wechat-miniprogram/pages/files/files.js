@@ -1,6 +1,9 @@
 // pages/files/files.js
 const app = getApp();
 
+// 分片上传的大文件只保存清单，播放前按清单下载分片拼接到本地
+const MANIFEST_SUFFIX = '.manifest.json';
+
 Page({
   data: {
     device: null,
@@ -133,7 +136,9 @@ Page({
       }
     } else {
       // 预览视频
-      if (file.tempFileURL) {
+      if (file.fileId && file.fileId.endsWith(MANIFEST_SUFFIX)) {
+        this.previewManifestVideo(file);
+      } else if (file.tempFileURL) {
         wx.previewMedia({
           sources: [{
             url: file.tempFileURL,
@@ -144,6 +149,98 @@ Page({
     }
   },
 
+  // 按清单下载分片，拼接成本地文件后播放
+  previewManifestVideo: function(file) {
+    const fs = wx.getFileSystemManager();
+    const ext = (file.fileName || '').lastIndexOf('.') >= 0
+      ? file.fileName.substring(file.fileName.lastIndexOf('.'))
+      : '.mp4';
+    const localPath = `${wx.env.USER_DATA_PATH}/assembled${ext}`;
+    // 本地空间有限，只保留最近一次拼接的文件
+    try {
+      fs.unlinkSync(localPath);
+    } catch (e) {
+      // 文件不存在
+    }
+
+    wx.showLoading({ title: '加载中...', mask: true });
+    this.requestJson(file.tempFileURL).then(manifest => {
+      const parts = manifest.parts.slice().sort((a, b) => a.offset - b.offset);
+      return this.getPartUrls(parts.map(part => part.fileID)).then(urls => {
+        let chain = Promise.resolve();
+        parts.forEach((part, index) => {
+          chain = chain.then(() => {
+            wx.showLoading({ title: `下载中 ${index + 1}/${parts.length}`, mask: true });
+            return this.downloadPart(urls[part.fileID]);
+          }).then(tempPath => {
+            const data = fs.readFileSync(tempPath);
+            if (index === 0) {
+              fs.writeFileSync(localPath, data);
+            } else {
+              fs.appendFileSync(localPath, data);
+            }
+          });
+        });
+        return chain;
+      }).then(() => {
+        if (fs.statSync(localPath).size !== manifest.totalSize) {
+          throw new Error('文件大小不一致');
+        }
+      });
+    }).then(() => {
+      wx.hideLoading();
+      wx.previewMedia({
+        sources: [{
+          url: localPath,
+          type: 'video'
+        }]
+      });
+    }).catch(err => {
+      wx.hideLoading();
+      console.error('加载视频失败', err);
+      wx.showToast({
+        title: '加载视频失败',
+        icon: 'none'
+      });
+    });
+  },
+
+  requestJson: function(url) {
+    return new Promise((resolve, reject) => {
+      wx.request({
+        url: url,
+        dataType: 'json',
+        success: res => res.statusCode === 200 ? resolve(res.data) : reject(new Error('HTTP ' + res.statusCode)),
+        fail: reject
+      });
+    });
+  },
+
+  // 换取分片临时链接（每次最多 50 个）
+  getPartUrls: function(fileIds) {
+    const batches = [];
+    for (let i = 0; i < fileIds.length; i += 50) {
+      batches.push(wx.cloud.getTempFileURL({ fileList: fileIds.slice(i, i + 50) }));
+    }
+    return Promise.all(batches).then(results => {
+      const urls = {};
+      results.forEach(res => res.fileList.forEach(item => {
+        urls[item.fileID] = item.tempFileURL;
+      }));
+      return urls;
+    });
+  },
+
+  downloadPart: function(url) {
+    return new Promise((resolve, reject) => {
+      wx.downloadFile({
+        url: url,
+        success: res => res.statusCode === 200 ? resolve(res.tempFilePath) : reject(new Error('HTTP ' + res.statusCode)),
+        fail: reject
+      });
+    });
+  },
+
   // 删除文件
   deleteFile: function(e) {
     const file = e.currentTarget.dataset.file;